@@ -24,15 +24,19 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.logging.Level;
 
 import javax.xml.namespace.QName;
 
 import org.geotools.data.DataAccess;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
+import org.geotools.data.complex.config.AppSchemaDataAccessConfigurator;
 import org.geotools.data.complex.filter.XPath;
 import org.geotools.data.complex.filter.XPath.Step;
 import org.geotools.data.complex.filter.XPath.StepList;
@@ -117,6 +121,18 @@ public class DataAccessMappingFeatureIterator extends AbstractMappingFeatureIter
 
     private ArrayList<String> filteredFeatures;
 
+    /**
+     * Iterator reading the source features by pages, to fetch the nested features of a whole page
+     * at once, or null if nested features are fetched for each feature.
+     */
+    private NestedBatchIterator nestedBatchIterator;
+
+    /**
+     * Nested features fetched for the current and previous pages of source features, by nested
+     * attribute mapping and link value.
+     */
+    private Map<NestedAttributeMapping, Map<String, List<Feature>>> nestedFeatures, previousNestedFeatures;
+
     public DataAccessMappingFeatureIterator(AppSchemaDataAccess store, FeatureTypeMapping mapping,
             Query query, boolean isFiltered) throws IOException {
         this(store, mapping, query, isFiltered, null);
@@ -191,9 +207,190 @@ public class DataAccessMappingFeatureIterator extends AbstractMappingFeatureIter
     }
 
     protected Iterator<SimpleFeature> getSourceFeatureIterator() {
+        if (nestedBatchIterator != null) {
+            return nestedBatchIterator;
+        }
         return sourceFeatureIterator;
     }
 
+    /**
+     * Returns the number of source features whose nested features are fetched together, or 0 to
+     * fetch them feature by feature.
+     */
+    protected int getNestedBatchSize() {
+        if (AppSchemaDataAccessConfigurator.isJoining()) {
+            // joining queries already fetch the nested features with sorted merges
+            return 0;
+        }
+        return AppSchemaDataAccessConfigurator.getNestedBatchSize();
+    }
+
+    /**
+     * Returns true if the nested features of the mapping can be fetched for several source
+     * features at once.
+     */
+    private boolean isBatchable(AttributeMapping attMapping) {
+        if (!attMapping.isNestedAttribute() || attMapping instanceof JoiningNestedAttributeMapping) {
+            return false;
+        }
+        NestedAttributeMapping nestedMapping = (NestedAttributeMapping) attMapping;
+        return !nestedMapping.isSameSource() && !nestedMapping.isConditional();
+    }
+
+    /**
+     * Fetches the nested features of a page of source features, with one query per nested
+     * mapping instead of one per source feature and link value.
+     */
+    private void fetchNestedFeatures(List<SimpleFeature> page) throws IOException {
+        previousNestedFeatures = nestedFeatures;
+        nestedFeatures = new HashMap<NestedAttributeMapping, Map<String, List<Feature>>>();
+        for (AttributeMapping attMapping : selectedMapping) {
+            if (!isBatchable(attMapping)) {
+                continue;
+            }
+            NestedAttributeMapping nestedMapping = (NestedAttributeMapping) attMapping;
+            Set<Object> foreignKeyValues = new HashSet<Object>();
+            for (SimpleFeature source : page) {
+                Object values = getValues(attMapping.isMultiValued(), attMapping
+                        .getSourceExpression(), source);
+                if (values instanceof Collection) {
+                    for (Object val : (Collection) values) {
+                        val = getLinkValue(val);
+                        if (val != null) {
+                            foreignKeyValues.add(val);
+                        }
+                    }
+                } else if (values != null) {
+                    foreignKeyValues.add(values);
+                }
+            }
+            if (foreignKeyValues.isEmpty()) {
+                continue;
+            }
+            Map<String, List<Feature>> features;
+            if (isByReference(attMapping.getClientProperties(), true)) {
+                features = nestedMapping.getBatchedInputFeatures(foreignKeyValues, page.get(0));
+            } else {
+                features = nestedMapping.getBatchedFeatures(foreignKeyValues, reprojection, page
+                        .get(0), selectedProperties.get(attMapping), includeMandatory);
+            }
+            if (features != null) {
+                nestedFeatures.put(nestedMapping, features);
+            }
+        }
+    }
+
+    /**
+     * Returns the nested features of a link value fetched with the current or previous page of
+     * source features, or null if they haven't been fetched.
+     */
+    private List<Feature> getFetchedNestedFeatures(NestedAttributeMapping nestedMapping,
+            Object foreignKeyValue) {
+        String key = NestedAttributeMapping.toKey(foreignKeyValue);
+        List<Feature> features = getFetchedNestedFeatures(nestedFeatures, nestedMapping, key);
+        if (features == null) {
+            // the last source feature of a page is only built once the next page is read
+            features = getFetchedNestedFeatures(previousNestedFeatures, nestedMapping, key);
+        }
+        return features;
+    }
+
+    private static List<Feature> getFetchedNestedFeatures(
+            Map<NestedAttributeMapping, Map<String, List<Feature>>> fetched,
+            NestedAttributeMapping nestedMapping, String key) {
+        if (fetched == null || key == null) {
+            return null;
+        }
+        Map<String, List<Feature>> features = fetched.get(nestedMapping);
+        return features == null ? null : features.get(key);
+    }
+
+    /**
+     * Get the nested features of a link value, from the fetched pages if possible.
+     */
+    private List<Feature> getNestedFeatures(NestedAttributeMapping nestedMapping, Object val,
+            Object source, boolean isHRefLink, List<PropertyName> selectedProperties)
+            throws IOException {
+        if (nestedBatchIterator != null) {
+            List<Feature> features = getFetchedNestedFeatures(nestedMapping, val);
+            if (features != null) {
+                return features;
+            }
+        }
+        if (isHRefLink) {
+            // get the input features to avoid infinite loop in case the nested
+            // feature type also have a reference back to this type
+            // eg. gsml:GeologicUnit/gsml:occurence/gsml:MappedFeature
+            // and gsml:MappedFeature/gsml:specification/gsml:GeologicUnit
+            return nestedMapping.getInputFeatures(this, val, getIdValues(source), source,
+                    reprojection, selectedProperties, includeMandatory);
+        }
+        return nestedMapping.getFeatures(this, val, getIdValues(source), reprojection, source,
+                selectedProperties, includeMandatory);
+    }
+
+    /**
+     * Unwraps the link value of a multi-valued nested attribute.
+     */
+    private static Object getLinkValue(Object val) {
+        if (val instanceof Attribute) {
+            val = ((Attribute) val).getValue();
+            if (val instanceof Collection) {
+                val = ((Collection) val).iterator().next();
+            }
+            while (val instanceof Attribute) {
+                val = ((Attribute) val).getValue();
+            }
+        }
+        return val;
+    }
+
+    /**
+     * Reads the source features by pages, fetching the nested features of each page before
+     * handing out its features.
+     */
+    private class NestedBatchIterator implements Iterator<SimpleFeature> {
+        private final Iterator<SimpleFeature> delegate;
+
+        private final int batchSize;
+
+        private final LinkedList<SimpleFeature> page = new LinkedList<SimpleFeature>();
+
+        NestedBatchIterator(Iterator<SimpleFeature> delegate, int batchSize) {
+            this.delegate = delegate;
+            this.batchSize = batchSize;
+        }
+
+        public boolean hasNext() {
+            if (page.isEmpty()) {
+                while (page.size() < batchSize && delegate.hasNext()) {
+                    page.add(delegate.next());
+                }
+                if (!page.isEmpty()) {
+                    try {
+                        fetchNestedFeatures(page);
+                    } catch (IOException e) {
+                        // nested features will be fetched feature by feature
+                        LOGGER.log(Level.WARNING, "Failed to fetch nested features by batch", e);
+                        nestedFeatures = null;
+                    }
+                }
+            }
+            return !page.isEmpty();
+        }
+
+        public SimpleFeature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.removeFirst();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     protected boolean isSourceFeatureIteratorNull() {
         return getSourceFeatureIterator() == null;
     }
@@ -334,6 +531,17 @@ public class DataAccessMappingFeatureIterator extends AbstractMappingFeatureIter
         }
         if (!(this instanceof XmlMappingFeatureIterator)) {
             this.sourceFeatureIterator = sourceFeatures.iterator();
+
+            int batchSize = getNestedBatchSize();
+            if (batchSize > 1) {
+                for (AttributeMapping attMapping : selectedMapping) {
+                    if (isBatchable(attMapping)) {
+                        nestedBatchIterator = new NestedBatchIterator(sourceFeatureIterator,
+                                batchSize);
+                        break;
+                    }
+                }
+            }
         }
 
         // NC - joining nested atts
@@ -465,37 +673,17 @@ public class DataAccessMappingFeatureIterator extends AbstractMappingFeatureIter
                 ArrayList<Feature> nestedFeatures = new ArrayList<Feature>(((Collection) values)
                         .size());
                 for (Object val : (Collection) values) {
-                    if (val instanceof Attribute) {
-                        val = ((Attribute) val).getValue();
-                        if (val instanceof Collection) {
-                            val = ((Collection) val).iterator().next();
-                        }
-                        while (val instanceof Attribute) {
-                            val = ((Attribute) val).getValue();
-                        }
-                    }
-                    if (isHRefLink) {
-                        // get the input features to avoid infinite loop in case the nested
-                        // feature type also have a reference back to this type
-                        // eg. gsml:GeologicUnit/gsml:occurence/gsml:MappedFeature
-                        // and gsml:MappedFeature/gsml:specification/gsml:GeologicUnit
-                        nestedFeatures.addAll(((NestedAttributeMapping) attMapping)
-                                .getInputFeatures(this, val, getIdValues(source), source, reprojection, selectedProperties, includeMandatory));
-                    } else {
-                        nestedFeatures.addAll(((NestedAttributeMapping) attMapping).getFeatures(
-                                this, val, getIdValues(source), reprojection, source, selectedProperties, includeMandatory));
+                    val = getLinkValue(val);
+                    List<Feature> features = getNestedFeatures((NestedAttributeMapping) attMapping,
+                            val, source, isHRefLink, selectedProperties);
+                    if (features != null) {
+                        nestedFeatures.addAll(features);
                     }
                 }
                 values = nestedFeatures;
-            } else if (isHRefLink) {
-                // get the input features to avoid infinite loop in case the nested
-                // feature type also have a reference back to this type
-                // eg. gsml:GeologicUnit/gsml:occurence/gsml:MappedFeature
-                // and gsml:MappedFeature/gsml:specification/gsml:GeologicUnit
-                values = ((NestedAttributeMapping) attMapping).getInputFeatures(this, values, getIdValues(source), source, reprojection, selectedProperties, includeMandatory);
             } else {
-                values = ((NestedAttributeMapping) attMapping).getFeatures(this, values, getIdValues(source), reprojection,
-                        source, selectedProperties, includeMandatory);
+                values = getNestedFeatures((NestedAttributeMapping) attMapping, values, source,
+                        isHRefLink, selectedProperties);
             }
             if (isHRefLink) {
                 // only need to set the href link value, not the nested feature properties
@@ -877,6 +1065,9 @@ public class DataAccessMappingFeatureIterator extends AbstractMappingFeatureIter
             sourceFeatureIterator = null;
             sourceFeatures = null;
             filteredFeatures = null;
+            nestedBatchIterator = null;
+            nestedFeatures = null;
+            previousNestedFeatures = null;
 
             //NC - joining nested atts
             for (AttributeMapping attMapping : selectedMapping) {
@@ -58,6 +58,12 @@ public class FilteringMappingFeatureIterator extends DataAccessMappingFeatureIte
         listFeatureIterator = IteratorUtils.toListIterator(super.getSourceFeatureIterator());
     }
 
+    @Override
+    protected int getNestedBatchSize() {
+        // all the source features are read upfront, most of them might be filtered out
+        return 0;
+    }
+
     @Override
     protected void closeSourceFeatures() {
         super.closeSourceFeatures();
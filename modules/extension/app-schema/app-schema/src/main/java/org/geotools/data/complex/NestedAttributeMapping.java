@@ -19,10 +19,14 @@ package org.geotools.data.complex;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.geotools.data.FeatureSource;
@@ -35,6 +39,7 @@ import org.geotools.feature.Types;
 import org.geotools.filter.AttributeExpressionImpl;
 import org.geotools.filter.FilterFactoryImplNamespaceAware;
 import org.geotools.util.Converters;
+import org.opengis.feature.Attribute;
 import org.opengis.feature.Feature;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.feature.type.Name;
@@ -153,6 +158,19 @@ public class NestedAttributeMapping extends AttributeMapping {
             throw new UnsupportedOperationException(
                     "Link field is missing from feature chaining mapping!");
         }                        
+        if (!initInputSource(feature)) {
+            return Collections.EMPTY_LIST;
+        }
+                
+        return getFilteredFeatures(foreignKeyValue);        
+    }
+
+    /**
+     * Looks up the input feature source of the nested features, unless already known.
+     * 
+     * @return false if the nested features can't be found for this feature
+     */
+    private boolean initInputSource(Object feature) throws IOException {
         if (source == null || !(nestedFeatureType instanceof AttributeExpressionImpl)) {
             // We can't initiate this in the constructor because the feature type mapping
             // might not be built yet.
@@ -160,13 +178,13 @@ public class NestedAttributeMapping extends AttributeMapping {
             if (featureTypeName == null || !(featureTypeName instanceof Name)) {
                 // this could be legitimate, for some null values polymorphism use case
                 // or that it's set to be xlink:href
-                return Collections.EMPTY_LIST;
+                return false;
             }
             FeatureTypeMapping featureTypeMapping = AppSchemaDataAccessRegistry
                     .getMappingByName((Name) featureTypeName);
             if (featureTypeMapping == null) {
             	LOGGER.info("FeatureTypeMapping for '" + featureTypeName + "' not found when evaluating filter!");
-            	return Collections.EMPTY_LIST;
+            	return false;
             }
             
             nestedIdExpression = featureTypeMapping.getFeatureIdExpression();
@@ -175,7 +193,7 @@ public class NestedAttributeMapping extends AttributeMapping {
             
             if (source == null) {
             	LOGGER.info("Feature source for '" + featureTypeName + "' not found when evaluating filter");
-            	return Collections.EMPTY_LIST;
+            	return false;
             }
 
             // find source expression on nested features side
@@ -186,9 +204,8 @@ public class NestedAttributeMapping extends AttributeMapping {
                         + this.nestedTargetXPath + "'!");
             }
             nestedSourceExpression = mappings.get(0).getSourceExpression();
-        }    
-                
-        return getFilteredFeatures(foreignKeyValue);        
+        }
+        return true;
     }
     
     private List<Feature> getFilteredFeatures(Object foreignKeyValue) throws IOException {   
@@ -381,6 +398,252 @@ public class NestedAttributeMapping extends AttributeMapping {
         return matchingFeatures;
     }
 
+    /**
+     * Get the matching input features for several link values at once, with a single query on
+     * the nested features source instead of one per link value.
+     * 
+     * @param foreignKeyValues
+     *            the link values
+     * @param feature
+     *            a parent feature, used to find the nested feature type
+     * @return the matching input features of each link value, keyed by {@link #toKey(Object)},
+     *         or null if the nested features can't be fetched in batch
+     * @throws IOException
+     */
+    public Map<String, List<Feature>> getBatchedInputFeatures(Collection<Object> foreignKeyValues,
+            Object feature) throws IOException {
+        if (isSameSource()) {
+            throw new UnsupportedOperationException(
+                    "Link field is missing from feature chaining mapping!");
+        }
+        if (!initInputSource(feature) || nestedSourceExpression == null) {
+            return null;
+        }
+        Map<String, List<Feature>> groups = createGroups(foreignKeyValues);
+        // the keys of each nested feature id, to regroup the rows of denormalised views
+        Map<String, Set<String>> idKeys = new HashMap<String, Set<String>>();
+        int matched = 0;
+
+        FeatureIterator<Feature> it = source.getFeatures(
+                createLinkFilter(nestedSourceExpression, foreignKeyValues)).features();
+        try {
+            while (it.hasNext()) {
+                Feature f = it.next();
+                boolean isMatching = false;
+                for (String key : getKeys(nestedSourceExpression.evaluate(f))) {
+                    List<Feature> group = groups.get(key);
+                    if (group != null) {
+                        group.add(f);
+                        addKey(idKeys, getSourceId(f), key);
+                        isMatching = true;
+                    }
+                }
+                if (isMatching) {
+                    matched++;
+                }
+            }
+        } finally {
+            it.close();
+        }
+
+        // Find features of the same id from denormalised view
+        idKeys.remove(null);
+        if (!idKeys.isEmpty()) {
+            Filter matchingIdFilter;
+            if (nestedIdExpression.equals(Expression.NIL)) {
+                Set<FeatureId> featureIds = new HashSet<FeatureId>();
+                for (String id : idKeys.keySet()) {
+                    featureIds.add(filterFac.featureId(id));
+                }
+                matchingIdFilter = filterFac.id(featureIds);
+            } else {
+                List<Filter> idFilters = new ArrayList<Filter>(idKeys.size());
+                for (String id : idKeys.keySet()) {
+                    idFilters.add(filterFac.equals(nestedIdExpression, filterFac.literal(id)));
+                }
+                matchingIdFilter = filterFac.or(idFilters);
+            }
+            FeatureCollection<FeatureType, Feature> fCollection = source
+                    .getFeatures(matchingIdFilter);
+            if (fCollection.size() > matched) {
+                // there are rows of same id from denormalised view
+                for (List<Feature> group : groups.values()) {
+                    group.clear();
+                }
+                it = fCollection.features();
+                try {
+                    while (it.hasNext()) {
+                        Feature f = it.next();
+                        Set<String> keys = idKeys.get(getSourceId(f));
+                        if (keys != null) {
+                            for (String key : keys) {
+                                groups.get(key).add(f);
+                            }
+                        }
+                    }
+                } finally {
+                    it.close();
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Get the matching built features for several link values at once. The nested features are
+     * fetched with a single query on the mapped feature source instead of one per link value, and
+     * grouped by link value using the ids of the matching input features.
+     * 
+     * @param foreignKeyValues
+     *            the link values
+     * @param reprojection
+     *            Reprojected CRS or null
+     * @param feature
+     *            a parent feature, used to find the nested feature type
+     * @param selectedProperties
+     *            list of properties to get
+     * @return the matching features of each link value, keyed by {@link #toKey(Object)}, or null
+     *         if the nested features can't be fetched in batch
+     * @throws IOException
+     */
+    public Map<String, List<Feature>> getBatchedFeatures(Collection<Object> foreignKeyValues,
+            CoordinateReferenceSystem reprojection, Object feature,
+            List<PropertyName> selectedProperties, boolean includeMandatory) throws IOException {
+        if (isSameSource()) {
+            throw new UnsupportedOperationException(
+                    "Link field is missing from feature chaining mapping!");
+        }
+        FeatureSource<FeatureType, Feature> fSource = getMappingSource(feature);
+        if (fSource == null || !initInputSource(feature) || nestedSourceExpression == null) {
+            return null;
+        }
+
+        // find out which nested features match each link value
+        Map<String, Set<String>> idKeys = new HashMap<String, Set<String>>();
+        FeatureIterator<Feature> it = source.getFeatures(
+                createLinkFilter(nestedSourceExpression, foreignKeyValues)).features();
+        try {
+            while (it.hasNext()) {
+                Feature f = it.next();
+                String id = getSourceId(f);
+                for (String key : getKeys(nestedSourceExpression.evaluate(f))) {
+                    addKey(idKeys, id, key);
+                }
+            }
+        } finally {
+            it.close();
+        }
+
+        Map<String, List<Feature>> groups = createGroups(foreignKeyValues);
+        if (idKeys.isEmpty()) {
+            return groups;
+        }
+
+        Query query = new Query();
+        query.setCoordinateSystemReproject(reprojection);
+        PropertyName propertyName = filterFac.property(this.nestedTargetXPath.toString());
+        query.setFilter(createLinkFilter(propertyName, foreignKeyValues));
+
+        if (selectedProperties != null) {
+            selectedProperties = new ArrayList<PropertyName>(selectedProperties);
+            selectedProperties.add(propertyName);
+        }
+
+        final Hints hints = new Hints();
+        hints.put(Query.INCLUDE_MANDATORY_PROPS, includeMandatory);
+        query.setHints(hints);
+
+        query.setProperties(selectedProperties);
+
+        // get all the mapped nested features based on the link values
+        FeatureCollection<FeatureType, Feature> fCollection = fSource.getFeatures(query);
+        if (fCollection instanceof MappingFeatureCollection) {
+            FeatureIterator<Feature> iterator = fCollection.features();
+            try {
+                while (iterator.hasNext()) {
+                    Feature f = iterator.next();
+                    Set<String> keys = f.getIdentifier() == null ? null : idKeys.get(f
+                            .getIdentifier().getID());
+                    if (keys != null) {
+                        for (String key : keys) {
+                            groups.get(key).add(f);
+                        }
+                    }
+                }
+            } finally {
+                iterator.close();
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the key of a link value in the maps returned by
+     * {@link #getBatchedFeatures} and {@link #getBatchedInputFeatures}.
+     */
+    public static String toKey(Object foreignKeyValue) {
+        return Converters.convert(foreignKeyValue, String.class);
+    }
+
+    private Map<String, List<Feature>> createGroups(Collection<Object> foreignKeyValues) {
+        Map<String, List<Feature>> groups = new LinkedHashMap<String, List<Feature>>();
+        for (Object value : foreignKeyValues) {
+            String key = toKey(value);
+            if (key != null) {
+                groups.put(key, new ArrayList<Feature>());
+            }
+        }
+        return groups;
+    }
+
+    private Filter createLinkFilter(Expression linkExpression, Collection<Object> foreignKeyValues) {
+        List<Filter> filters = new ArrayList<Filter>(foreignKeyValues.size());
+        for (Object value : foreignKeyValues) {
+            filters.add(filterFac.equals(linkExpression, filterFac.literal(value)));
+        }
+        return filters.size() == 1 ? filters.get(0) : filterFac.or(filters);
+    }
+
+    /**
+     * Returns the id of the nested feature built from an input feature.
+     */
+    private String getSourceId(Feature f) {
+        if (nestedIdExpression.equals(Expression.NIL)) {
+            return f.getIdentifier() == null ? null : f.getIdentifier().getID();
+        }
+        return nestedIdExpression.evaluate(f, String.class);
+    }
+
+    /**
+     * Returns the keys of a link value evaluated on an input feature, which can be multi-valued.
+     */
+    private static Set<String> getKeys(Object value) {
+        Set<String> keys = new HashSet<String>();
+        addKeys(value, keys);
+        return keys;
+    }
+
+    private static void addKeys(Object value, Set<String> keys) {
+        if (value instanceof Collection) {
+            for (Object o : (Collection) value) {
+                addKeys(o, keys);
+            }
+        } else if (value instanceof Attribute) {
+            addKeys(((Attribute) value).getValue(), keys);
+        } else if (value != null) {
+            keys.add(toKey(value));
+        }
+    }
+
+    private static void addKey(Map<String, Set<String>> idKeys, String id, String key) {
+        Set<String> keys = idKeys.get(id);
+        if (keys == null) {
+            keys = new HashSet<String>();
+            idKeys.put(id, keys);
+        }
+        keys.add(key);
+    }
+
     protected FeatureSource<FeatureType, Feature> getMappingSource(Object feature)
             throws IOException {
 
@@ -100,6 +100,8 @@ public class AppSchemaDataAccessConfigurator {
     
     public static String PROPERTY_JOINING = "app-schema.joining"; 
 
+    public static String PROPERTY_NESTED_BATCH_SIZE = "app-schema.nestedBatchSize";
+
     /** DOCUMENT ME! */
     private AppSchemaDataAccessDTO config;
 
@@ -124,6 +126,24 @@ public class AppSchemaDataAccessConfigurator {
         return s!=null && s.equalsIgnoreCase("true");
     }
 
+    /**
+     * Convenience method for "nestedBatchSize" property.
+     * @return the number of parent features whose nested features are fetched together, 
+     *         or 0 if nested features are fetched one parent at a time
+     */
+    public static int getNestedBatchSize() {
+        String s=AppSchemaDataAccessRegistry.getAppSchemaProperties().getProperty(PROPERTY_NESTED_BATCH_SIZE);
+        if (s == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(s.trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Invalid value for " + PROPERTY_NESTED_BATCH_SIZE + ": " + s);
+            return 0;
+        }
+    }
+
     /**
      * Creates a new ComplexDataStoreConfigurator object.
      * 
@@ -0,0 +1,43 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+
+package org.geotools.data.complex;
+
+import org.geotools.data.complex.config.AppSchemaDataAccessConfigurator;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/**
+ * Runs the {@link FeatureChainingTest} tests with nested features fetched by batches of source
+ * features, smaller than the test data so that nested features span several batches.
+ * 
+ * @source $URL$
+ */
+public class NestedBatchingTest extends FeatureChainingTest {
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        System.setProperty(AppSchemaDataAccessConfigurator.PROPERTY_NESTED_BATCH_SIZE, "3");
+        AppSchemaDataAccessRegistry.clearAppSchemaProperties();
+        FeatureChainingTest.setUpBeforeClass();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        System.clearProperty(AppSchemaDataAccessConfigurator.PROPERTY_NESTED_BATCH_SIZE);
+    }
+}
@@ -24,6 +24,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -140,6 +145,9 @@ public class ValidationProcessor {
     /** List of feature types that have been modified. */
     protected ArrayList modifiedFeatureTypes;
 
+    /** Number of integrity validations run at the same time. */
+    private int parallelism = 1;
+
     /**
      * ValidationProcessor constructor.
      * 
@@ -152,6 +160,36 @@ public class ValidationProcessor {
         integrityLookup = new HashMap();
     }
 
+    /**
+     * Number of integrity validations run at the same time by runIntegrityTests().
+     *
+     * @return the number of threads used, 1 if validations are run one after another
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of integrity validations run at the same time by
+     * runIntegrityTests().
+     * 
+     * <p>
+     * Validations run in parallel report to their own results, which are
+     * replayed in the order the validations would have been run in, so that
+     * the ValidationResults visitor sees the same messages in the same order
+     * whatever the parallelism. The validations must not share state.
+     * </p>
+     *
+     * @param parallelism the number of threads to use, 1 (the default) to run
+     *        validations one after another
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
     /**
      * addToLookup
      * 
@@ -453,31 +491,118 @@ public class ValidationProcessor {
         LOGGER.finer("Validation test about to run - " + tests.size()
             + " tests found");
 
+        if ((parallelism > 1) && (tests.size() > 1)) {
+            runIntegrityTests(tests, stores, envelope, results);
+
+            return;
+        }
+
         for (Iterator j = tests.iterator(); j.hasNext();) {
             IntegrityValidation validator = (IntegrityValidation) j.next();
 
             LOGGER.finer("Running test:" + validator.getName());
             results.setValidation(validator);
+            runIntegrityTest(validator, stores, envelope, results);
+        }
+    }
 
-            try {
-                boolean success = validator.validate(stores, envelope, results);
+    /**
+     * Runs the integrity tests in parallel, each one reporting to its own
+     * RecordedResults, then replays the results in the order of the tests.
+     */
+    private void runIntegrityTests(List tests, final Map stores,
+        final ReferencedEnvelope envelope, ValidationResults results)
+        throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+                    parallelism, tests.size()));
 
-                if (!success) {
-                    results.error(null, "Was not successful");
-                }
-            } catch (Throwable e) {
-                LOGGER.finer("Validation test died:" + validator.getName());
+        try {
+            List futures = new ArrayList();
 
-                String error = e.getClass().getName();
+            for (Iterator j = tests.iterator(); j.hasNext();) {
+                final IntegrityValidation validator = (IntegrityValidation) j.next();
+                futures.add(executor.submit(
+                        new Callable<RecordedResults>() {
+                        public RecordedResults call() {
+                            LOGGER.finer("Running test:" + validator.getName());
 
-                if (e.getMessage() != null) {
-                    error += (" - " + e.getMessage());
+                            RecordedResults recorded = new RecordedResults();
+                            runIntegrityTest(validator, stores, envelope, recorded);
+
+                            return recorded;
+                        }
+                    }));
+            }
+
+            for (int i = 0; i < tests.size(); i++) {
+                results.setValidation((IntegrityValidation) tests.get(i));
+
+                try {
+                    ((Future<RecordedResults>) futures.get(i)).get().replay(results);
+                } catch (ExecutionException e) {
+                    // runIntegrityTest reports failures, this is unexpected
+                    throw (e.getCause() instanceof Exception)
+                    ? (Exception) e.getCause() : e;
                 }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs an integrity test, reporting its failure to the results.
+     */
+    private void runIntegrityTest(IntegrityValidation validator, Map stores,
+        ReferencedEnvelope envelope, ValidationResults results) {
+        try {
+            boolean success = validator.validate(stores, envelope, results);
+
+            if (!success) {
+                results.error(null, "Was not successful");
+            }
+        } catch (Throwable e) {
+            LOGGER.finer("Validation test died:" + validator.getName());
+
+            String error = e.getClass().getName();
 
-                LOGGER.log(Level.WARNING,
-                    validator.getName() + " failed with " + error, e);
-                e.printStackTrace();
-                results.error(null, error);
+            if (e.getMessage() != null) {
+                error += (" - " + e.getMessage());
+            }
+
+            LOGGER.log(Level.WARNING,
+                validator.getName() + " failed with " + error, e);
+            e.printStackTrace();
+            results.error(null, error);
+        }
+    }
+
+    /**
+     * Records the errors and warnings of a validation, to report them later.
+     */
+    private static class RecordedResults implements ValidationResults {
+        /** Features and messages, errors and warnings mixed in reporting order */
+        private final List<Object[]> messages = new ArrayList<Object[]>();
+
+        public void setValidation(Validation validation) {
+            // the validation is set when replaying
+        }
+
+        public void error(SimpleFeature feature, String message) {
+            messages.add(new Object[] { Boolean.TRUE, feature, message });
+        }
+
+        public void warning(SimpleFeature feature, String message) {
+            messages.add(new Object[] { Boolean.FALSE, feature, message });
+        }
+
+        void replay(ValidationResults results) {
+            for (Object[] m : messages) {
+                if (Boolean.TRUE.equals(m[0])) {
+                    results.error((SimpleFeature) m[1], (String) m[2]);
+                } else {
+                    results.warning((SimpleFeature) m[1], (String) m[2]);
+                }
             }
         }
     }
@@ -0,0 +1,97 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.validation.spatial;
+
+import java.util.BitSet;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * LayerIndex purpose.
+ *
+ * <p>
+ * An STR tree over the default geometries of the features of a layer, used by the validations
+ * comparing two layers to only test the pairs of features whose envelopes intersect, instead
+ * of every feature of one layer against every feature of the other.
+ * </p>
+ *
+ * <p>
+ * This is only correct for relations implying that the envelopes intersect (overlaps,
+ * touches, crosses, within...). Features are identified by their position in the layer, so
+ * that the pairs can be visited in the same order as a nested loop would.
+ * </p>
+ *
+ * @source $URL$
+ */
+final class LayerIndex {
+    private final Object[] features;
+
+    private final STRtree tree = new STRtree();
+
+    /**
+     * Indexes the features of a layer.
+     *
+     * @param features the features of the layer, as returned by the toArray() of a feature
+     *        collection
+     */
+    LayerIndex(Object[] features) {
+        this.features = features;
+        for (int i = 0; i < features.length; i++) {
+            Geometry geometry = getGeometry(i);
+            if (geometry != null) {
+                tree.insert(geometry.getEnvelopeInternal(), Integer.valueOf(i));
+            }
+        }
+        tree.build();
+    }
+
+    int size() {
+        return features.length;
+    }
+
+    SimpleFeature getFeature(int i) {
+        return (SimpleFeature) features[i];
+    }
+
+    Geometry getGeometry(int i) {
+        return (Geometry) getFeature(i).getDefaultGeometry();
+    }
+
+    /**
+     * Returns the positions of the features whose envelope intersects the given one.
+     */
+    BitSet query(Envelope envelope) {
+        BitSet positions = new BitSet(features.length);
+        for (Object position : tree.query(envelope)) {
+            positions.set(((Integer) position).intValue());
+        }
+        return positions;
+    }
+
+    /**
+     * Prepares a geometry which is going to be compared with several candidates.
+     */
+    static PreparedGeometry prepare(Geometry geometry) {
+        return PreparedGeometryFactory.prepare(geometry);
+    }
+}
@@ -17,6 +17,7 @@
 package org.geotools.validation.spatial;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -27,6 +28,7 @@ import org.opengis.feature.simple.SimpleFeature;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 
 
 /**
@@ -73,7 +75,7 @@ public class LinesNotIntersectValidation extends LineLineAbstractValidation {
      */
     public boolean validate(Map layers, Envelope envelope,
         ValidationResults results) throws Exception {
-        ArrayList geoms = new ArrayList(); // FIDs used for lookup to see if any match
+        ArrayList all = new ArrayList(); // features of all the layers, in reading order
         boolean result = true;
         Iterator it = layers.values().iterator();
 
@@ -85,27 +87,33 @@ public class LinesNotIntersectValidation extends LineLineAbstractValidation {
             try {
                 while (features.hasNext()) // for each feature
                  {
-                    // check if it intersects any of the previous features
-                    SimpleFeature feature = features.next();
-                    Geometry geom = (Geometry) feature.getDefaultGeometry();
-
-                    for (int i = 0; i < geoms.size(); i++) // for each existing geometry
-                     {
-                        // I don't trust this thing to work correctly
-                        if (geom.crosses((Geometry) geoms.get(i))) {
-                            results.error(feature,
-                                "Lines cross when they shouldn't.");
-                            result = false;
-                        }
-                    }
-
-                    geoms.add(geom);
+                    all.add(features.next());
                 }
             } finally {
                 features.close(); // this is an important line    
             }
         }
 
+        LayerIndex index = new LayerIndex(all.toArray());
+        for (int k = 0; k < index.size(); k++) {
+            // check if it intersects any of the previous features
+            SimpleFeature feature = index.getFeature(k);
+            Geometry geom = index.getGeometry(k);
+            PreparedGeometry prepared = LayerIndex.prepare(geom);
+
+            // only lines whose envelopes intersect can cross
+            BitSet candidates = index.query(geom.getEnvelopeInternal());
+            for (int i = candidates.nextSetBit(0); i >= 0 && i < k; i = candidates.nextSetBit(i + 1)) // for each previous geometry
+             {
+                // I don't trust this thing to work correctly
+                if (prepared.crosses(index.getGeometry(i))) {
+                    results.error(feature,
+                        "Lines cross when they shouldn't.");
+                    result = false;
+                }
+            }
+        }
+
         return result;
     }
 
@@ -16,6 +16,7 @@
  */
 package org.geotools.validation.spatial;
 
+import java.util.BitSet;
 import java.util.Map;
 
 import org.geotools.data.simple.SimpleFeatureSource;
@@ -24,6 +25,7 @@ import org.opengis.feature.simple.SimpleFeature;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 
 
 /**
@@ -93,15 +95,19 @@ public class LinesNotOverlapValidation extends LineLineAbstractValidation {
 
         boolean r = true;
 
+        LayerIndex index1 = new LayerIndex(lines1);
         for (int i = 0; i < lines2.length; i++) {
             SimpleFeature tmp = (SimpleFeature) lines2[i];
             Geometry gt = (Geometry) tmp.getDefaultGeometry();
+            PreparedGeometry prepared = LayerIndex.prepare(gt);
 
-            for (int j = 0; j < lines1.length; j++) {
-                SimpleFeature tmp2 = (SimpleFeature) lines1[j];
-                Geometry gt2 = (Geometry) tmp2.getDefaultGeometry();
+            // only lines whose envelopes intersect can overlap
+            BitSet candidates = index1.query(gt.getEnvelopeInternal());
+            for (int j = candidates.nextSetBit(0); j >= 0; j = candidates.nextSetBit(j + 1)) {
+                SimpleFeature tmp2 = index1.getFeature(j);
+                Geometry gt2 = index1.getGeometry(j);
 
-                if (gt.overlaps(gt2)) {
+                if (prepared.overlaps(gt2)) {
                     results.error(tmp,
                         "Overlaps with another line specified. Id="
                         + tmp2.getID());
@@ -16,6 +16,7 @@
  */
 package org.geotools.validation.spatial;
 
+import java.util.BitSet;
 import java.util.Map;
 
 import org.geotools.data.simple.SimpleFeatureSource;
@@ -24,6 +25,7 @@ import org.opengis.feature.simple.SimpleFeature;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 
 
 /**
@@ -92,15 +94,19 @@ public class PolygonNotCoveredByPolygonValidation
             return false;
         }
 
+        LayerIndex index1 = new LayerIndex(poly1);
         for (int i = 0; i < poly2.length; i++) {
             SimpleFeature tmp = (SimpleFeature) poly2[i];
             Geometry gt = (Geometry) tmp.getDefaultGeometry();
+            PreparedGeometry prepared = LayerIndex.prepare(gt);
 
-            for (int j = 0; j < poly1.length; j++) {
-                SimpleFeature tmp2 = (SimpleFeature) poly1[j];
-                Geometry gt2 = (Geometry) tmp2.getDefaultGeometry();
+            // only polygons whose envelopes intersect can be within gt
+            BitSet candidates = index1.query(gt.getEnvelopeInternal());
+            for (int j = candidates.nextSetBit(0); j >= 0; j = candidates.nextSetBit(j + 1)) {
+                Geometry gt2 = index1.getGeometry(j);
 
-                if (gt2.within(gt)) {
+                // gt2 within gt
+                if (prepared.contains(gt2)) {
                     return false;
                 }
             }
@@ -16,6 +16,7 @@
  */
 package org.geotools.validation.spatial;
 
+import java.util.BitSet;
 import java.util.Map;
 
 import org.geotools.data.simple.SimpleFeatureSource;
@@ -24,6 +25,7 @@ import org.opengis.feature.simple.SimpleFeature;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 
 
 /**
@@ -85,15 +87,18 @@ public class PolygonNotOverlappingLineValidation
             return false;
         }
 
+        LayerIndex index2 = new LayerIndex(poly2);
         for (int i = 0; i < poly1.length; i++) {
             SimpleFeature tmp = (SimpleFeature) poly1[i];
             Geometry gt = (Geometry) tmp.getDefaultGeometry();
+            PreparedGeometry prepared = LayerIndex.prepare(gt);
 
-            for (int j = 0; j < poly2.length; j++) {
-                SimpleFeature tmp2 = (SimpleFeature) poly2[j];
-                Geometry gt2 = (Geometry) tmp2.getDefaultGeometry();
+            // only lines whose envelopes intersect can touch gt
+            BitSet candidates = index2.query(gt.getEnvelopeInternal());
+            for (int j = candidates.nextSetBit(0); j >= 0; j = candidates.nextSetBit(j + 1)) {
+                Geometry gt2 = index2.getGeometry(j);
 
-                if (gt2.touches(gt)) {
+                if (prepared.touches(gt2)) {
                     return false;
                 }
             }
@@ -16,6 +16,7 @@
  */
 package org.geotools.validation.spatial;
 
+import java.util.BitSet;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -26,6 +27,7 @@ import org.opengis.feature.simple.SimpleFeature;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 
 
 /**
@@ -108,21 +110,28 @@ public class PolygonNotOverlappingPolygonValidation
                 "Restricted Polygon Feature Source is not contained within the Envelope provided.");
             return true;
         }*/
+        LayerIndex index2 = new LayerIndex(poly2);
         boolean success = true;
         for (int i = 0; i < poly1.length; i++) {
         	SimpleFeature tmp = (SimpleFeature) poly1[i];
         	LOGGER.finest("Polgon overlap test for:"+tmp.getID() );
             Geometry gt = (Geometry) tmp.getDefaultGeometry();
+            PreparedGeometry prepared = LayerIndex.prepare(gt);
 
-            for (int j = 0; j < poly2.length; j++) {
+            // only polygons whose envelopes intersect can overlap, when overlapping
+            // is expected the other ones are reported as well
+            BitSet candidates = index2.query(gt.getEnvelopeInternal());
+            int j = expected ? 0 : candidates.nextSetBit(0);
+            while (j >= 0 && j < poly2.length) {
                 SimpleFeature tmp2 = (SimpleFeature) poly2[j];
                 LOGGER.finest("Polgon overlap test against:"+tmp2.getID() );                
                 Geometry gt2 = (Geometry) tmp2.getDefaultGeometry();
 
-                if (gt2.overlaps(gt) != expected) {
+                if ((candidates.get(j) && prepared.overlaps(gt2)) != expected) {
                 	results.error( tmp, "Polygon "+typeRef1+" overlapped Polygon "+typeRef2+"("+tmp2.getID()+") was not "+expected );
                 	success = false;
                 }
+                j = expected ? j + 1 : candidates.nextSetBit(j + 1);
             }
         }
         return success;
@@ -16,16 +16,26 @@
  */
 package org.geotools.validation;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.geotools.data.DataTestCase;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.memory.MemoryDataStore;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.IllegalAttributeException;
+import org.geotools.feature.NameImpl;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.validation.spatial.IsValidGeometryValidation;
+import org.geotools.validation.spatial.LinesNotIntersectValidation;
+import org.geotools.validation.spatial.LinesNotOverlapValidation;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.type.Name;
 
 /**
  * ValidationProcessorTest purpose.
@@ -131,4 +141,60 @@ public class ValidationProcessorTest extends DataTestCase {
 	
 	
 
+
+	public void testParallelIntegrityTests() throws Exception {
+		HashMap map = new HashMap();
+		map.put("ns:road", store.getFeatureSource("road"));
+		map.put("ns:river", store.getFeatureSource("river"));
+		Set<Name> typeRefs = new HashSet<Name>();
+		typeRefs.add(new NameImpl("ns", "road"));
+		ReferencedEnvelope envelope = new ReferencedEnvelope(-100, 100, -100, 100, null);
+
+		for (int i = 0; i < 4; i++) {
+			LinesNotIntersectValidation crossing = new LinesNotIntersectValidation();
+			crossing.setName("crossing" + i);
+			crossing.setLineTypeRef("ns:road");
+			crossing.setRestrictedLineTypeRef("ns:river");
+			processor.addValidation(crossing);
+
+			LinesNotOverlapValidation overlap = new LinesNotOverlapValidation();
+			overlap.setName("overlap" + i);
+			overlap.setLineTypeRef("ns:road");
+			overlap.setRestrictedLineTypeRef("ns:road");
+			processor.addValidation(overlap);
+		}
+
+		List<String> serial = runIntegrityTests(typeRefs, map, envelope);
+		assertFalse(serial.isEmpty());
+
+		processor.setParallelism(4);
+		assertEquals(serial, runIntegrityTests(typeRefs, map, envelope));
+	}
+
+	/**
+	 * Runs the integrity tests, returning the messages prefixed by the validation name.
+	 */
+	List<String> runIntegrityTests(Set<Name> typeRefs, Map stores, ReferencedEnvelope envelope)
+			throws Exception {
+		final List<String> messages = new ArrayList<String>();
+		processor.runIntegrityTests(typeRefs, stores, envelope, new ValidationResults() {
+			String name;
+
+			public void setValidation(Validation validation) {
+				name = validation.getName();
+			}
+
+			public void error(SimpleFeature feature, String message) {
+				messages.add(name + " error " + (feature == null ? null : feature.getID())
+						+ ": " + message);
+			}
+
+			public void warning(SimpleFeature feature, String message) {
+				messages.add(name + " warning " + (feature == null ? null : feature.getID())
+						+ ": " + message);
+			}
+		});
+		return messages;
+	}
+
 }
@@ -38,6 +38,7 @@ import java.util.logging.Logger;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -69,6 +70,7 @@ import org.geotools.xml.impl.GetPropertyExecutor;
 import org.geotools.xml.impl.MismatchedBindingFinder;
 import org.geotools.xml.impl.NamespaceSupportWrapper;
 import org.geotools.xml.impl.SchemaIndexImpl;
+import org.geotools.xml.impl.XMLStreamWriterHandler;
 import org.picocontainer.MutablePicoContainer;
 import org.picocontainer.defaults.DefaultPicoContainer;
 import org.w3c.dom.Attr;
@@ -170,6 +172,9 @@ public class Encoder {
     /** schema location */
     private HashMap schemaLocations;
 
+    /** substitutes of abstract elements, by element and object class */
+    private HashMap substitutes = new HashMap();
+
     /** output format */
     private OutputFormat outputFormat;
 
@@ -575,6 +580,33 @@ public class Encoder {
         }
     }
 
+    /**
+     * Encodes an object to a StAX stream writer.
+     * <p>
+     * Members of collections, such as the features of a feature collection, are pulled from
+     * their iterator one at a time and written as soon as they are encoded, so the memory used
+     * does not grow with the size of the collection. Indenting and the other options of the
+     * output format do not apply, they are up to the writer.
+     * </p>
+     * @param object The object being encoded.
+     * @param name The name of the element being encoded in the schema.
+     * @param writer The stream writer, flushed but not closed once done.
+     *
+     * @throws IOException
+     */
+    public void encode(Object object, QName name, XMLStreamWriter writer)
+        throws IOException {
+        try {
+            encode(object, name, new XMLStreamWriterHandler(writer));
+        }
+        catch (SAXException e) {
+            if (e.getException() != null && e.getCause() == null) {
+                e.initCause(e.getException());
+            }
+            throw (IOException) new IOException().initCause(e);
+        }
+    }
+
     public void encode(Object object, QName name, ContentHandler handler)
         throws IOException, SAXException {
         
@@ -718,117 +750,7 @@ public class Encoder {
 
                 //first make sure the element is not abstract
                 if (entry.element.isAbstract()) {
-                    // look for a non abstract substitute - substitution groups are subject to
-                    // changes over time, so we make a copy to avoid being hit with a ConcurrentModificationException
-                    List sub = safeCopy(entry.element.getSubstitutionGroup());
-
-
-                    if (sub.size() > 0) {
-                        //match up by type
-                        List matches = new ArrayList();
-
-                        for (Iterator s = sub.iterator(); s.hasNext();) {
-                            XSDElementDeclaration e = (XSDElementDeclaration) s.next();
-
-                            if (e == null || e.equals(entry.element)) {
-                                continue;
-                            }
-
-                            if (e.getName() == null) {
-                                continue;
-                            }
-
-                            //look up hte binding
-                            Binding binding = bindingLoader.loadBinding(new QName(
-                                        e.getTargetNamespace(), e.getName()), context);
-
-                            if (binding == null) {
-                                //try the type
-                                XSDTypeDefinition type = e.getType();
-
-                                if (type == null || type.getName() == null) {
-                                    continue;
-                                }
-
-                                binding = bindingLoader.loadBinding(new QName(
-                                            type.getTargetNamespace(), type.getName()), context);
-                            }
-
-                            if (binding == null) {
-                                continue;
-                            }
-
-                            if (binding.getType() == null) {
-                                logger.warning( "Binding: " + binding.getTarget() + " returns null type.");
-                                continue;
-                            }
-
-                            //match up the type
-                            if (binding.getType().isAssignableFrom(entry.object.getClass())) {
-                                //we have a match, store as an (element,binding) tuple
-                                matches.add(new Object[] { e, binding });
-                            }
-                        }
-
-                        //if one, we are gold
-                        if (matches.size() == 1) {
-                            entry.element = (XSDElementDeclaration) ((Object[]) matches.get(0))[0];
-                        }
-                        //if multiple we have a problem
-                        else if (matches.size() > 0) {
-                            if (logger.isLoggable(Level.FINE)) {
-                                StringBuffer msg = new StringBuffer(
-                                        "Found multiple non-abstract bindings for ");
-                                msg.append(entry.element.getName()).append(": ");
-
-                                for (Iterator m = matches.iterator(); m.hasNext();) {
-                                    msg.append(m.next().getClass().getName());
-                                    msg.append(", ");
-                                }
-
-                                logger.fine(msg.toString());
-                            }
-
-                            //try sorting by the type of the binding
-                            Collections.sort(matches,
-                                new Comparator() {
-                                    public int compare(Object o1, Object o2) {
-                                        Object[] match1 = (Object[]) o1;
-                                        Object[] match2 = (Object[]) o2;
-
-                                        Binding b1 = (Binding) match1[1];
-                                        Binding b2 = (Binding) match2[1];
-
-                                        if ( b1.getType() != b2.getType() ) {
-                                            if (b2.getType().isAssignableFrom(b1.getType())) {
-                                                return -1;
-                                            }
-    
-                                            if (b1.getType().isAssignableFrom(b2.getType())) {
-                                                return 1;
-                                            }
-                                        }
-                                        
-                                        //use binding comparability
-                                        if (b1 instanceof Comparable) {
-                                            return ((Comparable) b1).compareTo(b2);
-                                        }
-
-                                        if (b2 instanceof Comparable) {
-                                            return -1 * ((Comparable) b2).compareTo(b1);
-                                        }
-
-                                        return 0;
-                                    }
-                                });
-                        }
-
-                        if (matches.size() > 0) {
-                            entry.element = (XSDElementDeclaration) ((Object[]) matches.get(0))[0];
-                        }
-
-                        //if zero, just use the abstract element
-                    }
+                    entry.element = substitute(entry.element, entry.object);
                 }
 
                 if (entry.element.isAbstract()) {
@@ -1024,6 +946,7 @@ O:
         finally {
             //cleanup
             index.destroy();
+            substitutes.clear();
             
             //close any iterators still present in the stack, this will only occur in an exception
             // case
@@ -1048,6 +971,143 @@ O:
         
     }
     
+    /**
+     * Looks for a non abstract element of the substitution group of an abstract element
+     * matching the object being encoded.
+     * <p>
+     * The result only depends on the element and the class of the object, so it is cached for
+     * the duration of an encoding, to avoid looking up the bindings of the whole substitution
+     * group for every feature or geometry of a collection.
+     * </p>
+     * @return The substitute, or the element itself if none was found.
+     */
+    protected XSDElementDeclaration substitute(XSDElementDeclaration element, Object object) {
+        Map cached = (Map) substitutes.get(element);
+        if (cached == null) {
+            cached = new HashMap();
+            substitutes.put(element, cached);
+        }
+        XSDElementDeclaration substitute = (XSDElementDeclaration) cached.get(object.getClass());
+        if (substitute != null) {
+            return substitute;
+        }
+        substitute = element;
+
+        // look for a non abstract substitute - substitution groups are subject to
+        // changes over time, so we make a copy to avoid being hit with a ConcurrentModificationException
+        List sub = safeCopy(element.getSubstitutionGroup());
+
+        if (sub.size() > 0) {
+            //match up by type
+            List matches = new ArrayList();
+
+            for (Iterator s = sub.iterator(); s.hasNext();) {
+                XSDElementDeclaration e = (XSDElementDeclaration) s.next();
+
+                if (e == null || e.equals(element)) {
+                    continue;
+                }
+
+                if (e.getName() == null) {
+                    continue;
+                }
+
+                //look up hte binding
+                Binding binding = bindingLoader.loadBinding(new QName(
+                            e.getTargetNamespace(), e.getName()), context);
+
+                if (binding == null) {
+                    //try the type
+                    XSDTypeDefinition type = e.getType();
+
+                    if (type == null || type.getName() == null) {
+                        continue;
+                    }
+
+                    binding = bindingLoader.loadBinding(new QName(
+                                type.getTargetNamespace(), type.getName()), context);
+                }
+
+                if (binding == null) {
+                    continue;
+                }
+
+                if (binding.getType() == null) {
+                    logger.warning( "Binding: " + binding.getTarget() + " returns null type.");
+                    continue;
+                }
+
+                //match up the type
+                if (binding.getType().isAssignableFrom(object.getClass())) {
+                    //we have a match, store as an (element,binding) tuple
+                    matches.add(new Object[] { e, binding });
+                }
+            }
+
+            //if one, we are gold
+            if (matches.size() == 1) {
+                substitute = (XSDElementDeclaration) ((Object[]) matches.get(0))[0];
+            }
+            //if multiple we have a problem
+            else if (matches.size() > 0) {
+                if (logger.isLoggable(Level.FINE)) {
+                    StringBuffer msg = new StringBuffer(
+                            "Found multiple non-abstract bindings for ");
+                    msg.append(element.getName()).append(": ");
+
+                    for (Iterator m = matches.iterator(); m.hasNext();) {
+                        msg.append(m.next().getClass().getName());
+                        msg.append(", ");
+                    }
+
+                    logger.fine(msg.toString());
+                }
+
+                //try sorting by the type of the binding
+                Collections.sort(matches,
+                    new Comparator() {
+                        public int compare(Object o1, Object o2) {
+                            Object[] match1 = (Object[]) o1;
+                            Object[] match2 = (Object[]) o2;
+
+                            Binding b1 = (Binding) match1[1];
+                            Binding b2 = (Binding) match2[1];
+
+                            if ( b1.getType() != b2.getType() ) {
+                                if (b2.getType().isAssignableFrom(b1.getType())) {
+                                    return -1;
+                                }
+    
+                                if (b1.getType().isAssignableFrom(b2.getType())) {
+                                    return 1;
+                                }
+                            }
+                            
+                            //use binding comparability
+                            if (b1 instanceof Comparable) {
+                                return ((Comparable) b1).compareTo(b2);
+                            }
+
+                            if (b2 instanceof Comparable) {
+                                return -1 * ((Comparable) b2).compareTo(b1);
+                            }
+
+                            return 0;
+                        }
+                    });
+            }
+
+            if (matches.size() > 0) {
+                substitute = (XSDElementDeclaration) ((Object[]) matches.get(0))[0];
+            }
+
+            //if zero, just use the abstract element
+        }
+
+        cached.put(object.getClass(), substitute);
+        return substitute;
+    }
+    
     /**
      * Makes a defensive copy of an e-list handling the eventual issues due to concurrent modifications
      * @param substitutionGroup
@@ -1170,6 +1230,13 @@ O:
                 Node text = (Node) children.item(i);
                 ((XMLSerializer) serializer).comment(text.getNodeValue());
             }
+        } else if (serializer instanceof XMLStreamWriterHandler) {
+            NodeList children = element.getChildNodes();
+
+            for (int i = 0; i < children.getLength(); i++) {
+                Node text = (Node) children.item(i);
+                ((XMLStreamWriterHandler) serializer).comment(text.getNodeValue());
+            }
         }
     }
 
@@ -50,6 +50,13 @@ public class BindingPropertyExtractor implements PropertyExtractor {
     Encoder encoder;
     MutablePicoContainer context;
 
+    /**
+     * Particles of the properties not infered from the schema, by containing element and name,
+     * single valued first
+     */
+    Map<XSDElementDeclaration, Map<QName, XSDParticle[]>> propertyParticles = 
+        new HashMap<XSDElementDeclaration, Map<QName, XSDParticle[]>>();
+
     public BindingPropertyExtractor(Encoder encoder, MutablePicoContainer context) {
         this.encoder = encoder;
         this.context = context;
@@ -143,60 +150,7 @@ O:
                     continue;
                 }
 
-                //find hte element 
-                XSDElementDeclaration elementDecl = encoder.getSchemaIndex()
-                                                           .getElementDeclaration(name);
-
-                if (elementDecl == null) {
-                    //TODO: resolving like this will return an element no 
-                    // matter what, modifying the underlying schema, this might
-                    // be dangerous. What we shold do is force the schema to 
-                    // resolve all of it simports when the encoder starts
-                    elementDecl = encoder.getSchema()
-                                         .resolveElementDeclaration(name.getNamespaceURI(),
-                            name.getLocalPart());
-                }
-
-                //look for a particle in the containing type which is either 
-                // a) a base type of the element
-                // b) in the same subsittuion group
-                // if found use the particle to dervice multiplicity
-                XSDParticle reference = null;
-                for ( Iterator p = Schemas.getChildElementParticles(element.getType(), true).iterator(); p.hasNext(); ) {
-                    XSDParticle particle = (XSDParticle) p.next();
-                    XSDElementDeclaration el = (XSDElementDeclaration) particle.getContent();
-                    if ( el.isElementDeclarationReference() ) {
-                        el = el.getResolvedElementDeclaration();
-                    }
-                    
-                    if ( Schemas.isBaseType(elementDecl, el) ) {
-                        reference = particle;
-                        break;
-                    }
-                }
-                
-                //wrap the property in a particle
-                XSDParticle particle = XSDFactory.eINSTANCE.createXSDParticle();
-                XSDElementDeclaration wrapper = XSDFactory.eINSTANCE.createXSDElementDeclaration();
-                wrapper.setResolvedElementDeclaration( elementDecl );
-                particle.setContent(wrapper);
-                //particle.setContent(elementDecl);
-
-                //if there is a reference, derive multiplicity
-                if ( reference != null ) {
-                    particle.setMaxOccurs( reference.getMaxOccurs() );
-                }
-                else {
-                    //dervice from collection
-                    if ( values.size() > 1) {
-                        //make a multi property
-                        particle.setMaxOccurs(-1);
-                    } else {
-                        //single property
-                        particle.setMaxOccurs(1);
-                    }    
-                }
-                
+                XSDParticle particle = propertyParticle(element, name, values.size() > 1);
                 particles.put(name, particle);
             }
 
@@ -280,6 +234,88 @@ O:
         }
     }
 
+    /**
+     * Returns the particle wrapping a property which cannot be infered from the schema.
+     * <p>
+     * Looking up the declaration and the multiplicity of a property is costly and gives the same
+     * result for all the features of a type, so the particle is created once per containing
+     * element, property name and multiplicity, and reused.
+     * </p>
+     */
+    XSDParticle propertyParticle(XSDElementDeclaration element, QName name, boolean multiple) {
+        Map<QName, XSDParticle[]> cached = propertyParticles.get(element);
+        if (cached == null) {
+            cached = new HashMap<QName, XSDParticle[]>();
+            propertyParticles.put(element, cached);
+        }
+        XSDParticle[] pair = cached.get(name);
+        if (pair == null) {
+            pair = new XSDParticle[2];
+            cached.put(name, pair);
+        }
+        int index = multiple ? 1 : 0;
+        if (pair[index] != null) {
+            return pair[index];
+        }
+
+        //find hte element 
+        XSDElementDeclaration elementDecl = encoder.getSchemaIndex()
+                                                   .getElementDeclaration(name);
+
+        if (elementDecl == null) {
+            //TODO: resolving like this will return an element no 
+            // matter what, modifying the underlying schema, this might
+            // be dangerous. What we shold do is force the schema to 
+            // resolve all of it simports when the encoder starts
+            elementDecl = encoder.getSchema()
+                                 .resolveElementDeclaration(name.getNamespaceURI(),
+                    name.getLocalPart());
+        }
+
+        //look for a particle in the containing type which is either 
+        // a) a base type of the element
+        // b) in the same subsittuion group
+        // if found use the particle to dervice multiplicity
+        XSDParticle reference = null;
+        for ( Iterator p = Schemas.getChildElementParticles(element.getType(), true).iterator(); p.hasNext(); ) {
+            XSDParticle particle = (XSDParticle) p.next();
+            XSDElementDeclaration el = (XSDElementDeclaration) particle.getContent();
+            if ( el.isElementDeclarationReference() ) {
+                el = el.getResolvedElementDeclaration();
+            }
+            
+            if ( Schemas.isBaseType(elementDecl, el) ) {
+                reference = particle;
+                break;
+            }
+        }
+        
+        //wrap the property in a particle
+        XSDParticle particle = XSDFactory.eINSTANCE.createXSDParticle();
+        XSDElementDeclaration wrapper = XSDFactory.eINSTANCE.createXSDElementDeclaration();
+        wrapper.setResolvedElementDeclaration( elementDecl );
+        particle.setContent(wrapper);
+        //particle.setContent(elementDecl);
+
+        //if there is a reference, derive multiplicity
+        if ( reference != null ) {
+            particle.setMaxOccurs( reference.getMaxOccurs() );
+        }
+        else {
+            //dervice from collection
+            if ( multiple ) {
+                //make a multi property
+                particle.setMaxOccurs(-1);
+            } else {
+                //single property
+                particle.setMaxOccurs(1);
+            }    
+        }
+
+        pair[index] = particle;
+        return particle;
+    }
+
     /**
      * Check whether properties can be sorted to the order as in the "children" list.
      * This is only possible when all properties have references (XSDParticle) in the "children" list. 
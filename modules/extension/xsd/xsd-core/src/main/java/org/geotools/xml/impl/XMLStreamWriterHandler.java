@@ -0,0 +1,176 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.xml.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Content handler forwarding the events produced by the encoder to a {@link XMLStreamWriter}.
+ * <p>
+ * Namespace prefix mappings are declared on the next element started, as a serializer would
+ * do. Nothing is buffered, so the memory used does not depend on the size of the document.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class XMLStreamWriterHandler implements ContentHandler {
+    XMLStreamWriter writer;
+
+    /**
+     * Prefix mappings to declare on the next element, as (prefix,uri) pairs
+     */
+    List<String> mappings = new ArrayList<String>();
+
+    public XMLStreamWriterHandler(XMLStreamWriter writer) {
+        this.writer = writer;
+    }
+
+    public XMLStreamWriter getWriter() {
+        return writer;
+    }
+
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    public void startDocument() throws SAXException {
+        try {
+            writer.writeStartDocument();
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void endDocument() throws SAXException {
+        try {
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        mappings.add(prefix != null ? prefix : "");
+        mappings.add(uri);
+    }
+
+    public void endPrefixMapping(String prefix) throws SAXException {
+        //declared on the next element, nothing to do
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes atts)
+            throws SAXException {
+        try {
+            String prefix = prefix(qName);
+            if (uri == null || "".equals(uri)) {
+                writer.writeStartElement(localName);
+            } else {
+                writer.writeStartElement(prefix, localName, uri);
+            }
+
+            for (int i = 0; i < mappings.size(); i += 2) {
+                String mappedPrefix = mappings.get(i);
+                String mappedUri = mappings.get(i + 1);
+                if ("".equals(mappedPrefix)) {
+                    writer.writeDefaultNamespace(mappedUri);
+                } else {
+                    writer.writeNamespace(mappedPrefix, mappedUri);
+                }
+            }
+            mappings.clear();
+
+            for (int i = 0; i < atts.getLength(); i++) {
+                String attQName = atts.getQName(i);
+                String attPrefix = prefix(attQName);
+                String attUri = atts.getURI(i);
+                String attLocal = atts.getLocalName(i);
+                if (attLocal == null || "".equals(attLocal)) {
+                    attLocal = attQName.substring(attQName.indexOf(':') + 1);
+                }
+
+                if (XMLConstants.XMLNS_ATTRIBUTE.equals(attQName)) {
+                    writer.writeDefaultNamespace(atts.getValue(i));
+                } else if (XMLConstants.XMLNS_ATTRIBUTE.equals(attPrefix)) {
+                    writer.writeNamespace(attLocal, atts.getValue(i));
+                } else if (attUri == null || "".equals(attUri)) {
+                    writer.writeAttribute(attLocal, atts.getValue(i));
+                } else {
+                    writer.writeAttribute(attPrefix, attUri, attLocal, atts.getValue(i));
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        try {
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        try {
+            writer.writeCharacters(ch, start, length);
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    public void processingInstruction(String target, String data) throws SAXException {
+        try {
+            writer.writeProcessingInstruction(target, data);
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void skippedEntity(String name) throws SAXException {
+    }
+
+    /**
+     * Writes a comment.
+     */
+    public void comment(String text) throws SAXException {
+        try {
+            writer.writeComment(text);
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    static String prefix(String qName) {
+        int colon = qName != null ? qName.indexOf(':') : -1;
+        return colon > 0 ? qName.substring(0, colon) : "";
+    }
+}
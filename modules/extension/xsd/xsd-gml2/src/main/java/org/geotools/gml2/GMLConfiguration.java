@@ -51,6 +51,7 @@ import org.geotools.gml2.bindings.GMLPointTypeBinding;
 import org.geotools.gml2.bindings.GMLPolygonMemberTypeBinding;
 import org.geotools.gml2.bindings.GMLPolygonPropertyTypeBinding;
 import org.geotools.gml2.bindings.GMLPolygonTypeBinding;
+import org.geotools.util.DoubleFormatter;
 import org.geotools.xlink.XLINKConfiguration;
 import org.geotools.xml.Configuration;
 import org.geotools.xml.Parser;
@@ -181,5 +182,8 @@ public class GMLConfiguration extends Configuration {
             CoordinateArraySequenceFactory.instance());
         container.registerComponentImplementation(GeometryFactory.class);
         container.registerComponentImplementation(DefaultFeatureCollections.class);
+
+        // ordinate formatter, shared by the coordinate bindings of an encoder
+        container.registerComponentInstance(new DoubleFormatter());
     }
 }
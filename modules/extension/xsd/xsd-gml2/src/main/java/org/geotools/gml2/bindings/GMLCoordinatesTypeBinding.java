@@ -21,6 +21,7 @@ import java.util.StringTokenizer;
 import javax.xml.namespace.QName;
 
 import org.geotools.gml2.GML;
+import org.geotools.util.DoubleFormatter;
 import org.geotools.xml.AbstractComplexBinding;
 import org.geotools.xml.ElementInstance;
 import org.geotools.xml.Node;
@@ -68,9 +69,19 @@ import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
  */
 public class GMLCoordinatesTypeBinding extends AbstractComplexBinding {
     CoordinateSequenceFactory csFactory;
+    DoubleFormatter formatter;
 
     public GMLCoordinatesTypeBinding(CoordinateSequenceFactory csFactory) {
+        this(csFactory, new DoubleFormatter());
+    }
+
+    /**
+     * @param formatter The ordinate formatter, shared by the bindings of a single encoder.
+     */
+    public GMLCoordinatesTypeBinding(CoordinateSequenceFactory csFactory,
+        DoubleFormatter formatter) {
         this.csFactory = csFactory;
+        this.formatter = formatter;
     }
 
     /**
@@ -185,18 +196,20 @@ public class GMLCoordinatesTypeBinding extends AbstractComplexBinding {
 
         for (int i = 0; i < coordinates.size(); i++) {
             Coordinate c = coordinates.getCoordinate(i);
-            buf.append(c.x);
+            formatter.format(c.x, buf);
 
             boolean y = (coordinates.getDimension() > 1) && !new Double(c.y).isNaN();
 
             if (y) {
-                buf.append("," + c.y);
+                buf.append(',');
+                formatter.format(c.y, buf);
             }
 
             boolean z = y && (coordinates.getDimension() > 2) && !new Double(c.z).isNaN();
 
             if (z) {
-                buf.append("," + c.z);
+                buf.append(',');
+                formatter.format(c.z, buf);
             }
 
             if (i < (coordinates.size() - 1)) {
@@ -72,6 +72,7 @@ import org.geotools.gml3.bindings.SurfacePropertyTypeBinding;
 import org.geotools.gml3.bindings.SurfaceTypeBinding;
 import org.geotools.gml3.smil.SMIL20Configuration;
 import org.geotools.gml3.smil.SMIL20LANGConfiguration;
+import org.geotools.util.DoubleFormatter;
 import org.geotools.xlink.XLINKConfiguration;
 import org.geotools.xml.Configuration;
 import org.geotools.xml.Parser;
@@ -291,6 +292,9 @@ public class GMLConfiguration extends Configuration {
         container.registerComponentImplementation(GeometryFactory.class);
         
         container.registerComponentInstance(new GML3EncodingUtils());
+
+        // ordinate formatter, shared by the coordinate bindings of an encoder
+        container.registerComponentInstance(new DoubleFormatter());
         
         if (isExtendedArcSurfaceSupport()) {
             container.registerComponentInstance(new ArcParameters());
@@ -23,6 +23,7 @@ import javax.xml.namespace.QName;
 import org.geotools.geometry.DirectPosition1D;
 import org.geotools.geometry.DirectPosition2D;
 import org.geotools.gml3.GML;
+import org.geotools.util.DoubleFormatter;
 import org.geotools.xml.AbstractComplexBinding;
 import org.geotools.xml.ElementInstance;
 import org.geotools.xml.Node;
@@ -67,6 +68,18 @@ import org.w3c.dom.Element;
  * @source $URL$
  */
 public class DirectPositionListTypeBinding extends AbstractComplexBinding {
+    DoubleFormatter formatter;
+
+    public DirectPositionListTypeBinding() {
+        this(new DoubleFormatter());
+    }
+
+    /**
+     * @param formatter The ordinate formatter, shared by the bindings of a single encoder.
+     */
+    public DirectPositionListTypeBinding(DoubleFormatter formatter) {
+        this.formatter = formatter;
+    }
 
     /**
      * @generated
@@ -149,7 +162,9 @@ public class DirectPositionListTypeBinding extends AbstractComplexBinding {
         StringBuffer sb = new StringBuffer();
 
         for (int i = 0; i < dps.length; i++) {
-            sb.append(dps[i].getOrdinate(0) + " " + dps[i].getOrdinate(1));
+            formatter.format(dps[i].getOrdinate(0), sb);
+            sb.append(' ');
+            formatter.format(dps[i].getOrdinate(1), sb);
 
             if (i < (dps.length - 1)) {
                 sb.append(" ");
@@ -21,6 +21,7 @@ import javax.xml.namespace.QName;
 import org.geotools.geometry.DirectPosition1D;
 import org.geotools.geometry.DirectPosition2D;
 import org.geotools.gml3.GML;
+import org.geotools.util.DoubleFormatter;
 import org.geotools.xml.AbstractComplexBinding;
 import org.geotools.xml.ElementInstance;
 import org.geotools.xml.Node;
@@ -63,9 +64,18 @@ import com.vividsolutions.jts.geom.GeometryFactory;
  */
 public class DirectPositionTypeBinding extends AbstractComplexBinding {
     GeometryFactory factory;
+    DoubleFormatter formatter;
 
     public DirectPositionTypeBinding(GeometryFactory factory) {
+        this(factory, new DoubleFormatter());
+    }
+
+    /**
+     * @param formatter The ordinate formatter, shared by the bindings of a single encoder.
+     */
+    public DirectPositionTypeBinding(GeometryFactory factory, DoubleFormatter formatter) {
         this.factory = factory;
+        this.formatter = formatter;
     }
 
     /**
@@ -124,7 +134,7 @@ public class DirectPositionTypeBinding extends AbstractComplexBinding {
         StringBuffer sb = new StringBuffer();
 
         for (int i = 0; i < coordinates.length; i++) {
-            sb.append(String.valueOf(coordinates[i]));
+            formatter.format(coordinates[i], sb);
 
             if (i != (coordinates.length - 1)) {
                 sb.append(" ");
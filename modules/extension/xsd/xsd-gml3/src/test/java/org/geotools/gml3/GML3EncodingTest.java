@@ -23,11 +23,17 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
 import junit.framework.TestCase;
 
 import org.apache.xerces.parsers.SAXParser;
 import org.eclipse.xsd.XSDSchema;
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.DefaultFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.gml3.bindings.GML3MockData;
 import org.geotools.gml3.bindings.TEST;
 import org.geotools.gml3.bindings.TestConfiguration;
@@ -188,4 +194,39 @@ public class GML3EncodingTest extends TestCase {
         
         assertEquals( 0, dom.getElementsByTagName("gml:boundedBy").getLength());
     }
+    
+    public void testEncodeFeatureCollectionToStreamWriter() throws Exception {
+        SimpleFeature feature = GML3MockData.feature();
+        DefaultFeatureCollection features = new DefaultFeatureCollection(null, 
+                feature.getFeatureType());
+        for (int i = 0; i < 50; i++) {
+            features.add(SimpleFeatureBuilder.build(feature.getFeatureType(), 
+                    feature.getAttributes(), "fid." + i));
+        }
+        TestConfiguration configuration  = new TestConfiguration();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, 
+                "UTF-8");
+        new Encoder(configuration).encode(features, TEST.TestFeatureCollection, writer);
+        writer.close();
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document streamed = factory.newDocumentBuilder().parse(
+                new ByteArrayInputStream(output.toByteArray()));
+        Document expected = new Encoder(configuration).encodeAsDOM(features, 
+                TEST.TestFeatureCollection);
+
+        assertEquals(expected.getDocumentElement().getNamespaceURI(), 
+                streamed.getDocumentElement().getNamespaceURI());
+        assertEquals(expected.getDocumentElement().getLocalName(), 
+                streamed.getDocumentElement().getLocalName());
+        assertEquals(50, streamed.getElementsByTagNameNS(TEST.NAMESPACE, 
+                TEST.TestFeature.getLocalPart()).getLength());
+        assertEquals(expected.getElementsByTagNameNS("*", "*").getLength(), 
+                streamed.getElementsByTagNameNS("*", "*").getLength());
+        assertEquals(expected.getDocumentElement().getTextContent(), 
+                streamed.getDocumentElement().getTextContent());
+    }
 }
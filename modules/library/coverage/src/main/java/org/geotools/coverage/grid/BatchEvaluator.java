@@ -0,0 +1,220 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.coverage.grid;
+
+import java.awt.image.Raster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.media.jai.PlanarImage;
+
+import org.opengis.coverage.CannotEvaluateException;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.TransformException;
+
+
+/**
+ * Evaluates a grid coverage at many points at once. The points are converted to pixel
+ * coordinates in a single transform call, sorted by tile, and each tile is fetched only
+ * once for all the points falling in it. Tiles can be processed in parallel.
+ * <p>
+ * Subclasses define which points can be evaluated, which raster is needed for a tile
+ * and how the samples are computed from that raster.
+ *
+ * @since 8.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+abstract class BatchEvaluator {
+    /**
+     * The image to evaluate.
+     */
+    final PlanarImage image;
+
+    /**
+     * The transform from "real world" coordinates to pixel coordinates, where pixel
+     * (<var>i</var>,<var>j</var>) covers the [<var>i</var>..<var>i</var>+1) and
+     * [<var>j</var>..<var>j</var>+1) ranges.
+     */
+    private final MathTransform2D toGrid;
+
+    /**
+     * Creates an evaluator for the given image.
+     */
+    BatchEvaluator(final PlanarImage image, final MathTransform2D toGrid) {
+        this.image  = image;
+        this.toGrid = toGrid;
+    }
+
+    /**
+     * Returns {@code true} if a value can be computed at the given pixel coordinates.
+     */
+    abstract boolean accept(double x, double y);
+
+    /**
+     * Returns the raster needed for evaluating the points whose pixel falls in the given tile.
+     */
+    abstract Raster getRaster(int tileX, int tileY);
+
+    /**
+     * Computes the values of all bands at the given pixel coordinates.
+     *
+     * @param raster  The raster returned by {@link #getRaster} for the tile containing the point.
+     * @param x       The x pixel coordinate.
+     * @param y       The y pixel coordinate.
+     * @param dest    The array where to store the values.
+     * @param offset  The index of the first band value in {@code dest}.
+     * @param buffer  A work buffer allocated by {@link #createBuffer}, local to the current thread.
+     */
+    abstract void evaluate(Raster raster, double x, double y, double[] dest, int offset, double[][] buffer);
+
+    /**
+     * Returns a work buffer for {@link #evaluate(Raster, double, double, double[], int, double[][])},
+     * or {@code null} if none is needed.
+     */
+    double[][] createBuffer() {
+        return null;
+    }
+
+    /**
+     * Evaluates the coverage at the given points.
+     *
+     * @param  coords   The (<var>x</var>,<var>y</var>) "real world" coordinates of the points.
+     * @param  dest     An array of length {@code coords.length/2 * numBands} where to store the
+     *                  values, or {@code null} for creating a new one.
+     * @param  executor The executor for processing the tiles in parallel, or {@code null}
+     *                  for processing them in the current thread.
+     * @return The band values of each point, or {@link Double#NaN} for the points
+     *         which can not be evaluated.
+     * @throws CannotEvaluateException if the coordinates transform failed.
+     */
+    final double[] evaluate(final double[] coords, double[] dest, final ExecutorService executor)
+            throws CannotEvaluateException
+    {
+        final int numPts   = coords.length / 2;
+        final int numBands = image.getNumBands();
+        if (dest == null) {
+            dest = new double[numPts * numBands];
+        } else if (dest.length < numPts * numBands) {
+            throw new IllegalArgumentException("Destination array too short: " + dest.length);
+        }
+        final double[] pixels = new double[numPts * 2];
+        try {
+            toGrid.transform(coords, 0, pixels, 0, numPts);
+        } catch (TransformException exception) {
+            throw new CannotEvaluateException(exception.getLocalizedMessage(), exception);
+        }
+        /*
+         * Sorts the points by tile. The tile index goes in the upper bits of the keys and the
+         * point index in the lower bits, so sorting the keys groups the points of each tile.
+         * Points outside of the image but accepted by the subclass (border extension) may
+         * fall one tile away from the image tiles, hence the margin of one tile.
+         */
+        final int minTileX = image.getMinTileX() - 1;
+        final int minTileY = image.getMinTileY() - 1;
+        final long tilesPerRow = image.getNumXTiles() + 2;
+        final long[] keys = new long[numPts];
+        int count = 0;
+        for (int i=0; i<numPts; i++) {
+            final double x = pixels[2*i];
+            final double y = pixels[2*i + 1];
+            if (Double.isNaN(x) || Double.isNaN(y) || !accept(x, y)) {
+                Arrays.fill(dest, i * numBands, (i + 1) * numBands, Double.NaN);
+                continue;
+            }
+            final int tileX = image.XToTileX((int) Math.floor(x)) - minTileX;
+            final int tileY = image.YToTileY((int) Math.floor(y)) - minTileY;
+            keys[count++] = ((tileY * tilesPerRow + tileX) << 32) | i;
+        }
+        Arrays.sort(keys, 0, count);
+        /*
+         * Evaluates the points tile by tile.
+         */
+        final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        int start = 0;
+        while (start < count) {
+            final long tile = keys[start] >>> 32;
+            int end = start + 1;
+            while (end < count && (keys[end] >>> 32) == tile) {
+                end++;
+            }
+            final int tileX = (int) (tile % tilesPerRow) + minTileX;
+            final int tileY = (int) (tile / tilesPerRow) + minTileY;
+            final Group group = new Group(keys, start, end, tileX, tileY, pixels, dest, numBands);
+            if (executor == null) {
+                group.call();
+            } else {
+                tasks.add(group);
+            }
+            start = end;
+        }
+        if (!tasks.isEmpty()) {
+            try {
+                for (final Future<Object> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException exception) {
+                throw new CannotEvaluateException(exception.getLocalizedMessage(), exception);
+            } catch (ExecutionException exception) {
+                final Throwable cause = exception.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new CannotEvaluateException(cause.getLocalizedMessage(), exception);
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * The points falling in the same tile.
+     */
+    private final class Group implements Callable<Object> {
+        private final long[] keys;
+        private final int start, end, tileX, tileY, numBands;
+        private final double[] pixels, dest;
+
+        Group(final long[] keys, final int start, final int end, final int tileX, final int tileY,
+              final double[] pixels, final double[] dest, final int numBands)
+        {
+            this.keys     = keys;
+            this.start    = start;
+            this.end      = end;
+            this.tileX    = tileX;
+            this.tileY    = tileY;
+            this.pixels   = pixels;
+            this.dest     = dest;
+            this.numBands = numBands;
+        }
+
+        public Object call() {
+            final Raster raster = getRaster(tileX, tileY);
+            final double[][] buffer = createBuffer();
+            for (int k=start; k<end; k++) {
+                final int i = (int) keys[k];
+                evaluate(raster, pixels[2*i], pixels[2*i + 1], dest, i * numBands, buffer);
+            }
+            return null;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.geotools.coverage.grid;
 
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.DataBuffer;
@@ -37,6 +38,7 @@ import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
@@ -64,8 +66,11 @@ import org.opengis.coverage.grid.GridCoverage;
 import org.opengis.coverage.grid.GridEnvelope;
 import org.opengis.geometry.DirectPosition;
 import org.opengis.geometry.Envelope;
+import org.opengis.metadata.spatial.PixelOrientation;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.datum.PixelInCell;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.NoninvertibleTransformException;
 
 
 /**
@@ -617,6 +622,87 @@ public class GridCoverage2D extends AbstractGridCoverage {
         throw new PointOutsideCoverageException(formatEvaluateError(coord, true));
     }
 
+    /**
+     * Returns the band values at many locations (world coordinates) at once. This is much faster
+     * than invoking {@link #evaluate(Point2D, double[])} for each point: the coordinates are
+     * converted to pixel coordinates in a single transform call, the points are grouped by tile
+     * and each tile is fetched only once. Points outside of the coverage don't cause an exception;
+     * their values are set to {@link Double#NaN}.
+     *
+     * @param  coords The (<var>x</var>,<var>y</var>) world coordinates of the points, in the
+     *         {@linkplain #getCoordinateReferenceSystem2D two-dimensional CRS} of this coverage.
+     * @param  dest An array of length {@code coords.length/2} &times; {@link #getNumSampleDimensions}
+     *         in which to store the values, or {@code null}.
+     * @return The values of all bands for the first point, then for the second point, <i>etc.</i>
+     * @throws CannotEvaluateException if the coordinates can't be converted to pixel coordinates.
+     *
+     * @since 8.0
+     */
+    public double[] evaluate(final double[] coords, final double[] dest)
+            throws CannotEvaluateException
+    {
+        return evaluate(coords, dest, null);
+    }
+
+    /**
+     * Returns the band values at many locations (world coordinates) at once, processing
+     * the tiles in parallel with the given executor. See {@link #evaluate(double[], double[])}
+     * for details.
+     *
+     * @param  coords The (<var>x</var>,<var>y</var>) world coordinates of the points.
+     * @param  dest An array in which to store the values, or {@code null}.
+     * @param  executor The executor for processing the tiles in parallel, or {@code null}
+     *         for processing them in the current thread.
+     * @return The values of all bands for the first point, then for the second point, <i>etc.</i>
+     * @throws CannotEvaluateException if the coordinates can't be converted to pixel coordinates.
+     *
+     * @since 8.0
+     */
+    public double[] evaluate(final double[] coords, final double[] dest,
+                             final ExecutorService executor) throws CannotEvaluateException
+    {
+        return createBatchEvaluator().evaluate(coords, dest, executor);
+    }
+
+    /**
+     * Creates the evaluator used by {@link #evaluate(double[], double[], ExecutorService)}.
+     * The default implementation returns the nearest neighbor value. Subclasses performing
+     * some calculation in their {@code evaluate} methods shall override this method.
+     */
+    BatchEvaluator createBatchEvaluator() throws CannotEvaluateException {
+        final MathTransform2D toGrid;
+        try {
+            toGrid = gridGeometry.getGridToCRS2D(PixelOrientation.UPPER_LEFT).inverse();
+        } catch (NoninvertibleTransformException exception) {
+            throw new CannotEvaluateException(exception.getLocalizedMessage(), exception);
+        }
+        return new BatchEvaluator(image, toGrid) {
+            @Override
+            boolean accept(final double x, final double y) {
+                final Rectangle bounds = image.getBounds(); // Cached instance.
+                return x >= bounds.x && x < bounds.x + bounds.width &&
+                       y >= bounds.y && y < bounds.y + bounds.height;
+            }
+
+            @Override
+            Raster getRaster(final int tileX, final int tileY) {
+                return image.getTile(tileX, tileY);
+            }
+
+            @Override
+            void evaluate(final Raster raster, final double x, final double y,
+                          final double[] dest, final int offset, final double[][] buffer)
+            {
+                final int ix = (int) Math.floor(x);
+                final int iy = (int) Math.floor(y);
+                final int numBands = raster.getNumBands();
+                for (int b=0; b<numBands; b++) {
+                    dest[offset + b] = raster.getSampleDouble(ix, iy, b);
+                }
+            }
+        };
+    }
+
     /**
      * Returns a debug string for the specified coordinate.   This method produces a
      * string with pixel coordinates and pixel values for all bands (with geophysics
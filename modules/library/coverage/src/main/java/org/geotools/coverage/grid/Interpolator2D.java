@@ -18,6 +18,7 @@ package org.geotools.coverage.grid;
 
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
+import java.awt.image.Raster;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -395,6 +396,79 @@ public final class Interpolator2D extends Calculator2D {
         throw new PointOutsideCoverageException(formatEvaluateError(coord, true));
     }
 
+    /**
+     * Creates the evaluator used for evaluating many points at once. The samples around each
+     * point are read from a single raster per tile, extended on each side by the interpolation
+     * padding.
+     */
+    @Override
+    BatchEvaluator createBatchEvaluator() {
+        return new BatchEvaluator(image, toGrid) {
+            @Override
+            boolean accept(final double x, final double y) {
+                final double x0 = Math.floor(x);
+                final double y0 = Math.floor(y);
+                if (fallback != null) {
+                    // Same check than super.evaluate(...) in the single point methods.
+                    final Rectangle bounds = image.getBounds(); // Cached instance.
+                    if (!(x0 >= bounds.x && x0 < bounds.x + bounds.width &&
+                          y0 >= bounds.y && y0 < bounds.y + bounds.height))
+                    {
+                        return false;
+                    }
+                }
+                return x0>=xmin && x0<=xmax && y0>=ymin && y0<=ymax;
+            }
+
+            @Override
+            Raster getRaster(final int tileX, final int tileY) {
+                final Rectangle area = new Rectangle(
+                        image.tileXToX(tileX) - left, image.tileYToY(tileY) - top,
+                        image.getTileWidth()  + interpolation.getWidth()  - 1,
+                        image.getTileHeight() + interpolation.getHeight() - 1);
+                return image.getExtendedData(area, borderExtender);
+            }
+
+            @Override
+            double[][] createBuffer() {
+                return new double[interpolation.getHeight()][interpolation.getWidth()];
+            }
+
+            @Override
+            void evaluate(final Raster raster, final double x, final double y,
+                          final double[] dest, final int offset, final double[][] samples)
+            {
+                final double x0 = Math.floor(x);
+                final double y0 = Math.floor(y);
+                final int    ix = (int) x0;
+                final int    iy = (int) y0;
+                float dx = (float)(x-x0); if (dx==1) dx=ONE_EPSILON;
+                float dy = (float)(y-y0); if (dy==1) dy=ONE_EPSILON;
+                final int numBands = raster.getNumBands();
+                for (int band=0; band<numBands; band++) {
+                    for (int j=0; j<samples.length; j++) {
+                        final double[] row = samples[j];
+                        for (int i=0; i<row.length; i++) {
+                            row[i] = raster.getSampleDouble(ix - left + i, iy - top + j, band);
+                        }
+                    }
+                    double value = interpolation.interpolate(samples, dx, dy);
+                    if (Double.isNaN(value) && fallback != null) {
+                        // Nearest neighbor value, as set by 'super.evaluate(...)'.
+                        value = raster.getSampleDouble(ix, iy, band);
+                        if (fallback != Interpolator2D.this) {
+                            final double[] values = new double[numBands];
+                            values[band] = value;
+                            fallback.interpolate(x, y, values, band, band+1);
+                            value = values[band];
+                        }
+                    }
+                    dest[offset + band] = value;
+                }
+            }
+        };
+    }
+
 	/**
 	 * Interpolate at the specified position. If {@code fallback!=null},
 	 * then {@code dest} <strong>must</strong> have been initialized with
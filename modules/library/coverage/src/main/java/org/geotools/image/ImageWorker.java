@@ -43,6 +43,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -97,6 +98,8 @@ import javax.media.jai.registry.RenderedRegistryMode;
 import org.geotools.factory.Hints;
 import org.geotools.image.crop.GTCropDescriptor;
 import org.geotools.image.io.ImageIOExt;
+import org.geotools.image.io.PNGEncoder;
+import org.geotools.image.palette.CustomPaletteBuilder;
 import org.geotools.resources.Arguments;
 import org.geotools.resources.i18n.ErrorKeys;
 import org.geotools.resources.i18n.Errors;
@@ -177,6 +180,46 @@ public class ImageWorker {
      */
     public static final Hints.Key TILING_ALLOWED = new Hints.Key(Boolean.class);
 
+    /**
+     * If {@link Boolean#TRUE TRUE}, {@link #forceIndexColorModelForGIF} builds an optimal
+     * palette of at most 256 colors out of the image histogram instead of using a fixed
+     * color cube with error diffusion. The default is {@link Boolean#FALSE FALSE}.
+     *
+     * @see #QUANTIZATION_EXECUTOR
+     * @see #QUANTIZATION_SUBSAMPLING
+     */
+    public static final Hints.Key PALETTE_QUANTIZATION = new Hints.Key(Boolean.class);
+
+    /**
+     * The {@link ExecutorService} used to compute the tile histograms and to map the tiles to
+     * the palette when {@link #PALETTE_QUANTIZATION} is enabled. When not set the work is
+     * done in the calling thread.
+     */
+    public static final Hints.Key QUANTIZATION_EXECUTOR = new Hints.Key(ExecutorService.class);
+
+    /**
+     * Only one pixel every given number of columns and rows is used to build the palette
+     * when {@link #PALETTE_QUANTIZATION} is enabled. The default is 1, all pixels are used.
+     */
+    public static final Hints.Key QUANTIZATION_SUBSAMPLING = new Hints.Key(Integer.class);
+
+    /**
+     * The {@link PNGEncoder.Preset} used by {@link #writePNG} to encode the image with the
+     * built-in {@link PNGEncoder} instead of an ImageIO writer. When not set, or if the image
+     * layout is not supported by the built-in encoder, an ImageIO writer is used.
+     *
+     * @see #PNG_ENCODER_EXECUTOR
+     */
+    public static final Hints.Key PNG_ENCODER_PRESET = new Hints.Key(PNGEncoder.Preset.class);
+
+    /**
+     * The {@link ExecutorService} used by the built-in {@link PNGEncoder} to filter and deflate
+     * the image strips in parallel. When not set the image is encoded in the calling thread.
+     *
+     * @see #PNG_ENCODER_PRESET
+     */
+    public static final Hints.Key PNG_ENCODER_EXECUTOR = new Hints.Key(ExecutorService.class);
+
     /**
      * The image property name generated by {@link ExtremaDescriptor}.
      */
@@ -1116,6 +1159,11 @@ public class ImageWorker {
         }
         if(!(cm instanceof IndexColorModel))
             rescaleToBytes();
+        if (Boolean.TRUE.equals(getRenderingHint(PALETTE_QUANTIZATION))
+                && !(image.getColorModel() instanceof IndexColorModel)
+                && image.getWidth() > 1 && image.getHeight() > 1) {
+            return quantize();
+        }
         /*
          * Getting the alpha channel and separating from the others bands. If
          * the initial image had no alpha channel (more specifically, if it is
@@ -1136,6 +1184,28 @@ public class ImageWorker {
         return this;
     }
 
+    /**
+     * Replaces the image by an indexed one using an optimal palette of at most 256 colors,
+     * built by {@link CustomPaletteBuilder} from the image histogram. The tiles are processed
+     * by the {@link #QUANTIZATION_EXECUTOR}, if any.
+     */
+    private ImageWorker quantize() {
+        final ExecutorService executor = (ExecutorService) getRenderingHint(QUANTIZATION_EXECUTOR);
+        final Integer sampling = (Integer) getRenderingHint(QUANTIZATION_SUBSAMPLING);
+        int subsampling = sampling != null ? sampling.intValue() : 1;
+        subsampling = Math.max(1, Math.min(subsampling,
+                Math.min(image.getWidth(), image.getHeight()) - 1));
+        final CustomPaletteBuilder builder = new CustomPaletteBuilder(image, 256, subsampling,
+                subsampling, CustomPaletteBuilder.DEFAULT_ALPHA_TH);
+        builder.buildPalette(executor);
+        image = builder.getIndexedImage(executor);
+        invalidateStatistics();
+
+        assert isIndexed();
+        assert !isTranslucent();
+        return this;
+    }
+
     /**
      * Reformats the {@linkplain ColorModel color model} to a
      * {@linkplain ComponentColorModel component color model} preserving
@@ -2397,6 +2467,7 @@ public class ImageWorker {
      * @param paletted
      *            should we write the png as 8 bits?
      * @return this {@link ImageWorker}.
+     * @see #PNG_ENCODER_PRESET
      * @throws IOException
      *             In case an error occurs during the search for an
      *             {@link ImageOutputStream} or during the eoncding process.
@@ -2418,6 +2489,28 @@ public class ImageWorker {
         if(LOGGER.isLoggable(Level.FINER))
 			LOGGER.finer("Encoded input image for png writer");
 
+        // Using the built-in encoder if asked to
+        final PNGEncoder.Preset preset = (PNGEncoder.Preset) getRenderingHint(PNG_ENCODER_PRESET);
+        if (preset != null && PNGEncoder.canEncode(image)) {
+            if(LOGGER.isLoggable(Level.FINER))
+                LOGGER.finer("Writing png image with the built-in encoder");
+            final ImageOutputStream stream = ImageIOExt.createImageOutputStream(image, destination);
+            if(stream==null)
+                throw new IIOException(Errors.format(ErrorKeys.NULL_ARGUMENT_$1,"stream"));
+            try {
+                new PNGEncoder((ExecutorService) getRenderingHint(PNG_ENCODER_EXECUTOR), preset)
+                        .encode(image, stream);
+            } finally {
+                try {
+                    stream.close();
+                } catch (Throwable e) {
+                    if(LOGGER.isLoggable(Level.FINEST))
+                        LOGGER.log(Level.FINEST,e.getLocalizedMessage(),e);
+                }
+            }
+            return;
+        }
+
         // Getting a writer.
         if(LOGGER.isLoggable(Level.FINER))
 			LOGGER.finer("Getting a writer");
@@ -0,0 +1,871 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.image.io;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * A PNG encoder writing 8 bits gray, gray alpha, RGB, RGBA and paletted images straight to an
+ * {@link ImageOutputStream}.
+ * <p>
+ * The image is split in strips of rows which are filtered, and deflated, independently, so
+ * that large images can be encoded by several threads of an {@link ExecutorService}. Each
+ * strip is deflated with the end of the previous one as a preset dictionary, so the loss of
+ * compression compared to a single stream is very small. Deflating strips independently
+ * requires the {@code SYNC_FLUSH} mode of the {@link Deflater}, available from Java 7: on older
+ * runtimes only the filtering is done in parallel, the deflating being done by the calling
+ * thread.
+ * </p>
+ * <p>
+ * On a given runtime the output only depends on the image and on the encoder parameters, not
+ * on the executor.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class PNGEncoder {
+
+    /**
+     * The PNG row filters
+     */
+    public enum Filter {
+        /**
+         * Rows are not filtered, the fastest and the best for paletted images
+         */
+        NONE,
+
+        /**
+         * Each byte is replaced by its difference with the one of the previous pixel
+         */
+        SUB,
+
+        /**
+         * Each byte is replaced by its difference with the one of the pixel above
+         */
+        UP,
+
+        /**
+         * Each byte is replaced by its difference with the mean of the previous pixel and of the
+         * one above
+         */
+        AVERAGE,
+
+        /**
+         * Each byte is replaced by its difference with the best predictor among the previous
+         * pixel, the one above and the one above the previous
+         */
+        PAETH,
+
+        /**
+         * The filter is chosen row by row as the one giving the smallest sum of absolute
+         * differences, the slowest and usually the most compact
+         */
+        ADAPTIVE
+    }
+
+    /**
+     * Compression level and filter presets, trading encoding time for output size.
+     */
+    public enum Preset {
+        /**
+         * The fastest encoding
+         */
+        SPEED(Deflater.BEST_SPEED, Filter.SUB),
+
+        /**
+         * Reasonably fast encoding with a good compression
+         */
+        BALANCED(4, Filter.UP),
+
+        /**
+         * The smallest output
+         */
+        SIZE(Deflater.BEST_COMPRESSION, Filter.ADAPTIVE);
+
+        final int compressionLevel;
+
+        final Filter filter;
+
+        Preset(int compressionLevel, Filter filter) {
+            this.compressionLevel = compressionLevel;
+            this.filter = filter;
+        }
+
+        public int getCompressionLevel() {
+            return compressionLevel;
+        }
+
+        public Filter getFilter() {
+            return filter;
+        }
+    }
+
+    /**
+     * The default number of uncompressed bytes in a strip
+     */
+    public static final int DEFAULT_STRIP_SIZE = 256 * 1024;
+
+    static final byte[] SIGNATURE = new byte[] { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    static final byte[] IHDR = chunkType("IHDR");
+
+    static final byte[] PLTE = chunkType("PLTE");
+
+    static final byte[] TRNS = chunkType("tRNS");
+
+    static final byte[] IDAT = chunkType("IDAT");
+
+    static final byte[] IEND = chunkType("IEND");
+
+    static final int COLOR_GRAY = 0;
+
+    static final int COLOR_RGB = 2;
+
+    static final int COLOR_PALETTE = 3;
+
+    static final int COLOR_GRAY_ALPHA = 4;
+
+    static final int COLOR_RGB_ALPHA = 6;
+
+    /**
+     * The size of the deflate window, the largest useful preset dictionary
+     */
+    static final int WINDOW_SIZE = 32 * 1024;
+
+    /**
+     * The Java 7 {@code Deflater.deflate(byte[], int, int, int)} method, or {@code null} on
+     * older runtimes
+     */
+    static final Method FLUSHING_DEFLATE;
+
+    /**
+     * The value of {@code Deflater.SYNC_FLUSH}
+     */
+    static final int SYNC_FLUSH = 2;
+
+    static {
+        Method method = null;
+        try {
+            method = Deflater.class.getMethod("deflate", byte[].class, int.class, int.class,
+                    int.class);
+        } catch (NoSuchMethodException e) {
+            // running on Java 6, strips will be deflated sequentially
+        }
+        FLUSHING_DEFLATE = method;
+    }
+
+    ExecutorService executor;
+
+    int compressionLevel;
+
+    Filter filter;
+
+    int stripSize = DEFAULT_STRIP_SIZE;
+
+    /**
+     * Creates an encoder using the {@link Preset#BALANCED} preset.
+     *
+     * @param executor the executor encoding the strips, or {@code null} for encoding them in
+     *        the calling thread
+     */
+    public PNGEncoder(ExecutorService executor) {
+        this(executor, Preset.BALANCED);
+    }
+
+    /**
+     * Creates an encoder using the given preset.
+     *
+     * @param executor the executor encoding the strips, or {@code null} for encoding them in
+     *        the calling thread
+     * @param preset the compression level and filter to use
+     */
+    public PNGEncoder(ExecutorService executor, Preset preset) {
+        this.executor = executor;
+        this.compressionLevel = preset.compressionLevel;
+        this.filter = preset.filter;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the deflate compression level, between 0 (no compression) and 9 (best compression).
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.NO_COMPRESSION
+                || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Sets the row filter. Paletted images are never filtered.
+     */
+    public void setFilter(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("The filter cannot be null");
+        }
+        this.filter = filter;
+    }
+
+    public int getStripSize() {
+        return stripSize;
+    }
+
+    /**
+     * Sets the approximate number of uncompressed bytes in each strip. Smaller strips allow
+     * more parallelism, at the expense of a slightly larger output.
+     */
+    public void setStripSize(int stripSize) {
+        if (stripSize <= 0) {
+            throw new IllegalArgumentException("The strip size must be positive: " + stripSize);
+        }
+        this.stripSize = stripSize;
+    }
+
+    /**
+     * Returns true if the image can be encoded: it must be made of bytes, and either be
+     * paletted, or have a gray or RGB color model, with an optional non premultiplied alpha.
+     */
+    public static boolean canEncode(RenderedImage image) {
+        final SampleModel sm = image.getSampleModel();
+        final ColorModel cm = image.getColorModel();
+        if (sm.getDataType() != DataBuffer.TYPE_BYTE || cm == null) {
+            return false;
+        }
+        final int bands = sm.getNumBands();
+        if (cm instanceof IndexColorModel) {
+            return bands == 1 && ((IndexColorModel) cm).getMapSize() <= 256;
+        }
+        if (!(cm instanceof ComponentColorModel) || cm.isAlphaPremultiplied()) {
+            return false;
+        }
+        for (int size : sm.getSampleSize()) {
+            if (size != 8) {
+                return false;
+            }
+        }
+        final int colorBands = bands - (cm.hasAlpha() ? 1 : 0);
+        final int colorSpace = cm.getColorSpace().getType();
+        return (colorBands == 1 && colorSpace == ColorSpace.TYPE_GRAY)
+                || (colorBands == 3 && colorSpace == ColorSpace.TYPE_RGB);
+    }
+
+    /**
+     * Writes the image as a PNG. The stream is not closed.
+     *
+     * @throws IllegalArgumentException if the image cannot be encoded, see
+     *         {@link #canEncode(RenderedImage)}
+     */
+    public void encode(RenderedImage image, ImageOutputStream out) throws IOException {
+        if (!canEncode(image)) {
+            throw new IllegalArgumentException("Unsupported image layout, only 8 bits gray, "
+                    + "RGB and paletted images can be encoded");
+        }
+        final ColorModel cm = image.getColorModel();
+        final int bands = image.getSampleModel().getNumBands();
+        final int colorType;
+        if (cm instanceof IndexColorModel) {
+            colorType = COLOR_PALETTE;
+        } else if (bands <= 2) {
+            colorType = cm.hasAlpha() ? COLOR_GRAY_ALPHA : COLOR_GRAY;
+        } else {
+            colorType = cm.hasAlpha() ? COLOR_RGB_ALPHA : COLOR_RGB;
+        }
+
+        out.write(SIGNATURE);
+        final byte[] header = new byte[13];
+        putInt(header, 0, image.getWidth());
+        putInt(header, 4, image.getHeight());
+        header[8] = 8;
+        header[9] = (byte) colorType;
+        writeChunk(out, IHDR, header, 0, header.length, null);
+        if (colorType == COLOR_PALETTE) {
+            writePalette(out, (IndexColorModel) cm);
+        }
+
+        final Filter rowFilter = colorType == COLOR_PALETTE ? Filter.NONE : filter;
+        final StripEncoder encoder = new StripEncoder(image, bands, rowFilter, compressionLevel,
+                stripSize);
+        if (FLUSHING_DEFLATE != null && encoder.strips > 1) {
+            writeStrips(out, encoder);
+        } else {
+            writeSequential(out, encoder);
+        }
+        writeChunk(out, IEND, new byte[0], 0, 0, null);
+        out.flush();
+    }
+
+    /**
+     * Filters and deflates the strips, in parallel if an executor is available, each one being
+     * a sequence of deflate blocks ending on a byte boundary, and writes them in order wrapped
+     * in a single zlib stream.
+     */
+    void writeStrips(ImageOutputStream out, final StripEncoder encoder) throws IOException {
+        final LinkedList<Future<Strip>> pending = new LinkedList<Future<Strip>>();
+        final int maxPending = executor != null ? Runtime.getRuntime().availableProcessors() * 2
+                : 0;
+        final Adler32Combiner checksum = new Adler32Combiner();
+        boolean first = true;
+        try {
+            for (int i = 0; i < encoder.strips || !pending.isEmpty();) {
+                final Strip strip;
+                if (executor == null) {
+                    strip = encoder.deflate(i++);
+                } else if (i < encoder.strips && pending.size() < maxPending) {
+                    final int index = i++;
+                    pending.add(executor.submit(new Callable<Strip>() {
+                        public Strip call() throws Exception {
+                            return encoder.deflate(index);
+                        }
+                    }));
+                    continue;
+                } else {
+                    strip = pending.removeFirst().get();
+                }
+                checksum.add(strip.checksum, strip.rawLength);
+                if (first) {
+                    // zlib header: deflate with a 32k window, and the compression level hint
+                    // (the header checksum bits make it a multiple of 31)
+                    int levelFlag = compressionLevel < 2 ? 0 : compressionLevel < 6 ? 1
+                            : compressionLevel == 6 ? 2 : 3;
+                    int cmf = 0x78;
+                    int flg = levelFlag << 6;
+                    flg += 31 - ((cmf << 8) + flg) % 31;
+                    writeChunk(out, IDAT, new byte[] { (byte) cmf, (byte) flg }, 0, 2, null);
+                    first = false;
+                }
+                byte[] trailer = null;
+                if (strip.index == encoder.strips - 1) {
+                    trailer = new byte[4];
+                    putInt(trailer, 0, (int) checksum.getValue());
+                }
+                writeChunk(out, IDAT, strip.data, 0, strip.length, trailer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding the PNG image");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (IOException) new IOException("Failed to encode the PNG image").initCause(cause);
+        } finally {
+            for (Future<Strip> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Filters the strips, in parallel if an executor is available, and deflates them in the
+     * calling thread as a single zlib stream. Used on runtimes not able to flush a deflater.
+     */
+    void writeSequential(ImageOutputStream out, final StripEncoder encoder) throws IOException {
+        final Deflater deflater = new Deflater(compressionLevel);
+        deflater.setStrategy(encoder.filter == Filter.NONE ? Deflater.DEFAULT_STRATEGY
+                : Deflater.FILTERED);
+        final byte[] buffer = new byte[64 * 1024];
+        final LinkedList<Future<Strip>> pending = new LinkedList<Future<Strip>>();
+        final int maxPending = executor != null ? Runtime.getRuntime().availableProcessors() * 2
+                : 0;
+        try {
+            for (int i = 0; i < encoder.strips || !pending.isEmpty();) {
+                final Strip strip;
+                if (executor == null) {
+                    strip = encoder.filter(i++);
+                } else if (i < encoder.strips && pending.size() < maxPending) {
+                    final int index = i++;
+                    pending.add(executor.submit(new Callable<Strip>() {
+                        public Strip call() throws Exception {
+                            return encoder.filter(index);
+                        }
+                    }));
+                    continue;
+                } else {
+                    strip = pending.removeFirst().get();
+                }
+                deflater.setInput(strip.data, strip.offset, strip.length);
+                while (!deflater.needsInput()) {
+                    int n = deflater.deflate(buffer);
+                    if (n > 0) {
+                        writeChunk(out, IDAT, buffer, 0, n, null);
+                    }
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                if (n > 0) {
+                    writeChunk(out, IDAT, buffer, 0, n, null);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding the PNG image");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (IOException) new IOException("Failed to encode the PNG image").initCause(cause);
+        } finally {
+            for (Future<Strip> future : pending) {
+                future.cancel(true);
+            }
+            deflater.end();
+        }
+    }
+
+    void writePalette(ImageOutputStream out, IndexColorModel icm) throws IOException {
+        final int size = icm.getMapSize();
+        final byte[] palette = new byte[size * 3];
+        int lastTranslucent = -1;
+        for (int i = 0; i < size; i++) {
+            palette[i * 3] = (byte) icm.getRed(i);
+            palette[i * 3 + 1] = (byte) icm.getGreen(i);
+            palette[i * 3 + 2] = (byte) icm.getBlue(i);
+            if (icm.getAlpha(i) != 255) {
+                lastTranslucent = i;
+            }
+        }
+        writeChunk(out, PLTE, palette, 0, palette.length, null);
+        if (lastTranslucent >= 0) {
+            final byte[] alpha = new byte[lastTranslucent + 1];
+            for (int i = 0; i < alpha.length; i++) {
+                alpha[i] = (byte) icm.getAlpha(i);
+            }
+            writeChunk(out, TRNS, alpha, 0, alpha.length, null);
+        }
+    }
+
+    /**
+     * Writes a chunk made of the given data, followed by the optional trailer.
+     */
+    static void writeChunk(ImageOutputStream out, byte[] type, byte[] data, int offset,
+            int length, byte[] trailer) throws IOException {
+        final int total = length + (trailer != null ? trailer.length : 0);
+        final byte[] buffer = new byte[4];
+        putInt(buffer, 0, total);
+        out.write(buffer);
+        out.write(type);
+        out.write(data, offset, length);
+        final CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(data, offset, length);
+        if (trailer != null) {
+            out.write(trailer);
+            crc.update(trailer);
+        }
+        putInt(buffer, 0, (int) crc.getValue());
+        out.write(buffer);
+    }
+
+    static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    static byte[] chunkType(String name) {
+        final byte[] type = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            type[i] = (byte) name.charAt(i);
+        }
+        return type;
+    }
+
+    /**
+     * A filtered, and possibly deflated, strip of rows
+     */
+    static final class Strip {
+        final int index;
+
+        final byte[] data;
+
+        final int offset;
+
+        final int length;
+
+        /**
+         * Number of filtered bytes in the strip
+         */
+        final int rawLength;
+
+        /**
+         * Adler32 checksum of the filtered bytes
+         */
+        final long checksum;
+
+        Strip(int index, byte[] data, int offset, int length, int rawLength, long checksum) {
+            this.index = index;
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.rawLength = rawLength;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * Filters and deflates strips of rows. Thread safe, all the state is per call.
+     */
+    static final class StripEncoder {
+        /**
+         * The filters tried by {@link Filter#ADAPTIVE} besides {@link Filter#NONE}
+         */
+        static final Filter[] SINGLE_ROW_FILTERS = new Filter[] { Filter.SUB, Filter.UP,
+                Filter.AVERAGE, Filter.PAETH };
+
+        final RenderedImage image;
+
+        final int bands;
+
+        final Filter filter;
+
+        final int compressionLevel;
+
+        final int rowBytes;
+
+        final int stripRows;
+
+        final int strips;
+
+        StripEncoder(RenderedImage image, int bands, Filter filter, int compressionLevel,
+                int stripSize) {
+            this.image = image;
+            this.bands = bands;
+            this.filter = filter;
+            this.compressionLevel = compressionLevel;
+            this.rowBytes = image.getWidth() * bands;
+            this.stripRows = Math.max(1, stripSize / (rowBytes + 1));
+            this.strips = (image.getHeight() + stripRows - 1) / stripRows;
+        }
+
+        /**
+         * Returns the filtered rows of the strip.
+         */
+        Strip filter(int strip) {
+            final int firstRow = strip * stripRows;
+            final int lastRow = Math.min(firstRow + stripRows, image.getHeight());
+            final byte[] data = new byte[(lastRow - firstRow) * (rowBytes + 1)];
+            filterRows(firstRow, lastRow, data, 0);
+            return new Strip(strip, data, 0, data.length, data.length, 0);
+        }
+
+        /**
+         * Returns the filtered rows of the strip deflated as a sequence of raw deflate blocks
+         * which can be concatenated to the ones of the previous strips. The filtered rows
+         * ending the previous strip are used as the dictionary.
+         */
+        Strip deflate(int strip) throws IOException {
+            final int firstRow = strip * stripRows;
+            final int lastRow = Math.min(firstRow + stripRows, image.getHeight());
+            final int dictionaryRows = strip == 0 ? 0 : Math.min(firstRow, (WINDOW_SIZE
+                    + rowBytes) / (rowBytes + 1));
+            final int dictionaryLength = dictionaryRows * (rowBytes + 1);
+            final int rawLength = (lastRow - firstRow) * (rowBytes + 1);
+            final byte[] raw = new byte[dictionaryLength + rawLength];
+            filterRows(firstRow - dictionaryRows, lastRow, raw, 0);
+
+            final Adler32 adler = new Adler32();
+            adler.update(raw, dictionaryLength, rawLength);
+
+            final Deflater deflater = new Deflater(compressionLevel, true);
+            try {
+                if (filter != Filter.NONE) {
+                    // zlib applies parameter changes lazily, possibly dropping the dictionary,
+                    // so make sure the strategy is set before
+                    deflater.setStrategy(Deflater.FILTERED);
+                    deflater.deflate(new byte[0]);
+                }
+                if (dictionaryLength > 0) {
+                    final int length = Math.min(WINDOW_SIZE, dictionaryLength);
+                    deflater.setDictionary(raw, dictionaryLength - length, length);
+                }
+                deflater.setInput(raw, dictionaryLength, rawLength);
+                byte[] out = new byte[rawLength / 2 + 64];
+                int size = 0;
+                if (strip == strips - 1) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        if (size == out.length) {
+                            out = grow(out);
+                        }
+                        size += deflater.deflate(out, size, out.length - size);
+                    }
+                } else {
+                    // flush on a byte boundary without ending the stream
+                    int available;
+                    int n;
+                    do {
+                        if (size == out.length) {
+                            out = grow(out);
+                        }
+                        available = out.length - size;
+                        n = flushingDeflate(deflater, out, size, available);
+                        size += n;
+                    } while (n == available);
+                }
+                return new Strip(strip, out, 0, size, rawLength, adler.getValue());
+            } finally {
+                deflater.end();
+            }
+        }
+
+        static byte[] grow(byte[] buffer) {
+            final byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, buffer.length);
+            return grown;
+        }
+
+        static int flushingDeflate(Deflater deflater, byte[] out, int offset, int length)
+                throws IOException {
+            try {
+                return ((Integer) FLUSHING_DEFLATE.invoke(deflater, out, offset, length,
+                        SYNC_FLUSH)).intValue();
+            } catch (IllegalAccessException e) {
+                throw (IOException) new IOException("Cannot flush the deflater").initCause(e);
+            } catch (InvocationTargetException e) {
+                throw (IOException) new IOException("Cannot flush the deflater").initCause(e
+                        .getCause());
+            }
+        }
+
+        /**
+         * Filters the rows from first (included) to last (excluded) into the buffer.
+         */
+        void filterRows(int first, int last, byte[] out, int offset) {
+            byte[] previous = new byte[rowBytes];
+            byte[] current = new byte[rowBytes];
+            final int[] pixels = new int[rowBytes];
+            final byte[][] candidates = filter == Filter.ADAPTIVE ? new byte[SINGLE_ROW_FILTERS.length][rowBytes + 1]
+                    : null;
+            if (first > 0) {
+                readRow(first - 1, pixels, previous);
+            }
+            for (int row = first; row < last; row++) {
+                readRow(row, pixels, current);
+                if (filter == Filter.ADAPTIVE) {
+                    filterAdaptive(current, previous, out, offset, candidates);
+                } else {
+                    filterRow(filter, current, previous, out, offset);
+                }
+                offset += rowBytes + 1;
+                final byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+        }
+
+        /**
+         * Reads a row of the image, relative to the image origin, as bytes.
+         */
+        void readRow(int row, int[] pixels, byte[] bytes) {
+            final int minX = image.getMinX();
+            final int maxX = minX + image.getWidth();
+            final int y = image.getMinY() + row;
+            final int tileY = tileIndex(y, image.getTileGridYOffset(), image.getTileHeight(),
+                    image.getMinTileY(), image.getNumYTiles());
+            final int firstTileX = tileIndex(minX, image.getTileGridXOffset(),
+                    image.getTileWidth(), image.getMinTileX(), image.getNumXTiles());
+            final int lastTileX = tileIndex(maxX - 1, image.getTileGridXOffset(),
+                    image.getTileWidth(), image.getMinTileX(), image.getNumXTiles());
+            for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+                final Raster tile = image.getTile(tileX, tileY);
+                final int x0 = Math.max(minX, tile.getMinX());
+                final int x1 = Math.min(maxX, tile.getMinX() + tile.getWidth());
+                final int count = (x1 - x0) * bands;
+                tile.getPixels(x0, y, x1 - x0, 1, pixels);
+                final int start = (x0 - minX) * bands;
+                for (int i = 0; i < count; i++) {
+                    bytes[start + i] = (byte) pixels[i];
+                }
+            }
+        }
+
+        /**
+         * Returns the index of the tile containing the coordinate. The result is clamped to the
+         * image tiles, as sub images of a {@link java.awt.image.BufferedImage} report a tile grid
+         * offset which is not consistent with their single tile.
+         */
+        static int tileIndex(int coordinate, int offset, int size, int minTile, int numTiles) {
+            final int delta = coordinate - offset;
+            final int index = delta >= 0 ? delta / size : (delta + 1) / size - 1;
+            return Math.max(minTile, Math.min(minTile + numTiles - 1, index));
+        }
+
+        /**
+         * Filters the row with the filter giving the smallest sum of absolute differences.
+         */
+        void filterAdaptive(byte[] current, byte[] previous, byte[] out, int offset,
+                byte[][] candidates) {
+            filterRow(Filter.NONE, current, previous, out, offset);
+            long best = sumOfAbsolutes(out, offset);
+            int bestIndex = -1;
+            for (int i = 0; i < candidates.length; i++) {
+                filterRow(SINGLE_ROW_FILTERS[i], current, previous, candidates[i], 0);
+                long sum = sumOfAbsolutes(candidates[i], 0);
+                if (sum < best) {
+                    best = sum;
+                    bestIndex = i;
+                }
+            }
+            if (bestIndex >= 0) {
+                System.arraycopy(candidates[bestIndex], 0, out, offset, rowBytes + 1);
+            }
+        }
+
+        long sumOfAbsolutes(byte[] row, int offset) {
+            long sum = 0;
+            for (int i = offset + 1, end = offset + 1 + rowBytes; i < end; i++) {
+                final int value = row[i];
+                sum += value < 0 ? -value : value;
+            }
+            return sum;
+        }
+
+        /**
+         * Writes the filter type followed by the filtered row.
+         */
+        void filterRow(Filter type, byte[] current, byte[] previous, byte[] out, int offset) {
+            final int bpp = bands;
+            final int start = offset + 1;
+            switch (type) {
+            case NONE:
+                out[offset] = 0;
+                System.arraycopy(current, 0, out, start, rowBytes);
+                break;
+            case SUB:
+                out[offset] = 1;
+                for (int i = 0; i < bpp; i++) {
+                    out[start + i] = current[i];
+                }
+                for (int i = bpp; i < rowBytes; i++) {
+                    out[start + i] = (byte) (current[i] - current[i - bpp]);
+                }
+                break;
+            case UP:
+                out[offset] = 2;
+                for (int i = 0; i < rowBytes; i++) {
+                    out[start + i] = (byte) (current[i] - previous[i]);
+                }
+                break;
+            case AVERAGE:
+                out[offset] = 3;
+                for (int i = 0; i < bpp; i++) {
+                    out[start + i] = (byte) (current[i] - ((previous[i] & 0xff) >> 1));
+                }
+                for (int i = bpp; i < rowBytes; i++) {
+                    out[start + i] = (byte) (current[i]
+                            - (((current[i - bpp] & 0xff) + (previous[i] & 0xff)) >> 1));
+                }
+                break;
+            case PAETH:
+                out[offset] = 4;
+                for (int i = 0; i < bpp; i++) {
+                    // left and upper left are zero, the predictor is the upper byte
+                    out[start + i] = (byte) (current[i] - previous[i]);
+                }
+                for (int i = bpp; i < rowBytes; i++) {
+                    final int a = current[i - bpp] & 0xff;
+                    final int b = previous[i] & 0xff;
+                    final int c = previous[i - bpp] & 0xff;
+                    final int p = a + b - c;
+                    final int pa = Math.abs(p - a);
+                    final int pb = Math.abs(p - b);
+                    final int pc = Math.abs(p - c);
+                    final int predictor = pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+                    out[start + i] = (byte) (current[i] - predictor);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Not a single row filter: " + type);
+            }
+        }
+    }
+
+    /**
+     * Computes the Adler32 checksum of a sequence of blocks from the checksums of the blocks,
+     * as zlib's adler32_combine does.
+     */
+    static final class Adler32Combiner {
+        static final int BASE = 65521;
+
+        long value = 1;
+
+        void add(long adler, long length) {
+            final long remainder = length % BASE;
+            long sum1 = value & 0xffff;
+            long sum2 = (remainder * sum1) % BASE;
+            sum1 += (adler & 0xffff) + BASE - 1;
+            sum2 += ((value >> 16) & 0xffff) + ((adler >> 16) & 0xffff) + BASE - remainder;
+            if (sum1 >= BASE) {
+                sum1 -= BASE;
+            }
+            if (sum1 >= BASE) {
+                sum1 -= BASE;
+            }
+            if (sum2 >= (BASE << 1)) {
+                sum2 -= (BASE << 1);
+            }
+            if (sum2 >= BASE) {
+                sum2 -= BASE;
+            }
+            value = sum1 | (sum2 << 16);
+        }
+
+        long getValue() {
+            return value;
+        }
+    }
+}
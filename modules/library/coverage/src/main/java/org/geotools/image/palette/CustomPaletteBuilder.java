@@ -23,6 +23,13 @@ import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageTypeSpecifier;
 
@@ -357,6 +364,370 @@ public final class CustomPaletteBuilder {
 		return this;
 	}
 
+	/**
+	 * Builds the palette from a histogram of the image colors. The histograms
+	 * of the tiles are computed in parallel and merged, then the colors are
+	 * inserted in the tree once each, weighted by their number of pixels, the
+	 * most frequent first.
+	 * <p>
+	 * The palette does not depend on the tiling or on the number of threads,
+	 * but may be slightly different from the one of {@link #buildPalette()},
+	 * which depends on the order in which pixels are scanned. The subsampling
+	 * given to the constructor is honored.
+	 * 
+	 * @param executor
+	 *            the executor computing the histograms of the tiles, or
+	 *            {@code null} for computing them in the current thread.
+	 * @return this builder.
+	 */
+	public CustomPaletteBuilder buildPalette(ExecutorService executor) {
+		reduceList = new ColorNode[maxLevel + 1];
+		numNodes = 0;
+		maxNodes = 0;
+		root = null;
+		currSize = 0;
+		currLevel = maxLevel;
+
+		final List<Callable<ColorHistogram>> tasks = new ArrayList<Callable<ColorHistogram>>();
+		final int maxTileX = src.getMinTileX() + src.getNumXTiles();
+		final int maxTileY = src.getMinTileY() + src.getNumYTiles();
+		for (int ty = src.getMinTileY(); ty < maxTileY; ty++) {
+			for (int tx = src.getMinTileX(); tx < maxTileX; tx++) {
+				final int tileX = tx;
+				final int tileY = ty;
+				tasks.add(new Callable<ColorHistogram>() {
+					public ColorHistogram call() {
+						return computeHistogram(tileX, tileY);
+					}
+				});
+			}
+		}
+		ColorHistogram histogram = null;
+		for (ColorHistogram tileHistogram : invokeAll(executor, tasks)) {
+			if (histogram == null) {
+				histogram = tileHistogram;
+			} else {
+				histogram.merge(tileHistogram);
+			}
+		}
+		if (histogram == null) {
+			return this;
+		}
+
+		if (transColor != null) {
+			transColor.colorCount += histogram.transparentCount;
+			transColor.red += histogram.transparentRed;
+			transColor.green += histogram.transparentGreen;
+			transColor.blue += histogram.transparentBlue;
+		}
+		// most frequent colors first, then by color value so that the result
+		// is deterministic
+		final long[] colors = histogram.sortedColors();
+		for (int i = 0; i < colors.length; i++) {
+			final int rgb = (int) (colors[i] & 0xffffff);
+			final int count = Integer.MAX_VALUE - (int) (colors[i] >>> 24);
+			root = insertNode(root, (rgb >> 16) & 0xff, (rgb >> 8) & 0xff,
+					rgb & 0xff, count, 0);
+			if (currSize > requiredSize) {
+				reduceTree();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Maps the image to the palette, processing the tiles in parallel. The
+	 * palette must have been built.
+	 * 
+	 * @param executor
+	 *            the executor processing the tiles, or {@code null} for
+	 *            processing them in the current thread.
+	 * @return the indexed image.
+	 */
+	public RenderedImage getIndexedImage(ExecutorService executor) {
+		final IndexColorModel icm = getIndexColorModel();
+		final WritableRaster destWr = icm.createCompatibleWritableRaster(src
+				.getWidth(), src.getHeight());
+		final BufferedImage dst = new BufferedImage(icm, destWr, false, null);
+
+		final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		final int maxTileX = src.getMinTileX() + src.getNumXTiles();
+		final int maxTileY = src.getMinTileY() + src.getNumYTiles();
+		for (int ty = src.getMinTileY(); ty < maxTileY; ty++) {
+			for (int tx = src.getMinTileX(); tx < maxTileX; tx++) {
+				final int tileX = tx;
+				final int tileY = ty;
+				tasks.add(new Callable<Object>() {
+					public Object call() {
+						indexTile(tileX, tileY, destWr);
+						return null;
+					}
+				});
+			}
+		}
+		invokeAll(executor, tasks);
+		return dst;
+	}
+
+	/**
+	 * Returns the part of a tile inside the image, as minx, miny, maxx, maxy.
+	 */
+	private int[] getTileBounds(Raster r) {
+		final int minx = Math.max(r.getMinX(), src.getMinX());
+		final int miny = Math.max(r.getMinY(), src.getMinY());
+		final int maxx = Math.min(r.getMinX() + r.getWidth(), src.getMinX()
+				+ src.getWidth());
+		final int maxy = Math.min(r.getMinY() + r.getHeight(), src.getMinY()
+				+ src.getHeight());
+		return new int[] { minx, miny, maxx, maxy };
+	}
+
+	/**
+	 * Counts the colors of a tile, honoring the subsampling.
+	 */
+	ColorHistogram computeHistogram(int tx, int ty) {
+		final Raster r = src.getTile(tx, ty);
+		final int[] bounds = getTileBounds(r);
+		final int numBands = r.getSampleModel().getNumBands();
+		// gray, possibly with alpha in the second band
+		final int greenBand = numBands <= 2 ? 0 : 1;
+		final int blueBand = numBands <= 2 ? 0 : 2;
+		final int transpBand = numBands - 1;
+		final boolean discriminantTransparency = transparency != Transparency.OPAQUE;
+		final int width = bounds[2] - bounds[0];
+		final ColorHistogram histogram = new ColorHistogram();
+		if (width <= 0) {
+			return histogram;
+		}
+		final int[] row = new int[width * numBands];
+		for (int j = bounds[1]; j < bounds[3]; j++) {
+			if ((subsampley > 1) && ((j % subsampley) != 0)) {
+				continue;
+			}
+			r.getPixels(bounds[0], j, width, 1, row);
+			for (int i = bounds[0], p = 0; i < bounds[2]; i++, p += numBands) {
+				if ((subsampleX > 1) && ((i % subsampleX) != 0)) {
+					continue;
+				}
+				if (discriminantTransparency
+						&& (row[p + transpBand] < alphaThreshold)) {
+					histogram.addTransparent(row[p], row[p + greenBand], row[p
+							+ blueBand]);
+				} else {
+					histogram.add(((row[p] & 0xff) << 16)
+							| ((row[p + greenBand] & 0xff) << 8)
+							| (row[p + blueBand] & 0xff), 1);
+				}
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Maps a tile to the palette, writing into the destination raster whose
+	 * origin is the image origin.
+	 */
+	void indexTile(int tx, int ty, WritableRaster destWr) {
+		final Raster r = src.getTile(tx, ty);
+		final int[] bounds = getTileBounds(r);
+		final int numBands = r.getSampleModel().getNumBands();
+		final boolean sourceHasAlpha = (numBands % 2 == 0);
+		final int alphaBand = sourceHasAlpha ? numBands - 1 : -1;
+		final int width = bounds[2] - bounds[0];
+		if (width <= 0) {
+			return;
+		}
+		final int[] row = new int[width * numBands];
+		final int[] rgba = new int[numBands];
+		final int[] indexes = new int[width];
+		for (int j = bounds[1]; j < bounds[3]; j++) {
+			r.getPixels(bounds[0], j, width, 1, row);
+			for (int i = 0, p = 0; i < width; i++, p += numBands) {
+				System.arraycopy(row, p, rgba, 0, numBands);
+				indexes[i] = findColorIndex(root, rgba, alphaBand);
+			}
+			destWr.setSamples(bounds[0] - src.getMinX(), j - src.getMinY(),
+					width, 1, 0, indexes);
+		}
+	}
+
+	/**
+	 * Runs the tasks, in the current thread if there is no executor, and
+	 * returns their results in order.
+	 */
+	private static <T> List<T> invokeAll(ExecutorService executor,
+			List<Callable<T>> tasks) {
+		final List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			if (executor == null || tasks.size() < 2) {
+				for (Callable<T> task : tasks) {
+					results.add(task.call());
+				}
+			} else {
+				for (Future<T> future : executor.invokeAll(tasks)) {
+					results.add(future.get());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		return results;
+	}
+
+	/**
+	 * Inserts a color with the given number of pixels.
+	 */
+	protected ColorNode insertNode(ColorNode aNode, int red, int green,
+			int blue, int count, int aLevel) {
+		if (aNode == null) {
+			aNode = new ColorNode();
+			numNodes++;
+
+			if (numNodes > maxNodes) {
+				maxNodes = numNodes;
+			}
+
+			aNode.level = aLevel;
+			aNode.isLeaf = (aLevel > maxLevel);
+
+			if (aNode.isLeaf) {
+				currSize++;
+			}
+		}
+		aNode.colorCount += count;
+		aNode.red += (long) red * count;
+		aNode.green += (long) green * count;
+		aNode.blue += (long) blue * count;
+
+		if (!aNode.isLeaf) {
+			final int shift = maxLevel - aLevel;
+			final int branchIndex = ((0x1 & (red >> shift)) << 2)
+					| ((0x1 & (green >> shift)) << 1) | (0x1 & (blue >> shift));
+
+			if (aNode.children[branchIndex] == null) {
+				aNode.childCount++;
+
+				if (aNode.childCount == 2) {
+					aNode.nextReducible = reduceList[aLevel];
+					reduceList[aLevel] = aNode;
+				}
+			}
+
+			aNode.children[branchIndex] = insertNode(
+					aNode.children[branchIndex], red, green, blue, count,
+					aLevel + 1);
+		}
+
+		return aNode;
+	}
+
+	/**
+	 * Number of pixels of each opaque color, as an open addressing hash table
+	 * of the 24 bits rgb values, plus the sums of the transparent pixels.
+	 */
+	static final class ColorHistogram {
+		private int[] keys = newKeys(1024);
+
+		private int[] counts = new int[1024];
+
+		// 32 - log2(keys.length), so that the hash spreads over the whole table
+		private int shift = 22;
+
+		private int size;
+
+		int transparentCount;
+
+		long transparentRed;
+
+		long transparentGreen;
+
+		long transparentBlue;
+
+		private static int[] newKeys(int capacity) {
+			final int[] keys = new int[capacity];
+			Arrays.fill(keys, -1);
+			return keys;
+		}
+
+		void add(int rgb, int count) {
+			final int mask = keys.length - 1;
+			int slot = (rgb * 0x9E3779B9) >>> shift & mask;
+			while (keys[slot] != -1) {
+				if (keys[slot] == rgb) {
+					counts[slot] += count;
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = rgb;
+			counts[slot] = count;
+			if (++size * 2 > keys.length) {
+				rehash();
+			}
+		}
+
+		void addTransparent(int red, int green, int blue) {
+			transparentCount++;
+			transparentRed += red;
+			transparentGreen += green;
+			transparentBlue += blue;
+		}
+
+		void merge(ColorHistogram other) {
+			for (int i = 0; i < other.keys.length; i++) {
+				if (other.keys[i] != -1) {
+					add(other.keys[i], other.counts[i]);
+				}
+			}
+			transparentCount += other.transparentCount;
+			transparentRed += other.transparentRed;
+			transparentGreen += other.transparentGreen;
+			transparentBlue += other.transparentBlue;
+		}
+
+		private void rehash() {
+			final int[] oldKeys = keys;
+			final int[] oldCounts = counts;
+			keys = newKeys(oldKeys.length * 2);
+			counts = new int[oldKeys.length * 2];
+			shift = 32 - Integer.numberOfTrailingZeros(keys.length);
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != -1) {
+					add(oldKeys[i], oldCounts[i]);
+				}
+			}
+		}
+
+		/**
+		 * Returns the colors sorted by decreasing count, then by rgb value,
+		 * each encoded as (Integer.MAX_VALUE - count) << 24 | rgb.
+		 */
+		long[] sortedColors() {
+			final long[] colors = new long[size];
+			int n = 0;
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != -1) {
+					colors[n++] = ((long) (Integer.MAX_VALUE - counts[i]) << 24)
+							| keys[i];
+				}
+			}
+			Arrays.sort(colors);
+			return colors;
+		}
+	}
+
 	protected ColorNode insertNode(ColorNode aNode, int[] rgba, int aLevel) {
 		if (aNode == null) {
 			aNode = new ColorNode();
@@ -376,8 +747,8 @@ public final class CustomPaletteBuilder {
 		final int numBands = rgba.length;
 		aNode.colorCount++;
 		aNode.red += rgba[0];
-		aNode.green += rgba[numBands == 1 ? 0 : 1];
-		aNode.blue += rgba[numBands == 1 ? 0 : 2];
+		aNode.green += rgba[numBands <= 2 ? 0 : 1];
+		aNode.blue += rgba[numBands <= 2 ? 0 : 2];
 
 		if (!aNode.isLeaf) {
 			int branchIndex = getBranchIndex(rgba, aLevel);
@@ -463,8 +834,8 @@ public final class CustomPaletteBuilder {
 		final int numBands = rgba.length;
 		int shift = maxLevel - aLevel;
 		int red_index = 0x1 & ((0xff & rgba[0]) >> shift);
-		int green_index = 0x1 & ((0xff & rgba[numBands == 1 ? 0 : 1]) >> shift);
-		int blue_index = 0x1 & ((0xff & rgba[numBands == 1 ? 0 : 2]) >> shift);
+		int green_index = 0x1 & ((0xff & rgba[numBands <= 2 ? 0 : 1]) >> shift);
+		int blue_index = 0x1 & ((0xff & rgba[numBands <= 2 ? 0 : 2]) >> shift);
 		int index = (red_index << 2) | (green_index << 1) | blue_index;
 
 		return index;
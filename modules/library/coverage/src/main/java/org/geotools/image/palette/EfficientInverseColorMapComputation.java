@@ -16,6 +16,9 @@
  */
 package org.geotools.image.palette;
 
+import java.util.Arrays;
+
+import org.geotools.util.SoftValueHashMap;
 
 /**
  * This class is responsible for computing efficiently an inverse color map for
@@ -31,6 +34,12 @@ package org.geotools.image.palette;
  * @source $URL$
  */
 public final class EfficientInverseColorMapComputation {
+	/**
+	 * Inverse color maps already computed, by palette and number of bits.
+	 */
+	private static final SoftValueHashMap<PaletteKey, EfficientInverseColorMapComputation> CACHE = 
+		new SoftValueHashMap<PaletteKey, EfficientInverseColorMapComputation>(16);
+
 	/**
 	 * Number of most significant bits we are going to use from the input color
 	 * in order to quantize them.
@@ -156,4 +165,72 @@ public final class EfficientInverseColorMapComputation {
 				+ ((blue >> (truncationBits)) & blueQuantizationMask)] & 0xFF;
 	}
 
+	/**
+	 * Returns the inverse color map for the given color map, computing it only
+	 * if it is not available from the cache. Map tiles are usually reduced to
+	 * the same few palettes, so this saves computing the inverse color map for
+	 * each image.
+	 * 
+	 * @param rgbColorMap
+	 *            the forward color map, as a 3*numcolors array. It must not be
+	 *            modified afterwards.
+	 * @param quantizationBits
+	 *            the number of bits we are going to save from the quantization.
+	 * @return the, possibly shared, inverse color map.
+	 */
+	public static EfficientInverseColorMapComputation getInstance(
+			byte[][] rgbColorMap, final int quantizationBits) {
+		final PaletteKey key = new PaletteKey(rgbColorMap, quantizationBits);
+		EfficientInverseColorMapComputation invCM = CACHE.get(key);
+		if (invCM == null) {
+			invCM = new EfficientInverseColorMapComputation(rgbColorMap,
+					quantizationBits);
+			CACHE.put(key, invCM);
+		}
+		return invCM;
+	}
+
+	/**
+	 * Key of the cache, a copy of the forward color map and the number of
+	 * bits.
+	 */
+	private static final class PaletteKey {
+		private final byte[] red;
+
+		private final byte[] green;
+
+		private final byte[] blue;
+
+		private final int bits;
+
+		private final int hash;
+
+		PaletteKey(byte[][] rgbColorMap, int bits) {
+			this.red = rgbColorMap[0].clone();
+			this.green = rgbColorMap[1].clone();
+			this.blue = rgbColorMap[2].clone();
+			this.bits = bits;
+			this.hash = ((Arrays.hashCode(red) * 31 + Arrays.hashCode(green)) * 31 + Arrays
+					.hashCode(blue))
+					* 31 + bits;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PaletteKey)) {
+				return false;
+			}
+			final PaletteKey other = (PaletteKey) obj;
+			return bits == other.bits && hash == other.hash
+					&& Arrays.equals(red, other.red)
+					&& Arrays.equals(green, other.green)
+					&& Arrays.equals(blue, other.blue);
+		}
+	}
+
 }
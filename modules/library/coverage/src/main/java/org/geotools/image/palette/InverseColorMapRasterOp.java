@@ -93,7 +93,7 @@ public final class InverseColorMapRasterOp implements RasterOp {
 			icm.getGreens(colorMap[1]);
 			icm.getBlues(colorMap[2]);
 		}
-		invCM = new EfficientInverseColorMapComputation(colorMap,quantizationColors);
+		invCM = EfficientInverseColorMapComputation.getInstance(colorMap,quantizationColors);
 
 	}
 
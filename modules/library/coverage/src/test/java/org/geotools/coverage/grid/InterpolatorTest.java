@@ -22,11 +22,15 @@ import java.awt.geom.Point2D;
 import java.awt.image.Raster;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.media.jai.BorderExtender;
 import javax.media.jai.Interpolation;
 import javax.media.jai.PlanarImage;
 
+import org.opengis.coverage.PointOutsideCoverageException;
 import org.opengis.coverage.grid.GridEnvelope;
 import org.opengis.geometry.Envelope;
 
@@ -119,6 +123,58 @@ public final class InterpolatorTest extends GridCoverageTestBase {
         }
     }
 
+    /**
+     * Tests that evaluating many points at once gives the same values than evaluating
+     * them one by one, with and without interpolation.
+     */
+    @Test
+    public void testBatchEvaluate() throws Exception {
+        GridCoverage2D coverage = getRandomCoverage().view(ViewType.GEOPHYSICS);
+        final Envelope envelope = coverage.getEnvelope();
+        final Random random = new Random(871024);
+        final int numPts = 500;
+        final double[] coords = new double[numPts * 2];
+        for (int i=0; i<coords.length; i+=2) {
+            coords[i  ] = envelope.getMinimum(0) + random.nextDouble() * envelope.getSpan(0);
+            coords[i+1] = envelope.getMinimum(1) + random.nextDouble() * envelope.getSpan(1);
+        }
+        // A point outside the coverage
+        coords[0] = envelope.getMinimum(0) - envelope.getSpan(0);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int n=0; n<=interpolations.length; n++) {
+                final GridCoverage2D tested = (n == 0) ? coverage :
+                        Interpolator2D.create(coverage, new Interpolation[] {interpolations[n-1]});
+                final double[] values = tested.evaluate(coords, null);
+                final double[] parallel = tested.evaluate(coords, null, executor);
+                for (int i=0; i<values.length; i++) {
+                    assertEquals(values[i], parallel[i], 0);
+                }
+                final int numBands = tested.getNumSampleDimensions();
+                assertEquals(numPts * numBands, values.length);
+                double[] buffer = null;
+                final Point2D.Double point = new Point2D.Double();
+                for (int i=0; i<numPts; i++) {
+                    point.x = coords[2*i];
+                    point.y = coords[2*i + 1];
+                    try {
+                        buffer = tested.evaluate(point, buffer);
+                    } catch (PointOutsideCoverageException e) {
+                        assertEquals(0, i);
+                        assertTrue(Double.isNaN(values[0]));
+                        continue;
+                    }
+                    for (int b=0; b<numBands; b++) {
+                        assertEquals(buffer[b], values[i*numBands + b], EPS);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     /**
      * Tests the serialization of a grid coverage.
      *
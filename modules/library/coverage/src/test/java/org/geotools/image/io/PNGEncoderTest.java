@@ -0,0 +1,156 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.image.io;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the images written by {@link PNGEncoder} are read back unchanged
+ *
+ * @source $URL$
+ */
+public class PNGEncoderTest {
+
+    ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRGB() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR)));
+    }
+
+    @Test
+    public void testRGBA() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_4BYTE_ABGR)));
+    }
+
+    @Test
+    public void testGray() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_GRAY)));
+    }
+
+    @Test
+    public void testPaletted() throws Exception {
+        byte[] r = new byte[] { 0, (byte) 255, 0, 0 };
+        byte[] g = new byte[] { 0, 0, (byte) 255, 0 };
+        byte[] b = new byte[] { 0, 0, 0, (byte) 255 };
+        byte[] a = new byte[] { 0, (byte) 255, (byte) 128, (byte) 255 };
+        IndexColorModel icm = new IndexColorModel(8, 4, r, g, b, a);
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_INDEXED, icm)));
+    }
+
+    @Test
+    public void testSubImage() throws Exception {
+        BufferedImage image = paint(new BufferedImage(300, 200, BufferedImage.TYPE_4BYTE_ABGR));
+        assertRoundTrip(image.getSubimage(17, 33, 201, 97));
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_USHORT_GRAY);
+        assertFalse(PNGEncoder.canEncode(image));
+        assertFalse(PNGEncoder.canEncode(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB)));
+        try {
+            new PNGEncoder(executor).encode(image, new MemoryCacheImageOutputStream(
+                    new ByteArrayOutputStream()));
+            fail("The image should have been rejected");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+    }
+
+    @Test
+    public void testSameOutputWithAndWithoutExecutor() throws Exception {
+        BufferedImage image = paint(new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR));
+        PNGEncoder parallel = new PNGEncoder(executor, PNGEncoder.Preset.SIZE);
+        parallel.setStripSize(10000);
+        PNGEncoder sequential = new PNGEncoder(null, PNGEncoder.Preset.SIZE);
+        sequential.setStripSize(10000);
+        assertTrue(Arrays.equals(encode(image, sequential), encode(image, parallel)));
+    }
+
+    BufferedImage paint(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.RED, image.getWidth(), image.getHeight(),
+                new Color(0, 0, 255, 100)));
+        g.fillRect(0, 0, image.getWidth(), image.getHeight() / 2);
+        g.setColor(Color.GREEN);
+        g.fillOval(20, 20, image.getWidth() - 40, image.getHeight() - 40);
+        g.dispose();
+        return image;
+    }
+
+    void assertRoundTrip(BufferedImage image) throws Exception {
+        assertTrue(PNGEncoder.canEncode(image));
+        for (PNGEncoder.Preset preset : PNGEncoder.Preset.values()) {
+            for (PNGEncoder.Filter filter : PNGEncoder.Filter.values()) {
+                for (int stripSize : new int[] { 5000, PNGEncoder.DEFAULT_STRIP_SIZE }) {
+                    for (ExecutorService service : new ExecutorService[] { null, executor }) {
+                        PNGEncoder encoder = new PNGEncoder(service, preset);
+                        encoder.setFilter(filter);
+                        encoder.setStripSize(stripSize);
+                        BufferedImage read = ImageIO.read(new ByteArrayInputStream(encode(
+                                image, encoder)));
+                        assertEquals(image.getWidth(), read.getWidth());
+                        assertEquals(image.getHeight(), read.getHeight());
+                        for (int y = 0; y < image.getHeight(); y++) {
+                            for (int x = 0; x < image.getWidth(); x++) {
+                                assertEquals(image.getRGB(x, y), read.getRGB(x, y));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    byte[] encode(BufferedImage image, PNGEncoder encoder) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageOutputStream ios = new MemoryCacheImageOutputStream(bos);
+        encoder.encode(image, ios);
+        ios.close();
+        return bos.toByteArray();
+    }
+}
@@ -18,9 +18,17 @@ package org.geotools.image.palette;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
 import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.media.jai.ImageLayout;
 import javax.media.jai.JAI;
@@ -168,4 +176,147 @@ public class CustomPaletteBuilderTest extends TestCase {
         assertEquals(5, icm.getMapSize());
         assertEquals(5, icm.getMapSize());        
     }
+
+    @Test
+    public void testParallelPalette() {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_4BYTE_ABGR);
+        Graphics g = image.getGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 100, 10);
+        g.setColor(Color.RED);
+        g.fillRect(100, 0, 100, 100);
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 100, 256, 50);
+        g.setColor(Color.GREEN);
+        g.fillRect(30, 200, 10, 10);
+        g.dispose();
+        // tile the image so that there is work to spread across threads
+        RenderedImage tiled = new ImageWorker(image).setRenderingHint(JAI.KEY_IMAGE_LAYOUT,
+                new ImageLayout(image).setTileGridXOffset(0).setTileGridYOffset(0)
+                        .setTileHeight(64).setTileWidth(64)).tile().getRenderedImage();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CustomPaletteBuilder builder = new CustomPaletteBuilder(tiled, 256, 1, 1, 1);
+            RenderedImage indexed = builder.buildPalette(executor).getIndexedImage(executor);
+            IndexColorModel icm = (IndexColorModel) indexed.getColorModel();
+            // 4 colors + transparent one
+            assertEquals(5, icm.getMapSize());
+            assertColors(image, indexed);
+
+            // same result without an executor
+            RenderedImage sequential = new CustomPaletteBuilder(tiled, 256, 1, 1, 1)
+                    .buildPalette(null).getIndexedImage(null);
+            assertEquals(icm, sequential.getColorModel());
+            assertColors(image, sequential);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelPaletteReduction() {
+        // more colors than the palette can hold
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                image.setRGB(x, y, (x << 16) | (y << 8) | ((x + y) & 0xff));
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            RenderedImage indexed = new CustomPaletteBuilder(image, 256, 1, 1, 1)
+                    .buildPalette(executor).getIndexedImage(executor);
+            IndexColorModel icm = (IndexColorModel) indexed.getColorModel();
+            assertTrue(icm.getMapSize() <= 256);
+            // every pixel maps to a close color
+            Raster raster = indexed.getData();
+            for (int y = 0; y < 256; y += 7) {
+                for (int x = 0; x < 256; x += 7) {
+                    int index = raster.getSample(x, y, 0);
+                    int expected = image.getRGB(x, y);
+                    assertEquals((expected >> 16) & 0xff, icm.getRed(index), 32);
+                    assertEquals((expected >> 8) & 0xff, icm.getGreen(index), 32);
+                    assertEquals(expected & 0xff, icm.getBlue(index), 32);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testGrayAlpha() {
+        ComponentColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                true, false, Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+        WritableRaster raster = cm.createCompatibleWritableRaster(64, 64);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                raster.setSample(x, y, 0, x < 32 ? 50 : 200);
+                raster.setSample(x, y, 1, y < 16 ? 0 : 255);
+            }
+        }
+        BufferedImage image = new BufferedImage(cm, raster, false, null);
+
+        RenderedImage indexed = new CustomPaletteBuilder(image, 256, 1, 1, 1).buildPalette()
+                .getIndexedImage();
+        IndexColorModel icm = (IndexColorModel) indexed.getColorModel();
+        // 2 grays + transparent one
+        assertEquals(3, icm.getMapSize());
+        Raster result = indexed.getData();
+        assertEquals(0, icm.getAlpha(result.getSample(10, 5, 0)));
+        int dark = result.getSample(10, 40, 0);
+        assertEquals(255, icm.getAlpha(dark));
+        assertEquals(50, icm.getRed(dark));
+        assertEquals(50, icm.getGreen(dark));
+        assertEquals(50, icm.getBlue(dark));
+        int light = result.getSample(50, 40, 0);
+        assertEquals(200, icm.getRed(light));
+        assertEquals(200, icm.getBlue(light));
+    }
+
+    @Test
+    public void testHistogramGrowth() {
+        CustomPaletteBuilder.ColorHistogram histogram = new CustomPaletteBuilder.ColorHistogram();
+        // far more colors than the initial table holds
+        for (int rgb = 0; rgb < 200000; rgb++) {
+            histogram.add(rgb * 83, 1);
+        }
+        histogram.add(0, 5);
+        long[] colors = histogram.sortedColors();
+        assertEquals(200000, colors.length);
+        // the most frequent color comes first
+        assertEquals(((long) (Integer.MAX_VALUE - 6) << 24), colors[0]);
+    }
+
+    @Test
+    public void testInverseColorMapCache() {
+        byte[][] palette = new byte[][] { { 0, (byte) 255, 0 }, { 0, 0, (byte) 255 },
+                { 0, 0, 0 } };
+        EfficientInverseColorMapComputation first = EfficientInverseColorMapComputation
+                .getInstance(palette, 5);
+        // equal palettes share the same inverse color map
+        byte[][] copy = new byte[][] { palette[0].clone(), palette[1].clone(),
+                palette[2].clone() };
+        assertSame(first, EfficientInverseColorMapComputation.getInstance(copy, 5));
+        assertNotSame(first, EfficientInverseColorMapComputation.getInstance(palette, 4));
+        assertEquals(1, first.getIndexNearest(255, 0, 0));
+        assertEquals(2, first.getIndexNearest(0, 255, 0));
+    }
+
+    private void assertColors(BufferedImage image, RenderedImage indexed) {
+        IndexColorModel icm = (IndexColorModel) indexed.getColorModel();
+        Raster raster = indexed.getData();
+        for (int y = 0; y < image.getHeight(); y += 5) {
+            for (int x = 0; x < image.getWidth(); x += 5) {
+                int index = raster.getSample(x, y, 0);
+                int expected = image.getRGB(x, y);
+                if ((expected >>> 24) == 0) {
+                    assertEquals(0, icm.getAlpha(index));
+                } else {
+                    assertEquals(expected, icm.getRGB(index));
+                }
+            }
+        }
+    }
 }
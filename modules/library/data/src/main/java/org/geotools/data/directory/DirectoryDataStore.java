@@ -34,6 +34,7 @@ import org.geotools.data.LockingManager;
 import org.geotools.data.Query;
 import org.geotools.data.ServiceInfo;
 import org.geotools.data.Transaction;
+import org.geotools.data.directory.DirectoryTypeCache.FileEntry;
 import org.geotools.data.simple.SimpleFeatureLocking;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.data.simple.SimpleFeatureStore;
@@ -56,35 +57,84 @@ public class DirectoryDataStore implements DataStore {
     public FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(
             Query query, Transaction transaction) throws IOException {
         String typeName = query.getTypeName();
-        return getDataStore(typeName).getFeatureReader(query, transaction);
+        FileEntry entry = cache.acquire(typeName);
+        try {
+            return new DirectoryFeatureReader(entry.getStore(true).getFeatureReader(query,
+                    transaction), entry);
+        } catch (IOException e) {
+            entry.release();
+            throw e;
+        } catch (RuntimeException e) {
+            entry.release();
+            throw e;
+        }
     }
 
     public SimpleFeatureSource getFeatureSource(
             String typeName) throws IOException {
-        SimpleFeatureSource fs = getDataStore(typeName).getFeatureSource(typeName);
-        if(fs instanceof SimpleFeatureLocking) {
-            return new DirectoryFeatureLocking((SimpleFeatureLocking) fs);
-        } else if(fs instanceof FeatureStore) {
-            return new DirectoryFeatureStore((SimpleFeatureStore) fs);
-        } else {
-            return new DirectoryFeatureSource((SimpleFeatureSource) fs);
+        FileEntry entry = cache.acquire(typeName);
+        try {
+            SimpleFeatureSource fs = entry.getStore(true).getFeatureSource(typeName);
+            DirectoryFeatureSource source;
+            if(fs instanceof SimpleFeatureLocking) {
+                source = new DirectoryFeatureLocking((SimpleFeatureLocking) fs);
+            } else if(fs instanceof FeatureStore) {
+                source = new DirectoryFeatureStore((SimpleFeatureStore) fs);
+            } else {
+                source = new DirectoryFeatureSource((SimpleFeatureSource) fs);
+            }
+            // the delegate store cannot be evicted as long as the source is around
+            entry.addSource(source);
+            return source;
+        } finally {
+            entry.release();
         }
     }
 
     public FeatureWriter<SimpleFeatureType, SimpleFeature> getFeatureWriter(
             String typeName, Filter filter, Transaction transaction)
             throws IOException {
-        return getDataStore(typeName).getFeatureWriter(typeName, filter, transaction);
+        FileEntry entry = cache.acquire(typeName);
+        try {
+            return new DirectoryFeatureWriter(entry.getStore(true).getFeatureWriter(typeName,
+                    filter, transaction), entry);
+        } catch (IOException e) {
+            entry.release();
+            throw e;
+        } catch (RuntimeException e) {
+            entry.release();
+            throw e;
+        }
     }
 
     public FeatureWriter<SimpleFeatureType, SimpleFeature> getFeatureWriter(
             String typeName, Transaction transaction) throws IOException {
-        return getDataStore(typeName).getFeatureWriter(typeName, transaction);
+        FileEntry entry = cache.acquire(typeName);
+        try {
+            return new DirectoryFeatureWriter(entry.getStore(true).getFeatureWriter(typeName,
+                    transaction), entry);
+        } catch (IOException e) {
+            entry.release();
+            throw e;
+        } catch (RuntimeException e) {
+            entry.release();
+            throw e;
+        }
     }
 
     public FeatureWriter<SimpleFeatureType, SimpleFeature> getFeatureWriterAppend(
             String typeName, Transaction transaction) throws IOException {
-        return getDataStore(typeName).getFeatureWriterAppend(typeName, transaction);
+        FileEntry entry = cache.acquire(typeName);
+        try {
+            return new DirectoryFeatureWriter(entry.getStore(true).getFeatureWriterAppend(
+                    typeName, transaction), entry);
+        } catch (IOException e) {
+            entry.release();
+            throw e;
+        } catch (RuntimeException e) {
+            entry.release();
+            throw e;
+        }
     }
 
     public LockingManager getLockingManager() {
@@ -95,7 +145,12 @@ public class DirectoryDataStore implements DataStore {
     }
 
     public SimpleFeatureType getSchema(String typeName) throws IOException {
-        return getDataStore(typeName).getSchema(typeName);
+        FileEntry entry = cache.acquire(typeName);
+        try {
+            return entry.getStore(true).getSchema(typeName);
+        } finally {
+            entry.release();
+        }
     }
 
     public String[] getTypeNames() throws IOException {
@@ -105,7 +160,12 @@ public class DirectoryDataStore implements DataStore {
 
     public void updateSchema(String typeName, SimpleFeatureType featureType)
             throws IOException {
-        getDataStore(typeName).updateSchema(typeName, featureType);
+        FileEntry entry = cache.acquire(typeName);
+        try {
+            entry.getStore(true).updateSchema(typeName, featureType);
+        } finally {
+            entry.release();
+        }
     }
 
     public void createSchema(SimpleFeatureType featureType) throws IOException {
@@ -125,6 +185,20 @@ public class DirectoryDataStore implements DataStore {
         }
     }
 
+    /**
+     * Sets the maximum number of delegate data stores kept open at the same time, the least
+     * recently used ones are disposed beyond this limit and opened again when needed.
+     * Defaults to 256.
+     * 
+     * @param maxOpenStores
+     */
+    public void setMaxOpenStores(int maxOpenStores) {
+        if (maxOpenStores < 1) {
+            throw new IllegalArgumentException("At least one store must be kept open");
+        }
+        cache.maxOpenStores = maxOpenStores;
+    }
+
     public void dispose() {
         cache.dispose();
     }
@@ -0,0 +1,48 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.directory;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+
+/**
+ * Keeps the feature source it comes from reachable, and thus the delegate data store open,
+ * as long as the collection is in use
+ *
+ * @source $URL$
+ */
+class DirectoryFeatureCollection extends DecoratingSimpleFeatureCollection {
+
+    DirectoryFeatureSource source;
+
+    DirectoryFeatureCollection(SimpleFeatureCollection delegate, DirectoryFeatureSource source) {
+        super(delegate);
+        this.source = source;
+    }
+
+    @Override
+    public SimpleFeatureCollection subCollection(Filter filter) {
+        return new DirectoryFeatureCollection(delegate.subCollection(filter), source);
+    }
+
+    @Override
+    public SimpleFeatureCollection sort(SortBy order) {
+        return new DirectoryFeatureCollection(delegate.sort(order), source);
+    }
+}
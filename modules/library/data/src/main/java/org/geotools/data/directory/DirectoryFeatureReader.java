@@ -0,0 +1,67 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.directory;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.data.directory.DirectoryTypeCache.FileEntry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Keeps the delegate data store in use, thus open, until the reader is closed
+ * 
+ * @source $URL$
+ */
+class DirectoryFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+    FeatureReader<SimpleFeatureType, SimpleFeature> reader;
+
+    FileEntry entry;
+
+    public DirectoryFeatureReader(FeatureReader<SimpleFeatureType, SimpleFeature> delegate,
+            FileEntry entry) {
+        this.reader = delegate;
+        this.entry = entry;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return reader.getFeatureType();
+    }
+
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        return reader.next();
+    }
+
+    public boolean hasNext() throws IOException {
+        return reader.hasNext();
+    }
+
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } finally {
+            if (entry != null) {
+                entry.release();
+                entry = null;
+            }
+        }
+    }
+
+}
@@ -64,17 +64,17 @@ public class DirectoryFeatureSource implements SimpleFeatureSource {
 
     public SimpleFeatureCollection getFeatures()
             throws IOException {
-        return fsource.getFeatures();
+        return new DirectoryFeatureCollection(fsource.getFeatures(), this);
     }
 
     public SimpleFeatureCollection getFeatures(
             Filter filter) throws IOException {
-        return fsource.getFeatures(filter);
+        return new DirectoryFeatureCollection(fsource.getFeatures(filter), this);
     }
 
     public SimpleFeatureCollection getFeatures(
             Query query) throws IOException {
-        return fsource.getFeatures(query);
+        return new DirectoryFeatureCollection(fsource.getFeatures(query), this);
     }
 
     public ResourceInfo getInfo() {
@@ -0,0 +1,73 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.directory;
+
+import java.io.IOException;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.directory.DirectoryTypeCache.FileEntry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Keeps the delegate data store in use, thus open, until the writer is closed
+ * 
+ * @source $URL$
+ */
+class DirectoryFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeature> {
+    FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+
+    FileEntry entry;
+
+    public DirectoryFeatureWriter(FeatureWriter<SimpleFeatureType, SimpleFeature> delegate,
+            FileEntry entry) {
+        this.writer = delegate;
+        this.entry = entry;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return writer.getFeatureType();
+    }
+
+    public SimpleFeature next() throws IOException {
+        return writer.next();
+    }
+
+    public void remove() throws IOException {
+        writer.remove();
+    }
+
+    public void write() throws IOException {
+        writer.write();
+    }
+
+    public boolean hasNext() throws IOException {
+        return writer.hasNext();
+    }
+
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            if (entry != null) {
+                entry.release();
+                entry = null;
+            }
+        }
+    }
+
+}
@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
@@ -28,12 +29,13 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -47,6 +49,12 @@ import org.geotools.util.logging.Logging;
 /**
  * <p>Handles all of the data stores that a directory data store relies onto,
  * centralizing the gathering and caching policies and code.</p>
+ * <p>The cache is updated incrementally, only the files added to, removed from or modified
+ * in the directory are probed, along with the ones whose probing failed before, and the
+ * data stores are opened lazily. At most {@link #maxOpenStores} of them are kept open, the
+ * least recently used idle ones being disposed beyond that limit and opened again on demand.
+ * A store is in use from {@link #acquire} to {@link FileEntry#release}, and as long as a
+ * feature source obtained from it is reachable, its disposal is deferred until then.</p>
  * <p>The class is completely thread safe</p>
  * 
  * @author Andrea Aime - OpenGeo
@@ -54,6 +62,11 @@ import org.geotools.util.logging.Logging;
 class DirectoryTypeCache {
     static final Logger LOGGER = Logging.getLogger(DirectoryTypeCache.class);
 
+    /**
+     * The default maximum number of data stores kept open at the same time
+     */
+    static final int DEFAULT_MAX_OPEN_STORES = 256;
+
     /**
      * The feature type cache, a map from the feature type to the 
      * information of where the feature type is coming from
@@ -80,6 +93,28 @@ class DirectoryTypeCache {
      * Will create the delegate stores
      */
     FileStoreFactory factory;
+
+    /**
+     * The files found in the directory at the last refresh, with their last
+     * modification time and length
+     */
+    Map<File, FileStamp> files = new HashMap<File, FileStamp>();
+
+    /**
+     * The files whose probing failed at the last refresh, retried at the next one
+     */
+    Set<File> failed = new HashSet<File>();
+
+    /**
+     * The maximum number of data stores kept open at the same time
+     */
+    volatile int maxOpenStores = DEFAULT_MAX_OPEN_STORES;
+
+    /**
+     * The entries whose data store has been opened, least recently used first
+     */
+    LinkedHashMap<FileEntry, Boolean> openEntries = new LinkedHashMap<FileEntry, Boolean>(16,
+            0.75f, true);
     
     /**
      * Builds a new cache.
@@ -136,6 +171,28 @@ class DirectoryTypeCache {
             lock.readLock().unlock();
         }
     }
+
+    /**
+     * Returns the entry of a specific feature type, whose data store is marked as in use and
+     * won't be disposed until {@link FileEntry#release()} is called
+     * 
+     * @param typeName
+     * @return
+     */
+    FileEntry acquire(String typeName) throws IOException {
+        lock.readLock().lock();
+        try {
+            updateCache();
+            FileEntry fileEntry = ftCache.get(typeName);
+            if (fileEntry == null) {
+                throw new IOException("Not available: " + typeName);
+            }
+            fileEntry.acquire();
+            return fileEntry;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
     
     /**
      * Returns all the type names known
@@ -206,94 +263,223 @@ class DirectoryTypeCache {
     /**
      * Here we try to refresh the contents of the feature type cache.
      * <p>
-     * Basically we want to:
+     * The directory listing is compared with the one of the previous refresh, and only the
+     * changed files are handled, a file being changed if it has been added, removed, or if
+     * its modification time or length differ:
      * <ul>
      * <li>remove all data stores associated to files that have been removed</li>
-     * <li>add all data stores associated to new files</li>
+     * <li>list again the feature types of the data stores whose file has been modified</li>
+     * <li>add all data stores associated to new files, along with files sharing the base name
+     * of a changed file that are not associated to any store yet (a shapefile can be
+     * recognized only once all its sibling files are in place), and the files whose probing
+     * failed at the previous refresh</li>
      * <li>remove all feature types that are no more there, and add all feature
      * types that are new
      * <li>
      * </ul>
      * All of this should be done trying to avoid re-creating all of the
-     * datastores already loaded. We assume a properly written datastore will be
+     * datastores already loaded, the ones associated to files that did not change are not even
+     * opened. We assume a properly written datastore will be
      * able to detect changes in its own feature type list and feature type
      * schemas on its own.
      * 
      * @throws IOException
      */
-    void refreshCacheContents() throws IOException {
-        // prepare the replacement ft cache
-        Map<String, FileEntry> result = new TreeMap<String, FileEntry>();
+    synchronized void refreshCacheContents() throws IOException {
+        // grab all the candidate files, skipping over directories, we don't recurse
+        File[] listing = directory.listFiles(new DirectoryFilter());
+        Map<File, FileStamp> current = new HashMap<File, FileStamp>();
+        if (listing != null) {
+            for (File file : listing) {
+                current.put(file, new FileStamp(file));
+            }
+        }
+
+        // find out the base names of the files that have been added, removed or modified,
+        // along with the ones that could not be probed last time
+        Set<String> changed = new HashSet<String>();
+        Set<File> modified = new HashSet<File>();
+        for (Map.Entry<File, FileStamp> file : current.entrySet()) {
+            FileStamp previous = files.get(file.getKey());
+            if (previous == null) {
+                changed.add(baseName(file.getKey()));
+            } else if (!previous.equals(file.getValue())) {
+                changed.add(baseName(file.getKey()));
+                modified.add(file.getKey());
+            }
+        }
+        for (File file : files.keySet()) {
+            if (!current.containsKey(file)) {
+                changed.add(baseName(file));
+            }
+        }
+        Set<File> retry = failed;
+        failed = new HashSet<File>();
+        for (File file : retry) {
+            if (current.containsKey(file)) {
+                changed.add(baseName(file));
+            }
+        }
+        files = current;
+        if (changed.isEmpty()) {
+            return;
+        }
 
         // build support structure used to quickly find files that need updating
         Map<File, FileEntry> fileCache = new HashMap<File, FileEntry>();
         for (FileEntry entry : ftCache.values()) {
             fileCache.put(entry.file, entry);
         }
-        
-        // grab all the candidate files
-        for (File file : directory.listFiles()) {
-            // skip over directories, we don't recurse
-            if(file.isDirectory()) {
+
+        // remove the feature types of the files that are gone, disposing their
+        // data stores. We are going to update the ftCache as we go, this is thread safe
+        // since we are using a concurrent hash map for ftCache, and won't
+        // hinder users of live data stores since we are not going to touch
+        // the ones that are not being removed (the ones that we are going to
+        // remove should be not working anyways)
+        Set<FileEntry> disposable = new HashSet<FileEntry>();
+        for (Iterator<FileEntry> it = ftCache.values().iterator(); it.hasNext();) {
+            FileEntry entry = it.next();
+            if (!current.containsKey(entry.file)) {
+                it.remove();
+                disposable.add(entry);
+            }
+        }
+        for (FileEntry entry : disposable) {
+            entry.dispose();
+        }
+
+        // list again the feature types of the stores whose file has been modified in place,
+        // the store is kept as is since it might be in use
+        for (FileEntry entry : new HashSet<FileEntry>(fileCache.values())) {
+            if (!modified.contains(entry.file) || disposable.contains(entry)) {
                 continue;
             }
-            
-            // do we have the same datastore in the current cache? If so keep it, we don't
-            // want to rebuild over and over the same stores
-            FileEntry entry = fileCache.get(file);
-            
-            // if missing build a new one
-            if(entry == null) {
-                DataStore store = factory.getDataStore(file);
-                if(store != null) {
-                    entry = new FileEntry(file, store);
+            String[] typeNames;
+            try {
+                typeNames = entry.getStore(true).getTypeNames();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Could not list the feature types of " + entry.file, e);
+                failed.add(entry.file);
+                continue;
+            }
+            for (Iterator<FileEntry> it = ftCache.values().iterator(); it.hasNext();) {
+                if (it.next() == entry) {
+                    it.remove();
                 }
             }
-            
-            // if we managed to build an entry collect its feature types
-            if(entry != null) {
-                for (String typeName : entry.getStore(true).getTypeNames()) {
-                    // don't override existing entries
-                    if (!result.containsKey(typeName))
-                        result.put(typeName, entry);
-                    else {
-                        LOGGER.log(Level.WARNING, "Type name " + typeName
-                                + " is available from multiple datastores");
-                    }
+            boolean used = register(entry, typeNames);
+            if (!used) {
+                fileCache.remove(entry.file);
+                entry.dispose();
+            }
+        }
+
+        // now let's add the feature types of the new files, in the same order
+        // a full directory listing would use
+        Set<File> candidates = new TreeSet<File>();
+        for (File file : current.keySet()) {
+            if (changed.contains(baseName(file)) && !fileCache.containsKey(file)) {
+                candidates.add(file);
+            }
+        }
+        for (File file : candidates) {
+            FileEntry entry = null;
+            try {
+                DataStore store = factory.getDataStore(file);
+                if (store == null) {
+                    continue;
+                }
+                entry = new FileEntry(file, store);
+                if (!register(entry, store.getTypeNames())) {
+                    entry.dispose();
+                }
+            } catch (Exception e) {
+                // try again at the next refresh
+                LOGGER.log(Level.WARNING, "Could not probe " + file, e);
+                failed.add(file);
+                if (entry != null) {
+                    entry.dispose();
                 }
             }
         }
-        
-        // update the cache. We need to remove the missing elements, disposing
-        // the data stores that are not referenced anymore, and add the new ones
-        // we are going to update the ftCache as we go, this is thread safe
-        // since we are using a concurrent hash map for ftCache, and won't
-        // hinder users of live data stores since we are not going to touch
-        // the ones that are not being removed (the ones that we are going to
-        // remove should be not working anyways)
-        Set<String> removedFTs = new HashSet<String>(ftCache.keySet());
-        removedFTs.removeAll(result.keySet());
-        
-        // collect all data stores that are referred by a feature type that we 
-        // are going to remove, but are not referred by any feature type we're
-        // going to keep. Clean the ftCache from removed feature types at the same
-        // time.
-        Set<FileEntry> disposable = new HashSet<FileEntry>(); 
-        for (String removedFT : removedFTs) {
-            disposable.add(ftCache.remove(removedFT));
+    }
+
+    /**
+     * Registers the entry for the given feature types, unless they are already provided by
+     * another entry
+     * 
+     * @return true if the entry has been registered for at least one feature type
+     */
+    private boolean register(FileEntry entry, String[] typeNames) {
+        boolean used = false;
+        for (String typeName : typeNames) {
+            // don't override existing entries
+            if (!ftCache.containsKey(typeName)) {
+                ftCache.put(typeName, entry);
+                used = true;
+            } else {
+                LOGGER.log(Level.WARNING, "Type name " + typeName
+                        + " is available from multiple datastores");
+            }
         }
-        for (FileEntry entry : result.values()) {
-            disposable.remove(entry);
+        return used;
+    }
+
+    /**
+     * The name of the file without its extension, used to group the files that make up a
+     * single data source, such as the .shp, .dbf and .shx of a shapefile
+     */
+    static String baseName(File file) {
+        String name = file.getName();
+        int idx = name.indexOf('.');
+        return idx == -1 ? name : name.substring(0, idx);
+    }
+
+    /**
+     * Records the access to an open store, closing the least recently used idle ones beyond
+     * {@link #maxOpenStores}
+     */
+    void touch(FileEntry entry) {
+        synchronized (openEntries) {
+            openEntries.put(entry, Boolean.TRUE);
         }
-        for (FileEntry entry : disposable) {
-            entry.dispose();
+        trim(entry);
+    }
+
+    /**
+     * Closes the least recently used idle stores beyond {@link #maxOpenStores}. The stores
+     * in use are skipped, they are closed by a later call once released.
+     * 
+     * @param keep an entry not to close, or null
+     */
+    void trim(FileEntry keep) {
+        List<FileEntry> evicted = null;
+        synchronized (openEntries) {
+            if (openEntries.size() > maxOpenStores) {
+                evicted = new ArrayList<FileEntry>();
+                int open = openEntries.size();
+                Iterator<FileEntry> it = openEntries.keySet().iterator();
+                while (open > maxOpenStores && it.hasNext()) {
+                    FileEntry eldest = it.next();
+                    if (eldest != keep && !eldest.isInUse()) {
+                        it.remove();
+                        evicted.add(eldest);
+                        open--;
+                    }
+                }
+            }
         }
-        
-        // now let's add all the new ones
-        Set<String> added = new HashSet<String>(result.keySet());
-        added.removeAll(ftCache.keySet());
-        for (String newFeatureType : added) {
-            ftCache.put(newFeatureType, result.get(newFeatureType));
+        // closed out of the lock, closing does not need it
+        if (evicted != null) {
+            for (FileEntry eldest : evicted) {
+                if (!eldest.closeIfIdle()) {
+                    // acquired in the meantime, still open
+                    synchronized (openEntries) {
+                        openEntries.put(eldest, Boolean.TRUE);
+                    }
+                }
+            }
         }
     }
 
@@ -349,6 +535,9 @@ class DirectoryTypeCache {
         for (FileEntry entry : ftCache.values()) {
             entry.dispose();
         }
+        synchronized (openEntries) {
+            openEntries.clear();
+        }
     }
 
     /**
@@ -365,30 +554,167 @@ class DirectoryTypeCache {
 
     }
 
+    /**
+     * The last modification time and length of a file
+     */
+    static class FileStamp {
+        final long lastModified;
+
+        final long length;
+
+        FileStamp(File file) {
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp other = (FileStamp) obj;
+            return lastModified == other.lastModified && length == other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (lastModified ^ (lastModified >>> 32) ^ length ^ (length >>> 32));
+        }
+    }
+
     class FileEntry {
         File file;
 
-        SoftReference<DataStore> ref;
+        volatile SoftReference<DataStore> ref;
+
+        /**
+         * The number of users of the store, which is not closed while in use
+         */
+        AtomicInteger users = new AtomicInteger();
+
+        /**
+         * Set once the file is gone, the store is disposed as soon as it is not in use
+         */
+        volatile boolean disposed;
+
+        /**
+         * The feature sources handed out, the store is in use as long as one of them is
+         * reachable
+         */
+        List<WeakReference<Object>> sources = new ArrayList<WeakReference<Object>>();
         
         public FileEntry(File file, DataStore store) {
             this.file = file;
             ref = new DataStoreSoftReference(store);
+            touch(this);
         }
         
         DataStore getStore(boolean force) throws IOException {
-            DataStore store = ref != null ? ref.get() : null;
-            if(store == null && force) {
-                store = factory.getDataStore(file);
-                ref = new DataStoreSoftReference(store);
-            } 
+            DataStore store;
+            synchronized (this) {
+                SoftReference<DataStore> current = ref;
+                store = current != null ? current.get() : null;
+                if(store == null && force) {
+                    store = factory.getDataStore(file);
+                    ref = new DataStoreSoftReference(store);
+                }
+            }
+            // out of the entry lock, touching might close other entries
+            if(store != null)
+                touch(this);
             return store;
         }
+
+        /**
+         * Returns the store, marked as in use until {@link #release()} is called
+         */
+        DataStore acquire() throws IOException {
+            while (true) {
+                DataStore store = getStore(true);
+                synchronized (this) {
+                    SoftReference<DataStore> current = ref;
+                    if (current != null && current.get() == store) {
+                        users.incrementAndGet();
+                        return store;
+                    }
+                }
+                // closed in the meantime, open it again
+            }
+        }
+
+        /**
+         * Marks the store as no more in use by one of its users, closing the idle stores
+         * beyond the limit
+         */
+        void release() {
+            if (users.decrementAndGet() == 0) {
+                if (disposed) {
+                    closeIfIdle();
+                } else {
+                    trim(null);
+                }
+            }
+        }
+
+        /**
+         * Marks the store as in use as long as the given feature source is reachable. The
+         * caller has to hold the store with {@link #acquire()} meanwhile.
+         */
+        void addSource(Object source) {
+            synchronized (sources) {
+                sources.add(new WeakReference<Object>(source));
+            }
+        }
+
+        boolean isInUse() {
+            if (users.get() > 0) {
+                return true;
+            }
+            synchronized (sources) {
+                for (Iterator<WeakReference<Object>> it = sources.iterator(); it.hasNext();) {
+                    if (it.next().get() == null) {
+                        it.remove();
+                    }
+                }
+                return !sources.isEmpty();
+            }
+        }
+
+        /**
+         * Closes the store unless it is in use. Once disposed for good only the readers and
+         * writers still open keep it alive, the feature sources handed out no longer do
+         * 
+         * @return true if the store has been closed
+         */
+        synchronized boolean closeIfIdle() {
+            if (disposed ? users.get() > 0 : isInUse()) {
+                return false;
+            }
+            close();
+            return true;
+        }
         
+        /**
+         * Disposes the store, which will be opened again if needed
+         */
+        void close() {
+            SoftReference<DataStore> current = ref;
+            ref = null;
+            if(current != null)
+                current.clear();
+        }
+        
+        /**
+         * Disposes the store for good, once its current users release it
+         */
         void dispose() {
-            DataStore store = ref != null ? ref.get() : null;
-            if(store != null)
-                store.dispose();
-            ref.clear();
+            synchronized (openEntries) {
+                openEntries.remove(this);
+            }
+            synchronized (this) {
+                disposed = true;
+                closeIfIdle();
+            }
         }
     }
     
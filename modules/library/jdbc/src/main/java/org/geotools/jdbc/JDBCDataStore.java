@@ -36,6 +36,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +71,7 @@ import org.geotools.factory.Hints;
 import org.geotools.feature.NameImpl;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.visitor.CountVisitor;
+import org.geotools.feature.visitor.GroupByVisitor;
 import org.geotools.filter.FilterCapabilities;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
@@ -263,6 +265,16 @@ public final class JDBCDataStore extends ContentDataStore
      * Contains the SQL definition of the various virtual tables
      */
     protected Map<String, VirtualTable> virtualTables = new ConcurrentHashMap<String, VirtualTable>();
+    
+    /**
+     * The cache of query results, if any
+     */
+    protected JDBCQueryCache queryCache;
+    
+    /**
+     * The cache of the SQL generated for prepared statement selects, if any
+     */
+    protected SQLTemplateCache sqlTemplateCache;
 
     /**
      * Adds a virtual table to the data store. If a virtual table with the same name was registered this
@@ -343,6 +355,44 @@ public final class JDBCDataStore extends ContentDataStore
     public void setFetchSize(int fetchSize) {
         this.fetchSize = fetchSize;
     }
+    
+    /**
+     * The cache holding the results of the queries run outside of a transaction, or
+     * <code>null</code> if query results are not cached (the default)
+     */
+    public JDBCQueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Sets the cache holding the results of the queries run outside of a transaction.
+     * The same cache can be shared among datastores connected to the same database, in 
+     * that case a write performed by any of them will invalidate the cached results of 
+     * the modified table for all of them.
+     * @param queryCache the cache, or <code>null</code> to disable query result caching
+     */
+    public void setQueryCache(JDBCQueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+    
+    /**
+     * The cache of the SQL generated for the selects run by prepared statement based dialects,
+     * or <code>null</code> if the SQL is generated anew for each query (the default)
+     */
+    public SQLTemplateCache getSQLTemplateCache() {
+        return sqlTemplateCache;
+    }
+
+    /**
+     * Sets the cache of the SQL generated for the selects run by prepared statement based 
+     * dialects. Queries with the same structure, differing only in the values of the filter
+     * literals, will reuse the same SQL statement and just bind different values to it. 
+     * The cache is ignored for dialects not using prepared statements.
+     * @param sqlTemplateCache the cache, or <code>null</code> to disable SQL caching
+     */
+    public void setSQLTemplateCache(SQLTemplateCache sqlTemplateCache) {
+        this.sqlTemplateCache = sqlTemplateCache;
+    }
 
     /**
      * Determines if the datastore creates feature types which include those columns / attributes
@@ -1226,6 +1276,11 @@ public final class JDBCDataStore extends ContentDataStore
     protected Object getAggregateValue(FeatureVisitor visitor, SimpleFeatureType featureType, Query query, Connection cx ) 
         throws IOException {
         
+        // grouped aggregates are handled separately
+        if ( visitor instanceof GroupByVisitor ) {
+            return getGroupByValue((GroupByVisitor) visitor, featureType, query, cx);
+        }
+        
         //get the name of the function
         String function = getAggregateFunctions().get( visitor.getClass() );
         if ( function == null ) {
@@ -1290,6 +1345,152 @@ public final class JDBCDataStore extends ContentDataStore
         }
     }
 
+    /**
+     * Computes the aggregates of a {@link GroupByVisitor} with a single GROUP BY query and
+     * sets them on the visitor.
+     * <p>
+     * Returns <code>null</code> if the visitor cannot be translated to sql, that is, when the
+     * group by or aggregated expressions are not references to non geometric attributes, or
+     * the query uses a limit/offset the dialect cannot encode.
+     * </p>
+     */
+    protected Map<List<Object>, Object> getGroupByValue(GroupByVisitor visitor,
+            SimpleFeatureType featureType, Query query, Connection cx) throws IOException {
+        // grouping and aggregation is delegated only for plain columns
+        List<AttributeDescriptor> groupBy = new ArrayList<AttributeDescriptor>();
+        for (Expression expression : visitor.getGroupByExpressions()) {
+            AttributeDescriptor att = getNonGeometricAttribute(expression, featureType);
+            if (att == null) {
+                LOGGER.fine("Cannot encode group by expression " + expression + " in sql");
+                return null;
+            }
+            groupBy.add(att);
+        }
+        AttributeDescriptor att = null;
+        if (visitor.getAggregate() != GroupByVisitor.Aggregate.COUNT) {
+            att = getNonGeometricAttribute(visitor.getExpression(), featureType);
+            if (att == null) {
+                LOGGER.fine("Cannot encode aggregated expression " + visitor.getExpression()
+                        + " in sql");
+                return null;
+            }
+        }
+        final Integer offset = query.getStartIndex();
+        if (!dialect.isLimitOffsetSupported() && (query.getMaxFeatures() != Integer.MAX_VALUE
+                || (offset != null && offset > 0))) {
+            return null;
+        }
+
+        try {
+            Map<List<Object>, Object> results = new LinkedHashMap<List<Object>, Object>();
+            Statement st = null;
+            ResultSet rs = null;
+            try {
+                if (dialect instanceof PreparedStatementSQLDialect) {
+                    st = selectGroupBySQLPS(visitor.getAggregate(), att, groupBy, featureType,
+                            query, cx);
+                    rs = ((PreparedStatement) st).executeQuery();
+                } else {
+                    String sql = selectGroupBySQL(visitor.getAggregate(), att, groupBy,
+                            featureType, query);
+                    LOGGER.fine(sql);
+
+                    st = cx.createStatement();
+                    rs = st.executeQuery(sql);
+                }
+
+                while (rs.next()) {
+                    List<Object> key = new ArrayList<Object>(groupBy.size());
+                    for (int i = 0; i < groupBy.size(); i++) {
+                        key.add(convert(rs.getObject(i + 1), groupBy.get(i)));
+                    }
+                    results.put(key, decodeGroupByAggregate(visitor.getAggregate(), att, rs,
+                            groupBy.size() + 1));
+                }
+            } finally {
+                closeSafe(rs);
+                closeSafe(st);
+            }
+
+            visitor.setValue(results);
+            return results;
+        } catch (SQLException e) {
+            throw (IOException) new IOException().initCause(e);
+        }
+    }
+
+    /**
+     * Returns the attribute referenced by the expression, provided it is a property name 
+     * pointing to a non geometric attribute, or <code>null</code> otherwise
+     */
+    AttributeDescriptor getNonGeometricAttribute(Expression expression, SimpleFeatureType featureType) {
+        if (!(expression instanceof PropertyName)) {
+            return null;
+        }
+        Object att = expression.evaluate(featureType);
+        if (att instanceof AttributeDescriptor && !(att instanceof GeometryDescriptor)) {
+            return (AttributeDescriptor) att;
+        }
+        return null;
+    }
+
+    /**
+     * Converts a value read from the database to the attribute binding, in order to 
+     * return the same values an in memory computation would
+     */
+    Object convert(Object value, AttributeDescriptor att) {
+        if (value == null || att == null) {
+            return value;
+        }
+        Object converted = Converters.convert(value, att.getType().getBinding());
+        return converted != null ? converted : value;
+    }
+
+    /**
+     * Decodes the aggregate computed for a group, reading it at the specified column
+     * index of the group by query
+     */
+    Object decodeGroupByAggregate(GroupByVisitor.Aggregate aggregate, AttributeDescriptor att,
+            ResultSet rs, int column) throws SQLException {
+        switch (aggregate) {
+        case COUNT:
+            Object count = rs.getObject(column);
+            return count == null ? null : Converters.convert(count, Integer.class);
+        case SUM:
+            return decodeSum(rs.getObject(column), att);
+        case AVERAGE:
+            // computed as sum / count to get the same results as in memory regardless
+            // of how the database types the average of an integral column
+            Number sum = decodeSum(rs.getObject(column), att);
+            int n = rs.getInt(column + 1);
+            if (sum == null || n == 0) {
+                return null;
+            }
+            return sum.doubleValue() / n;
+        default:
+            return convert(rs.getObject(column), att);
+        }
+    }
+
+    /**
+     * Decodes a sum as {@link GroupByVisitor} computes it in memory, a Long for integral
+     * attributes and a Double otherwise, whatever the type the database uses
+     */
+    Number decodeSum(Object value, AttributeDescriptor att) {
+        if (value == null) {
+            return null;
+        }
+        Number number = value instanceof Number ? (Number) value : Converters.convert(value,
+                Double.class);
+        if (number == null) {
+            return null;
+        }
+        if (GroupByVisitor.isIntegral(att.getType().getBinding())) {
+            return number.longValue();
+        }
+        return number.doubleValue();
+    }
+
     /**
      * Helper method for getting the expression from a visitor
      * TODO: Remove this method when there is an interface for aggregate visitors.
@@ -1425,13 +1626,15 @@ public final class JDBCDataStore extends ContentDataStore
                     String fid = featureType.getTypeName() + "." + encodeFID(keyValues);
                     feature.getUserData().put("fid", fid);
                 }
-
+                
                 //st.executeBatch();
             } catch (SQLException e) {
                 String msg = "Error inserting features";
                 throw (IOException) new IOException(msg).initCause(e);
             } finally {
                 closeSafe(st);
+                // after the writes, so that readers cannot cache the old rows again
+                tableModified(featureType, cx);
             }
         }
     }
@@ -1457,40 +1660,45 @@ public final class JDBCDataStore extends ContentDataStore
             return;
         }
 
-        if ( dialect instanceof PreparedStatementSQLDialect ) {
-            try {
-                PreparedStatement ps = updateSQLPS(featureType, attributes, values, filter, cx);
+        try {
+            if ( dialect instanceof PreparedStatementSQLDialect ) {
                 try {
-                    ((PreparedStatementSQLDialect)dialect).onUpdate(ps, cx, featureType);
-                    ps.execute();
-                }
-                finally {
-                    closeSafe( ps );
+                    PreparedStatement ps = updateSQLPS(featureType, attributes, values, filter, cx);
+                    try {
+                        ((PreparedStatementSQLDialect)dialect).onUpdate(ps, cx, featureType);
+                        ps.execute();
+                    }
+                    finally {
+                        closeSafe( ps );
+                    }
+                } 
+                catch (SQLException e) {
+                    throw new RuntimeException( e );
                 }
-            } 
-            catch (SQLException e) {
-                throw new RuntimeException( e );
             }
-        }
-        else {
-            String sql = updateSQL(featureType, attributes, values, filter);
-
-            try {
-                Statement st = cx.createStatement();
+            else {
+                String sql = updateSQL(featureType, attributes, values, filter);
 
                 try {
-                    ((BasicSQLDialect)dialect).onUpdate(st, cx, featureType);
-                    
-                    LOGGER.log(Level.FINE, "Updating feature: {0}", sql);
-                    st.execute(sql);
-                }
-                finally {
-                    closeSafe(st);
+                    Statement st = cx.createStatement();
+
+                    try {
+                        ((BasicSQLDialect)dialect).onUpdate(st, cx, featureType);
+                        
+                        LOGGER.log(Level.FINE, "Updating feature: {0}", sql);
+                        st.execute(sql);
+                    }
+                    finally {
+                        closeSafe(st);
+                    }
+                } catch (SQLException e) {
+                    String msg = "Error occured updating features";
+                    throw (IOException) new IOException(msg).initCause(e);
                 }
-            } catch (SQLException e) {
-                String msg = "Error occured updating features";
-                throw (IOException) new IOException(msg).initCause(e);
             }
+        } finally {
+            // after the write, so that readers cannot cache the old rows again
+            tableModified(featureType, cx);
         }
     }
 
@@ -1535,6 +1743,20 @@ public final class JDBCDataStore extends ContentDataStore
         } catch (SQLException e) {
             String msg = "Error occured during delete";
             throw (IOException) new IOException(msg).initCause(e);
+        } finally {
+            // after the write, so that readers cannot cache the old rows again
+            tableModified(featureType, cx);
+        }
+    }
+    
+    /**
+     * Notifies the query cache, if any, that the table backing the feature type is being
+     * modified using the specified connection
+     */
+    void tableModified(SimpleFeatureType featureType, Connection cx) {
+        if (queryCache != null) {
+            queryCache.tableModified(
+                    JDBCQueryCache.qualifiedTableName(databaseSchema, featureType.getTypeName()), cx);
         }
     }
     
@@ -2935,6 +3157,31 @@ public final class JDBCDataStore extends ContentDataStore
     protected PreparedStatement selectSQLPS( SimpleFeatureType featureType, Query query, Connection cx )
         throws SQLException, IOException {
         
+        // check if we already have the sql for a query with the same structure
+        SQLTemplateCache templateCache = sqlTemplateCache;
+        SQLTemplateCache.Key templateKey = null;
+        List<Literal> literals = null;
+        if (templateCache != null && !virtualTables.containsKey(featureType.getTypeName())) {
+            literals = new ArrayList<Literal>();
+            templateKey = SQLTemplateCache.createKey(getSchema(featureType.getTypeName()),
+                    featureType, query, literals);
+            SQLTemplateCache.Template template = templateKey != null ? templateCache
+                    .get(templateKey) : null;
+            if (template != null) {
+                LOGGER.fine(template.sql);
+                PreparedStatement ps = cx.prepareStatement(template.sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                if (template.hasLiterals()) {
+                    PreparedFilterToSQL toSQL = createPreparedFilterToSQL(getSchema(featureType
+                            .getTypeName()));
+                    template.bind(toSQL, literals);
+                    setPreparedFilterValues(ps, toSQL, 0, cx);
+                }
+                return ps;
+            }
+        }
+        
         StringBuffer sql = new StringBuffer();
         sql.append("SELECT ");
 
@@ -3009,6 +3256,14 @@ public final class JDBCDataStore extends ContentDataStore
             setPreparedFilterValues( ps, toSQL, 0, cx );
         } 
         
+        if (templateKey != null) {
+            SQLTemplateCache.Template template = SQLTemplateCache.createTemplate(sql.toString(),
+                    toSQL, literals);
+            if (template != null) {
+                templateCache.put(templateKey, template);
+            }
+        }
+        
         return ps;
     }
     
@@ -3302,6 +3557,109 @@ public final class JDBCDataStore extends ContentDataStore
         return ps;
     }
     
+    /**
+     * Generates a 'SELECT g1, g2, ..., agg(a) FROM ... GROUP BY g1, g2, ...' sql statement
+     * computing an aggregate for each group.
+     */
+    protected String selectGroupBySQL(GroupByVisitor.Aggregate aggregate, AttributeDescriptor att,
+            List<AttributeDescriptor> groupBy, SimpleFeatureType featureType, Query query)
+            throws SQLException {
+        FilterToSQL toSQL = null;
+        Filter filter = query.getFilter();
+        if (filter != null && !Filter.INCLUDE.equals(filter)) {
+            toSQL = createFilterToSQL(featureType);
+        }
+        return buildGroupBySQL(aggregate, att, groupBy, featureType, query, toSQL);
+    }
+
+    /**
+     * Generates a 'SELECT g1, g2, ..., agg(a) FROM ... GROUP BY g1, g2, ...' prepared statement
+     * computing an aggregate for each group.
+     */
+    protected PreparedStatement selectGroupBySQLPS(GroupByVisitor.Aggregate aggregate,
+            AttributeDescriptor att, List<AttributeDescriptor> groupBy,
+            SimpleFeatureType featureType, Query query, Connection cx) throws SQLException {
+        PreparedFilterToSQL toSQL = null;
+        Filter filter = query.getFilter();
+        if (filter != null && !Filter.INCLUDE.equals(filter)) {
+            toSQL = createPreparedFilterToSQL(featureType);
+        }
+        String sql = buildGroupBySQL(aggregate, att, groupBy, featureType, query, toSQL);
+
+        LOGGER.fine(sql);
+        PreparedStatement ps = cx.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+
+        if (toSQL != null) {
+            setPreparedFilterValues(ps, toSQL, 0, cx);
+        }
+
+        return ps;
+    }
+
+    /**
+     * Builds the group by sql, using the provided filter encoder (if any) for the query filter
+     */
+    String buildGroupBySQL(GroupByVisitor.Aggregate aggregate, AttributeDescriptor att,
+            List<AttributeDescriptor> groupBy, SimpleFeatureType featureType, Query query,
+            FilterToSQL toSQL) throws SQLException {
+        StringBuffer columns = new StringBuffer();
+        for (AttributeDescriptor g : groupBy) {
+            dialect.encodeColumnName(g.getLocalName(), columns);
+            columns.append(", ");
+        }
+        columns.setLength(columns.length() - 2);
+
+        StringBuffer sql = new StringBuffer("SELECT ");
+        sql.append(columns).append(", ");
+        switch (aggregate) {
+        case COUNT:
+            encodeFunction("count", null, query, sql);
+            break;
+        case SUM:
+            encodeFunction("sum", att, query, sql);
+            break;
+        case MIN:
+            encodeFunction("min", att, query, sql);
+            break;
+        case MAX:
+            encodeFunction("max", att, query, sql);
+            break;
+        case AVERAGE:
+            encodeFunction("sum", att, query, sql);
+            sql.append(", ");
+            encodeFunction("count", att, query, sql);
+            break;
+        }
+        sql.append(" FROM ");
+
+        boolean limitOffset = checkLimitOffset(query);
+        StringBuffer from = new StringBuffer();
+        if (limitOffset) {
+            from.append("SELECT * FROM ");
+        }
+        encodeTableName(featureType.getTypeName(), from, query.getHints());
+        if (toSQL != null) {
+            try {
+                from.append(" ").append(toSQL.encodeToString(query.getFilter()));
+            } catch (FilterToSQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (limitOffset) {
+            // the dialect might wrap the whole statement, so apply the limits to
+            // the inner select only
+            applyLimitOffset(from, query);
+            from.insert(0, "(");
+            from.append(") gt_limited_");
+        }
+        sql.append(from);
+
+        sql.append(" GROUP BY ").append(columns);
+        return sql.toString();
+    }
+
     protected void encodeFunction( String function, AttributeDescriptor att, Query query, StringBuffer sql ) {
         sql.append(function).append("(");
         if ( att == null ) {
@@ -45,6 +45,7 @@ import org.geotools.factory.Hints;
 import org.geotools.factory.Hints.Key;
 import org.geotools.feature.AttributeTypeBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.feature.visitor.GroupByVisitor;
 import org.geotools.filter.FilterAttributeExtractor;
 import org.geotools.filter.visitor.PostPreProcessFilterSplittingVisitor;
 import org.geotools.filter.visitor.SimplifyingFilterVisitor;
@@ -368,11 +369,52 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         return split;
     }
 
-    protected int getCountInternal(Query query) throws IOException {
-        JDBCDataStore dataStore = getDataStore();
+    /**
+     * Returns the cache to be used for the results of the queries run by this feature
+     * source, or <code>null</code> if the results cannot be cached: no cache has been
+     * configured, the feature source is working inside a transaction, or it is 
+     * backed by a virtual table.
+     */
+    JDBCQueryCache getQueryCache() {
+        JDBCQueryCache cache = getDataStore().getQueryCache();
+        if (cache == null || getState().getTransaction() != Transaction.AUTO_COMMIT
+                || getDataStore().getVirtualTables().containsKey(entry.getTypeName())) {
+            return null;
+        }
+        return cache;
+    }
+
+    /**
+     * Builds the query cache key for the specified query and split filter
+     */
+    JDBCQueryCache.Key getQueryCacheKey(JDBCQueryCache.Kind kind, Query query, Filter[] split) {
+        String table = JDBCQueryCache.qualifiedTableName(getDataStore().getDatabaseSchema(),
+                entry.getTypeName());
+        return JDBCQueryCache.key(kind, getDataStore(), table, query, split[0], split[1]);
+    }
 
+    protected int getCountInternal(Query query) throws IOException {
         //split the filter
         Filter[] split = splitFilter( query.getFilter() );
+        
+        JDBCQueryCache cache = getQueryCache();
+        if (cache == null) {
+            return getCountInternal(query, split);
+        }
+        
+        JDBCQueryCache.Key key = getQueryCacheKey(JDBCQueryCache.Kind.COUNT, query, split);
+        Integer cached = cache.getCount(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cache.getGeneration(key.table);
+        int count = getCountInternal(query, split);
+        cache.putCount(key, generation, count);
+        return count;
+    }
+    
+    int getCountInternal(Query query, Filter[] split) throws IOException {
+        JDBCDataStore dataStore = getDataStore();
         Filter preFilter = split[0];
         Filter postFilter = split[1];
         
@@ -429,10 +471,29 @@ public class JDBCFeatureSource extends ContentFeatureSource {
     
     protected ReferencedEnvelope getBoundsInternal(Query query)
             throws IOException {
-        JDBCDataStore dataStore = getDataStore();
-
         //split the filter
         Filter[] split = splitFilter( query.getFilter() );
+        
+        JDBCQueryCache cache = getQueryCache();
+        if (cache == null) {
+            return getBoundsInternal(query, split);
+        }
+        
+        JDBCQueryCache.Key key = getQueryCacheKey(JDBCQueryCache.Kind.BOUNDS, query, split);
+        ReferencedEnvelope cached = cache.getBounds(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cache.getGeneration(key.table);
+        ReferencedEnvelope bounds = getBoundsInternal(query, split);
+        if (bounds != null) {
+            cache.putBounds(key, generation, bounds);
+        }
+        return bounds;
+    }
+    
+    ReferencedEnvelope getBoundsInternal(Query query, Filter[] split) throws IOException {
+        JDBCDataStore dataStore = getDataStore();
         Filter preFilter = split[0];
         Filter postFilter = split[1];
         
@@ -514,6 +575,19 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         Filter preFilter = split[0];
         Filter postFilter = split[1];
         
+        // check if the results are already cached
+        JDBCQueryCache cache = getQueryCache();
+        JDBCQueryCache.Key cacheKey = null;
+        long cacheGeneration = 0;
+        if (cache != null) {
+            cacheKey = getQueryCacheKey(JDBCQueryCache.Kind.FEATURES, query, split);
+            FeatureReader<SimpleFeatureType, SimpleFeature> cached = cache.getFeatures(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            cacheGeneration = cache.getGeneration(cacheKey.table);
+        }
+        
         // rebuild a new query with the same params, but just the pre-filter
         DefaultQuery preQuery = new DefaultQuery(query);
         preQuery.setFilter(preFilter);
@@ -584,12 +658,29 @@ public class JDBCFeatureSource extends ContentFeatureSource {
             if(!returnedSchema.equals(querySchema))
                 reader = new ReTypeFeatureReader(reader, returnedSchema);
         }
+        
+        // cache the results once fully read
+        if (cache != null) {
+            reader = cache.cachingReader(cacheKey, cacheGeneration, reader);
+        }
 
         return reader;
     }
 
     @Override
     protected boolean handleVisitor(Query query, FeatureVisitor visitor) throws IOException {
+        if (visitor instanceof GroupByVisitor) {
+            // the grouped aggregate can be computed in the database only if the
+            // whole filter can be encoded in sql
+            Filter[] split = splitFilter(query.getFilter());
+            if (split[1] != null && split[1] != Filter.INCLUDE) {
+                return false;
+            }
+            DefaultQuery preQuery = new DefaultQuery(query);
+            preQuery.setFilter(split[0]);
+            query = preQuery;
+        }
+        
         //grab connection
         Connection cx = getDataStore().getConnection(getState());
         try {
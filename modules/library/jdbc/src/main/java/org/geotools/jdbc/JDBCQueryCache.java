@@ -0,0 +1,674 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.factory.Hints;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * In memory cache for the results of read only queries run against one or more
+ * {@link JDBCDataStore} instances.
+ * <p>
+ * The cache stores feature counts, bounds and (small) feature result sets keyed by the
+ * normalized query, that is, the query whose filter has been split and simplified by
+ * {@link JDBCFeatureSource}. Features are stored in a compact form, as the flattened array
+ * of their attribute values, and rebuilt on each read so that callers are free to modify
+ * the returned features.
+ * </p>
+ * <p>
+ * Entries expire after a configurable time to live and are evicted in least recently used
+ * order when either the maximum number of entries or the maximum number of cached features
+ * is exceeded. Any write performed through a data store using the cache invalidates all
+ * entries for the modified table, immediately for auto commit connections, and on commit for
+ * transactional ones. The same cache instance can be shared among data stores connected to
+ * the same database so that writes from any of them invalidate the results cached by the
+ * others.
+ * </p>
+ * <p>
+ * Only queries run outside of a transaction against regular tables (that is, not virtual
+ * tables) are cached.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class JDBCQueryCache {
+
+    static final Logger LOGGER = Logging.getLogger(JDBCQueryCache.class);
+
+    /**
+     * The default time to live of a cache entry, in milliseconds
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+
+    /**
+     * The default maximum number of entries in the cache
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * The default maximum number of features held by the cache, overall
+     */
+    public static final int DEFAULT_MAX_FEATURES = 100000;
+
+    /**
+     * The default maximum number of features in a single cached result
+     */
+    public static final int DEFAULT_MAX_FEATURES_PER_ENTRY = 5000;
+
+    /**
+     * The kind of value held by a cache entry
+     */
+    enum Kind {
+        COUNT, BOUNDS, FEATURES
+    }
+
+    long timeToLive;
+
+    int maxEntries;
+
+    int maxFeatures;
+
+    int maxFeaturesPerEntry;
+
+    /**
+     * The cached entries, in access order
+     */
+    LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    /**
+     * The number of features held in the cached entries
+     */
+    int featureCount;
+
+    /**
+     * Per table modification counter, used to avoid caching results computed while the table
+     * was being modified
+     */
+    Map<String, Long> generations = new HashMap<String, Long>();
+
+    /**
+     * The tables modified by transactions that have not been committed yet
+     */
+    Map<Connection, Set<String>> pending = new WeakHashMap<Connection, Set<String>>();
+
+    long hits;
+
+    long misses;
+
+    /**
+     * Creates a query cache with default limits
+     */
+    public JDBCQueryCache() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_FEATURES,
+                DEFAULT_MAX_FEATURES_PER_ENTRY);
+    }
+
+    /**
+     * Creates a query cache
+     *
+     * @param timeToLive The time an entry stays valid, in milliseconds
+     * @param maxEntries The maximum number of entries in the cache
+     * @param maxFeatures The maximum number of features held by the cache, overall
+     * @param maxFeaturesPerEntry Results having more features than this are not cached
+     */
+    public JDBCQueryCache(long timeToLive, int maxEntries, int maxFeatures, int maxFeaturesPerEntry) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+        this.maxFeatures = Math.max(0, maxFeatures);
+        this.maxFeaturesPerEntry = Math.max(0, Math.min(maxFeatures, maxFeaturesPerEntry));
+    }
+
+    /**
+     * The time an entry stays valid, in milliseconds
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * The maximum number of entries in the cache
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * The maximum number of features held by the cache, overall
+     */
+    public int getMaxFeatures() {
+        return maxFeatures;
+    }
+
+    /**
+     * The maximum number of features of a cacheable result
+     */
+    public int getMaxFeaturesPerEntry() {
+        return maxFeaturesPerEntry;
+    }
+
+    /**
+     * Number of lookups that found a valid entry
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Number of lookups that did not find a valid entry
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * The number of entries currently in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all the entries from the cache
+     */
+    public synchronized void clear() {
+        entries.clear();
+        featureCount = 0;
+    }
+
+    /**
+     * Invalidates all the entries related to the specified table, for any data store sharing
+     * this cache.
+     *
+     * @param table The qualified table name, as returned by
+     *        {@link #qualifiedTableName(String, String)}
+     */
+    public synchronized void invalidate(String table) {
+        Long generation = generations.get(table);
+        generations.put(table, generation == null ? 1 : generation + 1);
+
+        for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().table.equals(table)) {
+                featureCount -= e.getValue().size;
+                it.remove();
+            }
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Invalidated query cache entries for " + table);
+        }
+    }
+
+    /**
+     * Records that the specified table has been modified using the specified connection. If
+     * the connection is in auto commit mode the entries are invalidated immediately, otherwise
+     * the invalidation is delayed until the transaction is committed.
+     */
+    void tableModified(String table, Connection cx) {
+        boolean autoCommit = true;
+        try {
+            autoCommit = cx.getAutoCommit();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Could not determine the connection auto commit status", e);
+        }
+
+        // invalidate anyways, there might be readers using the same connection
+        invalidate(table);
+        if (!autoCommit) {
+            synchronized (this) {
+                Set<String> tables = pending.get(cx);
+                if (tables == null) {
+                    tables = new HashSet<String>();
+                    pending.put(cx, tables);
+                }
+                tables.add(table);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the tables modified by the transaction using the specified connection
+     */
+    void commit(Connection cx) {
+        Set<String> tables;
+        synchronized (this) {
+            tables = pending.remove(cx);
+        }
+        if (tables != null) {
+            for (String table : tables) {
+                invalidate(table);
+            }
+        }
+    }
+
+    /**
+     * Discards the modifications recorded for the transaction using the specified connection
+     */
+    synchronized void rollback(Connection cx) {
+        pending.remove(cx);
+    }
+
+    /**
+     * Returns the current modification counter for the specified table
+     */
+    synchronized long getGeneration(String table) {
+        Long generation = generations.get(table);
+        return generation == null ? 0 : generation;
+    }
+
+    /**
+     * Returns the cached count, or null if not found
+     */
+    Integer getCount(Key key) {
+        return (Integer) get(key);
+    }
+
+    /**
+     * Returns a copy of the cached bounds, or null if not found
+     */
+    ReferencedEnvelope getBounds(Key key) {
+        ReferencedEnvelope bounds = (ReferencedEnvelope) get(key);
+        return bounds == null ? null : new ReferencedEnvelope(bounds);
+    }
+
+    /**
+     * Returns a reader over the cached features, or null if not found
+     */
+    FeatureReader<SimpleFeatureType, SimpleFeature> getFeatures(Key key) {
+        FeaturePage page = (FeaturePage) get(key);
+        return page == null ? null : new FeaturePageReader(page);
+    }
+
+    void putCount(Key key, long generation, int count) {
+        put(key, generation, Integer.valueOf(count), 1);
+    }
+
+    void putBounds(Key key, long generation, ReferencedEnvelope bounds) {
+        put(key, generation, new ReferencedEnvelope(bounds), 1);
+    }
+
+    /**
+     * Wraps the reader so that the features it returns are cached once it has been fully
+     * read, provided they are not more than {@link #getMaxFeaturesPerEntry()}
+     */
+    FeatureReader<SimpleFeatureType, SimpleFeature> cachingReader(Key key, long generation,
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader) {
+        if (maxFeaturesPerEntry <= 0) {
+            return reader;
+        }
+        return new CachingFeatureReader(this, key, generation, reader);
+    }
+
+    synchronized Object get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.created > timeToLive) {
+            entries.remove(key);
+            featureCount -= entry.size;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        } else {
+            hits++;
+            return entry.value;
+        }
+    }
+
+    synchronized void put(Key key, long generation, Object value, int size) {
+        // the table got modified while the value was being computed, don't cache it
+        if (generation != getGeneration(key.table)) {
+            return;
+        }
+
+        Entry old = entries.put(key, new Entry(value, size));
+        if (old != null) {
+            featureCount -= old.size;
+        }
+        featureCount += size;
+
+        // evict in least recently used order
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || featureCount > maxFeatures) && it.hasNext()) {
+            Entry e = it.next();
+            featureCount -= e.size;
+            it.remove();
+        }
+    }
+
+    /**
+     * Builds the qualified name used to track modifications to a table
+     */
+    static String qualifiedTableName(String databaseSchema, String tableName) {
+        return databaseSchema == null ? tableName : databaseSchema + "." + tableName;
+    }
+
+    /**
+     * Builds the cache key for a query
+     *
+     * @param kind The kind of value being cached
+     * @param store The data store running the query
+     * @param table The qualified table name
+     * @param query The query
+     * @param preFilter The simplified pre filter
+     * @param postFilter The simplified post filter
+     */
+    static Key key(Kind kind, JDBCDataStore store, String table, Query query,
+            Filter preFilter, Filter postFilter) {
+        return new Key(kind, store, table, query, preFilter, postFilter);
+    }
+
+    /**
+     * Key of a cache entry. Two keys are equal when they represent the same normalized query
+     * run against the same table of the same data store.
+     */
+    static final class Key {
+        final Kind kind;
+
+        final JDBCDataStore store;
+
+        final String table;
+
+        final Filter preFilter;
+
+        final Filter postFilter;
+
+        final String filterText;
+
+        final List<String> properties;
+
+        final List<String> sortBy;
+
+        final int startIndex;
+
+        final int maxFeatures;
+
+        final Hints hints;
+
+        final int hashCode;
+
+        Key(Kind kind, JDBCDataStore store, String table, Query query, Filter preFilter,
+                Filter postFilter) {
+            this.kind = kind;
+            this.store = store;
+            this.table = table;
+            this.preFilter = preFilter;
+            this.postFilter = postFilter;
+            // filter equality is not reliable for all the implementations, the text
+            // representation is used as a further check
+            this.filterText = String.valueOf(preFilter) + "|" + String.valueOf(postFilter);
+            String[] names = query.getPropertyNames();
+            this.properties = names == null ? null : Arrays.asList(names);
+            SortBy[] sort = query.getSortBy();
+            if (sort == null || sort.length == 0) {
+                this.sortBy = null;
+            } else {
+                this.sortBy = new ArrayList<String>(sort.length);
+                for (SortBy sb : sort) {
+                    String name = sb.getPropertyName() == null ? "" : sb.getPropertyName()
+                            .getPropertyName();
+                    this.sortBy.add(name + " " + sb.getSortOrder());
+                }
+            }
+            this.startIndex = query.getStartIndex() == null ? 0 : query.getStartIndex();
+            this.maxFeatures = query.getMaxFeatures();
+            this.hints = query.getHints() == null || query.getHints().isEmpty() ? null
+                    : new Hints(query.getHints());
+
+            int h = kind.hashCode();
+            h = 31 * h + System.identityHashCode(store);
+            h = 31 * h + table.hashCode();
+            h = 31 * h + filterText.hashCode();
+            h = 31 * h + (properties == null ? 0 : properties.hashCode());
+            h = 31 * h + (sortBy == null ? 0 : sortBy.hashCode());
+            h = 31 * h + startIndex;
+            h = 31 * h + maxFeatures;
+            this.hashCode = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && kind == other.kind && store == other.store
+                    && table.equals(other.table) && startIndex == other.startIndex
+                    && maxFeatures == other.maxFeatures
+                    && filterText.equals(other.filterText) && eq(preFilter, other.preFilter)
+                    && eq(postFilter, other.postFilter) && eq(properties, other.properties)
+                    && eq(sortBy, other.sortBy) && eq(hints, other.hints);
+        }
+
+        static boolean eq(Object o1, Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+    }
+
+    /**
+     * A cache entry
+     */
+    static final class Entry {
+        final Object value;
+
+        final int size;
+
+        final long created = System.currentTimeMillis();
+
+        Entry(Object value, int size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A compact representation of a list of features of the same type: the feature ids
+     * and the flattened array of attribute values
+     */
+    static final class FeaturePage {
+        final SimpleFeatureType featureType;
+
+        final String[] fids;
+
+        final Object[] values;
+
+        FeaturePage(SimpleFeatureType featureType, List<String> fids, List<Object[]> rows) {
+            this.featureType = featureType;
+            int attributes = featureType.getAttributeCount();
+            this.fids = fids.toArray(new String[fids.size()]);
+            this.values = new Object[rows.size() * attributes];
+            int i = 0;
+            for (Object[] row : rows) {
+                System.arraycopy(row, 0, values, i * attributes, attributes);
+                i++;
+            }
+        }
+
+        int size() {
+            return fids.length;
+        }
+
+        SimpleFeature build(SimpleFeatureBuilder builder, int index) {
+            int attributes = featureType.getAttributeCount();
+            for (int j = 0; j < attributes; j++) {
+                builder.set(j, copy(values[index * attributes + j]));
+            }
+            return builder.buildFeature(fids[index]);
+        }
+
+        /**
+         * Geometries are the only mutable values returned by the jdbc readers, make sure
+         * they are not shared with the callers
+         */
+        static Object copy(Object value) {
+            if (value instanceof Geometry) {
+                Geometry g = (Geometry) value;
+                Geometry copy = (Geometry) g.clone();
+                copy.setUserData(g.getUserData());
+                return copy;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Reads features out of a cached {@link FeaturePage}
+     */
+    static final class FeaturePageReader implements
+            FeatureReader<SimpleFeatureType, SimpleFeature> {
+        FeaturePage page;
+
+        SimpleFeatureBuilder builder;
+
+        int index;
+
+        FeaturePageReader(FeaturePage page) {
+            this.page = page;
+            this.builder = new SimpleFeatureBuilder(page.featureType);
+        }
+
+        public SimpleFeatureType getFeatureType() {
+            return page.featureType;
+        }
+
+        public boolean hasNext() throws IOException {
+            return page != null && index < page.size();
+        }
+
+        public SimpleFeature next() throws IOException, NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more features in the cached result");
+            }
+            return page.build(builder, index++);
+        }
+
+        public void close() throws IOException {
+            page = null;
+        }
+    }
+
+    /**
+     * Delegates to a database backed reader, and caches the features it returns
+     * once it has been fully read
+     */
+    static final class CachingFeatureReader implements
+            FeatureReader<SimpleFeatureType, SimpleFeature> {
+        JDBCQueryCache cache;
+
+        Key key;
+
+        long generation;
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> delegate;
+
+        List<String> fids = new ArrayList<String>();
+
+        List<Object[]> rows = new ArrayList<Object[]>();
+
+        boolean stored;
+
+        CachingFeatureReader(JDBCQueryCache cache, Key key, long generation,
+                FeatureReader<SimpleFeatureType, SimpleFeature> delegate) {
+            this.cache = cache;
+            this.key = key;
+            this.generation = generation;
+            this.delegate = delegate;
+        }
+
+        public SimpleFeatureType getFeatureType() {
+            return delegate.getFeatureType();
+        }
+
+        public boolean hasNext() throws IOException {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext && rows != null && !stored) {
+                stored = true;
+                FeaturePage page = new FeaturePage(delegate.getFeatureType(), fids, rows);
+                cache.put(key, generation, page, Math.max(1, page.size()));
+                fids = null;
+                rows = null;
+            }
+            return hasNext;
+        }
+
+        public SimpleFeature next() throws IOException, NoSuchElementException {
+            SimpleFeature feature = delegate.next();
+            if (rows != null) {
+                if (rows.size() < cache.maxFeaturesPerEntry) {
+                    // the caller might modify the feature, store a copy of the values
+                    Object[] values = feature.getAttributes().toArray();
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = FeaturePage.copy(values[i]);
+                    }
+                    fids.add(feature.getID());
+                    rows.add(values);
+                } else {
+                    // too big, give up caching
+                    fids = null;
+                    rows = null;
+                }
+            }
+            return feature;
+        }
+
+        public void close() throws IOException {
+            fids = null;
+            rows = null;
+            delegate.close();
+        }
+    }
+}
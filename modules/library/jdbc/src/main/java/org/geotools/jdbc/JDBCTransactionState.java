@@ -66,6 +66,9 @@ final class JDBCTransactionState implements State {
             
         if ( tx == null ) {
             if ( cx != null && !external) {
+                if ( dataStore.getQueryCache() != null ) {
+                    dataStore.getQueryCache().rollback(cx);
+                }
                 dataStore.closeSafe(cx);
             }  else {
                 dataStore.getLogger().warning("Transaction is attempting to " +
@@ -89,6 +92,10 @@ final class JDBCTransactionState implements State {
                 throw (IOException) new IOException(msg).initCause(e);
             }        
         }
+        // the modified tables cached results are now stale
+        if ( dataStore.getQueryCache() != null ) {
+            dataStore.getQueryCache().commit(cx);
+        }
     }
 
     public void rollback() throws IOException {
@@ -100,6 +107,9 @@ final class JDBCTransactionState implements State {
                 throw (IOException) new IOException(msg).initCause(e);
             }
         }
+        if ( dataStore.getQueryCache() != null ) {
+            dataStore.getQueryCache().rollback(cx);
+        }
     }
     
     @Override
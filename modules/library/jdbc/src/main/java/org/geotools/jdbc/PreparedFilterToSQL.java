@@ -52,8 +52,15 @@ public class PreparedFilterToSQL extends FilterToSQL {
     protected List<Object> literalValues = new ArrayList<Object>();
     protected List<Class> literalTypes = new ArrayList<Class>();
     protected List<Integer> SRIDs = new ArrayList<Integer>();
+    /**
+     * the literal expressions the values have been extracted from, and the context they
+     * have been evaluated with (both null for values that did not come from a literal)
+     */
+    protected List<Literal> literalExpressions = new ArrayList<Literal>();
+    protected List<Class> literalContexts = new ArrayList<Class>();
     protected PreparedStatementSQLDialect dialect;
     boolean prepareEnabled = true;
+    boolean templateCacheable = true;
     
     /**
      * Default constructor
@@ -85,6 +92,22 @@ public class PreparedFilterToSQL extends FilterToSQL {
         this.prepareEnabled = prepareEnabled;
     }
 
+    /**
+     * Returns true (default) if the SQL generated by this encoder depends only on the
+     * structure of the filter, and not on the values of its literals, meaning the
+     * encoded SQL can be reused for any other filter with the same structure by just
+     * binding different values (see {@link SQLTemplateCache}).
+     * Subclasses generating value dependent SQL must call
+     * {@link #setTemplateCacheable(boolean)} with <code>false</code> while encoding.
+     */
+    public boolean isTemplateCacheable() {
+        return templateCacheable;
+    }
+
+    public void setTemplateCacheable(boolean templateCacheable) {
+        this.templateCacheable = templateCacheable;
+    }
+
     public PreparedFilterToSQL(Writer out) {
         super(out);
     }
@@ -95,16 +118,8 @@ public class PreparedFilterToSQL extends FilterToSQL {
             return super.visit(expression, context);
         
         // evaluate the literal and store it for later
-        Object literalValue = evaluateLiteral( expression, (context instanceof Class ? (Class) context : null) );
-        literalValues.add(literalValue);
-        SRIDs.add(currentSRID);
-        
-        Class clazz = null;
-        if(context instanceof Class)
-            clazz = (Class) context;
-        else if(literalValue != null)
-            clazz = literalValue.getClass();
-        literalTypes.add( clazz );
+        Class clazz = context instanceof Class ? (Class) context : null;
+        Object literalValue = addLiteral(expression, clazz, currentSRID);
         
         try {
             if ( literalValue == null || dialect == null ) {
@@ -173,6 +188,8 @@ public class PreparedFilterToSQL extends FilterToSQL {
                     SRIDs.add(-1);
                     // if it's not null, we can also infer the type
                     literalTypes.add(attValues[j] != null ?  attValues[j].getClass() : null);
+                    literalExpressions.add(null);
+                    literalContexts.add(null);
 
                     if (j < (attValues.length - 1)) {
                         out.write(" AND ");
@@ -192,6 +209,61 @@ public class PreparedFilterToSQL extends FilterToSQL {
         return extraData;
     }
     
+    /**
+     * Evaluates the literal in the specified context and stores its value, type and SRID
+     * @return the literal value
+     */
+    Object addLiteral(Literal expression, Class context, Integer srid) {
+        Object literalValue = evaluateLiteral(expression, context);
+        literalValues.add(literalValue);
+        SRIDs.add(srid);
+        literalExpressions.add(expression);
+        literalContexts.add(context);
+
+        Class clazz = context;
+        if(clazz == null && literalValue != null)
+            clazz = literalValue.getClass();
+        literalTypes.add( clazz );
+        
+        return literalValue;
+    }
+
+    /**
+     * Sets up the literal values, types and SRIDs without encoding a filter, evaluating 
+     * the literals of a filter having the same structure as the one encoded to build 
+     * a cached SQL template.
+     * 
+     * @param literals the literals, in the same order as the statement placeholders
+     * @param contexts the context each literal has to be evaluated with
+     * @param srids the native SRID associated to each literal
+     */
+    public void setLiterals(List<Literal> literals, List<Class> contexts, List<Integer> srids) {
+        literalValues.clear();
+        literalTypes.clear();
+        SRIDs.clear();
+        literalExpressions.clear();
+        literalContexts.clear();
+        for (int i = 0; i < literals.size(); i++) {
+            addLiteral(literals.get(i), contexts.get(i), srids.get(i));
+        }
+    }
+
+    /**
+     * Returns the literal expression each value has been extracted from, or null for values
+     * that did not come from a literal (such as the primary key values of a feature id)
+     */
+    public List<Literal> getLiteralExpressions() {
+        return literalExpressions;
+    }
+
+    /**
+     * Returns the context each literal has been evaluated with, or null if no context
+     * was available
+     */
+    public List<Class> getLiteralContexts() {
+        return literalContexts;
+    }
+
     public List<Object> getLiteralValues() {
         return literalValues;
     }
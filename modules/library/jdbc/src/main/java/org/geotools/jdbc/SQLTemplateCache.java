@@ -0,0 +1,427 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.geotools.data.Query;
+import org.geotools.factory.Hints;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.BinaryLogicOperator;
+import org.opengis.filter.ExcludeFilter;
+import org.opengis.filter.Filter;
+import org.opengis.filter.IncludeFilter;
+import org.opengis.filter.MultiValuedFilter;
+import org.opengis.filter.Not;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.BinaryExpression;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.NilExpression;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.spatial.BinarySpatialOperator;
+import org.opengis.filter.spatial.DistanceBufferOperator;
+import org.opengis.filter.temporal.BinaryTemporalOperator;
+
+/**
+ * Cache of the SQL statements generated by {@link JDBCDataStore} for prepared statement
+ * based dialects, keyed by the "shape" of the query: the feature type, the queried
+ * properties, the filter structure (the filter with the literal values left out), the
+ * sorting, the paging and the geometry reduction hints.
+ * <p>
+ * Queries differing only in the values of their filter literals (a typical example being
+ * the bounding box filters issued while rendering tiles) reuse the same SQL template, with
+ * no need to build the select list or to encode the filter again: only the literal values
+ * are evaluated and bound to the statement placeholders. Since the SQL text is the very
+ * same, the connection pool statement cache (if enabled) and the database can reuse the
+ * statement parsing and planning as well.
+ * </p>
+ * <p>
+ * Only the filters whose SQL encoding depends solely on their structure are cached, that
+ * is, filters whose literals are all encoded as placeholders. Feature id filters and
+ * filters against virtual tables are never cached, and encoders can opt out of caching for
+ * value dependent encodings using {@link PreparedFilterToSQL#setTemplateCacheable(boolean)}.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class SQLTemplateCache {
+
+    /**
+     * The default maximum number of templates in the cache
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+
+    int maxEntries;
+
+    /**
+     * The cached templates, in access order
+     */
+    LinkedHashMap<Key, Template> templates = new LinkedHashMap<Key, Template>(16, 0.75f, true);
+
+    long hits;
+
+    long misses;
+
+    /**
+     * Creates a template cache with the default size
+     */
+    public SQLTemplateCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a template cache
+     *
+     * @param maxEntries The maximum number of templates in the cache
+     */
+    public SQLTemplateCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * The maximum number of templates in the cache
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Number of lookups that found a template
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Number of lookups that did not find a template
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * The number of templates currently in the cache
+     */
+    public synchronized int size() {
+        return templates.size();
+    }
+
+    /**
+     * Removes all the templates from the cache
+     */
+    public synchronized void clear() {
+        templates.clear();
+    }
+
+    synchronized Template get(Key key) {
+        Template template = templates.get(key);
+        if (template != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return template;
+    }
+
+    synchronized void put(Key key, Template template) {
+        templates.put(key, template);
+        if (templates.size() > maxEntries) {
+            templates.remove(templates.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Builds the key identifying the shape of a select query, collecting the filter literals
+     * in the process.
+     *
+     * @param schema The full feature type, as returned by the data store
+     * @param featureType The feature type being returned by the query
+     * @param query The query
+     * @param literals The list the filter literals will be added to, in a structure dependent
+     *        order
+     * @return The key, or null if the query cannot be cached
+     */
+    static Key createKey(SimpleFeatureType schema, SimpleFeatureType featureType, Query query,
+            List<Literal> literals) {
+        StringBuilder sb = new StringBuilder();
+        for (AttributeDescriptor att : featureType.getAttributeDescriptors()) {
+            sb.append(att.getLocalName()).append(',');
+        }
+        sb.append('|');
+        Filter filter = query.getFilter();
+        if (filter != null && !appendShape(filter, sb, literals)) {
+            return null;
+        }
+        sb.append('|');
+        SortBy[] sortBy = query.getSortBy();
+        if (sortBy != null) {
+            for (SortBy sort : sortBy) {
+                if (sort.getPropertyName() != null) {
+                    sb.append(sort.getPropertyName().getPropertyName());
+                } else if (sort == SortBy.NATURAL_ORDER) {
+                    sb.append("natural");
+                } else if (sort == SortBy.REVERSE_ORDER) {
+                    sb.append("reverse");
+                }
+                sb.append(' ').append(sort.getSortOrder()).append(',');
+            }
+        }
+        sb.append('|').append(query.getStartIndex()).append('|').append(query.getMaxFeatures());
+        Hints hints = query.getHints();
+        if (hints != null) {
+            sb.append('|').append(hints.get(Hints.GEOMETRY_GENERALIZATION));
+            sb.append('|').append(hints.get(Hints.GEOMETRY_SIMPLIFICATION));
+        }
+        return new Key(schema, sb.toString());
+    }
+
+    /**
+     * Appends the structure of a filter or expression to the builder, and collects its literals
+     *
+     * @return false if the structure is not known, and thus the filter is not cacheable
+     */
+    static boolean appendShape(Object node, StringBuilder sb, List<Literal> literals) {
+        if (node == null) {
+            sb.append("null;");
+            return true;
+        }
+        sb.append(node.getClass().getName());
+        if (node instanceof Literal) {
+            Object value = ((Literal) node).getValue();
+            sb.append('(').append(value == null ? "null" : value.getClass().getName()).append(
+                    ");");
+            literals.add((Literal) node);
+            return true;
+        } else if (node instanceof PropertyName) {
+            sb.append('(').append(((PropertyName) node).getPropertyName()).append(");");
+            return true;
+        } else if (node instanceof NilExpression || node instanceof IncludeFilter
+                || node instanceof ExcludeFilter) {
+            sb.append(';');
+            return true;
+        } else if (node instanceof Function) {
+            Function function = (Function) node;
+            List<Expression> params = function.getParameters();
+            sb.append('(').append(function.getName()).append(',').append(params.size())
+                    .append(");");
+            for (Expression param : params) {
+                if (!appendShape(param, sb, literals)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (node instanceof BinaryExpression) {
+            sb.append(';');
+            BinaryExpression be = (BinaryExpression) node;
+            return appendShape(be.getExpression1(), sb, literals)
+                    && appendShape(be.getExpression2(), sb, literals);
+        } else if (node instanceof BinaryLogicOperator) {
+            List<Filter> children = ((BinaryLogicOperator) node).getChildren();
+            sb.append('(').append(children.size()).append(");");
+            for (Filter child : children) {
+                if (!appendShape(child, sb, literals)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (node instanceof Not) {
+            sb.append(';');
+            return appendShape(((Not) node).getFilter(), sb, literals);
+        } else if (node instanceof PropertyIsBetween) {
+            PropertyIsBetween between = (PropertyIsBetween) node;
+            appendMatchAction(between, sb);
+            return appendShape(between.getExpression(), sb, literals)
+                    && appendShape(between.getLowerBoundary(), sb, literals)
+                    && appendShape(between.getUpperBoundary(), sb, literals);
+        } else if (node instanceof PropertyIsLike) {
+            // the pattern is encoded in the sql as is
+            PropertyIsLike like = (PropertyIsLike) node;
+            sb.append('(').append(like.getLiteral()).append(',').append(like.getWildCard())
+                    .append(',').append(like.getSingleChar()).append(',')
+                    .append(like.getEscape()).append(',').append(like.isMatchingCase())
+                    .append(')');
+            appendMatchAction(like, sb);
+            return appendShape(like.getExpression(), sb, literals);
+        } else if (node instanceof PropertyIsNull) {
+            sb.append(';');
+            return appendShape(((PropertyIsNull) node).getExpression(), sb, literals);
+        } else if (node instanceof DistanceBufferOperator) {
+            // the distance is encoded in the sql as is
+            DistanceBufferOperator dbo = (DistanceBufferOperator) node;
+            sb.append('(').append(dbo.getDistance()).append(',').append(dbo.getDistanceUnits())
+                    .append(')');
+            appendMatchAction(dbo, sb);
+            return appendShape(dbo.getExpression1(), sb, literals)
+                    && appendShape(dbo.getExpression2(), sb, literals);
+        } else if (node instanceof BinarySpatialOperator) {
+            BinarySpatialOperator bso = (BinarySpatialOperator) node;
+            appendMatchAction(bso, sb);
+            return appendShape(bso.getExpression1(), sb, literals)
+                    && appendShape(bso.getExpression2(), sb, literals);
+        } else if (node instanceof BinaryComparisonOperator) {
+            BinaryComparisonOperator bco = (BinaryComparisonOperator) node;
+            sb.append('(').append(bco.isMatchingCase()).append(')');
+            appendMatchAction(bco, sb);
+            return appendShape(bco.getExpression1(), sb, literals)
+                    && appendShape(bco.getExpression2(), sb, literals);
+        } else if (node instanceof BinaryTemporalOperator) {
+            BinaryTemporalOperator bto = (BinaryTemporalOperator) node;
+            appendMatchAction(bto, sb);
+            return appendShape(bto.getExpression1(), sb, literals)
+                    && appendShape(bto.getExpression2(), sb, literals);
+        }
+
+        // feature id filters and unknown nodes
+        return false;
+    }
+
+    static void appendMatchAction(Object filter, StringBuilder sb) {
+        if (filter instanceof MultiValuedFilter) {
+            sb.append('[').append(((MultiValuedFilter) filter).getMatchAction()).append(']');
+        }
+        sb.append(';');
+    }
+
+    /**
+     * Builds a template out of the SQL generated for a query, and the filter encoder used to
+     * generate it
+     *
+     * @param sql The generated SQL
+     * @param toSQL The encoder used for the filter, or null if the query was not filtered
+     * @param literals The literals collected while building the query key
+     * @return The template, or null if the SQL cannot be reused for queries with the same
+     *         key
+     */
+    static Template createTemplate(String sql, PreparedFilterToSQL toSQL, List<Literal> literals) {
+        if (toSQL == null) {
+            return new Template(sql, new int[0], Collections.<Class> emptyList(),
+                    Collections.<Integer> emptyList());
+        }
+        if (!toSQL.isTemplateCacheable()) {
+            return null;
+        }
+
+        // map each placeholder back to the filter literal it has been extracted from, all
+        // the filter literals must have been turned into a placeholder, otherwise their
+        // value is part of the sql
+        List<Literal> encoded = toSQL.getLiteralExpressions();
+        int[] indexes = new int[encoded.size()];
+        boolean[] used = new boolean[literals.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            Literal literal = encoded.get(i);
+            indexes[i] = -1;
+            for (int j = 0; j < literals.size() && literal != null; j++) {
+                if (literals.get(j) == literal) {
+                    indexes[i] = j;
+                    used[j] = true;
+                    break;
+                }
+            }
+            if (indexes[i] == -1) {
+                return null;
+            }
+        }
+        for (boolean u : used) {
+            if (!u) {
+                return null;
+            }
+        }
+
+        return new Template(sql, indexes, new ArrayList<Class>(toSQL.getLiteralContexts()),
+                new ArrayList<Integer>(toSQL.getSRIDs()));
+    }
+
+    /**
+     * The shape of a query
+     */
+    static class Key {
+        SimpleFeatureType schema;
+
+        String shape;
+
+        Key(SimpleFeatureType schema, String shape) {
+            this.schema = schema;
+            this.shape = shape;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(schema) + shape.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            // the schema is compared by identity, a new schema object is built each time the
+            // table structure is reloaded
+            return schema == other.schema && shape.equals(other.shape);
+        }
+    }
+
+    /**
+     * A reusable SQL statement, along with the information needed to bind the literals of a
+     * filter having the same shape as the original one
+     */
+    static class Template {
+        String sql;
+
+        int[] literalIndexes;
+
+        List<Class> contexts;
+
+        List<Integer> srids;
+
+        Template(String sql, int[] literalIndexes, List<Class> contexts, List<Integer> srids) {
+            this.sql = sql;
+            this.literalIndexes = literalIndexes;
+            this.contexts = contexts;
+            this.srids = srids;
+        }
+
+        boolean hasLiterals() {
+            return literalIndexes.length > 0;
+        }
+
+        /**
+         * Sets up the encoder literal values using the literals of a filter having the same
+         * shape as the one used to build the template
+         */
+        void bind(PreparedFilterToSQL toSQL, List<Literal> literals) {
+            List<Literal> ordered = new ArrayList<Literal>(literalIndexes.length);
+            for (int index : literalIndexes) {
+                ordered.add(literals.get(index));
+            }
+            toSQL.setLiterals(ordered, contexts, srids);
+        }
+    }
+}
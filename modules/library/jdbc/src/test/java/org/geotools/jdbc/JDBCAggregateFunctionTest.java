@@ -16,12 +16,17 @@
  */
 package org.geotools.jdbc;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.geotools.data.DefaultQuery;
 import org.geotools.data.Query;
+import org.geotools.feature.visitor.GroupByVisitor;
 import org.geotools.feature.visitor.MaxVisitor;
 import org.geotools.feature.visitor.MinVisitor;
+import org.geotools.feature.visitor.StandardDeviationVisitor;
 import org.geotools.feature.visitor.SumVisitor;
 import org.geotools.feature.visitor.UniqueVisitor;
 import org.geotools.filter.IllegalFilterException;
@@ -281,4 +286,110 @@ public abstract class JDBCAggregateFunctionTest extends JDBCTestSupport {
         Set result = v.getResult().toSet();
         assertEquals(2, result.size());
     }
+    
+    class MyGroupByVisitor extends GroupByVisitor {
+
+        public MyGroupByVisitor(Aggregate aggregate, Expression expr, List<Expression> groupBy) {
+            super(aggregate, expr, groupBy);
+        }
+        
+        public void visit(Feature feature) {
+            super.visit(feature);
+            visited = true;
+        }
+        public void visit(SimpleFeature feature) {
+            super.visit(feature);
+            visited = true;
+        }
+        
+    }
+    
+    public void testGroupByCount() throws Exception {
+        FilterFactory ff = dataStore.getFilterFactory();
+        List<Expression> groupBy = Collections.singletonList((Expression) ff.property( aname("stringProperty") ));
+        
+        GroupByVisitor v = new MyGroupByVisitor(GroupByVisitor.Aggregate.COUNT, null, groupBy);
+        dataStore.getFeatureSource(tname("ft1")).accepts(Query.ALL, v, null);
+        assertFalse(visited);
+        Map<List<Object>, Object> groups = v.getGroups();
+        assertEquals(3, groups.size());
+        assertEquals(1, ((Number) groups.get(Collections.singletonList("zero"))).intValue());
+        assertEquals(1, ((Number) groups.get(Collections.singletonList("one"))).intValue());
+        assertEquals(1, ((Number) groups.get(Collections.singletonList("two"))).intValue());
+    }
+    
+    public void testGroupBySumWithFilter() throws Exception {
+        FilterFactory ff = dataStore.getFilterFactory();
+        List<Expression> groupBy = Collections.singletonList((Expression) ff.property( aname("stringProperty") ));
+        PropertyName p = ff.property( aname("doubleProperty") );
+        
+        GroupByVisitor v = new MyGroupByVisitor(GroupByVisitor.Aggregate.SUM, p, groupBy);
+        Filter f = ff.greater( ff.property( aname("doubleProperty") ), ff.literal(1) );
+        Query q = new Query( tname("ft1"), f);
+        dataStore.getFeatureSource(tname("ft1")).accepts(q, v, null);
+        assertFalse(visited);
+        Map<List<Object>, Object> groups = v.getGroups();
+        assertEquals(2, groups.size());
+        assertEquals(1.1, ((Number) groups.get(Collections.singletonList("one"))).doubleValue(), 0.01);
+        assertEquals(2.2, ((Number) groups.get(Collections.singletonList("two"))).doubleValue(), 0.01);
+    }
+    
+    public void testGroupByAverage() throws Exception {
+        FilterFactory ff = dataStore.getFilterFactory();
+        List<Expression> groupBy = Collections.singletonList((Expression) ff.property( aname("stringProperty") ));
+        PropertyName p = ff.property( aname("doubleProperty") );
+        
+        GroupByVisitor v = new MyGroupByVisitor(GroupByVisitor.Aggregate.AVERAGE, p, groupBy);
+        dataStore.getFeatureSource(tname("ft1")).accepts(Query.ALL, v, null);
+        assertFalse(visited);
+        Map<List<Object>, Object> groups = v.getGroups();
+        assertEquals(3, groups.size());
+        assertEquals(0.0, ((Number) groups.get(Collections.singletonList("zero"))).doubleValue(), 0.01);
+        assertEquals(2.2, ((Number) groups.get(Collections.singletonList("two"))).doubleValue(), 0.01);
+    }
+    
+    public void testGroupByIntegerTypes() throws Exception {
+        FilterFactory ff = dataStore.getFilterFactory();
+        List<Expression> groupBy = Collections.singletonList((Expression) ff.property( aname("stringProperty") ));
+        PropertyName p = ff.property( aname("intProperty") );
+        
+        // sums of integral columns are longs, as computed in memory
+        GroupByVisitor v = new MyGroupByVisitor(GroupByVisitor.Aggregate.SUM, p, groupBy);
+        dataStore.getFeatureSource(tname("ft1")).accepts(Query.ALL, v, null);
+        assertFalse(visited);
+        assertEquals(2L, v.getGroups().get(Collections.singletonList("two")));
+        
+        // averages are doubles
+        v = new MyGroupByVisitor(GroupByVisitor.Aggregate.AVERAGE, p, groupBy);
+        dataStore.getFeatureSource(tname("ft1")).accepts(Query.ALL, v, null);
+        assertFalse(visited);
+        assertEquals(1.0, v.getGroups().get(Collections.singletonList("one")));
+    }
+    
+    public void testGroupByWithLimitOffset() throws Exception {
+        if (!dataStore.getSQLDialect().isLimitOffsetSupported()) {
+            return;
+        }
+        
+        FilterFactory ff = dataStore.getFilterFactory();
+        List<Expression> groupBy = Collections.singletonList((Expression) ff.property( aname("stringProperty") ));
+        
+        GroupByVisitor v = new MyGroupByVisitor(GroupByVisitor.Aggregate.COUNT, null, groupBy);
+        Query q = new Query( tname("ft1"));
+        q.setStartIndex(0);
+        q.setMaxFeatures(2);
+        dataStore.getFeatureSource(tname("ft1")).accepts(q, v, null);
+        assertFalse(visited);
+        assertEquals(2, v.getGroups().size());
+    }
+    
+    public void testStandardDeviation() throws Exception {
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyName p = ff.property( aname("doubleProperty") );
+        
+        StandardDeviationVisitor v = new StandardDeviationVisitor(p);
+        dataStore.getFeatureSource(tname("ft1")).accepts(Query.ALL, v, null);
+        // population standard deviation of 0, 1.1, 2.2
+        assertEquals(0.898, v.getResult().toDouble(), 0.001);
+    }
 }
@@ -0,0 +1,161 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.util.HashMap;
+
+import org.geotools.data.DefaultQuery;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.DefaultFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.PropertyIsEqualTo;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Checks the query result cache returns the same results as the database and gets
+ * invalidated by writes.
+ *
+ * @source $URL$
+ */
+public abstract class JDBCQueryCacheTest extends JDBCTestSupport {
+
+    JDBCQueryCache cache;
+
+    JDBCFeatureStore featureStore;
+
+    @Override
+    protected void connect() throws Exception {
+        super.connect();
+        cache = new JDBCQueryCache();
+        dataStore.setQueryCache(cache);
+        featureStore = (JDBCFeatureStore) dataStore.getFeatureSource(tname("ft1"));
+    }
+
+    public void testCountCached() throws Exception {
+        assertEquals(3, featureStore.getCount(Query.ALL));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(3, featureStore.getCount(Query.ALL));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    public void testBoundsCached() throws Exception {
+        ReferencedEnvelope bounds = featureStore.getBounds();
+        assertEquals(0, cache.getHitCount());
+
+        // alter the returned envelope, the cached one should not be affected
+        ReferencedEnvelope copy = new ReferencedEnvelope(bounds);
+        bounds.expandToInclude(100, 100);
+        assertEquals(copy, featureStore.getBounds());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    public void testFeaturesCached() throws Exception {
+        FilterFactory ff = dataStore.getFilterFactory();
+        PropertyIsEqualTo filter = ff.equals(ff.property(aname("stringProperty")), ff
+                .literal("one"));
+        DefaultQuery query = new DefaultQuery(tname("ft1"), filter);
+
+        SimpleFeature original = readSingle(query);
+        long hits = cache.getHitCount();
+
+        // modify the feature, the cached copy should not be affected
+        Point p = (Point) original.getDefaultGeometry();
+        p.getCoordinate().x = 100;
+
+        SimpleFeature cached = readSingle(query);
+        assertEquals(hits + 1, cache.getHitCount());
+        assertEquals(original.getID(), cached.getID());
+        assertEquals(original.getAttribute(aname("stringProperty")), cached
+                .getAttribute(aname("stringProperty")));
+        assertEquals(1, Math.round(((Point) cached.getDefaultGeometry()).getX()));
+    }
+
+    public void testAutoCommitInvalidation() throws Exception {
+        assertEquals(3, featureStore.getCount(Query.ALL));
+        featureStore.addFeatures(newFeatures());
+        assertEquals(4, featureStore.getCount(Query.ALL));
+    }
+
+    public void testTransactionInvalidation() throws Exception {
+        assertEquals(3, featureStore.getCount(Query.ALL));
+
+        Transaction t = new DefaultTransaction();
+        JDBCFeatureStore transactional = (JDBCFeatureStore) dataStore
+                .getFeatureSource(tname("ft1"));
+        transactional.setTransaction(t);
+        try {
+            transactional.addFeatures(newFeatures());
+            // the transactional store does not use the cache
+            assertEquals(4, transactional.getCount(Query.ALL));
+            assertEquals(3, featureStore.getCount(Query.ALL));
+
+            t.commit();
+            assertEquals(4, featureStore.getCount(Query.ALL));
+        } finally {
+            t.close();
+        }
+    }
+
+    public void testSharedCacheInvalidation() throws Exception {
+        // a second store sharing the same data source and cache
+        HashMap params = new HashMap();
+        params.put(JDBCDataStoreFactory.NAMESPACE.key, "http://www.geotools.org/test");
+        params.put(JDBCDataStoreFactory.SCHEMA.key, "geotools");
+        params.put(JDBCDataStoreFactory.DATASOURCE.key, setup.getDataSource());
+        JDBCDataStore other = setup.createDataStoreFactory().createDataStore(params);
+        setup.setUpDataStore(other);
+        other.setQueryCache(cache);
+
+        JDBCFeatureStore otherStore = (JDBCFeatureStore) other.getFeatureSource(tname("ft1"));
+        assertEquals(3, featureStore.getCount(Query.ALL));
+        otherStore.addFeatures(newFeatures());
+        assertEquals(4, featureStore.getCount(Query.ALL));
+    }
+
+    SimpleFeature readSingle(Query query) throws Exception {
+        SimpleFeatureCollection features = featureStore.getFeatures(query);
+        SimpleFeatureIterator it = features.features();
+        try {
+            assertTrue(it.hasNext());
+            SimpleFeature feature = it.next();
+            assertFalse(it.hasNext());
+            return feature;
+        } finally {
+            it.close();
+        }
+    }
+
+    DefaultFeatureCollection newFeatures() {
+        SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
+        DefaultFeatureCollection collection = new DefaultFeatureCollection(null, featureStore
+                .getSchema());
+        b.set(aname("intProperty"), new Integer(3));
+        b.set(aname("geometry"), new GeometryFactory().createPoint(new Coordinate(3, 3)));
+        collection.add(b.buildFeature(null));
+        return collection;
+    }
+}
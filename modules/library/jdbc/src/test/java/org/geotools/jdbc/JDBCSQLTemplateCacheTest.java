@@ -0,0 +1,92 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.util.Collections;
+
+import org.geotools.data.DefaultQuery;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.Id;
+
+/**
+ * Checks queries with the same structure reuse the cached SQL and still return the
+ * results matching their own literals.
+ * <p>
+ * Meant to be run against prepared statement based dialects, the cache is not used
+ * otherwise.
+ * </p>
+ *
+ * @source $URL$
+ */
+public abstract class JDBCSQLTemplateCacheTest extends JDBCTestSupport {
+
+    SQLTemplateCache cache;
+
+    SimpleFeatureSource featureSource;
+
+    FilterFactory2 ff;
+
+    @Override
+    protected void connect() throws Exception {
+        super.connect();
+        cache = new SQLTemplateCache();
+        dataStore.setSQLTemplateCache(cache);
+        featureSource = dataStore.getFeatureSource(tname("ft1"));
+        ff = (FilterFactory2) dataStore.getFilterFactory();
+    }
+
+    public void testComparisonReuse() throws Exception {
+        assertEquals(2, count(ff.greater(ff.property(aname("intProperty")), ff.literal(0))));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getHitCount());
+
+        assertEquals(1, count(ff.greater(ff.property(aname("intProperty")), ff.literal(1))));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    public void testBBoxReuse() throws Exception {
+        String geom = aname("geometry");
+        assertEquals(1, count(ff.bbox(geom, -0.5, -0.5, 0.5, 0.5, "EPSG:4326")));
+        assertEquals(2, count(ff.bbox(geom, 0.5, 0.5, 2.5, 2.5, "EPSG:4326")));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    public void testDifferentStructure() throws Exception {
+        Filter f1 = ff.equals(ff.property(aname("stringProperty")), ff.literal("one"));
+        Filter f2 = ff.and(f1, ff.greater(ff.property(aname("intProperty")), ff.literal(0)));
+        assertEquals(1, count(f1));
+        assertEquals(1, count(f2));
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    public void testFidNotCached() throws Exception {
+        Id id = ff.id(Collections.singleton(ff.featureId(tname("ft1") + ".1")));
+        assertEquals(1, count(id));
+        assertEquals(0, cache.size());
+    }
+
+    int count(Filter filter) throws Exception {
+        // read the features to make sure a select is issued
+        DefaultQuery query = new DefaultQuery(tname("ft1"), filter);
+        return featureSource.getFeatures(query).toArray().length;
+    }
+}
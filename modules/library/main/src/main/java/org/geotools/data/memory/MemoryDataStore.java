@@ -17,12 +17,16 @@
 package org.geotools.data.memory;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.geotools.data.AbstractDataStore;
@@ -65,6 +69,13 @@ import com.vividsolutions.jts.geom.Geometry;
  * <p>
  * This class will also illustrate the use of In-Process locking when the time comes.
  * </p>
+ * 
+ * <p>
+ * Queries read an immutable snapshot of the features of a type, rebuilt after each
+ * modification, so they don't need to lock the data store. The snapshot indexes the default
+ * geometry of the features for BBOX filters, their ids for Id filters and, when requested with
+ * {@link #addIndex(String, String)}, the values of some attributes for comparison filters.
+ * </p>
  *
  * @author jgarnett
  *
@@ -77,6 +88,12 @@ public class MemoryDataStore extends AbstractDataStore {
     /** Schema holds FeatureType by typeName */
     protected Map<String,SimpleFeatureType> schema = new HashMap<String,SimpleFeatureType>();
 
+    /** Indexed snapshot of the features by typeName, removed when the features change */
+    private Map<String,MemoryIndex> indexes = new ConcurrentHashMap<String,MemoryIndex>();
+
+    /** Names of the indexed attributes by typeName */
+    private Map<String,Set<String>> indexedAttributes = new HashMap<String,Set<String>>();
+
     public MemoryDataStore() {
         super(true);
     }
@@ -143,8 +160,11 @@ public class MemoryDataStore extends AbstractDataStore {
                 featureMap.put(feature.getID(), feature);
             }
 
-            schema.put(typeName, featureType);
-            memory.put(typeName, featureMap);
+            synchronized (memory) {
+                schema.put(typeName, featureType);
+                memory.put(typeName, featureMap);
+                changed(typeName);
+            }
         } catch (IllegalAttributeException e) {
             throw new DataSourceException("Problem using reader", e);
         }
@@ -184,8 +204,11 @@ public class MemoryDataStore extends AbstractDataStore {
                 featureMap.put(feature.getID(), feature);
             }
 
-            schema.put(typeName, featureType);
-            memory.put(typeName, featureMap);
+            synchronized (memory) {
+                schema.put(typeName, featureType);
+                memory.put(typeName, featureMap);
+                changed(typeName);
+            }
         }
         finally {
             reader.close();
@@ -293,10 +316,75 @@ public class MemoryDataStore extends AbstractDataStore {
 
         featuresMap = memory.get(typeName);
         featuresMap.put(feature.getID(), feature);
+        changed(typeName);
+    }
+
+    /**
+     * Indexes the values of an attribute, so that comparison filters on that attribute only
+     * evaluate the features which may match.
+     * <p>
+     * The attribute values must be {@link Comparable} with each other, other attributes are
+     * silently left out of the index.
+     * </p>
+     *
+     * @param typeName
+     * @param attributeName name of the attribute to index
+     *
+     * @throws IOException If typeName cannot be found
+     * @throws IllegalArgumentException If the attribute does not exist
+     */
+    public void addIndex(String typeName, String attributeName) throws IOException {
+        synchronized (memory) {
+            if (getSchema(typeName).getDescriptor(attributeName) == null) {
+                throw new IllegalArgumentException("Attribute " + attributeName
+                        + " not found in " + typeName);
+            }
+            Set<String> attributes = indexedAttributes.get(typeName);
+            if (attributes == null) {
+                attributes = new HashSet<String>();
+            } else {
+                // indexes in use keep their own set
+                attributes = new HashSet<String>(attributes);
+            }
+            attributes.add(attributeName);
+            indexedAttributes.put(typeName, attributes);
+            changed(typeName);
+        }
+    }
+
+    /**
+     * Notes that the features of typeName have changed, dropping their indexed snapshot.
+     * <p>
+     * Must be called while holding the <code>memory</code> lock.
+     * </p>
+     */
+    private void changed(String typeName) {
+        indexes.remove(typeName);
+    }
+
+    /**
+     * Indexed snapshot of the features of typeName, built if needed.
+     */
+    private MemoryIndex index(String typeName) throws IOException {
+        MemoryIndex index = indexes.get(typeName);
+        if (index == null) {
+            synchronized (memory) {
+                index = indexes.get(typeName);
+                if (index == null) {
+                    index = new MemoryIndex(getSchema(typeName), features(typeName).values(),
+                            indexedAttributes.get(typeName));
+                    indexes.put(typeName, index);
+                }
+            }
+        }
+        return index;
     }
 
     /**
      * Access featureMap for typeName.
+     * <p>
+     * This is the live map of features, queries won't see direct modifications made to it.
+     * </p>
      *
      * @param typeName
      *
@@ -378,8 +466,11 @@ public class MemoryDataStore extends AbstractDataStore {
         }
             // insertion order preserving map
             Map<String,SimpleFeature> featuresMap = new LinkedHashMap<String,SimpleFeature>();
-            schema.put(typeName, featureType);
-            memory.put(typeName, featuresMap);
+            synchronized (memory) {
+                schema.put(typeName, featureType);
+                memory.put(typeName, featuresMap);
+                changed(typeName);
+            }
     }
 
     /**
@@ -399,9 +490,36 @@ public class MemoryDataStore extends AbstractDataStore {
      */
     public  FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(final String typeName)
         throws IOException {
+        return getFeatureReader(typeName, index(typeName), null);
+    }
+
+    /**
+     * Provides  FeatureReader<SimpleFeatureType, SimpleFeature> over the features of
+     * <code>typeName</code> which may match the query filter.
+     * <p>
+     * The indexes are used to skip features the filter can't select, the filter itself is
+     * still evaluated by the caller.
+     * </p>
+     *
+     * @see org.geotools.data.AbstractDataStore#getFeatureReader(java.lang.String, org.geotools.data.Query)
+     */
+    protected FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(String typeName,
+            Query query) throws IOException {
+        MemoryIndex index = index(typeName);
+        return getFeatureReader(typeName, index, index.select(query.getFilter()));
+    }
+
+    /**
+     * Provides  FeatureReader<SimpleFeatureType, SimpleFeature> over the selected features of a snapshot.
+     *
+     * @param selected positions of the features to read, or null to read them all
+     */
+    private FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(final String typeName,
+            final MemoryIndex index, final BitSet selected) throws IOException {
         return new FeatureReader<SimpleFeatureType, SimpleFeature>() {
                 SimpleFeatureType featureType = getSchema(typeName);
-                Iterator<SimpleFeature> iterator = features(typeName).values().iterator();
+                SimpleFeature[] features = index.features;
+                int position = nextPosition(0);
 
                 public SimpleFeatureType getFeatureType() {
                     return featureType;
@@ -409,30 +527,38 @@ public class MemoryDataStore extends AbstractDataStore {
 
                 public SimpleFeature next()
                     throws IOException, IllegalAttributeException, NoSuchElementException {
-                    if (iterator == null) {
+                    if (features == null) {
                         throw new IOException("Feature Reader has been closed");
                     }
-
-                    try {
-                        return SimpleFeatureBuilder.copy((SimpleFeature) iterator.next());
-                    } catch (NoSuchElementException end) {
-                        throw new DataSourceException("There are no more Features", end);
+                    if (position >= features.length) {
+                        throw new DataSourceException("There are no more Features",
+                                new NoSuchElementException());
                     }
+
+                    SimpleFeature feature = features[position];
+                    position = nextPosition(position + 1);
+                    return SimpleFeatureBuilder.copy(feature);
                 }
 
                 public boolean hasNext(){
-                    return (iterator != null) && iterator.hasNext();
+                    return (features != null) && position < features.length;
                 }
 
                 public void close(){
-                    if (iterator != null) {
-                        iterator = null;
-                    }
+                    features = null;
 
                     if (featureType != null) {
                         featureType = null;
                     }
                 }
+
+                private int nextPosition(int from) {
+                    if (selected == null) {
+                        return from;
+                    }
+                    int next = selected.nextSetBit(from);
+                    return next < 0 ? index.features.length : next;
+                }
             };
     }
 
@@ -503,7 +629,10 @@ public class MemoryDataStore extends AbstractDataStore {
 
                     if (live != null) {
                         // remove existing content
-                        iterator.remove();
+                        synchronized (memory) {
+                            iterator.remove();
+                            changed(typeName);
+                        }
                         listenerManager.fireFeaturesRemoved(typeName, transaction,
                             new ReferencedEnvelope(live.getBounds()), true);
                         live = null;
@@ -533,7 +662,10 @@ public class MemoryDataStore extends AbstractDataStore {
                             // accept modifications
                             //
                             try {
-                                live.setAttributes(current.getAttributes());
+                                synchronized (memory) {
+                                    live.setAttributes(current.getAttributes());
+                                    changed(typeName);
+                                }
                             } catch (Exception e) {
                                 throw new DataSourceException("Unable to accept modifications to "
                                     + live.getID() + " on " + typeName);
@@ -550,7 +682,10 @@ public class MemoryDataStore extends AbstractDataStore {
                     } else {
                         // add new content
                         //
-                        contents.put(current.getID(), current);
+                        synchronized (memory) {
+                            contents.put(current.getID(), current);
+                            changed(typeName);
+                        }
                         listenerManager.fireFeaturesAdded(typeName, transaction,
                         		new ReferencedEnvelope(current.getBounds()), true);
                         current = null;
@@ -588,18 +723,21 @@ public class MemoryDataStore extends AbstractDataStore {
     protected ReferencedEnvelope getBounds(Query query)
         throws IOException {
         String typeName = query.getTypeName();
-        Map<String,SimpleFeature> contents = features(typeName);
-        Iterator<SimpleFeature> iterator = contents.values().iterator();
+        MemoryIndex index = index(typeName);
 
         CoordinateReferenceSystem coordinateSystem = query.getCoordinateSystem();
         ReferencedEnvelope envelope = null;
         
         Filter filter = query.getFilter();
+        BitSet selected = index.select(filter);
         
         int count = 0;
-        while(iterator.hasNext() && (count < query.getMaxFeatures())) {
+        for (int i = 0; i < index.features.length && (count < query.getMaxFeatures()); i++) {
+            if (selected != null && !selected.get(i)) {
+                continue;
+            }
             count ++;
-            SimpleFeature feature = iterator.next();
+            SimpleFeature feature = index.features[i];
             if(filter.evaluate(feature)) {
                 count++;
                 Envelope env = ((Geometry) feature.getDefaultGeometry()).getEnvelopeInternal();
@@ -619,15 +757,15 @@ public class MemoryDataStore extends AbstractDataStore {
     protected int getCount(Query query)
         throws IOException {
         String typeName = query.getTypeName();
-        Map<String,SimpleFeature> contents = features(typeName);
-        Iterator<SimpleFeature> iterator = contents.values().iterator();
+        MemoryIndex index = index(typeName);
 
         int count = 0;
 
         Filter filter = query.getFilter();
+        BitSet selected = index.select(filter);
 
-        while (iterator.hasNext() && (count < query.getMaxFeatures())) {
-            if (filter.evaluate(iterator.next())) {
+        for (int i = 0; i < index.features.length && (count < query.getMaxFeatures()); i++) {
+            if ((selected == null || selected.get(i)) && filter.evaluate(index.features[i])) {
                 count++;
             }
         }
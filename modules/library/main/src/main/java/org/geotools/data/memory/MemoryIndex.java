@@ -0,0 +1,349 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.memory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.geotools.util.Converters;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.BBOX;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * An immutable snapshot of the features of a {@link MemoryDataStore} type, with the indexes
+ * used to narrow down the features a filter may select.
+ * <p>
+ * The snapshot keeps the features in insertion order, a map from feature id to position, and
+ * builds on first use an STR tree of the default geometry envelopes and sorted indexes of the
+ * chosen attributes. Since a snapshot is never modified, it can be read by any number of
+ * threads without locking; the data store replaces it once its contents change.
+ * <p>
+ * {@link #select(Filter)} only computes candidates: the selected features must still be
+ * evaluated against the filter.
+ *
+ * @source $URL$
+ */
+final class MemoryIndex {
+
+    /**
+     * The features, in insertion order.
+     */
+    final SimpleFeature[] features;
+
+    private final SimpleFeatureType featureType;
+
+    private final Map<String, Integer> positions;
+
+    private final Set<String> indexedAttributes;
+
+    private STRtree spatialIndex;
+
+    private final Map<String, AttributeIndex> attributeIndexes = new HashMap<String, AttributeIndex>();
+
+    MemoryIndex(SimpleFeatureType featureType, Collection<SimpleFeature> features,
+            Set<String> indexedAttributes) {
+        this.featureType = featureType;
+        this.features = features.toArray(new SimpleFeature[features.size()]);
+        this.positions = new HashMap<String, Integer>(this.features.length * 4 / 3 + 1);
+        for (int i = 0; i < this.features.length; i++) {
+            positions.put(this.features[i].getID(), i);
+        }
+        if (indexedAttributes == null) {
+            this.indexedAttributes = Collections.emptySet();
+        } else {
+            this.indexedAttributes = indexedAttributes;
+        }
+    }
+
+    /**
+     * Returns the positions of the features the filter may select, or null if the filter can't
+     * be answered by the indexes and all the features have to be evaluated.
+     */
+    BitSet select(Filter filter) {
+        if (filter instanceof Id) {
+            BitSet selected = new BitSet(features.length);
+            for (Object id : ((Id) filter).getIDs()) {
+                Integer position = positions.get(String.valueOf(id));
+                if (position != null) {
+                    selected.set(position);
+                }
+            }
+            return selected;
+        } else if (filter instanceof BBOX) {
+            return select((BBOX) filter);
+        } else if (filter instanceof And) {
+            // any indexed child narrows down the selection
+            BitSet selected = null;
+            for (Filter child : ((And) filter).getChildren()) {
+                BitSet childSelected = select(child);
+                if (childSelected != null) {
+                    if (selected == null) {
+                        selected = childSelected;
+                    } else {
+                        selected.and(childSelected);
+                    }
+                }
+            }
+            return selected;
+        } else if (filter instanceof Or) {
+            // all the children must be indexed
+            BitSet selected = new BitSet(features.length);
+            for (Filter child : ((Or) filter).getChildren()) {
+                BitSet childSelected = select(child);
+                if (childSelected == null) {
+                    return null;
+                }
+                selected.or(childSelected);
+            }
+            return selected;
+        } else if (filter instanceof PropertyIsBetween) {
+            PropertyIsBetween between = (PropertyIsBetween) filter;
+            AttributeIndex index = getAttributeIndex(between.getExpression());
+            if (index == null) {
+                return null;
+            }
+            Comparable lower = index.toKey(between.getLowerBoundary());
+            Comparable upper = index.toKey(between.getUpperBoundary());
+            if (lower == null || upper == null) {
+                return null;
+            }
+            return index.select(lower, upper);
+        } else if (filter instanceof BinaryComparisonOperator) {
+            return select((BinaryComparisonOperator) filter);
+        }
+        return null;
+    }
+
+    private BitSet select(BBOX bbox) {
+        GeometryDescriptor geometry = featureType.getGeometryDescriptor();
+        String propertyName = bbox.getPropertyName();
+        if (geometry == null
+                || (propertyName != null && propertyName.length() > 0 && !propertyName
+                        .equals(geometry.getLocalName()))) {
+            return null;
+        }
+        Envelope envelope = new Envelope(bbox.getMinX(), bbox.getMaxX(), bbox.getMinY(), bbox
+                .getMaxY());
+        BitSet selected = new BitSet(features.length);
+        for (Object position : getSpatialIndex().query(envelope)) {
+            selected.set((Integer) position);
+        }
+        return selected;
+    }
+
+    private BitSet select(BinaryComparisonOperator comparison) {
+        boolean swapped = false;
+        AttributeIndex index = getAttributeIndex(comparison.getExpression1());
+        Expression value = comparison.getExpression2();
+        if (index == null) {
+            // literal < property, the comparison is reversed
+            index = getAttributeIndex(comparison.getExpression2());
+            value = comparison.getExpression1();
+            swapped = true;
+        }
+        if (index == null
+                || (!comparison.isMatchingCase() && String.class.equals(index.binding))) {
+            return null;
+        }
+        Comparable key = index.toKey(value);
+        if (key == null) {
+            return null;
+        }
+        // bounds are inclusive, features equal to the key are evaluated again by the filter
+        if (comparison instanceof PropertyIsEqualTo) {
+            return index.select(key, key);
+        } else if (comparison instanceof PropertyIsLessThan
+                || comparison instanceof PropertyIsLessThanOrEqualTo) {
+            return swapped ? index.select(key, null) : index.select(null, key);
+        } else if (comparison instanceof PropertyIsGreaterThan
+                || comparison instanceof PropertyIsGreaterThanOrEqualTo) {
+            return swapped ? index.select(null, key) : index.select(key, null);
+        }
+        return null;
+    }
+
+    private synchronized STRtree getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = new STRtree();
+            for (int i = 0; i < features.length; i++) {
+                Object geometry = features[i].getDefaultGeometry();
+                if (geometry instanceof Geometry) {
+                    spatialIndex.insert(((Geometry) geometry).getEnvelopeInternal(), i);
+                }
+            }
+            spatialIndex.build();
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * Returns the index of the attribute named by the expression, or null if there is none.
+     */
+    private synchronized AttributeIndex getAttributeIndex(Expression expression) {
+        if (!(expression instanceof PropertyName)) {
+            return null;
+        }
+        String name = ((PropertyName) expression).getPropertyName();
+        if (!indexedAttributes.contains(name)) {
+            return null;
+        }
+        if (!attributeIndexes.containsKey(name)) {
+            AttributeDescriptor descriptor = featureType.getDescriptor(name);
+            AttributeIndex index = null;
+            if (descriptor != null
+                    && Comparable.class.isAssignableFrom(descriptor.getType().getBinding())) {
+                index = AttributeIndex.create(features, featureType.indexOf(name), descriptor
+                        .getType().getBinding());
+            }
+            attributeIndexes.put(name, index);
+        }
+        return attributeIndexes.get(name);
+    }
+
+    /**
+     * The non null values of an attribute, sorted, and the positions of their features.
+     */
+    private static final class AttributeIndex {
+        final Class<?> binding;
+
+        final Comparable[] keys;
+
+        final int[] positions;
+
+        private AttributeIndex(Class<?> binding, Comparable[] keys, int[] positions) {
+            this.binding = binding;
+            this.keys = keys;
+            this.positions = positions;
+        }
+
+        /**
+         * Sorts the values of an attribute, or returns null if they can't be compared.
+         */
+        static AttributeIndex create(final SimpleFeature[] features, final int attribute,
+                Class<?> binding) {
+            List<Integer> sorted = new ArrayList<Integer>(features.length);
+            for (int i = 0; i < features.length; i++) {
+                if (features[i].getAttribute(attribute) != null) {
+                    sorted.add(i);
+                }
+            }
+            try {
+                Collections.sort(sorted, new Comparator<Integer>() {
+                    @SuppressWarnings("unchecked")
+                    public int compare(Integer o1, Integer o2) {
+                        return ((Comparable) features[o1].getAttribute(attribute))
+                                .compareTo(features[o2].getAttribute(attribute));
+                    }
+                });
+            } catch (ClassCastException e) {
+                // mixed values, not indexable
+                return null;
+            }
+            Comparable[] keys = new Comparable[sorted.size()];
+            int[] positions = new int[sorted.size()];
+            int i = 0;
+            for (Iterator<Integer> it = sorted.iterator(); it.hasNext(); i++) {
+                positions[i] = it.next();
+                keys[i] = (Comparable) features[positions[i]].getAttribute(attribute);
+            }
+            return new AttributeIndex(binding, keys, positions);
+        }
+
+        /**
+         * Converts a literal to a key, or returns null if the conversion could lose information.
+         */
+        Comparable toKey(Expression expression) {
+            if (!(expression instanceof Literal)) {
+                return null;
+            }
+            Object value = ((Literal) expression).getValue();
+            if (value == null) {
+                return null;
+            }
+            if (binding.isInstance(value)) {
+                return (Comparable) value;
+            }
+            Object key = Converters.convert(value, binding);
+            if (!(key instanceof Comparable) || !value.equals(Converters.convert(key, value.getClass()))) {
+                return null;
+            }
+            return (Comparable) key;
+        }
+
+        /**
+         * Returns the positions of the features whose value is between the inclusive bounds,
+         * null meaning unbounded.
+         */
+        BitSet select(Comparable lower, Comparable upper) {
+            int from = lower == null ? 0 : search(lower, true);
+            int to = upper == null ? keys.length : search(upper, false);
+            BitSet selected = new BitSet();
+            for (int i = from; i < to; i++) {
+                selected.set(positions[i]);
+            }
+            return selected;
+        }
+
+        /**
+         * Returns the index of the first key greater or equal to the given one, or greater if
+         * {@code first} is false.
+         */
+        @SuppressWarnings("unchecked")
+        private int search(Comparable key, boolean first) {
+            int low = 0, high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int c = keys[mid].compareTo(key);
+                if (c < 0 || (!first && c == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.geotools.data.store;
 
+import java.awt.geom.Rectangle2D;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -40,6 +41,7 @@ import org.geotools.filter.spatial.ReprojectingFilterVisitor;
 import org.geotools.geometry.jts.GeometryCoordinateSequenceTransformer;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.referencing.operation.transform.GridInterpolatedTransform2D;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.filter.Filter;
@@ -48,6 +50,8 @@ import org.opengis.filter.sort.SortBy;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.TransformException;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
@@ -82,6 +86,17 @@ public class ReprojectingFeatureCollection extends DecoratingSimpleFeatureCollec
      * Transformer used to transform geometries;
      */
     GeometryCoordinateSequenceTransformer transformer;
+
+    /**
+     * The maximum distance, in target units, allowed between approximated and exact
+     * reprojected coordinates
+     */
+    double tolerance;
+
+    /**
+     * The approximated transform, lazily built when a tolerance is set
+     */
+    MathTransform approximatedTransform;
     
     public ReprojectingFeatureCollection(
             FeatureCollection<SimpleFeatureType, SimpleFeature> delegate,
@@ -121,6 +136,48 @@ public class ReprojectingFeatureCollection extends DecoratingSimpleFeatureCollec
 		this.transformer = transformer;
 	}  
 
+    /**
+     * Allows the reprojection to be approximated by interpolating the exact transform on a grid
+     * covering the delegate bounds, as long as the error stays below the specified tolerance,
+     * expressed in target CRS units. Meant for cases where accuracy is not critical, such as
+     * rendering. The default, zero, reprojects each coordinate exactly.
+     * 
+     * @since 8.0
+     */
+    public void setTransformTolerance(double tolerance) {
+        this.tolerance = tolerance;
+        this.approximatedTransform = null;
+    }
+
+    /**
+     * The tolerance used to approximate the reprojection, zero if exact
+     * 
+     * @since 8.0
+     */
+    public double getTransformTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Returns the transform used to reproject the features, approximated if a tolerance is set
+     */
+    MathTransform getIteratorTransform() throws TransformException {
+        if (tolerance <= 0 || !(transform instanceof MathTransform2D)) {
+            return transform;
+        }
+        if (approximatedTransform == null) {
+            ReferencedEnvelope bounds = delegate.getBounds();
+            if (bounds == null || bounds.isEmpty()) {
+                return transform;
+            }
+            Rectangle2D domain = new Rectangle2D.Double(bounds.getMinX(), bounds.getMinY(),
+                    bounds.getWidth(), bounds.getHeight());
+            approximatedTransform = GridInterpolatedTransform2D.create(
+                    (MathTransform2D) transform, domain, tolerance);
+        }
+        return approximatedTransform;
+    }
+
     private MathTransform transform(CoordinateReferenceSystem source,
             CoordinateReferenceSystem target) {
         try {
@@ -155,7 +212,8 @@ public class ReprojectingFeatureCollection extends DecoratingSimpleFeatureCollec
 
     public Iterator<SimpleFeature> iterator() {
         try {
-            return new ReprojectingIterator(delegate.iterator(), transform, schema, transformer);
+            return new ReprojectingIterator(delegate.iterator(), getIteratorTransform(), schema,
+                    transformer);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -183,7 +241,10 @@ public class ReprojectingFeatureCollection extends DecoratingSimpleFeatureCollec
             }
         }
         
-        return new ReprojectingFeatureCollection(delegate.subCollection(filter), target);
+        ReprojectingFeatureCollection sub = new ReprojectingFeatureCollection(
+                delegate.subCollection(filter), target);
+        sub.setTransformTolerance(tolerance);
+        return sub;
     }
 
     public SimpleFeatureCollection sort(SortBy order) {
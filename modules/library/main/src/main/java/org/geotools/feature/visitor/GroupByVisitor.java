@@ -0,0 +1,320 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.util.Converters;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.filter.expression.Expression;
+
+/**
+ * Computes an aggregate (count, sum, min, max or average) for each distinct combination of
+ * the values of a list of grouping expressions, in the same way a SQL <code>GROUP BY</code>
+ * clause would.
+ * <p>
+ * For example, the following computes the number of features for each value of the
+ * "landuse" attribute, which can be used to build a unique value classification along with
+ * the size of each class:
+ * <pre>
+ * GroupByVisitor visitor = new GroupByVisitor(GroupByVisitor.Aggregate.COUNT, null,
+ *         Collections.singletonList(ff.property("landuse")));
+ * featureSource.accepts(Query.ALL, visitor, null);
+ * Map&lt;List&lt;Object&gt;, Object&gt; counts = visitor.getGroups();
+ * </pre>
+ * </p>
+ * <p>
+ * Stores that can compute grouped aggregates natively (such as the JDBC ones) recognize this
+ * visitor and set the results with {@link #setValue(Map)} instead of visiting each feature.
+ * </p>
+ *
+ * @since 8.0
+ *
+ * @source $URL$
+ */
+public class GroupByVisitor implements FeatureCalc {
+
+    /**
+     * The aggregates that can be computed for each group
+     */
+    public enum Aggregate {
+        /**
+         * Number of features in the group, the aggregated expression is ignored
+         */
+        COUNT,
+        /**
+         * Sum of the aggregated expression values, a Long if they are all integral, a Double
+         * otherwise
+         */
+        SUM,
+        /**
+         * Minimum of the aggregated expression values
+         */
+        MIN,
+        /**
+         * Maximum of the aggregated expression values
+         */
+        MAX,
+        /**
+         * Average of the aggregated expression values, as a Double
+         */
+        AVERAGE;
+
+        /**
+         * Creates a visitor computing this aggregate over the specified expression
+         */
+        FeatureCalc createVisitor(Expression expr) {
+            switch (this) {
+            case COUNT:
+                return new CountVisitor();
+            case SUM:
+                return new SumCalc(expr, false);
+            case MIN:
+                return new MinVisitor(expr);
+            case MAX:
+                return new MaxVisitor(expr);
+            default:
+                return new SumCalc(expr, true);
+            }
+        }
+    }
+
+    Aggregate aggregate;
+
+    Expression expression;
+
+    List<Expression> groupByExpressions;
+
+    /**
+     * The per group visitors, used when computing the aggregates in memory
+     */
+    Map<List<Object>, FeatureCalc> visitors = new LinkedHashMap<List<Object>, FeatureCalc>();
+
+    /**
+     * The results set by an optimized implementation, if any
+     */
+    Map<List<Object>, Object> optimizedResults;
+
+    /**
+     * Builds a new group by visitor
+     *
+     * @param aggregate The aggregate to be computed for each group
+     * @param expression The expression to be aggregated, can be <code>null</code> when counting
+     * @param groupByExpressions The expressions whose values identify a group
+     */
+    public GroupByVisitor(Aggregate aggregate, Expression expression,
+            List<Expression> groupByExpressions) {
+        if (aggregate == null) {
+            throw new IllegalArgumentException("The aggregate must be specified");
+        }
+        if (expression == null && aggregate != Aggregate.COUNT) {
+            throw new IllegalArgumentException("The aggregated expression must be specified");
+        }
+        if (groupByExpressions == null || groupByExpressions.isEmpty()) {
+            throw new IllegalArgumentException("At least one group by expression is required");
+        }
+        this.aggregate = aggregate;
+        this.expression = expression;
+        this.groupByExpressions = new ArrayList<Expression>(groupByExpressions);
+    }
+
+    /**
+     * The aggregate computed for each group
+     */
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * The expression being aggregated, might be <code>null</code> when counting
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * The expressions whose values identify a group
+     */
+    public List<Expression> getGroupByExpressions() {
+        return Collections.unmodifiableList(groupByExpressions);
+    }
+
+    public void init(SimpleFeatureCollection collection) {
+        // do nothing
+    }
+
+    public void visit(SimpleFeature feature) {
+        visit((Feature) feature);
+    }
+
+    public void visit(Feature feature) {
+        List<Object> key = new ArrayList<Object>(groupByExpressions.size());
+        for (Expression groupBy : groupByExpressions) {
+            key.add(groupBy.evaluate(feature));
+        }
+
+        FeatureCalc visitor = visitors.get(key);
+        if (visitor == null) {
+            visitor = aggregate.createVisitor(expression);
+            visitors.put(key, visitor);
+        }
+        visitor.visit(feature);
+    }
+
+    /**
+     * Sets the results computed by an optimized implementation. The keys are the values of
+     * the group by expressions, in the same order as {@link #getGroupByExpressions()}, the
+     * values are the aggregates.
+     */
+    public void setValue(Map<List<Object>, Object> results) {
+        reset();
+        this.optimizedResults = new LinkedHashMap<List<Object>, Object>(results);
+    }
+
+    public void reset() {
+        visitors = new LinkedHashMap<List<Object>, FeatureCalc>();
+        optimizedResults = null;
+    }
+
+    /**
+     * Returns the aggregate value for each group. The keys are the values of the group by
+     * expressions, in the same order as {@link #getGroupByExpressions()}.
+     */
+    public Map<List<Object>, Object> getGroups() {
+        if (optimizedResults != null) {
+            return new LinkedHashMap<List<Object>, Object>(optimizedResults);
+        }
+
+        Map<List<Object>, Object> results = new LinkedHashMap<List<Object>, Object>();
+        for (Map.Entry<List<Object>, FeatureCalc> entry : visitors.entrySet()) {
+            results.put(entry.getKey(), entry.getValue().getResult().getValue());
+        }
+        return results;
+    }
+
+    public CalcResult getResult() {
+        if (optimizedResults == null && visitors.isEmpty()) {
+            return CalcResult.NULL_RESULT;
+        }
+        return new GroupByResult(getGroups());
+    }
+
+    /**
+     * Returns true if the class is one of the integral types whose sum is computed as a Long
+     */
+    public static boolean isIntegral(Class<?> type) {
+        return type == Integer.class || type == Long.class || type == Short.class
+                || type == Byte.class;
+    }
+
+    /**
+     * Computes the sum or the average of a group. Unlike {@link SumVisitor} and
+     * {@link AverageVisitor} the values are accumulated in a long as long as they are
+     * integral, in a double otherwise, so that the sum of an integer attribute cannot
+     * overflow, and the same types are returned as by the stores computing the groups
+     * natively. Null values are skipped, as in SQL.
+     */
+    static class SumCalc implements FeatureCalc {
+        Expression expr;
+
+        boolean average;
+
+        boolean integral = true;
+
+        long longSum;
+
+        double doubleSum;
+
+        int count;
+
+        SumCalc(Expression expr, boolean average) {
+            this.expr = expr;
+            this.average = average;
+        }
+
+        public void init(SimpleFeatureCollection collection) {
+            // do nothing
+        }
+
+        public void visit(SimpleFeature feature) {
+            visit((Feature) feature);
+        }
+
+        public void visit(Feature feature) {
+            Object value = expr.evaluate(feature);
+            if (value == null) {
+                return;
+            }
+            Number number = value instanceof Number ? (Number) value : Converters.convert(
+                    value, Double.class);
+            if (number == null) {
+                return;
+            }
+            if (integral && isIntegral(number.getClass())) {
+                longSum += number.longValue();
+            } else {
+                if (integral) {
+                    integral = false;
+                    doubleSum = longSum;
+                }
+                doubleSum += number.doubleValue();
+            }
+            count++;
+        }
+
+        public CalcResult getResult() {
+            if (count == 0) {
+                return CalcResult.NULL_RESULT;
+            }
+            final Number result;
+            if (average) {
+                result = Double.valueOf((integral ? (double) longSum : doubleSum) / count);
+            } else if (integral) {
+                result = Long.valueOf(longSum);
+            } else {
+                result = Double.valueOf(doubleSum);
+            }
+            return new AbstractCalcResult() {
+                public Object getValue() {
+                    return result;
+                }
+            };
+        }
+    }
+
+    /**
+     * The result of a {@link GroupByVisitor}, its value is a map from the group values to the
+     * aggregate
+     */
+    public static class GroupByResult extends AbstractCalcResult {
+        private Map<List<Object>, Object> groups;
+
+        public GroupByResult(Map<List<Object>, Object> groups) {
+            this.groups = groups;
+        }
+
+        public Object getValue() {
+            return new LinkedHashMap<List<Object>, Object>(groups);
+        }
+    }
+}
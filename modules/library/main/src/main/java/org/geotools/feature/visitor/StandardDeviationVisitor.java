@@ -17,6 +17,7 @@
 package org.geotools.feature.visitor;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.util.Converters;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.filter.expression.Expression;
 
@@ -50,6 +51,10 @@ public class StandardDeviationVisitor implements FeatureCalc {
     int count = 0;
     double mean = 0;
     double m2 = 0;
+    /**
+     * The standard deviation as computed by an optimized implementation (e.g., a database)
+     */
+    Double optimizedValue;
 
     /**
      * Constructor left for backwards compatibility. The current algorithm uses
@@ -77,7 +82,31 @@ public class StandardDeviationVisitor implements FeatureCalc {
 		//do nothing
 	}
 	
+	/**
+	 * The expression whose standard deviation is computed
+	 */
+	public Expression getExpression() {
+	    return expr;
+	}
+	
+	/**
+	 * Sets the standard deviation computed by an optimized implementation
+	 * @param value a number, or an object convertible to a double
+	 */
+	public void setValue(Object value) {
+	    reset();
+	    optimizedValue = Converters.convert(value, Double.class);
+	}
+	
 	public CalcResult getResult() {
+	    if(optimizedValue != null) {
+	        final Double value = optimizedValue;
+	        return new AbstractCalcResult() {
+	            public Object getValue() {
+	                return value;
+	            }
+	        };
+	    }
 		if(count == 0) {
     		return CalcResult.NULL_RESULT;
     	}
@@ -121,6 +150,7 @@ public class StandardDeviationVisitor implements FeatureCalc {
 	    this.countNaN = 0;
 	    this.m2 = 0;
 	    this.mean = 0;
+	    this.optimizedValue = null;
 	}
 
     /**
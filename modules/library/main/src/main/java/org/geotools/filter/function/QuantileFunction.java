@@ -17,17 +17,22 @@
 package org.geotools.filter.function;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Level;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.FeatureCollection;
-import org.geotools.feature.visitor.CalcResult;
-import org.geotools.feature.visitor.QuantileListVisitor;
+import org.geotools.feature.visitor.GroupByVisitor;
+import org.geotools.feature.visitor.GroupByVisitor.Aggregate;
 import org.geotools.util.NullProgressListener;
+import org.opengis.filter.expression.Expression;
 
 /**
  * Breaks a SimpleFeatureCollection into classes with an equal number of items in each.
@@ -47,19 +52,19 @@ public class QuantileFunction extends ClassificationFunction {
     }
     
 	private Object calculate(SimpleFeatureCollection featureCollection) {
-		// use a visitor to find the values in each bin
-		QuantileListVisitor quantileVisit = new QuantileListVisitor(getExpression(), getClasses());
+		// count the features for each value, stores able to group natively do it for us
+		GroupByVisitor countVisit = new GroupByVisitor(Aggregate.COUNT, null,
+		        Collections.<Expression>singletonList(getExpression()));
 		if (progress == null) progress = new NullProgressListener();
 		try {
-            featureCollection.accepts(quantileVisit, progress);
+            featureCollection.accepts(countVisit, progress);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "QuantileFunction calculate(SimpleFeatureCollection) failed" , e);
             return null;
         }
 		if (progress.isCanceled()) return null;
-		CalcResult calcResult = quantileVisit.getResult();
-		if (calcResult == null) return null;
-        List[] bin = (List[]) calcResult.getValue();
+		List[] bin = computeBins(countVisit.getGroups(), getClasses());
+		if (bin == null) return null;
 		
 		//generate the min and max values, and round off if applicable/necessary
 		Comparable globalMin = (Comparable) bin[0].toArray()[0];
@@ -140,6 +145,76 @@ public class QuantileFunction extends ClassificationFunction {
 //      localMax[i] = (Comparable) thisBin.get(thisBin.size()-1);
     }
 
+    /**
+     * Splits the values into bins holding the same number of features, the same way
+     * {@link org.geotools.feature.visitor.QuantileListVisitor} does, but working off the
+     * number of features for each value. Each bin lists its distinct values in ascending order.
+     * 
+     * @param counts the number of features for each value, as returned by a
+     *        {@link GroupByVisitor} counting features grouped by the classified expression
+     * @param bins the number of bins
+     * @return the bins, or null if there are no values to classify
+     */
+    static List[] computeBins(Map<List<Object>, Object> counts, int bins) {
+        // sort the values, skipping nulls and NaNs as the quantile list visitor does
+        TreeMap<Comparable, Integer> histogram = new TreeMap<Comparable, Integer>();
+        int count = 0;
+        for (Map.Entry<List<Object>, Object> entry : counts.entrySet()) {
+            Object value = entry.getKey().get(0);
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof Double) {
+                double doubleVal = ((Double) value).doubleValue();
+                if (Double.isNaN(doubleVal) || Double.isInfinite(doubleVal)) {
+                    continue;
+                }
+            }
+            int n = ((Number) entry.getValue()).intValue();
+            Integer previous = histogram.get(value);
+            histogram.put((Comparable) value, previous == null ? n : previous + n);
+            count += n;
+        }
+        if (bins == 0 || count == 0) {
+            return null;
+        }
+        if (bins > count) {
+            bins = count;
+        }
+
+        // calculate number of items to put into each of the larger bins
+        int binPop = (int) Math.ceil((double) count / bins);
+        // determine index of bin where the next bin has one less item
+        int lastBigBin = count % bins;
+        if (lastBigBin == 0) lastBigBin = bins;
+        else lastBigBin--;
+
+        // walk the sorted values, a value spans as many bins as its count requires
+        List[] bin = new ArrayList[bins];
+        int binIndex = 0;
+        bin[0] = new ArrayList();
+        int room = binPop;
+        for (Map.Entry<Comparable, Integer> entry : histogram.entrySet()) {
+            int remaining = entry.getValue();
+            while (remaining > 0) {
+                if (room == 0) {
+                    if (lastBigBin == binIndex) binPop--;
+                    binIndex++;
+                    bin[binIndex] = new ArrayList();
+                    room = binPop;
+                }
+                List thisBin = bin[binIndex];
+                if (thisBin.isEmpty() || thisBin.get(thisBin.size() - 1) != entry.getKey()) {
+                    thisBin.add(entry.getKey());
+                }
+                int taken = Math.min(room, remaining);
+                room -= taken;
+                remaining -= taken;
+            }
+        }
+        return bin;
+    }
+
 	public Object evaluate(Object feature) {
 	    if (!(feature instanceof FeatureCollection)) {
 	        return null;
@@ -16,12 +16,7 @@
  */
 package org.geotools.gml.producer;
 
-import java.math.BigDecimal;
-import java.math.MathContext;
-import java.text.FieldPosition;
-import java.text.NumberFormat;
-import java.util.Locale;
-
+import org.geotools.util.DoubleFormatter;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
@@ -51,15 +46,13 @@ public class CoordinateWriter {
     /** Internal representation of tuple delimiter (' ' for GML is  default) */
     private final String tupleDelimiter;
     
-    /** To be used for formatting numbers, uses US locale. */
-    private final NumberFormat coordFormatter = NumberFormat.getInstance(Locale.US);
+    /** To be used for formatting numbers, rounds to the number of decimals. */
+    private final DoubleFormatter coordFormatter;
     
     private final AttributesImpl atts = new org.xml.sax.helpers.AttributesImpl();
     
     private final StringBuffer coordBuff = new StringBuffer();
     
-    private final FieldPosition zero = new FieldPosition(0);
-    
     private char[] buff = new char[200];
     
     /**
@@ -83,23 +76,6 @@ public class CoordinateWriter {
     private String prefix = "gml";
     private String namespaceUri = GMLUtils.GML_URL;
     
-    /**
-     * The power of ten used for fast rounding
-     */
-    private final double scale;
-    
-    /**
-     * The min value at which the decimal notation is used 
-     * (below it, the computerized scientific one is used instead)
-     */
-    private static final double DECIMAL_MIN = Math.pow(10, -3);
-    
-    /**
-     * The max value at which the decimal notation is used 
-     * (above it, the computerized scientific one is used instead)
-     */
-    private static final double DECIMAL_MAX = Math.pow(10, 7);
-    
     public CoordinateWriter() {
         this(4);
     }
@@ -157,10 +133,7 @@ public class CoordinateWriter {
         tupleDelimiter = tupleDelim;
         coordinateDelimiter = coordDelim;
         
-        coordFormatter.setMaximumFractionDigits(numDecimals);
-        coordFormatter.setGroupingUsed(false);
-        
-        scale = Math.pow(10, numDecimals);
+        coordFormatter = new DoubleFormatter(numDecimals);
         
         String uri = namespaceUri;
         if ( !namespaceAware ) {
@@ -177,7 +150,7 @@ public class CoordinateWriter {
     }
 
 	public int getNumDecimals(){
-        return coordFormatter.getMaximumFractionDigits();
+        return coordFormatter.getDecimals();
     }
     
     public boolean isDummyZEnabled(){
@@ -261,15 +234,15 @@ public class CoordinateWriter {
             coordBuff.setLength(0);
             
             // format x into buffer and append delimiter
-            formatDecimal(x, coordBuff);
+            coordFormatter.format(x, coordBuff);
             coordBuff.append(coordinateDelimiter);
             // format y into buffer
-            formatDecimal(y, coordBuff);
+            coordFormatter.format(y, coordBuff);
             
             if (D == 3 || useDummyZ) {
                 z = (D == 3 && coordSeqDimension > 2)? c.getOrdinate(i, 2) : dummyZ;
                 coordBuff.append(coordinateDelimiter);
-                formatDecimal(z, coordBuff);
+                coordFormatter.format(z, coordBuff);
             }
             
             // if there is another coordinate, tack on a tuple delimiter
@@ -290,17 +263,4 @@ public class CoordinateWriter {
         output.endElement(namespaceUri,"coordinates", prefix + "coordinates");
     }
 
-    private void formatDecimal(double x, StringBuffer sb) {
-        if(Math.abs(x) >= DECIMAL_MIN && x < DECIMAL_MAX) {
-            x = Math.floor(x * scale + 0.5) / scale;
-            long lx = (long) x;
-            if(lx == x)
-                sb.append(lx);
-            else
-                sb.append(x);
-        } else {
-            coordFormatter.format(x, coordBuff, zero);
-        }
-    }
-
 }
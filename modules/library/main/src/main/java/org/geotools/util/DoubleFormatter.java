@@ -0,0 +1,313 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Formats doubles, typically ordinates, without going through intermediate strings.
+ * <p>
+ * Two modes are available:
+ * <ul>
+ * <li>shortest round trip, created with {@link #DoubleFormatter()}: the output is the one of
+ * {@link Double#toString(double)}</li>
+ * <li>fixed number of decimals, created with {@link #DoubleFormatter(int)}: the value is rounded
+ * half up to the number of decimals, written without trailing zeros, and without decimal part if
+ * it is an integer. Very small or very large values are written with a {@link NumberFormat} in
+ * the US locale, without grouping. This is the historical output of the GML producer's
+ * coordinate writer. With {@link #DoubleFormatter(int, boolean)} they can be written as
+ * {@link Double#toString(double)} does instead, as the GeoJSON encoder does</li>
+ * </ul>
+ * Values whose magnitude is between 10<sup>-3</sup> and 10<sup>7</sup>, the range where
+ * {@link Double#toString(double)} uses the plain decimal notation, are written digit by digit
+ * in a reusable buffer; the other ones take the original, slower path.
+ * </p>
+ * <p>
+ * Instances are not thread safe, each writer should use its own.
+ * </p>
+ *
+ * @source $URL$
+ */
+public final class DoubleFormatter {
+
+    /**
+     * The min value at which the decimal notation is used
+     * (below it, the computerized scientific one is used instead)
+     */
+    static final double DECIMAL_MIN = Math.pow(10, -3);
+
+    /**
+     * The max value at which the decimal notation is used
+     * (above it, the computerized scientific one is used instead)
+     */
+    static final double DECIMAL_MAX = Math.pow(10, 7);
+
+    /**
+     * Above this number of units the digits computed from a double are not reliable anymore
+     */
+    static final double MAX_UNITS = 1e15;
+
+    /**
+     * The powers of ten which are exactly represented as doubles
+     */
+    static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        double power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+
+    /**
+     * The number of decimals, or -1 for the shortest round trip representation
+     */
+    private final int decimals;
+
+    /**
+     * 10 to the power of the number of decimals
+     */
+    private final double scale;
+
+    /**
+     * Whether the values outside the decimal notation range are written with a
+     * {@link NumberFormat}, in fixed decimals mode
+     */
+    private final boolean numberFormatOutOfRange;
+
+    /**
+     * Digits are written backwards from the end of this buffer
+     */
+    private final char[] buffer = new char[32];
+
+    /**
+     * Lazily created formatter for the values outside the decimal notation range
+     */
+    private NumberFormat numberFormat;
+
+    private FieldPosition zero;
+
+    /**
+     * Lazily created buffer for the values written to a {@link Writer} the slow way
+     */
+    private StringBuffer slow;
+
+    /**
+     * Creates a formatter writing the shortest representation which parses back to the same
+     * double, as {@link Double#toString(double)} does.
+     */
+    public DoubleFormatter() {
+        this.decimals = -1;
+        this.scale = 1;
+        this.numberFormatOutOfRange = false;
+    }
+
+    /**
+     * Creates a formatter rounding values to a fixed number of decimals.
+     *
+     * @param decimals the maximum number of decimals written
+     */
+    public DoubleFormatter(int decimals) {
+        this(decimals, true);
+    }
+
+    /**
+     * Creates a formatter rounding values to a fixed number of decimals.
+     *
+     * @param decimals the maximum number of decimals written
+     * @param numberFormatOutOfRange if true the values outside the decimal notation range are
+     *        written with a {@link NumberFormat} limited to the number of decimals, otherwise
+     *        they are written as {@link Double#toString(double)} does
+     */
+    public DoubleFormatter(int decimals, boolean numberFormatOutOfRange) {
+        if (decimals < 0) {
+            throw new IllegalArgumentException("The number of decimals cannot be negative: "
+                    + decimals);
+        }
+        this.decimals = decimals;
+        this.scale = Math.pow(10, decimals);
+        this.numberFormatOutOfRange = numberFormatOutOfRange;
+    }
+
+    /**
+     * Returns the number of decimals, or -1 if the shortest round trip representation is used.
+     */
+    public int getDecimals() {
+        return decimals;
+    }
+
+    /**
+     * Appends a value to a buffer.
+     *
+     * @param value the value to format
+     * @param sb the buffer the value is appended to
+     * @return the buffer
+     */
+    public StringBuffer format(double value, StringBuffer sb) {
+        int length = formatDigits(value);
+        if (length > 0) {
+            sb.append(buffer, buffer.length - length, length);
+        } else {
+            formatSlow(value, sb);
+        }
+        return sb;
+    }
+
+    /**
+     * Writes a value to a writer.
+     *
+     * @param value the value to format
+     * @param out the writer the value is written to
+     */
+    public void format(double value, Writer out) throws IOException {
+        int length = formatDigits(value);
+        if (length > 0) {
+            out.write(buffer, buffer.length - length, length);
+        } else {
+            if (slow == null) {
+                slow = new StringBuffer();
+            }
+            slow.setLength(0);
+            formatSlow(value, slow);
+            out.write(slow.toString());
+        }
+    }
+
+    /**
+     * Returns the formatted value.
+     */
+    public String format(double value) {
+        return format(value, new StringBuffer()).toString();
+    }
+
+    /**
+     * Writes the value at the end of the buffer and returns its length, or 0 if the value
+     * has to be formatted with {@link #formatSlow(double, StringBuffer)}
+     */
+    int formatDigits(double value) {
+        if (decimals < 0) {
+            return formatShortest(value);
+        }
+        double abs = Math.abs(value);
+        if (abs >= DECIMAL_MIN && value < DECIMAL_MAX) {
+            double scaled = Math.floor(value * scale + 0.5);
+            if (abs < DECIMAL_MAX && Math.abs(scaled) < MAX_UNITS
+                    && decimals < POWERS_OF_TEN.length) {
+                return writeDecimal((long) scaled, decimals, true);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Formats the values {@link #formatDigits(double)} cannot handle
+     */
+    void formatSlow(double value, StringBuffer sb) {
+        if (decimals < 0) {
+            sb.append(value);
+            return;
+        }
+        double abs = Math.abs(value);
+        if (abs >= DECIMAL_MIN && value < DECIMAL_MAX) {
+            value = Math.floor(value * scale + 0.5) / scale;
+            long lx = (long) value;
+            if (lx == value) {
+                sb.append(lx);
+            } else {
+                sb.append(value);
+            }
+        } else if (!numberFormatOutOfRange) {
+            sb.append(value);
+        } else {
+            if (numberFormat == null) {
+                numberFormat = NumberFormat.getInstance(Locale.US);
+                numberFormat.setMaximumFractionDigits(decimals);
+                numberFormat.setGroupingUsed(false);
+                zero = new FieldPosition(0);
+            }
+            numberFormat.format(value, sb, zero);
+        }
+    }
+
+    /**
+     * Writes the shortest decimal representation of the value parsing back to it, and returns
+     * its length, or 0 if the value is outside the decimal notation range or needs too many
+     * digits.
+     */
+    int formatShortest(double value) {
+        double abs = Math.abs(value);
+        if (!(abs >= DECIMAL_MIN && abs < DECIMAL_MAX)) {
+            return 0;
+        }
+        // the first number of decimals at which the rounded value parses back to the original
+        // one gives the shortest representation. The rounding is exact as long as the number of
+        // units fits in the mantissa with a good margin, and dividing by an exact power of ten
+        // gives the double nearest to the decimal value
+        for (int k = 1; k < POWERS_OF_TEN.length; k++) {
+            double scaled = abs * POWERS_OF_TEN[k];
+            if (scaled >= MAX_UNITS) {
+                return 0;
+            }
+            double units = Math.rint(scaled);
+            if (units / POWERS_OF_TEN[k] == abs) {
+                return writeDecimal(value < 0 ? -(long) units : (long) units, k, false);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes units / 10^decimals at the end of the buffer and returns the number of chars
+     * written. When trimming the trailing zeros are removed, and the decimal separator too if
+     * there are no decimals left, otherwise all the decimals are written.
+     */
+    int writeDecimal(long units, int decimals, boolean trim) {
+        if (units == 0 && trim) {
+            buffer[buffer.length - 1] = '0';
+            return 1;
+        }
+        boolean negative = units < 0;
+        if (negative) {
+            units = -units;
+        }
+        int pos = buffer.length;
+        boolean significant = !trim;
+        for (int i = 0; i < decimals; i++) {
+            int digit = (int) (units % 10);
+            units /= 10;
+            if (digit != 0 || significant) {
+                buffer[--pos] = (char) ('0' + digit);
+                significant = true;
+            }
+        }
+        if (significant) {
+            buffer[--pos] = '.';
+        }
+        do {
+            buffer[--pos] = (char) ('0' + (int) (units % 10));
+            units /= 10;
+        } while (units != 0);
+        if (negative) {
+            buffer[--pos] = '-';
+        }
+        return buffer.length - pos;
+    }
+}
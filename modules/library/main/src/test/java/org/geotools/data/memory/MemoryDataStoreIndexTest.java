@@ -0,0 +1,161 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.memory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.DefaultQuery;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.identity.FeatureId;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Checks the indexed queries of {@link MemoryDataStore} return the same features as a full
+ * scan.
+ *
+ * @source $URL$
+ */
+public class MemoryDataStoreIndexTest extends TestCase {
+    MemoryDataStore data;
+
+    SimpleFeature[] features;
+
+    FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+
+    protected void setUp() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("point",
+                "geom:Point,value:Integer,name:String");
+        GeometryFactory gf = new GeometryFactory();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+        List<SimpleFeature> list = new ArrayList<SimpleFeature>();
+        for (int x = 0; x < 20; x++) {
+            for (int y = 0; y < 20; y++) {
+                builder.add(gf.createPoint(new Coordinate(x, y)));
+                builder.add(x % 3 == 0 ? null : Integer.valueOf(x * y));
+                builder.add("p" + (x + y));
+                list.add(builder.buildFeature("point." + x + "." + y));
+            }
+        }
+        features = list.toArray(new SimpleFeature[list.size()]);
+        data = new MemoryDataStore(features);
+        data.addIndex("point", "value");
+        data.addIndex("point", "name");
+    }
+
+    protected void tearDown() throws Exception {
+        data = null;
+        features = null;
+    }
+
+    public void testBBOX() throws Exception {
+        assertQuery(ff.bbox("geom", 2.5, 3.5, 5, 7, null), 12);
+        assertQuery(ff.bbox("", 100, 100, 200, 200, null), 0);
+    }
+
+    public void testId() throws Exception {
+        assertQuery(ids("point.1.2", "point.3.4", "point.unknown"), 2);
+    }
+
+    public void testComparison() throws Exception {
+        assertQuery(ff.equals(ff.property("value"), ff.literal(12)), 3);
+        assertQuery(ff.equals(ff.property("value"), ff.literal("12")), 3);
+        assertQuery(ff.less(ff.property("value"), ff.literal(10)), -1);
+        assertQuery(ff.lessOrEqual(ff.literal(300), ff.property("value")), -1);
+        assertQuery(ff.greater(ff.property("value"), ff.literal(300.5)), -1);
+        assertQuery(ff.between(ff.property("name"), ff.literal("p20"), ff.literal("p25")), -1);
+        assertQuery(ff.equals(ff.property("name"), ff.literal("p7")), 8);
+        assertQuery(ff.equal(ff.property("name"), ff.literal("P7"), false), 8);
+        assertQuery(ff.notEqual(ff.property("value"), ff.literal(12)), -1);
+    }
+
+    public void testLogic() throws Exception {
+        Filter bbox = ff.bbox("geom", 2.5, 3.5, 5, 7, null);
+        Filter value = ff.greater(ff.property("value"), ff.literal(20));
+        assertQuery(ff.and(bbox, value), -1);
+        assertQuery(ff.or(bbox, value), -1);
+        assertQuery(ff.or(bbox, ff.like(ff.property("name"), "p1*")), -1);
+        assertQuery(ff.and(ff.not(bbox), value), -1);
+    }
+
+    public void testModify() throws Exception {
+        Filter filter = ff.equals(ff.property("value"), ff.literal(12));
+        assertQuery(filter, 3);
+
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = data.getFeatureWriter("point",
+                ids("point.2.6"),
+                Transaction.AUTO_COMMIT);
+        writer.next().setAttribute("value", Integer.valueOf(13));
+        writer.write();
+        writer.close();
+        assertQuery(filter, 2);
+
+        data.addFeature(SimpleFeatureBuilder.build(features[0].getFeatureType(), new Object[] {
+                null, Integer.valueOf(12), "new" }, "point.new"));
+        assertQuery(filter, 3);
+    }
+
+    Filter ids(String... fids) {
+        Set<FeatureId> ids = new HashSet<FeatureId>();
+        for (String fid : fids) {
+            ids.add(ff.featureId(fid));
+        }
+        return ff.id(ids);
+    }
+
+    /**
+     * Checks the query returns the features matching the filter, in insertion order.
+     */
+    void assertQuery(Filter filter, int expectedCount) throws Exception {
+        List<String> expected = new ArrayList<String>();
+        for (SimpleFeature feature : data.features("point").values()) {
+            if (filter.evaluate(feature)) {
+                expected.add(feature.getID());
+            }
+        }
+        if (expectedCount >= 0) {
+            assertEquals(expectedCount, expected.size());
+        }
+        List<String> actual = new ArrayList<String>();
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = data.getFeatureReader(
+                new DefaultQuery("point", filter), Transaction.AUTO_COMMIT);
+        try {
+            while (reader.hasNext()) {
+                actual.add(reader.next().getID());
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), data.getCount(new DefaultQuery("point", filter)));
+    }
+}
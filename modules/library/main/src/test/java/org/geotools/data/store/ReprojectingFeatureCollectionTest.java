@@ -83,6 +83,28 @@ public class ReprojectingFeatureCollectionTest extends FeatureCollectionWrapperT
 
     }
 
+    public void testTolerance() throws Exception {
+        ReprojectingFeatureCollection rfc = new ReprojectingFeatureCollection(delegate, target);
+        rfc.setTransformTolerance(1);
+        assertEquals(1d, rfc.getTransformTolerance());
+        Iterator reproject = rfc.iterator();
+        Iterator reader = delegate.iterator();
+
+        while (reader.hasNext()) {
+            SimpleFeature normal = (SimpleFeature) reader.next();
+            SimpleFeature reprojected = (SimpleFeature) reproject.next();
+
+            Point p1 = (Point) normal.getAttribute("defaultGeom");
+            Point p2 = (Point) reprojected.getAttribute("defaultGeom");
+            if (p1 != null) {
+                p1 = (Point) transformer.transform(p1);
+                assertTrue(p1.distance(p2) < 1);
+            } else {
+                assertNull(p2);
+            }
+        }
+    }
+
     public void testBounds() throws Exception {
         ReprojectingFeatureCollection rfc = new ReprojectingFeatureCollection(delegate, target);
         ReferencedEnvelope bounds = delegate.getBounds();
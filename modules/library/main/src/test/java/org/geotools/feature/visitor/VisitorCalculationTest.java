@@ -18,8 +18,11 @@ package org.geotools.feature.visitor;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.geotools.data.DataTestCase;
@@ -440,6 +443,82 @@ public class VisitorCalculationTest extends DataTestCase {
         assertSame(result, result.merge(emptyVisitor.getResult()));
     }
     
+    public void testStandardDeviationOptimized() throws Exception {
+        FilterFactory factory = CommonFactoryFinder.getFilterFactory(null);
+        Expression expr = factory.property(ft3.getDescriptor(0).getLocalName());
+        StandardDeviationVisitor visitor = new StandardDeviationVisitor(expr);
+        assertSame(expr, visitor.getExpression());
+        visitor.setValue(new java.math.BigDecimal("28.86"));
+        assertEquals(28.86, visitor.getResult().toDouble(), 0.001);
+        visitor.reset();
+        assertEquals(CalcResult.NULL_RESULT, visitor.getResult());
+    }
+    
+    public void testGroupBy() throws Exception {
+        // group the 100 boring features in even and odd ones
+        SimpleFeatureType type = DataUtilities.createType("groups", "id:0,parity:String");
+        SimpleFeature[] features = new SimpleFeature[100];
+        for (int i = 1; i <= 100; i++) {
+            features[i - 1] = SimpleFeatureBuilder.build(type, new Object[] { new Integer(i),
+                    i % 2 == 0 ? "even" : "odd" }, null);
+        }
+        SimpleFeatureCollection groups = DataUtilities.collection(features);
+
+        FilterFactory factory = CommonFactoryFinder.getFilterFactory(null);
+        Expression id = factory.property("id");
+        List<Expression> groupBy = new ArrayList<Expression>();
+        groupBy.add(factory.property("parity"));
+
+        GroupByVisitor count = new GroupByVisitor(GroupByVisitor.Aggregate.COUNT, null, groupBy);
+        groups.accepts(count, null);
+        Map<List<Object>, Object> result = count.getGroups();
+        assertEquals(2, result.size());
+        assertEquals(50, result.get(Collections.singletonList("even")));
+        assertEquals(50, result.get(Collections.singletonList("odd")));
+
+        GroupByVisitor sum = new GroupByVisitor(GroupByVisitor.Aggregate.SUM, id, groupBy);
+        groups.accepts(sum, null);
+        // integral sums are returned as longs
+        assertEquals(2550L, sum.getGroups().get(Collections.singletonList("even")));
+        assertEquals(2500L, sum.getGroups().get(Collections.singletonList("odd")));
+
+        GroupByVisitor max = new GroupByVisitor(GroupByVisitor.Aggregate.MAX, id, groupBy);
+        groups.accepts(max, null);
+        assertEquals(100, max.getGroups().get(Collections.singletonList("even")));
+        assertEquals(99, max.getGroups().get(Collections.singletonList("odd")));
+
+        GroupByVisitor average = new GroupByVisitor(GroupByVisitor.Aggregate.AVERAGE, id, groupBy);
+        groups.accepts(average, null);
+        // averages are not truncated
+        assertEquals(51.0, average.getGroups().get(Collections.singletonList("even")));
+        assertEquals(50.0, average.getGroups().get(Collections.singletonList("odd")));
+
+        // integer sums do not overflow
+        SimpleFeature[] large = new SimpleFeature[3];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = SimpleFeatureBuilder.build(type, new Object[] {
+                    new Integer(Integer.MAX_VALUE), "odd" }, null);
+        }
+        sum.reset();
+        DataUtilities.collection(large).accepts(sum, null);
+        assertEquals(3L * Integer.MAX_VALUE, sum.getGroups().get(Collections.singletonList("odd")));
+        average.reset();
+        DataUtilities.collection(large).accepts(average, null);
+        assertEquals((double) Integer.MAX_VALUE, average.getGroups().get(
+                Collections.singletonList("odd")));
+
+        // optimized results replace the in memory ones
+        Map<List<Object>, Object> optimized = new HashMap<List<Object>, Object>();
+        optimized.put(Collections.singletonList((Object) "all"), 100);
+        count.setValue(optimized);
+        assertEquals(optimized, count.getResult().getValue());
+
+        // empty collection
+        count.reset();
+        empty.accepts(count, null);
+        assertEquals(CalcResult.NULL_RESULT, count.getResult());
+    }
+    
     //try merging a count and sum to get an average, both count+sum and sum+count 
     public void testCountSumMerge() throws IllegalFilterException, IOException {
         CountVisitor countVisitor = new CountVisitor();
@@ -16,10 +16,20 @@
  */
 package org.geotools.filter.function;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
 import org.geotools.data.DataUtilities;
 import org.geotools.data.memory.MemoryDataStore;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.FeatureCollections;
+import org.geotools.feature.visitor.QuantileListVisitor;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -224,4 +234,49 @@ public class QuantileFunctionTest extends FunctionTestSupport {
         assertEquals("0..0", range.getTitle(0));
         assertEquals("0..0.25995", range.getTitle(1));
     }
+    /**
+     * The bins computed from the grouped counts hold the same distinct values as the ones
+     * computed by the quantile list visitor from the sorted values
+     */
+    public void testBinsFromCounts() throws Exception {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            int size = 1 + random.nextInt(40);
+            List<Object> values = new ArrayList<Object>();
+            Map<List<Object>, Object> counts = new LinkedHashMap<List<Object>, Object>();
+            for (int i = 0; i < size; i++) {
+                // plenty of duplicates, and the odd null
+                Integer value = random.nextInt(10) == 0 ? null : random.nextInt(size / 3 + 1);
+                values.add(value);
+                List<Object> key = Collections.singletonList((Object) value);
+                Integer count = (Integer) counts.get(key);
+                counts.put(key, count == null ? 1 : count + 1);
+            }
+            int classes = 1 + random.nextInt(6);
+
+            QuantileListVisitor visitor = new QuantileListVisitor(ff.property("value"), classes);
+            SimpleFeatureType type = DataUtilities.createType("test", "value:0");
+            for (Object value : values) {
+                visitor.visit(SimpleFeatureBuilder.build(type, new Object[] { value }, null));
+            }
+            List[] expected = (List[]) visitor.getResult().getValue();
+            List[] actual = QuantileFunction.computeBins(counts, classes);
+            if (expected == null) {
+                assertNull(actual);
+                continue;
+            }
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(new ArrayList<Object>(new LinkedHashSet<Object>(expected[i])),
+                        actual[i]);
+            }
+        }
+        assertNull(QuantileFunction.computeBins(new LinkedHashMap<List<Object>, Object>(), 3));
+        // a value shared by several bins shows up in each
+        List[] bins = QuantileFunction.computeBins(
+                Collections.singletonMap(Arrays.asList((Object) 1), (Object) 3), 2);
+        assertEquals(Arrays.asList(1), bins[0]);
+        assertEquals(Arrays.asList(1), bins[1]);
+    }
+    
 }
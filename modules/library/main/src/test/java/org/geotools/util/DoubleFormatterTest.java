@@ -0,0 +1,169 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks {@link DoubleFormatter} gives the same output as the formatting it replaces.
+ *
+ * @source $URL$
+ */
+public class DoubleFormatterTest extends TestCase {
+
+    public void testShortest() {
+        DoubleFormatter formatter = new DoubleFormatter();
+        assertEquals(-1, formatter.getDecimals());
+        assertEquals("1.0", formatter.format(1));
+        assertEquals("-45.5", formatter.format(-45.5));
+        assertEquals("0.1", formatter.format(0.1));
+        assertEquals("0.001", formatter.format(0.001));
+        assertEquals("1.0E-4", formatter.format(0.0001));
+        assertEquals("1.0E7", formatter.format(1e7));
+        assertEquals("9999999.999999998", formatter.format(9999999.999999998));
+        assertEquals("0.0", formatter.format(0));
+        assertEquals("NaN", formatter.format(Double.NaN));
+    }
+
+    public void testShortestRandom() {
+        DoubleFormatter formatter = new DoubleFormatter();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            double value = randomValue(random, i);
+            assertEquals(Double.toString(value), formatter.format(value));
+        }
+    }
+
+    public void testFixed() {
+        DoubleFormatter formatter = new DoubleFormatter(4);
+        assertEquals(4, formatter.getDecimals());
+        assertEquals("1", formatter.format(1));
+        assertEquals("-45.5", formatter.format(-45.5));
+        assertEquals("0.1235", formatter.format(0.123456));
+        assertEquals("-0.1235", formatter.format(-0.123456));
+        assertEquals("10", formatter.format(9.99996));
+        assertEquals("0", formatter.format(0.00001));
+        assertEquals("12345678.1235", formatter.format(12345678.123456));
+        assertEquals("0", new DoubleFormatter(2).format(-0.004));
+        assertEquals("-0.01", new DoubleFormatter(2).format(-0.006));
+    }
+
+    public void testFixedRandom() {
+        Random random = new Random(1);
+        for (int decimals = 0; decimals < 12; decimals++) {
+            DoubleFormatter formatter = new DoubleFormatter(decimals);
+            for (int i = 0; i < 10000; i++) {
+                double value = randomValue(random, i);
+                assertEquals(fixed(value, decimals), formatter.format(value));
+            }
+        }
+    }
+
+    public void testFixedDoubleNotation() {
+        DoubleFormatter formatter = new DoubleFormatter(4, false);
+        assertEquals("0.1235", formatter.format(0.123456));
+        assertEquals("1.0E-5", formatter.format(0.00001));
+        assertEquals("-1.0E-5", formatter.format(-0.00001));
+        assertEquals("1.23456789E8", formatter.format(123456789));
+        Random random = new Random(1);
+        for (int decimals = 0; decimals < 12; decimals++) {
+            formatter = new DoubleFormatter(decimals, false);
+            for (int i = 0; i < 10000; i++) {
+                double value = randomValue(random, i);
+                assertEquals(fixedDouble(value, decimals), formatter.format(value));
+            }
+        }
+    }
+
+    public void testWriter() throws IOException {
+        DoubleFormatter[] formatters = new DoubleFormatter[] { new DoubleFormatter(),
+                new DoubleFormatter(3), new DoubleFormatter(3, false) };
+        Random random = new Random(1);
+        for (DoubleFormatter formatter : formatters) {
+            for (int i = 0; i < 10000; i++) {
+                double value = randomValue(random, i);
+                StringWriter writer = new StringWriter();
+                writer.write('[');
+                formatter.format(value, writer);
+                writer.write(']');
+                assertEquals("[" + formatter.format(value) + "]", writer.toString());
+            }
+        }
+    }
+
+    public void testNegativeDecimals() {
+        try {
+            new DoubleFormatter(-1);
+            fail("Negative number of decimals should have been rejected");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+    }
+
+    double randomValue(Random random, int i) {
+        switch (i % 4) {
+        case 0:
+            return (random.nextDouble() - 0.5) * 360;
+        case 1:
+            return Math.round(random.nextDouble() * 1e9) / 1e4 - 5e4;
+        case 2:
+            return Math.pow(10, random.nextDouble() * 14 - 5) * (random.nextBoolean() ? 1 : -1);
+        default:
+            return random.nextInt(100000) / 100.0;
+        }
+    }
+
+    /**
+     * The formatting previously used by the GML producer's coordinate writer
+     */
+    String fixed(double x, int decimals) {
+        StringBuffer sb = new StringBuffer();
+        double scale = Math.pow(10, decimals);
+        if (Math.abs(x) >= Math.pow(10, -3) && x < Math.pow(10, 7)) {
+            x = Math.floor(x * scale + 0.5) / scale;
+            long lx = (long) x;
+            if (lx == x) {
+                sb.append(lx);
+            } else {
+                sb.append(x);
+            }
+        } else {
+            NumberFormat format = NumberFormat.getInstance(Locale.US);
+            format.setMaximumFractionDigits(decimals);
+            format.setGroupingUsed(false);
+            format.format(x, sb, new FieldPosition(0));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The formatting previously used by the GeoJSON encoder
+     */
+    String fixedDouble(double x, int decimals) {
+        if (Math.abs(x) >= Math.pow(10, -3) && x < Math.pow(10, 7)) {
+            return fixed(x, decimals);
+        }
+        return String.valueOf(x);
+    }
+}
@@ -839,11 +839,13 @@ public class Hints extends RenderingHints {
      *   <li>{@code "none"} for disabling the cache.</li>
      *   <li>{@code "soft"} for holding the value throuhg(@linkplain java.lang.ref.SoftReference 
      *       soft references}.
+     *   <li>{@code "concurrent"} for lock free reads, holding the {@link #CACHE_LIMIT} most
+     *       recent values through strong references and the other ones through soft references.
      * </ul>
      *
      * @since 2.5
      */
-    public static final OptionKey CACHE_POLICY = new OptionKey("weak", "all", "fixed","none","default","soft");
+    public static final OptionKey CACHE_POLICY = new OptionKey("weak", "all", "fixed","none","default","soft","concurrent");
 
     /**
      * The recommended maximum number of referencing objects to hold in a
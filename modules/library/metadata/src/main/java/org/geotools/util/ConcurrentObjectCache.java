@@ -0,0 +1,492 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * An {@link ObjectCache} for heavily concurrent use. Reading a value with {@link #get get} never
+ * blocks: values are stored in a {@link ConcurrentHashMap}. Each entry has its own lock, so
+ * {@link #writeLock writeLock} only blocks the threads creating the value for the same key,
+ * which gives single-flight construction when the usual pattern is followed:
+ *
+ * <blockquote><pre>
+ * Object value = cache.get(key);
+ * if (value == null) {
+ *     try {
+ *         cache.writeLock(key);
+ *         value = cache.peek(key);
+ *         if (value == null) {
+ *             value = create(key);
+ *             cache.put(key, value);
+ *         }
+ *     } finally {
+ *         cache.writeUnLock(key);
+ *     }
+ * }
+ * </pre></blockquote>
+ *
+ * Callers which can keep the lock around should prefer {@link #lock lock} and
+ * {@link #unlock unlock}, which release the very entry that was locked. In both cases the
+ * entry is removed on unlock if no value has been stored, so failed creations do not leave
+ * anything behind.
+ * <p>
+ * The most recently used values are kept by strong references, up to the amount given at
+ * construction time. A value read since it was last considered for eviction gets a second
+ * chance, so frequently used values stay strongly referenced. Other values are then retained
+ * by {@linkplain SoftReference soft} or {@linkplain WeakReference weak} references and their
+ * entries are removed once the garbage collector has reclaimed them. A value retained by a
+ * reference and read again is put back among the strongly referenced ones.
+ * <p>
+ * The number of hits, misses and lock contentions is counted and can be obtained with
+ * {@link #getStatistics}.
+ *
+ * @since 8.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class ConcurrentObjectCache implements ObjectCache {
+    /**
+     * An entry in the cache. The value is either the cached object, a reference to it,
+     * or {@code null} if not yet computed or reclaimed.
+     */
+    private static final class Entry extends AtomicReference<Object> {
+        /**
+         * For cross-version compatibility.
+         */
+        private static final long serialVersionUID = -3452871402950282627L;
+
+        /**
+         * The key of this entry, used for removing it once the value has been reclaimed.
+         */
+        final Object key;
+
+        /**
+         * The lock held while the value is being created.
+         */
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Set when the value is read, cleared when the entry gets its second chance
+         * of staying strongly referenced.
+         */
+        volatile boolean used;
+
+        Entry(final Object key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The lock on a key, obtained by {@link ConcurrentObjectCache#lock lock} and to be
+     * released by {@link ConcurrentObjectCache#unlock unlock}.
+     */
+    public static final class KeyLock {
+        final Entry entry;
+
+        KeyLock(final Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * A soft reference which remembers its entry.
+     */
+    private static final class Soft extends SoftReference<Object> {
+        final Entry entry;
+
+        Soft(final Object value, final Entry entry, final ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * A weak reference which remembers its entry.
+     */
+    private static final class Weak extends WeakReference<Object> {
+        final Entry entry;
+
+        Weak(final Object value, final Entry entry, final ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * A snapshot of the cache usage counters.
+     */
+    public static final class Statistics {
+        private final long hits, misses, contentions;
+
+        Statistics(final long hits, final long misses, final long contentions) {
+            this.hits        = hits;
+            this.misses      = misses;
+            this.contentions = contentions;
+        }
+
+        /**
+         * Returns the number of {@link ConcurrentObjectCache#get get} calls which found a value.
+         */
+        public long getHitCount() {
+            return hits;
+        }
+
+        /**
+         * Returns the number of {@link ConcurrentObjectCache#get get} calls which found no value.
+         */
+        public long getMissCount() {
+            return misses;
+        }
+
+        /**
+         * Returns the number of {@link ConcurrentObjectCache#writeLock writeLock} calls which
+         * had to wait for another thread creating the value for the same key.
+         */
+        public long getContentionCount() {
+            return contentions;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", contentions=" + contentions;
+        }
+    }
+
+    /**
+     * The entries by key.
+     */
+    private final ConcurrentMap<Object,Entry> entries = new ConcurrentHashMap<Object,Entry>();
+
+    /**
+     * The entries whose value is retained by strong reference, least recently considered
+     * for eviction first.
+     */
+    private final Queue<Entry> strong = new ConcurrentLinkedQueue<Entry>();
+
+    /**
+     * The number of elements in {@link #strong}.
+     */
+    private final AtomicInteger strongCount = new AtomicInteger();
+
+    /**
+     * The queue of references reclaimed by the garbage collector.
+     */
+    private final ReferenceQueue<Object> reclaimed = new ReferenceQueue<Object>();
+
+    /**
+     * The maximum number of values to keep by strong reference.
+     */
+    private final int maxStrongReferences;
+
+    /**
+     * {@code true} for soft references, {@code false} for weak ones.
+     */
+    private final boolean soft;
+
+    /**
+     * The usage counters.
+     */
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(),
+            contentions = new AtomicLong();
+
+    /**
+     * The entries locked by {@link #writeLock writeLock} in the current thread, by key.
+     */
+    private final ThreadLocal<Map<Object,List<Entry>>> held =
+            new ThreadLocal<Map<Object,List<Entry>>>() {
+        @Override
+        protected Map<Object,List<Entry>> initialValue() {
+            return new HashMap<Object,List<Entry>>();
+        }
+    };
+
+    /**
+     * Creates a new cache keeping the given amount of values by strong references,
+     * and the other ones by soft references.
+     *
+     * @param maxStrongReferences The maximum number of values to keep by strong reference.
+     */
+    public ConcurrentObjectCache(final int maxStrongReferences) {
+        this(maxStrongReferences, true);
+    }
+
+    /**
+     * Creates a new cache keeping the given amount of values by strong references.
+     *
+     * @param maxStrongReferences The maximum number of values to keep by strong reference.
+     * @param soft {@code true} for retaining the other values by soft references,
+     *        or {@code false} for weak references.
+     */
+    public ConcurrentObjectCache(final int maxStrongReferences, final boolean soft) {
+        this.maxStrongReferences = maxStrongReferences;
+        this.soft = soft;
+    }
+
+    /**
+     * Removes all entries from this cache.
+     */
+    public void clear() {
+        entries.clear();
+        strong.clear();
+        strongCount.set(0);
+    }
+
+    /**
+     * Returns the value for the given key, or {@code null} if none. This method never blocks.
+     */
+    public Object get(final Object key) {
+        final Object value = value(entries.get(key));
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value for the given key, or {@code null} if none. This method is meant to
+     * be invoked while holding the {@linkplain #writeLock write lock}; it does not update
+     * the statistics.
+     */
+    public Object peek(final Object key) {
+        return value(entries.get(key));
+    }
+
+    /**
+     * Returns the value of the given entry, moving it back to the strongly
+     * referenced values if it was only softly or weakly reachable.
+     */
+    private Object value(final Entry entry) {
+        if (entry == null) {
+            return null;
+        }
+        final Object value = entry.get();
+        if (value instanceof Reference) {
+            final Object referent = ((Reference<?>) value).get();
+            if (referent != null && entry.compareAndSet(value, referent)) {
+                retain(entry);
+            }
+            return referent;
+        }
+        if (value != null && !entry.used) {
+            entry.used = true;
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value in the cache.
+     */
+    public void put(final Object key, final Object object) {
+        expunge();
+        final Entry entry = getEntry(key);
+        final Object previous = entry.getAndSet(object);
+        if (object != null && (previous == null || previous instanceof Reference)) {
+            // A previous strong value means the entry is already queued.
+            retain(entry);
+        }
+    }
+
+    /**
+     * Registers the given entry as strongly referenced, and replaces the strong reference of
+     * the least recently used entry by a soft or weak reference if there is too many strong
+     * references. Entries read since they were queued are queued again instead, once.
+     */
+    private void retain(final Entry entry) {
+        entry.used = false;
+        strong.add(entry);
+        if (strongCount.incrementAndGet() > maxStrongReferences) {
+            // Bounded so that concurrent readers can not keep this loop running.
+            for (int n = strongCount.get(); n >= 0; n--) {
+                final Entry oldest = strong.poll();
+                if (oldest == null) {
+                    break;
+                }
+                if (oldest.used && n != 0) {
+                    oldest.used = false;
+                    strong.add(oldest);
+                    continue;
+                }
+                strongCount.decrementAndGet();
+                final Object value = oldest.get();
+                if (value != null && !(value instanceof Reference)) {
+                    oldest.compareAndSet(value, soft ?
+                            new Soft(value, oldest, reclaimed) : new Weak(value, oldest, reclaimed));
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes the entries whose value has been reclaimed by the garbage collector.
+     */
+    private void expunge() {
+        Reference<?> ref;
+        while ((ref = reclaimed.poll()) != null) {
+            final Entry entry = (ref instanceof Soft) ? ((Soft) ref).entry : ((Weak) ref).entry;
+            if (entry.compareAndSet(ref, null) && entry.lock.tryLock()) {
+                try {
+                    release(entry);
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entry for the given key, creating it if needed.
+     */
+    private Entry getEntry(final Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            final Entry previous = entries.putIfAbsent(key, entry);
+            if (previous != null) {
+                entry = previous;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Removes the given entry if it has no value and nobody else is waiting for it.
+     * Must be invoked while holding the entry lock exactly once.
+     */
+    private void release(final Entry entry) {
+        if (entry.get() == null && entry.lock.getHoldCount() == 1
+                && !entry.lock.hasQueuedThreads())
+        {
+            entries.remove(entry.key, entry);
+        }
+    }
+
+    /**
+     * Acquires the lock for the given key, blocking if another thread holds it. The
+     * returned lock must be given to {@link #unlock unlock}, typically in a
+     * {@code finally} block.
+     *
+     * @param  key The key of the value to be created.
+     * @return The lock acquired.
+     */
+    public KeyLock lock(final Object key) {
+        while (true) {
+            final Entry entry = getEntry(key);
+            if (!entry.lock.tryLock()) {
+                contentions.incrementAndGet();
+                entry.lock.lock();
+            }
+            if (entries.get(key) == entry) {
+                return new KeyLock(entry);
+            }
+            // The entry has been released while we were waiting, try with the new one.
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a lock acquired by {@link #lock lock}. The entry is removed from the cache
+     * if no value has been stored for it, for example because the creation failed.
+     *
+     * @param lock The lock to release.
+     */
+    public void unlock(final KeyLock lock) {
+        final Entry entry = lock.entry;
+        try {
+            release(entry);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Acquires the lock for the given key, blocking if another thread holds it.
+     * Consider {@link #lock lock} instead, which does not need to remember the
+     * locked entries.
+     */
+    public void writeLock(final Object key) {
+        final Entry entry = lock(key).entry;
+        final Map<Object,List<Entry>> locked = held.get();
+        List<Entry> list = locked.get(key);
+        if (list == null) {
+            list = new ArrayList<Entry>(1);
+            locked.put(key, list);
+        }
+        list.add(entry);
+    }
+
+    /**
+     * Releases the lock acquired for the given key by {@link #writeLock writeLock}.
+     *
+     * @throws IllegalStateException if the current thread did not lock the key.
+     */
+    public void writeUnLock(final Object key) {
+        final Map<Object,List<Entry>> locked = held.get();
+        final List<Entry> list = locked.get(key);
+        if (list == null) {
+            throw new IllegalStateException("Cannot unlock prior to locking");
+        }
+        final Entry entry = list.remove(list.size() - 1);
+        if (list.isEmpty()) {
+            locked.remove(key);
+        }
+        unlock(new KeyLock(entry));
+    }
+
+    /**
+     * Returns a copy of the keys currently in the cache.
+     */
+    public Set<Object> getKeys() {
+        return new HashSet<Object>(entries.keySet());
+    }
+
+    /**
+     * Removes the given key from the cache.
+     */
+    public void remove(final Object key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Returns a snapshot of the usage counters of this cache.
+     */
+    public Statistics getStatistics() {
+        return new Statistics(hits.get(), misses.get(), contentions.get());
+    }
+}
@@ -186,7 +186,7 @@ public final class ObjectCaches {
     /**
      * Utility method used to produce an ObjectCache.
      *
-     * @param policy One of "weak", "all", "none", "soft"
+     * @param policy One of "weak", "all", "none", "soft", "fixed", "concurrent"
      * @param size Used to indicate requested size, exact use depends on policy
      * @return A new ObjectCache
      * @see Hints.BUFFER_POLICY
@@ -202,6 +202,8 @@ public final class ObjectCaches {
             return new FixedSizeObjectCache(size);
         } else if ("soft".equals(policy)){
         	return new SoftObjectCache(size);
+        } else if ("concurrent".equalsIgnoreCase(policy)) {
+            return new ConcurrentObjectCache(size);
         } else {
             return new DefaultObjectCache(size);
         }
@@ -0,0 +1,183 @@
+package org.geotools.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests the ConcurrentObjectCache.
+ *
+ *
+ * @source $URL$
+ */
+public class ConcurrentObjectCacheTest {
+
+    @Test
+    public void testSimple() {
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(10);
+        assertNull(cache.get(1));
+
+        cache.writeLock(1);
+        cache.put(1, "value 1");
+        cache.writeUnLock(1);
+        assertEquals("value 1", cache.get(1));
+        assertEquals(1, cache.getKeys().size());
+
+        cache.remove(1);
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getKeys().size());
+
+        ConcurrentObjectCache.Statistics stats = cache.getStatistics();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(0, stats.getContentionCount());
+    }
+
+    @Test
+    public void testStrongReferences() {
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(2, false);
+        String[] values = new String[5];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new String("value " + i);
+            cache.put(i, values[i]);
+        }
+        // values still referenced here are returned, even if not strongly held by the cache
+        for (int i = 0; i < values.length; i++) {
+            assertSame(values[i], cache.get(i));
+        }
+    }
+
+    @Test
+    public void testRecentlyUsedStayStrong() {
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(2, false);
+        cache.put("hot", new String("hot value"));
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(cache.get("hot"));
+            cache.put(i, new String("value " + i));
+        }
+        System.gc();
+        assertEquals("hot value", cache.get("hot"));
+    }
+
+    @Test
+    public void testFailedCreationLeavesNoEntry() {
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(10);
+        for (int i = 0; i < 100; i++) {
+            ConcurrentObjectCache.KeyLock lock = cache.lock(i);
+            try {
+                assertNull(cache.peek(i));
+                // creation failed, nothing stored
+            } finally {
+                cache.unlock(lock);
+            }
+            cache.writeLock("key " + i);
+            cache.writeUnLock("key " + i);
+        }
+        assertEquals(0, cache.getKeys().size());
+
+        ConcurrentObjectCache.KeyLock lock = cache.lock("stored");
+        try {
+            cache.put("stored", "value");
+        } finally {
+            cache.unlock(lock);
+        }
+        assertEquals(Collections.singleton("stored"), cache.getKeys());
+    }
+
+    @Test
+    public void testUnlockAfterClear() {
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(10);
+        cache.writeLock("key");
+        ConcurrentObjectCache.KeyLock lock = cache.lock("other");
+        cache.clear();
+        cache.put("key", "value");
+        cache.unlock(lock);
+        cache.writeUnLock("key");
+        assertEquals("value", cache.get("key"));
+
+        // the locks have been released, another thread can acquire them
+        final ConcurrentObjectCache shared = cache;
+        final boolean[] acquired = new boolean[2];
+        Thread t = new Thread() {
+            public void run() {
+                shared.unlock(shared.lock("key"));
+                acquired[0] = true;
+                shared.unlock(shared.lock("other"));
+                acquired[1] = true;
+            }
+        };
+        t.start();
+        try {
+            t.join(5000);
+        } catch (InterruptedException e) {
+            fail(e.getMessage());
+        }
+        assertTrue(acquired[0]);
+        assertTrue(acquired[1]);
+    }
+
+    @Test
+    public void testUnlockWithoutLock() {
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(10);
+        try {
+            cache.writeUnLock("key");
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSingleFlight() throws InterruptedException {
+        final ConcurrentObjectCache cache = new ConcurrentObjectCache(10);
+        final AtomicInteger created = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    Object value = cache.get("key");
+                    if (value == null) {
+                        try {
+                            cache.writeLock("key");
+                            value = cache.peek("key");
+                            if (value == null) {
+                                created.incrementAndGet();
+                                Thread.sleep(50);
+                                cache.put("key", "value");
+                            }
+                        } catch (InterruptedException e) {
+                            // ignore
+                        } finally {
+                            cache.writeUnLock("key");
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1, created.get());
+        assertEquals("value", cache.get("key"));
+        ConcurrentObjectCache.Statistics stats = cache.getStatistics();
+        assertTrue(stats.getMissCount() >= 1);
+        assertEquals(threads.length + 1, stats.getHitCount() + stats.getMissCount());
+    }
+}
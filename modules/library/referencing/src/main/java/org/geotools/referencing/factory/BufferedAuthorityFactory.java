@@ -19,15 +19,12 @@
  */
 package org.geotools.referencing.factory;
 
-import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.Set;
-import java.util.Iterator;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.WeakHashMap;
-import java.util.LinkedHashMap;
 import java.util.logging.LogRecord;
 import java.util.logging.Level;
 import javax.measure.unit.Unit;
@@ -47,6 +44,7 @@ import org.opengis.util.InternationalString;
 
 import org.geotools.factory.Hints;
 import org.geotools.factory.BufferedFactory;
+import org.geotools.util.ConcurrentObjectCache;
 import org.geotools.util.Utilities;
 import org.geotools.resources.i18n.Errors;
 import org.geotools.resources.i18n.ErrorKeys;
@@ -67,6 +65,11 @@ import org.geotools.resources.i18n.LoggingKeys;
  * one. This means that this buffered factory will continue to returns them as long as
  * they are in use somewhere else in the Java virtual machine, but will be discarted
  * (and recreated on the fly if needed) otherwise.
+ * <p>
+ * Cached objects are read without locking. When an object is not in the cache, only the
+ * threads asking for the same code wait for its creation, so it is created only once.
+ * Consequently the backing store may be invoked by many threads at the same time and must
+ * be thread safe, which is the case of the Geotools implementations.
  *
  * @since 2.1
  *
@@ -76,7 +79,7 @@ import org.geotools.resources.i18n.LoggingKeys;
  */
 public class BufferedAuthorityFactory extends AbstractAuthorityFactory implements BufferedFactory {
     /**
-     * The default value for {@link #maxStrongReferences}.
+     * The default maximum number of objects to keep by strong reference.
      */
     static final int DEFAULT_MAX = 20;
 
@@ -92,17 +95,11 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
     volatile AbstractAuthorityFactory backingStore;
 
     /**
-     * The pool of cached objects.
-     */
-    private final LinkedHashMap<Object,Object> pool =
-            new LinkedHashMap<Object,Object>(32, 0.75f, true);
-
-    /**
-     * The maximum number of objects to keep by strong reference. If a greater amount of
-     * objects are created, then the strong references for the oldest ones are replaced by
-     * weak references.
+     * The pool of cached objects. Objects are kept by strong references up to the maximum
+     * number given at construction time. If a greater amount of objects are created, then
+     * the strong references for the oldest ones are replaced by weak references.
      */
-    private final int maxStrongReferences;
+    private final ConcurrentObjectCache pool;
 
     /**
      * The pool of objects identified by {@link #find}.
@@ -144,8 +141,8 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
         while (factory instanceof BufferedAuthorityFactory) {
             factory = ((BufferedAuthorityFactory) factory).backingStore;
         }
-        this.backingStore        = factory;
-        this.maxStrongReferences = maxStrongReferences;
+        this.backingStore = factory;
+        this.pool = new ConcurrentObjectCache(maxStrongReferences, false);
         completeHints();
     }
 
@@ -163,7 +160,7 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      */
     BufferedAuthorityFactory(final int priority, final int maxStrongReferences) {
         super(priority);
-        this.maxStrongReferences = maxStrongReferences;
+        this.pool = new ConcurrentObjectCache(maxStrongReferences, false);
         // completeHints() will be invoked by DeferredAuthorityFactory.getBackingStore()
     }
 
@@ -350,19 +347,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized IdentifiedObject createObject(final String code)
+    public IdentifiedObject createObject(final String code)
             throws FactoryException
     {
-        final IdentifiedObject object;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof IdentifiedObject) {
-            object = (IdentifiedObject) cached;
-        } else {
-            object = getBackingStore().createObject(code);
-        }
-        put(key, object);
-        return object;
+        return create(trimAuthority(code), IdentifiedObject.class, new Creator<IdentifiedObject>() {
+            IdentifiedObject create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createObject(code);
+            }
+        });
     }
 
     /**
@@ -371,19 +363,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized Datum createDatum(final String code)
+    public Datum createDatum(final String code)
             throws FactoryException
     {
-        final Datum datum;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof Datum) {
-            datum = (Datum) cached;
-        } else {
-            datum = getBackingStore().createDatum(code);
-        }
-        put(key, datum);
-        return datum;
+        return create(trimAuthority(code), Datum.class, new Creator<Datum>() {
+            Datum create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createDatum(code);
+            }
+        });
     }
 
     /**
@@ -392,19 +379,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized EngineeringDatum createEngineeringDatum(final String code)
+    public EngineeringDatum createEngineeringDatum(final String code)
             throws FactoryException
     {
-        final EngineeringDatum datum;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof EngineeringDatum) {
-            datum = (EngineeringDatum) cached;
-        } else {
-            datum = getBackingStore().createEngineeringDatum(code);
-        }
-        put(key, datum);
-        return datum;
+        return create(trimAuthority(code), EngineeringDatum.class, new Creator<EngineeringDatum>() {
+            EngineeringDatum create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createEngineeringDatum(code);
+            }
+        });
     }
 
     /**
@@ -413,19 +395,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized ImageDatum createImageDatum(final String code)
+    public ImageDatum createImageDatum(final String code)
             throws FactoryException
     {
-        final ImageDatum datum;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof ImageDatum) {
-            datum = (ImageDatum) cached;
-        } else {
-            datum = getBackingStore().createImageDatum(code);
-        }
-        put(key, datum);
-        return datum;
+        return create(trimAuthority(code), ImageDatum.class, new Creator<ImageDatum>() {
+            ImageDatum create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createImageDatum(code);
+            }
+        });
     }
 
     /**
@@ -434,19 +411,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized VerticalDatum createVerticalDatum(final String code)
+    public VerticalDatum createVerticalDatum(final String code)
             throws FactoryException
     {
-        final VerticalDatum datum;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof VerticalDatum) {
-            datum = (VerticalDatum) cached;
-        } else {
-            datum = getBackingStore().createVerticalDatum(code);
-        }
-        put(key, datum);
-        return datum;
+        return create(trimAuthority(code), VerticalDatum.class, new Creator<VerticalDatum>() {
+            VerticalDatum create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createVerticalDatum(code);
+            }
+        });
     }
 
     /**
@@ -455,19 +427,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized TemporalDatum createTemporalDatum(final String code)
+    public TemporalDatum createTemporalDatum(final String code)
             throws FactoryException
     {
-        final TemporalDatum datum;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof TemporalDatum) {
-            datum = (TemporalDatum) cached;
-        } else {
-            datum = getBackingStore().createTemporalDatum(code);
-        }
-        put(key, datum);
-        return datum;
+        return create(trimAuthority(code), TemporalDatum.class, new Creator<TemporalDatum>() {
+            TemporalDatum create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createTemporalDatum(code);
+            }
+        });
     }
 
     /**
@@ -476,19 +443,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized GeodeticDatum createGeodeticDatum(final String code)
+    public GeodeticDatum createGeodeticDatum(final String code)
             throws FactoryException
     {
-        final GeodeticDatum datum;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof GeodeticDatum) {
-            datum = (GeodeticDatum) cached;
-        } else {
-            datum = getBackingStore().createGeodeticDatum(code);
-        }
-        put(key, datum);
-        return datum;
+        return create(trimAuthority(code), GeodeticDatum.class, new Creator<GeodeticDatum>() {
+            GeodeticDatum create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createGeodeticDatum(code);
+            }
+        });
     }
 
     /**
@@ -497,19 +459,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized Ellipsoid createEllipsoid(final String code)
+    public Ellipsoid createEllipsoid(final String code)
             throws FactoryException
     {
-        final Ellipsoid ellipsoid;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof Ellipsoid) {
-            ellipsoid = (Ellipsoid) cached;
-        } else {
-            ellipsoid = getBackingStore().createEllipsoid(code);
-        }
-        put(key, ellipsoid);
-        return ellipsoid;
+        return create(trimAuthority(code), Ellipsoid.class, new Creator<Ellipsoid>() {
+            Ellipsoid create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createEllipsoid(code);
+            }
+        });
     }
 
     /**
@@ -518,19 +475,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized PrimeMeridian createPrimeMeridian(final String code)
+    public PrimeMeridian createPrimeMeridian(final String code)
             throws FactoryException
     {
-        final PrimeMeridian meridian;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof PrimeMeridian) {
-            meridian = (PrimeMeridian) cached;
-        } else {
-            meridian = getBackingStore().createPrimeMeridian(code);
-        }
-        put(key, meridian);
-        return meridian;
+        return create(trimAuthority(code), PrimeMeridian.class, new Creator<PrimeMeridian>() {
+            PrimeMeridian create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createPrimeMeridian(code);
+            }
+        });
     }
 
     /**
@@ -539,19 +491,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized Extent createExtent(final String code)
+    public Extent createExtent(final String code)
             throws FactoryException
     {
-        final Extent extent;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof Extent) {
-            extent = (Extent) cached;
-        } else {
-            extent = getBackingStore().createExtent(code);
-        }
-        put(key, extent);
-        return extent;
+        return create(trimAuthority(code), Extent.class, new Creator<Extent>() {
+            Extent create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createExtent(code);
+            }
+        });
     }
 
     /**
@@ -560,19 +507,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CoordinateSystem createCoordinateSystem(final String code)
+    public CoordinateSystem createCoordinateSystem(final String code)
             throws FactoryException
     {
-        final CoordinateSystem cs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof CoordinateSystem) {
-            cs = (CoordinateSystem) cached;
-        } else {
-            cs = getBackingStore().createCoordinateSystem(code);
-        }
-        put(key, cs);
-        return cs;
+        return create(trimAuthority(code), CoordinateSystem.class, new Creator<CoordinateSystem>() {
+            CoordinateSystem create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createCoordinateSystem(code);
+            }
+        });
     }
 
     /**
@@ -581,19 +523,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CartesianCS createCartesianCS(final String code)
+    public CartesianCS createCartesianCS(final String code)
             throws FactoryException
     {
-        final CartesianCS cs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof CartesianCS) {
-            cs = (CartesianCS) cached;
-        } else {
-            cs = getBackingStore().createCartesianCS(code);
-        }
-        put(key, cs);
-        return cs;
+        return create(trimAuthority(code), CartesianCS.class, new Creator<CartesianCS>() {
+            CartesianCS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createCartesianCS(code);
+            }
+        });
     }
 
     /**
@@ -602,19 +539,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized PolarCS createPolarCS(final String code)
+    public PolarCS createPolarCS(final String code)
             throws FactoryException
     {
-        final PolarCS cs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof PolarCS) {
-            cs = (PolarCS) cached;
-        } else {
-            cs = getBackingStore().createPolarCS(code);
-        }
-        put(key, cs);
-        return cs;
+        return create(trimAuthority(code), PolarCS.class, new Creator<PolarCS>() {
+            PolarCS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createPolarCS(code);
+            }
+        });
     }
 
     /**
@@ -623,19 +555,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CylindricalCS createCylindricalCS(final String code)
+    public CylindricalCS createCylindricalCS(final String code)
             throws FactoryException
     {
-        final CylindricalCS cs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof CylindricalCS) {
-            cs = (CylindricalCS) cached;
-        } else {
-            cs = getBackingStore().createCylindricalCS(code);
-        }
-        put(key, cs);
-        return cs;
+        return create(trimAuthority(code), CylindricalCS.class, new Creator<CylindricalCS>() {
+            CylindricalCS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createCylindricalCS(code);
+            }
+        });
     }
 
     /**
@@ -644,19 +571,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized SphericalCS createSphericalCS(final String code)
+    public SphericalCS createSphericalCS(final String code)
             throws FactoryException
     {
-        final SphericalCS cs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof SphericalCS) {
-            cs = (SphericalCS) cached;
-        } else {
-            cs = getBackingStore().createSphericalCS(code);
-        }
-        put(key, cs);
-        return cs;
+        return create(trimAuthority(code), SphericalCS.class, new Creator<SphericalCS>() {
+            SphericalCS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createSphericalCS(code);
+            }
+        });
     }
 
     /**
@@ -665,19 +587,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized EllipsoidalCS createEllipsoidalCS(final String code)
+    public EllipsoidalCS createEllipsoidalCS(final String code)
             throws FactoryException
     {
-        final EllipsoidalCS cs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof EllipsoidalCS) {
-            cs = (EllipsoidalCS) cached;
-        } else {
-            cs = getBackingStore().createEllipsoidalCS(code);
-        }
-        put(key, cs);
-        return cs;
+        return create(trimAuthority(code), EllipsoidalCS.class, new Creator<EllipsoidalCS>() {
+            EllipsoidalCS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createEllipsoidalCS(code);
+            }
+        });
     }
 
     /**
@@ -686,19 +603,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized VerticalCS createVerticalCS(final String code)
+    public VerticalCS createVerticalCS(final String code)
             throws FactoryException
     {
-        final VerticalCS cs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof VerticalCS) {
-            cs = (VerticalCS) cached;
-        } else {
-            cs = getBackingStore().createVerticalCS(code);
-        }
-        put(key, cs);
-        return cs;
+        return create(trimAuthority(code), VerticalCS.class, new Creator<VerticalCS>() {
+            VerticalCS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createVerticalCS(code);
+            }
+        });
     }
 
     /**
@@ -707,19 +619,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized TimeCS createTimeCS(final String code)
+    public TimeCS createTimeCS(final String code)
             throws FactoryException
     {
-        final TimeCS cs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof TimeCS) {
-            cs = (TimeCS) cached;
-        } else {
-            cs = getBackingStore().createTimeCS(code);
-        }
-        put(key, cs);
-        return cs;
+        return create(trimAuthority(code), TimeCS.class, new Creator<TimeCS>() {
+            TimeCS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createTimeCS(code);
+            }
+        });
     }
 
     /**
@@ -728,19 +635,15 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CoordinateSystemAxis createCoordinateSystemAxis(final String code)
+    public CoordinateSystemAxis createCoordinateSystemAxis(final String code)
             throws FactoryException
     {
-        final CoordinateSystemAxis axis;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof CoordinateSystemAxis) {
-            axis = (CoordinateSystemAxis) cached;
-        } else {
-            axis = getBackingStore().createCoordinateSystemAxis(code);
-        }
-        put(key, axis);
-        return axis;
+        return create(trimAuthority(code), CoordinateSystemAxis.class,
+                new Creator<CoordinateSystemAxis>() {
+            CoordinateSystemAxis create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createCoordinateSystemAxis(code);
+            }
+        });
     }
 
     /**
@@ -749,19 +652,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized Unit<?> createUnit(final String code)
+    public Unit<?> createUnit(final String code)
             throws FactoryException
     {
-        final Unit<?> unit;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof Unit) {
-            unit = (Unit) cached;
-        } else {
-            unit = getBackingStore().createUnit(code);
-        }
-        put(key, unit);
-        return unit;
+        return create(trimAuthority(code), Unit.class, new Creator<Unit<?>>() {
+            Unit<?> create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createUnit(code);
+            }
+        });
     }
 
     /**
@@ -770,19 +668,17 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CoordinateReferenceSystem createCoordinateReferenceSystem(final String code)
+    public CoordinateReferenceSystem createCoordinateReferenceSystem(final String code)
             throws FactoryException
     {
-        final CoordinateReferenceSystem crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof CoordinateReferenceSystem) {
-            crs = (CoordinateReferenceSystem) cached;
-        } else {
-            crs = getBackingStore().createCoordinateReferenceSystem(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), CoordinateReferenceSystem.class,
+                new Creator<CoordinateReferenceSystem>() {
+            CoordinateReferenceSystem create(AbstractAuthorityFactory factory)
+                    throws FactoryException
+            {
+                return factory.createCoordinateReferenceSystem(code);
+            }
+        });
     }
 
     /**
@@ -791,19 +687,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CompoundCRS createCompoundCRS(final String code)
+    public CompoundCRS createCompoundCRS(final String code)
             throws FactoryException
     {
-        final CompoundCRS crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof CompoundCRS) {
-            crs = (CompoundCRS) cached;
-        } else {
-            crs = getBackingStore().createCompoundCRS(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), CompoundCRS.class, new Creator<CompoundCRS>() {
+            CompoundCRS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createCompoundCRS(code);
+            }
+        });
     }
 
     /**
@@ -812,19 +703,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized DerivedCRS createDerivedCRS(final String code)
+    public DerivedCRS createDerivedCRS(final String code)
             throws FactoryException
     {
-        final DerivedCRS crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof DerivedCRS) {
-            crs = (DerivedCRS) cached;
-        } else {
-            crs = getBackingStore().createDerivedCRS(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), DerivedCRS.class, new Creator<DerivedCRS>() {
+            DerivedCRS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createDerivedCRS(code);
+            }
+        });
     }
 
     /**
@@ -833,19 +719,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized EngineeringCRS createEngineeringCRS(final String code)
+    public EngineeringCRS createEngineeringCRS(final String code)
             throws FactoryException
     {
-        final EngineeringCRS crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof EngineeringCRS) {
-            crs = (EngineeringCRS) cached;
-        } else {
-            crs = getBackingStore().createEngineeringCRS(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), EngineeringCRS.class, new Creator<EngineeringCRS>() {
+            EngineeringCRS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createEngineeringCRS(code);
+            }
+        });
     }
 
     /**
@@ -854,19 +735,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized GeographicCRS createGeographicCRS(final String code)
+    public GeographicCRS createGeographicCRS(final String code)
             throws FactoryException
     {
-        final GeographicCRS crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof GeographicCRS) {
-            crs = (GeographicCRS) cached;
-        } else {
-            crs = getBackingStore().createGeographicCRS(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), GeographicCRS.class, new Creator<GeographicCRS>() {
+            GeographicCRS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createGeographicCRS(code);
+            }
+        });
     }
 
     /**
@@ -875,19 +751,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized GeocentricCRS createGeocentricCRS(final String code)
+    public GeocentricCRS createGeocentricCRS(final String code)
             throws FactoryException
     {
-        final GeocentricCRS crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof GeocentricCRS) {
-            crs = (GeocentricCRS) cached;
-        } else {
-            crs = getBackingStore().createGeocentricCRS(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), GeocentricCRS.class, new Creator<GeocentricCRS>() {
+            GeocentricCRS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createGeocentricCRS(code);
+            }
+        });
     }
 
     /**
@@ -896,19 +767,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized ImageCRS createImageCRS(final String code)
+    public ImageCRS createImageCRS(final String code)
             throws FactoryException
     {
-        final ImageCRS crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof ImageCRS) {
-            crs = (ImageCRS) cached;
-        } else {
-            crs = getBackingStore().createImageCRS(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), ImageCRS.class, new Creator<ImageCRS>() {
+            ImageCRS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createImageCRS(code);
+            }
+        });
     }
 
     /**
@@ -917,19 +783,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized ProjectedCRS createProjectedCRS(final String code)
+    public ProjectedCRS createProjectedCRS(final String code)
             throws FactoryException
     {
-        final ProjectedCRS crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof ProjectedCRS) {
-            crs = (ProjectedCRS) cached;
-        } else {
-            crs = getBackingStore().createProjectedCRS(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), ProjectedCRS.class, new Creator<ProjectedCRS>() {
+            ProjectedCRS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createProjectedCRS(code);
+            }
+        });
     }
 
     /**
@@ -938,19 +799,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized TemporalCRS createTemporalCRS(final String code)
+    public TemporalCRS createTemporalCRS(final String code)
             throws FactoryException
     {
-        final TemporalCRS crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof TemporalCRS) {
-            crs = (TemporalCRS) cached;
-        } else {
-            crs = getBackingStore().createTemporalCRS(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), TemporalCRS.class, new Creator<TemporalCRS>() {
+            TemporalCRS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createTemporalCRS(code);
+            }
+        });
     }
 
     /**
@@ -959,19 +815,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized VerticalCRS createVerticalCRS(final String code)
+    public VerticalCRS createVerticalCRS(final String code)
             throws FactoryException
     {
-        final VerticalCRS crs;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof VerticalCRS) {
-            crs = (VerticalCRS) cached;
-        } else {
-            crs = getBackingStore().createVerticalCRS(code);
-        }
-        put(key, crs);
-        return crs;
+        return create(trimAuthority(code), VerticalCRS.class, new Creator<VerticalCRS>() {
+            VerticalCRS create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createVerticalCRS(code);
+            }
+        });
     }
 
     /**
@@ -982,19 +833,15 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @since 2.2
      */
     @Override
-    public synchronized ParameterDescriptor createParameterDescriptor(final String code)
+    public ParameterDescriptor createParameterDescriptor(final String code)
             throws FactoryException
     {
-        final ParameterDescriptor parameter;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof ParameterDescriptor) {
-            parameter = (ParameterDescriptor) cached;
-        } else {
-            parameter = getBackingStore().createParameterDescriptor(code);
-        }
-        put(key, parameter);
-        return parameter;
+        return create(trimAuthority(code), ParameterDescriptor.class,
+                new Creator<ParameterDescriptor>() {
+            ParameterDescriptor create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createParameterDescriptor(code);
+            }
+        });
     }
 
     /**
@@ -1005,19 +852,14 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @since 2.2
      */
     @Override
-    public synchronized OperationMethod createOperationMethod(final String code)
+    public OperationMethod createOperationMethod(final String code)
             throws FactoryException
     {
-        final OperationMethod method;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof OperationMethod) {
-            method = (OperationMethod) cached;
-        } else {
-            method = getBackingStore().createOperationMethod(code);
-        }
-        put(key, method);
-        return method;
+        return create(trimAuthority(code), OperationMethod.class, new Creator<OperationMethod>() {
+            OperationMethod create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createOperationMethod(code);
+            }
+        });
     }
 
     /**
@@ -1028,19 +870,15 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @since 2.2
      */
     @Override
-    public synchronized CoordinateOperation createCoordinateOperation(final String code)
+    public CoordinateOperation createCoordinateOperation(final String code)
             throws FactoryException
     {
-        final CoordinateOperation operation;
-        final String key = trimAuthority(code);
-        final Object cached = get(key);
-        if (cached instanceof CoordinateOperation) {
-            operation = (CoordinateOperation) cached;
-        } else {
-            operation = getBackingStore().createCoordinateOperation(code);
-        }
-        put(key, operation);
-        return operation;
+        return create(trimAuthority(code), CoordinateOperation.class,
+                new Creator<CoordinateOperation>() {
+            CoordinateOperation create(AbstractAuthorityFactory factory) throws FactoryException {
+                return factory.createCoordinateOperation(code);
+            }
+        });
     }
 
     /**
@@ -1051,21 +889,19 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @since 2.2
      */
     @Override
-    public synchronized Set<CoordinateOperation> createFromCoordinateReferenceSystemCodes(
+    public Set<CoordinateOperation> createFromCoordinateReferenceSystemCodes(
                         final String sourceCRS, final String targetCRS)
             throws FactoryException
     {
-        final Set<CoordinateOperation> operations;
         final CodePair key = new CodePair(trimAuthority(sourceCRS), trimAuthority(targetCRS));
-        final Object cached = get(key);
-        if (cached instanceof Set) {
-            operations = (Set<CoordinateOperation>) cached;
-        } else {
-            operations = Collections.unmodifiableSet(getBackingStore()
-                         .createFromCoordinateReferenceSystemCodes(sourceCRS, targetCRS));
-        }
-        put(key, operations);
-        return operations;
+        return create(key, Set.class, new Creator<Set<CoordinateOperation>>() {
+            Set<CoordinateOperation> create(AbstractAuthorityFactory factory)
+                    throws FactoryException
+            {
+                return Collections.unmodifiableSet(
+                        factory.createFromCoordinateReferenceSystemCodes(sourceCRS, targetCRS));
+            }
+        });
     }
 
     /**
@@ -1146,7 +982,7 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
         public IdentifiedObject find(final IdentifiedObject object) throws FactoryException {
             /*
              * Do not synchronize on 'BufferedAuthorityFactory.this'. This method may take a
-             * while to execute and we don't want to block other threads. The synchronizations
+             * while to execute and we don't want to block other threads. The locks
              * in the 'create' methods and in the 'findPool' map should be suffisient.
              *
              * TODO: avoid to search for the same object twice. For now we consider that this
@@ -1205,46 +1041,71 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
     }
 
     /**
-     * Returns an object from the pool for the specified code. If the object was retained as a
-     * {@linkplain Reference weak reference}, the {@link Reference#get referent} is returned.
+     * Returns the hit, miss and contention counts of the cache of objects created by this
+     * factory.
      *
-     * @todo Consider logging a message here to the finer or finest level.
+     * @since 8.0
      */
-    private Object get(final Object key) {
-        assert Thread.holdsLock(this);
-        Object object = pool.get(key);
-        if (object instanceof Reference) {
-            object = ((Reference<?>) object).get();
-        }
-        return object;
+    public ConcurrentObjectCache.Statistics getCacheStatistics() {
+        return pool.getStatistics();
     }
 
     /**
-     * Put an element in the pool. This method is invoked everytime a {@code createFoo(...)}
-     * method is invoked, even if an object was already in the pool for the given code, for
-     * the following reasons: 1) Replaces weak reference by strong reference (if applicable)
-     * and 2) Alters the linked hash set order, so that this object is declared as the last
-     * one used.
+     * The creation of an object by the backing store, invoked by {@link #create create}
+     * when the object is not in the cache.
      */
-    private void put(final Object key, final Object object) {
-        assert Thread.holdsLock(this);
-        pool.put(key, object);
-        int toReplace = pool.size() - maxStrongReferences;
-        if (toReplace > 0) {
-            for (final Iterator<Map.Entry<Object,Object>> it=pool.entrySet().iterator(); it.hasNext();) {
-                final Map.Entry<Object,Object> entry = it.next();
-                final Object value = entry.getValue();
-                if (value instanceof Reference) {
-                    if (((Reference) value).get() == null) {
-                        it.remove();
-                    }
-                    continue;
+    private static abstract class Creator<T> {
+        abstract T create(AbstractAuthorityFactory factory) throws FactoryException;
+    }
+
+    /**
+     * Returns the cached object for the given key if it is an instance of the given type,
+     * or creates it with the backing store and caches it otherwise. Other threads asking
+     * for the same key meanwhile wait for the object instead of creating it again.
+     *
+     * @param  key     The key of the object in the cache.
+     * @param  type    The expected type of the object.
+     * @param  creator Creates the object from the backing store.
+     * @return The cached or created object.
+     * @throws FactoryException if the object creation failed.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T create(final Object key, final Class<?> type, final Creator<T> creator)
+            throws FactoryException
+    {
+        Object cached = pool.get(key);
+        if (!type.isInstance(cached)) {
+            final ConcurrentObjectCache.KeyLock lock = writeLock(key);
+            try {
+                cached = pool.peek(key);
+                if (!type.isInstance(cached)) {
+                    cached = creator.create(getBackingStore());
+                    pool.put(key, cached);
                 }
-                entry.setValue(new WeakReference<Object>(value));
-                if (--toReplace == 0) {
-                    break;
+            } finally {
+                if (lock != null) {
+                    pool.unlock(lock);
                 }
             }
         }
+        return (T) cached;
+    }
+
+    /**
+     * Acquires the lock for creating the object for the specified key, so other threads
+     * asking for the same object wait for it instead of creating it again. No lock is
+     * acquired if the current thread holds the backing store monitor, which happens when
+     * a synchronized backing store (like the EPSG one) invokes this factory back for the
+     * dependencies of the object it is creating. Waiting in this case could dead lock with
+     * a thread holding the key lock and waiting for the backing store.
+     *
+     * @return The lock acquired, or {@code null} if none.
+     */
+    private ConcurrentObjectCache.KeyLock writeLock(final Object key) {
+        final AbstractAuthorityFactory backingStore = this.backingStore; // Protect from changes.
+        if (backingStore != null && Thread.holdsLock(backingStore)) {
+            return null;
+        }
+        return pool.lock(key);
     }
 }
@@ -0,0 +1,638 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.epsg;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+
+import org.opengis.metadata.citation.Citation;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.IdentifiedObject;
+import org.opengis.referencing.NoSuchAuthorityCodeException;
+import org.opengis.referencing.crs.CRSAuthorityFactory;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.util.InternationalString;
+
+import org.geotools.factory.GeoTools;
+import org.geotools.factory.Hints;
+import org.geotools.factory.OptionalFactory;
+import org.geotools.metadata.iso.citation.Citations;
+import org.geotools.referencing.NamedIdentifier;
+import org.geotools.referencing.ReferencingFactoryFinder;
+import org.geotools.referencing.factory.DirectAuthorityFactory;
+import org.geotools.referencing.wkt.Symbols;
+import org.geotools.resources.Arguments;
+import org.geotools.util.SimpleInternationalString;
+import org.geotools.util.logging.Logging;
+
+
+/**
+ * Authority factory for {@linkplain CoordinateReferenceSystem Coordinate Reference Systems}
+ * backed by a pre-built binary snapshot of the EPSG database. The snapshot is a single file
+ * named {@value #FILENAME} holding the <cite>Well Known Text</cite> of every EPSG coordinate
+ * reference system, indexed by numeric code. It is searched in the directory given by the
+ * {@link Hints#CRS_AUTHORITY_EXTRA_DIRECTORY} hint first, then in the
+ * {@code org/geotools/referencing/factory/epsg} directory on the classpath. If no snapshot
+ * is found, this factory is not {@linkplain #isAvailable available} and the usual EPSG
+ * database factories are used instead.
+ * <p>
+ * When the snapshot is a plain file it is memory mapped, so opening it costs no more than
+ * reading its header. Lookups are binary searches on the immutable mapped buffer and don't
+ * need any lock; the WKT is parsed only when a code is first requested and the resulting
+ * object is cached afterwards. There is no embedded database to start and nothing is
+ * written to the temporary directory.
+ * <p>
+ * No snapshot is shipped with GeoTools, since it would hide the complete definitions of the
+ * EPSG database (the snapshot only contains what the WKT can express; for example the domain
+ * of validity of the CRS is lost). Applications wanting the faster startup produce their own
+ * from an existing EPSG factory, using the {@link #write write} method or the {@link #main main}
+ * one with the EPSG database plugin (for example {@code gt-epsg-hsql}) on the classpath:
+ *
+ * <blockquote><pre>
+ * java org.geotools.referencing.factory.epsg.FactoryUsingSnapshot /path/to/crs/epsg.snapshot
+ * </pre></blockquote>
+ *
+ * then either start the application with
+ * {@code -Dorg.geotools.referencing.crs-directory=/path/to/crs} (or set the
+ * {@link Hints#CRS_AUTHORITY_EXTRA_DIRECTORY} hint as a system default before the first use of
+ * the referencing factories), or package the file as
+ * {@code org/geotools/referencing/factory/epsg/epsg.snapshot} in a jar of their own.
+ * The snapshot has to be generated again whenever the EPSG database is upgraded.
+ *
+ * @since 8.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public class FactoryUsingSnapshot extends DirectAuthorityFactory
+        implements CRSAuthorityFactory, OptionalFactory
+{
+    /**
+     * The default filename to read.
+     */
+    public static final String FILENAME = "epsg.snapshot";
+
+    /**
+     * The magic number at the beginning of every snapshot file.
+     */
+    static final int MAGIC = 0x47544550; // "GTEP"
+
+    /**
+     * The version of the snapshot format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size of the header, in bytes: magic number, version and number of codes.
+     */
+    private static final int HEADER = 12;
+
+    /**
+     * Default priority for this factory. Slightly higher than the EPSG database
+     * factories, so the snapshot is used whenever it is available.
+     */
+    protected static final int DEFAULT_PRIORITY = ThreadedEpsgFactory.PRIORITY + 5;
+
+    /**
+     * Directory scanned for the snapshot, or {@code null} if none.
+     */
+    private final File directory;
+
+    /**
+     * The snapshot content, or {@code null} if not yet loaded.
+     */
+    private volatile ByteBuffer buffer;
+
+    /**
+     * {@code true} if an attempt to load the snapshot has already been done.
+     */
+    private boolean loaded;
+
+    /**
+     * Number of codes in the snapshot.
+     */
+    private int count;
+
+    /**
+     * The objects created so far, by numeric code.
+     */
+    private final ConcurrentMap<Integer,IdentifiedObject> objects =
+            new ConcurrentHashMap<Integer,IdentifiedObject>();
+
+    /**
+     * The authority codes, filtered by type.
+     */
+    private final ConcurrentMap<Class<?>,Set<String>> codes =
+            new ConcurrentHashMap<Class<?>,Set<String>>();
+
+    /**
+     * Constructs an authority factory using the default set of factories.
+     */
+    public FactoryUsingSnapshot() {
+        this(null);
+    }
+
+    /**
+     * Constructs an authority factory using a set of factories created from the specified hints.
+     * This constructor recognizes the {@link Hints#CRS_FACTORY CRS}, {@link Hints#CS_FACTORY CS},
+     * {@link Hints#DATUM_FACTORY DATUM} and {@link Hints#MATH_TRANSFORM_FACTORY MATH_TRANSFORM}
+     * {@code FACTORY} hints, and the {@link Hints#CRS_AUTHORITY_EXTRA_DIRECTORY} one.
+     */
+    public FactoryUsingSnapshot(final Hints userHints) {
+        this(userHints, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Constructs an authority factory using the specified hints and priority.
+     */
+    protected FactoryUsingSnapshot(final Hints userHints, final int priority) {
+        super(userHints, priority);
+        Object hint = null;
+        if (userHints != null) {
+            hint = userHints.get(Hints.CRS_AUTHORITY_EXTRA_DIRECTORY);
+        }
+        if (hint == null) {
+            // The instance registered as a service is created without hints,
+            // make it honor the "org.geotools.referencing.crs-directory" property.
+            hint = GeoTools.getDefaultHints().get(Hints.CRS_AUTHORITY_EXTRA_DIRECTORY);
+        }
+        if (hint instanceof File) {
+            directory = (File) hint;
+        } else if (hint instanceof String) {
+            directory = new File((String) hint);
+        } else {
+            directory = null;
+        }
+        // Keeps the hint as given, so that it compares equal to the default one.
+        hints.put(Hints.CRS_AUTHORITY_EXTRA_DIRECTORY, (directory != null) ? hint : null);
+        hints.put(Hints.FORCE_LONGITUDE_FIRST_AXIS_ORDER, Boolean.FALSE);
+    }
+
+    /**
+     * Returns the EPSG authority.
+     */
+    public Citation getAuthority() {
+        return Citations.EPSG;
+    }
+
+    /**
+     * Returns {@code true} if a snapshot has been found and successfully opened.
+     */
+    public boolean isAvailable() {
+        return getBuffer() != null;
+    }
+
+    /**
+     * Returns the URL to the snapshot file, or {@code null} if none. The default implementation
+     * looks in the {@link Hints#CRS_AUTHORITY_EXTRA_DIRECTORY} directory, then on the classpath.
+     */
+    protected URL getSnapshotURL() {
+        try {
+            if (directory != null) {
+                final File file = new File(directory, FILENAME);
+                if (file.isFile()) {
+                    return file.toURI().toURL();
+                }
+            }
+        } catch (SecurityException exception) {
+            Logging.unexpectedException(LOGGER, exception);
+        } catch (IOException exception) {
+            Logging.unexpectedException(LOGGER, exception);
+        }
+        return FactoryUsingSnapshot.class.getResource(FILENAME);
+    }
+
+    /**
+     * Returns the snapshot content, loading it on the first invocation.
+     * Returns {@code null} if there is no valid snapshot.
+     */
+    private ByteBuffer getBuffer() {
+        ByteBuffer b = buffer;
+        if (b == null) {
+            synchronized (this) {
+                if (!loaded) {
+                    loaded = true;
+                    final URL url = getSnapshotURL();
+                    if (url != null) try {
+                        b = open(url);
+                        if (b.getInt(0) != MAGIC || b.getInt(4) != VERSION) {
+                            LOGGER.warning("Not a valid EPSG snapshot: " + url);
+                        } else {
+                            count = b.getInt(8);
+                            buffer = b;
+                            LOGGER.fine("Using EPSG snapshot " + url + " with " + count + " codes");
+                        }
+                    } catch (IOException exception) {
+                        LOGGER.log(Level.WARNING, "Could not read the EPSG snapshot " + url, exception);
+                    }
+                }
+                b = buffer;
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Maps the given file in memory if possible, or read it fully otherwise.
+     */
+    private static ByteBuffer open(final URL url) throws IOException {
+        if ("file".equalsIgnoreCase(url.getProtocol())) {
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException e) {
+                file = new File(url.getPath());
+            }
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                // The mapping stays valid after the channel is closed.
+                final FileChannel channel = raf.getChannel();
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                raf.close();
+            }
+        }
+        final InputStream in = url.openStream();
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) >= 0) {
+                out.write(chunk, 0, n);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the snapshot content, or throws an exception if there is none.
+     */
+    private ByteBuffer ensureBuffer() throws FactoryException {
+        final ByteBuffer b = getBuffer();
+        if (b == null) {
+            throw new FactoryException("No EPSG snapshot available");
+        }
+        return b;
+    }
+
+    /**
+     * Returns the index of the given code in the snapshot, or a negative value if not found.
+     */
+    private int indexOf(final ByteBuffer b, final int code) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int value = b.getInt(HEADER + 4 * mid);
+            if (value < code) {
+                low = mid + 1;
+            } else if (value > code) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the WKT at the given index in the snapshot.
+     */
+    private String getWKT(final ByteBuffer b, final int index) {
+        final int offsets = HEADER + 4 * count;
+        final int data = offsets + 4 * (count + 1);
+        final int start = b.getInt(offsets + 4 * index);
+        final int end = b.getInt(offsets + 4 * (index + 1));
+        final byte[] bytes = new byte[end - start];
+        final ByteBuffer view = b.duplicate();
+        view.position(data + start);
+        view.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (IOException e) {
+            // Should not happen, UTF-8 is always supported.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the numeric value of the given code, or throws an exception if it can't be parsed.
+     */
+    private int parseCode(final String code) throws NoSuchAuthorityCodeException {
+        ensureNonNull("code", code);
+        try {
+            return Integer.parseInt(trimAuthority(code));
+        } catch (NumberFormatException e) {
+            throw noSuchAuthorityCode(IdentifiedObject.class, code);
+        }
+    }
+
+    /**
+     * Returns the Well Know Text from a code.
+     *
+     * @param  code Value allocated by authority.
+     * @return The Well Know Text (WKT) for the specified code.
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     * @throws FactoryException if the snapshot is not available.
+     */
+    public String getWKT(final String code) throws FactoryException {
+        final int numeric = parseCode(code);
+        final ByteBuffer b = ensureBuffer();
+        final int index = indexOf(b, numeric);
+        if (index < 0) {
+            throw noSuchAuthorityCode(IdentifiedObject.class, code);
+        }
+        return getWKT(b, index);
+    }
+
+    /**
+     * Returns the set of authority codes of the given type. The set is computed from the
+     * keyword at the start of each WKT the first time a given type is requested.
+     *
+     * @param  type The spatial reference objects type (may be {@code Object.class}).
+     * @return The set of authority codes for spatial reference objects of the given type.
+     * @throws FactoryException if the snapshot is not available.
+     */
+    public Set<String> getAuthorityCodes(Class<? extends IdentifiedObject> type)
+            throws FactoryException
+    {
+        if (type == null) {
+            type = IdentifiedObject.class;
+        }
+        Set<String> result = codes.get(type);
+        if (result == null) {
+            final ByteBuffer b = ensureBuffer();
+            final boolean all = type.isAssignableFrom(IdentifiedObject.class);
+            final Set<String> filtered = new LinkedHashSet<String>();
+            final Map<String,Class<?>> keywords = new HashMap<String,Class<?>>();
+            for (int i=0; i<count; i++) {
+                if (!all) {
+                    final String keyword = getKeyword(b, i);
+                    Class<?> candidate = keywords.get(keyword);
+                    if (candidate == null) {
+                        candidate = org.geotools.referencing.wkt.Parser.getClassOf(keyword);
+                        if (candidate == null) {
+                            candidate = IdentifiedObject.class;
+                        }
+                        keywords.put(keyword, candidate);
+                    }
+                    if (!type.isAssignableFrom(candidate)) {
+                        continue;
+                    }
+                }
+                filtered.add(String.valueOf(b.getInt(HEADER + 4 * i)));
+            }
+            result = Collections.unmodifiableSet(filtered);
+            final Set<String> previous = codes.putIfAbsent(type, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the WKT keyword (e.g. {@code "PROJCS"}) of the entry at the given index.
+     */
+    private String getKeyword(final ByteBuffer b, final int index) {
+        final int offsets = HEADER + 4 * count;
+        final int data = offsets + 4 * (count + 1);
+        final int start = data + b.getInt(offsets + 4 * index);
+        final int end = data + b.getInt(offsets + 4 * (index + 1));
+        final StringBuilder keyword = new StringBuilder(8);
+        for (int i=start; i<end; i++) {
+            final char c = (char) b.get(i);
+            if (!Character.isJavaIdentifierPart(c)) {
+                break;
+            }
+            keyword.append(c);
+        }
+        return keyword.toString();
+    }
+
+    /**
+     * Gets a description of the object corresponding to a code.
+     *
+     * @param  code Value allocated by authority.
+     * @return A description of the object, or {@code null} if the object
+     *         corresponding to the specified {@code code} has no description.
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     * @throws FactoryException if the query failed for some other reason.
+     */
+    public InternationalString getDescriptionText(final String code) throws FactoryException {
+        final String wkt = getWKT(code);
+        int start = wkt.indexOf('"');
+        if (start >= 0) {
+            final int end = wkt.indexOf('"', ++start);
+            if (end >= 0) {
+                return new SimpleInternationalString(wkt.substring(start, end).trim());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an arbitrary object from a code. The WKT is parsed on the first request
+     * for a given code only.
+     *
+     * @param  code Value allocated by authority.
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     * @throws FactoryException if the object creation failed for some other reason.
+     */
+    @Override
+    public IdentifiedObject createObject(final String code) throws FactoryException {
+        final int numeric = parseCode(code);
+        final Integer key = Integer.valueOf(numeric);
+        IdentifiedObject object = objects.get(key);
+        if (object == null) {
+            final ByteBuffer b = ensureBuffer();
+            final int index = indexOf(b, numeric);
+            if (index < 0) {
+                throw noSuchAuthorityCode(IdentifiedObject.class, code);
+            }
+            final Parser parser = new Parser(String.valueOf(numeric));
+            try {
+                object = (IdentifiedObject) parser.parseObject(getWKT(b, index));
+            } catch (ParseException exception) {
+                throw new FactoryException(exception);
+            }
+            final IdentifiedObject previous = objects.putIfAbsent(key, object);
+            if (previous != null) {
+                object = previous;
+            }
+        }
+        return object;
+    }
+
+    /**
+     * Releases the snapshot and the cached objects.
+     */
+    @Override
+    public synchronized void dispose() throws FactoryException {
+        buffer = null;
+        loaded = false;
+        objects.clear();
+        codes.clear();
+        super.dispose();
+    }
+
+    /**
+     * The WKT parser for this authority factory. This parser add automatically the authority
+     * code if it was not explicitly specified in the WKT.
+     */
+    private final class Parser extends org.geotools.referencing.wkt.Parser {
+        /**
+         * For cross-version compatibility.
+         */
+        private static final long serialVersionUID = 3017232358290468396L;
+
+        /**
+         * The authority code for the WKT to be parsed.
+         */
+        private final String code;
+
+        /**
+         * Creates the parser.
+         */
+        Parser(final String code) {
+            super(Symbols.DEFAULT, factories);
+            this.code = code;
+        }
+
+        /**
+         * Add the authority code to the specified properties, if not already present.
+         */
+        @Override
+        protected Map<String,Object> alterProperties(Map<String,Object> properties) {
+            if (properties.get(IdentifiedObject.IDENTIFIERS_KEY) == null) {
+                properties = new HashMap<String,Object>(properties);
+                properties.put(IdentifiedObject.IDENTIFIERS_KEY,
+                        new NamedIdentifier(Citations.EPSG, code));
+            }
+            return super.alterProperties(properties);
+        }
+    }
+
+    /**
+     * Writes a snapshot of all the numeric EPSG coordinate reference systems provided by
+     * the given factory. Codes that can't be created or formatted as WKT are logged and
+     * skipped.
+     *
+     * @param  source The factory to take the definitions from, usually the EPSG database one.
+     * @param  file   The snapshot file to write.
+     * @return The number of coordinate reference systems written.
+     * @throws FactoryException if the codes can't be obtained from the source factory.
+     * @throws IOException if the file can't be written.
+     */
+    public static int write(final CRSAuthorityFactory source, final File file)
+            throws FactoryException, IOException
+    {
+        final SortedMap<Integer,byte[]> definitions = new TreeMap<Integer,byte[]>();
+        for (final String code : source.getAuthorityCodes(CoordinateReferenceSystem.class)) {
+            final String tip = code.substring(code.lastIndexOf(':') + 1).trim();
+            final int numeric;
+            try {
+                numeric = Integer.parseInt(tip);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            try {
+                final CoordinateReferenceSystem crs = source.createCoordinateReferenceSystem(code);
+                definitions.put(numeric, crs.toWKT().getBytes("UTF-8"));
+            } catch (FactoryException exception) {
+                LOGGER.log(Level.WARNING, "Skipping EPSG:" + numeric, exception);
+            } catch (UnsupportedOperationException exception) {
+                LOGGER.log(Level.WARNING, "Skipping EPSG:" + numeric, exception);
+            }
+        }
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(definitions.size());
+            for (final Integer code : definitions.keySet()) {
+                out.writeInt(code);
+            }
+            int offset = 0;
+            out.writeInt(offset);
+            for (final byte[] wkt : definitions.values()) {
+                offset += wkt.length;
+                out.writeInt(offset);
+            }
+            for (final byte[] wkt : definitions.values()) {
+                out.write(wkt);
+            }
+        } finally {
+            out.close();
+        }
+        return definitions.size();
+    }
+
+    /**
+     * Generates a snapshot from the EPSG database factory. This is meant to be invoked at build
+     * time, with the file to create as the last argument:
+     *
+     * <blockquote><pre>
+     * java org.geotools.referencing.factory.epsg.FactoryUsingSnapshot \
+     *     [-source <var>class</var>] <var>file</var>
+     * </pre></blockquote>
+     *
+     * The optional {@code -source} argument is the class name of the EPSG factory to take the
+     * definitions from, {@link ThreadedEpsgFactory} by default.
+     *
+     * @param args The file to write.
+     */
+    public static void main(String[] args)
+            throws FactoryException, IOException, ClassNotFoundException
+    {
+        final Arguments arguments = new Arguments(args);
+        final String sourceClass = arguments.getOptionalString("-source");
+        args = arguments.getRemainingArguments(1);
+        final File file = new File(args.length != 0 ? args[0] : FILENAME);
+        final Class<?> type = (sourceClass != null) ? Class.forName(sourceClass)
+                                                    : ThreadedEpsgFactory.class;
+        final CRSAuthorityFactory source = ReferencingFactoryFinder.getCRSAuthorityFactory("EPSG",
+                new Hints(Hints.CRS_AUTHORITY_FACTORY, type));
+        final int n = write(source, file);
+        arguments.out.println("Wrote " + n + " coordinate reference systems to " + file);
+        arguments.out.flush();
+    }
+}
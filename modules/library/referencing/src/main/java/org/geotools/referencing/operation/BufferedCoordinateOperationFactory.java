@@ -16,8 +16,6 @@
  */
 package org.geotools.referencing.operation;
 
-import java.util.Map;
-
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.CoordinateOperation;
@@ -28,7 +26,7 @@ import org.opengis.referencing.operation.OperationNotFoundException;
 import org.geotools.factory.Hints;
 import org.geotools.factory.BufferedFactory;
 import org.geotools.util.Utilities;
-import org.geotools.util.SoftValueHashMap;
+import org.geotools.util.ConcurrentObjectCache;
 import org.geotools.referencing.ReferencingFactoryFinder;
 
 
@@ -119,15 +117,15 @@ public class BufferedCoordinateOperationFactory extends AbstractCoordinateOperat
      * no-argument constructor, since this constructor is typically invoked while
      * {@link ReferencingFactoryFinder} is still iterating over the registered implementations.
      */
-    private CoordinateOperationFactory factory;
+    private volatile CoordinateOperationFactory factory;
 
     /**
      * The pool of cached transformations. This map can not be static, because the values may
      * be different for the same ({@code sourceCRS}, {@code targetCRS}) pair dependending of
-     * hint values like {@link Hints#LENIENT_DATUM_SHIFT}.
+     * hint values like {@link Hints#LENIENT_DATUM_SHIFT}. The most recently created ones are
+     * kept by strong references, the other ones by soft references.
      */
-    private final Map<CRSPair, CoordinateOperation> pool =
-            new SoftValueHashMap<CRSPair, CoordinateOperation>();
+    private final ConcurrentObjectCache pool = new ConcurrentObjectCache(20);
 
     /**
      * Creates a buffered factory wrapping the {@linkplain AuthorityBackedFactory default one}.
@@ -209,9 +207,14 @@ public class BufferedCoordinateOperationFactory extends AbstractCoordinateOperat
      * factory when not available in the cache.
      */
     private final CoordinateOperationFactory getBackingFactory() {
-        assert Thread.holdsLock(hints); // Same lock than the one used by getImplementationHints().
+        CoordinateOperationFactory factory = this.factory;
         if (factory == null) {
-            factory = getBackingFactory(null);
+            synchronized (hints) { // Same lock than the one used by getImplementationHints().
+                factory = this.factory;
+                if (factory == null) {
+                    this.factory = factory = getBackingFactory(null);
+                }
+            }
         }
         return factory;
     }
@@ -233,6 +236,9 @@ public class BufferedCoordinateOperationFactory extends AbstractCoordinateOperat
      * is returned. Otherwise the operation creation is delegated to the
      * {@linkplain CoordinateOperationFactory coordinate operation factory} specified at
      * construction time and the result is cached.
+     * <p>
+     * Cached operations are returned without locking. When an operation is not in the cache,
+     * only the threads asking for the same pair of CRS wait for its creation.
      *
      * @param  sourceCRS Input coordinate reference system.
      * @param  targetCRS Output coordinate reference system.
@@ -248,17 +254,31 @@ public class BufferedCoordinateOperationFactory extends AbstractCoordinateOperat
         ensureNonNull("sourceCRS", sourceCRS);
         ensureNonNull("targetCRS", targetCRS);
         final CRSPair key = new CRSPair(sourceCRS, targetCRS);
-        CoordinateOperation op;
-        synchronized (hints) { // This lock is indirectly required by getBackingFactory().
-            op = pool.get(key);
-            if (op == null) {
-                op = getBackingFactory().createOperation(sourceCRS, targetCRS);
-                pool.put(key, op);
+        CoordinateOperation op = (CoordinateOperation) pool.get(key);
+        if (op == null) {
+            try {
+                pool.writeLock(key);
+                op = (CoordinateOperation) pool.peek(key);
+                if (op == null) {
+                    op = getBackingFactory().createOperation(sourceCRS, targetCRS);
+                    pool.put(key, op);
+                }
+            } finally {
+                pool.writeUnLock(key);
             }
         }
         return op;
     }
 
+    /**
+     * Returns the hit, miss and contention counts of the cache of coordinate operations.
+     *
+     * @since 8.0
+     */
+    public ConcurrentObjectCache.Statistics getCacheStatistics() {
+        return pool.getStatistics();
+    }
+
     /**
      * Returns an operation for conversion or transformation between two coordinate reference
      * systems using the specified method. The current implementation delegates to the
@@ -272,8 +292,6 @@ public class BufferedCoordinateOperationFactory extends AbstractCoordinateOperat
                                                final OperationMethod method)
             throws OperationNotFoundException, FactoryException
     {
-        synchronized (hints) { // This lock is indirectly required by getBackingFactory().
-            return getBackingFactory().createOperation(sourceCRS, targetCRS, method);
-        }
+        return getBackingFactory().createOperation(sourceCRS, targetCRS, method);
     }
 }
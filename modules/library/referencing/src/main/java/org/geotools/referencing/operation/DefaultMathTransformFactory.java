@@ -65,6 +65,7 @@ import org.geotools.resources.CRSUtilities;
 import org.geotools.resources.i18n.Errors;
 import org.geotools.resources.i18n.ErrorKeys;
 import org.geotools.util.CanonicalSet;
+import org.geotools.util.ConcurrentObjectCache;
 
 
 /**
@@ -117,10 +118,11 @@ public class DefaultMathTransformFactory extends ReferencingFactory implements M
     private static final Hints HINTS = null;
 
     /**
-     * The object to use for parsing <cite>Well-Known Text</cite> (WKT) strings.
-     * Will be created only when first needed.
+     * The math transforms created from <cite>Well-Known Text</cite> (WKT) strings,
+     * by WKT. The most recently created ones are kept by strong references, the
+     * other ones by soft references.
      */
-    private transient MathTransformParser parser;
+    private final ConcurrentObjectCache wktPool = new ConcurrentObjectCache(20);
 
     /**
      * The last value returned by {@link #getProvider}. Stored as an
@@ -581,27 +583,49 @@ public class DefaultMathTransformFactory extends ReferencingFactory implements M
      * <A HREF="http://geoapi.sourceforge.net/snapshot/javadoc/org/opengis/referencing/doc-files/WKT.html"><cite>Well
      * Known Text</cite> (WKT)</A>.
      *
+     * Transforms are cached by WKT. Cached transforms are returned without locking; when a
+     * transform is not in the cache, only the threads asking for the same WKT wait for it.
+     *
      * @param  text Math transform encoded in Well-Known Text format.
      * @return The math transform (never {@code null}).
      * @throws FactoryException if the Well-Known Text can't be parsed,
      *         or if the math transform creation failed from some other reason.
      */
-    public synchronized MathTransform createFromWKT(final String text) throws FactoryException {
-        // Note: while this factory is thread safe, the WKT parser is not.
-        //       Since we share a single instance of this parser, we must
-        //       synchronize.
-        if (parser == null) {
-            parser = new MathTransformParser(Symbols.DEFAULT, this);
-        }
-        try {
-            return parser.parseMathTransform(text);
-        } catch (ParseException exception) {
-            final Throwable cause = exception.getCause();
-            if (cause instanceof FactoryException) {
-                throw (FactoryException) cause;
+    public MathTransform createFromWKT(final String text) throws FactoryException {
+        MathTransform transform = (MathTransform) wktPool.get(text);
+        if (transform == null) {
+            try {
+                wktPool.writeLock(text);
+                transform = (MathTransform) wktPool.peek(text);
+                if (transform == null) {
+                    // The WKT parser is not thread safe, so use a new one for each miss.
+                    final MathTransformParser parser = new MathTransformParser(Symbols.DEFAULT, this);
+                    try {
+                        transform = parser.parseMathTransform(text);
+                    } catch (ParseException exception) {
+                        final Throwable cause = exception.getCause();
+                        if (cause instanceof FactoryException) {
+                            throw (FactoryException) cause;
+                        }
+                        throw new FactoryException(exception);
+                    }
+                    wktPool.put(text, transform);
+                }
+            } finally {
+                wktPool.writeUnLock(text);
             }
-            throw new FactoryException(exception);
         }
+        return transform;
+    }
+
+    /**
+     * Returns the hit, miss and contention counts of the cache of math transforms
+     * created from <cite>Well-Known Text</cite>.
+     *
+     * @since 8.0
+     */
+    public ConcurrentObjectCache.Statistics getCacheStatistics() {
+        return wktPool.getStatistics();
     }
 
     /**
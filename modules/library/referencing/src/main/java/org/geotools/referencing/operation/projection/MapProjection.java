@@ -826,6 +826,89 @@ public abstract class MapProjection extends AbstractMathTransform
     protected abstract Point2D transformNormalized(double lambda, double phi, final Point2D ptDst)
             throws ProjectionException;
 
+    /**
+     * Transforms in place an array of (<var>&lambda;</var>,<var>&phi;</var>) coordinates,
+     * in <strong>radians</strong> and with the {@link #centralMeridian} already removed, into
+     * linear distances on a unit sphere or ellipse. This is the bulk counterpart of
+     * {@link #transformNormalized(double, double, Point2D)}, invoked by
+     * {@link #transform(double[], int, double[], int, int)} for the whole array at once.
+     * <p>
+     * The default implementation invokes {@link #transformNormalized(double, double, Point2D)}
+     * for each point. Subclasses can override this method with a loop computing the projection
+     * equations directly on the array, in which case every subclass overriding the single point
+     * method must override this one as well.
+     *
+     * @param ordinates The (<var>&lambda;</var>,<var>&phi;</var>) pairs to transform in place.
+     * @param offset    The offset of the first ordinate in the array.
+     * @param numPts    The number of points to transform.
+     * @throws ProjectionException if a point can't be transformed. All the points are processed
+     *         anyway, the ones that can't be transformed are set to {@link Double#NaN}.
+     *
+     * @since 8.0
+     */
+    protected void transformNormalized(final double[] ordinates, final int offset, final int numPts)
+            throws ProjectionException
+    {
+        normalizedLoop(ordinates, offset, numPts, false);
+    }
+
+    /**
+     * Inverse transforms in place an array of (<var>x</var>,<var>y</var>) coordinates given as
+     * linear distances on a unit sphere or ellipse into (<var>&lambda;</var>,<var>&phi;</var>)
+     * coordinates in <strong>radians</strong>, without the {@link #centralMeridian}. This is the
+     * bulk counterpart of {@link #inverseTransformNormalized(double, double, Point2D)}.
+     * <p>
+     * The default implementation invokes {@link #inverseTransformNormalized(double, double,
+     * Point2D)} for each point. Subclasses can override this method with a loop computing the
+     * projection equations directly on the array, in which case every subclass overriding the
+     * single point method must override this one as well.
+     *
+     * @param ordinates The (<var>x</var>,<var>y</var>) pairs to transform in place.
+     * @param offset    The offset of the first ordinate in the array.
+     * @param numPts    The number of points to transform.
+     * @throws ProjectionException if a point can't be transformed. All the points are processed
+     *         anyway, the ones that can't be transformed are set to {@link Double#NaN}.
+     *
+     * @since 8.0
+     */
+    protected void inverseTransformNormalized(final double[] ordinates, final int offset,
+            final int numPts) throws ProjectionException
+    {
+        normalizedLoop(ordinates, offset, numPts, true);
+    }
+
+    /**
+     * Applies the single point {@code transformNormalized} or {@code inverseTransformNormalized}
+     * method to each point of the array, in place.
+     */
+    final void normalizedLoop(final double[] ordinates, final int offset, final int numPts,
+            final boolean inverse) throws ProjectionException
+    {
+        final Point2D.Double point = new Point2D.Double();
+        final int upper = offset + 2*numPts;
+        ProjectionException firstException = null;
+        for (int i=offset; i<upper; i+=2) {
+            try {
+                if (inverse) {
+                    inverseTransformNormalized(ordinates[i], ordinates[i+1], point);
+                } else {
+                    transformNormalized(ordinates[i], ordinates[i+1], point);
+                }
+                ordinates[i  ] = point.x;
+                ordinates[i+1] = point.y;
+            } catch (ProjectionException exception) {
+                ordinates[i  ] = Double.NaN;
+                ordinates[i+1] = Double.NaN;
+                if (firstException == null) {
+                    firstException = exception;
+                }
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
     /**
      * Transforms the specified {@code ptSrc} and stores the result in {@code ptDst}.
      * <p>
@@ -875,6 +958,10 @@ public abstract class MapProjection extends AbstractMathTransform
     /**
      * Transforms a list of coordinate point ordinal values. Ordinates must be
      * (<var>longitude</var>,<var>latitude</var>) pairs in decimal degrees.
+     * <p>
+     * The points are processed in bulk: the ordinates are converted to radians in a first
+     * pass, projected by {@link #transformNormalized(double[], int, int)} and scaled in a
+     * last pass, without going through a {@link Point2D} for each point.
      *
      * @throws ProjectionException if a point can't be transformed. This method tries to transform
      *         every points even if some of them can't be transformed. Non-transformable points will
@@ -885,41 +972,14 @@ public abstract class MapProjection extends AbstractMathTransform
                                 final double[] dstPts, int dstOff, int numPts)
             throws ProjectionException
     {
-        /*
-         * Vérifie s'il faudra parcourir le tableau en sens inverse.
-         * Ce sera le cas si les tableaux source et destination se
-         * chevauchent et que la destination est après la source.
-         */
-        final boolean reverse = (srcPts == dstPts && srcOff < dstOff &&
-                                 srcOff + (2*numPts) > dstOff);
-        if (reverse) {
-            srcOff += 2*numPts;
-            dstOff += 2*numPts;
-        }
-        final Point2D.Double point = new Point2D.Double();
-        ProjectionException firstException = null;
-        while (--numPts >= 0) {
-            try {
-                point.x = srcPts[srcOff++];
-                point.y = srcPts[srcOff++];
-                transform(point, point);
-                dstPts[dstOff++] = point.x;
-                dstPts[dstOff++] = point.y;
-            } catch (ProjectionException exception) {
-                dstPts[dstOff++] = Double.NaN;
-                dstPts[dstOff++] = Double.NaN;
-                if (firstException == null) {
-                    firstException = exception;
-                }
-            }
-            if (reverse) {
-                srcOff -= 4;
-                dstOff -= 4;
-            }
-        }
-        if (firstException != null) {
-            throw firstException;
+        if (numPts <= 0) {
+            return;
         }
+        double[] source = null;
+        assert (source = copy(srcPts, srcOff, numPts)) != null;
+        // System.arraycopy handles overlapping source and destination properly
+        System.arraycopy(srcPts, srcOff, dstPts, dstOff, 2*numPts);
+        transformInPlace(dstPts, dstOff, numPts, source);
     }
 
     /**
@@ -936,36 +996,107 @@ public abstract class MapProjection extends AbstractMathTransform
                                 final float[] dstPts, int dstOff, int numPts)
             throws ProjectionException
     {
-        final boolean reverse = (srcPts == dstPts && srcOff < dstOff &&
-                                 srcOff + (2*numPts) > dstOff);
-        if (reverse) {
-            srcOff += 2*numPts;
-            dstOff += 2*numPts;
+        if (numPts <= 0) {
+            return;
+        }
+        // Use a double buffer in order to reduce rounding errors
+        final double[] buffer = new double[2*numPts];
+        for (int i=0; i<buffer.length; i++) {
+            buffer[i] = srcPts[srcOff + i];
+        }
+        double[] source = null;
+        assert (source = buffer.clone()) != null;
+        try {
+            transformInPlace(buffer, 0, numPts, source);
+        } finally {
+            for (int i=0; i<buffer.length; i++) {
+                dstPts[dstOff + i] = (float) buffer[i];
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the specified points, used for assertions only.
+     */
+    private static double[] copy(final double[] ordinates, final int offset, final int numPts) {
+        final double[] copy = new double[2*numPts];
+        System.arraycopy(ordinates, offset, copy, 0, copy.length);
+        return copy;
+    }
+
+    /**
+     * Transforms in place an array of (<var>longitude</var>,<var>latitude</var>) pairs in
+     * decimal degrees.
+     *
+     * @param source A copy of the source points if assertions are enabled, or {@code null}.
+     */
+    private void transformInPlace(final double[] ordinates, final int offset, final int numPts,
+            final double[] source) throws ProjectionException
+    {
+        final int upper = offset + 2*numPts;
+        if (verifyCoordinateRanges()) {
+            for (int i=offset; i<upper; i+=2) {
+                if (verifyGeographicRanges(this, ordinates[i], ordinates[i+1])) {
+                    warningLogged();
+                    break;
+                }
+            }
+        }
+        /*
+         * Makes sure that the longitude before conversion stay within +/- PI radians. As a
+         * special case, we do not check the range if no rotation were applied on the longitude.
+         * See transform(Point2D, Point2D) for details.
+         */
+        for (int i=offset; i<upper; i+=2) {
+            final double x = toRadians(ordinates[i]);
+            ordinates[i  ] = centralMeridian != 0 ? rollLongitude(x - centralMeridian) : x;
+            ordinates[i+1] = toRadians(ordinates[i+1]);
         }
-        final Point2D.Double point = new Point2D.Double();
         ProjectionException firstException = null;
-        while (--numPts >= 0) {
+        try {
+            transformNormalized(ordinates, offset, numPts);
+        } catch (ProjectionException exception) {
+            firstException = exception;
+        }
+        for (int i=offset; i<upper; i+=2) {
+            ordinates[i  ] = globalScale*ordinates[i  ] + falseEasting;
+            ordinates[i+1] = globalScale*ordinates[i+1] + falseNorthing;
+        }
+        if (source != null && invertible) {
+            firstException = checkReciprocal(ordinates, offset, source, true, firstException);
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Runs {@link #checkReciprocal(Point2D, Point2D, boolean)} on each transformed point.
+     * Points failing the check are set to {@link Double#NaN}. This method is used for
+     * assertions only.
+     *
+     * @return The first exception found, either the one provided or a new one.
+     */
+    final ProjectionException checkReciprocal(final double[] ordinates, final int offset,
+            final double[] source, final boolean inverse, ProjectionException firstException)
+    {
+        for (int i=0; i<source.length; i+=2) {
+            final int j = offset + i;
+            if (Double.isNaN(ordinates[j]) || Double.isNaN(ordinates[j+1])) {
+                continue;
+            }
             try {
-                point.x = srcPts[srcOff++];
-                point.y = srcPts[srcOff++];
-                transform(point, point);
-                dstPts[dstOff++] = (float) point.x;
-                dstPts[dstOff++] = (float) point.y;
+                checkReciprocal(new Point2D.Double(ordinates[j], ordinates[j+1]),
+                        new Point2D.Double(source[i], source[i+1]), inverse);
             } catch (ProjectionException exception) {
-                dstPts[dstOff++] = Float.NaN;
-                dstPts[dstOff++] = Float.NaN;
+                ordinates[j  ] = Double.NaN;
+                ordinates[j+1] = Double.NaN;
                 if (firstException == null) {
                     firstException = exception;
                 }
             }
-            if (reverse) {
-                srcOff -= 4;
-                dstOff -= 4;
-            }
-        }
-        if (firstException != null) {
-            throw firstException;
         }
+        return firstException;
     }
 
     /**
@@ -1041,6 +1172,9 @@ public abstract class MapProjection extends AbstractMathTransform
         /**
          * Inverse transforms a list of coordinate point ordinal values.
          * Ordinates must be (<var>x</var>,<var>y</var>) pairs in metres.
+         * <p>
+         * The points are processed in bulk, see
+         * {@link MapProjection#inverseTransformNormalized(double[], int, int)}.
          *
          * @throws ProjectionException if a point can't be transformed. This method tries
          *         to transform every points even if some of them can't be transformed.
@@ -1052,41 +1186,13 @@ public abstract class MapProjection extends AbstractMathTransform
                                     final double[] dest, int dstOffset, int numPts)
                 throws TransformException
         {
-            /*
-             * Vérifie s'il faudra parcourir le tableau en sens inverse.
-             * Ce sera le cas si les tableaux source et destination se
-             * chevauchent et que la destination est après la source.
-             */
-            final boolean reverse = (src==dest && srcOffset<dstOffset &&
-                                     srcOffset+(2*numPts) > dstOffset);
-            if (reverse) {
-                srcOffset += 2*numPts;
-                dstOffset += 2*numPts;
-            }
-            final Point2D.Double point = new Point2D.Double();
-            ProjectionException firstException = null;
-            while (--numPts>=0) {
-                try {
-                    point.x = src[srcOffset++];
-                    point.y = src[srcOffset++];
-                    transform(point, point);
-                    dest[dstOffset++] = point.x;
-                    dest[dstOffset++] = point.y;
-                } catch (ProjectionException exception) {
-                    dest[dstOffset++] = Double.NaN;
-                    dest[dstOffset++] = Double.NaN;
-                    if (firstException == null) {
-                        firstException = exception;
-                    }
-                }
-                if (reverse) {
-                    srcOffset -= 4;
-                    dstOffset -= 4;
-                }
-            }
-            if (firstException != null) {
-                throw firstException;
+            if (numPts <= 0) {
+                return;
             }
+            double[] source = null;
+            assert (source = copy(src, srcOffset, numPts)) != null;
+            System.arraycopy(src, srcOffset, dest, dstOffset, 2*numPts);
+            transformInPlace(dest, dstOffset, numPts, source);
         }
 
         /**
@@ -1104,34 +1210,64 @@ public abstract class MapProjection extends AbstractMathTransform
                                     final float[] dest, int dstOffset, int numPts)
                 throws ProjectionException
         {
-            final boolean reverse = (src==dest && srcOffset<dstOffset &&
-                                     srcOffset+(2*numPts) > dstOffset);
-            if (reverse) {
-                srcOffset += 2*numPts;
-                dstOffset += 2*numPts;
+            if (numPts <= 0) {
+                return;
+            }
+            final double[] buffer = new double[2*numPts];
+            for (int i=0; i<buffer.length; i++) {
+                buffer[i] = src[srcOffset + i];
+            }
+            double[] source = null;
+            assert (source = buffer.clone()) != null;
+            try {
+                transformInPlace(buffer, 0, numPts, source);
+            } finally {
+                for (int i=0; i<buffer.length; i++) {
+                    dest[dstOffset + i] = (float) buffer[i];
+                }
+            }
+        }
+
+        /**
+         * Inverse transforms in place an array of (<var>x</var>,<var>y</var>) pairs in metres.
+         *
+         * @param source A copy of the source points if assertions are enabled, or {@code null}.
+         */
+        private void transformInPlace(final double[] ordinates, final int offset,
+                final int numPts, final double[] source) throws ProjectionException
+        {
+            final int upper = offset + 2*numPts;
+            for (int i=offset; i<upper; i+=2) {
+                ordinates[i  ] = (ordinates[i  ] - falseEasting ) / globalScale;
+                ordinates[i+1] = (ordinates[i+1] - falseNorthing) / globalScale;
             }
-            final Point2D.Double point = new Point2D.Double();
             ProjectionException firstException = null;
-            while (--numPts>=0) {
-                try {
-                    point.x = src[srcOffset++];
-                    point.y = src[srcOffset++];
-                    transform(point, point);
-                    dest[dstOffset++] = (float) point.x;
-                    dest[dstOffset++] = (float) point.y;
-                } catch (ProjectionException exception) {
-                    dest[dstOffset++] = Float.NaN;
-                    dest[dstOffset++] = Float.NaN;
-                    if (firstException == null) {
-                        firstException = exception;
+            try {
+                inverseTransformNormalized(ordinates, offset, numPts);
+            } catch (ProjectionException exception) {
+                firstException = exception;
+            }
+            /*
+             * Makes sure that the longitude after conversion stay within +/- PI radians, unless
+             * no rotation were applied on the longitude. See transform(Point2D, Point2D).
+             */
+            for (int i=offset; i<upper; i+=2) {
+                final double x = ordinates[i];
+                ordinates[i  ] = toDegrees(centralMeridian != 0 ? rollLongitude(x + centralMeridian) : x);
+                ordinates[i+1] = toDegrees(ordinates[i+1]);
+            }
+            if (verifyCoordinateRanges()) {
+                for (int i=offset; i<upper; i+=2) {
+                    if (verifyGeographicRanges(this, ordinates[i], ordinates[i+1])) {
+                        warningLogged();
+                        break;
                     }
                 }
-                if (reverse) {
-                    srcOffset -= 4;
-                    dstOffset -= 4;
-                }
             }
-            if (firstException!=null) {
+            if (source != null) {
+                firstException = checkReciprocal(ordinates, offset, source, false, firstException);
+            }
+            if (firstException != null) {
                 throw firstException;
             }
         }
@@ -170,6 +170,59 @@ public abstract class Mercator extends MapProjection {
         return new Point2D.Double(x,y);
     }
 
+    /**
+     * Transforms in place an array of (<var>&lambda;</var>,<var>&phi;</var>) coordinates.
+     * Only the ordinate values are modified by this projection.
+     */
+    @Override
+    protected void transformNormalized(final double[] ordinates, final int offset,
+            final int numPts) throws ProjectionException
+    {
+        final int upper = offset + 2*numPts;
+        ProjectionException firstException = null;
+        for (int i=offset+1; i<upper; i+=2) {
+            final double y = ordinates[i];
+            if (abs(y) > (PI/2 - EPSILON)) {
+                ordinates[i-1] = Double.NaN;
+                ordinates[i  ] = Double.NaN;
+                if (firstException == null) {
+                    firstException = new ProjectionException(y);
+                }
+                continue;
+            }
+            ordinates[i] = -log(tsfn(y, sin(y)));
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Inverse transforms in place an array of (<var>x</var>,<var>y</var>) coordinates.
+     * Only the ordinate values are modified by this projection.
+     */
+    @Override
+    protected void inverseTransformNormalized(final double[] ordinates, final int offset,
+            final int numPts) throws ProjectionException
+    {
+        final int upper = offset + 2*numPts;
+        ProjectionException firstException = null;
+        for (int i=offset+1; i<upper; i+=2) {
+            try {
+                ordinates[i] = cphi2(exp(-ordinates[i]));
+            } catch (ProjectionException exception) {
+                ordinates[i-1] = Double.NaN;
+                ordinates[i  ] = Double.NaN;
+                if (firstException == null) {
+                    firstException = exception;
+                }
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
 
     /**
      * Provides the transform equations for the spherical case of the Mercator projection.
@@ -240,6 +293,47 @@ public abstract class Mercator extends MapProjection {
             }
             return new Point2D.Double(x,y);
         }
+
+        /**
+         * Transforms in place an array of (<var>&lambda;</var>,<var>&phi;</var>) coordinates
+         * using equations for a sphere.
+         */
+        @Override
+        protected void transformNormalized(final double[] ordinates, final int offset,
+                final int numPts) throws ProjectionException
+        {
+            final int upper = offset + 2*numPts;
+            ProjectionException firstException = null;
+            for (int i=offset+1; i<upper; i+=2) {
+                final double y = ordinates[i];
+                if (abs(y) > (PI/2 - EPSILON)) {
+                    ordinates[i-1] = Double.NaN;
+                    ordinates[i  ] = Double.NaN;
+                    if (firstException == null) {
+                        firstException = new ProjectionException(y);
+                    }
+                    continue;
+                }
+                ordinates[i] = log(tan(PI/4 + 0.5*y));
+            }
+            if (firstException != null) {
+                throw firstException;
+            }
+        }
+
+        /**
+         * Inverse transforms in place an array of (<var>x</var>,<var>y</var>) coordinates
+         * using equations for a sphere.
+         */
+        @Override
+        protected void inverseTransformNormalized(final double[] ordinates, final int offset,
+                final int numPts)
+        {
+            final int upper = offset + 2*numPts;
+            for (int i=offset+1; i<upper; i+=2) {
+                ordinates[i] = PI/2 - 2.0*atan(exp(-ordinates[i]));
+            }
+        }
     }
 
 
@@ -235,6 +235,72 @@ public class PolarStereographic extends Stereographic {
         return new Point2D.Double(x,y);
     }
 
+    /**
+     * Transforms in place an array of (<var>&lambda;</var>,<var>&phi;</var>) coordinates,
+     * using the same equations than {@link #transformNormalized(double, double, Point2D)}.
+     */
+    @Override
+    protected void transformNormalized(final double[] ordinates, final int offset,
+            final int numPts) throws ProjectionException
+    {
+        final int upper = offset + 2*numPts;
+        for (int i=offset; i<upper; i+=2) {
+            final double x = ordinates[i];
+            final double y = ordinates[i+1];
+            final double sinlat = sin(y);
+            if (southPole) {
+                final double rho = k0 * tsfn(-y, -sinlat);
+                ordinates[i  ] = rho * sin(x);
+                ordinates[i+1] = rho * cos(x);
+            } else {
+                final double rho = k0 * tsfn(y, sinlat);
+                ordinates[i  ] =  rho * sin(x);
+                ordinates[i+1] = -rho * cos(x);
+            }
+        }
+    }
+
+    /**
+     * Inverse transforms in place an array of (<var>x</var>,<var>y</var>) coordinates, using
+     * the same equations than {@link #inverseTransformNormalized(double, double, Point2D)}.
+     */
+    @Override
+    protected void inverseTransformNormalized(final double[] ordinates, final int offset,
+            final int numPts) throws ProjectionException
+    {
+        final int upper = offset + 2*numPts;
+        final double halfe = excentricity/2.0;
+        ProjectionException firstException = null;
+        for (int i=offset; i<upper; i+=2) {
+            final double x = ordinates[i];
+            final double y = southPole ? -ordinates[i+1] : ordinates[i+1];
+            final double rho = hypot(x, y);
+            final double t = rho/k0;
+            double phi0 = 0;
+            for (int it=MAXIMUM_ITERATIONS;;) {
+                final double esinphi = excentricity * sin(phi0);
+                final double phi = (PI/2) - 2.0*atan(t*pow((1-esinphi)/(1+esinphi), halfe));
+                if (abs(phi-phi0) < ITERATION_TOLERANCE) {
+                    ordinates[i  ] = (abs(rho) < EPSILON) ? 0.0 : atan2(x, -y);
+                    ordinates[i+1] = (southPole) ? -phi : phi;
+                    break;
+                }
+                phi0 = phi;
+                if (--it < 0) {
+                    ordinates[i  ] = Double.NaN;
+                    ordinates[i+1] = Double.NaN;
+                    if (firstException == null) {
+                        firstException = new ProjectionException(ErrorKeys.NO_CONVERGENCE);
+                    }
+                    break;
+                }
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -396,6 +462,62 @@ public class PolarStereographic extends Stereographic {
             }
             return new Point2D.Double(x,y);
         }
+
+        /**
+         * Transforms in place an array of (<var>&lambda;</var>,<var>&phi;</var>) coordinates
+         * using equations for a sphere.
+         */
+        @Override
+        protected void transformNormalized(final double[] ordinates, final int offset,
+                final int numPts) throws ProjectionException
+        {
+            final int upper = offset + 2*numPts;
+            ProjectionException firstException = null;
+            for (int i=offset; i<upper; i+=2) {
+                final double x = ordinates[i];
+                final double y = ordinates[i+1];
+                final double coslat = cos(y);
+                final double sinlat = sin(y);
+                final double d = southPole ? 1-sinlat : 1+sinlat;
+                if (abs(d) < EPSILON) {
+                    ordinates[i  ] = Double.NaN;
+                    ordinates[i+1] = Double.NaN;
+                    if (firstException == null) {
+                        firstException = new ProjectionException(ErrorKeys.VALUE_TEND_TOWARD_INFINITY);
+                    }
+                    continue;
+                }
+                final double f = k0 * coslat / d;
+                ordinates[i  ] = f * sin(x);
+                ordinates[i+1] = southPole ? f * cos(x) : -f * cos(x);
+            }
+            if (firstException != null) {
+                throw firstException;
+            }
+        }
+
+        /**
+         * Inverse transforms in place an array of (<var>x</var>,<var>y</var>) coordinates
+         * using equations for a sphere.
+         */
+        @Override
+        protected void inverseTransformNormalized(final double[] ordinates, final int offset,
+                final int numPts)
+        {
+            final int upper = offset + 2*numPts;
+            for (int i=offset; i<upper; i+=2) {
+                final double x = ordinates[i];
+                final double y = southPole ? ordinates[i+1] : -ordinates[i+1];
+                final double rho = hypot(x, y);
+                ordinates[i] = (abs(x)<EPSILON && abs(y)<EPSILON) ? 0.0 : atan2(x, y);
+                if (abs(rho) < EPSILON) {
+                    ordinates[i+1] = latitudeOfOrigin;
+                } else {
+                    final double cosc = cos(2.0 * atan(rho/k0));
+                    ordinates[i+1] = (southPole) ? asin(-cosc) : asin(cosc);
+                }
+            }
+        }
     }
 
     /**
@@ -510,6 +632,30 @@ public class PolarStereographic extends Stereographic {
             }
             return new Point2D.Double(x,y);
         }
+
+        /**
+         * Inverse transforms in place an array of (<var>x</var>,<var>y</var>) coordinates
+         * using the series form.
+         */
+        @Override
+        protected void inverseTransformNormalized(final double[] ordinates, final int offset,
+                final int numPts)
+        {
+            final int upper = offset + 2*numPts;
+            final double f = sqrt(pow(1+excentricity, 1+excentricity)*
+                                  pow(1-excentricity, 1-excentricity)) / (2*k0);
+            for (int i=offset; i<upper; i+=2) {
+                final double x = ordinates[i];
+                final double y = southPole ? -ordinates[i+1] : ordinates[i+1];
+                final double rho = hypot(x, y);
+                final double chi = PI/2 - 2*atan(rho * f);
+                ordinates[i] = (abs(rho) < EPSILON) ? 0.0 : atan2(x, -y);
+                final double sin2chi = sin(2.0 * chi);
+                final double cos2chi = cos(2.0 * chi);
+                final double phi = chi + sin2chi*(A + cos2chi*(B + cos2chi*(C + D*cos2chi)));
+                ordinates[i+1] = (southPole) ? -phi : phi;
+            }
+        }
     }
 
 
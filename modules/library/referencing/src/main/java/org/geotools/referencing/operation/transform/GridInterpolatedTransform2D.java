@@ -0,0 +1,429 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.operation.transform;
+
+import static java.lang.Math.*;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.Utilities;
+import org.geotools.util.logging.Logging;
+import org.opengis.geometry.DirectPosition;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.Matrix;
+import org.opengis.referencing.operation.NoninvertibleTransformException;
+import org.opengis.referencing.operation.TransformException;
+
+/**
+ * Approximates a {@link MathTransform2D} inside a rectangular domain by sampling it on a regular
+ * grid and bilinearly interpolating between the grid nodes. The grid density is chosen so that
+ * the interpolated points are within the specified tolerance of the exact ones, using the same
+ * recursive subdivision approach as {@link WarpBuilder}.
+ * <p>
+ * This is meant for cases where sub-pixel accuracy is all that is needed, such as reprojecting
+ * vector data for rendering: each point costs a couple of multiplications instead of a full run
+ * through the transformation chain. Points outside the domain, or falling in cells whose nodes
+ * could not be transformed, are transformed with the exact transform.
+ * <p>
+ * The {@linkplain #inverse() inverse} is the inverse of the exact transform.
+ *
+ * @since 8.0
+ *
+ * @source $URL$
+ */
+public class GridInterpolatedTransform2D extends AbstractMathTransform
+        implements MathTransform2D, Serializable {
+    private static final long serialVersionUID = -2385479463196512305L;
+
+    static final Logger LOGGER = Logging.getLogger(GridInterpolatedTransform2D.class);
+
+    /**
+     * The maximum number of subdivisions along each axis, the grid can have at most
+     * 2<sup>MAX_DEPTH</sup> cells along each axis
+     */
+    static final int MAX_DEPTH = 8;
+
+    /**
+     * The number of samples taken along each side of a cell when checking the tolerance
+     */
+    static final int SAMPLES = 5;
+
+    /**
+     * The exact transform
+     */
+    final MathTransform2D transform;
+
+    /**
+     * The grid origin and cell sizes
+     */
+    final double minX, minY, cellWidth, cellHeight;
+
+    /**
+     * The number of grid cells along each axis
+     */
+    final int cols, rows;
+
+    /**
+     * The transformed grid nodes, row by row, as x/y pairs
+     */
+    final double[] grid;
+
+    /**
+     * Builds a transform approximating the specified one in the specified domain. If the
+     * transform is already affine, or the tolerance is not positive, or the approximation
+     * would require a grid too dense to be useful, the original transform is returned.
+     *
+     * @param transform The transform to be approximated
+     * @param domain The area, in source coordinates, where the approximation will be used
+     * @param tolerance The maximum distance, in target units, between the approximated
+     *        and the exact points
+     */
+    public static MathTransform2D create(MathTransform2D transform, Rectangle2D domain,
+            double tolerance) throws TransformException {
+        if (transform instanceof AffineTransform2D || transform.isIdentity()
+                || transform instanceof GridInterpolatedTransform2D || !(tolerance > 0)
+                || domain == null || domain.isEmpty()) {
+            return transform;
+        }
+
+        final double minx = domain.getMinX();
+        final double maxx = domain.getMaxX();
+        final double miny = domain.getMinY();
+        final double maxy = domain.getMaxY();
+        final int[] depths;
+        try {
+            depths = new DepthCalculator(transform, tolerance).computeDepths(minx, maxx,
+                    miny, maxy, 0, 0);
+        } catch (ExcessiveDepthException e) {
+            LOGGER.log(Level.FINE, "Cannot approximate the transform: " + e.getMessage());
+            return transform;
+        }
+
+        final int rows = 1 << depths[0];
+        final int cols = 1 << depths[1];
+        LOGGER.log(Level.FINE, "Approximating the transform with a {0} x {1} grid",
+                new Object[] { rows, cols });
+        return new GridInterpolatedTransform2D(transform, minx, miny, (maxx - minx) / cols,
+                (maxy - miny) / rows, cols, rows);
+    }
+
+    /**
+     * Creates the transform and samples the exact one on the grid nodes
+     */
+    GridInterpolatedTransform2D(MathTransform2D transform, double minX, double minY,
+            double cellWidth, double cellHeight, int cols, int rows) throws TransformException {
+        this.transform = transform;
+        this.minX = minX;
+        this.minY = minY;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.cols = cols;
+        this.rows = rows;
+
+        grid = new double[(rows + 1) * (cols + 1) * 2];
+        int idx = 0;
+        for (int r = 0; r <= rows; r++) {
+            final double y = minY + r * cellHeight;
+            for (int c = 0; c <= cols; c++) {
+                grid[idx++] = minX + c * cellWidth;
+                grid[idx++] = y;
+            }
+        }
+        try {
+            transform.transform(grid, 0, grid, 0, grid.length / 2);
+        } catch (TransformException e) {
+            // the nodes that could not be transformed are NaN, the points falling
+            // in their cells will use the exact transform
+            LOGGER.log(Level.FINE, "Some grid nodes could not be transformed", e);
+        }
+    }
+
+    /**
+     * Returns the exact transform this one is approximating
+     */
+    public MathTransform2D getTransform() {
+        return transform;
+    }
+
+    /**
+     * Returns the dimension of input points.
+     */
+    public int getSourceDimensions() {
+        return 2;
+    }
+
+    /**
+     * Returns the dimension of output points.
+     */
+    public int getTargetDimensions() {
+        return 2;
+    }
+
+    /**
+     * Tests if this transform is the identity transform.
+     */
+    @Override
+    public boolean isIdentity() {
+        return false;
+    }
+
+    /**
+     * Transforms a list of coordinate point ordinal values, interpolating on the grid when
+     * possible and using the exact transform otherwise.
+     */
+    public void transform(final double[] srcPts, int srcOff, final double[] dstPts, int dstOff,
+            int numPts) throws TransformException {
+        final int postIncrement;
+        if (srcPts == dstPts && srcOff < dstOff) {
+            srcOff += (numPts - 1) * 2;
+            dstOff += (numPts - 1) * 2;
+            postIncrement = -4;
+        } else {
+            postIncrement = 0;
+        }
+
+        final int rowLength = (cols + 1) * 2;
+        double[] exact = null;
+        TransformException firstException = null;
+        while (--numPts >= 0) {
+            final double x = srcPts[srcOff++];
+            final double y = srcPts[srcOff++];
+            double tx = Double.NaN;
+            double ty = Double.NaN;
+
+            final double u = (x - minX) / cellWidth;
+            final double v = (y - minY) / cellHeight;
+            if (u >= 0 && u <= cols && v >= 0 && v <= rows) {
+                final int c = min((int) u, cols - 1);
+                final int r = min((int) v, rows - 1);
+                final double fu = u - c;
+                final double fv = v - r;
+                final int i00 = r * rowLength + c * 2;
+                final int i01 = i00 + rowLength;
+                final double w00 = (1 - fu) * (1 - fv);
+                final double w10 = fu * (1 - fv);
+                final double w01 = (1 - fu) * fv;
+                final double w11 = fu * fv;
+                tx = w00 * grid[i00] + w10 * grid[i00 + 2] + w01 * grid[i01] + w11 * grid[i01 + 2];
+                ty = w00 * grid[i00 + 1] + w10 * grid[i00 + 3] + w01 * grid[i01 + 1]
+                        + w11 * grid[i01 + 3];
+            }
+
+            if (Double.isNaN(tx) || Double.isNaN(ty)) {
+                // outside of the grid, or close to a node that could not be transformed
+                if (exact == null) {
+                    exact = new double[2];
+                }
+                exact[0] = x;
+                exact[1] = y;
+                try {
+                    transform.transform(exact, 0, exact, 0, 1);
+                    tx = exact[0];
+                    ty = exact[1];
+                } catch (TransformException e) {
+                    if (firstException == null) {
+                        firstException = e;
+                    }
+                }
+            }
+
+            dstPts[dstOff++] = tx;
+            dstPts[dstOff++] = ty;
+            srcOff += postIncrement;
+            dstOff += postIncrement;
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Returns the derivative of the exact transform
+     */
+    @Override
+    public Matrix derivative(Point2D point) throws TransformException {
+        return transform.derivative(point);
+    }
+
+    /**
+     * Returns the derivative of the exact transform
+     */
+    @Override
+    public Matrix derivative(DirectPosition point) throws TransformException {
+        return transform.derivative(point);
+    }
+
+    /**
+     * Returns the inverse of the exact transform.
+     */
+    @Override
+    public MathTransform2D inverse() throws NoninvertibleTransformException {
+        return transform.inverse();
+    }
+
+    /**
+     * Returns a hash value for this transform.
+     */
+    @Override
+    public int hashCode() {
+        return (int) serialVersionUID ^ transform.hashCode() ^ Arrays.hashCode(grid);
+    }
+
+    /**
+     * Compares this transform with the specified object for equality.
+     */
+    @Override
+    public boolean equals(final Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (super.equals(object)) {
+            final GridInterpolatedTransform2D that = (GridInterpolatedTransform2D) object;
+            return Utilities.equals(this.transform, that.transform)
+                    && this.cols == that.cols && this.rows == that.rows
+                    && Double.doubleToLongBits(this.minX) == Double.doubleToLongBits(that.minX)
+                    && Double.doubleToLongBits(this.minY) == Double.doubleToLongBits(that.minY)
+                    && Double.doubleToLongBits(this.cellWidth) == Double.doubleToLongBits(that.cellWidth)
+                    && Double.doubleToLongBits(this.cellHeight) == Double.doubleToLongBits(that.cellHeight);
+        }
+        return false;
+    }
+
+    /**
+     * Finds the number of subdivisions along the x and y axis needed to respect the tolerance
+     * by recursively splitting the domain where the bilinear interpolation is not accurate enough
+     */
+    static class DepthCalculator {
+        final MathTransform2D transform;
+
+        final double maxDistanceSquared;
+
+        /**
+         * The array used to transform the samples of a cell
+         */
+        final double[] ordinates = new double[SAMPLES * SAMPLES * 2];
+
+        DepthCalculator(MathTransform2D transform, double tolerance) {
+            this.transform = transform;
+            this.maxDistanceSquared = tolerance * tolerance;
+        }
+
+        int[] computeDepths(double minx, double maxx, double miny, double maxy, int rowDepth,
+                int colDepth) throws TransformException {
+            if (rowDepth > MAX_DEPTH || colDepth > MAX_DEPTH) {
+                throw new ExcessiveDepthException("Grid getting too dense, bailing out");
+            }
+
+            // sample the cell on a regular lattice, the corners are the first and last
+            // elements of the first and last rows
+            final int last = SAMPLES - 1;
+            int idx = 0;
+            for (int j = 0; j < SAMPLES; j++) {
+                final double y = miny + (maxy - miny) * j / last;
+                for (int i = 0; i < SAMPLES; i++) {
+                    ordinates[idx++] = minx + (maxx - minx) * i / last;
+                    ordinates[idx++] = y;
+                }
+            }
+            try {
+                transform.transform(ordinates, 0, ordinates, 0, SAMPLES * SAMPLES);
+            } catch (TransformException e) {
+                throw new ExcessiveDepthException("Some points cannot be transformed");
+            }
+
+            final int c00 = 0;
+            final int c10 = last * 2;
+            final int c01 = last * SAMPLES * 2;
+            final int c11 = c01 + c10;
+            boolean withinTolHorizontal = true;
+            boolean withinTolVertical = true;
+            boolean withinTolInterior = true;
+            for (int j = 0; j < SAMPLES; j++) {
+                final double fv = (double) j / last;
+                for (int i = 0; i < SAMPLES; i++) {
+                    final double fu = (double) i / last;
+                    final int k = (j * SAMPLES + i) * 2;
+                    if (Double.isNaN(ordinates[k]) || Double.isNaN(ordinates[k + 1])) {
+                        throw new ExcessiveDepthException("Some points cannot be transformed");
+                    }
+                    final double w00 = (1 - fu) * (1 - fv);
+                    final double w10 = fu * (1 - fv);
+                    final double w01 = (1 - fu) * fv;
+                    final double w11 = fu * fv;
+                    final double dx = ordinates[k] - (w00 * ordinates[c00] + w10 * ordinates[c10]
+                            + w01 * ordinates[c01] + w11 * ordinates[c11]);
+                    final double dy = ordinates[k + 1] - (w00 * ordinates[c00 + 1]
+                            + w10 * ordinates[c10 + 1] + w01 * ordinates[c01 + 1]
+                            + w11 * ordinates[c11 + 1]);
+                    if (dx * dx + dy * dy >= maxDistanceSquared) {
+                        if (j == 0 || j == last) {
+                            withinTolHorizontal = false;
+                        } else if (i == 0 || i == last) {
+                            withinTolVertical = false;
+                        } else {
+                            withinTolInterior = false;
+                        }
+                    }
+                }
+            }
+
+            final double midx = (minx + maxx) / 2;
+            final double midy = (miny + maxy) / 2;
+            if (!withinTolInterior || (!withinTolHorizontal && !withinTolVertical)) {
+                // quad split
+                rowDepth++;
+                colDepth++;
+                int[] d1 = computeDepths(minx, midx, miny, midy, rowDepth, colDepth);
+                int[] d2 = computeDepths(minx, midx, midy, maxy, rowDepth, colDepth);
+                int[] d3 = computeDepths(midx, maxx, miny, midy, rowDepth, colDepth);
+                int[] d4 = computeDepths(midx, maxx, midy, maxy, rowDepth, colDepth);
+                return new int[] { max(max(d1[0], d2[0]), max(d3[0], d4[0])),
+                        max(max(d1[1], d2[1]), max(d3[1], d4[1])) };
+            } else if (!withinTolHorizontal) {
+                // slice in two at midx (creating two more columns)
+                colDepth++;
+                int[] d1 = computeDepths(minx, midx, miny, maxy, rowDepth, colDepth);
+                int[] d2 = computeDepths(midx, maxx, miny, maxy, rowDepth, colDepth);
+                return new int[] { max(d1[0], d2[0]), max(d1[1], d2[1]) };
+            } else if (!withinTolVertical) {
+                // slice in two at midy (creating two more rows)
+                rowDepth++;
+                int[] d1 = computeDepths(minx, maxx, miny, midy, rowDepth, colDepth);
+                int[] d2 = computeDepths(minx, maxx, midy, maxy, rowDepth, colDepth);
+                return new int[] { max(d1[0], d2[0]), max(d1[1], d2[1]) };
+            }
+
+            return new int[] { rowDepth, colDepth };
+        }
+    }
+
+    /**
+     * Convenience exception to bail out when the grid evaluation code gets too deep
+     */
+    static class ExcessiveDepthException extends RuntimeException {
+        private static final long serialVersionUID = 5367893421853496187L;
+
+        public ExcessiveDepthException(String message) {
+            super(message);
+        }
+    }
+}
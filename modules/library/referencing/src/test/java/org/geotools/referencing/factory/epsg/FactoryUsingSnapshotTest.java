@@ -0,0 +1,150 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.epsg;
+
+import java.io.File;
+import java.util.Set;
+
+import org.opengis.referencing.NoSuchAuthorityCodeException;
+import org.opengis.referencing.crs.CRSAuthorityFactory;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeographicCRS;
+import org.opengis.referencing.crs.ProjectedCRS;
+
+import org.geotools.factory.Hints;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.ReferencingFactoryFinder;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests {@link FactoryUsingSnapshot}, using the WKT definitions of {@link FactoryUsingWKT}
+ * as the source of the snapshot.
+ *
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class FactoryUsingSnapshotTest {
+    /**
+     * The directory holding the snapshot.
+     */
+    private File directory;
+
+    /**
+     * The factory to test.
+     */
+    private FactoryUsingSnapshot factory;
+
+    /**
+     * The factory the snapshot is built from.
+     */
+    private CRSAuthorityFactory source;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("snapshot", "");
+        directory.delete();
+        directory.mkdir();
+        source = ReferencingFactoryFinder.getCRSAuthorityFactory("EPSG",
+                new Hints(Hints.CRS_AUTHORITY_FACTORY, FactoryUsingWKT.class));
+        final int count = FactoryUsingSnapshot.write(source,
+                new File(directory, FactoryUsingSnapshot.FILENAME));
+        assertTrue(count > 0);
+        factory = new FactoryUsingSnapshot(
+                new Hints(Hints.CRS_AUTHORITY_EXTRA_DIRECTORY, directory.getAbsolutePath()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        factory.dispose();
+        new File(directory, FactoryUsingSnapshot.FILENAME).delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testAvailable() {
+        assertTrue(factory.isAvailable());
+        final FactoryUsingSnapshot missing = new FactoryUsingSnapshot(
+                new Hints(Hints.CRS_AUTHORITY_EXTRA_DIRECTORY, new File(".").getAbsolutePath()));
+        assertFalse(missing.isAvailable());
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+        final CoordinateReferenceSystem crs = factory.createCoordinateReferenceSystem("EPSG:42101");
+        assertTrue(crs instanceof ProjectedCRS);
+        assertTrue(CRS.equalsIgnoreMetadata(source.createCoordinateReferenceSystem("EPSG:42101"), crs));
+        assertEquals("EPSG:42101", CRS.toSRS(crs, false));
+        assertSame(crs, factory.createProjectedCRS("42101"));
+        assertEquals("WGS 84 / LCC Canada", factory.getDescriptionText("42101").toString());
+        try {
+            factory.createCoordinateReferenceSystem("EPSG:1");
+            fail("The code should not be found");
+        } catch (NoSuchAuthorityCodeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAuthorityCodes() throws Exception {
+        final Set<String> all = factory.getAuthorityCodes(CoordinateReferenceSystem.class);
+        assertTrue(all.contains("42101"));
+        assertTrue(factory.getAuthorityCodes(ProjectedCRS.class).contains("42101"));
+        assertFalse(factory.getAuthorityCodes(GeographicCRS.class).contains("42101"));
+    }
+
+    /**
+     * Tests the generation of a snapshot from the command line, as documented.
+     */
+    @Test
+    public void testMain() throws Exception {
+        final File file = new File(directory, "generated.snapshot");
+        try {
+            FactoryUsingSnapshot.main(new String[] {
+                "-source", FactoryUsingWKT.class.getName(), file.getPath()
+            });
+            assertTrue(file.isFile());
+            final File expected = new File(directory, FactoryUsingSnapshot.FILENAME);
+            assertEquals(expected.length(), file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that a snapshot found in the CRS directory takes precedence over the other
+     * EPSG factories, as when the {@code org.geotools.referencing.crs-directory} system
+     * property is set.
+     */
+    @Test
+    public void testCrsDirectory() throws Exception {
+        try {
+            Hints.putSystemDefault(Hints.CRS_AUTHORITY_EXTRA_DIRECTORY, directory.getPath());
+            ReferencingFactoryFinder.reset();
+            final CRSAuthorityFactory found =
+                    ReferencingFactoryFinder.getCRSAuthorityFactory("EPSG", null);
+            assertTrue(found instanceof FactoryUsingSnapshot);
+            assertTrue(found.createCoordinateReferenceSystem("EPSG:42101") instanceof ProjectedCRS);
+        } finally {
+            Hints.removeSystemDefault(Hints.CRS_AUTHORITY_EXTRA_DIRECTORY);
+            ReferencingFactoryFinder.reset();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.operation.projection;
+
+import java.awt.geom.Point2D;
+
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.NoSuchIdentifierException;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.MathTransformFactory;
+
+import org.geotools.referencing.ReferencingFactoryFinder;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Checks the array based transforms of the map projections give the same results
+ * as transforming each point on its own.
+ *
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class BulkTransformTest {
+    /** Tolerance in metres. */
+    private static final double TOL_M = 1E-6;
+
+    /** Tolerance in degrees. */
+    private static final double TOL_DEG = 1E-9;
+
+    /** WGS84 ellipsoid axis lengths. */
+    private static final double A = 6378137.0, B = 6356752.314245179;
+
+    /** factory to use to create projection transforms*/
+    private MathTransformFactory mtFactory;
+
+    @Before
+    public void setUp() {
+        mtFactory = ReferencingFactoryFinder.getMathTransformFactory(null);
+    }
+
+    private ParameterValueGroup parameters(final String name, final double semiMinor)
+            throws NoSuchIdentifierException
+    {
+        final ParameterValueGroup params = mtFactory.getDefaultParameters(name);
+        params.parameter("semi_major").setValue(A);
+        params.parameter("semi_minor").setValue(semiMinor);
+        return params;
+    }
+
+    /**
+     * Builds a grid of (longitude, latitude) points in the given latitude range.
+     */
+    private static double[] grid(final double minLat, final double maxLat,
+                                 final double minLon, final double maxLon)
+    {
+        final int n = 20;
+        final double[] points = new double[2 * n * n];
+        int k = 0;
+        for (int i=0; i<n; i++) {
+            for (int j=0; j<n; j++) {
+                points[k++] = minLon + (maxLon - minLon) * i / (n - 1);
+                points[k++] = minLat + (maxLat - minLat) * j / (n - 1);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Transforms the points one by one and in bulk, both for doubles and floats, forward
+     * and backward, and compares the results.
+     */
+    private void assertBulkEquals(final ParameterValueGroup params, final double[] points)
+            throws Exception
+    {
+        final MathTransform2D mt = (MathTransform2D) mtFactory.createParameterizedTransform(params);
+        assertTrue(mt instanceof MapProjection);
+        final MathTransform2D inverse = mt.inverse();
+        final int numPts = points.length / 2;
+
+        // forward, with an offset to check the indexes are honored
+        final double[] projected = new double[points.length + 2];
+        mt.transform(points, 0, projected, 2, numPts);
+        final Point2D.Double point = new Point2D.Double();
+        for (int i=0; i<numPts; i++) {
+            point.setLocation(points[2*i], points[2*i + 1]);
+            mt.transform(point, point);
+            assertEquals(point.x, projected[2*i + 2], TOL_M);
+            assertEquals(point.y, projected[2*i + 3], TOL_M);
+        }
+
+        // backward, in place
+        final double[] back = new double[points.length];
+        System.arraycopy(projected, 2, back, 0, points.length);
+        inverse.transform(back, 0, back, 0, numPts);
+        for (int i=0; i<numPts; i++) {
+            point.setLocation(projected[2*i + 2], projected[2*i + 3]);
+            inverse.transform(point, point);
+            assertEquals(point.x, back[2*i    ], TOL_DEG);
+            assertEquals(point.y, back[2*i + 1], TOL_DEG);
+            assertEquals(points[2*i    ], back[2*i    ], 1E-6);
+            assertEquals(points[2*i + 1], back[2*i + 1], 1E-6);
+        }
+
+        // floats
+        final float[] floats = new float[points.length];
+        for (int i=0; i<points.length; i++) {
+            floats[i] = (float) points[i];
+        }
+        mt.transform(floats, 0, floats, 0, numPts);
+        for (int i=0; i<numPts; i++) {
+            point.setLocation((float) points[2*i], (float) points[2*i + 1]);
+            mt.transform(point, point);
+            assertEquals((float) point.x, floats[2*i    ], 1E-2);
+            assertEquals((float) point.y, floats[2*i + 1], 1E-2);
+        }
+    }
+
+    @Test
+    public void testTransverseMercator() throws Exception {
+        final ParameterValueGroup params = parameters("Transverse_Mercator", B);
+        params.parameter("central_meridian").setValue(9.0);
+        params.parameter("scale_factor").setValue(0.9996);
+        params.parameter("false_easting").setValue(500000.0);
+        assertBulkEquals(params, grid(-80, 80, 3, 15));
+
+        final ParameterValueGroup sphere = parameters("Transverse_Mercator", A);
+        sphere.parameter("central_meridian").setValue(9.0);
+        assertBulkEquals(sphere, grid(-80, 80, 3, 15));
+    }
+
+    @Test
+    public void testMercator() throws Exception {
+        final ParameterValueGroup params = parameters("Mercator_1SP", B);
+        params.parameter("central_meridian").setValue(110.0);
+        params.parameter("false_easting").setValue(3900000.0);
+        assertBulkEquals(params, grid(15, 80, 60, 160));
+    }
+
+    @Test
+    public void testLambertConformal() throws Exception {
+        final ParameterValueGroup params = parameters("Lambert_Conformal_Conic_2SP", B);
+        params.parameter("central_meridian").setValue(3.0);
+        params.parameter("latitude_of_origin").setValue(46.5);
+        params.parameter("standard_parallel_1").setValue(49.0);
+        params.parameter("standard_parallel_2").setValue(44.0);
+        params.parameter("false_easting").setValue(700000.0);
+        params.parameter("false_northing").setValue(6600000.0);
+        assertBulkEquals(params, grid(40, 55, -5, 10));
+    }
+
+    @Test
+    public void testAlbersEqualArea() throws Exception {
+        final ParameterValueGroup params = parameters("Albers_Conic_Equal_Area", B);
+        params.parameter("central_meridian").setValue(-96.0);
+        params.parameter("latitude_of_origin").setValue(23.0);
+        params.parameter("standard_parallel_1").setValue(29.5);
+        params.parameter("standard_parallel_2").setValue(45.5);
+        assertBulkEquals(params, grid(20, 60, -130, -60));
+
+        final ParameterValueGroup sphere = parameters("Albers_Conic_Equal_Area", A);
+        sphere.parameter("central_meridian").setValue(-96.0);
+        sphere.parameter("standard_parallel_1").setValue(29.5);
+        sphere.parameter("standard_parallel_2").setValue(45.5);
+        assertBulkEquals(sphere, grid(20, 60, -130, -60));
+    }
+
+    @Test
+    public void testPolarStereographic() throws Exception {
+        final ParameterValueGroup params = parameters("Polar_Stereographic", B);
+        params.parameter("latitude_of_origin").setValue(90.0);
+        params.parameter("central_meridian").setValue(-45.0);
+        assertBulkEquals(params, grid(50, 89, -179, 179));
+
+        final ParameterValueGroup south = parameters("Polar_Stereographic", B);
+        south.parameter("latitude_of_origin").setValue(-90.0);
+        assertBulkEquals(south, grid(-89, -50, -179, 179));
+
+        final ParameterValueGroup sphere = parameters("Polar_Stereographic", A);
+        sphere.parameter("latitude_of_origin").setValue(90.0);
+        assertBulkEquals(sphere, grid(50, 89, -179, 179));
+    }
+
+    @Test
+    public void testFailuresSetToNaN() throws Exception {
+        final ParameterValueGroup params = parameters("Mercator_1SP", B);
+        final MathTransform2D mt = (MathTransform2D) mtFactory.createParameterizedTransform(params);
+        final double[] points = {10, 45, 10, 90, 20, -30};
+        try {
+            mt.transform(points, 0, points, 0, 3);
+            fail("The pole should not be projected");
+        } catch (ProjectionException e) {
+            // expected
+        }
+        assertFalse(Double.isNaN(points[0]));
+        assertTrue(Double.isNaN(points[2]));
+        assertTrue(Double.isNaN(points[3]));
+        assertFalse(Double.isNaN(points[4]));
+    }
+}
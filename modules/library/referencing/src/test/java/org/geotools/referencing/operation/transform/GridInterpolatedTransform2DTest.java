@@ -0,0 +1,112 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.operation.transform;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.MathTransformFactory;
+
+import org.geotools.referencing.ReferencingFactoryFinder;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link GridInterpolatedTransform2D} class.
+ *
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class GridInterpolatedTransform2DTest {
+    /**
+     * The exact transform, a UTM zone 32 like projection
+     */
+    private MathTransform2D exact;
+
+    @Before
+    public void setUp() throws Exception {
+        final MathTransformFactory factory = ReferencingFactoryFinder.getMathTransformFactory(null);
+        final ParameterValueGroup param = factory.getDefaultParameters("Transverse_Mercator");
+        param.parameter("semi_major").setValue(6378137.0);
+        param.parameter("semi_minor").setValue(6356752.314245179);
+        param.parameter("central_meridian").setValue(9.0);
+        param.parameter("scale_factor").setValue(0.9996);
+        param.parameter("false_easting").setValue(500000.0);
+        exact = (MathTransform2D) factory.createParameterizedTransform(param);
+    }
+
+    @Test
+    public void testWithinTolerance() throws Exception {
+        final double tolerance = 1.0;
+        final Rectangle2D domain = new Rectangle2D.Double(5, 40, 8, 10);
+        final MathTransform2D approx = GridInterpolatedTransform2D.create(exact, domain, tolerance);
+        assertTrue(approx instanceof GridInterpolatedTransform2D);
+        assertSame(exact, ((GridInterpolatedTransform2D) approx).getTransform());
+
+        final Random random = new Random(5127);
+        final int numPts = 10000;
+        final double[] points = new double[numPts * 2];
+        for (int i = 0; i < points.length; i += 2) {
+            points[i] = domain.getMinX() + random.nextDouble() * domain.getWidth();
+            points[i + 1] = domain.getMinY() + random.nextDouble() * domain.getHeight();
+        }
+        final double[] expected = new double[points.length];
+        final double[] actual = new double[points.length];
+        exact.transform(points, 0, expected, 0, numPts);
+        approx.transform(points, 0, actual, 0, numPts);
+        for (int i = 0; i < points.length; i += 2) {
+            final double dx = expected[i] - actual[i];
+            final double dy = expected[i + 1] - actual[i + 1];
+            assertTrue("Point " + i / 2 + " out of tolerance", Math.hypot(dx, dy) < tolerance);
+        }
+
+        // the inverse is the exact one
+        assertEquals(exact.inverse(), approx.inverse());
+    }
+
+    @Test
+    public void testOutsideDomain() throws Exception {
+        final Rectangle2D domain = new Rectangle2D.Double(5, 40, 8, 10);
+        final MathTransform2D approx = GridInterpolatedTransform2D.create(exact, domain, 1.0);
+
+        // in place, overlapping, with a point outside of the domain that uses the exact transform
+        final double[] points = new double[] { 0, 0, 15, 55, 7, 45 };
+        final double[] expected = new double[4];
+        exact.transform(points, 2, expected, 0, 2);
+        approx.transform(points, 2, points, 0, 2);
+        assertEquals(expected[0], points[0], 1e-6);
+        assertEquals(expected[1], points[1], 1e-6);
+        assertEquals(expected[2], points[2], 1.0);
+        assertEquals(expected[3], points[3], 1.0);
+    }
+
+    @Test
+    public void testNoApproximation() throws Exception {
+        final Rectangle2D domain = new Rectangle2D.Double(5, 40, 8, 10);
+        assertSame(exact, GridInterpolatedTransform2D.create(exact, domain, 0));
+        assertSame(exact, GridInterpolatedTransform2D.create(exact, new Rectangle2D.Double(), 1));
+
+        final MathTransform2D affine = new AffineTransform2D(AffineTransform.getScaleInstance(2, 3));
+        assertSame(affine, GridInterpolatedTransform2D.create(affine, domain, 1));
+    }
+}
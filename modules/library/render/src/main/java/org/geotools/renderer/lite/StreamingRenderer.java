@@ -25,6 +25,7 @@ import java.awt.Shape;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
 import java.io.IOException;
@@ -90,6 +91,7 @@ import org.geotools.parameter.Parameter;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.operation.matrix.XAffineTransform;
 import org.geotools.referencing.operation.transform.ConcatenatedTransform;
+import org.geotools.referencing.operation.transform.GridInterpolatedTransform2D;
 import org.geotools.referencing.operation.transform.ProjectiveTransform;
 import org.geotools.renderer.GTRenderer;
 import org.geotools.renderer.RenderListener;
@@ -259,7 +261,7 @@ public final class StreamingRenderer implements GTRenderer {
      * The ratio required to scale the features to be rendered so that they fit
      * into the output space.
      */
-    private double scaleDenominator;
+    double scaleDenominator;
 
     /** Maximum displacement for generalization during rendering */
     private double generalizationDistance = 0.8;
@@ -357,6 +359,15 @@ public final class StreamingRenderer implements GTRenderer {
     public static final String VECTOR_RENDERING_KEY = "vectorRenderingEnabled";
     private static boolean VECTOR_RENDERING_ENABLED_DEFAULT = false;
 
+    /**
+     * The maximum error, in pixels, allowed when reprojecting geometries. When set to a
+     * positive value the reprojection is approximated by interpolating the exact transform
+     * on a grid covering the map extent, which is much faster than running every vertex
+     * through the full transformation chain. Disabled (exact reprojection) by default, and not
+     * used when the advanced projection handling is enabled.
+     */
+    public static final String TRANSFORM_TOLERANCE_KEY = "transformTolerance";
+
     public static final String LABEL_CACHE_KEY = "labelCache";
     public static final String DPI_KEY = "dpi";
     public static final String DECLARED_SCALE_DENOM_KEY = "declaredScaleDenominator";
@@ -617,7 +628,7 @@ public final class StreamingRenderer implements GTRenderer {
                 worldToScreen);
     }
 
-    private double computeScale(ReferencedEnvelope envelope, Rectangle paintArea, 
+    double computeScale(ReferencedEnvelope envelope, Rectangle paintArea, 
             AffineTransform worldToScreen, Map hints) {
         if(getScaleComputationMethod().equals(SCALE_ACCURATE)) {
             try {
@@ -1126,7 +1137,7 @@ public final class StreamingRenderer implements GTRenderer {
      * Builds a full transform going from the source CRS to the denstionan CRS
      * and from there to the screen
      */
-    private MathTransform2D buildFullTransform(CoordinateReferenceSystem sourceCRS,
+    MathTransform2D buildFullTransform(CoordinateReferenceSystem sourceCRS,
             CoordinateReferenceSystem destCRS, AffineTransform worldToScreenTransform)
     throws FactoryException {
         MathTransform2D mt = buildTransform(sourceCRS, destCRS);
@@ -1142,6 +1153,27 @@ public final class StreamingRenderer implements GTRenderer {
         return mt;
     }
 
+    /**
+     * Approximates the full transform over the map extent if a transform tolerance has been
+     * set, returns the transform unchanged otherwise
+     */
+    private MathTransform2D approximateTransform(MathTransform2D fullTransform,
+            CoordinateReferenceSystem sourceCRS) {
+        double tolerance = getTransformTolerance();
+        if (tolerance <= 0 || sourceCRS == null) {
+            return fullTransform;
+        }
+        try {
+            ReferencedEnvelope domain = mapExtent.transform(sourceCRS, true);
+            return GridInterpolatedTransform2D.create(fullTransform, new Rectangle2D.Double(
+                    domain.getMinX(), domain.getMinY(), domain.getWidth(), domain.getHeight()),
+                    tolerance);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not approximate the transform, using the exact one", e);
+            return fullTransform;
+        }
+    }
+
     /**
      * Builds the transform from sourceCRS to destCRS
      * @param sourceCRS
@@ -1215,7 +1247,7 @@ public final class StreamingRenderer implements GTRenderer {
      * @param q
      */
 
-    private void processRuleForQuery(LiteFeatureTypeStyle[] styles, Query q) {
+    void processRuleForQuery(LiteFeatureTypeStyle[] styles, Query q) {
         try {
 
             // first we check to see if there are >
@@ -1330,6 +1362,19 @@ public final class StreamingRenderer implements GTRenderer {
         return Boolean.TRUE.equals(result);
     }
 
+    /**
+     * Returns the reprojection tolerance in pixels, or zero if the reprojection
+     * has to be exact. See {@link #TRANSFORM_TOLERANCE_KEY}
+     */
+    private double getTransformTolerance() {
+        if (rendererHints == null)
+            return 0;
+        Object result = rendererHints.get(TRANSFORM_TOLERANCE_KEY);
+        if (result instanceof Number)
+            return ((Number) result).doubleValue();
+        return 0;
+    }
+
     /**
      * Checks if vector rendering is enabled or not.
      * See {@link SLDStyleFactory#isVectorRenderingEnabled()} for a full explanation.
@@ -1493,7 +1538,7 @@ public final class StreamingRenderer implements GTRenderer {
      * @throws IllegalFilterException
      *             if something goes wrong creating the filter
      */
-    private Filter createBBoxFilters(FeatureType schema, List<PropertyName> attributes,
+    Filter createBBoxFilters(FeatureType schema, List<PropertyName> attributes,
             List<ReferencedEnvelope> bboxes) throws IllegalFilterException {
         Filter filter = Filter.INCLUDE;
         final int length = attributes.size();
@@ -1684,14 +1729,14 @@ public final class StreamingRenderer implements GTRenderer {
     }
 
 
-    private boolean isFeatureTypeStyleActive(FeatureType ftype, FeatureTypeStyle fts) {
+    boolean isFeatureTypeStyleActive(FeatureType ftype, FeatureTypeStyle fts) {
         // TODO: find a complex feature equivalent for this check
         return fts.featureTypeNames().isEmpty() || ((ftype.getName().getLocalPart() != null)
                 && (ftype.getName().getLocalPart().equalsIgnoreCase(fts.getFeatureTypeName()) || 
                         FeatureTypes.isDecendedFrom(ftype, null, fts.getFeatureTypeName())));
     }
 
-    private List[] splitRules(FeatureTypeStyle fts) {
+    List[] splitRules(FeatureTypeStyle fts) {
         Rule[] rules;
         List<Rule> ruleList = new ArrayList<Rule>();
         List<Rule> elseRuleList = new ArrayList<Rule>();
@@ -2936,6 +2981,9 @@ public final class StreamingRenderer implements GTRenderer {
                         crsTransform = buildTransform(sa.crs, destinationCrs);
                         atTransform = (MathTransform2D) ProjectiveTransform.create(worldToScreenTransform);
                         fullTransform = buildFullTransform(sa.crs, destinationCrs, at);
+                        if (crsTransform != null && projectionHandler == null) {
+                            fullTransform = approximateTransform(fullTransform, sa.crs);
+                        }
                     } catch (Exception e) {
                         // fall through
                         LOGGER.log(Level.WARNING, e.getLocalizedMessage(), e);
@@ -0,0 +1,569 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Encodes features into a Mapbox Vector Tile (version 2 of the specification).
+ * <p>
+ * Geometries are expected in tile coordinates, that is, with the origin in the upper left corner
+ * of the tile, the y axis pointing down and the tile spanning from 0 to {@link #getExtent()} on
+ * both axes. They are rounded to the integer grid, repeated points are removed and polygon rings
+ * are oriented as the specification mandates. Clipping is up to the caller, see
+ * {@link VectorTileRenderer}.
+ * </p>
+ * <p>
+ * The protocol buffer messages are written directly, keys and values are shared among the
+ * features of the same layer.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class VectorTileEncoder {
+
+    /**
+     * The default tile extent
+     */
+    public static final int DEFAULT_EXTENT = 4096;
+
+    static final int VERSION = 2;
+
+    // geometry types
+    static final int POINT = 1;
+
+    static final int LINESTRING = 2;
+
+    static final int POLYGON = 3;
+
+    // geometry commands
+    static final int MOVE_TO = 1;
+
+    static final int LINE_TO = 2;
+
+    static final int CLOSE_PATH = 7;
+
+    // protobuf wire types
+    static final int VARINT = 0;
+
+    static final int FIXED64 = 1;
+
+    static final int LENGTH_DELIMITED = 2;
+
+    static final int FIXED32 = 5;
+
+    int extent;
+
+    Map<String, Layer> layers = new LinkedHashMap<String, Layer>();
+
+    /**
+     * Builds an encoder with the {@link #DEFAULT_EXTENT}
+     */
+    public VectorTileEncoder() {
+        this(DEFAULT_EXTENT);
+    }
+
+    /**
+     * Builds an encoder for tiles of the specified extent
+     */
+    public VectorTileEncoder(int extent) {
+        if (extent <= 0) {
+            throw new IllegalArgumentException("The tile extent must be positive: " + extent);
+        }
+        this.extent = extent;
+    }
+
+    public int getExtent() {
+        return extent;
+    }
+
+    /**
+     * Adds a feature to the specified layer, creating the layer if needed. Geometry collections
+     * are split in one feature per member. Features whose geometry collapses once rounded to the
+     * tile grid are skipped.
+     *
+     * @param layerName the layer name
+     * @param attributes the feature attributes, null values are skipped
+     * @param geometry the geometry, in tile coordinates
+     * @param id the feature id, or a negative value if the feature has none
+     * @return true if the feature has been added
+     */
+    public boolean addFeature(String layerName, Map<String, ?> attributes, Geometry geometry,
+            long id) {
+        if (geometry == null || geometry.isEmpty()) {
+            return false;
+        }
+        if (geometry.getClass().equals(GeometryCollection.class)) {
+            boolean added = false;
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                added |= addFeature(layerName, attributes, geometry.getGeometryN(i), id);
+            }
+            return added;
+        }
+
+        GeometryWriter writer = new GeometryWriter();
+        int type;
+        if (geometry instanceof Point || geometry instanceof MultiPoint) {
+            type = POINT;
+            writer.points(geometry);
+        } else if (geometry instanceof LineString || geometry instanceof MultiLineString) {
+            type = LINESTRING;
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                writer.line(((LineString) geometry.getGeometryN(i)).getCoordinateSequence());
+            }
+        } else if (geometry instanceof Polygon || geometry instanceof MultiPolygon) {
+            type = POLYGON;
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                writer.polygon((Polygon) geometry.getGeometryN(i));
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported geometry type "
+                    + geometry.getGeometryType());
+        }
+        if (writer.size == 0) {
+            return false;
+        }
+
+        Layer layer = layers.get(layerName);
+        if (layer == null) {
+            layer = new Layer(layerName);
+            layers.put(layerName, layer);
+        }
+        Feature feature = new Feature();
+        feature.id = id;
+        feature.type = type;
+        feature.geometry = writer.toArray();
+        if (attributes != null) {
+            feature.tags = new int[attributes.size() * 2];
+            for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+                Object value = normalize(entry.getValue());
+                if (entry.getKey() == null || value == null) {
+                    continue;
+                }
+                feature.tags[feature.tagCount++] = layer.key(entry.getKey());
+                feature.tags[feature.tagCount++] = layer.value(value);
+            }
+        }
+        layer.features.add(feature);
+        return true;
+    }
+
+    /**
+     * Turns the attribute values into the types a tile can hold, integral numbers become longs
+     * so that they are shared no matter their original type
+     */
+    static Object normalize(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean
+                || value instanceof Double || value instanceof Float) {
+            return value;
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            return Long.valueOf(((Number) value).longValue());
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+            return Long.valueOf(((BigInteger) value).longValue());
+        } else if (value instanceof Number) {
+            return Double.valueOf(((Number) value).doubleValue());
+        } else {
+            return value.toString();
+        }
+    }
+
+    /**
+     * Returns true if no feature has been added yet
+     */
+    public boolean isEmpty() {
+        return layers.isEmpty();
+    }
+
+    /**
+     * Returns the encoded tile
+     */
+    public byte[] encode() {
+        ProtobufOutput tile = new ProtobufOutput();
+        for (Layer layer : layers.values()) {
+            tile.writeMessage(3, layer.encode(extent));
+        }
+        return tile.toByteArray();
+    }
+
+    /**
+     * Writes the encoded tile to the stream. The stream is not closed.
+     */
+    public void encode(OutputStream out) throws IOException {
+        out.write(encode());
+    }
+
+    /**
+     * A vector tile layer, holding the features and the keys and values they share
+     */
+    static class Layer {
+        String name;
+
+        List<Feature> features = new ArrayList<Feature>();
+
+        Map<String, Integer> keys = new LinkedHashMap<String, Integer>();
+
+        Map<Object, Integer> values = new LinkedHashMap<Object, Integer>();
+
+        Layer(String name) {
+            this.name = name;
+        }
+
+        int key(String key) {
+            Integer index = keys.get(key);
+            if (index == null) {
+                index = keys.size();
+                keys.put(key, index);
+            }
+            return index;
+        }
+
+        int value(Object value) {
+            Integer index = values.get(value);
+            if (index == null) {
+                index = values.size();
+                values.put(value, index);
+            }
+            return index;
+        }
+
+        byte[] encode(int extent) {
+            ProtobufOutput out = new ProtobufOutput();
+            out.writeVarint(15, VERSION);
+            out.writeString(1, name);
+            for (Feature feature : features) {
+                out.writeMessage(2, feature.encode());
+            }
+            for (String key : keys.keySet()) {
+                out.writeString(3, key);
+            }
+            for (Object value : values.keySet()) {
+                out.writeMessage(4, encodeValue(value));
+            }
+            out.writeVarint(5, extent);
+            return out.toByteArray();
+        }
+
+        static byte[] encodeValue(Object value) {
+            ProtobufOutput out = new ProtobufOutput();
+            if (value instanceof String) {
+                out.writeString(1, (String) value);
+            } else if (value instanceof Float) {
+                out.writeTag(2, FIXED32);
+                out.writeFixed32(Float.floatToIntBits((Float) value));
+            } else if (value instanceof Double) {
+                out.writeTag(3, FIXED64);
+                out.writeFixed64(Double.doubleToLongBits((Double) value));
+            } else if (value instanceof Long) {
+                long l = (Long) value;
+                if (l >= 0) {
+                    out.writeVarint(5, l);
+                } else {
+                    out.writeVarint(6, zigZag(l));
+                }
+            } else if (value instanceof Boolean) {
+                out.writeVarint(7, ((Boolean) value) ? 1 : 0);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * An encoded feature
+     */
+    static class Feature {
+        long id = -1;
+
+        int type;
+
+        int[] tags;
+
+        int tagCount;
+
+        int[] geometry;
+
+        byte[] encode() {
+            ProtobufOutput out = new ProtobufOutput();
+            if (id >= 0) {
+                out.writeVarint(1, id);
+            }
+            if (tagCount > 0) {
+                out.writePacked(2, tags, tagCount);
+            }
+            out.writeVarint(3, type);
+            out.writePacked(4, geometry, geometry.length);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Builds the command stream of a feature geometry. The cursor is shared among all the parts
+     * of the geometry, as the specification requires.
+     */
+    static class GeometryWriter {
+        int[] commands = new int[64];
+
+        int size;
+
+        int cursorX;
+
+        int cursorY;
+
+        // the points of the part being encoded, rounded and without repetitions
+        int[] xs = new int[64];
+
+        int[] ys = new int[64];
+
+        int count;
+
+        void points(Geometry geometry) {
+            count = 0;
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                Point point = (Point) geometry.getGeometryN(i);
+                if (!point.isEmpty()) {
+                    // points are not collapsed, they can be legitimately repeated
+                    addPoint((int) Math.round(point.getX()), (int) Math.round(point.getY()));
+                }
+            }
+            if (count == 0) {
+                return;
+            }
+            add(command(MOVE_TO, count));
+            for (int i = 0; i < count; i++) {
+                moveCursor(xs[i], ys[i]);
+            }
+        }
+
+        void line(CoordinateSequence cs) {
+            collect(cs, false);
+            if (count < 2) {
+                return;
+            }
+            add(command(MOVE_TO, 1));
+            moveCursor(xs[0], ys[0]);
+            add(command(LINE_TO, count - 1));
+            for (int i = 1; i < count; i++) {
+                moveCursor(xs[i], ys[i]);
+            }
+        }
+
+        void polygon(Polygon polygon) {
+            collect(polygon.getExteriorRing().getCoordinateSequence(), true);
+            long area = area();
+            if (count < 3 || area == 0) {
+                // the exterior ring collapsed, so does the whole polygon
+                return;
+            }
+            ring(area < 0);
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                collect(polygon.getInteriorRingN(i).getCoordinateSequence(), true);
+                area = area();
+                if (count >= 3 && area != 0) {
+                    ring(area > 0);
+                }
+            }
+        }
+
+        /**
+         * Writes the collected ring, exterior rings must have a positive area and interior ones
+         * a negative one
+         */
+        void ring(boolean reverse) {
+            if (reverse) {
+                for (int i = 0, j = count - 1; i < j; i++, j--) {
+                    int x = xs[i];
+                    xs[i] = xs[j];
+                    xs[j] = x;
+                    int y = ys[i];
+                    ys[i] = ys[j];
+                    ys[j] = y;
+                }
+            }
+            add(command(MOVE_TO, 1));
+            moveCursor(xs[0], ys[0]);
+            add(command(LINE_TO, count - 1));
+            for (int i = 1; i < count; i++) {
+                moveCursor(xs[i], ys[i]);
+            }
+            add(command(CLOSE_PATH, 1));
+        }
+
+        /**
+         * Twice the area of the collected ring, according to the surveyor's formula
+         */
+        long area() {
+            long area = 0;
+            for (int i = 0; i < count; i++) {
+                int j = (i + 1) % count;
+                area += (long) xs[i] * ys[j] - (long) xs[j] * ys[i];
+            }
+            return area;
+        }
+
+        /**
+         * Collects the points of a line or ring, rounded and without consecutive repetitions. The
+         * closing point of rings is removed, as it is implied by the ClosePath command.
+         */
+        void collect(CoordinateSequence cs, boolean ring) {
+            count = 0;
+            for (int i = 0; i < cs.size(); i++) {
+                int x = (int) Math.round(cs.getOrdinate(i, 0));
+                int y = (int) Math.round(cs.getOrdinate(i, 1));
+                if (count == 0 || xs[count - 1] != x || ys[count - 1] != y) {
+                    addPoint(x, y);
+                }
+            }
+            if (ring) {
+                while (count > 1 && xs[count - 1] == xs[0] && ys[count - 1] == ys[0]) {
+                    count--;
+                }
+            }
+        }
+
+        void addPoint(int x, int y) {
+            if (count == xs.length) {
+                int[] newXs = new int[count * 2];
+                int[] newYs = new int[count * 2];
+                System.arraycopy(xs, 0, newXs, 0, count);
+                System.arraycopy(ys, 0, newYs, 0, count);
+                xs = newXs;
+                ys = newYs;
+            }
+            xs[count] = x;
+            ys[count] = y;
+            count++;
+        }
+
+        void moveCursor(int x, int y) {
+            add((int) zigZag(x - cursorX));
+            add((int) zigZag(y - cursorY));
+            cursorX = x;
+            cursorY = y;
+        }
+
+        void add(int value) {
+            if (size == commands.length) {
+                int[] newCommands = new int[size * 2];
+                System.arraycopy(commands, 0, newCommands, 0, size);
+                commands = newCommands;
+            }
+            commands[size++] = value;
+        }
+
+        int[] toArray() {
+            int[] result = new int[size];
+            System.arraycopy(commands, 0, result, 0, size);
+            return result;
+        }
+
+        static int command(int id, int count) {
+            return (id & 0x7) | (count << 3);
+        }
+    }
+
+    static long zigZag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    /**
+     * Writes protocol buffer fields into a byte array
+     */
+    static class ProtobufOutput extends ByteArrayOutputStream {
+
+        void writeTag(int field, int wireType) {
+            writeRawVarint((field << 3) | wireType);
+        }
+
+        void writeVarint(int field, long value) {
+            writeTag(field, VARINT);
+            writeRawVarint(value);
+        }
+
+        void writeString(int field, String value) {
+            try {
+                writeMessage(field, value.getBytes("UTF-8"));
+            } catch (IOException e) {
+                // UTF-8 is always supported
+                throw new RuntimeException(e);
+            }
+        }
+
+        void writeMessage(int field, byte[] message) {
+            writeTag(field, LENGTH_DELIMITED);
+            writeRawVarint(message.length);
+            write(message, 0, message.length);
+        }
+
+        void writePacked(int field, int[] values, int length) {
+            int bytes = 0;
+            for (int i = 0; i < length; i++) {
+                bytes += varintSize(values[i] & 0xFFFFFFFFL);
+            }
+            writeTag(field, LENGTH_DELIMITED);
+            writeRawVarint(bytes);
+            for (int i = 0; i < length; i++) {
+                writeRawVarint(values[i] & 0xFFFFFFFFL);
+            }
+        }
+
+        void writeFixed32(int value) {
+            for (int i = 0; i < 4; i++) {
+                write((value >>> (i * 8)) & 0xFF);
+            }
+        }
+
+        void writeFixed64(long value) {
+            for (int i = 0; i < 8; i++) {
+                write((int) (value >>> (i * 8)) & 0xFF);
+            }
+        }
+
+        void writeRawVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        static int varintSize(long value) {
+            int size = 1;
+            while ((value & ~0x7FL) != 0) {
+                size++;
+                value >>>= 7;
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import java.awt.RenderingHints;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.Hints;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.filter.visitor.SimplifyingFilterVisitor;
+import org.geotools.geometry.jts.Decimator;
+import org.geotools.geometry.jts.GeometryClipper;
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.Layer;
+import org.geotools.map.MapContent;
+import org.geotools.referencing.CRS;
+import org.geotools.renderer.ScreenMap;
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.opengis.feature.Feature;
+import org.opengis.feature.GeometryAttribute;
+import org.opengis.feature.Property;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Produces Mapbox Vector Tiles out of the layers of a {@link MapContent}.
+ * <p>
+ * The features are selected the same way {@link StreamingRenderer} does: only the layers having
+ * rules active at the tile scale are encoded, the data is queried with the tile bounding box and
+ * the rule filters, and only the features matched by at least one rule are kept. The geometries
+ * are then reprojected to the tile grid, generalized, dropped if they would share a single pixel
+ * with a previous feature, clipped to the tile plus a buffer and encoded with a
+ * {@link VectorTileEncoder}. All the non geometric attributes are kept, each layer is named after
+ * its feature type.
+ * </p>
+ * <p>
+ * Rendering transformations and the projection handlers are not supported, the tile envelope is
+ * expected to be in a CRS the data can be reprojected to without wrapping.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class VectorTileRenderer {
+
+    private static final Logger LOGGER = org.geotools.util.logging.Logging.getLogger("org.geotools.rendering");
+
+    private final static FilterFactory2 filterFactory = CommonFactoryFinder.getFilterFactory2(null);
+
+    MapContent mapContent;
+
+    int extent = VectorTileEncoder.DEFAULT_EXTENT;
+
+    int buffer = 64;
+
+    int tileSize = 256;
+
+    double generalizationDistance = 0.8;
+
+    Map rendererHints;
+
+    public VectorTileRenderer(MapContent mapContent) {
+        this.mapContent = mapContent;
+    }
+
+    public int getExtent() {
+        return extent;
+    }
+
+    /**
+     * Sets the size of the tile grid, 4096 by default
+     */
+    public void setExtent(int extent) {
+        this.extent = extent;
+    }
+
+    public int getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Sets the amount of data kept around the tile, in tile grid units, so that clients can
+     * draw the features crossing the tile border without seams. 64 by default
+     */
+    public void setBuffer(int buffer) {
+        this.buffer = buffer;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Sets the size in pixels the tile will be displayed at, used to compute the scale
+     * denominator, the generalization distance and the size of the screen map. 256 by default
+     */
+    public void setTileSize(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    public double getGeneralizationDistance() {
+        return generalizationDistance;
+    }
+
+    /**
+     * Sets the generalization distance in display pixels, see
+     * {@link StreamingRenderer#setGeneralizationDistance(double)}. 0.8 by default
+     */
+    public void setGeneralizationDistance(double generalizationDistance) {
+        this.generalizationDistance = generalizationDistance;
+    }
+
+    public Map getRendererHints() {
+        return rendererHints;
+    }
+
+    /**
+     * Sets the renderer hints, the ones used by {@link StreamingRenderer} to compute the scale
+     * and to build the queries are honored
+     */
+    public void setRendererHints(Map rendererHints) {
+        this.rendererHints = rendererHints;
+    }
+
+    /**
+     * Encodes the tile covering the specified envelope
+     */
+    public byte[] render(ReferencedEnvelope envelope) throws IOException {
+        return encode(envelope).encode();
+    }
+
+    /**
+     * Encodes the tile covering the specified envelope into the stream. The stream is not closed
+     */
+    public void render(ReferencedEnvelope envelope, OutputStream out) throws IOException {
+        encode(envelope).encode(out);
+    }
+
+    VectorTileEncoder encode(ReferencedEnvelope envelope) throws IOException {
+        if (envelope.getCoordinateReferenceSystem() == null) {
+            envelope = new ReferencedEnvelope(envelope, mapContent.getCoordinateReferenceSystem());
+        }
+        VectorTileEncoder encoder = new VectorTileEncoder(extent);
+        for (Layer layer : mapContent.layers()) {
+            if (!layer.isVisible() || layer.getFeatureSource() == null
+                    || layer.getStyle() == null) {
+                continue;
+            }
+            try {
+                encodeLayer(layer, envelope, encoder);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw (IOException) new IOException("Failed to encode layer "
+                        + layer.getTitle()).initCause(e);
+            }
+        }
+        return encoder;
+    }
+
+    void encodeLayer(Layer layer, ReferencedEnvelope envelope, VectorTileEncoder encoder)
+            throws Exception {
+        FeatureSource<FeatureType, Feature> source = (FeatureSource<FeatureType, Feature>) layer
+                .getFeatureSource();
+        FeatureType schema = source.getSchema();
+        if (schema.getGeometryDescriptor() == null) {
+            return;
+        }
+
+        // the renderer only serves to share the scale computation, rule selection and query
+        // building with the raster output
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setRendererHints(rendererHints);
+        Rectangle pixelArea = new Rectangle(tileSize, tileSize);
+        AffineTransform worldToPixel = RendererUtilities.worldToScreenTransform(envelope,
+                pixelArea);
+        renderer.scaleDenominator = renderer.computeScale(envelope, pixelArea, worldToPixel,
+                rendererHints);
+
+        LiteFeatureTypeStyle[] styles = getActiveStyles(renderer, layer.getStyle(), schema);
+        if (styles.length == 0) {
+            return;
+        }
+
+        // query the tile and its buffer
+        CoordinateReferenceSystem mapCRS = envelope.getCoordinateReferenceSystem();
+        CoordinateReferenceSystem featCRS = schema.getCoordinateReferenceSystem();
+        ReferencedEnvelope buffered = new ReferencedEnvelope(envelope);
+        buffered.expandBy(envelope.getWidth() * buffer / extent, envelope.getHeight() * buffer
+                / extent);
+        List<ReferencedEnvelope> envelopes;
+        if (mapCRS != null && featCRS != null && !CRS.equalsIgnoreMetadata(featCRS, mapCRS)) {
+            envelopes = Collections.singletonList(buffered.transform(featCRS, true, 10));
+        } else {
+            envelopes = Collections.singletonList(buffered);
+        }
+        List<PropertyName> attributes = new ArrayList<PropertyName>();
+        for (PropertyDescriptor pd : schema.getDescriptors()) {
+            attributes.add(filterFactory.property(pd.getName()));
+        }
+        Query query = new Query(schema.getName().getLocalPart());
+        query.setFilter(renderer.createBBoxFilters(schema, attributes, envelopes));
+        renderer.processRuleForQuery(styles, query);
+        Query definitionQuery = layer.getQuery();
+        if (definitionQuery != null && definitionQuery != Query.ALL) {
+            query = new Query(DataUtilities.mixQueries(definitionQuery, query, "vectorTiles"));
+        }
+        query.setCoordinateSystem(featCRS);
+        query.setFilter((Filter) query.getFilter().accept(new SimplifyingFilterVisitor(), null));
+
+        // transformations to the display pixels and to the tile grid
+        MathTransform toPixel = renderer.buildFullTransform(featCRS, mapCRS, worldToPixel);
+        // the screen transform maps the pixel centers, the tile grid starts at the tile corner
+        AffineTransform worldToTile = AffineTransform.getTranslateInstance(0.5, 0.5);
+        worldToTile.concatenate(RendererUtilities.worldToScreenTransform(envelope, new Rectangle(
+                extent, extent)));
+        MathTransform toTile = renderer.buildFullTransform(featCRS, mapCRS, worldToTile);
+        double[] spans = Decimator.computeGeneralizationDistances(toPixel.inverse(), pixelArea,
+                generalizationDistance);
+        Decimator decimator = new Decimator(spans[0], spans[1]);
+        int pixelBuffer = (int) Math.ceil(buffer * (double) tileSize / extent);
+        ScreenMap screenMap = new ScreenMap(-pixelBuffer, -pixelBuffer, tileSize + 2
+                * pixelBuffer, tileSize + 2 * pixelBuffer, toPixel);
+        screenMap.setSpans(spans[0], spans[1]);
+        GeometryClipper clipper = new GeometryClipper(new Envelope(-buffer, extent + buffer,
+                -buffer, extent + buffer));
+
+        // fast and compact geometries, as the renderer does
+        LiteCoordinateSequenceFactory csFactory = new LiteCoordinateSequenceFactory();
+        GeometryFactory gFactory = new SimpleGeometryFactory(csFactory);
+        Hints hints = new Hints(Hints.JTS_COORDINATE_SEQUENCE_FACTORY, csFactory);
+        hints.put(Hints.JTS_GEOMETRY_FACTORY, gFactory);
+        hints.put(Hints.FEATURE_2D, Boolean.TRUE);
+        Set<RenderingHints.Key> fsHints = source.getSupportedHints();
+        if (fsHints.contains(Hints.GEOMETRY_DISTANCE)) {
+            hints.put(Hints.GEOMETRY_DISTANCE, spans[0] < spans[1] ? spans[0] : spans[1]);
+        }
+        if (query.getHints() == null) {
+            query.setHints(hints);
+        } else {
+            query.getHints().putAll(hints);
+        }
+
+        String layerName = schema.getName().getLocalPart();
+        FeatureCollection<FeatureType, Feature> features = source.getFeatures(query);
+        FeatureIterator<Feature> it = features.features();
+        try {
+            while (it.hasNext()) {
+                Feature feature = it.next();
+                if (!matches(styles, feature)) {
+                    continue;
+                }
+                GeometryAttribute ga = feature.getDefaultGeometryProperty();
+                Geometry geometry = ga != null ? (Geometry) ga.getValue() : null;
+                if (geometry == null || geometry.isEmpty()) {
+                    continue;
+                }
+                try {
+                    // tiny features falling on an already used pixel would not be visible
+                    if (!(geometry instanceof Point) && !(geometry instanceof MultiPoint)
+                            && screenMap.checkAndSet(geometry.getEnvelopeInternal())) {
+                        continue;
+                    }
+                    geometry = LiteCoordinateSequence.cloneGeometry(geometry);
+                    decimator.decimateTransformGeneralize(geometry, toTile);
+                    geometry.geometryChanged();
+                    geometry = clipper.clip(geometry, false);
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Skipping feature " + feature.getIdentifier()
+                            + " that could not be transformed", e);
+                    continue;
+                }
+                if (geometry == null || geometry.isEmpty()) {
+                    continue;
+                }
+                encoder.addFeature(layerName, getAttributes(feature), geometry,
+                        getId(feature));
+            }
+        } finally {
+            it.close();
+        }
+    }
+
+    /**
+     * Returns the feature type styles applying to the schema, with the rules active at the
+     * current scale
+     */
+    LiteFeatureTypeStyle[] getActiveStyles(StreamingRenderer renderer, Style style,
+            FeatureType schema) {
+        List<LiteFeatureTypeStyle> result = new ArrayList<LiteFeatureTypeStyle>();
+        for (FeatureTypeStyle fts : style.featureTypeStyles()) {
+            if (!renderer.isFeatureTypeStyleActive(schema, fts)) {
+                continue;
+            }
+            List[] splittedRules = renderer.splitRules(fts);
+            if (splittedRules[0].isEmpty() && splittedRules[1].isEmpty()) {
+                continue;
+            }
+            result.add(new LiteFeatureTypeStyle(null, splittedRules[0], splittedRules[1], null));
+        }
+        return result.toArray(new LiteFeatureTypeStyle[result.size()]);
+    }
+
+    /**
+     * Returns true if the feature is matched by at least one rule, else rules included
+     */
+    boolean matches(LiteFeatureTypeStyle[] styles, Feature feature) {
+        for (LiteFeatureTypeStyle style : styles) {
+            for (Rule r : style.ruleList) {
+                Filter filter = r.getFilter();
+                if (filter == null || filter.evaluate(feature)) {
+                    return true;
+                }
+            }
+            if (style.elseRules.length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Map<String, Object> getAttributes(Feature feature) {
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        for (Property property : feature.getProperties()) {
+            Object value = property.getValue();
+            if (value != null && !(value instanceof Geometry)) {
+                attributes.put(property.getName().getLocalPart(), value);
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Uses the trailing digits of the feature id, the vector tile ids being numeric. Returns -1
+     * if there are none
+     */
+    long getId(Feature feature) {
+        if (feature.getIdentifier() == null) {
+            return -1;
+        }
+        String fid = feature.getIdentifier().getID();
+        int start = fid.length();
+        while (start > 0 && Character.isDigit(fid.charAt(start - 1))) {
+            start--;
+        }
+        if (start == fid.length() || fid.length() - start > 18) {
+            return -1;
+        }
+        return Long.parseLong(fid.substring(start));
+    }
+}
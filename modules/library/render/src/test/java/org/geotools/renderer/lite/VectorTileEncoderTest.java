@@ -0,0 +1,260 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
+
+/**
+ * Checks the {@link VectorTileEncoder} output against the examples of the vector tile
+ * specification
+ *
+ * @source $URL$
+ */
+public class VectorTileEncoderTest {
+
+    WKTReader reader = new WKTReader();
+
+    @Test
+    public void testPoint() throws Exception {
+        assertGeometry(new int[] { 9, 50, 34 }, "POINT(25 17)");
+    }
+
+    @Test
+    public void testMultiPoint() throws Exception {
+        assertGeometry(new int[] { 17, 10, 14, 3, 9 }, "MULTIPOINT((5 7), (3 2))");
+    }
+
+    @Test
+    public void testLine() throws Exception {
+        assertGeometry(new int[] { 9, 4, 4, 18, 0, 16, 16, 0 }, "LINESTRING(2 2, 2 10, 10 10)");
+    }
+
+    @Test
+    public void testMultiLine() throws Exception {
+        assertGeometry(new int[] { 9, 4, 4, 18, 0, 16, 16, 0, 9, 17, 17, 10, 4, 8 },
+                "MULTILINESTRING((2 2, 2 10, 10 10), (1 1, 3 5))");
+    }
+
+    @Test
+    public void testPolygon() throws Exception {
+        assertGeometry(new int[] { 9, 6, 12, 18, 10, 12, 24, 44, 15 },
+                "POLYGON((3 6, 8 12, 20 34, 3 6))");
+    }
+
+    @Test
+    public void testPolygonOrientation() throws Exception {
+        // same as above, the other way around, gets reverted
+        assertGeometry(new int[] { 9, 16, 24, 18, 24, 44, 33, 55, 15 },
+                "POLYGON((3 6, 20 34, 8 12, 3 6))");
+    }
+
+    @Test
+    public void testMultiPolygon() throws Exception {
+        assertGeometry(new int[] { 9, 0, 0, 26, 20, 0, 0, 20, 19, 0, 15, 9, 22, 2, 26, 18, 0,
+                0, 18, 17, 0, 15, 9, 4, 13, 26, 0, 8, 8, 0, 0, 7, 15 },
+                "MULTIPOLYGON(((0 0, 10 0, 10 10, 0 10, 0 0)),"
+                        + "((11 11, 20 11, 20 20, 11 20, 11 11), "
+                        + "(13 13, 13 17, 17 17, 17 13, 13 13)))");
+    }
+
+    @Test
+    public void testQuantization() throws Exception {
+        // points repeated once rounded are removed
+        assertGeometry(new int[] { 9, 4, 4, 18, 0, 16, 16, 0 },
+                "LINESTRING(2.1 1.9, 2.3 2.2, 2 10, 9.8 10.1)");
+    }
+
+    @Test
+    public void testCollapsed() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder();
+        assertFalse(encoder.addFeature("test", null, geometry("LINESTRING(2.1 2, 1.9 2.2)"), 1));
+        assertFalse(encoder.addFeature("test", null,
+                geometry("POLYGON((0 0, 10 0, 20 0, 0 0))"), 2));
+        assertTrue(encoder.isEmpty());
+    }
+
+    @Test
+    public void testTile() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(256);
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        attributes.put("name", "first");
+        attributes.put("count", 3);
+        attributes.put("ignored", null);
+        encoder.addFeature("points", attributes, geometry("POINT(1 2)"), 1);
+        attributes.put("name", "second");
+        attributes.put("count", 3L);
+        attributes.put("ratio", -1.5);
+        encoder.addFeature("points", attributes, geometry("POINT(3 4)"), 2);
+        encoder.addFeature("lines", null, geometry("LINESTRING(0 0, 10 10)"), -1);
+
+        // tile
+        Message tile = new Message(encoder.encode());
+        List<Object> layers = tile.get(3);
+        assertEquals(2, layers.size());
+
+        // the points layer
+        Message points = new Message((byte[]) layers.get(0));
+        assertEquals(2L, points.first(15));
+        assertEquals("points", points.string(1));
+        assertEquals(256L, points.first(5));
+        assertEquals(Arrays.asList("name", "count", "ratio"), points.strings(3));
+        List<Object> values = points.get(4);
+        assertEquals(4, values.size());
+        assertEquals("first", new Message((byte[]) values.get(0)).string(1));
+        assertEquals(3L, new Message((byte[]) values.get(1)).first(5));
+        assertEquals("second", new Message((byte[]) values.get(2)).string(1));
+        assertEquals(Double.doubleToLongBits(-1.5), new Message((byte[]) values.get(3)).first(3));
+        List<Object> features = points.get(2);
+        assertEquals(2, features.size());
+        Message first = new Message((byte[]) features.get(0));
+        assertEquals(1L, first.first(1));
+        assertEquals(1L, first.first(3));
+        assertEquals(Arrays.asList(0L, 0L, 1L, 1L), first.packed(2));
+        assertEquals(Arrays.asList(9L, 2L, 4L), first.packed(4));
+        Message second = new Message((byte[]) features.get(1));
+        assertEquals(2L, second.first(1));
+        assertEquals(Arrays.asList(0L, 2L, 1L, 1L, 2L, 3L), second.packed(2));
+
+        // the lines layer
+        Message lines = new Message((byte[]) layers.get(1));
+        assertEquals("lines", lines.string(1));
+        assertTrue(lines.get(3).isEmpty());
+        Message line = new Message((byte[]) lines.get(2).get(0));
+        assertTrue(line.get(1).isEmpty());
+        assertTrue(line.get(2).isEmpty());
+        assertEquals(2L, line.first(3));
+        assertEquals(Arrays.asList(9L, 0L, 0L, 10L, 20L, 20L), line.packed(4));
+    }
+
+    Geometry geometry(String wkt) throws Exception {
+        return reader.read(wkt);
+    }
+
+    void assertGeometry(int[] expected, String wkt) throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder();
+        assertTrue(encoder.addFeature("test", Collections.<String, Object> emptyMap(),
+                geometry(wkt), 1));
+        VectorTileEncoder.Feature feature = encoder.layers.get("test").features.get(0);
+        assertEquals(Arrays.toString(expected), Arrays.toString(feature.geometry));
+    }
+
+    /**
+     * A minimal protocol buffer decoder, collects the values of each field
+     */
+    static class Message {
+        Map<Integer, List<Object>> fields = new LinkedHashMap<Integer, List<Object>>();
+
+        byte[] bytes;
+
+        int position;
+
+        Message(byte[] bytes) {
+            this.bytes = bytes;
+            while (position < bytes.length) {
+                long tag = varint();
+                int field = (int) (tag >>> 3);
+                Object value;
+                switch ((int) (tag & 0x7)) {
+                case 0:
+                    value = varint();
+                    break;
+                case 1:
+                    value = fixed(8);
+                    break;
+                case 2:
+                    int length = (int) varint();
+                    value = Arrays.copyOfRange(bytes, position, position + length);
+                    position += length;
+                    break;
+                case 5:
+                    value = fixed(4);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected wire type " + (tag & 0x7));
+                }
+                get(field).add(value);
+            }
+        }
+
+        long varint() {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        long fixed(int size) {
+            long result = 0;
+            for (int i = 0; i < size; i++) {
+                result |= (long) (bytes[position++] & 0xFF) << (i * 8);
+            }
+            return result;
+        }
+
+        List<Object> get(int field) {
+            List<Object> values = fields.get(field);
+            if (values == null) {
+                values = new ArrayList<Object>();
+                fields.put(field, values);
+            }
+            return values;
+        }
+
+        Object first(int field) {
+            return get(field).get(0);
+        }
+
+        String string(int field) throws Exception {
+            return new String((byte[]) first(field), "UTF-8");
+        }
+
+        List<String> strings(int field) throws Exception {
+            List<String> result = new ArrayList<String>();
+            for (Object value : get(field)) {
+                result.add(new String((byte[]) value, "UTF-8"));
+            }
+            return result;
+        }
+
+        List<Long> packed(int field) {
+            Message values = new Message(new byte[0]);
+            values.bytes = (byte[]) first(field);
+            List<Long> result = new ArrayList<Long>();
+            while (values.position < values.bytes.length) {
+                result.add(values.varint());
+            }
+            return result;
+        }
+    }
+}
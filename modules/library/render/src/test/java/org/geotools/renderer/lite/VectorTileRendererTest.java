@@ -0,0 +1,130 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.FeatureCollections;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.MapContent;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.renderer.lite.VectorTileEncoderTest.Message;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory;
+
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.io.WKTReader;
+
+/**
+ * Renders vector tiles out of in memory layers and decodes them back
+ *
+ * @source $URL$
+ */
+public class VectorTileRendererTest {
+
+    static final ReferencedEnvelope TILE = new ReferencedEnvelope(0, 10, 0, 10,
+            DefaultGeographicCRS.WGS84);
+
+    StyleBuilder sb = new StyleBuilder();
+
+    FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+
+    WKTReader reader = new WKTReader();
+
+    MapContent map;
+
+    Rule pointRule;
+
+    @Before
+    public void setUp() throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("points");
+        tb.add("geom", Point.class, DefaultGeographicCRS.WGS84);
+        tb.add("name", String.class);
+        SimpleFeatureType pointType = tb.buildFeatureType();
+        SimpleFeatureCollection points = FeatureCollections.newCollection();
+        points.add(SimpleFeatureBuilder.build(pointType, new Object[] {
+                reader.read("POINT(5 5)"), "a" }, "points.1"));
+        points.add(SimpleFeatureBuilder.build(pointType, new Object[] {
+                reader.read("POINT(6 6)"), "b" }, "points.2"));
+        points.add(SimpleFeatureBuilder.build(pointType, new Object[] {
+                reader.read("POINT(50 50)"), "a" }, "points.3"));
+
+        tb = new SimpleFeatureTypeBuilder();
+        tb.setName("lines");
+        tb.add("geom", LineString.class, DefaultGeographicCRS.WGS84);
+        SimpleFeatureType lineType = tb.buildFeatureType();
+        SimpleFeatureCollection lines = FeatureCollections.newCollection();
+        lines.add(SimpleFeatureBuilder.build(lineType, new Object[] {
+                reader.read("LINESTRING(-5 5, 15 5)") }, "lines.7"));
+
+        Style pointStyle = sb.createStyle(sb.createPointSymbolizer());
+        pointRule = pointStyle.featureTypeStyles().get(0).rules().get(0);
+        pointRule.setFilter(ff.equals(ff.property("name"), ff.literal("a")));
+
+        map = new MapContent();
+        map.addLayer(new FeatureLayer(points, pointStyle));
+        map.addLayer(new FeatureLayer(lines, sb.createStyle(sb.createLineSymbolizer())));
+    }
+
+    @Test
+    public void testRender() throws Exception {
+        Message tile = new Message(new VectorTileRenderer(map).render(TILE));
+        List<Object> layers = tile.get(3);
+        assertEquals(2, layers.size());
+
+        // only the point matching the rule and inside the tile
+        Message points = new Message((byte[]) layers.get(0));
+        assertEquals("points", points.string(1));
+        assertEquals(4096L, points.first(5));
+        assertEquals(Arrays.asList("name"), points.strings(3));
+        assertEquals(1, points.get(2).size());
+        Message point = new Message((byte[]) points.get(2).get(0));
+        assertEquals(1L, point.first(1));
+        assertEquals(Arrays.asList(9L, 4096L, 4096L), point.packed(4));
+
+        // the line is clipped to the tile plus the buffer
+        Message lines = new Message((byte[]) layers.get(1));
+        assertEquals("lines", lines.string(1));
+        Message line = new Message((byte[]) lines.get(2).get(0));
+        assertEquals(7L, line.first(1));
+        assertEquals(Arrays.asList(9L, 127L, 4096L, 10L, 8448L, 0L), line.packed(4));
+    }
+
+    @Test
+    public void testScaleDependency() throws Exception {
+        pointRule.setMaxScaleDenominator(1);
+        Message tile = new Message(new VectorTileRenderer(map).render(TILE));
+        List<Object> layers = tile.get(3);
+        assertEquals(1, layers.size());
+        assertEquals("lines", new Message((byte[]) layers.get(0)).string(1));
+    }
+}
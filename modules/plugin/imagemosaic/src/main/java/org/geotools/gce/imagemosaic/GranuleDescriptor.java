@@ -544,33 +544,42 @@ public class GranuleDescriptor {
 
 		ImageInputStream inStream=null;
 		ImageReader reader=null;
+		// the reader is reused afterwards, unless handed over to a deferred JAI ImageRead
+		final GranuleReaderPool readerPool = request.rasterManager.readerPool;
+		boolean reusable = true;
+		boolean deferred = false;
 		try {
 			//
 			//get info about the raster we have to read
 			//
-			
-			// get a stream
-			inStream = Utils.getInputStream(granuleUrl);
-			if(inStream==null)
-				return null;
-	
-			// get a reader and try to cache the relevant SPI
-			if(cachedReaderSPI==null){
-				reader = ImageIOExt.getImageioReader(inStream);
-				if(reader!=null)
-					cachedReaderSPI=reader.getOriginatingProvider();
-			}
-			else
-				reader=cachedReaderSPI.createReaderInstance();
-			if(reader==null) {
-				if (LOGGER.isLoggable(java.util.logging.Level.WARNING)){
-					LOGGER.warning(new StringBuilder("Unable to get s reader for granuleDescriptor ").append(this.toString())
-					        .append(" with request ").append(request.toString()).append(" Resulting in no granule loaded: Empty result").toString());
-				}
-				return null;
+			final GranuleReaderPool.Entry pooled = readerPool != null ? readerPool.borrow(granuleUrl) : null;
+			if (pooled != null) {
+			    inStream = pooled.stream;
+			    reader = pooled.reader;
+			} else {
+    			// get a stream
+    			inStream = Utils.getInputStream(granuleUrl);
+    			if(inStream==null)
+    				return null;
+    	
+    			// get a reader and try to cache the relevant SPI
+    			if(cachedReaderSPI==null){
+    				reader = ImageIOExt.getImageioReader(inStream);
+    				if(reader!=null)
+    					cachedReaderSPI=reader.getOriginatingProvider();
+    			}
+    			else
+    				reader=cachedReaderSPI.createReaderInstance();
+    			if(reader==null) {
+    				if (LOGGER.isLoggable(java.util.logging.Level.WARNING)){
+    					LOGGER.warning(new StringBuilder("Unable to get s reader for granuleDescriptor ").append(this.toString())
+    					        .append(" with request ").append(request.toString()).append(" Resulting in no granule loaded: Empty result").toString());
+    				}
+    				return null;
+    			}
+    			// set input
+    			reader.setInput(inStream);
 			}
-			// set input
-			reader.setInput(inStream);
 			
 			// Checking for heterogeneous granules
 			if (request.isHeterogeneousGranules()){
@@ -646,10 +655,20 @@ public class GranuleDescriptor {
 			readParameters.setSourceRegion(sourceArea);
 			final RenderedImage raster;
 			try {
-				// read
-				raster= request.getReadType().read(readParameters,imageIndex, granuleUrl, selectedlevel.rasterDimensions,reader, hints,false);
+				// read, reusing the already decoded tiles when possible. Regions too large for
+				// the cache are left to the deferred JAI ImageRead, if that is the read type
+				final GranuleTileCache tileCache = GranuleTileCache.getDefault();
+				if (tileCache != null && GranuleTileCache.isCacheable(readParameters)
+				        && (request.getReadType() != ReadType.JAI_IMAGEREAD || tileCache.accepts(sourceArea))
+				        && !CoverageUtilities.checkEmptySourceRegion(readParameters, selectedlevel.rasterDimensions)) {
+				    raster = tileCache.read(request.rasterManager, granuleUrl, imageIndex, readParameters, reader);
+				} else {
+				    deferred = request.getReadType() == ReadType.JAI_IMAGEREAD;
+				    raster = request.getReadType().read(readParameters,imageIndex, granuleUrl, selectedlevel.rasterDimensions,reader, hints,false);
+				}
 				
 			} catch (Throwable e) {
+			        reusable = false;
 				if (LOGGER.isLoggable(java.util.logging.Level.FINE)){
 					LOGGER.log(java.util.logging.Level.FINE,
 					        "Unable to load raster for granuleDescriptor "
@@ -732,12 +751,12 @@ public class GranuleDescriptor {
 			} else {
 				//
 				// In case we are asked to use certain tile dimensions we tile
-				// also at this stage in case the read type is Direct since
+				// also at this stage in case the raster has been read at once since
 				// buffered images comes up untiled and this can affect the
 				// performances of the subsequent affine operation.
 				//
 				final Dimension tileDimensions=request.getTileDimensions();
-				if(tileDimensions!=null&&request.getReadType().equals(ReadType.DIRECT_READ)) {
+				if(tileDimensions!=null&&!deferred) {
 					final ImageLayout layout = new ImageLayout();
 					layout.setTileHeight(tileDimensions.width).setTileWidth(tileDimensions.height);
 					localHints.add(new RenderingHints(JAI.KEY_IMAGE_LAYOUT,layout));
@@ -841,13 +860,17 @@ public class GranuleDescriptor {
 			return null;
 
                 } finally {
-                    try {
-                        if (inStream != null) {
-                            inStream.close();
-                        }
-                    } finally {
-                        if (request.getReadType() != ReadType.JAI_IMAGEREAD && reader != null) {
-                            reader.dispose();
+                    if (!deferred && inStream != null && reader != null) {
+                        readerPool.release(granuleUrl, inStream, reader, reusable);
+                    } else {
+                        try {
+                            if (inStream != null) {
+                                inStream.close();
+                            }
+                        } finally {
+                            if (request.getReadType() != ReadType.JAI_IMAGEREAD && reader != null) {
+                                reader.dispose();
+                            }
                         }
                     }
                 }
@@ -0,0 +1,191 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * A bounded pool of opened {@link ImageInputStream}/{@link ImageReader} pairs, keyed by granule
+ * {@link URL}, so that successive direct reads of the same granule do not need to reopen the file
+ * and instantiate a new reader.
+ * <p>
+ * At most {@link #maxPerGranule} idle pairs are kept for a given granule, and at most
+ * {@link #maxIdle} idle pairs overall. When the latter limit is exceeded the least recently
+ * returned pair is closed.
+ *
+ * @source $URL$
+ */
+final class GranuleReaderPool {
+
+    /** Logger. */
+    private final static Logger LOGGER = org.geotools.util.logging.Logging.getLogger(GranuleReaderPool.class);
+
+    /**
+     * Default maximum number of idle readers, which can be changed with the
+     * {@code org.geotools.imagemosaic.readerpool.size} system property.
+     */
+    static final int DEFAULT_MAX_IDLE = Integer.getInteger("org.geotools.imagemosaic.readerpool.size", 32);
+
+    /**
+     * Default maximum number of idle readers for a single granule.
+     */
+    static final int DEFAULT_MAX_PER_GRANULE = 2;
+
+    /**
+     * An opened stream and the reader using it as input.
+     */
+    static final class Entry {
+        final URL granuleUrl;
+
+        final ImageInputStream stream;
+
+        final ImageReader reader;
+
+        Entry(final URL granuleUrl, final ImageInputStream stream, final ImageReader reader) {
+            this.granuleUrl = granuleUrl;
+            this.stream = stream;
+            this.reader = reader;
+        }
+
+        /**
+         * Closes the stream and disposes the reader, swallowing any exception.
+         */
+        void close() {
+            try {
+                stream.close();
+            } catch (Throwable t) {
+                if (LOGGER.isLoggable(Level.FINE))
+                    LOGGER.log(Level.FINE, t.getLocalizedMessage(), t);
+            } finally {
+                try {
+                    reader.dispose();
+                } catch (Throwable t) {
+                    if (LOGGER.isLoggable(Level.FINE))
+                        LOGGER.log(Level.FINE, t.getLocalizedMessage(), t);
+                }
+            }
+        }
+    }
+
+    /**
+     * The idle entries, least recently returned first.
+     */
+    private final LinkedList<Entry> idle = new LinkedList<Entry>();
+
+    private final int maxIdle;
+
+    private final int maxPerGranule;
+
+    private boolean disposed;
+
+    GranuleReaderPool() {
+        this(DEFAULT_MAX_IDLE, DEFAULT_MAX_PER_GRANULE);
+    }
+
+    GranuleReaderPool(final int maxIdle, final int maxPerGranule) {
+        this.maxIdle = maxIdle;
+        this.maxPerGranule = maxPerGranule;
+    }
+
+    /**
+     * Takes an idle entry for the given granule out of the pool.
+     *
+     * @return an idle entry, or {@code null} if none is available.
+     */
+    synchronized Entry borrow(final URL granuleUrl) {
+        // most recently returned entries are at the end
+        for (final Iterator<Entry> it = idle.descendingIterator(); it.hasNext();) {
+            final Entry entry = it.next();
+            if (entry.granuleUrl.equals(granuleUrl)) {
+                it.remove();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gives back a stream and reader pair to the pool, or closes them if they can not be reused
+     * or the pool is full.
+     *
+     * @param reusable {@code false} if the pair is in an unknown state and must be closed.
+     */
+    void release(final URL granuleUrl, final ImageInputStream stream, final ImageReader reader,
+            final boolean reusable) {
+        final Entry entry = new Entry(granuleUrl, stream, reader);
+        if (!reusable) {
+            entry.close();
+            return;
+        }
+        final List<Entry> evicted = new ArrayList<Entry>();
+        synchronized (this) {
+            if (disposed || maxIdle <= 0) {
+                evicted.add(entry);
+            } else {
+                int count = 0;
+                for (final Entry e : idle) {
+                    if (e.granuleUrl.equals(granuleUrl)) {
+                        count++;
+                    }
+                }
+                if (count >= maxPerGranule) {
+                    evicted.add(entry);
+                } else {
+                    idle.addLast(entry);
+                    while (idle.size() > maxIdle) {
+                        evicted.add(idle.removeFirst());
+                    }
+                }
+            }
+        }
+        // close outside of the lock, closing may involve I/O
+        for (final Entry e : evicted) {
+            e.close();
+        }
+    }
+
+    /**
+     * Returns the number of idle entries.
+     */
+    synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Closes all the idle entries. Entries released afterwards are closed immediately.
+     */
+    void dispose() {
+        final List<Entry> entries;
+        synchronized (this) {
+            disposed = true;
+            entries = new ArrayList<Entry>(idle);
+            idle.clear();
+        }
+        for (final Entry e : entries) {
+            e.close();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+/**
+ * A memory bounded cache of decoded granule tiles, shared by all the mosaics. Tiles are keyed by
+ * owner (the {@link RasterManager} of the mosaic), granule, overview level and position in the
+ * native tile grid of the granule, and are evicted in least recently used order once the memory
+ * budget is exceeded.
+ * <p>
+ * The budget, in bytes, is set by the {@code org.geotools.imagemosaic.tilecache.memory} system
+ * property and defaults to 64MB. A value of zero disables the cache.
+ *
+ * @source $URL$
+ */
+final class GranuleTileCache {
+
+    /**
+     * Default memory budget, in bytes.
+     */
+    static final long DEFAULT_MEMORY = 64 * 1024 * 1024;
+
+    /**
+     * Tiles smaller than this amount of pixels are not worth caching, the overhead of reading
+     * them one by one exceeds the gain.
+     */
+    static final int MIN_TILE_AREA = 64 * 64;
+
+    private static final GranuleTileCache DEFAULT = new GranuleTileCache(
+            Long.getLong("org.geotools.imagemosaic.tilecache.memory", DEFAULT_MEMORY));
+
+    /**
+     * Returns the cache shared by all the mosaics, or {@code null} if it is disabled.
+     */
+    static GranuleTileCache getDefault() {
+        return DEFAULT.maxMemory > 0 ? DEFAULT : null;
+    }
+
+    /**
+     * The key of a decoded tile.
+     */
+    static final class TileKey {
+        final Object owner;
+
+        final URL granuleUrl;
+
+        final int imageIndex, tileX, tileY;
+
+        TileKey(final Object owner, final URL granuleUrl, final int imageIndex, final int tileX,
+                final int tileY) {
+            this.owner = owner;
+            this.granuleUrl = granuleUrl;
+            this.imageIndex = imageIndex;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            final TileKey that = (TileKey) obj;
+            return owner == that.owner && imageIndex == that.imageIndex && tileX == that.tileX
+                    && tileY == that.tileY && granuleUrl.toString().equals(that.granuleUrl.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            // URL.hashCode may resolve the host, use the string form instead
+            return ((granuleUrl.toString().hashCode() * 31 + imageIndex) * 31 + tileX) * 31 + tileY
+                    + System.identityHashCode(owner);
+        }
+    }
+
+    /**
+     * The tiles in access order.
+     */
+    private final LinkedHashMap<TileKey, BufferedImage> tiles = new LinkedHashMap<TileKey, BufferedImage>(
+            64, 0.75f, true);
+
+    private final long maxMemory;
+
+    private long memory;
+
+    private long hits, misses;
+
+    GranuleTileCache(final long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Returns {@code true} if a read with the given parameters can be served from decoded tiles,
+     * that is when it reads all the bands of a source region at full resolution.
+     */
+    static boolean isCacheable(final ImageReadParam params) {
+        return params.getSourceRegion() != null && params.getSourceXSubsampling() == 1
+                && params.getSourceYSubsampling() == 1 && params.getSubsamplingXOffset() == 0
+                && params.getSubsamplingYOffset() == 0 && params.getSourceBands() == null
+                && params.getDestinationBands() == null && params.getDestination() == null
+                && params.getDestinationType() == null
+                && new Point(0, 0).equals(params.getDestinationOffset());
+    }
+
+    /**
+     * Returns {@code true} if the given source region is small enough to be decoded at once in
+     * place of a deferred read, that is when it takes at most a quarter of the memory budget at
+     * four bytes per pixel.
+     */
+    boolean accepts(final Rectangle region) {
+        return (long) region.width * region.height * 4 <= maxMemory / 4;
+    }
+
+    /**
+     * Reads the source region of the given parameters, decoding only the tiles which are not
+     * already in the cache. The returned image does not share its data with the cached tiles.
+     *
+     * @param owner the owner of the tiles, used for {@link #remove removing} them at once.
+     * @param granuleUrl the granule being read.
+     * @param imageIndex the overview level being read.
+     * @param params the read parameters, {@linkplain #isCacheable cacheable}.
+     * @param reader a reader whose input is set to the granule.
+     */
+    BufferedImage read(final Object owner, final URL granuleUrl, final int imageIndex,
+            final ImageReadParam params, final ImageReader reader) throws IOException {
+        final Rectangle region = params.getSourceRegion();
+        final int tileWidth = reader.getTileWidth(imageIndex);
+        final int tileHeight = reader.getTileHeight(imageIndex);
+        final long tileArea = (long) tileWidth * tileHeight;
+        final long regionArea = (long) region.width * region.height;
+        if (tileArea < MIN_TILE_AREA || tileArea > 4 * Math.max(regionArea, MIN_TILE_AREA)) {
+            // tiny strips or a single huge tile, read the region as usual
+            return reader.read(imageIndex, params);
+        }
+        final Rectangle bounds = new Rectangle(0, 0, reader.getWidth(imageIndex),
+                reader.getHeight(imageIndex));
+        final int xOffset = reader.getTileGridXOffset(imageIndex);
+        final int yOffset = reader.getTileGridYOffset(imageIndex);
+        final int minTileX = floorDiv(region.x - xOffset, tileWidth);
+        final int minTileY = floorDiv(region.y - yOffset, tileHeight);
+        final int maxTileX = floorDiv(region.x + region.width - 1 - xOffset, tileWidth);
+        final int maxTileY = floorDiv(region.y + region.height - 1 - yOffset, tileHeight);
+
+        ColorModel cm = null;
+        WritableRaster target = null;
+        for (int ty = minTileY; ty <= maxTileY; ty++) {
+            for (int tx = minTileX; tx <= maxTileX; tx++) {
+                final Rectangle tileBounds = new Rectangle(xOffset + tx * tileWidth,
+                        yOffset + ty * tileHeight, tileWidth, tileHeight).intersection(bounds);
+                final Rectangle common = tileBounds.intersection(region);
+                if (common.isEmpty()) {
+                    continue;
+                }
+                final TileKey key = new TileKey(owner, granuleUrl, imageIndex, tx, ty);
+                BufferedImage tile = get(key);
+                if (tile == null) {
+                    final ImageReadParam tileParams = reader.getDefaultReadParam();
+                    tileParams.setSourceRegion(tileBounds);
+                    tile = reader.read(imageIndex, tileParams);
+                    put(key, tile);
+                }
+                if (target == null) {
+                    cm = tile.getColorModel();
+                    target = tile.getRaster().createCompatibleWritableRaster(region.width,
+                            region.height);
+                }
+                final Raster source = tile.getRaster().createChild(common.x - tileBounds.x,
+                        common.y - tileBounds.y, common.width, common.height, 0, 0, null);
+                target.setDataElements(common.x - region.x, common.y - region.y, source);
+            }
+        }
+        if (target == null) {
+            return reader.read(imageIndex, params);
+        }
+        return new BufferedImage(cm, target, cm.isAlphaPremultiplied(), null);
+    }
+
+    private synchronized BufferedImage get(final TileKey key) {
+        final BufferedImage tile = tiles.get(key);
+        if (tile == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return tile;
+    }
+
+    private synchronized void put(final TileKey key, final BufferedImage tile) {
+        final long size = sizeOf(tile);
+        if (size > maxMemory / 4) {
+            // a single tile should not flush most of the cache
+            return;
+        }
+        final BufferedImage previous = tiles.put(key, tile);
+        if (previous != null) {
+            memory -= sizeOf(previous);
+        }
+        memory += size;
+        for (final Iterator<BufferedImage> it = tiles.values().iterator(); memory > maxMemory
+                && it.hasNext();) {
+            memory -= sizeOf(it.next());
+            it.remove();
+        }
+    }
+
+    /**
+     * Removes all the tiles of the given owner.
+     */
+    synchronized void remove(final Object owner) {
+        for (final Iterator<Map.Entry<TileKey, BufferedImage>> it = tiles.entrySet().iterator(); it
+                .hasNext();) {
+            final Map.Entry<TileKey, BufferedImage> entry = it.next();
+            if (entry.getKey().owner == owner) {
+                memory -= sizeOf(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of memory used by the cached tiles, in bytes.
+     */
+    synchronized long getMemoryUsage() {
+        return memory;
+    }
+
+    synchronized long getHitCount() {
+        return hits;
+    }
+
+    synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Integer division rounded toward negative infinity.
+     */
+    private static int floorDiv(final int a, final int b) {
+        final int q = a / b;
+        return (a % b != 0 && (a < 0) != (b < 0)) ? q - 1 : q;
+    }
+
+    /**
+     * Returns an estimate of the memory used by the given image.
+     */
+    private static long sizeOf(final BufferedImage image) {
+        final DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+                * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
@@ -35,8 +35,11 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -124,6 +127,28 @@ public final class ImageMosaicReader extends AbstractGridCoverage2DReader implem
 	
 	ExecutorService multiThreadedLoader = null;
 
+	/**
+	 * The loader used when no {@link Hints#EXECUTOR_SERVICE} is provided, shared by all the
+	 * mosaics. Its threads are daemons and die when idle.
+	 */
+	private static final ExecutorService DEFAULT_LOADER;
+	static {
+	    final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+	    final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60,
+	            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+	                private final AtomicInteger count = new AtomicInteger();
+
+	                public Thread newThread(Runnable r) {
+	                    final Thread thread = new Thread(r, "ImageMosaicLoader-" + count.incrementAndGet());
+	                    thread.setDaemon(true);
+	                    thread.setPriority(Utils.DEFAULT_PRIORITY);
+	                    return thread;
+	                }
+	            });
+	    executor.allowCoreThreadTimeOut(true);
+	    DEFAULT_LOADER = executor;
+	}
+
 	String locationAttributeName="location";
 
 	RasterManager rasterManager;
@@ -177,6 +202,9 @@ public final class ImageMosaicReader extends AbstractGridCoverage2DReader implem
 	              }
 	          }
 	      }
+	    }
+	    if (multiThreadedLoader == null) {
+	        multiThreadedLoader = DEFAULT_LOADER;
 	    }
 		if(this.hints.containsKey(Hints.MAX_ALLOWED_TILES))
 			this.maxAllowedTiles= ((Integer)this.hints.get(Hints.MAX_ALLOWED_TILES));		
@@ -152,7 +152,7 @@ class RasterLayerRequest {
 
 	private Dimension tileDimensions;
 
-	private boolean multithreadingAllowed;
+	private boolean multithreadingAllowed = ImageMosaicFormat.ALLOW_MULTITHREADING.getDefaultValue();
 
 	private List<?> requestedTimes;
 
@@ -194,6 +194,9 @@ class RasterManager {
 
 	ImageLayout defaultImageLayout;
 
+	/** The opened granule readers kept for reuse by the direct reads. */
+	final GranuleReaderPool readerPool = new GranuleReaderPool();
+
 	public RasterManager(final ImageMosaicReader reader) throws DataSourceException {
 		
 		Utilities.ensureNonNull("ImageMosaicReader", reader);
@@ -355,7 +358,12 @@ class RasterManager {
 	    } catch (Exception e) {
                 if(LOGGER.isLoggable(Level.FINE))
                     LOGGER.log(Level.FINE,e.getLocalizedMessage(),e);
-            } 
+            } finally {
+                readerPool.dispose();
+                final GranuleTileCache tileCache = GranuleTileCache.getDefault();
+                if (tileCache != null)
+                    tileCache.remove(this);
+            }
 	}
 
 	/**
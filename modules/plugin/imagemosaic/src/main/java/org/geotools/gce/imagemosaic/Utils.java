@@ -147,6 +147,8 @@ public class Utils {
         static final String SCHEMA = "Schema";
         static final String RESOLUTION_LEVELS = "ResolutionLevels";
         static final String PROPERTY_COLLECTORS = "PropertyCollectors";
+        static final String PARALLELISM = "Parallelism";
+        static final String COMMIT_INTERVAL = "CommitInterval";
     }
         /**
 	 * Logger.
@@ -263,6 +265,12 @@ public class Utils {
 			
 			if (props.containsKey(Prop.CACHING))
 				configuration.setCaching(Boolean.valueOf(props.getProperty(Prop.CACHING)));
+
+			// parallel harvesting
+			if (props.containsKey(Prop.PARALLELISM))
+				configuration.setParallelism(Integer.parseInt(props.getProperty(Prop.PARALLELISM).trim()));
+			if (props.containsKey(Prop.COMMIT_INTERVAL))
+				configuration.setCommitInterval(Integer.parseInt(props.getProperty(Prop.COMMIT_INTERVAL).trim()));
 		}
 
 		// create the builder
@@ -860,6 +868,16 @@ public class Utils {
 	
 	public static final boolean DEFAULT_CONFIGURATION_CACHING = true;
 
+	/**
+	 * Default number of threads harvesting granules, no parallelism.
+	 */
+	public static final int DEFAULT_PARALLELISM = 1;
+
+	/**
+	 * Default number of granules per commit when harvesting, 0 meaning a single commit.
+	 */
+	public static final int DEFAULT_COMMIT_INTERVAL = 0;
+
             /**
              * Build a background values array using the same dataType of the input {@link SampleModel} (if
              * available) and the values provided in the input array.
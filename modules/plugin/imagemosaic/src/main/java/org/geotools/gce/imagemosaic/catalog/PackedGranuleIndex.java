@@ -0,0 +1,685 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FilenameUtils;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.resources.NIOUtilities;
+import org.geotools.util.Converters;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * A persistent, read only index of the granules of a mosaic. The file holds a packed R-tree of
+ * the granule envelopes, sorted along a Hilbert curve, followed by the attribute values stored
+ * column by column. It is memory mapped when opened, so it can be queried right away without
+ * loading the granules in memory or rebuilding anything.
+ * <p>
+ * String, date, numeric and boolean attributes are supported. The geometry of a granule is
+ * stored as its envelope, which is what the {@code CatalogBuilder} writes in the index anyway.
+ * <p>
+ * The index is immutable, new granules are added by {@link #update rewriting} it together with
+ * the existing records, which does not require reading the original index store again.
+ * <p>
+ * The mapping is released by {@link #dispose}, after which the index must not be used anymore.
+ *
+ * @source $URL$
+ */
+public final class PackedGranuleIndex {
+
+    /**
+     * The extension of the index files, which sit next to the shapefile they index.
+     */
+    public static final String EXTENSION = "gidx";
+
+    private static final int MAGIC = 0x47494458; // "GIDX"
+
+    private static final int VERSION = 1;
+
+    /**
+     * The number of children of each node of the tree.
+     */
+    private static final int NODE_SIZE = 16;
+
+    private static final byte STRING = 0, DATE = 1, NUMBER = 2, BOOLEAN = 3;
+
+    /**
+     * The name of the column holding the feature identifiers.
+     */
+    private static final String ID = "@id";
+
+    /**
+     * A column of attribute values.
+     */
+    private static final class Column {
+        final String name;
+
+        final byte type;
+
+        /** One byte per record, non zero for null values. */
+        ByteBuffer nulls;
+
+        /** The values for {@link #DATE} columns. */
+        LongBuffer longs;
+
+        /** The values for {@link #NUMBER} and {@link #BOOLEAN} columns. */
+        DoubleBuffer doubles;
+
+        /** The offsets of the values in {@link #chars} for {@link #STRING} columns. */
+        IntBuffer offsets;
+
+        /** The UTF-8 encoded values for {@link #STRING} columns. */
+        ByteBuffer chars;
+
+        Column(final String name, final byte type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    private final int count;
+
+    /**
+     * The envelopes of the records, followed by the envelopes of the tree nodes, level by level,
+     * as (minX, minY, maxX, maxY) quadruplets.
+     */
+    private final DoubleBuffer boxes;
+
+    /**
+     * The index of the first box of each level, plus the total number of boxes.
+     */
+    private final int[] levelBounds;
+
+    private final Column[] columns;
+
+    /**
+     * The mapped file, or {@code null} once disposed.
+     */
+    private MappedByteBuffer buffer;
+
+    private PackedGranuleIndex(final MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a granule index");
+        }
+        count = buffer.getInt();
+        final int numColumns = buffer.getInt();
+        columns = new Column[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            final byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            columns[i] = new Column(new String(name, "UTF-8"), buffer.get());
+        }
+        levelBounds = computeLevelBounds(count);
+        align(buffer);
+        final int numBoxes = levelBounds[levelBounds.length - 1];
+        boxes = slice(buffer, numBoxes * 32).asDoubleBuffer();
+        for (final Column column : columns) {
+            column.nulls = slice(buffer, count);
+            align(buffer);
+            switch (column.type) {
+            case DATE:
+                column.longs = slice(buffer, count * 8).asLongBuffer();
+                break;
+            case NUMBER:
+            case BOOLEAN:
+                column.doubles = slice(buffer, count * 8).asDoubleBuffer();
+                break;
+            default:
+                column.offsets = slice(buffer, (count + 1) * 4).asIntBuffer();
+                column.chars = slice(buffer, column.offsets.get(count));
+                align(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns a view of the next {@code length} bytes of the given buffer, and moves past them.
+     */
+    private static ByteBuffer slice(final ByteBuffer buffer, final int length) {
+        final ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static void align(final ByteBuffer buffer) {
+        buffer.position((buffer.position() + 7) & ~7);
+    }
+
+    /**
+     * Returns the index of the first box of each level of the tree for the given number of
+     * records, plus the total number of boxes.
+     */
+    private static int[] computeLevelBounds(final int count) {
+        final List<Integer> bounds = new ArrayList<Integer>();
+        int n = count;
+        int total = n;
+        bounds.add(0);
+        while (n > 1) {
+            n = (n + NODE_SIZE - 1) / NODE_SIZE;
+            bounds.add(total);
+            total += n;
+        }
+        bounds.add(total);
+        final int[] result = new int[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index file for the given index store, or {@code null} if the store is not
+     * a local file.
+     */
+    public static File getIndexFile(final File store) {
+        if (store == null) {
+            return null;
+        }
+        return new File(store.getParentFile(), FilenameUtils.getBaseName(store.getName()) + "."
+                + EXTENSION);
+    }
+
+    /**
+     * Memory maps the given index file.
+     *
+     * @throws IOException if the file can not be read or is not an index.
+     */
+    public static PackedGranuleIndex open(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            try {
+                return new PackedGranuleIndex(buffer);
+            } catch (IOException e) {
+                NIOUtilities.clean(buffer, true);
+                throw e;
+            } catch (RuntimeException e) {
+                NIOUtilities.clean(buffer, true);
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            // buffer underflows and the like on truncated files
+            throw (IOException) new IOException("Invalid granule index " + file).initCause(e);
+        } finally {
+            // the mapping stays valid once the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Releases the file mapping. Nothing is read from the index after this call, which
+     * is required before the file can be deleted or replaced on some platforms.
+     */
+    public synchronized void dispose() {
+        if (buffer != null) {
+            NIOUtilities.clean(buffer, true);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Returns the number of granules in this index.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the union of the envelopes of all the granules.
+     */
+    public Envelope getBounds() {
+        if (count == 0) {
+            return new Envelope();
+        }
+        return getBox(levelBounds[levelBounds.length - 1] - 1);
+    }
+
+    private Envelope getBox(final int index) {
+        final int i = index * 4;
+        return new Envelope(boxes.get(i), boxes.get(i + 2), boxes.get(i + 1), boxes.get(i + 3));
+    }
+
+    /**
+     * Returns the indices of the granules whose envelope intersects the given one.
+     */
+    public int[] query(final Envelope envelope) {
+        int[] result = new int[16];
+        int found = 0;
+        if (count == 0 || envelope.isNull()) {
+            return new int[0];
+        }
+        final double minX = envelope.getMinX(), minY = envelope.getMinY();
+        final double maxX = envelope.getMaxX(), maxY = envelope.getMaxY();
+        // pairs of (level, index in level) still to visit
+        final int top = levelBounds.length - 2;
+        int[] stack = new int[64];
+        int depth = 0;
+        stack[depth++] = top;
+        stack[depth++] = 0;
+        while (depth > 0) {
+            final int index = stack[--depth];
+            final int level = stack[--depth];
+            final int b = (levelBounds[level] + index) * 4;
+            if (boxes.get(b) > maxX || boxes.get(b + 1) > maxY || boxes.get(b + 2) < minX
+                    || boxes.get(b + 3) < minY) {
+                continue;
+            }
+            if (level == 0) {
+                if (found == result.length) {
+                    result = Arrays.copyOf(result, found * 2);
+                }
+                result[found++] = index;
+            } else {
+                final int first = index * NODE_SIZE;
+                final int last = Math.min(first + NODE_SIZE,
+                        levelBounds[level] - levelBounds[level - 1]);
+                for (int child = last; --child >= first;) {
+                    if (depth + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[depth++] = level - 1;
+                    stack[depth++] = child;
+                }
+            }
+        }
+        final int[] indices = Arrays.copyOf(result, found);
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * Returns the value of the given column for the given granule.
+     */
+    private Object getValue(final Column column, final int index) {
+        if (column.nulls.get(index) != 0) {
+            return null;
+        }
+        switch (column.type) {
+        case DATE:
+            return new Date(column.longs.get(index));
+        case NUMBER:
+            return column.doubles.get(index);
+        case BOOLEAN:
+            return column.doubles.get(index) != 0;
+        default:
+            final int start = column.offsets.get(index);
+            final byte[] bytes = new byte[column.offsets.get(index + 1) - start];
+            final ByteBuffer chars = column.chars.duplicate();
+            chars.position(start);
+            chars.get(bytes);
+            try {
+                return new String(bytes, "UTF-8");
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Creates the feature of the given granule.
+     *
+     * @param index the index of the granule, as returned by {@link #query}.
+     * @param type the type of the index store, whose attributes are looked up by name.
+     * @param factory the factory for the geometry, which is the granule envelope.
+     */
+    public SimpleFeature getFeature(final int index, final SimpleFeatureType type,
+            final GeometryFactory factory) {
+        final SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+        String id = null;
+        for (final Column column : columns) {
+            final Object value = getValue(column, index);
+            if (column.name.equals(ID)) {
+                id = (String) value;
+                continue;
+            }
+            final AttributeDescriptor descriptor = type.getDescriptor(column.name);
+            if (descriptor != null && value != null) {
+                builder.set(column.name, Converters.convert(value, descriptor.getType()
+                        .getBinding()));
+            }
+        }
+        final GeometryDescriptor geometry = type.getGeometryDescriptor();
+        if (geometry != null) {
+            builder.set(geometry.getLocalName(), factory.toGeometry(getBox(index)));
+        }
+        return builder.buildFeature(id);
+    }
+
+    /**
+     * Returns {@code true} if all the attributes of the given type can be stored in an index.
+     */
+    public static boolean isSupported(final SimpleFeatureType type) {
+        for (final AttributeDescriptor descriptor : type.getAttributeDescriptors()) {
+            if (!(descriptor instanceof GeometryDescriptor) && getType(descriptor) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte getType(final AttributeDescriptor descriptor) {
+        final Class<?> binding = descriptor.getType().getBinding();
+        if (String.class.equals(binding)) {
+            return STRING;
+        } else if (Date.class.isAssignableFrom(binding)) {
+            return DATE;
+        } else if (Number.class.isAssignableFrom(binding)) {
+            return NUMBER;
+        } else if (Boolean.class.equals(binding)) {
+            return BOOLEAN;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes an index of the given granules. The file is written aside and then renamed, so
+     * a concurrent {@link #open} never sees a partially written index.
+     *
+     * @param file the index file.
+     * @param features the features of the granules, all of the same {@linkplain #isSupported
+     *        supported} type.
+     * @throws IOException if the file can not be written.
+     */
+    public static void write(final File file, final Collection<SimpleFeature> features)
+            throws IOException {
+        write(file, features, null);
+    }
+
+    /**
+     * Adds the given granules to an index, creating it if it does not exist yet. The existing
+     * records are copied from the previous index, the original index store is not read.
+     *
+     * @param file the index file.
+     * @param features the features of the new granules.
+     * @throws IOException if the file can not be read or written.
+     */
+    public static void update(final File file, final Collection<SimpleFeature> features)
+            throws IOException {
+        final PackedGranuleIndex previous = file.exists() ? open(file) : null;
+        try {
+            write(file, features, previous);
+        } finally {
+            if (previous != null) {
+                previous.dispose();
+            }
+        }
+    }
+
+    private static void write(final File file, final Collection<SimpleFeature> features,
+            final PackedGranuleIndex previous) throws IOException {
+        // the columns, from the previous index if any, or else from the feature type
+        final List<Column> columns = new ArrayList<Column>();
+        columns.add(new Column(ID, STRING));
+        if (previous != null) {
+            for (final Column column : previous.columns) {
+                if (!column.name.equals(ID)) {
+                    columns.add(column);
+                }
+            }
+        } else if (!features.isEmpty()) {
+            final SimpleFeatureType type = features.iterator().next().getFeatureType();
+            for (final AttributeDescriptor descriptor : type.getAttributeDescriptors()) {
+                if (descriptor instanceof GeometryDescriptor) {
+                    continue;
+                }
+                final byte columnType = getType(descriptor);
+                if (columnType < 0) {
+                    throw new IOException("Unsupported attribute type: " + descriptor);
+                }
+                columns.add(new Column(descriptor.getLocalName(), columnType));
+            }
+        }
+        final int numColumns = columns.size();
+
+        // gather the records
+        final int oldCount = previous != null ? previous.count : 0;
+        final int count = oldCount + features.size();
+        final double[] envelopes = new double[count * 4];
+        final Object[][] values = new Object[count][];
+        for (int i = 0; i < oldCount; i++) {
+            final Envelope e = previous.getBox(i);
+            setBox(envelopes, i, e);
+            final Object[] row = new Object[numColumns];
+            for (int c = 0; c < numColumns; c++) {
+                row[c] = previous.getValue(previous.getColumn(columns.get(c).name), i);
+            }
+            values[i] = row;
+        }
+        int n = oldCount;
+        for (final SimpleFeature feature : features) {
+            final Geometry geometry = (Geometry) feature.getDefaultGeometry();
+            setBox(envelopes, n, geometry != null ? geometry.getEnvelopeInternal() : new Envelope());
+            final Object[] row = new Object[numColumns];
+            row[0] = feature.getID();
+            for (int c = 1; c < numColumns; c++) {
+                row[c] = feature.getAttribute(columns.get(c).name);
+            }
+            values[n++] = row;
+        }
+        if (previous != null) {
+            // everything has been copied, the file is about to be replaced
+            previous.dispose();
+        }
+
+        // sort the records along a Hilbert curve
+        final Envelope extent = new Envelope();
+        for (int i = 0; i < count; i++) {
+            expand(extent, envelopes, i);
+        }
+        final long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            final double x = (envelopes[i * 4] + envelopes[i * 4 + 2]) / 2;
+            final double y = (envelopes[i * 4 + 1] + envelopes[i * 4 + 3]) / 2;
+            final int hx = scale(x, extent.getMinX(), extent.getWidth());
+            final int hy = scale(y, extent.getMinY(), extent.getHeight());
+            keys[i] = (hilbert(hx, hy) << 31) | i;
+        }
+        Arrays.sort(keys);
+
+        // compute the node envelopes
+        final int[] levelBounds = computeLevelBounds(count);
+        final double[] boxes = new double[levelBounds[levelBounds.length - 1] * 4];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(envelopes, (int) (keys[i] & Integer.MAX_VALUE) * 4, boxes, i * 4, 4);
+        }
+        for (int level = 1; level < levelBounds.length - 1; level++) {
+            final int childStart = levelBounds[level - 1];
+            final int childCount = levelBounds[level] - childStart;
+            for (int node = 0; node < levelBounds[level + 1] - levelBounds[level]; node++) {
+                final Envelope e = new Envelope();
+                final int last = Math.min((node + 1) * NODE_SIZE, childCount);
+                for (int child = node * NODE_SIZE; child < last; child++) {
+                    expand(e, boxes, childStart + child);
+                }
+                setBox(boxes, levelBounds[level] + node, e);
+            }
+        }
+
+        // write everything
+        final File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(numColumns);
+            for (final Column column : columns) {
+                final byte[] name = column.name.getBytes("UTF-8");
+                out.writeInt(name.length);
+                out.write(name);
+                out.writeByte(column.type);
+            }
+            pad(out);
+            for (final double value : boxes) {
+                out.writeDouble(value);
+            }
+            for (int c = 0; c < numColumns; c++) {
+                final Column column = columns.get(c);
+                for (int i = 0; i < count; i++) {
+                    out.writeByte(row(values, keys, i)[c] == null ? 1 : 0);
+                }
+                pad(out);
+                switch (column.type) {
+                case DATE:
+                    for (int i = 0; i < count; i++) {
+                        final Object value = row(values, keys, i)[c];
+                        out.writeLong(value != null ? ((Date) value).getTime() : 0);
+                    }
+                    break;
+                case NUMBER:
+                    for (int i = 0; i < count; i++) {
+                        final Object value = row(values, keys, i)[c];
+                        out.writeDouble(value != null ? ((Number) value).doubleValue() : Double.NaN);
+                    }
+                    break;
+                case BOOLEAN:
+                    for (int i = 0; i < count; i++) {
+                        final Object value = row(values, keys, i)[c];
+                        out.writeDouble(Boolean.TRUE.equals(value) ? 1 : 0);
+                    }
+                    break;
+                default:
+                    final byte[][] strings = new byte[count][];
+                    int offset = 0;
+                    out.writeInt(0);
+                    for (int i = 0; i < count; i++) {
+                        final Object value = row(values, keys, i)[c];
+                        strings[i] = value != null ? value.toString().getBytes("UTF-8") : new byte[0];
+                        offset += strings[i].length;
+                        out.writeInt(offset);
+                    }
+                    for (final byte[] bytes : strings) {
+                        out.write(bytes);
+                    }
+                    pad(out);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to write the granule index " + file);
+        }
+    }
+
+    private Column getColumn(final String name) {
+        for (final Column column : columns) {
+            if (column.name.equals(name)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static Object[] row(final Object[][] values, final long[] keys, final int i) {
+        return values[(int) (keys[i] & Integer.MAX_VALUE)];
+    }
+
+    private static void setBox(final double[] boxes, final int index, final Envelope e) {
+        final int i = index * 4;
+        if (e.isNull()) {
+            // never intersects anything
+            boxes[i] = boxes[i + 1] = Double.POSITIVE_INFINITY;
+            boxes[i + 2] = boxes[i + 3] = Double.NEGATIVE_INFINITY;
+        } else {
+            boxes[i] = e.getMinX();
+            boxes[i + 1] = e.getMinY();
+            boxes[i + 2] = e.getMaxX();
+            boxes[i + 3] = e.getMaxY();
+        }
+    }
+
+    /**
+     * Expands the given envelope to include the given box, unless the box is empty.
+     */
+    private static void expand(final Envelope e, final double[] boxes, final int index) {
+        final int i = index * 4;
+        if (boxes[i] <= boxes[i + 2]) {
+            e.expandToInclude(boxes[i], boxes[i + 1]);
+            e.expandToInclude(boxes[i + 2], boxes[i + 3]);
+        }
+    }
+
+    private static void pad(final DataOutputStream out) throws IOException {
+        while ((out.size() & 7) != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    /**
+     * Scales the given ordinate to the [0 .. 65535] range.
+     */
+    private static int scale(final double value, final double min, final double span) {
+        if (!(span > 0)) {
+            return 0;
+        }
+        return (int) Math.min(65535, Math.max(0, (value - min) / span * 65535));
+    }
+
+    /**
+     * Returns the position along the Hilbert curve of the given cell of a 65536 x 65536 grid.
+     */
+    private static long hilbert(int x, int y) {
+        long d = 0;
+        for (int s = 1 << 15; s > 0; s >>= 1) {
+            final int rx = (x & s) > 0 ? 1 : 0;
+            final int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = 65535 - x;
+                    y = 65535 - y;
+                }
+                final int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+}
@@ -17,29 +17,38 @@
 package org.geotools.gce.imagemosaic.catalog;
 
 import java.awt.geom.Rectangle2D;
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.imageio.spi.ImageReaderSpi;
+
+import org.apache.commons.io.FilenameUtils;
 import org.geotools.data.DataStoreFactorySpi;
+import org.geotools.data.DataUtilities;
 import org.geotools.data.Query;
 import org.geotools.data.QueryCapabilities;
 import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.SchemaException;
 import org.geotools.feature.visitor.FeatureCalc;
 import org.geotools.gce.imagemosaic.GranuleDescriptor;
 import org.geotools.gce.imagemosaic.ImageMosaicReader;
+import org.geotools.gce.imagemosaic.PathType;
 import org.geotools.gce.imagemosaic.catalog.GTDataStoreGranuleCatalog.BBOXFilterExtractor;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.resources.coverage.FeatureUtilities;
@@ -51,6 +60,7 @@ import org.opengis.geometry.BoundingBox;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.index.ItemVisitor;
 import com.vividsolutions.jts.index.SpatialIndex;
 import com.vividsolutions.jts.index.strtree.STRtree;
@@ -122,12 +132,106 @@ class STRTreeGranuleCatalog extends AbstractGranuleCatalog {
 
 	}
 
+	/**
+	 * Adapts a {@link PackedGranuleIndex} to the {@link SpatialIndex} interface, creating the
+	 * {@link GranuleDescriptor}s on demand. Created granules are kept by soft references, so
+	 * that memory pressure only drops granules, which get recreated one by one when needed,
+	 * instead of the whole index.
+	 */
+	private final class PackedSpatialIndex implements SpatialIndex {
+	    
+	    private final PackedGranuleIndex packed;
+	    
+	    private final SimpleFeatureType type;
+	    
+	    private final GeometryFactory geometryFactory = new GeometryFactory();
+	    
+	    private final Map<Integer, SoftReference<GranuleDescriptor>> granules = 
+	            new ConcurrentHashMap<Integer, SoftReference<GranuleDescriptor>>();
+
+	    PackedSpatialIndex(final PackedGranuleIndex packed, final SimpleFeatureType type) {
+	        this.packed = packed;
+	        this.type = type;
+	    }
+	    
+	    private GranuleDescriptor getGranule(final int index) {
+	        final Integer key = Integer.valueOf(index);
+	        final SoftReference<GranuleDescriptor> ref = granules.get(key);
+	        GranuleDescriptor granule = ref != null ? ref.get() : null;
+	        if (granule == null) {
+	            granule = new GranuleDescriptor(packed.getFeature(index, type, geometryFactory), 
+	                    suggestedSPI, pathType, locationAttribute, parentLocation, heterogeneous);
+	            granules.put(key, new SoftReference<GranuleDescriptor>(granule));
+	        }
+	        return granule;
+	    }
+
+	    public List<GranuleDescriptor> query(final Envelope searchEnv) {
+	        final int[] indices = packed.query(searchEnv);
+	        final List<GranuleDescriptor> result = new ArrayList<GranuleDescriptor>(indices.length);
+	        for (int index : indices) {
+	            result.add(getGranule(index));
+	        }
+	        return result;
+	    }
+
+	    public void query(final Envelope searchEnv, final ItemVisitor visitor) {
+	        for (int index : packed.query(searchEnv)) {
+	            visitor.visitItem(getGranule(index));
+	        }
+	    }
+
+	    public void insert(final Envelope itemEnv, final Object item) {
+	        throw new UnsupportedOperationException("The packed index is read only");
+	    }
+
+	    public boolean remove(final Envelope itemEnv, final Object item) {
+	        throw new UnsupportedOperationException("The packed index is read only");
+	    }
+	}
+
 	private GranuleCatalog wrappedCatalogue;
 	
+	/** The persistent index file, or {@code null} if the index store is not a local shapefile. */
+	private File packedIndexFile;
+	
+	/** The files the persistent index must be more recent than. */
+	private File[] indexedFiles;
+	
+	/** The persistent index, once opened. */
+	private PackedSpatialIndex packedIndex;
+	
+	private ImageReaderSpi suggestedSPI;
+	
+	private PathType pathType;
+	
+	private String locationAttribute;
+	
+	private String parentLocation;
+	
+	private boolean heterogeneous;
+	
 	public STRTreeGranuleCatalog(final Map<String,Serializable> params, DataStoreFactorySpi spi) {
 		Utilities.ensureNonNull("params",params);
 		try{
 			wrappedCatalogue= new GTDataStoreGranuleCatalog(params,false,spi);
+			
+			// the persistent index needs what is required for creating the granules
+			final Object url = params.get(ShapefileDataStoreFactory.URLP.key);
+			final String spiName = (String) params.get("SuggestedSPI");
+			if (url instanceof URL && ((URL) url).getProtocol().equalsIgnoreCase("file")
+			        && params.get("PathType") != null) {
+			    final File shapefile = DataUtilities.urlToFile((URL) url);
+			    packedIndexFile = PackedGranuleIndex.getIndexFile(shapefile);
+			    indexedFiles = new File[] { shapefile, 
+			            new File(shapefile.getParentFile(), FilenameUtils.getBaseName(shapefile.getName()) + ".dbf") };
+			    suggestedSPI = spiName != null ? (ImageReaderSpi) Class.forName(spiName).newInstance() : null;
+			    pathType = (PathType) params.get("PathType");
+			    locationAttribute = (String) params.get("LocationAttribute");
+			    parentLocation = (String) params.get("ParentLocation");
+			    final Object heterogen = params.get("Heterogeneous");
+			    heterogeneous = heterogen != null && ((Boolean) heterogen).booleanValue();
+			}
 		}
 		catch (Throwable e) {
 			try {
@@ -183,6 +287,8 @@ class STRTreeGranuleCatalog extends AbstractGranuleCatalog {
 			checkStore();
 			
 			// do your thing
+			if (packedIndex != null || openPackedIndex())
+			    return packedIndex;
 			STRtree tree = index.get();
 			if (tree == null) {
 				if (LOGGER.isLoggable(Level.FINE))
@@ -203,6 +309,53 @@ class STRTreeGranuleCatalog extends AbstractGranuleCatalog {
 
 	}
 
+	/**
+	 * Opens the persistent index if it exists and is more recent than the index store.
+	 * 
+	 * @return {@code true} if the persistent index is available.
+	 */
+	private boolean openPackedIndex() {
+	    if (packedIndexFile == null || !packedIndexFile.isFile())
+	        return false;
+	    final long lastModified = packedIndexFile.lastModified();
+	    for (File file : indexedFiles) {
+	        if (file.lastModified() > lastModified) {
+	            if (LOGGER.isLoggable(Level.FINE))
+	                LOGGER.fine("The granule index " + packedIndexFile + " is older than " + file);
+	            return false;
+	        }
+	    }
+	    try {
+	        final SimpleFeatureType type = wrappedCatalogue.getType();
+	        if (type == null || !PackedGranuleIndex.isSupported(type))
+	            return false;
+	        packedIndex = new PackedSpatialIndex(PackedGranuleIndex.open(packedIndexFile), type);
+	        if (LOGGER.isLoggable(Level.FINE))
+	            LOGGER.fine("Using the granule index " + packedIndexFile);
+	        return true;
+	    } catch (IOException e) {
+	        if (LOGGER.isLoggable(Level.WARNING))
+	            LOGGER.log(Level.WARNING, "Unable to open the granule index " + packedIndexFile, e);
+	        return false;
+	    }
+	}
+
+	/**
+	 * Writes the persistent index for the given features, so that it is used the next time
+	 * this mosaic is opened.
+	 */
+	private void writePackedIndex(final List<SimpleFeature> features) {
+	    try {
+	        final SimpleFeatureType type = wrappedCatalogue.getType();
+	        if (packedIndexFile == null || type == null || !PackedGranuleIndex.isSupported(type))
+	            return;
+	        PackedGranuleIndex.write(packedIndexFile, features);
+	    } catch (IOException e) {
+	        if (LOGGER.isLoggable(Level.FINE))
+	            LOGGER.log(Level.FINE, "Unable to write the granule index " + packedIndexFile, e);
+	    }
+	}
+
 	/**
 	 * This method shall only be called when the <code>indexLocation</code> is of protocol <code>file:</code>
 	 */
@@ -233,8 +386,11 @@ class STRTreeGranuleCatalog extends AbstractGranuleCatalog {
 			// now build the index
 			// TODO make it configurable as far the index is involved
 			STRtree tree = new STRtree();
+			final List<SimpleFeature> originators = new ArrayList<SimpleFeature>();
 			while (it.hasNext()) {
 				final GranuleDescriptor granule = it.next();
+				if (granule.getOriginator() != null)
+				    originators.add(granule.getOriginator());
 				final ReferencedEnvelope env=ReferencedEnvelope.reference(granule.getGranuleBBOX());
 				final Geometry g = (Geometry)FeatureUtilities.getPolygon(
 						new Rectangle2D.Double(env.getMinX(),env.getMinY(),env.getWidth(),env.getHeight()),0);
@@ -247,6 +403,10 @@ class STRTreeGranuleCatalog extends AbstractGranuleCatalog {
 			
 			// save the soft reference
 			index= new SoftReference<STRtree>(tree);
+			
+			// persist it for the next time
+			if (originators.size() == features.size())
+			    writePackedIndex(originators);
 		}
 		catch (Throwable e) {
 			throw new  IllegalArgumentException(e);
@@ -316,6 +476,9 @@ class STRTreeGranuleCatalog extends AbstractGranuleCatalog {
 		}finally{
 			wrappedCatalogue=null;
 			index= null;
+			if (packedIndex != null)
+			    packedIndex.packed.dispose();
+			packedIndex = null;
 			l.unlock();
 		
 		}
@@ -23,12 +23,17 @@ import java.awt.image.ComponentColorModel;
 import java.awt.image.IndexColorModel;
 import java.awt.image.SampleModel;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
@@ -39,12 +44,19 @@ import java.util.EventListener;
 import java.util.EventObject;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -69,16 +81,20 @@ import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
 import org.geotools.coverage.grid.io.AbstractGridFormat;
 import org.geotools.coverage.grid.io.GridFormatFinder;
 import org.geotools.coverage.grid.io.UnknownFormat;
+import org.geotools.data.DataStore;
 import org.geotools.data.DataStoreFactorySpi;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.DefaultTransaction;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.gce.image.WorldImageFormat;
 import org.geotools.gce.imagemosaic.MosaicConfigurationBean;
 import org.geotools.gce.imagemosaic.Utils;
 import org.geotools.gce.imagemosaic.catalog.GranuleCatalog;
 import org.geotools.gce.imagemosaic.catalog.GranuleCatalogFactory;
+import org.geotools.gce.imagemosaic.catalog.PackedGranuleIndex;
 import org.geotools.gce.imagemosaic.properties.PropertiesCollector;
 import org.geotools.gce.imagemosaic.properties.PropertiesCollectorFinder;
 import org.geotools.gce.imagemosaic.properties.PropertiesCollectorSPI;
@@ -111,6 +127,9 @@ public class CatalogBuilder implements Runnable {
 
     final private static double RESOLUTION_TOLERANCE_FACTOR = 1E-2;
 
+    /** The checkpoint line recording that the mosaic is heterogeneous. */
+    final private static String HETEROGENEOUS_CHECKPOINT = "#Heterogeneous";
+
 	/** Default Logger * */
 	final static Logger LOGGER = org.geotools.util.logging.Logging.getLogger(CatalogBuilder.class);
 	
@@ -267,6 +286,20 @@ public class CatalogBuilder implements Runnable {
 
 		private DefaultTransaction transaction;
                 private volatile boolean canceled;
+
+		/** The pool extracting the granules metadata, {@code null} when harvesting serially. */
+		private ExecutorService executor;
+
+		/** The granules being harvested by the {@link #executor}, in walking order. */
+		private final LinkedList<Future<HarvestedGranule>> pendingGranules = new LinkedList<Future<HarvestedGranule>>();
+
+		/** The number of granules added since the last commit. */
+		private int uncommittedGranules;
+
+		/** The number of granules added by this run, for throughput reporting. */
+		private int harvestedGranulesCount;
+
+		private long startTime;
 		
 		@Override
 		protected void handleCancelled(File startDirectory, Collection results,
@@ -310,12 +343,70 @@ public class CatalogBuilder implements Runnable {
 			try {
 				validFileName = fileBeingProcessed.getCanonicalPath();
 				validFileName=FilenameUtils.normalize(validFileName);
+				
+				// already harvested by an interrupted run?
+				if (!checkpointedLocations.isEmpty() && checkpointedLocations.contains(prepareLocation(fileBeingProcessed))) {
+					fireEvent(Level.FINE,fileBeingProcessed+" has been skipped since it was harvested by a previous run", ((fileIndex * 100.0) / numFiles));
+					return;
+				}
 			} catch (IOException e1) {
 				fireException(e1);
 				return;
 			}
 			validFileName=FilenameUtils.getName(validFileName);
 			fireEvent(Level.INFO,"Now indexing file "+validFileName, ((fileIndex * 100.0) / numFiles));
+			
+			if (executor == null) {
+				integrate(harvest(fileBeingProcessed, fileIndex, propertiesCollectors), true);
+			} else {
+				// collectors keep state between collecting and setting the properties,
+				// each task needs its own
+				final List<PropertiesCollector> collectors = createPropertiesCollectors();
+				final int index = fileIndex;
+				pendingGranules.add(executor.submit(new Callable<HarvestedGranule>() {
+					public HarvestedGranule call() throws Exception {
+						return harvest(fileBeingProcessed, index, collectors);
+					}
+				}));
+				// keep the workers busy while bounding the memory used by the results
+				while (pendingGranules.size() >= 2 * runConfiguration.getParallelism())
+					integrate(nextHarvestedGranule(), true);
+			}
+			
+			super.handleFile(fileBeingProcessed, depth, results);
+		}
+
+		/**
+		 * Waits for the oldest pending granule, so that granules are integrated in walking order.
+		 */
+		private HarvestedGranule nextHarvestedGranule() throws IOException {
+			final Future<HarvestedGranule> future = pendingGranules.removeFirst();
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				final IOException ioe = new IOException("Interrupted while harvesting granules");
+				throw (IOException) ioe.initCause(e);
+			} catch (ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				final IOException ioe = new IOException(cause.getLocalizedMessage());
+				throw (IOException) ioe.initCause(cause);
+			}
+		}
+
+		/**
+		 * Extracts the metadata of a granule. This method does not modify the state of the
+		 * builder, apart from the reader caches, and can be run in parallel.
+		 * 
+		 * @param fileBeingProcessed the granule file.
+		 * @param index the index of the file in the walk, for progress reporting.
+		 * @param collectors the properties collectors to feed, can be {@code null}.
+		 */
+		private HarvestedGranule harvest(final File fileBeingProcessed, final int index, final List<PropertiesCollector> collectors) {
+			final HarvestedGranule granule = new HarvestedGranule(fileBeingProcessed, index);
 			ImageInputStream inStream=null;
 			ImageReader imageioReader = null;
 			AbstractGridCoverage2DReader coverageReader=null;
@@ -326,15 +417,16 @@ public class CatalogBuilder implements Runnable {
 				//
 				inStream = ImageIO.createImageInputStream(fileBeingProcessed);
 				if(inStream==null) {
-					fireEvent(Level.INFO,fileBeingProcessed+" has been skipped since we could not get a stream for it", ((fileIndex * 100.0) / numFiles));
-					return;
+					granule.skipMessage = fileBeingProcessed+" has been skipped since we could not get a stream for it";
+					return granule;
 				}
 				inStream.mark();
 				
 				
+				final ImageReaderSpi spi = cachedSPI;
 				cachedSPITest: {
 					// there is no cached reader spi, let's look for one
-					if(cachedSPI==null){
+					if(spi==null){
 						final Iterator<ImageReader> it = ImageIO.getImageReaders(inStream);
 						if (it.hasNext()) {
 							imageioReader = it.next();
@@ -348,22 +440,21 @@ public class CatalogBuilder implements Runnable {
 						}
 					} else {
 						// we have a cached SPI, let's try to use it
-						if(!cachedSPI.canDecodeInput(inStream)){				
+						if(!spi.canDecodeInput(inStream)){				
 							// the SPI is no good for this input
 							cachedSPI=null;
 							//take me to the SPI search
 							break cachedSPITest;
 						}
 						// the spi is good
-						imageioReader=cachedSPI.createReaderInstance();
+						imageioReader=spi.createReaderInstance();
 						imageioReader.setInput(inStream);
 					}
 				}
 				// did we found a reader
 				if (imageioReader == null) {
-					// send a message
-					fireEvent(Level.INFO,new StringBuilder("Skipped file ").append(fileBeingProcessed).append(":No ImageIO reader	s availaible.").toString(), ((fileIndex * 99.0) / numFiles));
-					return;
+					granule.skipMessage = new StringBuilder("Skipped file ").append(fileBeingProcessed).append(":No ImageIO reader	s availaible.").toString();
+					return granule;
 				}
 
 
@@ -371,33 +462,130 @@ public class CatalogBuilder implements Runnable {
 				// STEP 2
 				// Getting a coverage reader for this coverage.
 				//
+				final AbstractGridFormat cached = cachedFormat;
 				final AbstractGridFormat format;
-				if(cachedFormat == null) {
+				if(cached == null) {
 					format= (AbstractGridFormat) GridFormatFinder.findFormat(fileBeingProcessed);
 				} else {
-					if(cachedFormat.accepts(fileBeingProcessed)) {
-						format=cachedFormat;
+					if(cached.accepts(fileBeingProcessed)) {
+						format=cached;
 					} else {
 						format=new UnknownFormat();
 					}
 				}
 				if ((format instanceof UnknownFormat)||format == null) {
-					fireEvent(Level.INFO,new StringBuilder("Skipped file ").append(fileBeingProcessed).append(": File format is not supported.").toString(), ((fileIndex * 99.0) / numFiles));
-					return;
+					granule.skipMessage = new StringBuilder("Skipped file ").append(fileBeingProcessed).append(": File format is not supported.").toString();
+					return granule;
 				}
 				cachedFormat=format;
 				coverageReader = (AbstractGridCoverage2DReader) format.getReader(fileBeingProcessed,runConfiguration.getHints());
-				GeneralEnvelope envelope = (GeneralEnvelope) coverageReader.getOriginalEnvelope();
-				CoordinateReferenceSystem actualCRS = coverageReader.getCrs();
+				granule.envelope = (GeneralEnvelope) coverageReader.getOriginalEnvelope();
+				granule.crs = coverageReader.getCrs();
 
 				//
 				// STEP 3
-				// Get the type specifier for this image and the check that the
-				// image has the correct sample model and color model.
-				// If this is the first cycle of the loop we initialize everything.
+				// Get the type specifier for this image, and the resolution levels
 				//
 				final ImageTypeSpecifier its = ((ImageTypeSpecifier) imageioReader.getImageTypes(0).next());
-				if (numberOfProcessedFiles==0) {
+				granule.colorModel = its.getColorModel();
+				granule.sampleModel = its.getSampleModel();
+
+				// resetting reader and recreating stream, turnaround for a
+				// strange imageio bug that sometimes pops up
+				imageioReader.reset();
+				try {
+					inStream.reset();
+				} catch (IOException e) {
+					//close me and reopen me
+					try {
+						inStream.close();
+					} catch (Throwable e1) {
+						if(LOGGER.isLoggable(Level.FINE))
+							LOGGER.log(Level.FINE,e1.getLocalizedMessage(),e1);
+					}
+					inStream= ImageIO.createImageInputStream(fileBeingProcessed);
+				}
+				
+				//let's check if we got something now
+				if(inStream==null) {
+					//skip file
+					granule.skipMessage = fileBeingProcessed+" has been skipped since we could not get a stream for it";
+					return granule;
+				}
+				imageioReader.setInput(inStream);
+				granule.numberOfLevels = imageioReader.getNumImages(true);
+				granule.resolutionLevels = new double[2][granule.numberOfLevels];
+				setupResolutions(granule.resolutionLevels, granule.numberOfLevels, coverageReader, imageioReader);
+
+				granule.location = prepareLocation(fileBeingProcessed);
+				
+				// collect properties, they are set on the feature when integrating the granule
+				if(collectors!=null&&collectors.size()>0)
+					for(PropertiesCollector pc: collectors)
+						pc.collect(fileBeingProcessed).collect(coverageReader).collect(imageioReader);
+				granule.collectors = collectors;
+			} catch (IOException e) {
+				granule.exception = e;
+			} catch (ArrayIndexOutOfBoundsException e) {
+				granule.exception = e;
+			} 
+			finally{
+				// ////////////////////////////////////////////////////////
+				//
+				// release resources
+				//
+				// ////////////////////////////////////////////////////////
+				try {
+					if(inStream!=null)
+						inStream.close();
+				} catch (Throwable e) {
+					// ignore exception
+					if(LOGGER.isLoggable(Level.FINEST))
+						LOGGER.log(Level.FINEST,e.getLocalizedMessage(),e);
+				}
+				try {
+					if(imageioReader!=null)
+						imageioReader.dispose();
+				} catch (Throwable e) {
+					// ignore exception
+					if(LOGGER.isLoggable(Level.FINEST))
+						LOGGER.log(Level.FINEST,e.getLocalizedMessage(),e);					
+				}				
+		
+				
+				try {
+					if(coverageReader!=null)
+						// release resources
+						coverageReader.dispose();
+				} catch (Throwable e) {
+					// ignore exception
+					if(LOGGER.isLoggable(Level.FINEST))
+						LOGGER.log(Level.FINEST,e.getLocalizedMessage(),e);					
+				}
+			}
+			return granule;
+		}
+
+		/**
+		 * Checks a harvested granule against the mosaic and adds it to the catalog. Granules
+		 * must be integrated in walking order, from the walking thread.
+		 * 
+		 * @param register {@code false} for initializing the mosaic from a granule which is
+		 *        already in the catalog.
+		 */
+		private void integrate(final HarvestedGranule granule, final boolean register) throws IOException {
+			final File fileBeingProcessed = granule.file;
+			final int index = granule.index;
+			try {
+				if (granule.exception != null) {
+					fireException(granule.exception);
+					return;
+				}
+				if (granule.skipMessage != null) {
+					fireEvent(Level.INFO, granule.skipMessage, ((index * 99.0) / numFiles));
+					return;
+				}
+				if (!initialized) {
 					// /////////////////////////////////////////////////////////////////////
 					//
 					// at the first step we initialize everything that we will
@@ -405,8 +593,8 @@ public class CatalogBuilder implements Runnable {
 					// models, crs, etc....
 					//
 					// /////////////////////////////////////////////////////////////////////
-					defaultCM = its.getColorModel();
-					defaultSM = its.getSampleModel();
+					defaultCM = granule.colorModel;
+					defaultSM = granule.sampleModel;
 					if (defaultCM instanceof IndexColorModel) {
 						IndexColorModel icm = (IndexColorModel) defaultCM;
 						int numBands = defaultCM.getNumColorComponents();
@@ -418,79 +606,51 @@ public class CatalogBuilder implements Runnable {
 							icm.getAlphas(defaultPalette[0]);
 
 					}
-					defaultCRS = actualCRS;
+					defaultCRS = granule.crs;
 
 					// /////////////////////////////////////////////////////////////////////
 					//
 					// getting information about resolution
 					//
 					// /////////////////////////////////////////////////////////////////////
-
-
-					// get the dimension of the hr image and build the model
-					// as well as computing the resolution
-					// 
-					// resetting reader and recreating stream, turnaround for a
-					// strange imageio bug that sometimes pops up
-					imageioReader.reset();
-					try {
-						inStream.reset();
-					} catch (IOException e) {
-						//close me and reopen me
-						try {
-							inStream.close();
-						} catch (Throwable e1) {
-							if(LOGGER.isLoggable(Level.FINE))
-								LOGGER.log(Level.FINE,e1.getLocalizedMessage(),e1);
-						}
-						inStream= ImageIO.createImageInputStream(fileBeingProcessed);
-					}
-					
-					//let's check if we got something now
-					if(inStream==null) {
-						//skip file
-						fireEvent(Level.INFO,fileBeingProcessed+" has been skipped since we could not get a stream for it", ((fileIndex * 100.0) / numFiles));
-						return;
-					}
-					imageioReader.setInput(inStream);
-					int numberOfLevels = imageioReader.getNumImages(true);
-					double[][] resolutionLevels = new double[2][numberOfLevels];
-					setupResolutions(resolutionLevels, numberOfLevels, coverageReader, imageioReader, null);
-					mosaicConfiguration.setLevelsNum(numberOfLevels);
-					mosaicConfiguration.setLevels(resolutionLevels);
+					mosaicConfiguration.setLevelsNum(granule.numberOfLevels);
+					mosaicConfiguration.setLevels(granule.resolutionLevels);
 
 					// /////////////////////////////////////////////////////////////////////
 					//
-					// creating the schema
+					// creating the schema, unless resuming on an existing catalog
 					//
 					// /////////////////////////////////////////////////////////////////////
-					final String schemaDef= runConfiguration.getSchema();
-					if(schemaDef!=null){
-						// get the schema
-						try{
-							indexSchema=DataUtilities.createType(mosaicConfiguration.getName(), runConfiguration.getSchema());
-							//override the crs in case the provided one was wrong or absent
-							indexSchema=DataUtilities.createSubType(indexSchema, DataUtilities.attributeNames(indexSchema), actualCRS);
+					if (indexSchema == null) {
+						final String schemaDef= runConfiguration.getSchema();
+						if(schemaDef!=null){
+							// get the schema
+							try{
+								indexSchema=DataUtilities.createType(mosaicConfiguration.getName(), runConfiguration.getSchema());
+								//override the crs in case the provided one was wrong or absent
+								indexSchema=DataUtilities.createSubType(indexSchema, DataUtilities.attributeNames(indexSchema), granule.crs);
+							}
+							catch (Throwable e) {
+								if(LOGGER.isLoggable(Level.FINE))
+									LOGGER.log(Level.FINE,e.getLocalizedMessage(),e);
+								indexSchema=null;
+							}
 						}
-						catch (Throwable e) {
-							if(LOGGER.isLoggable(Level.FINE))
-								LOGGER.log(Level.FINE,e.getLocalizedMessage(),e);
-							indexSchema=null;
+						if(indexSchema==null){
+							final SimpleFeatureTypeBuilder featureBuilder = new SimpleFeatureTypeBuilder();
+							featureBuilder.setName(runConfiguration.getIndexName());
+							featureBuilder.setNamespaceURI("http://www.geo-solutions.it/");
+							featureBuilder.add(runConfiguration.getLocationAttribute(), String.class);
+							featureBuilder.add("the_geom", Polygon.class,granule.crs);
+							featureBuilder.setDefaultGeometry("the_geom");
+							if(runConfiguration.getTimeAttribute()!=null)
+								featureBuilder.add(runConfiguration.getTimeAttribute(), Date.class);
+							indexSchema = featureBuilder.buildFeatureType();
 						}
+						// create the schema for the new shape file
+						catalog.createType(indexSchema);
 					}
-					if(indexSchema==null){
-						final SimpleFeatureTypeBuilder featureBuilder = new SimpleFeatureTypeBuilder();
-						featureBuilder.setName(runConfiguration.getIndexName());
-						featureBuilder.setNamespaceURI("http://www.geo-solutions.it/");
-						featureBuilder.add(runConfiguration.getLocationAttribute(), String.class);
-						featureBuilder.add("the_geom", Polygon.class,actualCRS);
-						featureBuilder.setDefaultGeometry("the_geom");
-						if(runConfiguration.getTimeAttribute()!=null)
-							featureBuilder.add(runConfiguration.getTimeAttribute(), Date.class);
-						indexSchema = featureBuilder.buildFeatureType();
-					}
-					// create the schema for the new shape file
-					catalog.createType(indexSchema);
+					initialized = true;
 					
 				} else {
 				    if (!mosaicConfiguration.isHeterogeneous()){
@@ -500,20 +660,16 @@ public class CatalogBuilder implements Runnable {
 				        // has been already marked as heterogeneous
 				        //
 				        // //
-				        int numberOfLevels = imageioReader.getNumImages(true);
+				        final int numberOfLevels = granule.numberOfLevels;
                                         if (numberOfLevels != mosaicConfiguration.getLevelsNum()) {
                                             mosaicConfiguration.setHeterogeneous(true);
                                             if (numberOfLevels > mosaicConfiguration.getLevelsNum()){
-                                                final double[][] resolutionLevels = new double[2][numberOfLevels];
-                                                setupResolutions(resolutionLevels, numberOfLevels, coverageReader, imageioReader, null);
                                                 mosaicConfiguration.setLevelsNum(numberOfLevels);
-                                                mosaicConfiguration.setLevels(resolutionLevels);
+                                                mosaicConfiguration.setLevels(granule.resolutionLevels);
                                             }
                                         } else {
                                             final double[][] mosaicLevels = mosaicConfiguration.getLevels();
-                                            final double[][] resolutionLevels = new double[2][numberOfLevels];
-                                            final boolean homogeneousLevels = setupResolutions(resolutionLevels, numberOfLevels, coverageReader, imageioReader, mosaicLevels);
-                                            if (!homogeneousLevels){
+                                            if (!compareResolutions(granule.resolutionLevels, numberOfLevels, mosaicLevels)){
                                                 mosaicConfiguration.setHeterogeneous(true);
                                             }
                                         }
@@ -526,12 +682,12 @@ public class CatalogBuilder implements Runnable {
 					// comparing SampeModel
 					// comparing CRSs
 					// ////////////////////////////////////////////////////////
-					ColorModel actualCM = its.getColorModel();
-					if((fileIndex > 0 ? !(CRS.equalsIgnoreMetadata(defaultCRS, actualCRS)) : false)){
+					ColorModel actualCM = granule.colorModel;
+					if((index > 0 ? !(CRS.equalsIgnoreMetadata(defaultCRS, granule.crs)) : false)){
 						fireEvent(
 								Level.INFO,
 								new StringBuilder("Skipping image ").append(fileBeingProcessed).append(" because CRSs do not match.").toString(),
-								(((fileIndex + 1) * 99.0) / numFiles));
+								(((index + 1) * 99.0) / numFiles));
 						return;
 					}
 					
@@ -539,10 +695,12 @@ public class CatalogBuilder implements Runnable {
 						fireEvent(
 								Level.INFO,
 								new StringBuilder("Skipping image ").append(fileBeingProcessed).append(" because color models do not match.").toString(),
-								(((fileIndex + 1) * 99.0) / numFiles));
+								(((index + 1) * 99.0) / numFiles));
 						return;
 					}							
 				}
+				if (!register)
+					return;
 
 				// ////////////////////////////////////////////////////////
 				//
@@ -552,71 +710,72 @@ public class CatalogBuilder implements Runnable {
 				//
 				// ////////////////////////////////////////////////////////
 				final SimpleFeature feature = DataUtilities.template(indexSchema);
-				feature.setAttribute(indexSchema.getGeometryDescriptor().getLocalName(), geomFactory.toGeometry(new ReferencedEnvelope((Envelope) envelope)));
-				feature.setAttribute(runConfiguration.getLocationAttribute(), prepareLocation(fileBeingProcessed));
+				feature.setAttribute(indexSchema.getGeometryDescriptor().getLocalName(), geomFactory.toGeometry(new ReferencedEnvelope((Envelope) granule.envelope)));
+				feature.setAttribute(runConfiguration.getLocationAttribute(), granule.location);
 				
-				// collect and dump properties
-				if(propertiesCollectors!=null&&propertiesCollectors.size()>0)
-					for(PropertiesCollector pc: propertiesCollectors)
+				// dump properties
+				if(granule.collectors!=null&&granule.collectors.size()>0)
+					for(PropertiesCollector pc: granule.collectors)
 					{
-						pc.collect(fileBeingProcessed).collect(coverageReader).collect(imageioReader).setProperties(feature);
+						pc.setProperties(feature);
 						pc.reset();
 					}
 
 				catalog.addGranule(feature,transaction);
+				if (checkpointFile != null)
+				    uncheckpointedLocations.add(granule.location);
 
 				// fire event
-				fireEvent(Level.FINE,"Done with file "+fileBeingProcessed, (((fileIndex + 1) * 99.0) / numFiles));
+				fireEvent(Level.FINE,"Done with file "+fileBeingProcessed, (((index + 1) * 99.0) / numFiles));
 			
 
 				// advance files
 				numberOfProcessedFiles++;
-			} catch (IOException e) {
-				fireException(e);
-				return;
-			} catch (ArrayIndexOutOfBoundsException e) {
-				fireException(e);
-				return;
-			} 
-			finally{
-				// ////////////////////////////////////////////////////////
-				//
-				// STEP 5
-				//
-				// release resources
-				//
-				// ////////////////////////////////////////////////////////
-				try {
-					if(inStream!=null)
-						inStream.close();
-				} catch (Throwable e) {
-					// ignore exception
-					if(LOGGER.isLoggable(Level.FINEST))
-						LOGGER.log(Level.FINEST,e.getLocalizedMessage(),e);
-				}
-				try {
-					if(imageioReader!=null)
-						imageioReader.dispose();
-				} catch (Throwable e) {
-					// ignore exception
-					if(LOGGER.isLoggable(Level.FINEST))
-						LOGGER.log(Level.FINEST,e.getLocalizedMessage(),e);					
-				}				
-		
+				harvestedGranulesCount++;
 				
-				try {
-					if(coverageReader!=null)
-						// release resources
-						coverageReader.dispose();
-				} catch (Throwable e) {
-					// ignore exception
-					if(LOGGER.isLoggable(Level.FINEST))
-						LOGGER.log(Level.FINEST,e.getLocalizedMessage(),e);					
+				// batched writes
+				final int commitInterval = runConfiguration.getCommitInterval();
+				if (commitInterval > 0 && ++uncommittedGranules >= commitInterval) {
+					commit();
+					fireEvent(Level.INFO,
+							"Committed " + numberOfProcessedFiles + " granules, " + getThroughput() + " granules/s",
+							(((index + 1) * 99.0) / numFiles));
 				}
+			} finally {
+				// the properties collectors of serial harvesting are shared
+				if (granule.collectors != null)
+					for (PropertiesCollector pc : granule.collectors)
+						pc.reset();
 			}
-		
-			
-			super.handleFile(fileBeingProcessed, depth, results);
+		}
+
+		/**
+		 * Commits the granules added so far, updating the checkpoint.
+		 */
+		private void commit() throws IOException {
+			transaction.commit();
+			uncommittedGranules = 0;
+			updateCheckpoint();
+		}
+
+		/**
+		 * Returns the number of granules harvested per second by this run.
+		 */
+		private long getThroughput() {
+			final long elapsed = System.currentTimeMillis() - startTime;
+			return elapsed > 0 ? Math.round(harvestedGranulesCount * 1000.0 / elapsed) : harvestedGranulesCount;
+		}
+
+		/**
+		 * Initializes the mosaic configuration from the first granule of an interrupted run,
+		 * so that the granules harvested by this run are checked against it.
+		 */
+		private void resumeFromCheckpoint() throws IOException {
+			final String location = checkpointedLocations.iterator().next();
+			final File granuleFile = runConfiguration.isAbsolute() ? new File(location) : new File(runConfiguration.getRootMosaicDirectory() + location);
+			integrate(harvest(granuleFile, 0, null), false);
+			numberOfProcessedFiles = checkpointedLocations.size();
+			fireEvent(Level.INFO, "Resuming the harvesting, " + numberOfProcessedFiles + " granules already indexed", 0);
 		}
 
         private String prepareLocation(final File fileBeingProcessed) throws IOException {
@@ -656,8 +815,14 @@ public class CatalogBuilder implements Runnable {
 			
 			this.transaction= new DefaultTransaction("MosaicCreationTransaction"+System.nanoTime());
                         indexingPreamble();
+                        startTime = System.currentTimeMillis();
+                        if (runConfiguration.getParallelism() > 1)
+                            executor = Executors.newFixedThreadPool(runConfiguration.getParallelism());
 
                         try {
+                            if (!checkpointedLocations.isEmpty())
+                                resumeFromCheckpoint();
+                            
                             // start walking directories
                             for(String indexingDirectory:indexingDirectories){
                                 walk(new File(indexingDirectory), null);
@@ -666,16 +831,31 @@ public class CatalogBuilder implements Runnable {
                                 if(canceled)
                                     break;
                             }
+                            // integrate the granules still being harvested
+                            while (!canceled && !pendingGranules.isEmpty())
+                                integrate(nextHarvestedGranule(), true);
+                            
                          // did we cancel?
                             if(canceled)
                                 transaction.rollback();
-                            else
-                                transaction.commit();
+                            else {
+                                commit();
+                                if (checkpointFile != null)
+                                    checkpointFile.delete();
+                                if (executor != null)
+                                    fireEvent(Level.INFO, "Harvested " + harvestedGranulesCount + " granules, " + getThroughput() + " granules/s", 99.9);
+                            }
                         } catch (Exception e) {
                             LOGGER.log(Level.WARNING, "Failure occurred while collecting the granules", e);
                             transaction.rollback();
                         } finally {
                             transaction.close();
+                            if (executor != null) {
+                                for (Future<HarvestedGranule> future : pendingGranules)
+                                    future.cancel(true);
+                                pendingGranules.clear();
+                                executor.shutdownNow();
+                            }
                             
                             try{
                                 indexingPostamble(!canceled);
@@ -854,6 +1034,12 @@ public class CatalogBuilder implements Runnable {
 
 	private GranuleCatalog catalog;
 
+	/** The persistent granule index to write, or {@code null} if none. */
+	private File packedIndexFile;
+
+	/** The parameters of the shapefile the persistent index is written from. */
+	private Map<String, Serializable> packedIndexParams;
+
 	private int numberOfProcessedFiles;
 
 	/**
@@ -866,6 +1052,9 @@ public class CatalogBuilder implements Runnable {
 
 	private int fileIndex=0;
 
+	/** Whether the mosaic has been initialized from its first granule. */
+	private boolean initialized;
+
 	private ColorModel defaultCM = null;
 
 	private CoordinateReferenceSystem defaultCRS = null;
@@ -874,17 +1063,92 @@ public class CatalogBuilder implements Runnable {
 
 	private CatalogBuilderConfiguration runConfiguration;
 
-	private ImageReaderSpi cachedSPI;
+	private volatile ImageReaderSpi cachedSPI;
 
 	private List<PropertiesCollector> propertiesCollectors;
 
+	/** The definitions of the {@link #propertiesCollectors}, for creating more of them. */
+	private List<PropertiesCollectorDefinition> propertiesCollectorDefinitions;
+
+	/** The file recording the harvested granules, or {@code null} if not checkpointing. */
+	private File checkpointFile;
+
+	/** The locations of the granules harvested by an interrupted run. */
+	private final Set<String> checkpointedLocations = new LinkedHashSet<String>();
+
+	/** The locations of the granules added since the last checkpoint. */
+	private final List<String> uncheckpointedLocations = new ArrayList<String>();
+
+	/** Whether the checkpoint records a heterogeneous mosaic. */
+	private boolean checkpointHeterogeneous;
+
 	private SampleModel defaultSM;
 
 	private ReferencedEnvelope imposedBBox;
 
     private SimpleFeatureType indexSchema;
 
-    private AbstractGridFormat cachedFormat;
+    private volatile AbstractGridFormat cachedFormat;
+
+	/**
+	 * The metadata of a granule, extracted before adding the granule to the catalog.
+	 */
+	static final class HarvestedGranule {
+		final File file;
+
+		/** The index of the file in the walk. */
+		final int index;
+
+		String location;
+
+		GeneralEnvelope envelope;
+
+		CoordinateReferenceSystem crs;
+
+		ColorModel colorModel;
+
+		SampleModel sampleModel;
+
+		int numberOfLevels;
+
+		double[][] resolutionLevels;
+
+		/** The collectors holding the granule properties. */
+		List<PropertiesCollector> collectors;
+
+		/** Why the granule has been skipped, if it was. */
+		String skipMessage;
+
+		/** The failure which occurred while harvesting, if any. */
+		Exception exception;
+
+		HarvestedGranule(final File file, final int index) {
+			this.file = file;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * A parsed entry of the property collectors configuration.
+	 */
+	static final class PropertiesCollectorDefinition {
+		final PropertiesCollectorSPI spi;
+
+		final File configFile;
+
+		final List<String> propertyNames;
+
+		PropertiesCollectorDefinition(final PropertiesCollectorSPI spi, final File configFile,
+				final List<String> propertyNames) {
+			this.spi = spi;
+			this.configFile = configFile;
+			this.propertyNames = propertyNames;
+		}
+
+		PropertiesCollector create() {
+			return spi.create(configFile, propertyNames);
+		}
+	}
 	
 	/* (non-Javadoc)
 	 * @see org.geotools.gce.imagemosaic.JMXIndexBuilderMBean#run()
@@ -949,6 +1213,8 @@ public class CatalogBuilder implements Runnable {
 									FileFilterUtils.nameFileFilter("error.txt"),
 									FileFilterUtils.nameFileFilter("error.txt.lck"),
 									FileFilterUtils.suffixFileFilter("properties"),
+									FileFilterUtils.suffixFileFilter("checkpoint"),
+									FileFilterUtils.suffixFileFilter(PackedGranuleIndex.EXTENSION),
 									FileFilterUtils.suffixFileFilter("svn-base")
 									);
 
@@ -1051,6 +1317,7 @@ public class CatalogBuilder implements Runnable {
 		defaultCRS=null;
 		defaultPalette=null;
 		fileIndex=0;
+		initialized=false;
 		numberOfProcessedFiles=0;
 		
 		// clear directories
@@ -1193,6 +1460,27 @@ public class CatalogBuilder implements Runnable {
 		// do we have a datastore.properties file?
 		final File parent=new File(runConfiguration.getRootMosaicDirectory());
 		final File datastoreProperties= new File(parent,"datastore.properties");
+		
+		//
+		// are we resuming an interrupted harvesting?
+		//
+		checkpointedLocations.clear();
+		uncheckpointedLocations.clear();
+		checkpointHeterogeneous = false;
+		checkpointFile = null;
+		if (runConfiguration.getCommitInterval() > 0) {
+			checkpointFile = new File(parent, runConfiguration.getIndexName() + ".checkpoint");
+			if (checkpointFile.exists()) {
+				final boolean indexExists = Utils.checkFileReadable(datastoreProperties)
+						|| new File(parent, runConfiguration.getIndexName() + ".shp").exists();
+				if (indexExists)
+					loadCheckpoint();
+				else
+					checkpointFile.delete();
+			}
+		}
+		final boolean resuming = !checkpointedLocations.isEmpty();
+		indexSchema = null;
 		if(Utils.checkFileReadable(datastoreProperties)){
 			// read the properties file
 			Properties properties = Utils.loadPropertiesFromURL(DataUtilities.fileToURL(datastoreProperties));
@@ -1205,7 +1493,7 @@ public class CatalogBuilder implements Runnable {
 				// create a datastore as instructed
 				final DataStoreFactorySpi spi = (DataStoreFactorySpi) Class.forName(SPIClass).newInstance();
 				final Map<String, Serializable> params = Utils.createDataStoreParamsFromPropertiesFile(properties,spi);
-				catalog=GranuleCatalogFactory.createGranuleCatalog(params,false,true, spi);
+				catalog=GranuleCatalogFactory.createGranuleCatalog(params,false,!resuming, spi);
 			} catch (ClassNotFoundException e) {
 				final IOException ioe = new IOException();
 				throw (IOException) ioe.initCause(e);
@@ -1226,7 +1514,21 @@ public class CatalogBuilder implements Runnable {
 				params.put(ShapefileDataStoreFactory.CREATE_SPATIAL_INDEX.key, Boolean.TRUE);
 			params.put(ShapefileDataStoreFactory.MEMORY_MAPPED.key, Boolean.TRUE);
 			params.put(ShapefileDataStoreFactory.DBFTIMEZONE.key, TimeZone.getTimeZone("UTC"));
-			catalog= GranuleCatalogFactory.createGranuleCatalog(params,false,true, Utils.SHAPE_SPI);
+			catalog= GranuleCatalogFactory.createGranuleCatalog(params,false,!resuming, Utils.SHAPE_SPI);
+			
+			// the persistent index is used by the caching catalog only, since the 
+			// shapefile gets recreated any previous one is stale
+			final File indexFile = PackedGranuleIndex.getIndexFile(DataUtilities.urlToFile(file));
+			if (!resuming && indexFile.exists() && !indexFile.delete())
+			    throw new IOException("Unable to delete the stale granule index " + indexFile);
+			packedIndexFile = runConfiguration.isCaching() ? indexFile : null;
+			packedIndexParams = params;
+		}
+		if (resuming) {
+			// the granules will be added to the existing schema
+			indexSchema = catalog.getType();
+			if (indexSchema == null)
+				throw new IOException("Unable to resume the harvesting, the index has no schema");
 		}
 	
 		//
@@ -1234,6 +1536,8 @@ public class CatalogBuilder implements Runnable {
 		//
 		mosaicConfiguration= new MosaicConfigurationBean();
 		mosaicConfiguration.setName(runConfiguration.getIndexName());
+		if (resuming && checkpointHeterogeneous)
+			mosaicConfiguration.setHeterogeneous(true);
 		
 		//
 		// IMPOSED ENVELOPE
@@ -1263,6 +1567,7 @@ public class CatalogBuilder implements Runnable {
 			
 			// parse the string
 			final List<PropertiesCollector> pcs= new ArrayList<PropertiesCollector>();
+			final List<PropertiesCollectorDefinition> definitions = new ArrayList<PropertiesCollectorDefinition>();
 			final String[] pcsDefs=pcConfig.split(",");
 			for (String pcDef: pcsDefs) {
 				// parse this def as NAME[CONFIG_FILE](PROPERTY;PROPERTY;....;PROPERTY)
@@ -1313,9 +1618,11 @@ public class CatalogBuilder implements Runnable {
 				final String propertyNames[] = pcDef.substring(roundLPos+1, roundRPos).split(",");
 				
 				// create the PropertiesCollector
-				final PropertiesCollector pc = selectedSPI.create(configFile, Arrays.asList(propertyNames));
+				final PropertiesCollectorDefinition definition = new PropertiesCollectorDefinition(selectedSPI, configFile, Arrays.asList(propertyNames));
+				final PropertiesCollector pc = definition.create();
 				if (pc != null) {
 				    pcs.add(pc);
+				    definitions.add(definition);
 				} else {
 				    if(LOGGER.isLoggable(Level.INFO)){
 				        LOGGER.info("Unable to create PropertyCollector from config file:"+configFile);
@@ -1324,13 +1631,116 @@ public class CatalogBuilder implements Runnable {
 				
 			}
 			this.propertiesCollectors=pcs;
+			this.propertiesCollectorDefinitions=definitions;
+		}
+	}
+
+	/**
+	 * Creates a new set of properties collectors, for harvesting a granule in parallel with
+	 * the others.
+	 */
+	private List<PropertiesCollector> createPropertiesCollectors() {
+		if (propertiesCollectorDefinitions == null)
+			return null;
+		final List<PropertiesCollector> pcs = new ArrayList<PropertiesCollector>();
+		for (PropertiesCollectorDefinition definition : propertiesCollectorDefinitions) {
+			final PropertiesCollector pc = definition.create();
+			if (pc != null)
+				pcs.add(pc);
+		}
+		return pcs;
+	}
+
+	/**
+	 * Reads the locations of the granules harvested by an interrupted run.
+	 */
+	private void loadCheckpoint() throws IOException {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(checkpointFile), "UTF-8"));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.equals(HETEROGENEOUS_CHECKPOINT))
+					checkpointHeterogeneous = true;
+				else if (line.length() > 0)
+					checkpointedLocations.add(line);
+			}
+		} finally {
+			if (reader != null)
+				reader.close();
+		}
+	}
+
+	/**
+	 * Appends the granules committed since the last call to the checkpoint file.
+	 */
+	private void updateCheckpoint() {
+		if (checkpointFile == null || uncheckpointedLocations.isEmpty())
+			return;
+		Writer writer = null;
+		try {
+			writer = new OutputStreamWriter(new FileOutputStream(checkpointFile, true), "UTF-8");
+			final String newLine = System.getProperty("line.separator");
+			for (String location : uncheckpointedLocations)
+				writer.write(location + newLine);
+			if (mosaicConfiguration.isHeterogeneous() && !checkpointHeterogeneous) {
+				writer.write(HETEROGENEOUS_CHECKPOINT + newLine);
+				checkpointHeterogeneous = true;
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Unable to update the checkpoint " + checkpointFile, e);
+		} finally {
+			uncheckpointedLocations.clear();
+			try {
+				if (writer != null)
+					writer.close();
+			} catch (Throwable e) {
+				if (LOGGER.isLoggable(Level.FINE))
+					LOGGER.log(Level.FINE, e.getLocalizedMessage(), e);
+			}
 		}
 	}
 
+	/**
+	 * Writes the persistent granule index from the harvested shapefile, so that the caching
+	 * catalog does not need to rebuild its index. The records are read back from the shapefile
+	 * once it is closed, so the index holds the feature ids the shapefile assigned.
+	 */
+	private void writePackedIndex() {
+	    if (packedIndexFile == null)
+	        return;
+	    DataStore store = null;
+	    try {
+	        store = new ShapefileDataStoreFactory().createDataStore(packedIndexParams);
+	        final SimpleFeatureSource source = store.getFeatureSource(store.getTypeNames()[0]);
+	        if (!PackedGranuleIndex.isSupported(source.getSchema()))
+	            return;
+	        final List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+	        final SimpleFeatureIterator it = source.getFeatures().features();
+	        try {
+	            while (it.hasNext())
+	                features.add(it.next());
+	        } finally {
+	            it.close();
+	        }
+	        PackedGranuleIndex.write(packedIndexFile, features);
+	    } catch (IOException e) {
+	        LOGGER.log(Level.WARNING, "Unable to write the granule index " + packedIndexFile, e);
+	        // the catalog will rebuild it
+	        packedIndexFile.delete();
+	    } finally {
+	        if (store != null)
+	            store.dispose();
+	    }
+	}
+
 	private void indexingPostamble(final boolean success) throws IOException {
 		//close shapefile elements
 		closeIndexObjects();
 		
+		if (success && numberOfProcessedFiles > 0)
+			writePackedIndex();
+		
 		if(success){
         		// create sample image if the needed elements are available
         		createSampleImage();
@@ -1484,34 +1894,44 @@ public class CatalogBuilder implements Runnable {
 	 * @param numberOfLevels
 	 * @param coverageReader
 	 * @param imageioReader
-	 * @param compareLevels optional resolutionLevels to be compared.
-	 * @return 
 	 * @throws IndexOutOfBoundsException
 	 * @throws IOException
 	 */
-	private static boolean setupResolutions(
+	private static void setupResolutions(
                 final double[][] resolutionLevels, 
                 final int numberOfLevels, 
                 final AbstractGridCoverage2DReader coverageReader, 
-                final ImageReader imageioReader,
-                final double[][] compareLevels
+                final ImageReader imageioReader
                 ) throws IndexOutOfBoundsException, IOException {
             double[] res = CoverageUtilities.getResolution((AffineTransform) coverageReader.getOriginalGridToWorld(PixelInCell.CELL_CORNER));
             resolutionLevels[0][0] = res[0];
             resolutionLevels[1][0] = res[1];
-            final boolean checkLevels = compareLevels != null;
 
             // resolutions levels are computed using the raster space scale factors
             if (numberOfLevels >= 1) {
                 for (int k = 0; k < numberOfLevels; k++) {
                     resolutionLevels[0][k] = resolutionLevels[0][0]*coverageReader.getOriginalGridRange().getSpan(0)/(1.0*imageioReader.getWidth(k));
                     resolutionLevels[1][k] = resolutionLevels[1][0]*coverageReader.getOriginalGridRange().getSpan(1)/(1.0*imageioReader.getHeight(k));
-                    if (checkLevels)  {
-                        if (Math.abs(resolutionLevels[0][k] - compareLevels[0][k]) > RESOLUTION_TOLERANCE_FACTOR * compareLevels[0][k] ||
-                            Math.abs(resolutionLevels[1][k] - compareLevels[1][k]) > RESOLUTION_TOLERANCE_FACTOR * compareLevels[1][k]){
-                            return false;
-                        }
-                    }
+                }
+            }
+        }
+
+	/**
+	 * 
+	 * @param resolutionLevels
+	 * @param numberOfLevels
+	 * @param compareLevels the resolutionLevels to be compared.
+	 * @return {@code true} if the resolutions are the same, within tolerance.
+	 */
+	private static boolean compareResolutions(
+                final double[][] resolutionLevels, 
+                final int numberOfLevels, 
+                final double[][] compareLevels
+                ) {
+            for (int k = 0; k < numberOfLevels; k++) {
+                if (Math.abs(resolutionLevels[0][k] - compareLevels[0][k]) > RESOLUTION_TOLERANCE_FACTOR * compareLevels[0][k] ||
+                    Math.abs(resolutionLevels[1][k] - compareLevels[1][k]) > RESOLUTION_TOLERANCE_FACTOR * compareLevels[1][k]){
+                    return false;
                 }
             }
             return true;
@@ -58,6 +58,18 @@ public class CatalogBuilderConfiguration {
 
 	private boolean footprintManagement = Utils.DEFAULT_FOOTPRINT_MANAGEMENT;
 
+	/**
+	 * Number of threads extracting the granules metadata. Default is 1, no parallelism.
+	 */
+	private int parallelism = Utils.DEFAULT_PARALLELISM;
+
+	/**
+	 * Number of granules written to the index in a single commit. Default is 0, a single commit
+	 * at the end of the harvesting. When positive, progress is checkpointed after each commit
+	 * so that an interrupted harvesting can be resumed.
+	 */
+	private int commitInterval = Utils.DEFAULT_COMMIT_INTERVAL;
+
 	@Option(description = "Root directory where to place the index file", mandatory = true, name = "rootDirectory")
 	private String rootMosaicDirectory;
 
@@ -184,6 +196,22 @@ public class CatalogBuilderConfiguration {
 		this.footprintManagement = footprintManagement;
 	}
 
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getCommitInterval() {
+		return commitInterval;
+	}
+
+	public void setCommitInterval(int commitInterval) {
+		this.commitInterval = commitInterval;
+	}
+
 	public String getElevationAttribute() {
 		return elevationAttribute;
 	}
@@ -272,6 +300,10 @@ public class CatalogBuilderConfiguration {
 			return false;
 		if (this.footprintManagement != that.footprintManagement)
 			return false;
+		if (this.parallelism != that.parallelism)
+			return false;
+		if (this.commitInterval != that.commitInterval)
+			return false;
 		if (!(this.indexName == null && that.indexName == null)
 				&& !this.indexName.equals(that.indexName))
 			return false;
@@ -295,6 +327,8 @@ public class CatalogBuilderConfiguration {
 		seed = Utilities.hash(recursive, seed);
 		seed = Utilities.hash(caching, seed);
 		seed = Utilities.hash(footprintManagement, seed);
+		seed = Utilities.hash(parallelism, seed);
+		seed = Utilities.hash(commitInterval, seed);
 		seed = Utilities.hash(locationAttribute, seed);
 		seed = Utilities.hash(indexName, seed);
 		seed = Utilities.hash(wildcard, seed);
@@ -314,6 +348,8 @@ public class CatalogBuilderConfiguration {
 		builder.append("recursive:\t\t\t").append(recursive).append("\n");
 		builder.append("footprintManagement:\t\t\t")
 				.append(footprintManagement).append("\n");
+		builder.append("parallelism:\t\t\t").append(parallelism).append("\n");
+		builder.append("commitInterval:\t\t\t").append(commitInterval).append("\n");
 		builder.append("locationAttribute:\t\t\t").append(locationAttribute)
 				.append("\n");
 		builder.append("rootMosaicDirectory:\t\t\t")
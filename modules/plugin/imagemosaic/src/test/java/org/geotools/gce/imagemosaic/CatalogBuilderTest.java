@@ -28,10 +28,14 @@ import java.util.Properties;
 
 import javax.media.jai.PlanarImage;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridEnvelope2D;
 import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.gce.imagemosaic.catalog.GranuleCatalog;
 import org.geotools.gce.imagemosaic.catalogbuilder.CatalogBuilder;
 import org.geotools.gce.imagemosaic.catalogbuilder.CatalogBuilderConfiguration;
@@ -109,6 +113,15 @@ public class CatalogBuilderTest extends Assert {
 		assertTrue(c3.equals(c2));
 		assertEquals(c3.hashCode(), c2.hashCode());
 		
+		c3.setParallelism(4);
+		c3.setCommitInterval(100);
+		assertFalse(c3.equals(c2));
+		CatalogBuilderConfiguration c5 = c3.clone();
+		assertEquals(4, c5.getParallelism());
+		assertEquals(100, c5.getCommitInterval());
+		assertTrue(c5.equals(c3));
+		assertEquals(c5.hashCode(), c3.hashCode());
+		
 		//check errors
 		final CatalogBuilderConfiguration c4= new CatalogBuilderConfiguration();
 		assertNotNull(c4.toString());
@@ -308,4 +321,86 @@ public class CatalogBuilderTest extends Assert {
 		}
 	    }
 	}
+
+	@Test
+	public void buildParallelCatalog() throws Exception {
+	    if (hostnameDefined){
+		// work on a copy of the rgb granules, the test adds several indexes to the directory
+		final File directory = new File(TestData.file(this, "."), "parallel");
+		FileUtils.deleteDirectory(directory);
+		directory.mkdir();
+		for (File file : TestData.file(this, "/rgb").listFiles((java.io.FileFilter) FileFilterUtils.prefixFileFilter("global_mosaic")))
+			FileUtils.copyFileToDirectory(file, directory);
+		try {
+			// serial reference index
+			final CatalogBuilderConfiguration c1 = new CatalogBuilderConfiguration();
+			c1.setIndexName("serial");
+			c1.setLocationAttribute("location");
+			c1.setAbsolute(false);
+			c1.setRootMosaicDirectory(directory.toString());
+			c1.setIndexingDirectories(Arrays.asList(directory.toString()));
+			CatalogBuilder builder = new CatalogBuilder(c1);
+			builder.addProcessingEventListener(new CatalogBuilderListener());
+			builder.run();
+			final int granules = countGranules(new File(directory, "serial.shp"));
+			assertTrue(granules > 5);
+			
+			// parallel index, stopped after the first commit
+			final CatalogBuilderConfiguration c2 = new CatalogBuilderConfiguration(c1);
+			c2.setIndexName("parallel");
+			c2.setParallelism(4);
+			c2.setCommitInterval(5);
+			final CatalogBuilder stopped = new CatalogBuilder(c2);
+			stopped.addProcessingEventListener(new ProcessingEventListener() {
+
+				@Override
+				public void exceptionOccurred(ExceptionEvent event) {
+					throw new RuntimeException(event.getException());
+				}
+
+				@Override
+				public void getNotification(ProcessingEvent event) {
+					if (event.getMessage().contains("Committed"))
+						stopped.stop();
+				}
+			});
+			stopped.run();
+			final File checkpoint = new File(directory, "parallel.checkpoint");
+			assertTrue(checkpoint.exists());
+			assertFalse(new File(directory, "parallel.properties").exists());
+			assertEquals(5, countGranules(new File(directory, "parallel.shp")));
+			
+			// resume it
+			builder = new CatalogBuilder(c2);
+			builder.addProcessingEventListener(new CatalogBuilderListener());
+			builder.run();
+			assertFalse(checkpoint.exists());
+			assertTrue(new File(directory, "parallel.properties").exists());
+			assertEquals(granules, countGranules(new File(directory, "parallel.shp")));
+			
+			final ImageMosaicReader reader = new ImageMosaicReader(new File(directory, "parallel.shp"));
+			try {
+				final ImageMosaicReader serialReader = new ImageMosaicReader(new File(directory, "serial.shp"));
+				try {
+					assertEquals(serialReader.getOriginalEnvelope(), reader.getOriginalEnvelope());
+				} finally {
+					serialReader.dispose();
+				}
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			FileUtils.deleteDirectory(directory);
+		}
+	    }
+	}
+
+	private static int countGranules(final File shapefile) throws IOException {
+		final ShapefileDataStore store = new ShapefileDataStore(DataUtilities.fileToURL(shapefile));
+		try {
+			return store.getFeatureSource().getFeatures().size();
+		} finally {
+			store.dispose();
+		}
+	}
 }
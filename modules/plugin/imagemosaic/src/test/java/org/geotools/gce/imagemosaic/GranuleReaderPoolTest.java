@@ -0,0 +1,210 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing {@link GranuleReaderPool}.
+ *
+ * @source $URL$
+ */
+public class GranuleReaderPoolTest extends Assert {
+
+    /**
+     * A stream remembering whether it has been closed
+     */
+    static class TrackedStream extends MemoryCacheImageInputStream {
+        boolean closed;
+
+        TrackedStream() {
+            super(new ByteArrayInputStream(new byte[0]));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    /**
+     * A reader remembering whether it has been disposed
+     */
+    static class TrackedReader extends ImageReader {
+        boolean disposed;
+
+        TrackedReader() {
+            super(null);
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+        }
+
+        @Override
+        public int getNumImages(boolean allowSearch) {
+            return 0;
+        }
+
+        @Override
+        public int getWidth(int imageIndex) {
+            return 0;
+        }
+
+        @Override
+        public int getHeight(int imageIndex) {
+            return 0;
+        }
+
+        @Override
+        public Iterator<ImageTypeSpecifier> getImageTypes(int imageIndex) {
+            return null;
+        }
+
+        @Override
+        public IIOMetadata getStreamMetadata() {
+            return null;
+        }
+
+        @Override
+        public IIOMetadata getImageMetadata(int imageIndex) {
+            return null;
+        }
+
+        @Override
+        public BufferedImage read(int imageIndex, ImageReadParam param) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static URL url(String name) throws Exception {
+        return new URL("file:/data/" + name + ".tif");
+    }
+
+    private static void assertOpen(GranuleReaderPool.Entry entry) {
+        assertFalse(((TrackedStream) entry.stream).closed);
+        assertFalse(((TrackedReader) entry.reader).disposed);
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        final GranuleReaderPool pool = new GranuleReaderPool(4, 2);
+        assertNull(pool.borrow(url("a")));
+
+        final TrackedStream stream = new TrackedStream();
+        final TrackedReader reader = new TrackedReader();
+        pool.release(url("a"), stream, reader, true);
+        assertEquals(1, pool.getIdleCount());
+        assertNull(pool.borrow(url("b")));
+
+        // the same pair is handed out again, and only once
+        final GranuleReaderPool.Entry entry = pool.borrow(url("a"));
+        assertNotNull(entry);
+        assertSame(stream, entry.stream);
+        assertSame(reader, entry.reader);
+        assertOpen(entry);
+        assertNull(pool.borrow(url("a")));
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void boundPerGranule() throws Exception {
+        final GranuleReaderPool pool = new GranuleReaderPool(10, 2);
+        final TrackedStream[] streams = new TrackedStream[3];
+        final TrackedReader[] readers = new TrackedReader[3];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = new TrackedStream();
+            readers[i] = new TrackedReader();
+            pool.release(url("a"), streams[i], readers[i], true);
+        }
+        assertEquals(2, pool.getIdleCount());
+        // the pair in excess has been closed
+        assertTrue(streams[2].closed);
+        assertTrue(readers[2].disposed);
+        assertOpen(pool.borrow(url("a")));
+        assertOpen(pool.borrow(url("a")));
+        assertNull(pool.borrow(url("a")));
+    }
+
+    @Test
+    public void boundOverall() throws Exception {
+        final GranuleReaderPool pool = new GranuleReaderPool(3, 2);
+        final TrackedStream[] streams = new TrackedStream[4];
+        final TrackedReader[] readers = new TrackedReader[4];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = new TrackedStream();
+            readers[i] = new TrackedReader();
+            pool.release(url("g" + i), streams[i], readers[i], true);
+        }
+        assertEquals(3, pool.getIdleCount());
+        // the least recently returned pair has been closed
+        assertTrue(streams[0].closed);
+        assertTrue(readers[0].disposed);
+        assertNull(pool.borrow(url("g0")));
+        for (int i = 1; i < streams.length; i++) {
+            assertOpen(pool.borrow(url("g" + i)));
+        }
+    }
+
+    @Test
+    public void releaseAfterFailure() throws Exception {
+        final GranuleReaderPool pool = new GranuleReaderPool(4, 2);
+        final TrackedStream stream = new TrackedStream();
+        final TrackedReader reader = new TrackedReader();
+        // a read failed, the pair is in an unknown state
+        pool.release(url("a"), stream, reader, false);
+        assertTrue(stream.closed);
+        assertTrue(reader.disposed);
+        assertEquals(0, pool.getIdleCount());
+        assertNull(pool.borrow(url("a")));
+    }
+
+    @Test
+    public void dispose() throws Exception {
+        final GranuleReaderPool pool = new GranuleReaderPool(4, 2);
+        final TrackedStream stream = new TrackedStream();
+        final TrackedReader reader = new TrackedReader();
+        pool.release(url("a"), stream, reader, true);
+        pool.dispose();
+        assertTrue(stream.closed);
+        assertTrue(reader.disposed);
+        assertEquals(0, pool.getIdleCount());
+
+        // pairs released after the disposal are closed right away
+        final TrackedStream late = new TrackedStream();
+        final TrackedReader lateReader = new TrackedReader();
+        pool.release(url("a"), late, lateReader, true);
+        assertTrue(late.closed);
+        assertTrue(lateReader.disposed);
+        assertEquals(0, pool.getIdleCount());
+    }
+}
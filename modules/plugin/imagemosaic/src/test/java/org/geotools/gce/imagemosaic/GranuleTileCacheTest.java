@@ -0,0 +1,231 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing {@link GranuleTileCache}.
+ *
+ * @source $URL$
+ */
+public class GranuleTileCacheTest extends Assert {
+
+    static final int SIZE = 256;
+
+    static final int TILE = 64;
+
+    /**
+     * Serves a synthetic gray image made of 64x64 tiles, counting the reads
+     */
+    static class TiledReader extends ImageReader {
+        int reads;
+
+        TiledReader() {
+            super(null);
+        }
+
+        static int sample(int x, int y) {
+            return (x + 3 * y) & 0xFF;
+        }
+
+        @Override
+        public int getNumImages(boolean allowSearch) {
+            return 1;
+        }
+
+        @Override
+        public int getWidth(int imageIndex) {
+            return SIZE;
+        }
+
+        @Override
+        public int getHeight(int imageIndex) {
+            return SIZE;
+        }
+
+        @Override
+        public int getTileWidth(int imageIndex) {
+            return TILE;
+        }
+
+        @Override
+        public int getTileHeight(int imageIndex) {
+            return TILE;
+        }
+
+        @Override
+        public Iterator<ImageTypeSpecifier> getImageTypes(int imageIndex) {
+            return Collections.singletonList(
+                    ImageTypeSpecifier.createGrayscale(8, DataBuffer.TYPE_BYTE, false))
+                    .iterator();
+        }
+
+        @Override
+        public IIOMetadata getStreamMetadata() {
+            return null;
+        }
+
+        @Override
+        public IIOMetadata getImageMetadata(int imageIndex) {
+            return null;
+        }
+
+        @Override
+        public BufferedImage read(int imageIndex, ImageReadParam param) {
+            reads++;
+            Rectangle region = param != null && param.getSourceRegion() != null ? param
+                    .getSourceRegion() : new Rectangle(0, 0, SIZE, SIZE);
+            BufferedImage image = new BufferedImage(region.width, region.height,
+                    BufferedImage.TYPE_BYTE_GRAY);
+            WritableRaster raster = image.getRaster();
+            for (int y = 0; y < region.height; y++) {
+                for (int x = 0; x < region.width; x++) {
+                    raster.setSample(x, y, 0, sample(region.x + x, region.y + y));
+                }
+            }
+            return image;
+        }
+    }
+
+    private static ImageReadParam region(int x, int y, int width, int height) {
+        ImageReadParam param = new ImageReadParam();
+        param.setSourceRegion(new Rectangle(x, y, width, height));
+        return param;
+    }
+
+    private static void assertSamples(Rectangle region, BufferedImage image) {
+        assertEquals(region.width, image.getWidth());
+        assertEquals(region.height, image.getHeight());
+        for (int y = 0; y < region.height; y++) {
+            for (int x = 0; x < region.width; x++) {
+                assertEquals(TiledReader.sample(region.x + x, region.y + y), image.getRaster()
+                        .getSample(x, y, 0));
+            }
+        }
+    }
+
+    @Test
+    public void keyEquality() throws Exception {
+        final Object owner = new Object();
+        final GranuleTileCache.TileKey key = new GranuleTileCache.TileKey(owner, new URL(
+                "file:/data/a.tif"), 0, 1, 2);
+        final GranuleTileCache.TileKey same = new GranuleTileCache.TileKey(owner, new URL(
+                "file:/data/a.tif"), 0, 1, 2);
+        assertEquals(key, same);
+        assertEquals(key.hashCode(), same.hashCode());
+
+        // the owner is compared by identity
+        assertFalse(key.equals(new GranuleTileCache.TileKey(new Object(), new URL(
+                "file:/data/a.tif"), 0, 1, 2)));
+        assertFalse(key.equals(new GranuleTileCache.TileKey(owner, new URL("file:/data/b.tif"),
+                0, 1, 2)));
+        assertFalse(key.equals(new GranuleTileCache.TileKey(owner, new URL("file:/data/a.tif"),
+                1, 1, 2)));
+        assertFalse(key.equals(new GranuleTileCache.TileKey(owner, new URL("file:/data/a.tif"),
+                0, 2, 1)));
+        assertFalse(key.equals(null));
+    }
+
+    @Test
+    public void cacheable() {
+        assertTrue(GranuleTileCache.isCacheable(region(0, 0, 10, 10)));
+        assertFalse(GranuleTileCache.isCacheable(new ImageReadParam()));
+        ImageReadParam subsampled = region(0, 0, 10, 10);
+        subsampled.setSourceSubsampling(2, 2, 0, 0);
+        assertFalse(GranuleTileCache.isCacheable(subsampled));
+        ImageReadParam bands = region(0, 0, 10, 10);
+        bands.setSourceBands(new int[] { 0 });
+        assertFalse(GranuleTileCache.isCacheable(bands));
+    }
+
+    @Test
+    public void accepts() {
+        // a quarter of the budget at four bytes per pixel
+        final GranuleTileCache cache = new GranuleTileCache(1024 * 1024);
+        assertTrue(cache.accepts(new Rectangle(0, 0, 256, 256)));
+        assertFalse(cache.accepts(new Rectangle(0, 0, 256, 257)));
+    }
+
+    @Test
+    public void readAcrossTiles() throws Exception {
+        final GranuleTileCache cache = new GranuleTileCache(1024 * 1024);
+        final TiledReader reader = new TiledReader();
+        final Object owner = new Object();
+        final URL url = new URL("file:/data/a.tif");
+
+        // spans 3x2 tiles
+        final ImageReadParam param = region(30, 50, 120, 40);
+        assertSamples(param.getSourceRegion(), cache.read(owner, url, 0, param, reader));
+        assertEquals(6, reader.reads);
+        assertEquals(6, cache.getMissCount());
+        assertEquals(6L * TILE * TILE, cache.getMemoryUsage());
+
+        // served from the cache
+        final ImageReadParam inside = region(70, 70, 50, 10);
+        assertSamples(inside.getSourceRegion(), cache.read(owner, url, 0, inside, reader));
+        assertEquals(6, reader.reads);
+        assertEquals(1, cache.getHitCount());
+
+        // another owner does not share the tiles
+        cache.read(new Object(), url, 0, inside, reader);
+        assertEquals(7, reader.reads);
+
+        cache.remove(owner);
+        assertEquals(1L * TILE * TILE, cache.getMemoryUsage());
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        // room for four tiles
+        final GranuleTileCache cache = new GranuleTileCache(4 * TILE * TILE);
+        final TiledReader reader = new TiledReader();
+        final Object owner = new Object();
+        final URL url = new URL("file:/data/a.tif");
+
+        // tiles (0,0), (1,0), (2,0)
+        cache.read(owner, url, 0, region(0, 0, 3 * TILE, 10), reader);
+        // touch (0,0), then load (0,1) and (1,1), evicting (1,0)
+        cache.read(owner, url, 0, region(0, 0, 10, 10), reader);
+        cache.read(owner, url, 0, region(0, TILE, 2 * TILE, 10), reader);
+        assertEquals(5, reader.reads);
+        assertEquals(4L * TILE * TILE, cache.getMemoryUsage());
+
+        // the recently used tile is still there
+        cache.read(owner, url, 0, region(0, 0, 10, 10), reader);
+        assertEquals(5, reader.reads);
+        // the least recently used one is read again
+        assertSamples(new Rectangle(TILE, 0, 10, 10),
+                cache.read(owner, url, 0, region(TILE, 0, 10, 10), reader));
+        assertEquals(6, reader.reads);
+        assertTrue(cache.getMemoryUsage() <= 4L * TILE * TILE);
+    }
+}
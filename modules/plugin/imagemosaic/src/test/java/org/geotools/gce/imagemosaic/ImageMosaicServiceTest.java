@@ -48,4 +48,10 @@ public class ImageMosaicServiceTest  {
 
 		Assert.assertTrue("ImageMosaicFormatFactorySpi not registered", found);
 	}
+
+	@Test
+	public void multithreadingByDefault() {
+		// granules are loaded in parallel unless the request says otherwise
+		Assert.assertTrue(ImageMosaicFormat.ALLOW_MULTITHREADING.getDefaultValue());
+	}
 }
@@ -0,0 +1,142 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Testing {@link PackedGranuleIndex}.
+ *
+ * @source $URL$
+ */
+public class PackedGranuleIndexTest extends Assert {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private SimpleFeatureType type;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        type = DataUtilities.createType("index",
+                "the_geom:Polygon,location:String,ingestion:java.util.Date,elevation:Integer");
+        file = File.createTempFile("index", "." + PackedGranuleIndex.EXTENSION);
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Creates the features of a grid of granules, one per unit square.
+     */
+    private List<SimpleFeature> createGranules(final int minX, final int width, final int height) {
+        final List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        final SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+        for (int x = minX; x < minX + width; x++) {
+            for (int y = 0; y < height; y++) {
+                builder.set("the_geom", factory.toGeometry(new Envelope(x, x + 1, y, y + 1)));
+                builder.set("location", "granule_" + x + "_" + y + ".tif");
+                builder.set("ingestion", new Date(x * 1000L + y));
+                builder.set("elevation", (x + y) % 3 == 0 ? null : Integer.valueOf(y));
+                features.add(builder.buildFeature("index." + x + "." + y));
+            }
+        }
+        return features;
+    }
+
+    @Test
+    public void query() throws Exception {
+        assertTrue(PackedGranuleIndex.isSupported(type));
+        PackedGranuleIndex.write(file, createGranules(0, 50, 40));
+        final PackedGranuleIndex index = PackedGranuleIndex.open(file);
+        assertEquals(2000, index.size());
+        assertEquals(new Envelope(0, 50, 0, 40), index.getBounds());
+
+        final Envelope query = new Envelope(10.5, 12.5, 5.5, 6.5);
+        final int[] found = index.query(query);
+        // 3 columns times 2 rows
+        assertEquals(6, found.length);
+        for (int i : found) {
+            final SimpleFeature feature = index.getFeature(i, type, factory);
+            final Envelope e = envelope(feature);
+            assertTrue(e.intersects(query));
+            final int x = (int) e.getMinX(), y = (int) e.getMinY();
+            assertEquals("index." + x + "." + y, feature.getID());
+            assertEquals("granule_" + x + "_" + y + ".tif", feature.getAttribute("location"));
+            assertEquals(new Date(x * 1000L + y), feature.getAttribute("ingestion"));
+            assertEquals((x + y) % 3 == 0 ? null : Integer.valueOf(y), feature.getAttribute("elevation"));
+        }
+        assertEquals(0, index.query(new Envelope(60, 70, 60, 70)).length);
+        assertEquals(2000, index.query(index.getBounds()).length);
+        index.dispose();
+    }
+
+    @Test
+    public void update() throws Exception {
+        PackedGranuleIndex.update(file, createGranules(0, 10, 10));
+        PackedGranuleIndex.update(file, createGranules(10, 5, 10));
+        final PackedGranuleIndex index = PackedGranuleIndex.open(file);
+        assertEquals(150, index.size());
+        assertEquals(new Envelope(0, 15, 0, 10), index.getBounds());
+        final int[] found = index.query(new Envelope(12.5, 12.5, 3.5, 3.5));
+        assertEquals(1, found.length);
+        assertEquals("granule_12_3.tif", index.getFeature(found[0], type, factory).getAttribute("location"));
+        index.dispose();
+
+        PackedGranuleIndex.update(file, Collections.<SimpleFeature>emptyList());
+        final PackedGranuleIndex updated = PackedGranuleIndex.open(file);
+        assertEquals(150, updated.size());
+        updated.dispose();
+    }
+
+    @Test
+    public void dispose() throws Exception {
+        PackedGranuleIndex.write(file, createGranules(0, 10, 10));
+        final PackedGranuleIndex index = PackedGranuleIndex.open(file);
+        assertEquals(100, index.size());
+        index.dispose();
+        // disposing twice is harmless
+        index.dispose();
+        // the file is no longer in use
+        assertTrue(file.delete());
+    }
+
+    private static Envelope envelope(final SimpleFeature feature) {
+        return ((Geometry) feature.getDefaultGeometry()).getEnvelopeInternal();
+    }
+}
@@ -156,6 +156,10 @@ public class OracleFilterToSQL extends PreparedFilterToSQL {
             Geometry eval = geometry.evaluate(filter, Geometry.class);
             // Oracle cannot deal with filters using geometries that span beyond the whole world
             // in case the 
+            if (dialect != null && isCurrentGeometryGeodetic()) {
+                // the geometry might be clipped, the sql cannot be reused for other geometries
+                setTemplateCacheable(false);
+            }
             if (dialect != null && isCurrentGeometryGeodetic() &&
                     !WORLD.contains(eval.getEnvelopeInternal())) {
                 Geometry result = eval.intersection(JTS.toGeometry(WORLD));
@@ -50,6 +50,7 @@ import org.geotools.filter.function.math.FilterFunction_ceil;
 import org.geotools.filter.function.math.FilterFunction_floor;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.PreparedFilterToSQL;
 import org.geotools.jdbc.SQLDialect;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.filter.expression.Expression;
@@ -183,6 +184,10 @@ class FilterToSqlHelper {
 
         // if geography case, sanitize geometry first
         if(isCurrentGeography()) {
+            // the sql depends on the geometry value, cannot be reused for other geometries
+            if(delegate instanceof PreparedFilterToSQL) {
+                ((PreparedFilterToSQL) delegate).setTemplateCacheable(false);
+            }
             geometry = clipToWorld(geometry);
             if(isWorld(geometry)) {
                 // nothing to filter in this case
@@ -189,6 +189,9 @@ public class TeradataFilterToSQL extends PreparedFilterToSQL {
     }
 
     boolean encodeIndexPredicate(PropertyName property, Literal geometry) throws IOException {
+        // using the index or not depends on the geometry, the sql cannot be reused for
+        // other geometries
+        setTemplateCacheable(false);
         
         TessellationInfo tinfo = 
             (TessellationInfo) currentGeometry.getUserData().get(TessellationInfo.KEY);
@@ -1,23 +1,13 @@
 package org.geotools.data.property;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.NoSuchElementException;
-import java.util.Properties;
 
 import org.geotools.data.AttributeReader;
 import org.geotools.data.DataSourceException;
-import org.geotools.data.DataUtilities;
-import org.geotools.feature.SchemaException;
-import org.geotools.util.Converters;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
-import org.opengis.feature.type.GeometryType;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
-
-import com.vividsolutions.jts.geom.Geometry;
 
 /**
  * Simple AttributeReader that works against Java properties files.
@@ -53,20 +43,23 @@ import com.vividsolutions.jts.geom.Geometry;
  *  </code>
  * </pre>
  * 
+ * <p>
+ * The file is parsed once into a {@link PropertyFeatureCache}, which is shared with the other
+ * readers of the same file until the file is modified.
+ * </p>
+ * 
  * @author Jody Garnett
  *
  * @source $URL$
  */
 public class PropertyAttributeReader implements AttributeReader {
-    BufferedReader reader;
+    PropertyFeatureCache content;
 
     SimpleFeatureType type;
 
     String line;
 
-    String next;
-
-    String[] text;
+    int row = -1;
 
     String fid;
 
@@ -79,56 +72,8 @@ public class PropertyAttributeReader implements AttributeReader {
      * @throws DataSourceException
      */
     public PropertyAttributeReader(File file) throws IOException {
-        String typeName = typeName(file);
-        String namespace = namespace(file);
-        reader = new BufferedReader(new FileReader(file));
-
-        // read until "_=";
-        while ((line = reader.readLine()) != null) {
-            if (line.startsWith("_="))
-                break;
-        }
-
-        if ((line == null) || !line.startsWith("_=")) {
-            throw new IOException(typeName + " schema not available");
-        }
-
-        String typeSpec = line.substring(2);
-
-        try {
-            type = DataUtilities.createType(namespace, typeName, typeSpec);
-        } catch (SchemaException e) {
-            throw new DataSourceException(typeName + " schema not available", e);
-        }
-
-        line = null;
-        next = null;
-    }
-
-    /**
-     * TypeName for the provided file.
-     * 
-     * @param file File being read
-     * @return suitable typeName
-     */
-    private static String typeName(File file) {
-        String name = file.getName();
-        int split = name.lastIndexOf('.');
-
-        return (split == -1) ? name : name.substring(0, split);
-    }
-
-    /**
-     * Namespace for the provided file
-     * 
-     * @param file File being read
-     * 
-     * @return suitable namespace
-     */
-    private static String namespace(File file) {
-        File parent = file.getParentFile();
-
-        return (parent == null) ? "" : (parent.getName() + ".");
+        content = PropertyFeatureCache.get(file);
+        type = content.type;
     }
 
     /**
@@ -153,15 +98,14 @@ public class PropertyAttributeReader implements AttributeReader {
     }
 
     /**
-     * Close the internal reader accessing the file.
+     * Close the reader, releasing the parsed content.
      * 
      * @throws IOException
      */
     public void close() throws IOException {
-        reader.close();
-        reader = null;
+        content = null;
     }
-    // multiline start
+
     /**
      * Check if the file has another line.
      * 
@@ -169,64 +113,9 @@ public class PropertyAttributeReader implements AttributeReader {
      * @throws IOException
      */
     public boolean hasNext() throws IOException {
-        if (next != null) {
-            return true;
-        }
-        next = readLine();
-        return next != null;
+        return content != null && row + 1 < content.getCount();
     }
-    String readLine() throws IOException {
-        StringBuilder buffer = new StringBuilder();
-        while( true ){
-            String txt = reader.readLine();
-            if( txt == null ){
-                break;
-            }
-            if( txt.startsWith("#") || txt.startsWith("!")){
-                continue; // skip content
-            }
-            txt = trimLeft( txt );
-            if( txt.endsWith("\\")){
-                buffer.append(txt.substring(0,txt.length()-1) );
-                buffer.append("\n");
-                continue;
-            }
-            else {
-                buffer.append(txt);
-                break;
-            }
-        }
-        if( buffer.length() == 0 ){
-            return null; // there is no line
-        }
-        String raw = buffer.toString();
-        raw = raw.replace("\\n", "\n" );
-        raw = raw.replace("\\r", "\r" );
-        raw = raw.replace("\\t", "\t" );
-        return raw;
-    }
-    /**
-     * Trim leading white space as described Properties.
-     * @see Properties#load(java.io.Reader)
-     * @param txt
-     * @return txt leading whitespace removed
-     */
-    String trimLeft( String txt ){
-        // trim
-        int start = 0;
-        WHITESPACE: for( int i=0; i < txt.length(); i++ ){
-            char ch = txt.charAt(i);
-            if( Character.isWhitespace(ch)){
-                continue;
-            }
-            else {
-                start = i;
-                break WHITESPACE;
-            }
-        }
-        return txt.substring(start);        
-    }
-    // multiline end
+
     /**
      * Retrieve the next line.
      * 
@@ -235,27 +124,36 @@ public class PropertyAttributeReader implements AttributeReader {
      */
     public void next() throws IOException {
         if (hasNext()) {
-            line = next;
-            next = null;
-
-            int split = line.indexOf('=');
-            fid = line.substring(0, split);
-            text = line.substring(split + 1).split("\\|", -1);//use -1 as limit to include empty trailing spaces
-            if (type.getAttributeCount() != text.length)
-                throw new DataSourceException("format error: expected " + type.getAttributeCount()
-                        + " attributes, but found " + text.length + ". [" + line + "]");
+            row++;
+            line = null;
+            fid = content.fids[row];
+            if (content.errors[row] != null) {
+                throw new DataSourceException(content.errors[row]);
+            }
         } else {
             throw new NoSuchElementException();
         }
     }
 
+    /**
+     * The current line, continuations joined and escapes replaced.
+     * 
+     * @return current line, or null if next has not been called
+     */
+    String getLine() {
+        if (line == null && row != -1) {
+            line = content.getLine(row);
+        }
+        return line;
+    }
+
     /**
      * Retrieve the FeatureId identifying the current line.
      * 
      * @return FeatureID for the current line.
      */
     public String getFeatureID() {
-        if (line == null) {
+        if (row == -1) {
             return null;
         }
 
@@ -273,45 +171,12 @@ public class PropertyAttributeReader implements AttributeReader {
      * @throws ArrayIndexOutOfBoundsException
      */
     public Object read(int index) throws IOException, ArrayIndexOutOfBoundsException {
-        if (line == null) {
+        if (row == -1) {
             throw new IOException("No content available - did you remeber to call next?");
         }
-
-        AttributeDescriptor attType = type.getDescriptor(index);
-
-        String stringValue = null;
-        boolean isEmpty = "".equals(stringValue);
-        try {
-            // read the value
-            stringValue = text[index];
-        } catch (RuntimeException e1) {
-            e1.printStackTrace();
-            stringValue = null;
-        }
-        // check for special <null> flag
-        if ("<null>".equals(stringValue)) {
-            stringValue = null;
-            isEmpty = true;
-        }
-        if (stringValue == null) {
-            if (attType.isNillable()) {
-                return null; // it was an explicit "<null>"
-            }
-        }
-        // Use of Converters to convert from String to requested java binding
-        Object value = Converters.convert(stringValue, attType.getType().getBinding());
-
-        if (attType.getType() instanceof GeometryType) {
-            // this is to be passed on in the geometry objects so the srs name gets encoded
-            CoordinateReferenceSystem crs = ((GeometryType) attType.getType())
-                    .getCoordinateReferenceSystem();
-            if (crs != null) {
-                // must be geometry, but check anyway
-                if (value != null && value instanceof Geometry) {
-                    ((Geometry) value).setUserData(crs);
-                }
-            }
+        if (index < 0 || index >= type.getAttributeCount()) {
+            throw new ArrayIndexOutOfBoundsException(index);
         }
-        return value;
+        return content.getValue(row, index);
     }
 }
@@ -24,7 +24,6 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -86,6 +85,7 @@ public class PropertyDataStore extends AbstractDataStore {
         writer.write(DataUtilities.spec(featureType));
         writer.flush();
         writer.close();
+        PropertyFeatureCache.remove(file);
     }
 
     // createSchema end
@@ -168,59 +168,35 @@ public class PropertyDataStore extends AbstractDataStore {
 
     
     // getCount start
-    int cacheCount;
-    long cacheTimestamp;
     protected int getCount(Query query) throws IOException {
         if (query.getFilter() == Filter.INCLUDE) {
-            String typeName = query.getTypeName();
-            File file = new File(directory, typeName + ".properties");
-            if (cacheCount != -1 && file.lastModified() == cacheTimestamp) {
-                return cacheCount;
-            }
-            cacheCount = PropertyDataStore.countFile(file);
-            cacheTimestamp = file.lastModified();
-            return cacheCount;
+            // counted when the file was parsed, until it is modified
+            return content(query.getTypeName()).getCount();
         }
         else {
             return -1; // too expensive count the features
         }
     }
-    /** Used to carefully count the lines in the provided properties file */
-    static int countFile(File file) {
-        LineNumberReader reader = null;
-        try {
-            int skip=1; // header
-            reader = new LineNumberReader(new FileReader(file));
-            String line;
-            while ((line = reader.readLine()) != null){
-                if( line.startsWith("#")||line.startsWith("!")){
-                    skip++; // comment
-                }
-                if( line.endsWith("\\") ){
-                    skip++; // multiline
-                }
-            }
-            return reader.getLineNumber() - skip;
-        } catch (IOException e) {
-            return -1; // could not quickly determine length
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    // we tried
-                }
-            }
-        }
-    }
     // getCount end
     
     // getBounds start
     protected ReferencedEnvelope getBounds(Query query) throws IOException {
+        if (query.getFilter() == Filter.INCLUDE && query.getCoordinateSystem() == null
+                && query.getCoordinateSystemReproject() == null) {
+            // computed when the file was parsed, null if there is no geometry
+            return content(query.getTypeName()).getBounds();
+        }
         return null; // to expensive - calculate by visiting all the features
     }
     // getBounds end
     
+    /**
+     * Parsed content of a property file, shared with the readers until the file is modified.
+     */
+    PropertyFeatureCache content(String typeName) throws IOException {
+        return PropertyFeatureCache.get(new File(directory, typeName + ".properties"));
+    }
+    
     // getFeatureSource start
     public SimpleFeatureSource getFeatureSource(final String typeName)
             throws IOException {
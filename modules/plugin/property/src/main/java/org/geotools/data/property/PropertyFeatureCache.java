@@ -0,0 +1,466 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.property;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.geotools.data.DataSourceException;
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.SchemaException;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.resources.NIOUtilities;
+import org.geotools.util.Converters;
+import org.geotools.util.SoftValueHashMap;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.GeometryType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Parsed content of a property file, shared by all the readers of the file.
+ * <p>
+ * The file is memory mapped and tokenized in place, only the feature ids and the attribute
+ * values are turned into strings before being converted to their binding. The parsed features,
+ * their count and bounds are kept in a soft cache keyed by file, and reused until the length or
+ * the modification time of the file change.
+ * </p>
+ * <p>
+ * The syntax is the one documented in {@link PropertyAttributeReader}: lines starting with # or !
+ * are comments, leading white space is ignored, a trailing \ continues the line and the \n, \r,
+ * \t escapes are honored. Parsing stops at the first blank line.
+ * </p>
+ *
+ * @source $URL$
+ */
+class PropertyFeatureCache {
+
+    private static final SoftValueHashMap<File, PropertyFeatureCache> CACHE = new SoftValueHashMap<File, PropertyFeatureCache>(
+            16);
+
+    long length;
+
+    long lastModified;
+
+    SimpleFeatureType type;
+
+    /**
+     * Decoded content of the file, used to echo the lines back
+     */
+    char[] data;
+
+    /**
+     * Offset in {@link #data} of the first physical line of each feature
+     */
+    int[] offsets;
+
+    String[] fids;
+
+    /**
+     * Attribute values of each feature, null for the features that could not be parsed
+     */
+    Object[][] values;
+
+    /**
+     * Parse error of each feature, null for the features that were parsed
+     */
+    String[] errors;
+
+    int count;
+
+    ReferencedEnvelope bounds;
+
+    /**
+     * Returns the parsed content of a property file, parsing it if it is not in the cache or if
+     * the file changed since it was parsed.
+     *
+     * @param file property file
+     * @return parsed content
+     * @throws IOException if the file cannot be read or has no valid schema
+     */
+    static PropertyFeatureCache get(File file) throws IOException {
+        File key = file.getAbsoluteFile();
+        PropertyFeatureCache content;
+        synchronized (CACHE) {
+            content = CACHE.get(key);
+        }
+        if (content != null && content.isValid(key)) {
+            return content;
+        }
+        // parsed out of the lock so that different files are read concurrently
+        content = parse(key);
+        synchronized (CACHE) {
+            CACHE.put(key, content);
+        }
+        return content;
+    }
+
+    /**
+     * Drops the parsed content of a file, called when the file is rewritten.
+     *
+     * @param file property file
+     */
+    static void remove(File file) {
+        synchronized (CACHE) {
+            CACHE.remove(file.getAbsoluteFile());
+        }
+    }
+
+    boolean isValid(File file) {
+        return file.length() == length && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Number of features in the file
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Bounds of the default geometry of the features, null if the type has no geometry
+     */
+    ReferencedEnvelope getBounds() {
+        return bounds == null ? null : new ReferencedEnvelope(bounds);
+    }
+
+    /**
+     * Returns the line of a feature, continuations joined and escapes replaced, as it was before
+     * being split in fid and attributes.
+     */
+    String getLine(int row) {
+        LineBuffer line = new LineBuffer();
+        readLine(data, data.length, offsets[row], line);
+        return new String(line.chars, 0, line.size);
+    }
+
+    /**
+     * Returns a value that can be handed out to a feature, mutable values are copied so that the
+     * cached ones are never modified.
+     */
+    Object getValue(int row, int index) {
+        if (values[row] == null) {
+            return null;
+        }
+        Object value = values[row][index];
+        if (value instanceof Geometry) {
+            return ((Geometry) value).clone();
+        } else if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        return value;
+    }
+
+    static PropertyFeatureCache parse(File file) throws IOException {
+        PropertyFeatureCache content = new PropertyFeatureCache();
+        // read the stamp first, a concurrent write will make the entry stale instead of wrong
+        content.length = file.length();
+        content.lastModified = file.lastModified();
+
+        char[] data;
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                // decoded as FileReader does, with the platform encoding
+                CharBuffer chars = Charset.defaultCharset().newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE).decode(buffer);
+                data = new char[chars.remaining()];
+                chars.get(data);
+            } finally {
+                // unmap right away, a mapped file cannot be replaced on windows
+                NIOUtilities.clean(buffer, true);
+            }
+        } finally {
+            in.close();
+        }
+        content.data = data;
+        int end = data.length;
+
+        // read until "_="
+        String typeName = typeName(file);
+        int position = 0;
+        String typeSpec = null;
+        while (position < end) {
+            int lineEnd = lineEnd(data, end, position);
+            if (lineEnd - position >= 2 && data[position] == '_' && data[position + 1] == '=') {
+                typeSpec = new String(data, position + 2, lineEnd - position - 2);
+                position = nextLine(data, end, lineEnd);
+                break;
+            }
+            position = nextLine(data, end, lineEnd);
+        }
+        if (typeSpec == null) {
+            throw new IOException(typeName + " schema not available");
+        }
+        SimpleFeatureType type;
+        try {
+            type = DataUtilities.createType(namespace(file), typeName, typeSpec);
+        } catch (SchemaException e) {
+            throw new DataSourceException(typeName + " schema not available", e);
+        }
+        content.type = type;
+
+        int attributeCount = type.getAttributeCount();
+        AttributeDescriptor[] descriptors = type.getAttributeDescriptors().toArray(
+                new AttributeDescriptor[attributeCount]);
+        GeometryDescriptor geometryDescriptor = type.getGeometryDescriptor();
+        int geometryIndex = geometryDescriptor == null ? -1 : type
+                .indexOf(geometryDescriptor.getLocalName());
+        if (geometryIndex != -1) {
+            content.bounds = new ReferencedEnvelope(type.getCoordinateReferenceSystem());
+        }
+
+        int capacity = 64;
+        int[] offsets = new int[capacity];
+        String[] fids = new String[capacity];
+        Object[][] values = new Object[capacity][];
+        String[] errors = new String[capacity];
+        int count = 0;
+
+        LineBuffer line = new LineBuffer();
+        int[] separators = new int[attributeCount + 1];
+        while (true) {
+            int start = position;
+            position = readLine(data, end, position, line);
+            if (line.size == 0) {
+                break; // there is no line
+            }
+            if (count == capacity) {
+                capacity *= 2;
+                offsets = Arrays.copyOf(offsets, capacity);
+                fids = Arrays.copyOf(fids, capacity);
+                values = Arrays.copyOf(values, capacity);
+                errors = Arrays.copyOf(errors, capacity);
+            }
+            offsets[count] = start;
+
+            char[] chars = line.chars;
+            int size = line.size;
+            int split = 0;
+            while (split < size && chars[split] != '=') {
+                split++;
+            }
+            if (split == size) {
+                errors[count] = "format error: expected a feature id. ["
+                        + new String(chars, 0, size) + "]";
+                count++;
+                continue;
+            }
+            fids[count] = new String(chars, 0, split);
+
+            // locate the | separators, keeping empty trailing values
+            int found = 0;
+            for (int i = split + 1; i < size; i++) {
+                if (chars[i] == '|') {
+                    if (found < attributeCount) {
+                        separators[found] = i;
+                    }
+                    found++;
+                }
+            }
+            if (found + 1 != attributeCount) {
+                errors[count] = "format error: expected " + attributeCount
+                        + " attributes, but found " + (found + 1) + ". ["
+                        + new String(chars, 0, size) + "]";
+                count++;
+                continue;
+            }
+            separators[attributeCount - 1] = size;
+
+            Object[] row = new Object[attributeCount];
+            int valueStart = split + 1;
+            for (int i = 0; i < attributeCount; i++) {
+                int valueEnd = separators[i];
+                row[i] = convert(descriptors[i], chars, valueStart, valueEnd);
+                valueStart = valueEnd + 1;
+            }
+            if (geometryIndex != -1 && row[geometryIndex] instanceof Geometry) {
+                content.bounds.expandToInclude(((Geometry) row[geometryIndex])
+                        .getEnvelopeInternal());
+            }
+            values[count] = row;
+            count++;
+        }
+
+        content.offsets = offsets;
+        content.fids = fids;
+        content.values = values;
+        content.errors = errors;
+        content.count = count;
+        return content;
+    }
+
+    /**
+     * Converts a value to the binding of its attribute, a value that cannot be converted is null.
+     */
+    static Object convert(AttributeDescriptor descriptor, char[] chars, int start, int end) {
+        // check for special <null> flag
+        if (end - start == 6 && chars[start] == '<' && chars[start + 1] == 'n'
+                && chars[start + 2] == 'u' && chars[start + 3] == 'l' && chars[start + 4] == 'l'
+                && chars[start + 5] == '>') {
+            return null;
+        }
+        String text = new String(chars, start, end - start);
+        Object value;
+        try {
+            // Use of Converters to convert from String to requested java binding
+            value = Converters.convert(text, descriptor.getType().getBinding());
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (value instanceof Geometry && descriptor.getType() instanceof GeometryType) {
+            // this is to be passed on in the geometry objects so the srs name gets encoded
+            CoordinateReferenceSystem crs = ((GeometryType) descriptor.getType())
+                    .getCoordinateReferenceSystem();
+            if (crs != null) {
+                ((Geometry) value).setUserData(crs);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Reads a logical line starting at the given position, skipping comments, joining
+     * continuations and replacing escapes.
+     *
+     * @return the position following the line
+     */
+    static int readLine(char[] data, int end, int position, LineBuffer line) {
+        line.size = 0;
+        while (position < end) {
+            int lineEnd = lineEnd(data, end, position);
+            int start = position;
+            position = nextLine(data, end, lineEnd);
+            if (lineEnd > start && (data[start] == '#' || data[start] == '!')) {
+                continue; // skip content
+            }
+            // trim leading white space as described by Properties
+            int trimmed = start;
+            while (trimmed < lineEnd && Character.isWhitespace(data[trimmed])) {
+                trimmed++;
+            }
+            if (trimmed == lineEnd) {
+                trimmed = start; // a blank line is kept as is
+            }
+            if (lineEnd > trimmed && data[lineEnd - 1] == '\\') {
+                line.append(data, trimmed, lineEnd - 1);
+                line.append('\n');
+            } else {
+                line.append(data, trimmed, lineEnd);
+                break;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * End of the physical line starting at position, excluded the line terminator
+     */
+    static int lineEnd(char[] data, int end, int position) {
+        while (position < end && data[position] != '\n' && data[position] != '\r') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Start of the physical line following the line terminator at position
+     */
+    static int nextLine(char[] data, int end, int position) {
+        if (position < end) {
+            if (data[position++] == '\r' && position < end && data[position] == '\n') {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * TypeName for the provided file.
+     */
+    static String typeName(File file) {
+        String name = file.getName();
+        int split = name.lastIndexOf('.');
+
+        return (split == -1) ? name : name.substring(0, split);
+    }
+
+    /**
+     * Namespace for the provided file
+     */
+    static String namespace(File file) {
+        File parent = file.getParentFile();
+
+        return (parent == null) ? "" : (parent.getName() + ".");
+    }
+
+    /**
+     * Reusable buffer holding a logical line
+     */
+    static class LineBuffer {
+        char[] chars = new char[256];
+
+        int size;
+
+        void append(char ch) {
+            if (size == chars.length) {
+                chars = Arrays.copyOf(chars, size * 2);
+            }
+            chars[size++] = ch;
+        }
+
+        /**
+         * Appends a part of a physical line, replacing the \n, \r and \t escapes
+         */
+        void append(char[] data, int start, int end) {
+            if (size + end - start > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(size * 2, size + end - start));
+            }
+            for (int i = start; i < end; i++) {
+                char ch = data[i];
+                if (ch == '\\' && i + 1 < end) {
+                    char escaped = data[i + 1];
+                    if (escaped == 'n') {
+                        ch = '\n';
+                        i++;
+                    } else if (escaped == 'r') {
+                        ch = '\r';
+                        i++;
+                    } else if (escaped == 't') {
+                        ch = '\t';
+                        i++;
+                    }
+                }
+                chars[size++] = ch;
+            }
+        }
+    }
+}
@@ -16,7 +16,6 @@
  */
 package org.geotools.data.property;
 
-import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.LineNumberReader;
@@ -36,8 +35,6 @@ public class PropertyFeatureSource extends AbstractFeatureSource {
     String typeName;
     SimpleFeatureType featureType;
     PropertyDataStore store;
-    long cacheTimestamp = 0;
-    ReferencedEnvelope cacheBounds = null;
 
     PropertyFeatureSource(PropertyDataStore propertyDataStore, String typeName)
             throws IOException {
@@ -70,16 +67,13 @@ public class PropertyFeatureSource extends AbstractFeatureSource {
     // constructor end
     // getBounds start
     public ReferencedEnvelope getBounds() {
-        File file = new File(store.directory, typeName + ".properties");
-        if (cacheBounds != null && file.lastModified() == cacheTimestamp) {
-            // we have the cache
-            return cacheBounds;
-        }
         try {
-            // calculate and store in cache
-            cacheBounds = getFeatures().getBounds();
-            cacheTimestamp = file.lastModified();
-            return cacheBounds;
+            ReferencedEnvelope bounds = store.content(typeName).getBounds();
+            if (bounds != null) {
+                return bounds;
+            }
+            // no geometry, visit the features
+            return getFeatures().getBounds();
         } catch (IOException e) {
         }
         // bounds are unavailable!
@@ -16,14 +16,10 @@
  */
 package org.geotools.data.property;
 
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
 
 import org.geotools.data.AbstractFeatureLocking;
 import org.geotools.data.DataStore;
-import org.geotools.data.FeatureEvent;
 import org.geotools.data.FeatureListener;
 import org.geotools.data.Query;
 import org.geotools.data.QueryCapabilities;
@@ -34,7 +30,7 @@ import org.opengis.filter.Filter;
 
 /**
  * Implementation used for writeable property files.
- * Supports limited caching of number of features and bounds.
+ * The number of features and bounds are taken from the parsed content of the file.
  *
  * @source $URL: http://svn.osgeo.org/geotools/trunk/modules/plugin/property/src/main/java/org/geotools/data/property/PropertyFeatureStore.java $
  */
@@ -44,28 +40,10 @@ public class PropertyFeatureStore extends AbstractFeatureLocking {
     SimpleFeatureType featureType;
     PropertyDataStore store;
     
-    long cacheTimestamp = 0;
-    ReferencedEnvelope cacheBounds = null;
-    int cacheCount = -1;
-    
-    FeatureListener watcher = new FeatureListener() {
-        public void changed(FeatureEvent featureEvent) {
-            if (cacheBounds != null) {
-                if (featureEvent.getType() == FeatureEvent.Type.ADDED) {
-                    cacheBounds.expandToInclude(featureEvent.getBounds());
-                } else {
-                    cacheBounds = null;
-                }
-            }
-            cacheCount = -1;
-        }
-    };
-    
     PropertyFeatureStore( PropertyDataStore propertyDataStore, String typeName ) throws IOException{
         this.store = propertyDataStore;
         this.typeName = typeName;
         this.featureType = store.getSchema( typeName );
-        store.listenerManager.addFeatureListener( this, watcher);
         this.queryCapabilities = new QueryCapabilities() {
             public boolean isUseProvidedFIDSupported() {
                 return true;
@@ -96,13 +74,7 @@ public class PropertyFeatureStore extends AbstractFeatureLocking {
     // getCount start
     public int getCount(Query query) throws IOException {
         if( Filter.INCLUDE == query.getFilter() && getTransaction() == Transaction.AUTO_COMMIT ){
-            File file = new File( store.directory, typeName+".properties" );            
-            if( cacheCount != -1 && file.lastModified() == cacheTimestamp){
-                return cacheCount;
-            }
-            cacheCount = PropertyDataStore.countFile(file);
-            cacheTimestamp = file.lastModified();
-            return cacheCount;
+            return store.content( typeName ).getCount();
         }
         return -1;
         // return super.getCount(query); // super class checks transaction state diff
@@ -111,20 +83,26 @@ public class PropertyFeatureStore extends AbstractFeatureLocking {
 
     // getBounds start
     public ReferencedEnvelope getBounds() {
-        File file = new File( store.directory, typeName+".properties" );                
-        if( cacheBounds != null && file.lastModified() == cacheTimestamp ){            
-            // we have the cache
-            return cacheBounds;
-        }
         try {
-            // calculate and store in cache                    
-            cacheBounds = getFeatures().getBounds();
-            cacheTimestamp = file.lastModified();            
-            return cacheBounds;
+            if( getTransaction() == Transaction.AUTO_COMMIT ){
+                ReferencedEnvelope bounds = store.content( typeName ).getBounds();
+                if( bounds != null ){
+                    return bounds;
+                }
+            }
+            // no geometry or pending changes, visit the features
+            return getFeatures().getBounds();
         } catch (IOException e) {            
         }
         // bounds are unavailable!
         return null;
     }
+
+    public ReferencedEnvelope getBounds(Query query) throws IOException {
+        if( getTransaction() != Transaction.AUTO_COMMIT ){
+            return null; // the pending changes are not in the file yet
+        }
+        return super.getBounds(query);
+    }
     // getBounds end
 }
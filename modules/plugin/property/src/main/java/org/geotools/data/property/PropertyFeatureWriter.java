@@ -192,7 +192,7 @@ public class PropertyFeatureWriter implements
         while (reader.hasNext()) {
             reader.next(); // advance
             writer.next();
-            writer.echoLine(reader.line); // echo unchanged
+            writer.echoLine(reader.getLine()); // echo unchanged
         }
         writer.close();
         reader.close();
@@ -215,6 +215,7 @@ public class PropertyFeatureWriter implements
                 out.close();
             }
         }
+        PropertyFeatureCache.remove(read);
         read = null;
         write = null;
         store = null;
@@ -23,9 +23,11 @@ import java.io.FileWriter;
 import junit.framework.TestCase;
 
 import org.geotools.data.DefaultQuery;
+import org.geotools.data.Query;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.opengis.feature.Property;
 import org.opengis.feature.simple.SimpleFeature;
@@ -35,6 +37,7 @@ import org.opengis.feature.type.GeometryType;
 import org.opengis.filter.Filter;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 
 /**
@@ -151,6 +154,31 @@ public class PropertyDataStore2Test extends TestCase {
         //assertEquals( 1, features.getFeatureType().getAttributeCount() );
         assertEquals( 4, features.size() );
     }
+    public void testBounds() throws Exception {
+        SimpleFeatureSource road = store.getFeatureSource( "road" );
+        ReferencedEnvelope bounds = road.getBounds();
+        assertEquals( new Envelope( 0, 30, 0, 30 ), new Envelope( bounds ) );
+        assertEquals( bounds, road.getBounds( Query.ALL ) );
+        assertEquals( 4, road.getCount( Query.ALL ) );
+        
+        // the features get their own copy of the parsed geometries
+        SimpleFeatureIterator iterator = road.getFeatures().features();
+        try {
+            Geometry geom = (Geometry) iterator.next().getDefaultGeometry();
+            geom.getCoordinates()[0].x = 100;
+            geom.geometryChanged();
+        } finally {
+            iterator.close();
+        }
+        iterator = road.getFeatures().features();
+        try {
+            Geometry geom = (Geometry) iterator.next().getDefaultGeometry();
+            assertEquals( 0.0, geom.getCoordinates()[0].x );
+        } finally {
+            iterator.close();
+        }
+        assertEquals( bounds, road.getBounds() );
+    }
     public void testQuery() throws Exception {
         SimpleFeatureSource road = store.getFeatureSource( "road" );
                 
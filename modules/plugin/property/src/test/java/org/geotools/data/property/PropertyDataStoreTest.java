@@ -426,6 +426,30 @@ public class PropertyDataStoreTest extends TestCase {
         },null);
     }
 
+    public void testCachedContent() throws Exception {
+        File file = new File( new File( "propertyTestData" ), "multiline.properties" );
+        PropertyFeatureCache content = PropertyFeatureCache.get( file );
+        assertSame( content, PropertyFeatureCache.get( file ) );
+        
+        // continuation lines are not counted as features
+        SimpleFeatureSource multiline = store.getFeatureSource( "multiline" );
+        assertEquals( 4, multiline.getCount( Query.ALL ) );
+        assertEquals( 4, multiline.getFeatures().size() );
+        assertEquals( "fid1=1|jody \ngarnett", content.getLine( 0 ) );
+        
+        // another store reads the same content
+        PropertyDataStore other = new PropertyDataStore( new File( "propertyTestData" ) );
+        other.getFeatureSource( "multiline" ).getFeatures().size();
+        assertSame( content, PropertyFeatureCache.get( file ) );
+        
+        // rewriting the file drops the cached content
+        SimpleFeatureStore road = (SimpleFeatureStore) store.getFeatureSource( "road" );
+        assertEquals( 5, road.getCount( Query.ALL ) );
+        road.removeFeatures( ff.id( Collections.singleton( ff.featureId( "fid1" ) ) ) );
+        assertEquals( 4, road.getCount( Query.ALL ) );
+        assertEquals( 4, other.getFeatureSource( "road" ).getCount( Query.ALL ) );
+    }
+
     /**
      * In response to <a
      * href="http://jira.codehaus.org/browse/GEOT-3540">GEOT-3540
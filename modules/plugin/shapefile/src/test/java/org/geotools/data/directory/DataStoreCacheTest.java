@@ -1,13 +1,28 @@
 package org.geotools.data.directory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 
+import org.geotools.data.DataStore;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
 import org.geotools.data.directory.DirectoryTypeCache;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureSource;
 import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
 
 
 public class DataStoreCacheTest extends DirectoryTestSupport {
@@ -109,6 +124,196 @@ public class DataStoreCacheTest extends DirectoryTestSupport {
         assertTrue(cache.getTypeNames().contains("archsites"));
         cache.dispose();
     }
+    
+    @Test
+    public void testKeepExistingStores() throws Exception {
+        File f = copyShapefiles("shapes/bugsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryTypeCache cache = new DirectoryTypeCache(tempDir, getFileStoreFactory());
+        assertEquals(1, cache.getTypeNames().size());
+        DataStore bugsites = cache.getDataStore("bugsites", false);
+        
+        // give the os some time, the directory last modification
+        // time has a os specific time resolution
+        Thread.sleep(DELAY);
+        copyShapefiles("shapes/archsites.shp");
+        assertEquals(2, cache.getTypeNames().size());
+        // only the new files have been probed
+        assertSame(bugsites, cache.getDataStore("bugsites", false));
+        cache.dispose();
+    }
+    
+    @Test
+    public void testMaxOpenStores() throws Exception {
+        File f = copyShapefiles("shapes/bugsites.shp");
+        copyShapefiles("shapes/archsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryTypeCache cache = new DirectoryTypeCache(tempDir, getFileStoreFactory());
+        cache.maxOpenStores = 1;
+        assertEquals(2, cache.getTypeNames().size());
+        assertEquals(1, cache.getDataStores().size());
+        
+        // the least recently used store is closed, and opened again on demand
+        DataStore archsites = cache.getDataStore("archsites", false);
+        assertEquals(1, cache.getDataStores().size());
+        assertSame(archsites, cache.getDataStores().get(0));
+        DataStore bugsites = cache.getDataStore("bugsites", false);
+        assertEquals(1, cache.getDataStores().size());
+        assertSame(bugsites, cache.getDataStores().get(0));
+        assertNotSame(archsites, cache.getDataStore("archsites", false));
+        assertTrue(cache.getDataStore("archsites", false).getSchema("archsites")
+                .getAttributeCount() > 0);
+        cache.dispose();
+    }
+
+    @Test
+    public void testKeepStoresInUse() throws Exception {
+        File f = copyShapefiles("shapes/bugsites.shp");
+        copyShapefiles("shapes/archsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryDataStore store = new DirectoryDataStore(tempDir, getFileStoreFactory());
+        store.setMaxOpenStores(1);
+        DirectoryTypeCache cache = store.cache;
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = store.getFeatureReader(
+                new Query("archsites"), Transaction.AUTO_COMMIT);
+        DataStore archsites = cache.getDataStore("archsites", false);
+        try {
+            // the store being read is not closed when another one is opened
+            assertTrue(store.getSchema("bugsites").getAttributeCount() > 0);
+            assertSame(archsites, cache.getDataStore("archsites", false));
+            int count = 0;
+            while (reader.hasNext()) {
+                reader.next();
+                count++;
+            }
+            assertEquals(25, count);
+        } finally {
+            reader.close();
+        }
+
+        // idle again, it can be closed
+        cache.getDataStore("bugsites", false);
+        assertEquals(1, cache.getDataStores().size());
+        assertNotSame(archsites, cache.getDataStore("archsites", false));
+        store.dispose();
+    }
+
+    @Test
+    public void testKeepStoresWithSources() throws Exception {
+        File f = copyShapefiles("shapes/bugsites.shp");
+        copyShapefiles("shapes/archsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryDataStore store = new DirectoryDataStore(tempDir, getFileStoreFactory());
+        store.setMaxOpenStores(1);
+        DirectoryTypeCache cache = store.cache;
+
+        SimpleFeatureSource source = store.getFeatureSource("archsites");
+        DataStore archsites = cache.getDataStore("archsites", false);
+        // the store of a source still around is not closed when another one is opened
+        assertTrue(store.getSchema("bugsites").getAttributeCount() > 0);
+        assertSame(archsites, cache.getDataStore("archsites", false));
+        assertTrue(cache.ftCache.get("archsites").isInUse());
+        assertFalse(cache.ftCache.get("bugsites").isInUse());
+        assertEquals(25, source.getFeatures().size());
+        assertFalse(source.getFeatures(Filter.INCLUDE).getBounds().isEmpty());
+
+        // and neither is the store of a collection still around
+        SimpleFeatureCollection features = store.getFeatureSource("bugsites").getFeatures();
+        source = null;
+        assertTrue(cache.ftCache.get("bugsites").isInUse());
+        assertTrue(features.size() > 0);
+        store.dispose();
+    }
+
+    @Test
+    public void testReleaseOnFailure() throws Exception {
+        File f = copyShapefiles("shapes/bugsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryDataStore store = new DirectoryDataStore(tempDir, getFileStoreFactory());
+        try {
+            store.getFeatureReader(new Query("bugsites", Filter.INCLUDE,
+                    new String[] { "notThere" }),
+                    Transaction.AUTO_COMMIT);
+        } catch (Exception e) {
+            // fine, the store must not be left in use anyways
+        }
+        assertFalse(store.cache.ftCache.get("bugsites").isInUse());
+        store.dispose();
+    }
+
+    @Test
+    public void testRetryFailedProbe() throws Exception {
+        File f = copyShapefiles("shapes/bugsites.shp");
+        copyShapefiles("shapes/archsites.shp");
+        tempDir = f.getParentFile();
+        final FileStoreFactory delegate = getFileStoreFactory();
+        final boolean[] fail = new boolean[] { true };
+        DirectoryTypeCache cache = new DirectoryTypeCache(tempDir, new FileStoreFactory() {
+            public DataStore getDataStore(File file) throws IOException {
+                if (fail[0] && file.getName().startsWith("archsites")) {
+                    throw new IOException("Simulated failure");
+                }
+                return delegate.getDataStore(file);
+            }
+        });
+        assertEquals(1, cache.getTypeNames().size());
+
+        // probed again on the next refresh, even if no sibling file changed
+        fail[0] = false;
+        Thread.sleep(DELAY);
+        assertTrue(new File(tempDir, "unrelated.txt").createNewFile());
+        assertEquals(2, cache.getTypeNames().size());
+        assertTrue(cache.getTypeNames().contains("archsites"));
+        cache.dispose();
+    }
+
+    @Test
+    public void testProbeModifiedFile() throws Exception {
+        File f = copyShapefiles("shapes/bugsites.shp");
+        File archsites = copyShapefiles("shapes/archsites.shp");
+        tempDir = f.getParentFile();
+        // the store is not recognized until the file is complete
+        final FileStoreFactory delegate = getFileStoreFactory();
+        File copy = new File(tempDir, "archsites.bak");
+        assertTrue(archsites.renameTo(copy));
+        assertTrue(new File(tempDir, "archsites.shp").createNewFile());
+        DirectoryTypeCache cache = new DirectoryTypeCache(tempDir, new FileStoreFactory() {
+            public DataStore getDataStore(File file) throws IOException {
+                if (file.length() == 0) {
+                    return null;
+                }
+                return delegate.getDataStore(file);
+            }
+        });
+        assertEquals(1, cache.getTypeNames().size());
+
+        // written in place, then the directory changes for an unrelated reason
+        Thread.sleep(DELAY);
+        copy(copy, archsites);
+        assertTrue(copy.delete());
+        assertEquals(2, cache.getTypeNames().size());
+        assertTrue(cache.getTypeNames().contains("archsites"));
+        cache.dispose();
+    }
+
+    private void copy(File source, File target) throws IOException {
+        FileOutputStream os = new FileOutputStream(target);
+        try {
+            FileInputStream is = new FileInputStream(source);
+            try {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = is.read(buffer)) > 0) {
+                    os.write(buffer, 0, read);
+                }
+            } finally {
+                is.close();
+            }
+        } finally {
+            os.close();
+        }
+    }
 
 }
 
@@ -23,6 +23,7 @@ import java.io.ObjectOutput;
 
 import org.geotools.caching.spatialindex.Data;
 import org.geotools.caching.spatialindex.Shape;
+import org.geotools.caching.util.SimpleFeatureCodec;
 import org.geotools.caching.util.SimpleFeatureMarshaller;
 import org.opengis.feature.IllegalAttributeException;
 import org.opengis.feature.simple.SimpleFeature;
@@ -41,6 +42,7 @@ import org.opengis.feature.simple.SimpleFeature;
 public class GridData implements Data<Object>, Externalizable {
     private static final long serialVersionUID = 2435341100521921266L;
     private static SimpleFeatureMarshaller marshaller = new SimpleFeatureMarshaller();
+    private static SimpleFeatureCodec codec = new SimpleFeatureCodec();
     
     private Shape shape;
     private Object data;		//generally a feature
@@ -135,4 +137,11 @@ public class GridData implements Data<Object>, Externalizable {
     public static SimpleFeatureMarshaller getFeatureMarshaller(){
         return GridData.marshaller;
     }
+
+    /**
+     * Returns the codec used to write the data of grid nodes in binary form.
+     */
+    public static SimpleFeatureCodec getFeatureCodec(){
+        return GridData.codec;
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.caching.grid.spatialindex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import org.geotools.caching.spatialindex.Node;
+import org.geotools.caching.spatialindex.Region;
+import org.geotools.caching.spatialindex.Shape;
+import org.geotools.caching.util.SimpleFeatureCodec;
+
+/**
+ * Binary encoding of the data of grid leaf nodes, using the {@link SimpleFeatureCodec} of
+ * {@link GridData} for the features.
+ * <p>
+ * Only plain {@link GridNode}s are handled; other nodes, such as the root, are still
+ * serialized. As with serialization, the identifier of a decoded node must be set afterwards.
+ *
+ * @source $URL$
+ */
+public final class GridNodeCodec {
+    private static final byte REGION = 1;
+
+    private static final byte OTHER_SHAPE = 0;
+
+    private GridNodeCodec() {
+    }
+
+    /**
+     * Returns true if the node can be encoded by this codec.
+     */
+    public static boolean canEncode(Node node) {
+        return node != null && node.getClass() == GridNode.class;
+    }
+
+    /**
+     * Writes the data of a node.
+     *
+     * @param node
+     * @param out
+     * @throws IOException
+     */
+    public static void encode(GridNode node, DataOutput out) throws IOException {
+        SimpleFeatureCodec.Encoder encoder = GridData.getFeatureCodec().createEncoder(out);
+        HashSet<GridData> data = node.getData();
+        synchronized (data) {
+            out.writeInt(data.size());
+            for (Iterator<GridData> it = data.iterator(); it.hasNext();) {
+                GridData next = it.next();
+                Shape shape = next.getShape();
+                if (shape instanceof Region) {
+                    Region region = (Region) shape;
+                    int dims = region.getDimension();
+                    out.writeByte(REGION);
+                    out.writeByte(dims);
+                    for (int i = 0; i < dims; i++) {
+                        out.writeDouble(region.getLow(i));
+                        out.writeDouble(region.getHigh(i));
+                    }
+                } else {
+                    out.writeByte(OTHER_SHAPE);
+                    encoder.writeValue(shape);
+                }
+                encoder.writeValue(next.getData());
+            }
+        }
+    }
+
+    /**
+     * Reads a node written by {@link #encode(GridNode, DataOutput)}.
+     *
+     * @param in
+     * @return a node without identifier
+     * @throws IOException
+     */
+    public static GridNode decode(DataInput in) throws IOException {
+        SimpleFeatureCodec.Decoder decoder = GridData.getFeatureCodec().createDecoder(in);
+        int count = in.readInt();
+        GridNode node = new GridNode();
+        node.data = new HashSet<GridData>(count * 4 / 3 + 1);
+        for (int n = 0; n < count; n++) {
+            Shape shape;
+            if (in.readByte() == REGION) {
+                int dims = in.readByte();
+                double[] low = new double[dims];
+                double[] high = new double[dims];
+                for (int i = 0; i < dims; i++) {
+                    low[i] = in.readDouble();
+                    high[i] = in.readDouble();
+                }
+                shape = new Region(low, high);
+            } else {
+                shape = (Shape) decoder.readValue();
+            }
+            node.data.add(new GridData(shape, decoder.readValue()));
+        }
+        return node;
+    }
+}
@@ -248,7 +248,9 @@ public class GridSpatialIndex extends AbstractSpatialIndex implements EvictableT
         //add feature types to marshaller so it'll know how to build features
         Collection<FeatureType> types = store.getFeatureTypes();
         for( Iterator<FeatureType> iterator = types.iterator(); iterator.hasNext(); ) {
-            GridData.getFeatureMarshaller().registerType((SimpleFeatureType)iterator.next());            
+            SimpleFeatureType type = (SimpleFeatureType)iterator.next();
+            GridData.getFeatureMarshaller().registerType(type);
+            GridData.getFeatureCodec().registerType(type);
         }
         
         //find the root node an initialize it here
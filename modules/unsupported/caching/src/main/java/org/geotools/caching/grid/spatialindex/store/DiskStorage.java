@@ -18,6 +18,8 @@ package org.geotools.caching.grid.spatialindex.store;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -28,6 +30,7 @@ import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -41,6 +44,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.caching.grid.spatialindex.GridNode;
+import org.geotools.caching.grid.spatialindex.GridNodeCodec;
 import org.geotools.caching.spatialindex.Node;
 import org.geotools.caching.spatialindex.NodeIdentifier;
 import org.geotools.caching.spatialindex.Storage;
@@ -56,6 +60,10 @@ import org.opengis.feature.type.FeatureType;
  * Create new instances with static factory method <code>DiskStorage.createInstance()</code>
  * or <code>DiskStorage.createInstance(PropertySet)</code>
  * 
+ * <p>Grid leaf nodes are written with the binary {@link GridNodeCodec}, other nodes
+ * are serialized. The data file can be memory mapped with the <code>DiskStorage.MemoryMapped</code>
+ * property.</p>
+ * 
  * @author Christophe Rousson <christophe.rousson@gmail.com>, Google SoC 2007 
  *
  *
@@ -67,6 +75,14 @@ public class DiskStorage implements Storage {
     public final static String DATA_FILE_PROPERTY = "DiskStorage.DataFile";
     public final static String INDEX_FILE_PROPERTY = "DiskStorage.IndexFile";
     public final static String PAGE_SIZE_PROPERTY = "DiskStorage.PageSize";
+    public final static String MEMORY_MAPPED_PROPERTY = "DiskStorage.MemoryMapped";
+    
+    /** First byte of the nodes written by the GridNodeCodec;
+     * serialized nodes start with the 0xACED stream magic */
+    private static final byte BINARY_NODE = 1;
+    
+    /** Approximate size of the mapped regions of the data file */
+    private static final int MAPPED_SEGMENT_SIZE = 8 * 1024 * 1024;
     
     protected static Logger logger = org.geotools.util.logging.Logging.getLogger("org.geotools.caching.spatialindex.store");
     
@@ -79,6 +95,11 @@ public class DiskStorage implements Storage {
     private RandomAccessFile data_file;
     private FileChannel data_channel;
     
+    private boolean memoryMapped = false;
+    private int segment_pages;							//pages per mapped region
+    private ArrayList<MappedByteBuffer> segments;		//mapped regions of the data file
+    private ByteArrayOutputStream nodeBuffer = new ByteArrayOutputStream();
+    
     private File indexFile;		//this is the index file that tracks nodes & pages
     
     
@@ -131,6 +152,7 @@ public class DiskStorage implements Storage {
      *                                         if exists, must be a valid index file
      *                                         and data file must be the valid data file associated with this index.
      *   <li>DiskStorage.PAGE_SIZE_PROPERTY : int, required if INDEX_FILE does not exist, or is not provided.
+     *   <li>DiskStorage.MEMORY_MAPPED_PROPERTY : boolean, whether to memory map the data file ; defaults to false.
      * </ul>
      * @param property set
      * @return new instance of DiskStorage
@@ -138,22 +160,26 @@ public class DiskStorage implements Storage {
     public static Storage createInstance(Properties pset) {
         try {
             File f = new File(pset.getProperty(DATA_FILE_PROPERTY));
+            DiskStorage storage;
 
             if (pset.containsKey(INDEX_FILE_PROPERTY)) {
                 File index = new File(pset.getProperty(INDEX_FILE_PROPERTY));
 
                 if (index.exists()) {
-                    return new DiskStorage(f, index);
+                    storage = new DiskStorage(f, index);
                 } else {
                     int page_size = Integer.parseInt(pset.getProperty(PAGE_SIZE_PROPERTY));
 
-                    return new DiskStorage(f, page_size, index);
+                    storage = new DiskStorage(f, page_size, index);
                 }
             } else {
                 int page_size = Integer.parseInt(pset.getProperty(PAGE_SIZE_PROPERTY));
 
-                return new DiskStorage(f, page_size);
+                storage = new DiskStorage(f, page_size);
             }
+            storage.setMemoryMapped(Boolean.valueOf(pset.getProperty(MEMORY_MAPPED_PROPERTY)).booleanValue());
+
+            return storage;
         } catch (IOException e) {
             logger.log(Level.WARNING, "DiskStorage : error occured when creating new instance : "+e.getMessage(),e);
             return null;
@@ -178,6 +204,62 @@ public class DiskStorage implements Storage {
         }
     }
 
+    /**
+     * Sets whether the data file is read and written through memory mapped buffers,
+     * which avoids a system call and a copy per page access.
+     * <p>The mapped regions are only released when garbage collected, so the
+     * data file may not be deleted right after the storage is disposed on some platforms.</p>
+     * 
+     * @param memoryMapped
+     */
+    public synchronized void setMemoryMapped(boolean memoryMapped) {
+        if (!memoryMapped) {
+            forceSegments();
+            segments = null;
+        } else if (segments == null) {
+            segment_pages = Math.max(1, MAPPED_SEGMENT_SIZE / page_size);
+            segments = new ArrayList<MappedByteBuffer>();
+        }
+        this.memoryMapped = memoryMapped;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /*
+     * Returns the mapped region holding a page, positioned at the start of the page.
+     * Regions are made of whole pages, so a page never spans two regions.
+     */
+    private MappedByteBuffer getSegment(int page) throws IOException {
+        int index = page / segment_pages;
+        while (segments.size() <= index) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            long length = (long) segment_pages * page_size;
+            segment = data_channel.map(FileChannel.MapMode.READ_WRITE, index * length, length);
+            segments.set(index, segment);
+        }
+        segment.position((page % segment_pages) * page_size);
+        return segment;
+    }
+
+    /*
+     * Writes the mapped regions to disk.
+     */
+    private void forceSegments() {
+        if (segments != null) {
+            for (Iterator<MappedByteBuffer> it = segments.iterator(); it.hasNext();) {
+                MappedByteBuffer segment = it.next();
+                if (segment != null) {
+                    segment.force();
+                }
+            }
+        }
+    }
+
     /**
      * Removes all entries from the disk store and clears the
      * associated feature types.
@@ -223,6 +305,10 @@ public class DiskStorage implements Storage {
      * Reads data from the file into data array
      */
     private void readData(byte[] data, Entry e) {
+        if (memoryMapped) {
+            readMappedData(data, e);
+            return;
+        }
     	ByteBuffer buffer = ByteBuffer.allocate(page_size);
     	int page = 0;
         int rem = data.length;
@@ -252,18 +338,43 @@ public class DiskStorage implements Storage {
         }
     }
     
+    /*
+     * Reads data from the mapped file into data array
+     */
+    private void readMappedData(byte[] data, Entry e) {
+        int index = 0;
+        try {
+            for (int next = 0; next < e.pages.size(); next++) {
+                int len = Math.min(page_size, data.length - index);
+                getSegment(e.pages.get(next)).get(data, index, len);
+                index += len;
+            }
+        } catch (IOException io) {
+            throw new IllegalStateException(io);
+        }
+    }
+    
     /* 
      * Converts an array of bytes into a node 
      */
     private Node readNode(byte[] data, NodeIdentifier id) throws IOException, ClassNotFoundException {
-    	ByteArrayInputStream bais = new ByteArrayInputStream(data);
-        ObjectInputStream ois = new ObjectInputStream(bais);
         Node node = null;
-        try{
-            node = (Node) ois.readObject();
-        }finally{
-            ois.close();
-            bais.close();            
+        if (data.length > 0 && data[0] == BINARY_NODE) {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1));
+            try {
+                node = GridNodeCodec.decode(dis);
+            } finally {
+                dis.close();
+            }
+        } else {
+            ByteArrayInputStream bais = new ByteArrayInputStream(data);
+            ObjectInputStream ois = new ObjectInputStream(bais);
+            try{
+                node = (Node) ois.readObject();
+            }finally{
+                ois.close();
+                bais.close();            
+            }
         }
         id = findUniqueInstance(id);
         node.setIdentifier(id);
@@ -305,6 +416,18 @@ public class DiskStorage implements Storage {
      * converts a node to a byte array
      */
     private byte[] writeNode(Node n) throws IOException {
+        if (GridNodeCodec.canEncode(n)) {
+            // the buffer is reused, put() being synchronized
+            nodeBuffer.reset();
+            nodeBuffer.write(BINARY_NODE);
+            DataOutputStream dos = new DataOutputStream(nodeBuffer);
+            GridNodeCodec.encode((GridNode) n, dos);
+            dos.flush();
+            byte[] data = nodeBuffer.toByteArray();
+            stats_bytes += data.length;
+            stats_n++;
+            return data;
+        }
     	ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ObjectOutputStream oos = new ObjectOutputStream(baos);
         try{
@@ -350,13 +473,17 @@ public class DiskStorage implements Storage {
         	}
 
         	len = (rem > page_size) ? page_size : rem;
-        	buffer.clear();
-        	buffer.put(data, index, len);
 
         	try {
-        		buffer.rewind();
-        		data_channel.position(page * page_size);
-        		data_channel.write(buffer);
+        	    if (memoryMapped) {
+        	        getSegment(page).put(data, index, len);
+        	    } else {
+        	        buffer.clear();
+        	        buffer.put(data, index, len);
+        	        buffer.rewind();
+        	        data_channel.position(page * page_size);
+        	        data_channel.write(buffer);
+        	    }
         	} catch (IOException io) {
         		throw new IllegalStateException(io);
         	}
@@ -398,6 +525,8 @@ public class DiskStorage implements Storage {
      */
     public synchronized void dispose(){
         flush();
+        segments = null;
+        memoryMapped = false;
         try{
             this.data_channel.close();
             this.data_file.close();
@@ -411,6 +540,9 @@ public class DiskStorage implements Storage {
      * <p>This does not close the data files.</p>
      */
     public void flush() {
+        synchronized (this) {
+            forceSegments();
+        }
         try {
             FileOutputStream os = new FileOutputStream(indexFile);
             ObjectOutputStream oos = new ObjectOutputStream(os);
@@ -480,6 +612,7 @@ public class DiskStorage implements Storage {
             pset.setProperty(DATA_FILE_PROPERTY, dataFile.getCanonicalPath());
             pset.setProperty(INDEX_FILE_PROPERTY, indexFile.getCanonicalPath());
             pset.setProperty(PAGE_SIZE_PROPERTY, new Integer(page_size).toString());
+            pset.setProperty(MEMORY_MAPPED_PROPERTY, String.valueOf(memoryMapped));
         } catch (IOException e) {
             logger.log(Level.WARNING, "Error while creating DiskStorage property set : " + e);
         }
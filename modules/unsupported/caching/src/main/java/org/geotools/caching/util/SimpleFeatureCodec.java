@@ -0,0 +1,535 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.caching.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * A compact binary encoding of simple features, used in place of Java serialization by the
+ * disk storages.
+ * <p>
+ * Like {@link SimpleFeatureMarshaller} the feature types are not encoded, only their names:
+ * the types must be registered before features can be decoded. Within a stream, each type
+ * name is written once and then referred to by its position in the stream dictionary. A
+ * feature is encoded as its type reference, its id, a bitmap of its null attributes, and its
+ * non null attribute values, each prefixed by a one byte tag. Integers use variable length
+ * zig-zag encoding, geometries are written as WKB, and values of unknown classes fall back to
+ * Java serialization.
+ * <p>
+ * Encoders and decoders keep the dictionary of the stream they are created on, and must not be
+ * shared between threads; the codec itself only needs to be synchronized on registration.
+ *
+ * @source $URL$
+ */
+public class SimpleFeatureCodec {
+    static final byte NULL = 0;
+
+    static final byte STRING = 1;
+
+    static final byte INTEGER = 2;
+
+    static final byte LONG = 3;
+
+    static final byte SHORT = 4;
+
+    static final byte BYTE = 5;
+
+    static final byte DOUBLE = 6;
+
+    static final byte FLOAT = 7;
+
+    static final byte TRUE = 8;
+
+    static final byte FALSE = 9;
+
+    static final byte DATE = 10;
+
+    static final byte SQL_DATE = 11;
+
+    static final byte TIME = 12;
+
+    static final byte TIMESTAMP = 13;
+
+    static final byte BIG_INTEGER = 14;
+
+    static final byte BIG_DECIMAL = 15;
+
+    static final byte GEOMETRY = 16;
+
+    static final byte FEATURE = 17;
+
+    static final byte SERIALIZED = 18;
+
+    private final Map<String, SimpleFeatureType> types = new HashMap<String, SimpleFeatureType>();
+
+    private final GeometryFactory geometryFactory;
+
+    public SimpleFeatureCodec() {
+        this(new GeometryFactory());
+    }
+
+    /**
+     * @param geometryFactory the factory used to build the decoded geometries
+     */
+    public SimpleFeatureCodec(GeometryFactory geometryFactory) {
+        this.geometryFactory = geometryFactory;
+    }
+
+    /**
+     * Registers a type, so that the features of this type can be decoded.
+     *
+     * @param type
+     */
+    public synchronized void registerType(SimpleFeatureType type) {
+        if (!types.containsKey(type.getName().getURI())) {
+            types.put(type.getName().getURI(), type);
+        }
+    }
+
+    synchronized SimpleFeatureType lookupType(String typeName) {
+        return types.get(typeName);
+    }
+
+    /**
+     * Creates an encoder writing to the given output.
+     */
+    public Encoder createEncoder(DataOutput out) {
+        return new Encoder(out);
+    }
+
+    /**
+     * Creates a decoder reading the output of an encoder.
+     */
+    public Decoder createDecoder(DataInput in) {
+        return new Decoder(in);
+    }
+
+    /**
+     * Writes features and attribute values to an output.
+     */
+    public class Encoder {
+        private final DataOutput out;
+
+        private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+        private WKBWriter writer2D;
+
+        private WKBWriter writer3D;
+
+        Encoder(DataOutput out) {
+            this.out = out;
+        }
+
+        /**
+         * Writes a feature. Its type is registered on the codec.
+         *
+         * @param f the feature to write
+         * @throws IOException
+         */
+        public void writeFeature(SimpleFeature f) throws IOException {
+            SimpleFeatureType type = f.getFeatureType();
+            String typeName = type.getName().getURI();
+            Integer reference = dictionary.get(typeName);
+            if (reference == null) {
+                registerType(type);
+                // 0 introduces a new type, which gets the next position
+                writeVarInt(out, 0);
+                out.writeUTF(typeName);
+                dictionary.put(typeName, dictionary.size());
+            } else {
+                writeVarInt(out, reference.intValue() + 1);
+            }
+            writeString(f.getID());
+
+            int count = f.getAttributeCount();
+            writeVarInt(out, count);
+            byte[] nulls = new byte[(count + 7) >> 3];
+            for (int i = 0; i < count; i++) {
+                if (f.getAttribute(i) == null) {
+                    nulls[i >> 3] |= 1 << (i & 7);
+                }
+            }
+            out.write(nulls);
+            for (int i = 0; i < count; i++) {
+                Object value = f.getAttribute(i);
+                if (value != null) {
+                    writeValue(value);
+                }
+            }
+        }
+
+        /**
+         * Writes any value: features and the usual attribute classes are encoded, other values
+         * are serialized.
+         *
+         * @param value the value, possibly null
+         * @throws IOException
+         */
+        public void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Geometry) {
+                out.writeByte(GEOMETRY);
+                writeGeometry((Geometry) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INTEGER);
+                writeVarLong(out, ((Integer) value).intValue());
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                writeVarLong(out, ((Long) value).longValue());
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble(((Double) value).doubleValue());
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat(((Float) value).floatValue());
+            } else if (value instanceof Short) {
+                out.writeByte(SHORT);
+                writeVarLong(out, ((Short) value).shortValue());
+            } else if (value instanceof Byte) {
+                out.writeByte(BYTE);
+                out.writeByte(((Byte) value).byteValue());
+            } else if (value instanceof Boolean) {
+                out.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+            } else if (value.getClass() == Date.class) {
+                out.writeByte(DATE);
+                writeVarLong(out, ((Date) value).getTime());
+            } else if (value.getClass() == java.sql.Date.class) {
+                out.writeByte(SQL_DATE);
+                writeVarLong(out, ((Date) value).getTime());
+            } else if (value.getClass() == Time.class) {
+                out.writeByte(TIME);
+                writeVarLong(out, ((Date) value).getTime());
+            } else if (value.getClass() == Timestamp.class) {
+                out.writeByte(TIMESTAMP);
+                writeVarLong(out, ((Timestamp) value).getTime());
+                writeVarInt(out, ((Timestamp) value).getNanos());
+            } else if (value.getClass() == BigInteger.class) {
+                out.writeByte(BIG_INTEGER);
+                writeBytes(((BigInteger) value).toByteArray());
+            } else if (value.getClass() == BigDecimal.class) {
+                out.writeByte(BIG_DECIMAL);
+                writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+                writeVarLong(out, ((BigDecimal) value).scale());
+            } else if (value instanceof SimpleFeature) {
+                out.writeByte(FEATURE);
+                writeFeature((SimpleFeature) value);
+            } else if (value instanceof Collection) {
+                throw new IllegalArgumentException(
+                        "Got instance of SimpleFeature with complex attributes.");
+            } else {
+                out.writeByte(SERIALIZED);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(bytes);
+                try {
+                    oos.writeObject(value);
+                } finally {
+                    oos.close();
+                }
+                writeBytes(bytes.toByteArray());
+            }
+        }
+
+        private void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            // length + 1, so that null can be told apart from the empty string
+            int length = s.length();
+            writeVarInt(out, length + 1);
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    out.writeByte(c);
+                } else {
+                    writeVarInt(out, c);
+                }
+            }
+        }
+
+        private void writeGeometry(Geometry geometry) throws IOException {
+            Coordinate c = geometry.isEmpty() ? null : geometry.getCoordinate();
+            WKBWriter writer;
+            if (c != null && !Double.isNaN(c.z)) {
+                if (writer3D == null) {
+                    writer3D = new WKBWriter(3);
+                }
+                writer = writer3D;
+            } else {
+                if (writer2D == null) {
+                    writer2D = new WKBWriter(2);
+                }
+                writer = writer2D;
+            }
+            writeVarInt(out, geometry.getSRID());
+            writeBytes(writer.write(geometry));
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads the features and attribute values written by an {@link Encoder}.
+     */
+    public class Decoder {
+        private final DataInput in;
+
+        private final List<SimpleFeatureType> dictionary = new ArrayList<SimpleFeatureType>();
+
+        private final Map<SimpleFeatureType, SimpleFeatureBuilder> builders = new HashMap<SimpleFeatureType, SimpleFeatureBuilder>();
+
+        private final StringBuilder chars = new StringBuilder();
+
+        private WKBReader reader;
+
+        Decoder(DataInput in) {
+            this.in = in;
+        }
+
+        /**
+         * Reads a feature.
+         *
+         * @return the feature
+         * @throws IOException if the stream is corrupted, or the type of the feature has not
+         *         been registered
+         */
+        public SimpleFeature readFeature() throws IOException {
+            int reference = readVarInt(in);
+            SimpleFeatureType type;
+            if (reference == 0) {
+                String typeName = in.readUTF();
+                type = lookupType(typeName);
+                if (type == null) {
+                    throw new IllegalStateException(typeName + " is not a registered type.");
+                }
+                dictionary.add(type);
+            } else if (reference <= dictionary.size()) {
+                type = dictionary.get(reference - 1);
+            } else {
+                throw new IOException("Invalid type reference " + reference);
+            }
+            String fid = readString();
+
+            int count = readVarInt(in);
+            if (count != type.getAttributeCount()) {
+                throw new IOException("Schema error");
+            }
+            byte[] nulls = new byte[(count + 7) >> 3];
+            in.readFully(nulls);
+            Object[] values = new Object[count];
+            for (int i = 0; i < count; i++) {
+                if ((nulls[i >> 3] & (1 << (i & 7))) == 0) {
+                    values[i] = readValue();
+                }
+            }
+            SimpleFeatureBuilder builder = builders.get(type);
+            if (builder == null) {
+                builder = new SimpleFeatureBuilder(type);
+                builders.put(type, builder);
+            }
+            builder.addAll(values);
+            return builder.buildFeature(fid);
+        }
+
+        /**
+         * Reads a value written by {@link Encoder#writeValue(Object)}.
+         *
+         * @throws IOException
+         */
+        public Object readValue() throws IOException {
+            byte tag = in.readByte();
+            switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString();
+            case GEOMETRY:
+                return readGeometry();
+            case INTEGER:
+                return Integer.valueOf((int) readVarLong(in));
+            case LONG:
+                return Long.valueOf(readVarLong(in));
+            case DOUBLE:
+                return Double.valueOf(in.readDouble());
+            case FLOAT:
+                return Float.valueOf(in.readFloat());
+            case SHORT:
+                return Short.valueOf((short) readVarLong(in));
+            case BYTE:
+                return Byte.valueOf(in.readByte());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DATE:
+                return new Date(readVarLong(in));
+            case SQL_DATE:
+                return new java.sql.Date(readVarLong(in));
+            case TIME:
+                return new Time(readVarLong(in));
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(readVarLong(in));
+                timestamp.setNanos(readVarInt(in));
+                return timestamp;
+            case BIG_INTEGER:
+                return new BigInteger(readBytes());
+            case BIG_DECIMAL:
+                BigInteger unscaled = new BigInteger(readBytes());
+                return new BigDecimal(unscaled, (int) readVarLong(in));
+            case FEATURE:
+                return readFeature();
+            case SERIALIZED:
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(
+                        readBytes()));
+                try {
+                    return ois.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw (IOException) new IOException().initCause(e);
+                } finally {
+                    ois.close();
+                }
+            default:
+                throw new IOException("Unknown value tag " + tag);
+            }
+        }
+
+        private String readString() throws IOException {
+            int length = readVarInt(in) - 1;
+            if (length < 0) {
+                return null;
+            }
+            chars.setLength(0);
+            for (int i = 0; i < length; i++) {
+                int c = in.readUnsignedByte();
+                if (c >= 0x80) {
+                    // first byte of a varint
+                    c = readVarInt(in, c);
+                }
+                chars.append((char) c);
+            }
+            return chars.toString();
+        }
+
+        private Geometry readGeometry() throws IOException {
+            int srid = readVarInt(in);
+            if (reader == null) {
+                reader = new WKBReader(geometryFactory);
+            }
+            try {
+                Geometry geometry = reader.read(readBytes());
+                geometry.setSRID(srid);
+                return geometry;
+            } catch (ParseException e) {
+                throw (IOException) new IOException().initCause(e);
+            }
+        }
+
+        private byte[] readBytes() throws IOException {
+            byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * Writes a non negative int in 1 to 5 bytes, 7 bits at a time.
+     */
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        return readVarInt(in, in.readUnsignedByte());
+    }
+
+    private static int readVarInt(DataInput in, int b) throws IOException {
+        int value = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            if (shift > 28) {
+                throw new IOException("Malformed variable length int");
+            }
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * Writes a signed long with zig-zag encoding, so that small negative values are short too.
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0;; shift += 7) {
+            if (shift > 63) {
+                throw new IOException("Malformed variable length long");
+            }
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -17,13 +17,17 @@
 package org.geotools.caching.grid.spatialindex;
 
 import java.util.Iterator;
+import java.util.Properties;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import org.geotools.caching.grid.spatialindex.store.DiskStorage;
 import org.geotools.caching.spatialindex.Region;
 import org.geotools.caching.spatialindex.RegionNodeIdentifier;
+import org.geotools.caching.spatialindex.Storage;
+import org.geotools.caching.util.Generator;
 
 
 public class GridNodeTest extends TestCase {
@@ -85,6 +89,31 @@ public class GridNodeTest extends TestCase {
         assertEquals(20-2, node.getDataCount());
     }
 
+    public void testDiskStorage() throws Exception {
+        populate();
+        Generator gen = new Generator(1, 1);
+        for (int i = 0; i < 10; i++) {
+            node.insertData(new GridData(mbr, gen.createFeature(i)));
+        }
+        assertTrue(GridNodeCodec.canEncode(node));
+
+        Properties pset = DiskStorage.createInstance().getPropertySet();
+        pset.setProperty(DiskStorage.MEMORY_MAPPED_PROPERTY, "true");
+        Storage storage = DiskStorage.createInstance(pset);
+        storage.put(node);
+        GridNode read = (GridNode) storage.get(node.getIdentifier());
+        assertEquals(node.getIdentifier(), read.getIdentifier());
+        assertEquals(node.getData(), read.getData());
+
+        // reopened without mapping, the pages are the same
+        storage.dispose();
+        pset.setProperty(DiskStorage.MEMORY_MAPPED_PROPERTY, "false");
+        storage = DiskStorage.createInstance(pset);
+        read = (GridNode) storage.get(node.getIdentifier());
+        assertEquals(node.getData(), read.getData());
+        storage.dispose();
+    }
+
     Object getData(GridNode n, int index) {
         if ((index < 0) || (index > (n.getDataCount() - 1))) {
             return null;
@@ -0,0 +1,136 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.caching.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Encodes and decodes features with {@link SimpleFeatureCodec}.
+ *
+ * @source $URL$
+ */
+public class SimpleFeatureCodecTest extends TestCase {
+
+    public void testRoundTrip() throws Exception {
+        Generator gen = new Generator(1000, 1000);
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < 100; i++) {
+            features.add(gen.createFeature(i));
+        }
+        SimpleFeatureCodec codec = new SimpleFeatureCodec();
+        byte[] encoded = encode(codec, features);
+
+        // the type name is written once, so the encoding is smaller than serialization
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(serialized);
+        SimpleFeatureMarshaller marshaller = new SimpleFeatureMarshaller();
+        for (SimpleFeature f : features) {
+            marshaller.marshall(f, oos);
+        }
+        oos.close();
+        assertTrue(encoded.length < serialized.size());
+
+        assertEquals(features, decode(codec, encoded, features.size()));
+    }
+
+    public void testAttributes() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("codec",
+                "geom:Point,name:String,count:Integer,big:java.lang.Long,ratio:Double,flag:Boolean,"
+                        + "date:java.util.Date,stamp:java.sql.Timestamp,"
+                        + "decimal:java.math.BigDecimal,integer:java.math.BigInteger");
+        GeometryFactory gf = new GeometryFactory();
+        Timestamp stamp = new Timestamp(1234567890123L);
+        stamp.setNanos(123456789);
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        features.add(SimpleFeatureBuilder.build(type, new Object[] {
+                gf.createPoint(new Coordinate(1.5, -2.25, 3)), "café 東京", -42,
+                Long.MIN_VALUE, Double.NaN, Boolean.TRUE, new Date(-1000L), stamp,
+                new BigDecimal("-12345.6789"), new BigInteger("123456789012345678901234567890") },
+                "codec.1"));
+        features.add(SimpleFeatureBuilder.build(type, new Object[] { null, "", null,
+                Long.valueOf(Integer.MAX_VALUE + 1L), null, Boolean.FALSE, null, null, null, null },
+                "codec.2"));
+        features.add(SimpleFeatureBuilder.build(type, new Object[10], null));
+
+        SimpleFeatureCodec codec = new SimpleFeatureCodec();
+        List<SimpleFeature> decoded = decode(codec, encode(codec, features), features.size());
+        for (int i = 0; i < features.size(); i++) {
+            assertEquals(features.get(i).getID(), decoded.get(i).getID());
+            assertEquals(features.get(i).getAttributes(), decoded.get(i).getAttributes());
+        }
+        Coordinate c = ((com.vividsolutions.jts.geom.Point) decoded.get(0).getDefaultGeometry())
+                .getCoordinate();
+        assertEquals(3, c.z, 0);
+    }
+
+    public void testUnregisteredType() throws Exception {
+        Generator gen = new Generator(1000, 1000);
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        features.add(gen.createFeature(0));
+        byte[] encoded = encode(new SimpleFeatureCodec(), features);
+        try {
+            decode(new SimpleFeatureCodec(), encoded, 1);
+            fail("The type is not registered");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private byte[] encode(SimpleFeatureCodec codec, List<SimpleFeature> features)
+            throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        SimpleFeatureCodec.Encoder encoder = codec.createEncoder(out);
+        for (SimpleFeature f : features) {
+            encoder.writeFeature(f);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private List<SimpleFeature> decode(SimpleFeatureCodec codec, byte[] encoded, int count)
+            throws Exception {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        SimpleFeatureCodec.Decoder decoder = codec.createDecoder(in);
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < count; i++) {
+            features.add(decoder.readFeature());
+        }
+        assertEquals(-1, in.read());
+        return features;
+    }
+}
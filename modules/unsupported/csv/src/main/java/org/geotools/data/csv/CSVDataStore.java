@@ -7,6 +7,8 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.Collections;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.commons.io.FileUtils;
 import org.geotools.data.Query;
@@ -14,21 +16,43 @@ import org.geotools.data.store.ContentDataStore;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureSource;
 import org.geotools.feature.NameImpl;
+import org.geotools.util.logging.Logging;
 import org.opengis.feature.type.Name;
 
 import com.csvreader.CsvReader;
 
 public class CSVDataStore extends ContentDataStore {
 // header end
+    static final Logger LOGGER = Logging.getLogger("org.geotools.data.csv");
     
     // constructor start
     File file;
     
+    CSVIndex index;
+    
     public CSVDataStore( File file ){
         this.file = file;
     }
     // constructor end
     
+    /**
+     * Checks if the column holds the latitude of the location; the header name is
+     * matched trimmed and ignoring case.
+     * @return true for a "lat" column
+     */
+    static boolean isLatitude(String column) {
+        return "lat".equalsIgnoreCase(column.trim());
+    }
+
+    /**
+     * Checks if the column holds the longitude of the location; the header name is
+     * matched trimmed and ignoring case.
+     * @return true for a "lon" column
+     */
+    static boolean isLongitude(String column) {
+        return "lon".equalsIgnoreCase(column.trim());
+    }
+
     /**
      * Allow read access to file; for our package visible "friends".
      * Please close the reader when done.
@@ -41,9 +65,40 @@ public class CSVDataStore extends ContentDataStore {
     }
 
     void write(File tempFile) throws IOException {
+        synchronized (this) {
+            index = null;
+            CSVIndex.getIndexFile(file).delete();
+        }
         FileUtils.copyFile(tempFile, this.file);
     }
 
+    /**
+     * Index of the file, read from the index file next to it, or built and saved there
+     * if missing or stale.
+     * @return index of the rows of the file
+     */
+    synchronized CSVIndex getIndex() throws IOException {
+        if (index != null && index.isValid(file)) {
+            return index;
+        }
+        index = null;
+        try {
+            index = CSVIndex.read(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Ignoring unreadable index of " + file, e);
+        }
+        if (index == null) {
+            index = CSVIndex.build(file);
+            try {
+                index.write(file);
+            } catch (IOException e) {
+                // read only directory, keep the index in memory only
+                LOGGER.log(Level.FINE, "Could not save the index of " + file, e);
+            }
+        }
+        return index;
+    }
+
     // createTypeNames start
     @Override
     protected List<Name> createTypeNames() throws IOException {
@@ -1,6 +1,11 @@
 package org.geotools.data.csv;
 
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.util.NoSuchElementException;
 
 import org.geotools.data.FeatureReader;
@@ -22,6 +27,12 @@ public class CSVFeatureReader implements FeatureReader<SimpleFeatureType, Simple
     protected SimpleFeatureBuilder builder;
     private int row;
     private GeometryFactory geometryFactory;
+    /** Rows to read through the index, null when reading the file sequentially */
+    private int[] rows;
+    private int current;
+    private CSVIndex index;
+    private RandomAccessFile file;
+    private String[] headers;
 
     public CSVFeatureReader(ContentState contentState) throws IOException {
         this.state = contentState;
@@ -36,6 +47,39 @@ public class CSVFeatureReader implements FeatureReader<SimpleFeatureType, Simple
         row = 0;
     }
 
+    /**
+     * Reads the given rows only, seeking to each of them.
+     * @param rows row numbers, starting from 0, in file order
+     */
+    public CSVFeatureReader(ContentState contentState, int[] rows) throws IOException {
+        this(contentState);
+        CSVDataStore csv = (CSVDataStore) contentState.getEntry().getDataStore();
+        this.headers = reader.getHeaders();
+        this.rows = rows;
+        this.index = csv.getIndex();
+        this.file = new RandomAccessFile(csv.file, "r");
+    }
+
+    /**
+     * Reads the rows from firstRow (included) to lastRow (excluded), which are read as an
+     * independent range of bytes of the file. Several of these readers can be used in parallel.
+     */
+    public CSVFeatureReader(ContentState contentState, int firstRow, int lastRow)
+            throws IOException {
+        this(contentState);
+        CSVDataStore csv = (CSVDataStore) contentState.getEntry().getDataStore();
+        String[] headers = reader.getHeaders();
+        reader.close();
+        CSVIndex index = csv.getIndex();
+        long start = index.getOffset(firstRow);
+        long end = lastRow > firstRow ? index.getEnd(lastRow - 1) : start;
+        FileInputStream in = new FileInputStream(csv.file);
+        in.getChannel().position(start);
+        reader = new CsvReader(new InputStreamReader(new RangeInputStream(in, end - start)));
+        reader.setHeaders(headers);
+        row = firstRow;
+    }
+
     public SimpleFeatureType getFeatureType() {
         return (SimpleFeatureType) state.getFeatureType();
     }
@@ -57,6 +101,16 @@ public class CSVFeatureReader implements FeatureReader<SimpleFeatureType, Simple
         if( reader == null ){
             throw new IOException("FeatureReader is closed; no additional features can be read");
         }
+        if( rows != null ){
+            // position the reader on the next row of the index
+            if( current == rows.length ){
+                close();
+                return null;
+            }
+            row = rows[current++];
+            reader.close();
+            reader = readRow( row );
+        }
         boolean read = reader.readRecord(); // read the "next" record
         if( read == false ){
             close(); // automatic close to be nice
@@ -65,10 +119,10 @@ public class CSVFeatureReader implements FeatureReader<SimpleFeatureType, Simple
         Coordinate coordinate = new Coordinate();
         for( String column : reader.getHeaders() ){
             String value = reader.get(column);
-            if( "lat".equalsIgnoreCase(column)){
+            if( CSVDataStore.isLatitude(column)){
                 coordinate.y = Double.valueOf( value.trim() );
             }
-            else if( "lon".equalsIgnoreCase(column)){
+            else if( CSVDataStore.isLongitude(column)){
                 coordinate.x = Double.valueOf( value.trim() );
             }
             else {
@@ -80,6 +134,16 @@ public class CSVFeatureReader implements FeatureReader<SimpleFeatureType, Simple
         return this.buildFeature();
     }
     
+    private CsvReader readRow(int row) throws IOException {
+        long offset = index.getOffset(row);
+        byte[] bytes = new byte[(int) (index.getEnd(row) - offset)];
+        file.seek(offset);
+        file.readFully(bytes);
+        CsvReader rowReader = CsvReader.parse(new String(bytes));
+        rowReader.setHeaders(headers);
+        return rowReader;
+    }
+
     protected SimpleFeature buildFeature() {
         row += 1;
         return builder.buildFeature( state.getEntry().getTypeName()+"."+row );
@@ -100,9 +164,61 @@ public class CSVFeatureReader implements FeatureReader<SimpleFeatureType, Simple
             reader.close();
             reader = null;
         }
+        if( file != null ){
+            file.close();
+            file = null;
+        }
         builder = null;
         geometryFactory = null;
         next = null;
     }
 
+    /**
+     * Stream stopping after the given number of bytes
+     */
+    static class RangeInputStream extends FilterInputStream {
+        long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+
 }
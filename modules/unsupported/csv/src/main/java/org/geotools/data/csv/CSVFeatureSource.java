@@ -1,21 +1,27 @@
 package org.geotools.data.csv;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureWriter;
 import org.geotools.data.Query;
+import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureCollection;
 import org.geotools.data.store.ContentFeatureStore;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
 
 import com.csvreader.CsvReader;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Point;
 
 @SuppressWarnings("unchecked")
@@ -31,11 +37,25 @@ public class CSVFeatureSource extends ContentFeatureStore {
         return (CSVDataStore) super.getDataStore();
     }
     
+    /**
+     * True if the query is about all the rows of the file as stored, the index can answer it
+     */
+    boolean isWholeFile(Query query) {
+        return getTransaction() == Transaction.AUTO_COMMIT
+                && (query.getFilter() == null || query.getFilter() == Filter.INCLUDE)
+                && query.getMaxFeatures() == Integer.MAX_VALUE
+                && (query.getStartIndex() == null || query.getStartIndex() == 0);
+    }
+
     /**
      * Implementation that generates the total bounds
-     * (many file formats record this information in the header)
+     * (many file formats record this information in the header, we use the index)
      */
     protected ReferencedEnvelope getBoundsInternal(Query query) throws IOException {
+        if( isWholeFile(query) ){
+            CSVIndex index = getDataStore().getIndex();
+            return new ReferencedEnvelope( index.getBounds(), getSchema().getCoordinateReferenceSystem() );
+        }
         ReferencedEnvelope bounds = new ReferencedEnvelope( getSchema().getCoordinateReferenceSystem() );
         
         FeatureReader<SimpleFeatureType, SimpleFeature> featureReader = getReaderInternal(query);
@@ -52,6 +72,9 @@ public class CSVFeatureSource extends ContentFeatureStore {
     }
 
     protected int getCountInternal(Query query) throws IOException {
+        if( isWholeFile(query) ){
+            return getDataStore().getIndex().getCount();
+        }
         ContentFeatureCollection cfc = this.getFeatures(query);
         int count = 0;
         SimpleFeatureIterator iter = cfc.features();
@@ -82,10 +105,48 @@ public class CSVFeatureSource extends ContentFeatureStore {
 
     protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query)
             throws IOException {
-        // Note we ignore 'query' because querying/filtering is handled in superclasses.
+        // Note the query is filtered in superclasses, we only use its bounds
+        // to skip the rows which cannot match
+        Filter filter = query.getFilter();
+        if( filter != null && filter != Filter.INCLUDE ){
+            Envelope bbox = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR, null);
+            if( bbox != null && !bbox.isNull() && !isInfinite(bbox) ){
+                int[] rows = getDataStore().getIndex().query(bbox);
+                return new CSVFeatureReader( getState(), rows );
+            }
+        }
         return new CSVFeatureReader( getState() );
     }
 
+    static boolean isInfinite(Envelope bbox) {
+        return Double.isInfinite(bbox.getMinX()) || Double.isInfinite(bbox.getMinY())
+                || Double.isInfinite(bbox.getMaxX()) || Double.isInfinite(bbox.getMaxY());
+    }
+
+    /**
+     * Splits the file in about equally sized ranges of rows, read by independent readers
+     * which can be used by different threads. The readers return the rows as stored in the
+     * file, without filtering and ignoring the current transaction.
+     * @param parts maximum number of readers
+     * @return the readers, in file order
+     */
+    public List<FeatureReader<SimpleFeatureType, SimpleFeature>> getSplitReaders(int parts) throws IOException {
+        getSchema(); // make sure the feature type of the state is known
+        List<FeatureReader<SimpleFeatureType, SimpleFeature>> readers = new ArrayList<FeatureReader<SimpleFeatureType, SimpleFeature>>();
+        try {
+            for( int[] range : getDataStore().getIndex().split(parts) ){
+                readers.add( new CSVFeatureReader( getState(), range[0], range[1] ) );
+            }
+        }
+        catch( IOException e ){
+            for( FeatureReader<SimpleFeatureType, SimpleFeature> reader : readers ){
+                reader.close();
+            }
+            throw e;
+        }
+        return readers;
+    }
+
     protected SimpleFeatureType buildFeatureType() throws IOException {
         
         SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
@@ -106,10 +167,10 @@ public class CSVFeatureSource extends ContentFeatureStore {
             builder.add("Location", Point.class );
             
             for( String column : reader.getHeaders() ){
-                if( "lat".equalsIgnoreCase(column)){
+                if( CSVDataStore.isLatitude(column)){
                     continue; // skip as it is part of Location
                 }
-                if( "lon".equalsIgnoreCase(column)){
+                if( CSVDataStore.isLongitude(column)){
                     continue; // skip as it is part of Location
                 }
                 builder.add(column, String.class);
@@ -0,0 +1,375 @@
+package org.geotools.data.csv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.csvreader.CsvReader;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * Index of a CSV file, kept next to it with the {@link #EXTENSION} extension.
+ * <p>
+ * The index records the byte offset of every row, the row count, the bounds of the LAT/LON
+ * columns and the location of every row. It is used to:
+ * <ul>
+ * <li>return the count and bounds of the whole file without reading it</li>
+ * <li>read only the rows inside a bounding box, through an in memory R-tree of the
+ * locations</li>
+ * <li>split the file in byte ranges which can be read in parallel</li>
+ * </ul>
+ * The index is stale as soon as the length or the modification time of the file change.
+ * </p>
+ */
+public class CSVIndex {
+
+    /**
+     * The extension added to the CSV file name to get the index file name
+     */
+    public static final String EXTENSION = ".idx";
+
+    static final int MAGIC = 0x43535649; // "CSVI"
+
+    static final int VERSION = 1;
+
+    long fileLength;
+
+    long lastModified;
+
+    /**
+     * Offset of each row, plus the end of the last one
+     */
+    long[] offsets;
+
+    /**
+     * Longitude and latitude of each row, NaN if not available
+     */
+    double[] x;
+
+    double[] y;
+
+    Envelope bounds;
+
+    STRtree tree;
+
+    CSVIndex(long fileLength, long lastModified, long[] offsets, double[] x, double[] y) {
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.offsets = offsets;
+        this.x = x;
+        this.y = y;
+        this.bounds = new Envelope();
+        for (int i = 0; i < x.length; i++) {
+            if (!Double.isNaN(x[i]) && !Double.isNaN(y[i])) {
+                bounds.expandToInclude(x[i], y[i]);
+            }
+        }
+    }
+
+    /**
+     * Number of rows, the header excluded
+     */
+    public int getCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Bounds of the row locations
+     */
+    public Envelope getBounds() {
+        return new Envelope(bounds);
+    }
+
+    /**
+     * Byte offset of a row
+     */
+    public long getOffset(int row) {
+        return offsets[row];
+    }
+
+    /**
+     * Byte offset following a row, where the next one starts
+     */
+    public long getEnd(int row) {
+        return offsets[row + 1];
+    }
+
+    /**
+     * Returns the rows whose location is inside the envelope, in file order
+     */
+    public synchronized int[] query(Envelope envelope) {
+        if (tree == null) {
+            STRtree built = new STRtree();
+            for (int i = 0; i < x.length; i++) {
+                if (!Double.isNaN(x[i]) && !Double.isNaN(y[i])) {
+                    built.insert(new Envelope(x[i], x[i], y[i], y[i]), Integer.valueOf(i));
+                }
+            }
+            built.build();
+            tree = built;
+        }
+        List<?> hits = tree.query(envelope);
+        int[] rows = new int[hits.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = ((Integer) hits.get(i)).intValue();
+        }
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    /**
+     * Splits the rows in at most the given number of contiguous ranges of about the same number
+     * of bytes. Each range is returned as a {first row, last row excluded} pair.
+     */
+    public List<int[]> split(int parts) {
+        List<int[]> ranges = new ArrayList<int[]>();
+        int count = getCount();
+        if (count == 0) {
+            return ranges;
+        }
+        long start = offsets[0];
+        long size = offsets[count] - start;
+        int first = 0;
+        for (int i = 1; i <= parts && first < count; i++) {
+            int last;
+            if (i == parts) {
+                last = count;
+            } else {
+                long target = start + size * i / parts;
+                last = Arrays.binarySearch(offsets, first, count + 1, target);
+                if (last < 0) {
+                    last = -last - 1;
+                }
+                last = Math.max(last, first + 1);
+            }
+            ranges.add(new int[] { first, last });
+            first = last;
+        }
+        return ranges;
+    }
+
+    /**
+     * True if the index was built from the current state of the file
+     */
+    public boolean isValid(File csv) {
+        return csv.length() == fileLength && csv.lastModified() == lastModified;
+    }
+
+    /**
+     * Returns the index file of a CSV file
+     */
+    public static File getIndexFile(File csv) {
+        return new File(csv.getParentFile(), csv.getName() + EXTENSION);
+    }
+
+    /**
+     * Reads the index of a CSV file, returns null if there is none or if it is stale
+     */
+    public static CSVIndex read(File csv) throws IOException {
+        File file = getIndexFile(csv);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+                file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long fileLength = in.readLong();
+            long lastModified = in.readLong();
+            if (csv.length() != fileLength || csv.lastModified() != lastModified) {
+                return null;
+            }
+            int count = in.readInt();
+            long[] offsets = new long[count + 1];
+            double[] x = new double[count];
+            double[] y = new double[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                x[i] = in.readDouble();
+                y[i] = in.readDouble();
+            }
+            offsets[count] = in.readLong();
+            return new CSVIndex(fileLength, lastModified, offsets, x, y);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the index next to the CSV file
+     */
+    public void write(File csv) throws IOException {
+        File file = getIndexFile(csv);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileLength);
+            out.writeLong(lastModified);
+            int count = getCount();
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(offsets[i]);
+                out.writeDouble(x[i]);
+                out.writeDouble(y[i]);
+            }
+            out.writeLong(offsets[count]);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Scans a CSV file recording the offsets and locations of the rows. Records are split on
+     * line ends outside of quoted values, and empty lines are skipped, as {@link CsvReader}
+     * does.
+     */
+    public static CSVIndex build(File csv) throws IOException {
+        long fileLength = csv.length();
+        long lastModified = csv.lastModified();
+        LongList offsets = new LongList();
+        DoubleList x = new DoubleList();
+        DoubleList y = new DoubleList();
+
+        InputStream in = new FileInputStream(csv);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            RecordBuffer record = new RecordBuffer();
+            int latColumn = -1;
+            int lonColumn = -1;
+            boolean header = true;
+            long position = 0;
+            long recordStart = 0;
+            boolean quoted = false;
+            int read;
+            do {
+                read = in.read(buffer);
+                // a -1 read ends the last record
+                int end = Math.max(read, 0);
+                for (int i = 0; i <= end; i++) {
+                    if (i == end && read != -1) {
+                        break;
+                    }
+                    byte b = i < end ? buffer[i] : (byte) '\n';
+                    if (quoted || (b != '\n' && b != '\r')) {
+                        if (b == '"') {
+                            quoted = !quoted;
+                        }
+                        record.add(b);
+                        position++;
+                        continue;
+                    }
+                    if (record.size > 0) {
+                        CsvReader values = record.parse();
+                        if (header) {
+                            for (int column = 0; column < values.getColumnCount(); column++) {
+                                String name = values.get(column);
+                                if (CSVDataStore.isLatitude(name)) {
+                                    latColumn = column;
+                                } else if (CSVDataStore.isLongitude(name)) {
+                                    lonColumn = column;
+                                }
+                            }
+                            header = false;
+                        } else {
+                            offsets.add(recordStart);
+                            x.add(parse(values, lonColumn));
+                            y.add(parse(values, latColumn));
+                        }
+                        record.size = 0;
+                    }
+                    if (i < end) {
+                        position++;
+                        recordStart = position;
+                    }
+                }
+            } while (read != -1);
+            offsets.add(position);
+        } finally {
+            in.close();
+        }
+        return new CSVIndex(fileLength, lastModified, offsets.toArray(), x.toArray(),
+                y.toArray());
+    }
+
+    static double parse(CsvReader values, int column) throws IOException {
+        if (column < 0 || column >= values.getColumnCount()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(values.get(column).trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * The bytes of the record being scanned
+     */
+    static class RecordBuffer {
+        byte[] bytes = new byte[256];
+
+        int size;
+
+        void add(byte b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = b;
+        }
+
+        CsvReader parse() throws IOException {
+            // decoded as the data store reader does, with the platform encoding
+            CsvReader reader = CsvReader.parse(new String(bytes, 0, size));
+            reader.readRecord();
+            return reader;
+        }
+    }
+
+    static class LongList {
+        long[] values = new long[1024];
+
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    static class DoubleList {
+        double[] values = new double[1024];
+
+        int size;
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.geotools.data.DataStore;
+import org.geotools.data.FeatureReader;
 import org.geotools.data.Query;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
@@ -88,6 +89,7 @@ public class CSVDataStoreTest {
     @After
     public void deleteTestFile() {
         testFile.delete();
+        CSVIndex.getIndexFile(testFile).delete();
     }
 
     /**
@@ -132,6 +134,120 @@ public class CSVDataStoreTest {
         }
     }
 
+    /**
+     * Test the index answers count and bounds, and is rebuilt when the file changes.
+     */
+    @Test
+    public void testIndex() throws Exception {
+        DataStore csv = this.getDataStore();
+        SimpleFeatureSource rows = csv.getFeatureSource( TYPE_NAME );
+        assertEquals( 9, rows.getCount(Query.ALL) );
+        File indexFile = CSVIndex.getIndexFile(testFile);
+        assertTrue( indexFile.exists() );
+        
+        ReferencedEnvelope bounds = rows.getBounds();
+        assertEquals( -123.365556, bounds.getMinX(), 0d );
+        assertEquals( 151.211111, bounds.getMaxX(), 0d );
+        assertEquals( -33.925278, bounds.getMinY(), 0d );
+        assertEquals( 48.428611, bounds.getMaxY(), 0d );
+        
+        // the saved index is used by a new store
+        CSVIndex index = CSVIndex.read(testFile);
+        assertNotNull( index );
+        assertEquals( 9, index.getCount() );
+        
+        // and dropped when the file is written
+        ((SimpleFeatureStore) rows).removeFeatures(this.newTestFilter());
+        assertEquals( 6, this.getDataStore().getFeatureSource( TYPE_NAME ).getCount(Query.ALL) );
+    }
+
+    /**
+     * Test bounding box queries, which read the matching rows only
+     */
+    @Test
+    public void testBBOXFilter() throws Exception {
+        DataStore csv = this.getDataStore();
+        SimpleFeatureSource rows = csv.getFeatureSource( TYPE_NAME );
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        // Europe
+        Filter bbox = ff.bbox("Location", 0, 40, 20, 50, null);
+        SimpleFeatureIterator cursor = rows.getFeatures(bbox).features();
+        Set<String> found = new HashSet<String>();
+        try {
+            while( cursor.hasNext() ){
+                SimpleFeature feature = cursor.next();
+                found.add( feature.getID() + " " + feature.getAttribute(CITY_COL) );
+            }
+        }
+        finally {
+            cursor.close();
+        }
+        assertEquals( new HashSet<String>(Arrays.asList(TYPE_NAME + ".1 Trento",
+                TYPE_NAME + ".6 Lausanne")), found );
+        
+        // combined with another filter
+        Filter and = ff.and(bbox, ff.equals(ff.property(CITY_COL), ff.literal("Trento")));
+        assertEquals( 1, rows.getFeatures(and).size() );
+    }
+
+    /**
+     * Test lat/lon headers padded with blanks are recognized by both the index and the reader
+     */
+    @Test
+    public void testPaddedHeaders() throws Exception {
+        BufferedWriter writer = new BufferedWriter( new FileWriter( this.testFile ) );
+        writer.append("\" Lat\",\"lon \",CITY"); writer.newLine();
+        writer.append("46.066667, 11.116667, Trento"); writer.newLine();
+        writer.append("-33.859972, 151.211111, Sydney"); writer.newLine();
+        writer.close();
+        
+        SimpleFeatureSource rows = this.getDataStore().getFeatureSource( TYPE_NAME );
+        assertEquals( 2, rows.getSchema().getAttributeCount() );
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        SimpleFeatureIterator cursor = rows.getFeatures(ff.bbox("Location", 0, 40, 20, 50, null)).features();
+        try {
+            assertTrue( cursor.hasNext() );
+            SimpleFeature feature = cursor.next();
+            assertEquals( "Trento", feature.getAttribute(CITY_COL) );
+            Point location = (Point) feature.getDefaultGeometry();
+            assertEquals( 11.116667, location.getX(), 0d );
+            assertEquals( 46.066667, location.getY(), 0d );
+            assertFalse( cursor.hasNext() );
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Test the file can be read as independent ranges of rows
+     */
+    @Test
+    public void testSplitReaders() throws Exception {
+        DataStore csv = this.getDataStore();
+        CSVFeatureSource rows = (CSVFeatureSource) csv.getFeatureSource( TYPE_NAME );
+        List<FeatureReader<SimpleFeatureType, SimpleFeature>> readers = rows.getSplitReaders(4);
+        assertEquals( 4, readers.size() );
+        Set<String> found = new HashSet<String>();
+        int count = 0;
+        for( FeatureReader<SimpleFeatureType, SimpleFeature> reader : readers ){
+            try {
+                while( reader.hasNext() ){
+                    SimpleFeature feature = reader.next();
+                    found.add( feature.getID() );
+                    count++;
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        assertEquals( 9, count );
+        for( int i = 1; i <= 9; i++ ){
+            assertTrue( found.contains( TYPE_NAME + "." + i ) );
+        }
+    }
+
     private DataStore getDataStore() throws FileNotFoundException, IOException {
         assertTrue( this.testFile.exists() );        
         DataStore csv = new CSVDataStore( this.testFile );
@@ -0,0 +1,427 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import static org.geotools.data.flatgeobuf.FlatGeobufHeader.*;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.geotools.data.DataSourceException;
+import org.geotools.data.flatgeobuf.FlatBuffers.Table;
+import org.geotools.data.flatgeobuf.FlatBuffers.TableReader;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Encodes and decodes the features of a FlatGeobuf file. The geometries are handled in two
+ * dimensions, the other ordinates of files written by others are skipped.
+ * <p>
+ * A codec is bound to a header, it keeps the column mapping and reuses its buffers among
+ * features, hence it is not thread safe.
+ * </p>
+ *
+ * @source $URL$
+ */
+class FeatureCodec {
+
+    // feature fields
+    static final int FEATURE_GEOMETRY = 0;
+
+    static final int FEATURE_PROPERTIES = 1;
+
+    static final int FEATURE_FIELDS = 3;
+
+    // geometry fields
+    static final int ENDS = 0;
+
+    static final int XY = 1;
+
+    static final int TYPE = 6;
+
+    static final int PARTS = 7;
+
+    static final int GEOMETRY_FIELDS = 8;
+
+    static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    FlatGeobufHeader header;
+
+    /**
+     * For each column, the index of the feature attribute, -1 if the attribute is missing
+     */
+    int[] attributes;
+
+    ByteBuffer properties = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+    double[] xy = new double[64];
+
+    int[] ends = new int[8];
+
+    /**
+     * Creates a codec mapping the columns of the header to the attributes of the given names,
+     * in the order of the feature type
+     */
+    FeatureCodec(FlatGeobufHeader header, List<String> attributeNames) {
+        this.header = header;
+        this.attributes = new int[header.columnNames.length];
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = attributeNames.indexOf(header.columnNames[i]);
+        }
+    }
+
+    /**
+     * Encodes the feature, size prefix included
+     */
+    byte[] encode(SimpleFeature feature) throws IOException {
+        Table table = new Table(FEATURE_FIELDS);
+        Geometry geometry = (Geometry) feature.getDefaultGeometry();
+        if (geometry != null) {
+            table.addTable(FEATURE_GEOMETRY, encode(geometry));
+        }
+        properties.clear();
+        for (int i = 0; i < attributes.length; i++) {
+            Object value = attributes[i] < 0 ? null : feature.getAttribute(attributes[i]);
+            if (value != null) {
+                writeProperty(i, header.columnTypes[i], value);
+            }
+        }
+        if (properties.position() > 0) {
+            table.addBytes(FEATURE_PROPERTIES, properties.array(), properties.position());
+        }
+        return FlatBuffers.encode(table);
+    }
+
+    Table encode(Geometry geometry) throws IOException {
+        Table table = new Table(GEOMETRY_FIELDS);
+        int type = geometryType(geometry.getClass());
+        table.addByte(TYPE, type);
+        if (type == MULTIPOLYGON || type == GEOMETRYCOLLECTION) {
+            List<Table> parts = new ArrayList<Table>();
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                parts.add(encode(geometry.getGeometryN(i)));
+            }
+            table.addTables(PARTS, parts);
+            return table;
+        }
+
+        int size = 0;
+        int parts = 0;
+        if (type == POLYGON) {
+            Polygon polygon = (Polygon) geometry;
+            if (!polygon.isEmpty()) {
+                size = add(polygon.getExteriorRing().getCoordinateSequence(), size);
+                ends[parts++] = size / 2;
+                for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                    size = add(polygon.getInteriorRingN(i).getCoordinateSequence(), size);
+                    ends = ensure(ends, parts + 1);
+                    ends[parts++] = size / 2;
+                }
+            }
+        } else if (type == MULTILINESTRING) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                LineString line = (LineString) geometry.getGeometryN(i);
+                size = add(line.getCoordinateSequence(), size);
+                ends = ensure(ends, parts + 1);
+                ends[parts++] = size / 2;
+            }
+        } else if (type == MULTIPOINT) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                size = add(((Point) geometry.getGeometryN(i)).getCoordinateSequence(), size);
+            }
+        } else if (type == POINT) {
+            size = add(((Point) geometry).getCoordinateSequence(), size);
+        } else if (type == LINESTRING) {
+            size = add(((LineString) geometry).getCoordinateSequence(), size);
+        } else {
+            throw new DataSourceException("Unsupported geometry type "
+                    + geometry.getGeometryType());
+        }
+        if (size > 0) {
+            table.addDoubles(XY, xy, size);
+        }
+        // the ends are needed only when there is more than one part
+        if (parts > 1) {
+            table.addUInts(ENDS, ends, parts);
+        }
+        return table;
+    }
+
+    int add(CoordinateSequence cs, int size) {
+        xy = ensure(xy, size + cs.size() * 2);
+        for (int i = 0; i < cs.size(); i++) {
+            xy[size++] = cs.getOrdinate(i, 0);
+            xy[size++] = cs.getOrdinate(i, 1);
+        }
+        return size;
+    }
+
+    void writeProperty(int column, int type, Object value) {
+        ensureProperties(2 + 8);
+        properties.putShort((short) column);
+        switch (type) {
+        case BOOL:
+            properties.put((byte) (Boolean.TRUE.equals(value) ? 1 : 0));
+            break;
+        case BYTE:
+        case UBYTE:
+            properties.put(((Number) value).byteValue());
+            break;
+        case SHORT:
+        case USHORT:
+            properties.putShort(((Number) value).shortValue());
+            break;
+        case INT:
+        case UINT:
+            properties.putInt(((Number) value).intValue());
+            break;
+        case LONG:
+        case ULONG:
+            properties.putLong(((Number) value).longValue());
+            break;
+        case FLOAT:
+            properties.putFloat(((Number) value).floatValue());
+            break;
+        case DOUBLE:
+            properties.putDouble(((Number) value).doubleValue());
+            break;
+        case DATETIME:
+            Calendar calendar = Calendar.getInstance(UTC);
+            calendar.setTime((Date) value);
+            writeBytes(FlatBuffers.utf8(DatatypeConverter.printDateTime(calendar)));
+            break;
+        case BINARY:
+            writeBytes((byte[]) value);
+            break;
+        default:
+            writeBytes(FlatBuffers.utf8(value.toString()));
+        }
+    }
+
+    void writeBytes(byte[] bytes) {
+        ensureProperties(4 + bytes.length);
+        properties.putInt(bytes.length);
+        properties.put(bytes);
+    }
+
+    void ensureProperties(int remaining) {
+        if (properties.remaining() < remaining) {
+            int capacity = Math.max(properties.capacity() * 2, properties.position() + remaining);
+            ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            properties.flip();
+            grown.put(properties);
+            properties = grown;
+        }
+    }
+
+    /**
+     * Decodes the feature at the given position, that of its size prefix, into the values
+     * array following the attribute mapping. Returns the geometry.
+     */
+    Geometry decode(ByteBuffer buffer, int position, Object[] values, GeometryFactory factory)
+            throws IOException {
+        TableReader feature = TableReader.root(buffer, position + 4);
+        int start = feature.vector(FEATURE_PROPERTIES);
+        int end = start + feature.vectorLength(FEATURE_PROPERTIES);
+        int offset = start;
+        while (offset < end) {
+            int column = buffer.getShort(offset) & 0xFFFF;
+            if (column >= attributes.length) {
+                throw new DataSourceException("Invalid column index " + column);
+            }
+            offset += 2;
+            int type = header.columnTypes[column];
+            Object value;
+            switch (type) {
+            case BOOL:
+                value = buffer.get(offset) != 0;
+                offset += 1;
+                break;
+            case BYTE:
+                value = buffer.get(offset);
+                offset += 1;
+                break;
+            case UBYTE:
+                value = (short) (buffer.get(offset) & 0xFF);
+                offset += 1;
+                break;
+            case SHORT:
+                value = buffer.getShort(offset);
+                offset += 2;
+                break;
+            case USHORT:
+                value = buffer.getShort(offset) & 0xFFFF;
+                offset += 2;
+                break;
+            case INT:
+                value = buffer.getInt(offset);
+                offset += 4;
+                break;
+            case UINT:
+                value = buffer.getInt(offset) & 0xFFFFFFFFL;
+                offset += 4;
+                break;
+            case LONG:
+                value = buffer.getLong(offset);
+                offset += 8;
+                break;
+            case ULONG:
+                long bits = buffer.getLong(offset);
+                BigInteger unsigned = BigInteger.valueOf(bits & Long.MAX_VALUE);
+                value = bits < 0 ? unsigned.setBit(63) : unsigned;
+                offset += 8;
+                break;
+            case FLOAT:
+                value = buffer.getFloat(offset);
+                offset += 4;
+                break;
+            case DOUBLE:
+                value = buffer.getDouble(offset);
+                offset += 8;
+                break;
+            default:
+                byte[] bytes = new byte[buffer.getInt(offset)];
+                feature.getBytes(offset + 4, bytes);
+                offset += 4 + bytes.length;
+                if (type == BINARY) {
+                    value = bytes;
+                } else if (type == DATETIME) {
+                    value = parseDateTime(FlatBuffers.string(bytes));
+                } else {
+                    value = FlatBuffers.string(bytes);
+                }
+            }
+            if (attributes[column] >= 0) {
+                values[attributes[column]] = value;
+            }
+        }
+
+        TableReader geometry = feature.getTable(FEATURE_GEOMETRY);
+        return geometry == null ? null : decode(geometry, header.geometryType, factory);
+    }
+
+    Date parseDateTime(String value) throws IOException {
+        try {
+            return DatatypeConverter.parseDateTime(value).getTime();
+        } catch (IllegalArgumentException e) {
+            throw new DataSourceException("Invalid date time " + value, e);
+        }
+    }
+
+    Geometry decode(TableReader geometry, int defaultType, GeometryFactory factory)
+            throws IOException {
+        int type = geometry.getUByte(TYPE, defaultType);
+        if (type == MULTIPOLYGON) {
+            List<TableReader> parts = geometry.getTables(PARTS);
+            Polygon[] polygons = new Polygon[parts.size()];
+            for (int i = 0; i < polygons.length; i++) {
+                polygons[i] = (Polygon) decode(parts.get(i), POLYGON, factory);
+            }
+            return factory.createMultiPolygon(polygons);
+        } else if (type == GEOMETRYCOLLECTION) {
+            List<TableReader> parts = geometry.getTables(PARTS);
+            Geometry[] geometries = new Geometry[parts.size()];
+            for (int i = 0; i < geometries.length; i++) {
+                geometries[i] = decode(parts.get(i), UNKNOWN, factory);
+            }
+            return factory.createGeometryCollection(geometries);
+        }
+
+        double[] xy = geometry.getDoubles(XY);
+        int[] ends = geometry.getUInts(ENDS);
+        if (ends.length == 0) {
+            ends = new int[] { xy.length / 2 };
+        }
+        switch (type) {
+        case POINT:
+            return factory.createPoint(xy.length == 0 ? null : sequence(factory, xy, 0, 1));
+        case LINESTRING:
+            return factory.createLineString(sequence(factory, xy, 0, xy.length / 2));
+        case MULTIPOINT:
+            Point[] points = new Point[xy.length / 2];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = factory.createPoint(sequence(factory, xy, i, i + 1));
+            }
+            return factory.createMultiPoint(points);
+        case MULTILINESTRING:
+            LineString[] lines = new LineString[xy.length == 0 ? 0 : ends.length];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = factory.createLineString(sequence(factory, xy, i == 0 ? 0
+                        : ends[i - 1], ends[i]));
+            }
+            return factory.createMultiLineString(lines);
+        case POLYGON:
+            if (xy.length == 0) {
+                return factory.createPolygon(null, null);
+            }
+            LinearRing shell = factory.createLinearRing(sequence(factory, xy, 0, ends[0]));
+            LinearRing[] holes = new LinearRing[ends.length - 1];
+            for (int i = 0; i < holes.length; i++) {
+                holes[i] = factory.createLinearRing(sequence(factory, xy, ends[i], ends[i + 1]));
+            }
+            return factory.createPolygon(shell, holes);
+        default:
+            throw new DataSourceException("Unsupported geometry type " + type);
+        }
+    }
+
+    /**
+     * Builds the sequence out of the coordinates from start (inclusive) to end (exclusive)
+     */
+    CoordinateSequence sequence(GeometryFactory factory, double[] xy, int start, int end) {
+        Coordinate[] coordinates = new Coordinate[end - start];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(xy[(start + i) * 2], xy[(start + i) * 2 + 1]);
+        }
+        return factory.getCoordinateSequenceFactory().create(coordinates);
+    }
+
+    static double[] ensure(double[] array, int length) {
+        if (array.length < length) {
+            double[] grown = new double[Math.max(length, array.length * 2)];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            return grown;
+        }
+        return array;
+    }
+
+    static int[] ensure(int[] array, int length) {
+        if (array.length < length) {
+            int[] grown = new int[Math.max(length, array.length * 2)];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            return grown;
+        }
+        return array;
+    }
+}
@@ -0,0 +1,474 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The subset of the FlatBuffers binary format used by FlatGeobuf: tables of scalars, strings,
+ * vectors of scalars and vectors of tables, in little endian order.
+ * <p>
+ * {@link Table} builds the objects in memory and {@link #encode(Table)} lays them out with the
+ * referenced objects following the ones referencing them, as unsigned offsets require. The
+ * encoded buffer is size prefixed. {@link TableReader} reads the tables in place out of a byte
+ * buffer, no matter where their buffer starts.
+ * </p>
+ *
+ * @source $URL$
+ */
+class FlatBuffers {
+
+    /**
+     * A table being built. Fields absent from the table take their default value when read.
+     */
+    static class Table {
+        // per slot, the size in bytes of a scalar field, or 4 for references
+        int[] sizes;
+
+        long[] scalars;
+
+        Object[] references;
+
+        Table(int slots) {
+            sizes = new int[slots];
+            scalars = new long[slots];
+            references = new Object[slots];
+        }
+
+        Table add(int slot, int size, long bits) {
+            sizes[slot] = size;
+            scalars[slot] = bits;
+            return this;
+        }
+
+        Table addBoolean(int slot, boolean value) {
+            return add(slot, 1, value ? 1 : 0);
+        }
+
+        Table addByte(int slot, int value) {
+            return add(slot, 1, value);
+        }
+
+        Table addShort(int slot, int value) {
+            return add(slot, 2, value);
+        }
+
+        Table addInt(int slot, int value) {
+            return add(slot, 4, value);
+        }
+
+        Table addLong(int slot, long value) {
+            return add(slot, 8, value);
+        }
+
+        Table addReference(int slot, Object reference) {
+            if (reference != null) {
+                sizes[slot] = 4;
+                references[slot] = reference;
+            }
+            return this;
+        }
+
+        Table addString(int slot, String value) {
+            return addReference(slot, value == null ? null : new StringValue(value));
+        }
+
+        Table addTable(int slot, Table table) {
+            return addReference(slot, table);
+        }
+
+        Table addTables(int slot, List<Table> tables) {
+            return addReference(slot, tables);
+        }
+
+        Table addDoubles(int slot, double[] values, int length) {
+            ScalarVector vector = new ScalarVector(8, length);
+            for (int i = 0; i < length; i++) {
+                vector.put(i, Double.doubleToLongBits(values[i]));
+            }
+            return addReference(slot, vector);
+        }
+
+        Table addUInts(int slot, int[] values, int length) {
+            ScalarVector vector = new ScalarVector(4, length);
+            for (int i = 0; i < length; i++) {
+                vector.put(i, values[i]);
+            }
+            return addReference(slot, vector);
+        }
+
+        Table addBytes(int slot, byte[] values, int length) {
+            ScalarVector vector = new ScalarVector(1, length);
+            System.arraycopy(values, 0, vector.bytes, 0, length);
+            return addReference(slot, vector);
+        }
+    }
+
+    static class StringValue {
+        byte[] bytes;
+
+        StringValue(String value) {
+            bytes = utf8(value);
+        }
+    }
+
+    /**
+     * A vector of scalars, already in little endian order
+     */
+    static class ScalarVector {
+        int elementSize;
+
+        int length;
+
+        byte[] bytes;
+
+        ScalarVector(int elementSize, int length) {
+            this.elementSize = elementSize;
+            this.length = length;
+            this.bytes = new byte[elementSize * length];
+        }
+
+        void put(int index, long bits) {
+            int offset = index * elementSize;
+            for (int i = 0; i < elementSize; i++) {
+                bytes[offset + i] = (byte) (bits >>> (i * 8));
+            }
+        }
+    }
+
+    /**
+     * Encodes the table as a size prefixed buffer
+     */
+    static byte[] encode(Table root) {
+        Output out = new Output();
+        out.putInt(0); // size prefix
+        out.putInt(0); // root offset
+        int table = out.table(root);
+        out.patch(4, table);
+        out.putInt(0, out.size - 4);
+        return out.toByteArray();
+    }
+
+    /**
+     * Lays out the objects, alignments are relative to the start of the buffer
+     */
+    static class Output {
+        byte[] bytes = new byte[256];
+
+        int size;
+
+        void ensure(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        void align(int alignment) {
+            int padded = (size + alignment - 1) / alignment * alignment;
+            ensure(padded);
+            size = padded;
+        }
+
+        void put(long bits, int length) {
+            ensure(size + length);
+            for (int i = 0; i < length; i++) {
+                bytes[size++] = (byte) (bits >>> (i * 8));
+            }
+        }
+
+        void putInt(int value) {
+            put(value, 4);
+        }
+
+        void putInt(int position, int value) {
+            for (int i = 0; i < 4; i++) {
+                bytes[position + i] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        /**
+         * Writes the unsigned offset at the given position, pointing to the target
+         */
+        void patch(int position, int target) {
+            putInt(position, target - position);
+        }
+
+        /**
+         * Writes a table followed by the objects it references, returns the table position
+         */
+        int table(Table table) {
+            int slots = table.sizes.length;
+            while (slots > 0 && table.sizes[slots - 1] == 0) {
+                slots--;
+            }
+            // the table starts with the offset to the vtable, fields follow sorted by
+            // decreasing size so that they are naturally aligned
+            int[] offsets = new int[slots];
+            int tableSize = 4;
+            for (int fieldSize = 8; fieldSize >= 1; fieldSize /= 2) {
+                for (int i = 0; i < slots; i++) {
+                    if (table.sizes[i] == fieldSize) {
+                        tableSize = (tableSize + fieldSize - 1) / fieldSize * fieldSize;
+                        offsets[i] = tableSize;
+                        tableSize += fieldSize;
+                    }
+                }
+            }
+
+            // vtable
+            align(2);
+            int vtable = size;
+            put(4 + 2 * slots, 2);
+            put(tableSize, 2);
+            for (int i = 0; i < slots; i++) {
+                put(offsets[i], 2);
+            }
+
+            // table, 8 aligned so that the field alignment holds
+            align(8);
+            int start = size;
+            ensure(start + tableSize);
+            putInt(start, start - vtable);
+            for (int i = 0; i < slots; i++) {
+                if (table.sizes[i] != 0 && table.references[i] == null) {
+                    size = start + offsets[i];
+                    put(table.scalars[i], table.sizes[i]);
+                }
+            }
+            size = start + tableSize;
+
+            // referenced objects
+            for (int i = 0; i < slots; i++) {
+                if (table.references[i] != null) {
+                    patch(start + offsets[i], object(table.references[i]));
+                }
+            }
+            return start;
+        }
+
+        @SuppressWarnings("unchecked")
+        int object(Object object) {
+            if (object instanceof Table) {
+                return table((Table) object);
+            } else if (object instanceof StringValue) {
+                byte[] value = ((StringValue) object).bytes;
+                align(4);
+                int start = size;
+                putInt(value.length);
+                ensure(size + value.length + 1);
+                System.arraycopy(value, 0, bytes, size, value.length);
+                size += value.length;
+                bytes[size++] = 0;
+                return start;
+            } else if (object instanceof ScalarVector) {
+                ScalarVector vector = (ScalarVector) object;
+                // the elements are aligned to their size, the length precedes them
+                int alignment = Math.max(4, vector.elementSize);
+                align(4);
+                while ((size + 4) % alignment != 0) {
+                    put(0, 4);
+                }
+                int start = size;
+                putInt(vector.length);
+                ensure(size + vector.bytes.length);
+                System.arraycopy(vector.bytes, 0, bytes, size, vector.bytes.length);
+                size += vector.bytes.length;
+                return start;
+            } else {
+                List<Table> tables = (List<Table>) object;
+                align(4);
+                int start = size;
+                putInt(tables.size());
+                for (int i = 0; i < tables.size(); i++) {
+                    putInt(0);
+                }
+                for (int i = 0; i < tables.size(); i++) {
+                    patch(start + 4 + 4 * i, table(tables.get(i)));
+                }
+                return start;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    /**
+     * Reads a table in place. The buffer must be in little endian order.
+     */
+    static class TableReader {
+        ByteBuffer buffer;
+
+        int position;
+
+        TableReader(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        /**
+         * Reads the root table of a buffer whose root offset is at the given position, that is,
+         * right after the size prefix
+         */
+        static TableReader root(ByteBuffer buffer, int position) {
+            return new TableReader(buffer, position + buffer.getInt(position));
+        }
+
+        /**
+         * Offset of the field from the table start, 0 if the field is absent
+         */
+        int offset(int slot) {
+            int vtable = position - buffer.getInt(position);
+            int vtableSize = buffer.getShort(vtable) & 0xFFFF;
+            int entry = 4 + 2 * slot;
+            return entry < vtableSize ? buffer.getShort(vtable + entry) & 0xFFFF : 0;
+        }
+
+        boolean has(int slot) {
+            return offset(slot) != 0;
+        }
+
+        int getUByte(int slot, int defaultValue) {
+            int offset = offset(slot);
+            return offset == 0 ? defaultValue : buffer.get(position + offset) & 0xFF;
+        }
+
+        boolean getBoolean(int slot, boolean defaultValue) {
+            int offset = offset(slot);
+            return offset == 0 ? defaultValue : buffer.get(position + offset) != 0;
+        }
+
+        int getUShort(int slot, int defaultValue) {
+            int offset = offset(slot);
+            return offset == 0 ? defaultValue : buffer.getShort(position + offset) & 0xFFFF;
+        }
+
+        int getInt(int slot, int defaultValue) {
+            int offset = offset(slot);
+            return offset == 0 ? defaultValue : buffer.getInt(position + offset);
+        }
+
+        long getLong(int slot, long defaultValue) {
+            int offset = offset(slot);
+            return offset == 0 ? defaultValue : buffer.getLong(position + offset);
+        }
+
+        /**
+         * Position of the referenced object, -1 if the field is absent
+         */
+        int reference(int slot) {
+            int offset = offset(slot);
+            if (offset == 0) {
+                return -1;
+            }
+            int field = position + offset;
+            return field + buffer.getInt(field);
+        }
+
+        String getString(int slot) {
+            int start = reference(slot);
+            if (start < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[buffer.getInt(start)];
+            getBytes(start + 4, bytes);
+            return string(bytes);
+        }
+
+        TableReader getTable(int slot) {
+            int start = reference(slot);
+            return start < 0 ? null : new TableReader(buffer, start);
+        }
+
+        /**
+         * Length of a vector, 0 if the field is absent
+         */
+        int vectorLength(int slot) {
+            int start = reference(slot);
+            return start < 0 ? 0 : buffer.getInt(start);
+        }
+
+        /**
+         * Position of the first element of a vector
+         */
+        int vector(int slot) {
+            return reference(slot) + 4;
+        }
+
+        TableReader getTable(int slot, int index) {
+            int element = vector(slot) + 4 * index;
+            return new TableReader(buffer, element + buffer.getInt(element));
+        }
+
+        List<TableReader> getTables(int slot) {
+            int length = vectorLength(slot);
+            List<TableReader> tables = new ArrayList<TableReader>(length);
+            for (int i = 0; i < length; i++) {
+                tables.add(getTable(slot, i));
+            }
+            return tables;
+        }
+
+        double[] getDoubles(int slot) {
+            int length = vectorLength(slot);
+            double[] values = new double[length];
+            int start = vector(slot);
+            for (int i = 0; i < length; i++) {
+                values[i] = buffer.getDouble(start + 8 * i);
+            }
+            return values;
+        }
+
+        int[] getUInts(int slot) {
+            int length = vectorLength(slot);
+            int[] values = new int[length];
+            int start = vector(slot);
+            for (int i = 0; i < length; i++) {
+                values[i] = buffer.getInt(start + 4 * i);
+            }
+            return values;
+        }
+
+        void getBytes(int start, byte[] bytes) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(start);
+            view.get(bytes);
+        }
+    }
+
+    static byte[] utf8(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String string(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
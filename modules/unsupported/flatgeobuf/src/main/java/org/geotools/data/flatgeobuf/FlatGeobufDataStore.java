@@ -0,0 +1,123 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.geotools.data.Query;
+import org.geotools.data.store.ContentDataStore;
+import org.geotools.data.store.ContentEntry;
+import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.Name;
+
+/**
+ * DataStore for a single FlatGeobuf file, whose name without extension is the type name.
+ * <p>
+ * The format does not name the geometry, it is exposed as "the_geom" as in shapefiles. Writing
+ * the file sorts the features along a Hilbert curve to build the spatial index, the feature
+ * ids, made of the position in the file, are not preserved.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class FlatGeobufDataStore extends ContentDataStore {
+
+    File file;
+
+    FlatGeobufHeader header;
+
+    // length and modification time of the file the header was read from
+    long headerLength;
+
+    long headerModified;
+
+    public FlatGeobufDataStore(File file) {
+        this.file = file;
+        setGeometryFactory(JTSFactoryFinder.getGeometryFactory(null));
+    }
+
+    String getTypeName() {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    @Override
+    protected List<Name> createTypeNames() throws IOException {
+        return Collections.singletonList(name(getTypeName()));
+    }
+
+    @Override
+    protected ContentFeatureSource createFeatureSource(ContentEntry entry) throws IOException {
+        return new FlatGeobufFeatureStore(entry, Query.ALL);
+    }
+
+    /**
+     * The header of the file, read again when the file changes
+     */
+    synchronized FlatGeobufHeader getHeader() throws IOException {
+        if (header == null || headerLength != file.length()
+                || headerModified != file.lastModified()) {
+            header = null;
+            long length = file.length();
+            long modified = file.lastModified();
+            FlatGeobufFile fgb = new FlatGeobufFile(file);
+            try {
+                header = fgb.header;
+                headerLength = length;
+                headerModified = modified;
+            } finally {
+                fgb.close();
+            }
+        }
+        return header;
+    }
+
+    /**
+     * Writes an empty file for the given feature type, replacing the current one if any
+     */
+    @Override
+    public void createSchema(SimpleFeatureType featureType) throws IOException {
+        FlatGeobufWriter writer = new FlatGeobufWriter(file, featureType);
+        writer.close();
+        synchronized (this) {
+            header = null;
+        }
+        entries.clear();
+    }
+
+    /**
+     * Replaces the file with the given one
+     */
+    void replaceFile(File replacement) throws IOException {
+        synchronized (this) {
+            header = null;
+        }
+        if (!replacement.renameTo(file)) {
+            // some platforms cannot rename over an existing file
+            file.delete();
+            if (!replacement.renameTo(file)) {
+                throw new IOException("Could not replace " + file + " with " + replacement);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.awt.RenderingHints.Key;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.DataStoreFactorySpi;
+import org.geotools.util.KVP;
+
+/**
+ * Creates data stores for FlatGeobuf files
+ *
+ * @source $URL$
+ */
+public class FlatGeobufDataStoreFactory implements DataStoreFactorySpi {
+
+    private static final String FILE_TYPE = "fgb";
+
+    public static final Param FILE_PARAM = new Param("file", File.class, "FlatGeobuf file",
+            true, null, new KVP(Param.EXT, FILE_TYPE));
+
+    public String getDisplayName() {
+        return "FlatGeobuf";
+    }
+
+    public String getDescription() {
+        return "FlatGeobuf binary file with spatial index";
+    }
+
+    public Param[] getParametersInfo() {
+        return new Param[] { FILE_PARAM };
+    }
+
+    public boolean canProcess(Map<String, Serializable> params) {
+        try {
+            File file = (File) FILE_PARAM.lookUp(params);
+            if (file != null) {
+                return file.getPath().toLowerCase().endsWith("." + FILE_TYPE);
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+        return false;
+    }
+
+    public boolean isAvailable() {
+        return true;
+    }
+
+    public Map<Key, ?> getImplementationHints() {
+        return null;
+    }
+
+    public DataStore createDataStore(Map<String, Serializable> params) throws IOException {
+        File file = (File) FILE_PARAM.lookUp(params);
+        return new FlatGeobufDataStore(file);
+    }
+
+    public DataStore createNewDataStore(Map<String, Serializable> params) throws IOException {
+        return createDataStore(params);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.DataSourceException;
+import org.geotools.data.FeatureReader;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Reads the features of a FlatGeobuf file, all of them in file order or those whose box
+ * intersects an envelope, found through the spatial index.
+ * <p>
+ * The feature ids are made of the type name and the position of the feature in the file,
+ * starting from 1.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class FlatGeobufFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    SimpleFeatureType schema;
+
+    FlatGeobufFile file;
+
+    FeatureCodec codec;
+
+    SimpleFeatureBuilder builder;
+
+    GeometryFactory geometryFactory;
+
+    int geometryIndex;
+
+    /**
+     * Features to read through the index, null when reading the file sequentially
+     */
+    int[] indexes;
+
+    int leavesStart;
+
+    int current;
+
+    /**
+     * Position of the next feature, when reading the file sequentially
+     */
+    int position;
+
+    SimpleFeature next;
+
+    /**
+     * Reads all the features
+     */
+    public FlatGeobufFeatureReader(File file, SimpleFeatureType schema,
+            GeometryFactory geometryFactory) throws IOException {
+        this(file, schema, geometryFactory, null);
+    }
+
+    /**
+     * Reads the features whose box intersects the envelope, all of them if the envelope is null
+     * or the file has no spatial index
+     */
+    public FlatGeobufFeatureReader(File file, SimpleFeatureType schema,
+            GeometryFactory geometryFactory, Envelope envelope) throws IOException {
+        this.schema = schema;
+        this.geometryFactory = geometryFactory;
+        this.file = new FlatGeobufFile(file);
+        try {
+            this.codec = new FeatureCodec(this.file.header,
+                    FlatGeobufWriter.attributeNames(schema));
+            this.geometryIndex = schema.indexOf(FlatGeobufHeader.GEOMETRY_NAME);
+            this.builder = new SimpleFeatureBuilder(schema);
+            this.position = this.file.featuresStart;
+            if (envelope != null) {
+                indexes = this.file.search(envelope);
+                if (indexes != null) {
+                    leavesStart = this.file.leavesStart();
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return schema;
+    }
+
+    public boolean hasNext() throws IOException {
+        if (next != null) {
+            return true;
+        }
+        next = readFeature();
+        return next != null;
+    }
+
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more features");
+        }
+        SimpleFeature feature = next;
+        next = null;
+        return feature;
+    }
+
+    SimpleFeature readFeature() throws IOException {
+        if (file == null) {
+            throw new IOException("FeatureReader is closed; no additional features can be read");
+        }
+        int featurePosition;
+        int index;
+        if (indexes != null) {
+            if (current == indexes.length) {
+                return null;
+            }
+            index = indexes[current++];
+            featurePosition = file.featurePosition(leavesStart, index);
+        } else {
+            if (position >= file.buffer.limit()) {
+                return null;
+            }
+            index = current++;
+            featurePosition = position;
+            position += 4 + file.buffer.getInt(position);
+        }
+
+        Object[] values = new Object[schema.getAttributeCount()];
+        try {
+            values[geometryIndex] = codec.decode(file.buffer, featurePosition, values,
+                    geometryFactory);
+        } catch (RuntimeException e) {
+            throw new DataSourceException("Invalid feature at position " + featurePosition, e);
+        }
+        return builder.buildFeature(schema.getTypeName() + "." + (index + 1), values);
+    }
+
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+        next = null;
+        builder = null;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.io.IOException;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.store.ContentEntry;
+import org.geotools.data.store.ContentFeatureStore;
+import org.geotools.factory.Hints;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Feature store of a FlatGeobuf file. Counts and bounds of the whole file come from the header,
+ * the bounding box of filters is looked up in the spatial index, the filters themselves are
+ * evaluated by the superclass.
+ *
+ * @source $URL$
+ */
+public class FlatGeobufFeatureStore extends ContentFeatureStore {
+
+    public FlatGeobufFeatureStore(ContentEntry entry, Query query) {
+        super(entry, query);
+    }
+
+    @Override
+    public FlatGeobufDataStore getDataStore() {
+        return (FlatGeobufDataStore) super.getDataStore();
+    }
+
+    /**
+     * True if the query is about all the features of the file as stored, the header can answer
+     * it
+     */
+    boolean isWholeFile(Query query) {
+        return getTransaction() == Transaction.AUTO_COMMIT
+                && (query.getFilter() == null || query.getFilter() == Filter.INCLUDE)
+                && query.getMaxFeatures() == Integer.MAX_VALUE
+                && (query.getStartIndex() == null || query.getStartIndex() == 0);
+    }
+
+    @Override
+    protected ReferencedEnvelope getBoundsInternal(Query query) throws IOException {
+        FlatGeobufHeader header = getDataStore().getHeader();
+        ReferencedEnvelope bounds = new ReferencedEnvelope(getSchema()
+                .getCoordinateReferenceSystem());
+        if (isWholeFile(query) && header.featuresCount > 0 && header.envelope != null) {
+            double[] e = header.envelope;
+            bounds.init(e[0], e[2], e[1], e[3]);
+            return bounds;
+        }
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
+        try {
+            while (reader.hasNext()) {
+                bounds.include(reader.next().getBounds());
+            }
+        } finally {
+            reader.close();
+        }
+        return bounds;
+    }
+
+    @Override
+    protected int getCountInternal(Query query) throws IOException {
+        FlatGeobufHeader header = getDataStore().getHeader();
+        if (isWholeFile(query) && header.featuresCount > 0) {
+            return (int) header.featuresCount;
+        }
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
+        try {
+            int count = 0;
+            while (reader.hasNext()) {
+                reader.next();
+                count++;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Override
+    protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query)
+            throws IOException {
+        // the query is filtered by the superclass, its bounds are used to skip the
+        // features which cannot match
+        Envelope bbox = null;
+        Filter filter = query.getFilter();
+        if (filter != null && filter != Filter.INCLUDE) {
+            bbox = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR, null);
+            if (bbox != null && (bbox.isNull() || isInfinite(bbox))) {
+                bbox = null;
+            }
+        }
+        return new FlatGeobufFeatureReader(getDataStore().file, getSchema(),
+                getGeometryFactory(query), bbox);
+    }
+
+    static boolean isInfinite(Envelope bbox) {
+        return Double.isInfinite(bbox.getMinX()) || Double.isInfinite(bbox.getMinY())
+                || Double.isInfinite(bbox.getMaxX()) || Double.isInfinite(bbox.getMaxY());
+    }
+
+    GeometryFactory getGeometryFactory(Query query) {
+        Hints hints = query.getHints();
+        GeometryFactory geometryFactory = null;
+        if (hints != null) {
+            geometryFactory = (GeometryFactory) hints.get(Hints.JTS_GEOMETRY_FACTORY);
+            if (geometryFactory == null) {
+                CoordinateSequenceFactory csFactory = (CoordinateSequenceFactory) hints
+                        .get(Hints.JTS_COORDINATE_SEQUENCE_FACTORY);
+                if (csFactory != null) {
+                    geometryFactory = new GeometryFactory(csFactory);
+                }
+            }
+        }
+        if (geometryFactory == null) {
+            geometryFactory = getDataStore().getGeometryFactory();
+        }
+        return geometryFactory;
+    }
+
+    @Override
+    protected SimpleFeatureType buildFeatureType() throws IOException {
+        return getDataStore().getHeader().getFeatureType(entry.getName());
+    }
+
+    @Override
+    protected FeatureWriter<SimpleFeatureType, SimpleFeature> getWriterInternal(Query query,
+            int flags) throws IOException {
+        return new FlatGeobufFeatureWriter(getDataStore(), getSchema(),
+                (flags | WRITER_ADD) == WRITER_ADD);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Writes a FlatGeobuf file. As the format cannot be updated in place the file is rewritten:
+ * the existing features are read, the ones kept or updated are written along with the new ones
+ * to a temporary file, which replaces the original on close.
+ * <p>
+ * In append mode the existing features are copied upfront and {@link #hasNext()} is always
+ * false. Otherwise the features not visited before closing are kept as they are.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class FlatGeobufFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeature> {
+
+    FlatGeobufDataStore dataStore;
+
+    SimpleFeatureType schema;
+
+    FlatGeobufFeatureReader reader;
+
+    File temp;
+
+    FlatGeobufWriter writer;
+
+    SimpleFeatureBuilder builder;
+
+    /**
+     * The feature returned by the last call to next, null once written or removed
+     */
+    SimpleFeature current;
+
+    /**
+     * True if the current feature was read from the file, it is kept unless removed
+     */
+    boolean existing;
+
+    public FlatGeobufFeatureWriter(FlatGeobufDataStore dataStore, SimpleFeatureType schema,
+            boolean append) throws IOException {
+        this.dataStore = dataStore;
+        this.schema = schema;
+        this.builder = new SimpleFeatureBuilder(schema);
+        File file = dataStore.file;
+        File directory = file.getAbsoluteFile().getParentFile();
+        this.temp = File.createTempFile(schema.getTypeName(), ".fgb.tmp", directory);
+        try {
+            this.writer = new FlatGeobufWriter(temp, schema);
+            if (file.exists() && file.length() > 0) {
+                reader = new FlatGeobufFeatureReader(file, schema, dataStore.getGeometryFactory());
+            }
+            if (append) {
+                copyRemaining();
+            }
+        } catch (IOException e) {
+            dispose();
+            throw e;
+        }
+    }
+
+    void copyRemaining() throws IOException {
+        if (reader != null) {
+            while (reader.hasNext()) {
+                writer.write(reader.next());
+            }
+            reader.close();
+            reader = null;
+        }
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return schema;
+    }
+
+    public boolean hasNext() throws IOException {
+        checkOpen();
+        return reader != null && reader.hasNext();
+    }
+
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        checkOpen();
+        writePending();
+        if (reader != null && reader.hasNext()) {
+            current = reader.next();
+            existing = true;
+        } else {
+            current = builder.buildFeature(null);
+            existing = false;
+        }
+        return current;
+    }
+
+    /**
+     * Writes the existing feature neither written nor removed
+     */
+    void writePending() throws IOException {
+        if (current != null && existing) {
+            writer.write(current);
+        }
+        current = null;
+    }
+
+    public void remove() throws IOException {
+        checkOpen();
+        if (current == null) {
+            throw new IOException("No feature available to remove");
+        }
+        current = null;
+    }
+
+    public void write() throws IOException {
+        checkOpen();
+        if (current == null) {
+            throw new IOException("No feature available to write");
+        }
+        writer.write(current);
+        current = null;
+    }
+
+    void checkOpen() throws IOException {
+        if (writer == null) {
+            throw new IOException("FeatureWriter is closed");
+        }
+    }
+
+    public void close() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writePending();
+            copyRemaining();
+            writer.close();
+            writer = null;
+            dataStore.replaceFile(temp);
+        } finally {
+            dispose();
+        }
+    }
+
+    void dispose() throws IOException {
+        try {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.geotools.data.DataSourceException;
+import org.geotools.resources.NIOUtilities;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * A FlatGeobuf file mapped in memory, read only. The features are decoded in place, the spatial
+ * index is searched in place.
+ * <p>
+ * The whole file is mapped, which limits the file size to 2GB.
+ * </p>
+ *
+ * @source $URL$
+ */
+class FlatGeobufFile {
+
+    RandomAccessFile raf;
+
+    MappedByteBuffer buffer;
+
+    FlatGeobufHeader header;
+
+    /**
+     * Position of the spatial index, if any
+     */
+    int indexStart;
+
+    /**
+     * Position of the first feature
+     */
+    int featuresStart;
+
+    FlatGeobufFile(File file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new DataSourceException("Cannot map " + file + ", it is larger than 2GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            header = FlatGeobufHeader.read(buffer);
+            indexStart = FlatGeobufHeader.MAGIC.length + header.length;
+            featuresStart = indexStart;
+            if (header.hasIndex()) {
+                long size = PackedRTree.size(checkCount(), header.indexNodeSize);
+                if (indexStart + size > buffer.limit()) {
+                    throw new DataSourceException("Truncated FlatGeobuf file " + file);
+                }
+                featuresStart += (int) size;
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw new DataSourceException("Invalid FlatGeobuf file " + file, e);
+        }
+    }
+
+    int checkCount() throws IOException {
+        if (header.featuresCount > Integer.MAX_VALUE) {
+            throw new DataSourceException("Too many features: " + header.featuresCount);
+        }
+        return (int) header.featuresCount;
+    }
+
+    /**
+     * The positions of the features whose box intersects the envelope, in file order, or null
+     * if the file has no spatial index
+     */
+    int[] search(Envelope envelope) throws IOException {
+        if (!header.hasIndex()) {
+            return null;
+        }
+        return PackedRTree.search(buffer, indexStart, checkCount(), header.indexNodeSize,
+                envelope);
+    }
+
+    /**
+     * The position in the file of the feature of the given index, as returned by
+     * {@link #search(Envelope)}
+     *
+     * @param leavesStart the position of the first leaf of the index
+     */
+    int featurePosition(int leavesStart, int index) {
+        return featuresStart
+                + (int) PackedRTree.featureOffset(buffer, indexStart, leavesStart, index);
+    }
+
+    int leavesStart() throws IOException {
+        return PackedRTree.levelBounds(checkCount(), header.indexNodeSize)[0][0];
+    }
+
+    void close() throws IOException {
+        if (buffer != null) {
+            NIOUtilities.clean(buffer, true);
+            buffer = null;
+        }
+        if (raf != null) {
+            raf.close();
+            raf = null;
+        }
+    }
+}
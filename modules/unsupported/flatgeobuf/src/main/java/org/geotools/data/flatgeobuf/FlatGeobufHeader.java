@@ -0,0 +1,459 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DataSourceException;
+import org.geotools.data.flatgeobuf.FlatBuffers.Table;
+import org.geotools.data.flatgeobuf.FlatBuffers.TableReader;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.Name;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * The header of a FlatGeobuf file: the layer name and extent, the geometry type, the attribute
+ * columns, the number of features, the spatial index node size and the coordinate reference
+ * system.
+ *
+ * @source $URL$
+ */
+class FlatGeobufHeader {
+
+    static final Logger LOGGER = Logging.getLogger("org.geotools.data.flatgeobuf");
+
+    /**
+     * The magic bytes starting the file, "fgb", the major version, "fgb" and the patch version
+     */
+    static final byte[] MAGIC = { 0x66, 0x67, 0x62, 0x03, 0x66, 0x67, 0x62, 0x00 };
+
+    /**
+     * The name of the geometry attribute, the format does not store it
+     */
+    static final String GEOMETRY_NAME = "the_geom";
+
+    static final int DEFAULT_NODE_SIZE = 16;
+
+    // geometry types
+    static final int UNKNOWN = 0;
+
+    static final int POINT = 1;
+
+    static final int LINESTRING = 2;
+
+    static final int POLYGON = 3;
+
+    static final int MULTIPOINT = 4;
+
+    static final int MULTILINESTRING = 5;
+
+    static final int MULTIPOLYGON = 6;
+
+    static final int GEOMETRYCOLLECTION = 7;
+
+    // column types
+    static final int BYTE = 0;
+
+    static final int UBYTE = 1;
+
+    static final int BOOL = 2;
+
+    static final int SHORT = 3;
+
+    static final int USHORT = 4;
+
+    static final int INT = 5;
+
+    static final int UINT = 6;
+
+    static final int LONG = 7;
+
+    static final int ULONG = 8;
+
+    static final int FLOAT = 9;
+
+    static final int DOUBLE = 10;
+
+    static final int STRING = 11;
+
+    static final int JSON = 12;
+
+    static final int DATETIME = 13;
+
+    static final int BINARY = 14;
+
+    // header fields
+    static final int NAME = 0;
+
+    static final int ENVELOPE = 1;
+
+    static final int GEOMETRY_TYPE = 2;
+
+    static final int HAS_Z = 3;
+
+    static final int HAS_M = 4;
+
+    static final int COLUMNS = 7;
+
+    static final int FEATURES_COUNT = 8;
+
+    static final int INDEX_NODE_SIZE = 9;
+
+    static final int CRS_FIELD = 10;
+
+    static final int HEADER_FIELDS = 14;
+
+    // column fields
+    static final int COLUMN_NAME = 0;
+
+    static final int COLUMN_TYPE = 1;
+
+    static final int COLUMN_FIELDS = 11;
+
+    // crs fields
+    static final int CRS_ORG = 0;
+
+    static final int CRS_CODE = 1;
+
+    static final int CRS_WKT = 4;
+
+    static final int CRS_FIELDS = 6;
+
+    String name;
+
+    /**
+     * minx, miny, maxx, maxy, null if unknown
+     */
+    double[] envelope;
+
+    int geometryType;
+
+    String[] columnNames;
+
+    int[] columnTypes;
+
+    /**
+     * The number of features, 0 if unknown as in streamed files
+     */
+    long featuresCount;
+
+    /**
+     * The node size of the spatial index, 0 if there is no index
+     */
+    int indexNodeSize;
+
+    String crsOrg;
+
+    int crsCode;
+
+    String crsWkt;
+
+    /**
+     * The size of the encoded header, size prefix included
+     */
+    int length;
+
+    /**
+     * Encodes the header, size prefix included
+     */
+    byte[] encode() {
+        Table header = new Table(HEADER_FIELDS);
+        header.addString(NAME, name);
+        if (envelope != null) {
+            header.addDoubles(ENVELOPE, envelope, 4);
+        }
+        if (geometryType != UNKNOWN) {
+            header.addByte(GEOMETRY_TYPE, geometryType);
+        }
+        List<Table> columns = new ArrayList<Table>();
+        for (int i = 0; i < columnNames.length; i++) {
+            Table column = new Table(COLUMN_FIELDS);
+            column.addString(COLUMN_NAME, columnNames[i]);
+            if (columnTypes[i] != BYTE) {
+                column.addByte(COLUMN_TYPE, columnTypes[i]);
+            }
+            columns.add(column);
+        }
+        if (!columns.isEmpty()) {
+            header.addTables(COLUMNS, columns);
+        }
+        if (featuresCount > 0) {
+            header.addLong(FEATURES_COUNT, featuresCount);
+        }
+        // the default node size is 16, 0 has to be written down
+        header.addShort(INDEX_NODE_SIZE, indexNodeSize);
+        if (crsCode != 0 || crsWkt != null) {
+            Table crs = new Table(CRS_FIELDS);
+            crs.addString(CRS_ORG, crsOrg);
+            if (crsCode != 0) {
+                crs.addInt(CRS_CODE, crsCode);
+            }
+            crs.addString(CRS_WKT, crsWkt);
+            header.addTable(CRS_FIELD, crs);
+        }
+        byte[] bytes = FlatBuffers.encode(header);
+        length = bytes.length;
+        return bytes;
+    }
+
+    /**
+     * Reads the header following the magic bytes
+     */
+    static FlatGeobufHeader read(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < MAGIC.length + 4) {
+            throw new DataSourceException("Not a FlatGeobuf file, it is too short");
+        }
+        for (int i = 0; i < 3; i++) {
+            if (buffer.get(i) != MAGIC[i] || buffer.get(i + 4) != MAGIC[i + 4]) {
+                throw new DataSourceException("Not a FlatGeobuf file, the magic bytes do not match");
+            }
+        }
+        if (buffer.get(3) != MAGIC[3]) {
+            throw new DataSourceException("Unsupported FlatGeobuf version " + buffer.get(3));
+        }
+
+        FlatGeobufHeader result = new FlatGeobufHeader();
+        int size = buffer.getInt(MAGIC.length);
+        result.length = size + 4;
+        TableReader header = TableReader.root(buffer, MAGIC.length + 4);
+        result.name = header.getString(NAME);
+        if (header.vectorLength(ENVELOPE) >= 4) {
+            result.envelope = header.getDoubles(ENVELOPE);
+        }
+        result.geometryType = header.getUByte(GEOMETRY_TYPE, UNKNOWN);
+        List<TableReader> columns = header.getTables(COLUMNS);
+        result.columnNames = new String[columns.size()];
+        result.columnTypes = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            result.columnNames[i] = columns.get(i).getString(COLUMN_NAME);
+            result.columnTypes[i] = columns.get(i).getUByte(COLUMN_TYPE, BYTE);
+        }
+        result.featuresCount = header.getLong(FEATURES_COUNT, 0);
+        result.indexNodeSize = header.getUShort(INDEX_NODE_SIZE, DEFAULT_NODE_SIZE);
+        TableReader crs = header.getTable(CRS_FIELD);
+        if (crs != null) {
+            result.crsOrg = crs.getString(CRS_ORG);
+            result.crsCode = crs.getInt(CRS_CODE, 0);
+            result.crsWkt = crs.getString(CRS_WKT);
+        }
+        return result;
+    }
+
+    /**
+     * True if the file holds a spatial index, it needs to know the number of features
+     */
+    boolean hasIndex() {
+        return indexNodeSize > 1 && featuresCount > 0;
+    }
+
+    /**
+     * Builds the header of a file holding features of the given type. The count, envelope and
+     * index node size are left to the caller.
+     */
+    static FlatGeobufHeader create(SimpleFeatureType schema) {
+        FlatGeobufHeader header = new FlatGeobufHeader();
+        header.name = schema.getTypeName();
+        GeometryDescriptor geometry = schema.getGeometryDescriptor();
+        header.geometryType = geometry == null ? UNKNOWN : geometryType(geometry.getType()
+                .getBinding());
+        List<AttributeDescriptor> columns = new ArrayList<AttributeDescriptor>();
+        for (AttributeDescriptor ad : schema.getAttributeDescriptors()) {
+            if (ad != geometry) {
+                columns.add(ad);
+            }
+        }
+        header.columnNames = new String[columns.size()];
+        header.columnTypes = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            header.columnNames[i] = columns.get(i).getLocalName();
+            header.columnTypes[i] = columnType(columns.get(i).getType().getBinding());
+        }
+
+        CoordinateReferenceSystem crs = schema.getCoordinateReferenceSystem();
+        if (crs != null) {
+            try {
+                Integer code = CRS.lookupEpsgCode(crs, false);
+                if (code != null) {
+                    header.crsOrg = "EPSG";
+                    header.crsCode = code;
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Could not look up the EPSG code of " + crs, e);
+            }
+            try {
+                header.crsWkt = crs.toWKT();
+            } catch (UnsupportedOperationException e) {
+                LOGGER.log(Level.FINE, "Could not format " + crs + " as WKT", e);
+            }
+        }
+        return header;
+    }
+
+    /**
+     * Builds the feature type, the geometry comes first and the columns follow
+     */
+    SimpleFeatureType getFeatureType(Name typeName) {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(typeName);
+        builder.setCRS(getCoordinateReferenceSystem());
+        builder.add(GEOMETRY_NAME, geometryBinding(geometryType));
+        builder.setDefaultGeometry(GEOMETRY_NAME);
+        for (int i = 0; i < columnNames.length; i++) {
+            builder.add(columnNames[i], columnBinding(columnTypes[i]));
+        }
+        return builder.buildFeatureType();
+    }
+
+    CoordinateReferenceSystem getCoordinateReferenceSystem() {
+        if (crsCode > 0 && (crsOrg == null || "EPSG".equalsIgnoreCase(crsOrg))) {
+            try {
+                return CRS.decode("EPSG:" + crsCode, true);
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Could not decode EPSG:" + crsCode, e);
+            }
+        }
+        if (crsWkt != null && crsWkt.length() > 0) {
+            try {
+                return CRS.parseWKT(crsWkt);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Could not parse the coordinate reference system "
+                        + crsWkt, e);
+            }
+        }
+        return null;
+    }
+
+    static int geometryType(Class<?> binding) {
+        if (Point.class.isAssignableFrom(binding)) {
+            return POINT;
+        } else if (LineString.class.isAssignableFrom(binding)) {
+            return LINESTRING;
+        } else if (Polygon.class.isAssignableFrom(binding)) {
+            return POLYGON;
+        } else if (MultiPoint.class.isAssignableFrom(binding)) {
+            return MULTIPOINT;
+        } else if (MultiLineString.class.isAssignableFrom(binding)) {
+            return MULTILINESTRING;
+        } else if (MultiPolygon.class.isAssignableFrom(binding)) {
+            return MULTIPOLYGON;
+        } else if (GeometryCollection.class.isAssignableFrom(binding)) {
+            return GEOMETRYCOLLECTION;
+        }
+        return UNKNOWN;
+    }
+
+    static Class<?> geometryBinding(int type) {
+        switch (type) {
+        case POINT:
+            return Point.class;
+        case LINESTRING:
+            return LineString.class;
+        case POLYGON:
+            return Polygon.class;
+        case MULTIPOINT:
+            return MultiPoint.class;
+        case MULTILINESTRING:
+            return MultiLineString.class;
+        case MULTIPOLYGON:
+            return MultiPolygon.class;
+        case GEOMETRYCOLLECTION:
+            return GeometryCollection.class;
+        default:
+            return Geometry.class;
+        }
+    }
+
+    /**
+     * The column type used to store values of the given class, non geometric values without a
+     * specific type are stored as strings
+     */
+    static int columnType(Class<?> binding) {
+        if (Boolean.class.equals(binding)) {
+            return BOOL;
+        } else if (Byte.class.equals(binding)) {
+            return BYTE;
+        } else if (Short.class.equals(binding)) {
+            return SHORT;
+        } else if (Integer.class.equals(binding)) {
+            return INT;
+        } else if (Long.class.equals(binding) || BigInteger.class.equals(binding)) {
+            return LONG;
+        } else if (Float.class.equals(binding)) {
+            return FLOAT;
+        } else if (Double.class.equals(binding) || BigDecimal.class.equals(binding)
+                || Number.class.equals(binding)) {
+            return DOUBLE;
+        } else if (Date.class.isAssignableFrom(binding)) {
+            return DATETIME;
+        } else if (byte[].class.equals(binding)) {
+            return BINARY;
+        }
+        return STRING;
+    }
+
+    static Class<?> columnBinding(int type) {
+        switch (type) {
+        case BYTE:
+            return Byte.class;
+        case UBYTE:
+        case SHORT:
+            return Short.class;
+        case BOOL:
+            return Boolean.class;
+        case USHORT:
+        case INT:
+            return Integer.class;
+        case UINT:
+        case LONG:
+            return Long.class;
+        case ULONG:
+            return BigInteger.class;
+        case FLOAT:
+            return Float.class;
+        case DOUBLE:
+            return Double.class;
+        case DATETIME:
+            return Date.class;
+        case BINARY:
+            return byte[].class;
+        default:
+            return String.class;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Writes features in the FlatGeobuf format.
+ * <p>
+ * Writing to a stream, the features are written as they come and the file has neither spatial
+ * index nor feature count. Writing to a file, the features are spooled to a temporary file and
+ * written on {@link #close()}, sorted along a Hilbert curve and preceded by the packed R-tree
+ * indexing them, the header recording their count and extent.
+ * </p>
+ * <p>
+ * The default geometry of the features is the geometry of the file, the other attributes are
+ * its columns. Values without a matching column type, other geometries included, are written
+ * as strings.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class FlatGeobufWriter {
+
+    FlatGeobufHeader header;
+
+    FeatureCodec codec;
+
+    OutputStream out;
+
+    File file;
+
+    File spool;
+
+    int indexNodeSize = FlatGeobufHeader.DEFAULT_NODE_SIZE;
+
+    // per spooled feature, its box and encoded length
+    double[] boxes = new double[256];
+
+    int[] lengths = new int[64];
+
+    int count;
+
+    Envelope extent = new Envelope();
+
+    /**
+     * Writes the features to the stream, without spatial index. Closing the writer closes the
+     * stream.
+     */
+    public FlatGeobufWriter(OutputStream out, SimpleFeatureType schema) throws IOException {
+        this.header = FlatGeobufHeader.create(schema);
+        this.codec = new FeatureCodec(header, attributeNames(schema));
+        this.out = out;
+        header.indexNodeSize = 0;
+        out.write(FlatGeobufHeader.MAGIC);
+        out.write(header.encode());
+    }
+
+    /**
+     * Writes the features to the file, indexed, when the writer is closed
+     */
+    public FlatGeobufWriter(File file, SimpleFeatureType schema) throws IOException {
+        this.header = FlatGeobufHeader.create(schema);
+        this.codec = new FeatureCodec(header, attributeNames(schema));
+        this.file = file;
+        this.spool = File.createTempFile("flatgeobuf", ".tmp");
+        this.out = new BufferedOutputStream(new FileOutputStream(spool));
+    }
+
+    static List<String> attributeNames(SimpleFeatureType schema) {
+        List<String> names = new ArrayList<String>();
+        for (AttributeDescriptor ad : schema.getAttributeDescriptors()) {
+            names.add(ad.getLocalName());
+        }
+        return names;
+    }
+
+    /**
+     * Sets the node size of the spatial index of files, 0 to write no index. Defaults to 16.
+     */
+    public void setIndexNodeSize(int indexNodeSize) {
+        if (indexNodeSize == 1 || indexNodeSize < 0 || indexNodeSize > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid node size " + indexNodeSize);
+        }
+        this.indexNodeSize = indexNodeSize;
+    }
+
+    public void write(SimpleFeature feature) throws IOException {
+        if (out == null) {
+            throw new IOException("Writer closed");
+        }
+        byte[] bytes = codec.encode(feature);
+        out.write(bytes);
+        if (file != null) {
+            boxes = FeatureCodec.ensure(boxes, (count + 1) * 4);
+            lengths = FeatureCodec.ensure(lengths, count + 1);
+            Geometry geometry = (Geometry) feature.getDefaultGeometry();
+            Envelope envelope = geometry == null ? null : geometry.getEnvelopeInternal();
+            if (envelope == null || envelope.isNull()) {
+                System.arraycopy(PackedRTree.EMPTY, 0, boxes, count * 4, 4);
+            } else {
+                boxes[count * 4] = envelope.getMinX();
+                boxes[count * 4 + 1] = envelope.getMinY();
+                boxes[count * 4 + 2] = envelope.getMaxX();
+                boxes[count * 4 + 3] = envelope.getMaxY();
+                extent.expandToInclude(envelope);
+            }
+            lengths[count] = bytes.length;
+        }
+        count++;
+    }
+
+    /**
+     * The number of features written so far
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public void close() throws IOException {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+            if (file != null) {
+                writeFile();
+            }
+        } finally {
+            out = null;
+            if (spool != null) {
+                spool.delete();
+            }
+        }
+    }
+
+    void writeFile() throws IOException {
+        header.featuresCount = count;
+        if (!extent.isNull()) {
+            header.envelope = new double[] { extent.getMinX(), extent.getMinY(),
+                    extent.getMaxX(), extent.getMaxY() };
+        }
+        boolean indexed = count > 0 && indexNodeSize > 0;
+        header.indexNodeSize = indexed ? indexNodeSize : 0;
+
+        // position of each feature in the spool
+        long[] positions = new long[count];
+        for (int i = 1; i < count; i++) {
+            positions[i] = positions[i - 1] + lengths[i - 1];
+        }
+        int[] order = new int[count];
+        if (indexed) {
+            Integer[] sorted = PackedRTree.hilbertSort(boxes, count, extent);
+            for (int i = 0; i < count; i++) {
+                order[i] = sorted[i];
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+        }
+
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+        RandomAccessFile input = new RandomAccessFile(spool, "r");
+        try {
+            output.write(FlatGeobufHeader.MAGIC);
+            output.write(header.encode());
+            if (indexed) {
+                PackedRTree tree = new PackedRTree(count, indexNodeSize);
+                double[] box = new double[4];
+                long offset = 0;
+                for (int i = 0; i < count; i++) {
+                    System.arraycopy(boxes, order[i] * 4, box, 0, 4);
+                    tree.setLeaf(i, box, offset);
+                    offset += lengths[order[i]];
+                }
+                tree.build();
+                output.write(tree.encode());
+            }
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = lengths[order[i]];
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                input.seek(positions[order[i]]);
+                input.readFully(bytes, 0, length);
+                output.write(bytes, 0, length);
+            }
+        } finally {
+            input.close();
+            output.close();
+        }
+    }
+}
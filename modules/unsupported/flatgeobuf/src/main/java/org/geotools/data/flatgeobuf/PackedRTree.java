@@ -0,0 +1,304 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * The static R-tree of FlatGeobuf files. The features are sorted along a Hilbert curve, the
+ * leaves hold their boxes in that order and each upper level groups the nodes below by node
+ * size, up to a single root.
+ * <p>
+ * The nodes are stored top down, root first. Each node is 40 bytes, the four doubles of its box
+ * followed by an unsigned long: for leaves the byte offset of the feature from the start of the
+ * features, for the other nodes the position of their first child.
+ * </p>
+ *
+ * @source $URL$
+ */
+class PackedRTree {
+
+    static final int NODE_ITEM_SIZE = 40;
+
+    /**
+     * Box never intersecting any other, used for features without geometry
+     */
+    static final double[] EMPTY = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+    int numItems;
+
+    int nodeSize;
+
+    /**
+     * Per level, leaves first, the positions of the first node and after the last one
+     */
+    int[][] levelBounds;
+
+    int numNodes;
+
+    double[] boxes;
+
+    long[] offsets;
+
+    /**
+     * Prepares a tree for the given number of features, the leaves are then set with
+     * {@link #setLeaf(int, double[], long)} and the upper levels computed by {@link #build()}
+     */
+    PackedRTree(int numItems, int nodeSize) {
+        this.numItems = numItems;
+        this.nodeSize = nodeSize;
+        this.levelBounds = levelBounds(numItems, nodeSize);
+        this.numNodes = levelBounds[0][1];
+        this.boxes = new double[numNodes * 4];
+        this.offsets = new long[numNodes];
+    }
+
+    static int[][] levelBounds(int numItems, int nodeSize) {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("The node size must be at least 2");
+        }
+        if (numItems == 0) {
+            throw new IllegalArgumentException("Cannot index no features");
+        }
+        // number of nodes per level, bottom up
+        List<Integer> levelNumNodes = new ArrayList<Integer>();
+        int n = numItems;
+        int numNodes = n;
+        levelNumNodes.add(n);
+        do {
+            n = (n + nodeSize - 1) / nodeSize;
+            numNodes += n;
+            levelNumNodes.add(n);
+        } while (n != 1);
+
+        // the levels are stored top down
+        int[][] bounds = new int[levelNumNodes.size()][];
+        int end = numNodes;
+        for (int i = 0; i < bounds.length; i++) {
+            int start = end - levelNumNodes.get(i);
+            bounds[i] = new int[] { start, end };
+            end = start;
+        }
+        return bounds;
+    }
+
+    /**
+     * The size in bytes of the tree indexing the given number of features
+     */
+    static long size(int numItems, int nodeSize) {
+        int[][] bounds = levelBounds(numItems, nodeSize);
+        return (long) bounds[0][1] * NODE_ITEM_SIZE;
+    }
+
+    void setLeaf(int index, double[] box, long offset) {
+        int node = levelBounds[0][0] + index;
+        System.arraycopy(box, 0, boxes, node * 4, 4);
+        offsets[node] = offset;
+    }
+
+    /**
+     * Computes the nodes above the leaves
+     */
+    void build() {
+        for (int level = 0; level < levelBounds.length - 1; level++) {
+            int pos = levelBounds[level][0];
+            int end = levelBounds[level][1];
+            int parent = levelBounds[level + 1][0];
+            while (pos < end) {
+                System.arraycopy(EMPTY, 0, boxes, parent * 4, 4);
+                offsets[parent] = pos;
+                for (int j = 0; j < nodeSize && pos < end; j++, pos++) {
+                    boxes[parent * 4] = Math.min(boxes[parent * 4], boxes[pos * 4]);
+                    boxes[parent * 4 + 1] = Math.min(boxes[parent * 4 + 1], boxes[pos * 4 + 1]);
+                    boxes[parent * 4 + 2] = Math.max(boxes[parent * 4 + 2], boxes[pos * 4 + 2]);
+                    boxes[parent * 4 + 3] = Math.max(boxes[parent * 4 + 3], boxes[pos * 4 + 3]);
+                }
+                parent++;
+            }
+        }
+    }
+
+    /**
+     * Encodes the nodes in little endian order
+     */
+    byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(numNodes * NODE_ITEM_SIZE).order(
+                ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < numNodes; i++) {
+            for (int j = 0; j < 4; j++) {
+                buffer.putDouble(boxes[i * 4 + j]);
+            }
+            buffer.putLong(offsets[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Searches the tree stored at the given position of the buffer, in little endian order.
+     *
+     * @return the positions of the features whose box intersects the envelope, in file order
+     */
+    static int[] search(ByteBuffer buffer, int position, int numItems, int nodeSize,
+            Envelope envelope) {
+        int[][] levelBounds = levelBounds(numItems, nodeSize);
+        int leavesStart = levelBounds[0][0];
+        int[] results = new int[16];
+        int count = 0;
+
+        // pairs of node position and level, starting from the root
+        int[] queue = new int[] { 0, levelBounds.length - 1 };
+        int queued = 2;
+        while (queued > 0) {
+            int level = queue[--queued];
+            int node = queue[--queued];
+            boolean leaves = level == 0;
+            int end = Math.min(node + nodeSize, levelBounds[level][1]);
+            for (int pos = node; pos < end; pos++) {
+                int item = position + pos * NODE_ITEM_SIZE;
+                if (buffer.getDouble(item) > envelope.getMaxX()
+                        || buffer.getDouble(item + 8) > envelope.getMaxY()
+                        || buffer.getDouble(item + 16) < envelope.getMinX()
+                        || buffer.getDouble(item + 24) < envelope.getMinY()) {
+                    continue;
+                }
+                if (leaves) {
+                    results = FeatureCodec.ensure(results, count + 1);
+                    results[count++] = pos - leavesStart;
+                } else {
+                    queue = FeatureCodec.ensure(queue, queued + 2);
+                    queue[queued++] = (int) buffer.getLong(item + 32);
+                    queue[queued++] = level - 1;
+                }
+            }
+        }
+        int[] sorted = Arrays.copyOf(results, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * The offset of a feature from the start of the features, as recorded in its leaf
+     *
+     * @param leavesStart the position of the first leaf, from {@link #levelBounds(int, int)}
+     */
+    static long featureOffset(ByteBuffer buffer, int position, int leavesStart, int index) {
+        return buffer.getLong(position + (leavesStart + index) * NODE_ITEM_SIZE + 32);
+    }
+
+    /**
+     * Sorts the features along the Hilbert curve of the center of their boxes
+     *
+     * @param boxes four values per feature
+     * @param extent the box of all features
+     * @return the feature positions, sorted
+     */
+    static Integer[] hilbertSort(final double[] boxes, int count, Envelope extent) {
+        final long[] values = new long[count];
+        double width = extent.getWidth();
+        double height = extent.getHeight();
+        for (int i = 0; i < count; i++) {
+            if (boxes[i * 4] > boxes[i * 4 + 2]) {
+                // no geometry, at the end of the curve
+                values[i] = 1L << 32;
+                continue;
+            }
+            double x = (boxes[i * 4] + boxes[i * 4 + 2]) / 2;
+            double y = (boxes[i * 4 + 1] + boxes[i * 4 + 3]) / 2;
+            int hx = width > 0 ? (int) Math.floor(0xFFFF * (x - extent.getMinX()) / width) : 0;
+            int hy = height > 0 ? (int) Math.floor(0xFFFF * (y - extent.getMinY()) / height) : 0;
+            values[i] = hilbert(hx, hy) & 0xFFFFFFFFL;
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                long v1 = values[o1];
+                long v2 = values[o2];
+                return v1 < v2 ? -1 : (v1 == v2 ? 0 : 1);
+            }
+        });
+        return order;
+    }
+
+    /**
+     * Position along the Hilbert curve of 16 bits coordinates
+     */
+    static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int A = a | (b >>> 1);
+        int B = (a >>> 1) ^ a;
+        int C = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+        int D = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ((a & (a >>> 2)) ^ (b & (b >>> 2)));
+        B = ((a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2)));
+        C ^= ((a & (c >>> 2)) ^ (b & (d >>> 2)));
+        D ^= ((b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2)));
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ((a & (a >>> 4)) ^ (b & (b >>> 4)));
+        B = ((a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4)));
+        C ^= ((a & (c >>> 4)) ^ (b & (d >>> 4)));
+        D ^= ((b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4)));
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        C ^= ((a & (c >>> 8)) ^ (b & (d >>> 8)));
+        D ^= ((b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8)));
+
+        a = C ^ (C >>> 1);
+        b = D ^ (D >>> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
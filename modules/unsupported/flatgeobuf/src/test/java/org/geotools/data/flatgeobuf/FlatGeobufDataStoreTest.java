@@ -0,0 +1,480 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.flatgeobuf;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.FeatureCollections;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.test.TestData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.io.WKTReader;
+
+/**
+ * Writes FlatGeobuf files and reads them back through the data store
+ *
+ * @source $URL$
+ */
+public class FlatGeobufDataStoreTest {
+
+    static final String[] GEOMETRIES = { "POINT(1 2)", "LINESTRING(0 0, 1 1, 2 0)",
+            "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))",
+            "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 4, 4 4, 4 2, 2 2))",
+            "MULTIPOINT((1 1), (2 2))", "MULTILINESTRING((0 0, 1 1), (2 2, 3 3, 4 2))",
+            "MULTILINESTRING((0 0, 1 1))",
+            "MULTIPOLYGON(((0 0, 1 0, 1 1, 0 0)), ((5 5, 9 5, 9 9, 5 9, 5 5), "
+                    + "(6 6, 6 7, 7 7, 6 6)))",
+            "GEOMETRYCOLLECTION(POINT(3 3), LINESTRING(0 0, 5 5), "
+                    + "MULTIPOLYGON(((0 0, 1 0, 1 1, 0 0))))" };
+
+    WKTReader wkt = new WKTReader();
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    File directory;
+
+    File file;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("flatgeobuf", "test");
+        directory.delete();
+        directory.mkdir();
+        file = new File(directory, "test.fgb");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+
+    SimpleFeatureType allTypes() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("test");
+        tb.add("geom", Geometry.class, DefaultGeographicCRS.WGS84);
+        tb.add("id", Integer.class);
+        tb.add("flag", Boolean.class);
+        tb.add("b", Byte.class);
+        tb.add("s", Short.class);
+        tb.add("l", Long.class);
+        tb.add("f", Float.class);
+        tb.add("d", Double.class);
+        tb.add("decimal", BigDecimal.class);
+        tb.add("name", String.class);
+        tb.add("date", Date.class);
+        tb.add("bytes", byte[].class);
+        return tb.buildFeatureType();
+    }
+
+    SimpleFeatureType points() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("points");
+        tb.add("geom", Point.class, DefaultGeographicCRS.WGS84);
+        tb.add("id", Integer.class);
+        return tb.buildFeatureType();
+    }
+
+    /**
+     * A grid of 20 x 20 points
+     */
+    void writeGrid(FlatGeobufWriter writer) throws Exception {
+        SimpleFeatureType type = points();
+        for (int i = 0; i < 400; i++) {
+            writer.write(SimpleFeatureBuilder.build(type, new Object[] {
+                    wkt.read("POINT(" + (i % 20) + " " + (i / 20) + ")"), i }, null));
+        }
+        writer.close();
+    }
+
+    FlatGeobufDataStore store() {
+        return new FlatGeobufDataStore(file);
+    }
+
+    Map<Integer, SimpleFeature> byId(SimpleFeatureCollection features) {
+        Map<Integer, SimpleFeature> result = new HashMap<Integer, SimpleFeature>();
+        SimpleFeatureIterator it = features.features();
+        try {
+            while (it.hasNext()) {
+                SimpleFeature feature = it.next();
+                result.put((Integer) feature.getAttribute("id"), feature);
+            }
+        } finally {
+            it.close();
+        }
+        return result;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        SimpleFeatureType type = allTypes();
+        Date date = new Date(1300000000123L);
+        FlatGeobufWriter writer = new FlatGeobufWriter(file, type);
+        for (int i = 0; i < GEOMETRIES.length; i++) {
+            writer.write(SimpleFeatureBuilder.build(type, new Object[] {
+                    wkt.read(GEOMETRIES[i]), i, i % 2 == 0, (byte) -i, (short) (i * 1000),
+                    i * 10000000000L, i / 2f, i / 3d, new BigDecimal("1.25"), "nameé" + i,
+                    date, new byte[] { 1, (byte) i } }, null));
+        }
+        // null values and geometry
+        writer.write(SimpleFeatureBuilder.build(type, new Object[] { null, 100 }, null));
+        writer.close();
+
+        FlatGeobufDataStore store = store();
+        assertEquals(Arrays.asList("test"), Arrays.asList(store.getTypeNames()));
+        SimpleFeatureType schema = store.getSchema("test");
+        assertEquals("the_geom", schema.getGeometryDescriptor().getLocalName());
+        assertEquals(Geometry.class, schema.getGeometryDescriptor().getType().getBinding());
+        assertEquals(type.getAttributeCount(), schema.getAttributeCount());
+        assertEquals(Double.class, schema.getDescriptor("decimal").getType().getBinding());
+        assertEquals(byte[].class, schema.getDescriptor("bytes").getType().getBinding());
+        assertTrue(CRS.equalsIgnoreMetadata(DefaultGeographicCRS.WGS84, schema
+                .getCoordinateReferenceSystem()));
+
+        Map<Integer, SimpleFeature> features = byId(store.getFeatureSource("test").getFeatures());
+        assertEquals(GEOMETRIES.length + 1, features.size());
+        for (int i = 0; i < GEOMETRIES.length; i++) {
+            SimpleFeature f = features.get(i);
+            assertTrue(GEOMETRIES[i], wkt.read(GEOMETRIES[i]).equalsExact(
+                    (Geometry) f.getDefaultGeometry()));
+            assertEquals(i % 2 == 0, f.getAttribute("flag"));
+            assertEquals((byte) -i, f.getAttribute("b"));
+            assertEquals((short) (i * 1000), f.getAttribute("s"));
+            assertEquals(i * 10000000000L, f.getAttribute("l"));
+            assertEquals(i / 2f, f.getAttribute("f"));
+            assertEquals(i / 3d, f.getAttribute("d"));
+            assertEquals(1.25, f.getAttribute("decimal"));
+            assertEquals("nameé" + i, f.getAttribute("name"));
+            assertEquals(date, f.getAttribute("date"));
+            assertTrue(Arrays.equals(new byte[] { 1, (byte) i }, (byte[]) f.getAttribute("bytes")));
+        }
+        SimpleFeature empty = features.get(100);
+        assertNull(empty.getDefaultGeometry());
+        assertNull(empty.getAttribute("name"));
+        store.dispose();
+    }
+
+    @Test
+    public void testHeader() throws Exception {
+        writeGrid(new FlatGeobufWriter(file, points()));
+
+        byte[] magic = new byte[8];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            assertEquals(8, in.read(magic));
+        } finally {
+            in.close();
+        }
+        assertTrue(Arrays.equals(FlatGeobufHeader.MAGIC, magic));
+
+        FlatGeobufDataStore store = store();
+        FlatGeobufHeader header = store.getHeader();
+        assertEquals("points", header.name);
+        assertEquals(FlatGeobufHeader.POINT, header.geometryType);
+        assertEquals(400, header.featuresCount);
+        assertEquals(16, header.indexNodeSize);
+        assertEquals(Arrays.asList("id"), Arrays.asList(header.columnNames));
+        assertEquals(FlatGeobufHeader.INT, header.columnTypes[0]);
+
+        SimpleFeatureStore fs = (SimpleFeatureStore) store.getFeatureSource("test");
+        assertEquals(Point.class, fs.getSchema().getGeometryDescriptor().getType().getBinding());
+        assertEquals(400, fs.getCount(Query.ALL));
+        assertEquals(new Envelope(0, 19, 0, 19), fs.getBounds());
+        store.dispose();
+    }
+
+    @Test
+    public void testBBoxQuery() throws Exception {
+        writeGrid(new FlatGeobufWriter(file, points()));
+        FlatGeobufDataStore store = store();
+        SimpleFeatureStore fs = (SimpleFeatureStore) store.getFeatureSource("test");
+
+        // fids follow the file order, the same whether read through the index or not
+        Map<Integer, SimpleFeature> all = byId(fs.getFeatures());
+        assertEquals(400, all.size());
+
+        Filter bbox = ff.bbox("the_geom", 2.5, 3.5, 5.5, 6.5, null);
+        Map<Integer, SimpleFeature> found = byId(fs.getFeatures(bbox));
+        Set<Integer> expected = new HashSet<Integer>();
+        for (int x = 3; x <= 5; x++) {
+            for (int y = 4; y <= 6; y++) {
+                expected.add(y * 20 + x);
+            }
+        }
+        assertEquals(expected, found.keySet());
+        for (SimpleFeature f : found.values()) {
+            assertEquals(all.get(f.getAttribute("id")).getID(), f.getID());
+        }
+        assertEquals(9, fs.getCount(new Query("test", bbox)));
+        assertEquals(new Envelope(3, 5, 4, 6), fs.getBounds(new Query("test", bbox)));
+
+        // the index alone returns the candidates
+        FlatGeobufFile fgb = new FlatGeobufFile(file);
+        try {
+            assertEquals(9, fgb.search(new Envelope(2.5, 5.5, 3.5, 6.5)).length);
+            assertEquals(0, fgb.search(new Envelope(30, 40, 30, 40)).length);
+            assertEquals(400, fgb.search(new Envelope(-1, 20, -1, 20)).length);
+        } finally {
+            fgb.close();
+        }
+
+        // the index narrows the features, the filter is still applied
+        Filter and = ff.and(bbox, ff.greater(ff.property("id"), ff.literal(100)));
+        assertEquals(6, fs.getCount(new Query("test", and)));
+        store.dispose();
+    }
+
+    @Test
+    public void testStreamed() throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        writeGrid(new FlatGeobufWriter(out, points()));
+
+        FlatGeobufDataStore store = store();
+        FlatGeobufHeader header = store.getHeader();
+        assertEquals(0, header.featuresCount);
+        assertEquals(0, header.indexNodeSize);
+        assertNull(header.envelope);
+        SimpleFeatureStore fs = (SimpleFeatureStore) store.getFeatureSource("test");
+        assertEquals(400, fs.getCount(Query.ALL));
+        assertEquals(new Envelope(0, 19, 0, 19), fs.getBounds());
+        assertEquals(9, fs.getCount(new Query("test", ff.bbox("the_geom", 2.5, 3.5, 5.5, 6.5,
+                null))));
+        // without index the features stay in the written order
+        SimpleFeatureIterator it = fs.getFeatures().features();
+        try {
+            for (int i = 0; i < 400; i++) {
+                SimpleFeature f = it.next();
+                assertEquals(i, f.getAttribute("id"));
+                assertEquals("test." + (i + 1), f.getID());
+            }
+            assertFalse(it.hasNext());
+        } finally {
+            it.close();
+        }
+        store.dispose();
+    }
+
+    @Test
+    public void testCreateSchemaAndWrite() throws Exception {
+        FlatGeobufDataStore store = store();
+        store.createSchema(points());
+        assertTrue(file.exists());
+        SimpleFeatureStore fs = (SimpleFeatureStore) store.getFeatureSource("test");
+        assertEquals(0, fs.getCount(Query.ALL));
+        assertTrue(fs.getBounds().isEmpty());
+
+        SimpleFeatureCollection collection = FeatureCollections.newCollection();
+        for (int i = 0; i < 50; i++) {
+            collection.add(SimpleFeatureBuilder.build(fs.getSchema(), new Object[] {
+                    wkt.read("POINT(" + i + " " + i + ")"), i }, null));
+        }
+        fs.addFeatures(collection);
+        assertEquals(50, fs.getCount(Query.ALL));
+        assertEquals(new Envelope(0, 49, 0, 49), fs.getBounds());
+
+        fs.addFeatures(DataUtilities.collection(SimpleFeatureBuilder.build(fs.getSchema(),
+                new Object[] { wkt.read("POINT(100 100)"), 100 }, null)));
+        assertEquals(51, fs.getCount(Query.ALL));
+
+        // update and remove, the other features are kept
+        fs.modifyFeatures("id", 1000, ff.equals(ff.property("id"), ff.literal(10)));
+        fs.removeFeatures(ff.less(ff.property("id"), ff.literal(5)));
+        Map<Integer, SimpleFeature> features = byId(fs.getFeatures());
+        assertEquals(46, features.size());
+        assertNull(features.get(10));
+        assertTrue(((Geometry) features.get(1000).getDefaultGeometry()).equalsExact(wkt
+                .read("POINT(10 10)")));
+        assertTrue(features.containsKey(100));
+
+        // no temporary file left behind
+        assertEquals(Arrays.asList(file), Arrays.asList(directory.listFiles()));
+        store.dispose();
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        FlatGeobufDataStoreFactory factory = new FlatGeobufDataStoreFactory();
+        Map<String, java.io.Serializable> params = new HashMap<String, java.io.Serializable>();
+        params.put("file", file);
+        assertTrue(factory.canProcess(params));
+        params.put("file", new File(directory, "test.shp"));
+        assertFalse(factory.canProcess(params));
+    }
+
+    @Test
+    public void testPackedRTree() throws Exception {
+        int[][] bounds = PackedRTree.levelBounds(300, 16);
+        // 300 leaves, 19 nodes above them, 2 above these, the root
+        assertEquals(4, bounds.length);
+        assertTrue(Arrays.equals(new int[] { 22, 322 }, bounds[0]));
+        assertTrue(Arrays.equals(new int[] { 0, 1 }, bounds[3]));
+
+        // a single item still gets a root
+        assertEquals(2 * PackedRTree.NODE_ITEM_SIZE, PackedRTree.size(1, 16));
+
+        // the search matches a brute force one
+        int count = 300;
+        PackedRTree tree = new PackedRTree(count, 4);
+        double[][] boxes = new double[count][];
+        for (int i = 0; i < count; i++) {
+            double x = (i * 37) % 101;
+            double y = (i * 53) % 97;
+            boxes[i] = new double[] { x, y, x + i % 5, y + i % 3 };
+            tree.setLeaf(i, boxes[i], i * 10);
+        }
+        tree.build();
+        ByteBuffer buffer = ByteBuffer.wrap(tree.encode()).order(ByteOrder.LITTLE_ENDIAN);
+        Envelope query = new Envelope(20, 40, 30, 45);
+        int[] found = PackedRTree.search(buffer, 0, count, 4, query);
+        int expected = 0;
+        for (int i = 0; i < count; i++) {
+            if (query.intersects(new Envelope(boxes[i][0], boxes[i][2], boxes[i][1],
+                    boxes[i][3]))) {
+                assertEquals(i, found[expected++]);
+            }
+        }
+        assertEquals(expected, found.length);
+        assertEquals(150, PackedRTree.featureOffset(buffer, 0, tree.levelBounds[0][0], 15));
+    }
+
+    @Test
+    public void testNotFlatGeobuf() throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("not a flatgeobuf file".getBytes());
+        out.close();
+        try {
+            new FlatGeobufFile(file);
+            fail("Should have failed");
+        } catch (IOException e) {
+            // fine
+        }
+    }
+
+    /**
+     * Reads a file laid out as the GDAL FlatGeobuf driver writes it, with a spatial index,
+     * a coordinate reference system and a few attribute types
+     */
+    @Test
+    public void testReadReferenceFile() throws Exception {
+        FlatGeobufDataStore store = new FlatGeobufDataStore(TestData.file(this, "places.fgb"));
+        FlatGeobufHeader header = store.getHeader();
+        assertEquals("places", header.name);
+        assertEquals(10, header.featuresCount);
+        // the default node size is not written down
+        assertEquals(16, header.indexNodeSize);
+        assertTrue(header.hasIndex());
+        assertEquals("EPSG", header.crsOrg);
+        assertEquals(4326, header.crsCode);
+
+        SimpleFeatureType schema = store.getSchema("places");
+        assertNotNull(schema.getCoordinateReferenceSystem());
+        String[] names = { "the_geom", "id", "name", "population", "area", "capital", "updated" };
+        Class<?>[] bindings = { Point.class, Integer.class, String.class, Long.class,
+                Double.class, Boolean.class, Date.class };
+        assertEquals(names.length, schema.getAttributeCount());
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], schema.getDescriptor(i).getLocalName());
+            assertEquals(bindings[i], schema.getDescriptor(i).getType().getBinding());
+        }
+
+        SimpleFeatureStore fs = (SimpleFeatureStore) store.getFeatureSource("places");
+        assertEquals(10, fs.getCount(Query.ALL));
+        assertEquals(new Envelope(-9.1393, 13.405, 38.7223, 52.52), fs.getBounds());
+
+        Map<Integer, SimpleFeature> all = byId(fs.getFeatures());
+        assertEquals(10, all.size());
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        SimpleFeature rome = all.get(1);
+        assertTrue(wkt.read("POINT(12.4964 41.9028)").equalsExact(
+                (Geometry) rome.getDefaultGeometry()));
+        assertEquals("Rome", rome.getAttribute("name"));
+        assertEquals(2872800L, rome.getAttribute("population"));
+        assertEquals(1285.31, rome.getAttribute("area"));
+        assertEquals(Boolean.TRUE, rome.getAttribute("capital"));
+        assertEquals(format.parse("2011-03-14 10:30:00.000"), rome.getAttribute("updated"));
+        SimpleFeature munich = all.get(6);
+        assertEquals("M\u00fcnchen", munich.getAttribute("name"));
+        assertEquals(Boolean.FALSE, munich.getAttribute("capital"));
+        assertEquals(format.parse("2011-03-16 12:45:30.000"), munich.getAttribute("updated"));
+        assertEquals(format.parse("2011-03-16 12:45:30.250"), all.get(5).getAttribute("updated"));
+        // missing values are null
+        SimpleFeature unnamed = all.get(10);
+        assertNull(unnamed.getAttribute("name"));
+        assertNull(unnamed.getAttribute("population"));
+        assertNull(unnamed.getAttribute("area"));
+        assertNull(unnamed.getAttribute("updated"));
+        assertEquals(Boolean.FALSE, unnamed.getAttribute("capital"));
+
+        // searched through the index
+        Filter bbox = ff.bbox("the_geom", 8, 44, 14, 53, null);
+        Map<Integer, SimpleFeature> found = byId(fs.getFeatures(bbox));
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 5, 6)), found.keySet());
+        assertEquals("Milan", found.get(2).getAttribute("name"));
+        assertEquals("Berlin", found.get(5).getAttribute("name"));
+        for (SimpleFeature f : found.values()) {
+            assertEquals(all.get(f.getAttribute("id")).getID(), f.getID());
+        }
+        assertEquals(0, fs.getCount(new Query("places", ff.bbox("the_geom", 20, 20, 30, 30,
+                null))));
+        FlatGeobufFile fgb = new FlatGeobufFile(TestData.file(this, "places.fgb"));
+        try {
+            assertEquals(3, fgb.search(new Envelope(8, 14, 44, 53)).length);
+            assertEquals(10, fgb.search(new Envelope(-10, 14, 38, 53)).length);
+        } finally {
+            fgb.close();
+        }
+        store.dispose();
+    }
+}
@@ -182,6 +182,82 @@ public class GeoJSONUtil {
         return sb;
     }
     
+    //
+    // streaming encoding
+    //
+    /**
+     * Writes a quoted and escaped string, escaping the same characters as 
+     * {@link JSONObject#escape(String)} without creating an intermediate string.
+     */
+    public static Writer string(String string, Writer out) throws IOException {
+        out.write('"');
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char ch = string.charAt(i);
+            switch (ch) {
+            case '"':
+                out.write("\\\"");
+                break;
+            case '\\':
+                out.write("\\\\");
+                break;
+            case '\b':
+                out.write("\\b");
+                break;
+            case '\f':
+                out.write("\\f");
+                break;
+            case '\n':
+                out.write("\\n");
+                break;
+            case '\r':
+                out.write("\\r");
+                break;
+            case '\t':
+                out.write("\\t");
+                break;
+            case '/':
+                out.write("\\/");
+                break;
+            default:
+                if (ch <= '\u001F' || (ch >= '\u007F' && ch <= '\u009F')
+                        || (ch >= '\u2000' && ch <= '\u20FF')) {
+                    out.write("\\u");
+                    for (int shift = 12; shift >= 0; shift -= 4) {
+                        out.write(HEX_DIGITS[(ch >> shift) & 0xF]);
+                    }
+                } else {
+                    out.write(ch);
+                }
+            }
+        }
+        out.write('"');
+        return out;
+    }
+    
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    
+    /**
+     * Writes a key value pair, encoding the value as {@link #entry(String, Object, StringBuilder)}
+     * does.
+     */
+    public static Writer entry(String key, Object value, Writer out) throws IOException {
+        string(key, out).write(':');
+        
+        if (value instanceof Date) {
+            string(DATE_FORMAT.format((Date)value), out);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.write(value.toString());
+        } else {
+            String str = Converters.convert(value, String.class);
+            if(str == null) {
+                str = value.toString();
+            }
+            string(str, out);
+        }
+        return out;
+    }
+    
     //
     // parsing
     //
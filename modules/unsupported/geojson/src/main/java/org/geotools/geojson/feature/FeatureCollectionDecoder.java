@@ -0,0 +1,811 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2011, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.geojson.feature;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Reads the features of a GeoJSON feature collection one at a time.
+ * <p>
+ * This is a hand written pull parser building the features straight from the characters of
+ * the input, which avoids the token objects and per event handler dispatch of the json-simple
+ * based {@link FeatureCollectionHandler}, and parses coordinates without boxing them. It builds
+ * the same features: integral numbers are read as longs, other numbers as doubles, strings go
+ * through the {@link AttributeIO}, arrays become lists and objects inside the properties are
+ * read as geometries. When no feature type is provided, the type is inferred from the first
+ * feature.
+ * </p>
+ *
+ * @source $URL$
+ */
+final class FeatureCollectionDecoder {
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[8192];
+
+    private int position;
+
+    private int limit;
+
+    private final StringBuilder text = new StringBuilder();
+
+    private char[] number = new char[32];
+
+    private final GeometryFactory factory;
+
+    private final AttributeIO attio;
+
+    private SimpleFeatureBuilder builder;
+
+    /** 0 before the features array, 1 inside it, 2 once it is over */
+    private int state;
+
+    // reused from one feature to the next
+    private final List<String> properties = new ArrayList<String>();
+
+    private final List<Object> values = new ArrayList<Object>();
+
+    private String[] previousProperties = new String[0];
+
+    FeatureCollectionDecoder(Reader reader, SimpleFeatureType featureType, AttributeIO attio,
+            GeometryFactory factory) {
+        this.reader = reader;
+        this.factory = factory;
+        if (featureType != null) {
+            builder = new SimpleFeatureBuilder(featureType);
+        }
+        if (attio == null) {
+            attio = featureType != null ? new FeatureTypeAttributeIO(featureType)
+                    : new DefaultAttributeIO();
+        }
+        this.attio = attio;
+    }
+
+    /**
+     * Reads the next feature of the collection.
+     *
+     * @return the feature, or null once the end of the features array has been reached
+     */
+    SimpleFeature next() throws IOException {
+        while (true) {
+            if (state == 2) {
+                return null;
+            }
+            int c;
+            if (state == 0) {
+                if (!seekFeatures()) {
+                    state = 2;
+                    return null;
+                }
+                state = 1;
+                c = nextToken();
+            } else {
+                c = nextToken();
+                if (c == ',') {
+                    c = nextToken();
+                } else if (c != ']') {
+                    throw error("',' or ']'", c);
+                }
+            }
+            if (c == ']') {
+                state = 2;
+                return null;
+            }
+            if (c == 'n') {
+                // null feature
+                readLiteral("null", c);
+                continue;
+            }
+            if (c != '{') {
+                throw error("a feature", c);
+            }
+            return readFeature();
+        }
+    }
+
+    /*
+     * Positions the input after the opening bracket of the features array.
+     */
+    private boolean seekFeatures() throws IOException {
+        int c = nextToken();
+        if (c != '{') {
+            throw error("'{'", c);
+        }
+        c = nextToken();
+        if (c == '}') {
+            return false;
+        }
+        while (true) {
+            String key = readKey(c, null);
+            c = nextToken();
+            if ("features".equals(key) && c == '[') {
+                return true;
+            }
+            skipValue(c);
+            c = nextToken();
+            if (c == '}') {
+                return false;
+            } else if (c != ',') {
+                throw error("',' or '}'", c);
+            }
+            c = nextToken();
+        }
+    }
+
+    /*
+     * Reads a feature object, the opening brace being already read.
+     */
+    private SimpleFeature readFeature() throws IOException {
+        String id = null;
+        Geometry geometry = null;
+        CoordinateReferenceSystem crs = null;
+        boolean hasProperties = false;
+        properties.clear();
+        values.clear();
+
+        int c = nextToken();
+        while (c != '}') {
+            String key = readKey(c, null);
+            c = nextToken();
+            if ("id".equals(key)) {
+                Object value = readPrimitive(c);
+                id = value != null ? value.toString() : null;
+            } else if ("geometry".equals(key) && c == '{') {
+                geometry = readGeometry();
+            } else if ("crs".equals(key) && c == '{') {
+                crs = readCRS();
+            } else if ("properties".equals(key) && c == '{') {
+                hasProperties = true;
+                readProperties();
+            } else {
+                skipValue(c);
+            }
+            c = nextToken();
+            if (c == ',') {
+                c = nextToken();
+            } else if (c != '}') {
+                throw error("',' or '}'", c);
+            }
+        }
+
+        if (builder == null) {
+            //no builder specified, build on the fly
+            builder = createBuilder(geometry, crs);
+        }
+        if (hasProperties) {
+            for (int i = 0; i < properties.size(); i++) {
+                builder.set(properties.get(i), values.get(i));
+            }
+        }
+        GeometryDescriptor gd = builder.getFeatureType().getGeometryDescriptor();
+        if (geometry != null && gd != null) {
+            builder.set(gd.getLocalName(), geometry);
+        }
+        return builder.buildFeature(id);
+    }
+
+    private SimpleFeatureBuilder createBuilder(Geometry geometry, CoordinateReferenceSystem crs) {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("feature");
+        typeBuilder.setNamespaceURI("http://geotools.org");
+        if (crs != null) {
+            typeBuilder.setCRS(crs);
+        }
+
+        for (int i = 0; i < properties.size(); i++) {
+            Object value = values.get(i);
+            typeBuilder.add(properties.get(i), value != null ? value.getClass() : Object.class);
+        }
+        if (geometry != null) {
+            typeBuilder.add("geometry", geometry.getClass());
+            typeBuilder.setDefaultGeometry("geometry");
+        }
+
+        return new SimpleFeatureBuilder(typeBuilder.buildFeatureType());
+    }
+
+    /*
+     * Reads the properties object, the opening brace being already read.
+     */
+    private void readProperties() throws IOException {
+        int c = nextToken();
+        while (c != '}') {
+            int index = properties.size();
+            // features usually list their properties in the same order, reuse the names
+            String key = readKey(c, index < previousProperties.length ? previousProperties[index]
+                    : null);
+            c = nextToken();
+            Object value;
+            if (c == '{') {
+                value = readGeometry();
+            } else if (c == '[') {
+                value = readArray();
+            } else {
+                value = readPrimitive(c);
+                if (value instanceof String) {
+                    value = attio.parse(key, (String) value);
+                }
+            }
+            properties.add(key);
+            values.add(value);
+
+            c = nextToken();
+            if (c == ',') {
+                c = nextToken();
+            } else if (c != '}') {
+                throw error("',' or '}'", c);
+            }
+        }
+        if (previousProperties.length != properties.size()) {
+            previousProperties = new String[properties.size()];
+        }
+        properties.toArray(previousProperties);
+    }
+
+    /*
+     * Reads an array of values, the opening bracket being already read.
+     */
+    private List<Object> readArray() throws IOException {
+        List<Object> list = new ArrayList<Object>();
+        int c = nextToken();
+        while (c != ']') {
+            if (c == '[') {
+                list.add(readArray());
+            } else if (c == '{') {
+                list.add(readGeometry());
+            } else {
+                list.add(readPrimitive(c));
+            }
+            c = nextToken();
+            if (c == ',') {
+                c = nextToken();
+            } else if (c != ']') {
+                throw error("',' or ']'", c);
+            }
+        }
+        return list;
+    }
+
+    /*
+     * Reads a named crs object, the opening brace being already read.
+     */
+    private CoordinateReferenceSystem readCRS() throws IOException {
+        String name = null;
+        int c = nextToken();
+        while (c != '}') {
+            String key = readKey(c, null);
+            c = nextToken();
+            if ("properties".equals(key) && c == '{') {
+                c = nextToken();
+                while (c != '}') {
+                    String property = readKey(c, null);
+                    c = nextToken();
+                    if ("name".equals(property) && c == '"') {
+                        name = readString();
+                    } else {
+                        skipValue(c);
+                    }
+                    c = nextToken();
+                    if (c == ',') {
+                        c = nextToken();
+                    } else if (c != '}') {
+                        throw error("',' or '}'", c);
+                    }
+                }
+            } else {
+                skipValue(c);
+            }
+            c = nextToken();
+            if (c == ',') {
+                c = nextToken();
+            } else if (c != '}') {
+                throw error("',' or '}'", c);
+            }
+        }
+        if (name == null) {
+            return null;
+        }
+        try {
+            return CRS.decode(name);
+        } catch (Exception e) {
+            throw (IOException) new IOException("Error parsing " + name + " as crs id")
+                    .initCause(e);
+        }
+    }
+
+    /*
+     * Reads a geometry object, the opening brace being already read. The members may come in
+     * any order.
+     */
+    private Geometry readGeometry() throws IOException {
+        String type = null;
+        Object coordinates = null;
+        List<Geometry> geometries = null;
+
+        int c = nextToken();
+        while (c != '}') {
+            String key = readKey(c, null);
+            c = nextToken();
+            if ("type".equals(key) && c == '"') {
+                type = readString();
+            } else if ("coordinates".equals(key) && c == '[') {
+                coordinates = readCoordinates();
+            } else if ("geometries".equals(key) && c == '[') {
+                geometries = new ArrayList<Geometry>();
+                c = nextToken();
+                while (c != ']') {
+                    if (c != '{') {
+                        throw error("a geometry", c);
+                    }
+                    geometries.add(readGeometry());
+                    c = nextToken();
+                    if (c == ',') {
+                        c = nextToken();
+                    } else if (c != ']') {
+                        throw error("',' or ']'", c);
+                    }
+                }
+            } else {
+                skipValue(c);
+            }
+            c = nextToken();
+            if (c == ',') {
+                c = nextToken();
+            } else if (c != '}') {
+                throw error("',' or '}'", c);
+            }
+        }
+        return createGeometry(type, coordinates, geometries);
+    }
+
+    private Geometry createGeometry(String type, Object coordinates, List<Geometry> geometries) {
+        if ("GeometryCollection".equals(type)) {
+            if (geometries == null) {
+                geometries = new ArrayList<Geometry>();
+            }
+            return factory.createGeometryCollection(geometries
+                    .toArray(new Geometry[geometries.size()]));
+        }
+        if ("Point".equals(type)) {
+            return factory.createPoint(coordinates instanceof Coordinate ? (Coordinate) coordinates
+                    : null);
+        }
+        List list = coordinates instanceof List ? (List) coordinates : new ArrayList();
+        if ("LineString".equals(type)) {
+            return factory.createLineString(toCoordinates(list));
+        } else if ("Polygon".equals(type)) {
+            return createPolygon(list);
+        } else if ("MultiPoint".equals(type)) {
+            return factory.createMultiPoint(toCoordinates(list));
+        } else if ("MultiLineString".equals(type)) {
+            LineString[] lines = new LineString[list.size()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = factory.createLineString(toCoordinates((List) list.get(i)));
+            }
+            return factory.createMultiLineString(lines);
+        } else if ("MultiPolygon".equals(type)) {
+            Polygon[] polygons = new Polygon[list.size()];
+            for (int i = 0; i < polygons.length; i++) {
+                polygons[i] = createPolygon((List) list.get(i));
+            }
+            return factory.createMultiPolygon(polygons);
+        }
+        throw new IllegalArgumentException("Unknown geometry type " + type);
+    }
+
+    private Polygon createPolygon(List rings) {
+        if (rings.isEmpty()) {
+            throw new IllegalArgumentException("Polygon specified with no rings.");
+        }
+        LinearRing outer = factory.createLinearRing(toCoordinates((List) rings.get(0)));
+        LinearRing[] inner = null;
+        if (rings.size() > 1) {
+            inner = new LinearRing[rings.size() - 1];
+            for (int i = 1; i < rings.size(); i++) {
+                inner[i - 1] = factory.createLinearRing(toCoordinates((List) rings.get(i)));
+            }
+        }
+        return factory.createPolygon(outer, inner);
+    }
+
+    private Coordinate[] toCoordinates(List list) {
+        return (Coordinate[]) list.toArray(new Coordinate[list.size()]);
+    }
+
+    /*
+     * Reads a coordinates array, the opening bracket being already read: an array of numbers
+     * is read as a coordinate, other arrays as lists.
+     */
+    private Object readCoordinates() throws IOException {
+        int c = nextToken();
+        if (c == '[') {
+            List<Object> list = new ArrayList<Object>();
+            while (true) {
+                if (c != '[') {
+                    throw error("'['", c);
+                }
+                list.add(readCoordinates());
+                c = nextToken();
+                if (c == ']') {
+                    return list;
+                } else if (c != ',') {
+                    throw error("',' or ']'", c);
+                }
+                c = nextToken();
+            }
+        } else if (c == ']') {
+            return new ArrayList<Object>();
+        }
+        Coordinate coordinate = new Coordinate();
+        for (int i = 0;; i++) {
+            double ordinate = readDouble(c);
+            if (i == 0) {
+                coordinate.x = ordinate;
+            } else if (i == 1) {
+                coordinate.y = ordinate;
+            } else if (i == 2) {
+                coordinate.z = ordinate;
+            }
+            c = nextToken();
+            if (c == ']') {
+                return coordinate;
+            } else if (c != ',') {
+                throw error("',' or ']'", c);
+            }
+            c = nextToken();
+        }
+    }
+
+    //
+    // lexical level
+    //
+
+    /*
+     * Returns the next non white space character, or -1 at the end of the input.
+     */
+    private int nextToken() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[position++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int n = reader.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    private IOException error(String expected, int c) {
+        return new IOException("Invalid GeoJSON, expected " + expected + " but found "
+                + (c == -1 ? "the end of the input" : "'" + (char) c + "'"));
+    }
+
+    /*
+     * Reads an object key, the first character being c; returns the expected string when the
+     * key matches it, to avoid creating a new string.
+     */
+    private String readKey(int c, String expected) throws IOException {
+        if (c != '"') {
+            throw error("a key", c);
+        }
+        readStringContent();
+        int colon = nextToken();
+        if (colon != ':') {
+            throw error("':'", colon);
+        }
+        if (expected != null && expected.contentEquals(text)) {
+            return expected;
+        }
+        return text.toString();
+    }
+
+    /*
+     * Reads a string, the opening quote being already read.
+     */
+    private String readString() throws IOException {
+        readStringContent();
+        return text.toString();
+    }
+
+    private void readStringContent() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'u':
+                    int value = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw new IOException("Invalid GeoJSON, malformed unicode escape");
+                        }
+                        value = (value << 4) | digit;
+                    }
+                    text.append((char) value);
+                    break;
+                case -1:
+                    throw error("'\"'", c);
+                default:
+                    text.append((char) c);
+                }
+            } else if (c == -1) {
+                throw error("'\"'", c);
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    /*
+     * Reads a string, number, boolean or null, the first character being c.
+     */
+    private Object readPrimitive(int c) throws IOException {
+        if (c == '"') {
+            return readString();
+        } else if (c == 't') {
+            readLiteral("true", c);
+            return Boolean.TRUE;
+        } else if (c == 'f') {
+            readLiteral("false", c);
+            return Boolean.FALSE;
+        } else if (c == 'n') {
+            readLiteral("null", c);
+            return null;
+        }
+        int length = readNumber(c);
+        boolean integral = true;
+        for (int i = 0; i < length; i++) {
+            char n = number[i];
+            if (n == '.' || n == 'e' || n == 'E') {
+                integral = false;
+                break;
+            }
+        }
+        if (integral && length <= 18) {
+            long value = 0;
+            int i = number[0] == '-' ? 1 : 0;
+            if (i == length) {
+                throw error("a digit", -1);
+            }
+            for (; i < length; i++) {
+                value = value * 10 + (number[i] - '0');
+            }
+            return Long.valueOf(number[0] == '-' ? -value : value);
+        } else if (integral) {
+            try {
+                return Long.valueOf(new String(number, 0, length));
+            } catch (NumberFormatException e) {
+                // too large for a long
+            }
+        }
+        return Double.valueOf(parseDouble(length));
+    }
+
+    private void readLiteral(String literal, int c) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (c != literal.charAt(i)) {
+                throw error("'" + literal + "'", c);
+            }
+            if (i + 1 < literal.length()) {
+                c = read();
+            }
+        }
+    }
+
+    private double readDouble(int c) throws IOException {
+        return parseDouble(readNumber(c));
+    }
+
+    /*
+     * Copies the characters of a number to the number buffer, returning its length.
+     */
+    private int readNumber(int c) throws IOException {
+        int length = 0;
+        while ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e'
+                || c == 'E') {
+            if (length == number.length) {
+                char[] grown = new char[length * 2];
+                System.arraycopy(number, 0, grown, 0, length);
+                number = grown;
+            }
+            number[length++] = (char) c;
+            c = peek();
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e'
+                    || c == 'E') {
+                position++;
+            }
+        }
+        if (length == 0) {
+            throw error("a value", c);
+        }
+        return length;
+    }
+
+    /*
+     * Parses the number in the number buffer. Numbers with at most 15 significant digits and a
+     * small exponent are computed with a single, correctly rounded, multiplication or division,
+     * the others go through Double.parseDouble.
+     */
+    private double parseDouble(int length) throws IOException {
+        int i = 0;
+        boolean negative = false;
+        if (number[0] == '-') {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean digits = false;
+        boolean fraction = false;
+        boolean fast = true;
+        for (; i < length; i++) {
+            char c = number[i];
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (mantissa == 0 && c == '0') {
+                    // leading zero
+                } else if (significant < 15) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    significant++;
+                } else {
+                    fast = false;
+                    break;
+                }
+                if (fraction) {
+                    scale--;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (fast && digits && i < length && (number[i] == 'e' || number[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (number[i] == '-' || number[i] == '+')) {
+                negativeExponent = number[i] == '-';
+                i++;
+            }
+            int exponent = 0;
+            boolean exponentDigits = false;
+            for (; i < length && number[i] >= '0' && number[i] <= '9' && exponent < 1000; i++) {
+                exponent = exponent * 10 + (number[i] - '0');
+                exponentDigits = true;
+            }
+            fast = exponentDigits;
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (fast && digits && i == length) {
+            double value;
+            if (mantissa == 0) {
+                value = 0;
+            } else if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+                value = mantissa * POWERS_OF_TEN[scale];
+            } else if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+                value = mantissa / POWERS_OF_TEN[-scale];
+            } else {
+                return slowParseDouble(length);
+            }
+            return negative ? -value : value;
+        }
+        return slowParseDouble(length);
+    }
+
+    private double slowParseDouble(int length) throws IOException {
+        String s = new String(number, 0, length);
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            throw (IOException) new IOException("Invalid GeoJSON number " + s).initCause(e);
+        }
+    }
+
+    /*
+     * Skips a value, the first character being c.
+     */
+    private void skipValue(int c) throws IOException {
+        if (c == '{' || c == '[') {
+            int depth = 1;
+            while (depth > 0) {
+                c = read();
+                if (c == '"') {
+                    readStringContent();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (c == -1) {
+                    throw error("the end of a value", c);
+                }
+            }
+        } else {
+            readPrimitive(c);
+        }
+    }
+}
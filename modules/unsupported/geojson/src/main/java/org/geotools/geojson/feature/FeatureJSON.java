@@ -16,7 +16,6 @@
  */
 package org.geotools.geojson.feature;
 
-import static org.geotools.geojson.GeoJSONUtil.array;
 import static org.geotools.geojson.GeoJSONUtil.entry;
 import static org.geotools.geojson.GeoJSONUtil.string;
 
@@ -39,8 +38,8 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONAware;
+import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
-import org.json.simple.parser.JSONParser;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
@@ -50,6 +49,7 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 
 /**
  * Reads and writes feature objects to and from geojson.
@@ -196,7 +196,9 @@ public class FeatureJSON {
      * @param output The output. See {@link GeoJSONUtil#toWriter(Object)} for details.
      */
     public void writeFeature(SimpleFeature feature, Object output) throws IOException {
-        GeoJSONUtil.encode(new FeatureEncoder(feature).toJSONString(), output);
+        Writer w = GeoJSONUtil.toWriter(output);
+        new FeatureEncoder(feature).writeJSONString(feature, w);
+        w.flush();
     }
 
     /**
@@ -371,38 +373,48 @@ public class FeatureJSON {
         }
         
         public String toJSONString(SimpleFeature feature) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("{");
+            StringWriter w = new StringWriter();
+            try {
+                writeJSONString(feature, w);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return w.toString();
+        }
+        
+        /**
+         * Writes the feature straight to the writer, without building it as a string first.
+         */
+        public void writeJSONString(SimpleFeature feature, Writer out) throws IOException {
+            out.write('{');
             
             //type
-            entry("type", "Feature", sb);
-            sb.append(",");
+            entry("type", "Feature", out);
+            out.write(',');
             
             //crs
             if (encodeFeatureCRS) {
                 CoordinateReferenceSystem crs = 
                     feature.getFeatureType().getCoordinateReferenceSystem();
                 if (crs != null) {
-                    try {
-                        string("crs", sb).append(":");
-                        sb.append(FeatureJSON.this.toString(crs)).append(",");
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+                    string("crs", out).write(':');
+                    JSONObject.writeJSONString(createCRS(crs), out);
+                    out.write(',');
                 }
             }
             //bounding box
             if (encodeFeatureBounds) {
                 BoundingBox bbox = feature.getBounds();
-                string("bbox", sb).append(":");
-                sb.append(gjson.toString(bbox)).append(",");
+                string("bbox", out).write(':');
+                out.write(gjson.toString(bbox));
+                out.write(',');
             }
             
             //geometry
             if (feature.getDefaultGeometry() != null) {
-                string("geometry", sb).append(":")
-                .append(gjson.toString((Geometry) feature.getDefaultGeometry()));    
-                sb.append(",");
+                string("geometry", out).write(':');
+                gjson.writeGeometry((Geometry) feature.getDefaultGeometry(), out);
+                out.write(',');
             }
             
             //properties
@@ -410,7 +422,7 @@ public class FeatureJSON {
                     featureType.indexOf(featureType.getGeometryDescriptor().getLocalName()) : 
                     -1;
             
-            string("properties", sb).append(":").append("{");
+            string("properties", out).write(":{");
             boolean attributesWritten = false;
             for (int i = 0; i < featureType.getAttributeCount(); i++) {
                 AttributeDescriptor ad = featureType.getDescriptor(i);
@@ -426,32 +438,31 @@ public class FeatureJSON {
                     continue;
                 }
                 
+                if (attributesWritten) {
+                    out.write(',');
+                }
                 attributesWritten = true;
                 
                 // handle special types separately, everything else as a string or literal
                 if (value instanceof Envelope) {
-                    array(ad.getLocalName(), gjson.toString((Envelope)value), sb);
+                    string(ad.getLocalName(), out).write(':');
+                    out.write(gjson.toString((Envelope)value));
                 } else if (value instanceof BoundingBox) {
-                    array(ad.getLocalName(), gjson.toString((BoundingBox)value), sb);
+                    string(ad.getLocalName(), out).write(':');
+                    out.write(gjson.toString((BoundingBox)value));
                 } else if (value instanceof Geometry) {
-                    string(ad.getLocalName(), sb).append(":")
-                    .append(gjson.toString((Geometry) value));
+                    string(ad.getLocalName(), out).write(':');
+                    gjson.writeGeometry((Geometry) value, out);
                 } else {
-                    entry(ad.getLocalName(), value, sb);
+                    entry(ad.getLocalName(), value, out);
                 }
-                sb.append(",");
             }
-            
-            if(attributesWritten) {
-                sb.setLength(sb.length()-1);
-            }
-            sb.append("},");
+            out.write("},");
             
             //id
-            entry("id", feature.getID(), sb);
+            entry("id", feature.getID(), out);
             
-            sb.append("}");
-            return sb.toString();
+            out.write('}');
         }
         
         public String toJSONString() {
@@ -478,12 +489,12 @@ public class FeatureJSON {
             try {
                 if (i.hasNext()) {
                     SimpleFeature f = (SimpleFeature) i.next();
-                    out.write(featureEncoder.toJSONString(f));
+                    featureEncoder.writeJSONString(f, out);
                     
                     while(i.hasNext()) {
                         out.write(",");
                         f = (SimpleFeature) i.next();
-                        out.write(featureEncoder.toJSONString(f));
+                        featureEncoder.writeJSONString(f, out);
                     }
                 }
             }
@@ -498,8 +509,7 @@ public class FeatureJSON {
     class FeatureCollectionIterator implements FeatureIterator<SimpleFeature> {
 
         Reader reader;
-        IFeatureCollectionHandler handler;
-        JSONParser parser;
+        FeatureCollectionDecoder decoder;
         SimpleFeature next;
         
         FeatureCollectionIterator(Object input) {
@@ -509,7 +519,6 @@ public class FeatureJSON {
             catch (IOException e) {
                 throw new RuntimeException(e);
             }
-            this.parser = new JSONParser();
         }
         
         public boolean hasNext() {
@@ -517,9 +526,12 @@ public class FeatureJSON {
                 return true;
             }
             
-            if (handler == null) {
-                handler = new FeatureCollectionHandler(featureType,  attio);
-                //handler = GeoJSONUtil.trace(handler, IFeatureCollectionHandler.class);
+            if (decoder == null) {
+                if (reader == null) {
+                    return false;
+                }
+                decoder = new FeatureCollectionDecoder(reader, featureType, attio, 
+                    new GeometryFactory());
             }
             next = readNext();
             return next != null;
@@ -533,8 +545,7 @@ public class FeatureJSON {
         
         SimpleFeature readNext() { 
             try {
-                parser.parse(reader, handler, true);
-                return handler.getValue(); 
+                return decoder.next();
             } 
             catch(Exception e) {
                 throw new RuntimeException(e);
@@ -548,8 +559,7 @@ public class FeatureJSON {
 
         public void close() {
             reader = null;
-            parser = null;
-            handler = null;
+            decoder = null;
         }
     }
 }
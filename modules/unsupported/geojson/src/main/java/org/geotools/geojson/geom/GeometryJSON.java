@@ -26,6 +26,7 @@ import java.util.Map;
 
 import org.geotools.geojson.GeoJSONUtil;
 import org.geotools.geojson.IContentHandler;
+import org.geotools.util.DoubleFormatter;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONAware;
 import org.opengis.geometry.BoundingBox;
@@ -69,7 +70,6 @@ public class GeometryJSON {
     GeometryFactory factory = new GeometryFactory();
     boolean trace = false;
     int decimals;
-    double scale;
 
     /**
      * Constructs a geometry json instance.
@@ -84,7 +84,6 @@ public class GeometryJSON {
      */
     public GeometryJSON(int decimals) {
         this.decimals = decimals;
-        this.scale = Math.pow(10, decimals);
     }
     
     /**
@@ -112,7 +111,124 @@ public class GeometryJSON {
      * @param output The output. See {@link GeoJSONUtil#toWriter(Object)} for details.
      */
     public void write(Geometry geometry, Object output) throws IOException {
-        GeoJSONUtil.encode(create(geometry), output);
+        Writer w = GeoJSONUtil.toWriter(output);
+        writeGeometry(geometry, w);
+        w.flush();
+    }
+    
+    /**
+     * Writes a Geometry instance as GeoJSON straight to a writer.
+     * <p>
+     * Unlike {@link #write(Geometry, Object)} the writer is neither buffered nor flushed, and 
+     * no intermediate maps or strings are created, so this method is meant to encode the 
+     * geometries of a larger document.
+     * </p>
+     * @param geometry The geometry.
+     * @param out The writer.
+     */
+    public void writeGeometry(Geometry geometry, Writer out) throws IOException {
+        writeGeometry(geometry, out, new DoubleFormatter(decimals, false));
+    }
+    
+    void writeGeometry(Geometry geometry, Writer out, DoubleFormatter formatter) 
+        throws IOException {
+        out.write("{\"type\":\"");
+        if (geometry instanceof Point) {
+            out.write("Point\",\"coordinates\":");
+            writeCoordinates(((Point) geometry).getCoordinateSequence(), out, formatter);
+        } else if (geometry instanceof LineString) {
+            out.write("LineString\",\"coordinates\":");
+            writeCoordinates(((LineString) geometry).getCoordinateSequence(), out, formatter);
+        } else if (geometry instanceof Polygon) {
+            out.write("Polygon\",\"coordinates\":");
+            writePolygon((Polygon) geometry, out, formatter);
+        } else if (geometry instanceof MultiPoint) {
+            out.write("MultiPoint\",\"coordinates\":");
+            writeMultiGeometry((GeometryCollection) geometry, out, formatter);
+        } else if (geometry instanceof MultiLineString) {
+            out.write("MultiLineString\",\"coordinates\":");
+            writeMultiGeometry((GeometryCollection) geometry, out, formatter);
+        } else if (geometry instanceof MultiPolygon) {
+            out.write("MultiPolygon\",\"coordinates\":");
+            writeMultiGeometry((GeometryCollection) geometry, out, formatter);
+        } else if (geometry instanceof GeometryCollection) {
+            out.write("GeometryCollection\",\"geometries\":[");
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeGeometry(geometry.getGeometryN(i), out, formatter);
+            }
+            out.write(']');
+        } else {
+            throw new IllegalArgumentException("Unable to encode object " + geometry);
+        }
+        out.write('}');
+    }
+    
+    /*
+     * Same output as toList(Polygon)
+     */
+    void writePolygon(Polygon poly, Writer out, DoubleFormatter formatter) 
+        throws IOException {
+        out.write('[');
+        writeCoordinates(poly.getExteriorRing().getCoordinateSequence(), out, formatter);
+        for (int i = 0; i < poly.getNumInteriorRing(); i++) {
+            out.write(',');
+            writeCoordinates(poly.getInteriorRingN(i).getCoordinateSequence(), out, formatter);
+        }
+        out.write(']');
+    }
+    
+    /*
+     * Same output as toList(GeometryCollection)
+     */
+    void writeMultiGeometry(GeometryCollection mgeom, Writer out, DoubleFormatter formatter) 
+        throws IOException {
+        out.write('[');
+        boolean first = true;
+        for (int i = 0; i < mgeom.getNumGeometries(); i++) {
+            Geometry g = mgeom.getGeometryN(i);
+            if (!(g instanceof Polygon || g instanceof LineString || g instanceof Point)) {
+                continue;
+            }
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            if (g instanceof Polygon) {
+                writePolygon((Polygon) g, out, formatter);
+            } else if (g instanceof LineString) {
+                writeCoordinates(((LineString) g).getCoordinateSequence(), out, formatter);
+            } else {
+                writeCoordinates(((Point) g).getCoordinateSequence(), out, formatter);
+            }
+        }
+        out.write(']');
+    }
+    
+    /*
+     * Same output as CoordinateSequenceEncoder.toJSONString()
+     */
+    void writeCoordinates(CoordinateSequence seq, Writer out, DoubleFormatter formatter) 
+        throws IOException {
+        int size = seq.size();
+        if (size != 1) {
+            out.write('[');
+        }
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('[');
+            formatter.format(seq.getX(i), out);
+            out.write(',');
+            formatter.format(seq.getY(i), out);
+            out.write(']');
+        }
+        if (size != 1) {
+            out.write(']');
+        }
     }
     
     /**
@@ -193,7 +309,7 @@ public class GeometryJSON {
         LinkedHashMap obj = new LinkedHashMap();
         
         obj.put("type", "Point");
-        obj.put("coordinates", new CoordinateSequenceEncoder(point.getCoordinateSequence(), scale));        
+        obj.put("coordinates", new CoordinateSequenceEncoder(point.getCoordinateSequence(), decimals));        
         return obj;
     }
     
@@ -224,7 +340,7 @@ public class GeometryJSON {
         LinkedHashMap obj = new LinkedHashMap();
         
         obj.put("type", "LineString");
-        obj.put("coordinates", new CoordinateSequenceEncoder(line.getCoordinateSequence(), scale));
+        obj.put("coordinates", new CoordinateSequenceEncoder(line.getCoordinateSequence(), decimals));
         return obj;
     }
     
@@ -437,10 +553,10 @@ public class GeometryJSON {
     
     List toList(Polygon poly) {
         ArrayList list = new ArrayList();
-        list.add(new CoordinateSequenceEncoder(poly.getExteriorRing().getCoordinateSequence(), scale));
+        list.add(new CoordinateSequenceEncoder(poly.getExteriorRing().getCoordinateSequence(), decimals));
         
         for (int i = 0; i < poly.getNumInteriorRing(); i++) {
-            list.add(new CoordinateSequenceEncoder(poly.getInteriorRingN(i).getCoordinateSequence(), scale));
+            list.add(new CoordinateSequenceEncoder(poly.getInteriorRingN(i).getCoordinateSequence(), decimals));
         }
         
         return list;
@@ -454,50 +570,39 @@ public class GeometryJSON {
                 list.add(toList((Polygon)g));
             }
             else if (g instanceof LineString){
-                list.add(new CoordinateSequenceEncoder(((LineString)g).getCoordinateSequence(), scale));
+                list.add(new CoordinateSequenceEncoder(((LineString)g).getCoordinateSequence(), decimals));
             }
             else if (g instanceof Point) {
-                list.add(new CoordinateSequenceEncoder(((Point)g).getCoordinateSequence(), scale));
+                list.add(new CoordinateSequenceEncoder(((Point)g).getCoordinateSequence(), decimals));
             }
         }
         return list;
     }
     static class CoordinateSequenceEncoder implements JSONAware /*, JSONStreamAware*/ {
 
-        /**
-         * The min value at which the decimal notation is used 
-         * (below it, the computerized scientific one is used instead)
-         */
-        private static final double DECIMAL_MIN = Math.pow(10, -3);
-        
-        /**
-         * The max value at which the decimal notation is used 
-         * (above it, the computerized scientific one is used instead)
-         */
-        private static final double DECIMAL_MAX = Math.pow(10, 7);
-        
         CoordinateSequence seq;
-        double scale;
+        int decimals;
         
-        CoordinateSequenceEncoder(CoordinateSequence seq, double scale) {
+        CoordinateSequenceEncoder(CoordinateSequence seq, int decimals) {
             this.seq = seq;
-            this.scale = scale;
+            this.decimals = decimals;
         }
         
         public String toJSONString() {
             int size = seq.size();
             
-            StringBuilder sb = new StringBuilder();
+            DoubleFormatter formatter = new DoubleFormatter(decimals, false);
+            StringBuffer sb = new StringBuffer();
             if (size > 1) {
                 sb.append("["); 
             }
             
             for (int i = 0; i < seq.size(); i++) {
                 sb.append("[");
-                formatDecimal(seq.getX(i), sb);
+                formatter.format(seq.getX(i), sb);
                 
                 sb.append(",");
-                formatDecimal(seq.getY(i), sb);
+                formatter.format(seq.getY(i), sb);
                 
                 sb.append("],");
             }
@@ -533,18 +638,5 @@ public class GeometryJSON {
             }
             
         }
-        
-        private void formatDecimal(double x, StringBuilder sb) {
-            if(Math.abs(x) >= DECIMAL_MIN && x < DECIMAL_MAX) {
-                x = Math.floor(x * scale + 0.5) / scale;
-                long lx = (long) x;
-                if(lx == x)
-                    sb.append(lx);
-                else
-                    sb.append(x);
-            } else {
-                sb.append(x);
-            }
-        }
     }
 }
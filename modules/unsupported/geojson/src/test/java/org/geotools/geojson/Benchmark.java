@@ -5,23 +5,35 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 
 //import org.apache.commons.io.output.NullOutputStream;
 import org.geotools.data.FeatureSource;
 //import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geojson.feature.FeatureJSON;
 import org.geotools.geojson.geom.GeometryJSON;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 
 public class Benchmark {
 
     public static void main(String[] args) throws Exception {
-        benchmarkFeatureCollectionParse(new File("/Users/jdeolive/texas_roads.json"));
+        if (args.length == 0) {
+            benchmarkFeatureCollectionRoundTrip(100000, 20);
+            return;
+        }
+        benchmarkFeatureCollectionParse(new File(args[0]));
         //benchmarkFeatureCollectionParse(new File("/Users/jdeolive/world_borders.json"));
         //FeatureSource data = loadData();
 
@@ -56,6 +68,53 @@ public class Benchmark {
         reader.close();
     }
     
+    /**
+     * Encodes a synthetic collection of line features and streams it back, without any file.
+     */
+    static void benchmarkFeatureCollectionRoundTrip(int count, int points) throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("road");
+        tb.add("geometry", Geometry.class);
+        tb.add("name", String.class);
+        tb.add("lanes", Integer.class);
+        tb.add("length", Double.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+
+        GeometryFactory gf = new GeometryFactory();
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        DefaultFeatureCollection features = new DefaultFeatureCollection(null, type);
+        for (int i = 0; i < count; i++) {
+            Coordinate[] coords = new Coordinate[points];
+            for (int j = 0; j < points; j++) {
+                coords[j] = new Coordinate(-106.6 + i * 1e-4 + j * 1.7e-5, 31.8 + j * 2.3e-5);
+            }
+            fb.add(gf.createLineString(coords));
+            fb.add("road " + i);
+            fb.add(i % 4 + 1);
+            fb.add(i * 0.37);
+            features.add(fb.buildFeature("road." + i));
+        }
+
+        FeatureJSON fjson = new FeatureJSON();
+        StringWriter writer = new StringWriter();
+        long t1 = System.currentTimeMillis();
+        fjson.writeFeatureCollection(features, writer);
+        long t2 = System.currentTimeMillis();
+        String json = writer.toString();
+        System.out.println("encode: " + (t2 - t1) + "ms, " + json.length() + " chars");
+
+        t1 = System.currentTimeMillis();
+        FeatureIterator<SimpleFeature> it = fjson.streamFeatureCollection(new StringReader(json));
+        int read = 0;
+        while (it.hasNext()) {
+            it.next();
+            read++;
+        }
+        it.close();
+        t2 = System.currentTimeMillis();
+        System.out.println("decode: " + (t2 - t1) + "ms, " + read + " features");
+    }
+
     static void bencharkGeometryEncode(FeatureSource data) throws Exception {
         GeometryJSON gjson = new GeometryJSON();
         OutputStream out = System.out;/*new NullOutputStream();*/
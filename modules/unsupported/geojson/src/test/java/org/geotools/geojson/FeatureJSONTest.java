@@ -379,6 +379,59 @@ public class FeatureJSONTest extends GeoJSONTestSupport {
         expected.close(e);
     }
 
+    public void testFeatureCollectionStreamMemberOrder() throws Exception {
+        String json = strip(
+            "{" +
+            "  'features': [" +
+            "    {" +
+            "      'properties': {" +
+            "        'int': 1," +
+            "        'double': -1.5e2," +
+            "        'string': 'a\\u0041\\t\\'b'" +
+            "      }," +
+            "      'id': 'feature.0'," +
+            "      'geometry': {" +
+            "        'coordinates': [[0.1, 0.2], [1.1, 1.2]]," +
+            "        'type': 'LineString'" +
+            "      }," +
+            "      'type': 'Feature'" +
+            "    }," +
+            "    {" +
+            "      'type': 'Feature'," +
+            "      'geometry': null," +
+            "      'properties': {" +
+            "        'int': 12345678901," +
+            "        'double': 0.0000012345," +
+            "        'string': null" +
+            "      }," +
+            "      'id': 'feature.1'" +
+            "    }" +
+            "  ]," +
+            "  'type': 'FeatureCollection'" +
+            "}");
+
+        FeatureIterator<SimpleFeature> features = fjson.streamFeatureCollection(reader(json));
+        assertTrue(features.hasNext());
+        SimpleFeature f = features.next();
+        assertEquals("feature.0", f.getID());
+        assertEquals(1, ((Number) f.getAttribute("int")).intValue());
+        assertEquals(-150d, ((Number) f.getAttribute("double")).doubleValue());
+        assertEquals("aA\t\"b", f.getAttribute("string"));
+        assertTrue(new WKTReader().read("LINESTRING (0.1 0.2, 1.1 1.2)").equals(
+            (Geometry) f.getDefaultGeometry()));
+
+        assertTrue(features.hasNext());
+        f = features.next();
+        assertEquals("feature.1", f.getID());
+        assertEquals(12345678901L, ((Number) f.getAttribute("int")).longValue());
+        assertEquals(0.0000012345, ((Number) f.getAttribute("double")).doubleValue());
+        assertNull(f.getAttribute("string"));
+        assertNull(f.getDefaultGeometry());
+
+        assertFalse(features.hasNext());
+        features.close();
+    }
+
     public void testFeatureCollectionWithBoundsWrite() throws Exception {
         fjson.setEncodeFeatureCollectionBounds(true);
         assertEquals(strip(collectionText(true, false)), fjson.toString(collection()));